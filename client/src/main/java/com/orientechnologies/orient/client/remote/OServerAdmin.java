@@ -392,6 +392,44 @@ public class OServerAdmin {
     return this;
   }
 
+  /**
+   * Cancels the command running in a server connection. The command is interrupted at its next check.
+   *
+   * @param iConnectionId
+   *          Id of the connection executing the command
+   * @return true if a command was running, otherwise false
+   * @throws OStorageException
+   *           if the server doesn't support the cancellation, that requires the protocol 19
+   */
+  public synchronized boolean cancelCommand(final int iConnectionId) throws IOException {
+    storage.checkConnection();
+
+    if (storage.getServerProtocolVersion() < 19)
+      throw new OStorageException("The server doesn't support the cancellation of the commands (protocol "
+          + storage.getServerProtocolVersion() + ")");
+
+    try {
+      final OChannelBinaryClient network = storage.beginRequest(OChannelBinaryProtocol.REQUEST_COMMAND_CANCEL);
+
+      try {
+        network.writeInt(iConnectionId);
+      } finally {
+        storage.endRequest(network);
+      }
+
+      try {
+        storage.beginResponse(network);
+        return network.readByte() == 1;
+      } finally {
+        storage.endResponse(network);
+      }
+
+    } catch (Exception e) {
+      OLogManager.instance().exception("Cannot cancel the command of connection " + iConnectionId, e, OStorageException.class);
+    }
+    return false;
+  }
+
   /**
    * Gets the cluster status.
    * 
@@ -47,6 +47,7 @@ import com.orientechnologies.orient.core.OConstants;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.command.OCommandRequestAsynch;
 import com.orientechnologies.orient.core.command.OCommandRequestText;
+import com.orientechnologies.orient.core.compression.OCompressionFactory;
 import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.config.OStorageConfiguration;
@@ -453,10 +454,14 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
         try {
           beginResponse(network);
 
-          if (network.readByte() == 0)
+          final byte status = network.readByte();
+          if (status == 0)
             return new OStorageOperationResult<ORawBuffer>(null);
 
           final ORawBuffer buffer = new ORawBuffer(network.readBytes(), network.readVersion(), network.readByte());
+          if (status == 3)
+            // SENT AS STORED BY THE SERVER: UNCOMPRESS IT
+            buffer.buffer = OCompressionFactory.INSTANCE.getCompression(network.readString()).uncompress(buffer.buffer);
 
           final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
           ORecordInternal<?> record;
@@ -480,6 +485,54 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
     } while (true);
   }
 
+  @Override
+  public Map<ORecordId, ORawBuffer> readRecords(final Collection<ORecordId> iRids) {
+    checkConnection();
+
+    if (OStorageRemoteThreadLocal.INSTANCE.get().commandExecuting)
+      // PENDING NETWORK OPERATION, CAN'T EXECUTE IT NOW
+      return new HashMap<ORecordId, ORawBuffer>();
+
+    synchronized (networkPool) {
+      if (networkPool.isEmpty() || networkPool.get(0).getSrvProtocolVersion() < 16)
+        // OLD SERVER: LOAD THEM ONE BY ONE
+        return super.readRecords(iRids);
+    }
+
+    do {
+      try {
+
+        OChannelBinaryClient network = null;
+        try {
+          network = beginRequest(OChannelBinaryProtocol.REQUEST_RECORD_LOAD_BATCH);
+          network.writeInt(iRids.size());
+          for (ORecordId rid : iRids)
+            network.writeRID(rid);
+        } finally {
+          endRequest(network);
+        }
+
+        try {
+          beginResponse(network);
+
+          final Map<ORecordId, ORawBuffer> result = new HashMap<ORecordId, ORawBuffer>(iRids.size());
+          for (ORecordId rid : iRids)
+            if (network.readByte() == 1)
+              result.put(rid, new ORawBuffer(network.readBytes(), network.readVersion(), network.readByte()));
+
+          return result;
+
+        } finally {
+          endResponse(network);
+        }
+
+      } catch (Exception e) {
+        handleException("Error on read records " + iRids, e);
+
+      }
+    } while (true);
+  }
+
   public OStorageOperationResult<ORecordVersion> updateRecord(final ORecordId iRid, final byte[] iContent,
       final ORecordVersion iVersion, final byte iRecordType, int iMode, final ORecordCallback<ORecordVersion> iCallback) {
     checkConnection();
@@ -2064,6 +2117,15 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
     return clientId;
   }
 
+  /**
+   * Returns the protocol version of the connected server, or -1 if there's no connection open.
+   */
+  public int getServerProtocolVersion() {
+    synchronized (networkPool) {
+      return networkPool.isEmpty() ? -1 : networkPool.get(0).getSrvProtocolVersion();
+    }
+  }
+
   public int getDataSegmentIdByName(final String iName) {
     if (iName == null)
       return 0;
@@ -15,56 +15,98 @@
  */
 package com.orientechnologies.common.concur.resource;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.orientechnologies.common.concur.lock.OLockException;
 
+/**
+ * Pool of resources. The number of resources in use is bounded by a semaphore, that is acquired without blocking when permits are
+ * available. Every thread first tries to reuse the last resource it released, then the resources released by the other threads
+ * are taken from a lock-free queue. Only when no resource is available a new one is created.
+ * 
+ * @author Luca Garulli
+ * 
+ */
 public class OResourcePool<K, V> {
-  private final Semaphore             sem;
-  private final Queue<V>              resources = new ConcurrentLinkedQueue<V>();
-  private final Collection<V>         unmodifiableresources;
-  private OResourcePoolListener<K, V> listener;
+  private final int                            maxResources;
+  private final Semaphore                      sem;
+  private final Queue<OPooledResource<V>>      available = new ConcurrentLinkedQueue<OPooledResource<V>>();
+  private final List<OPooledResource<V>>       resources = new CopyOnWriteArrayList<OPooledResource<V>>();
+  private final ThreadLocal<OPooledResource<V>> lastUsed  = new ThreadLocal<OPooledResource<V>>();
+  private OResourcePoolListener<K, V>          listener;
+
+  // STATISTICS
+  private final AtomicLong                     acquired  = new AtomicLong();
+  private final AtomicLong                     waits     = new AtomicLong();
+  private final AtomicLong                     waitTime  = new AtomicLong();
+
+  /**
+   * Pooled resource. A resource can be in the queue even if it is in use, because the thread that released it took it back
+   * without passing by the queue: the flags avoid to return it twice and to put it in the queue more times.
+   */
+  private static class OPooledResource<V> {
+    private final V             resource;
+    private final AtomicBoolean inUse  = new AtomicBoolean(true);
+    private final AtomicBoolean queued = new AtomicBoolean(false);
+
+    private OPooledResource(final V iResource) {
+      resource = iResource;
+    }
+  }
 
   public OResourcePool(final int iMaxResources, final OResourcePoolListener<K, V> iListener) {
+    maxResources = iMaxResources;
     listener = iListener;
     sem = new Semaphore(iMaxResources + 1, true);
-    unmodifiableresources = Collections.unmodifiableCollection(resources);
   }
 
   public V getResource(K iKey, final long iMaxWaitMillis, Object... iAdditionalArgs) throws OLockException {
 
     // First, get permission to take or create a resource
-    try {
-      if (!sem.tryAcquire(iMaxWaitMillis, TimeUnit.MILLISECONDS))
-        throw new OLockException("Cannot acquire lock on requested resource: " + iKey);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-      throw new OLockException("Cannot acquire lock on requested resource: " + iKey, e);
+    if (!sem.tryAcquire()) {
+      final long start = System.nanoTime();
+      try {
+        if (!sem.tryAcquire(iMaxWaitMillis, TimeUnit.MILLISECONDS))
+          throw new OLockException("Cannot acquire lock on requested resource: " + iKey);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new OLockException("Cannot acquire lock on requested resource: " + iKey, e);
+      } finally {
+        waits.incrementAndGet();
+        waitTime.addAndGet(System.nanoTime() - start);
+      }
     }
 
-    V res;
-    do {
-      // POP A RESOURCE
-      res = resources.poll();
-      if (res != null) {
-        // TRY TO REUSE IT
-        if (listener.reuseResource(iKey, iAdditionalArgs, res))
-          // OK: REUSE IT
-          return res;
-
-        // UNABLE TO REUSE IT: THE RESOURE WILL BE DISCARDED AND TRY WITH THE NEXT ONE, IF ANY
+    acquired.incrementAndGet();
+
+    // TRY WITH THE LAST RESOURCE RELEASED BY THE CURRENT THREAD
+    OPooledResource<V> res = lastUsed.get();
+    if (res != null && res.inUse.compareAndSet(false, true) && reuseResource(iKey, iAdditionalArgs, res))
+      return res.resource;
+
+    // POP A RESOURCE
+    while ((res = available.poll()) != null) {
+      res.queued.set(false);
+      if (res.inUse.compareAndSet(false, true) && reuseResource(iKey, iAdditionalArgs, res)) {
+        lastUsed.set(res);
+        return res.resource;
       }
-    } while (!resources.isEmpty());
+      // IN USE OR UNABLE TO REUSE IT: TRY WITH THE NEXT ONE, IF ANY
+    }
 
     // NO AVAILABLE RESOURCES: CREATE A NEW ONE
     try {
-      res = listener.createNewResource(iKey, iAdditionalArgs);
-      return res;
+      res = new OPooledResource<V>(listener.createNewResource(iKey, iAdditionalArgs));
     } catch (RuntimeException e) {
       sem.release();
       // PROPAGATE IT
@@ -73,18 +115,120 @@ public class OResourcePool<K, V> {
       sem.release();
       throw new OLockException("Error on creation of the new resource in the pool", e);
     }
+
+    resources.add(res);
+    lastUsed.set(res);
+    return res.resource;
   }
 
   public void returnResource(final V res) {
-    resources.add(res);
+    OPooledResource<V> pooled = lastUsed.get();
+    if (pooled == null || pooled.resource != res) {
+      pooled = getPooledResource(res);
+      if (pooled == null) {
+        // NOT CREATED BY THIS POOL: ADOPT IT AS AVAILABLE. NO PERMIT WAS TAKEN FOR IT, SO NONE IS RELEASED
+        pooled = new OPooledResource<V>(res);
+        pooled.inUse.set(false);
+        pooled.queued.set(true);
+        resources.add(pooled);
+        available.offer(pooled);
+        lastUsed.set(pooled);
+        return;
+      }
+      lastUsed.set(pooled);
+    }
+
+    if (!pooled.inUse.compareAndSet(true, false))
+      // ALREADY RETURNED
+      return;
+
+    if (pooled.queued.compareAndSet(false, true))
+      available.offer(pooled);
+
     sem.release();
   }
 
+  /**
+   * Returns the resources not in use.
+   */
   public Collection<V> getResources() {
-    return unmodifiableresources;
+    final List<V> result = new ArrayList<V>();
+    for (OPooledResource<V> res : resources)
+      if (!res.inUse.get())
+        result.add(res.resource);
+    return Collections.unmodifiableList(result);
   }
 
   public void close() {
     sem.drainPermits();
   }
+
+  public int getMaxResources() {
+    return maxResources;
+  }
+
+  /**
+   * Returns the number of resources created and still in the pool.
+   */
+  public int getCreatedResources() {
+    return resources.size();
+  }
+
+  public int getInUseResources() {
+    int tot = 0;
+    for (OPooledResource<V> res : resources)
+      if (res.inUse.get())
+        tot++;
+    return tot;
+  }
+
+  /**
+   * Returns the number of resources acquired since the creation of the pool.
+   */
+  public long getAcquired() {
+    return acquired.get();
+  }
+
+  /**
+   * Returns how many times the acquirer waited for a resource to be released.
+   */
+  public long getWaits() {
+    return waits.get();
+  }
+
+  /**
+   * Returns the total time in milliseconds spent waiting for a resource to be released.
+   */
+  public long getWaitTime() {
+    return TimeUnit.NANOSECONDS.toMillis(waitTime.get());
+  }
+
+  private boolean reuseResource(final K iKey, final Object[] iAdditionalArgs, final OPooledResource<V> res) {
+    final boolean reused;
+    try {
+      reused = listener.reuseResource(iKey, iAdditionalArgs, res.resource);
+    } catch (RuntimeException e) {
+      // THE RESOURCE IS STILL VALID: GIVE IT BACK
+      res.inUse.set(false);
+      if (res.queued.compareAndSet(false, true))
+        available.offer(res);
+      sem.release();
+      throw e;
+    }
+
+    if (!reused) {
+      // THE RESOURCE WILL BE DISCARDED
+      resources.remove(res);
+      if (lastUsed.get() == res)
+        lastUsed.remove();
+    }
+    return reused;
+  }
+
+  private OPooledResource<V> getPooledResource(final V iResource) {
+    for (OPooledResource<V> res : resources)
+      if (res.resource == iResource)
+        return res;
+    return null;
+  }
 }
@@ -0,0 +1,168 @@
+package com.orientechnologies.common.concur.resource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.concur.lock.OLockException;
+
+@Test
+public class OResourcePoolTest {
+  private static class Listener implements OResourcePoolListener<String, Object> {
+    private final AtomicInteger created = new AtomicInteger();
+    private volatile boolean    reuse   = true;
+
+    public Object createNewResource(final String iKey, final Object... iAdditionalArgs) {
+      created.incrementAndGet();
+      return new Object();
+    }
+
+    public boolean reuseResource(final String iKey, final Object[] iAdditionalArgs, final Object iValue) {
+      if ("fail".equals(iKey))
+        throw new IllegalStateException();
+      return reuse;
+    }
+  }
+
+  public void testReuseSameThread() {
+    final Listener listener = new Listener();
+    final OResourcePool<String, Object> pool = new OResourcePool<String, Object>(5, listener);
+
+    final Object first = pool.getResource("k", 100);
+    pool.returnResource(first);
+    Assert.assertSame(pool.getResource("k", 100), first);
+
+    final Object second = pool.getResource("k", 100);
+    Assert.assertNotSame(second, first);
+    Assert.assertEquals(pool.getInUseResources(), 2);
+
+    pool.returnResource(first);
+    pool.returnResource(second);
+    // RETURNING TWICE IS IGNORED
+    pool.returnResource(second);
+
+    Assert.assertEquals(listener.created.get(), 2);
+    Assert.assertEquals(pool.getInUseResources(), 0);
+    Assert.assertEquals(pool.getResources().size(), 2);
+    Assert.assertEquals(pool.getAcquired(), 3);
+  }
+
+  public void testDiscard() {
+    final Listener listener = new Listener();
+    final OResourcePool<String, Object> pool = new OResourcePool<String, Object>(5, listener);
+
+    final Object first = pool.getResource("k", 100);
+    pool.returnResource(first);
+
+    listener.reuse = false;
+    Assert.assertNotSame(pool.getResource("k", 100), first);
+    Assert.assertEquals(pool.getCreatedResources(), 1);
+  }
+
+  public void testReuseException() {
+    final OResourcePool<String, Object> pool = new OResourcePool<String, Object>(5, new Listener());
+
+    final Object first = pool.getResource("k", 100);
+    pool.returnResource(first);
+
+    try {
+      pool.getResource("fail", 100);
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      // EXPECTED
+    }
+
+    // THE RESOURCE AND THE PERMIT HAVE BEEN GIVEN BACK
+    Assert.assertEquals(pool.getInUseResources(), 0);
+    Assert.assertSame(pool.getResource("k", 100), first);
+  }
+
+  public void testMaxResources() {
+    final OResourcePool<String, Object> pool = new OResourcePool<String, Object>(2, new Listener());
+
+    // THE POOL ALLOWS MAX + 1 RESOURCES
+    for (int i = 0; i < 3; ++i)
+      pool.getResource("k", 100);
+
+    try {
+      pool.getResource("k", 10);
+      Assert.fail();
+    } catch (OLockException e) {
+      // EXPECTED
+    }
+    Assert.assertEquals(pool.getWaits(), 1);
+  }
+
+  public void testAdoptDoesNotReleasePermits() {
+    final OResourcePool<String, Object> pool = new OResourcePool<String, Object>(2, new Listener());
+
+    final List<Object> resources = new ArrayList<Object>();
+    for (int i = 0; i < 3; ++i)
+      resources.add(pool.getResource("k", 100));
+
+    // NOT CREATED BY THE POOL: IT BECOMES AVAILABLE, BUT THE POOL IS STILL FULL
+    final Object foreign = new Object();
+    pool.returnResource(foreign);
+    Assert.assertEquals(pool.getCreatedResources(), 4);
+    Assert.assertTrue(pool.getResources().contains(foreign));
+
+    try {
+      pool.getResource("k", 10);
+      Assert.fail();
+    } catch (OLockException e) {
+      // EXPECTED
+    }
+
+    pool.returnResource(resources.get(0));
+    pool.getResource("k", 10);
+    try {
+      pool.getResource("k", 10);
+      Assert.fail();
+    } catch (OLockException e) {
+      // EXPECTED
+    }
+  }
+
+  public void testConcurrency() throws InterruptedException {
+    final Listener listener = new Listener();
+    final OResourcePool<String, Object> pool = new OResourcePool<String, Object>(4, listener);
+    final AtomicInteger inUse = new AtomicInteger();
+    final AtomicInteger maxInUse = new AtomicInteger();
+    final AtomicInteger errors = new AtomicInteger();
+
+    final List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 16; ++t)
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 2000; ++i) {
+              final Object res = pool.getResource("k", 10000);
+              final int current = inUse.incrementAndGet();
+              int max;
+              while ((max = maxInUse.get()) < current && !maxInUse.compareAndSet(max, current))
+                ;
+              inUse.decrementAndGet();
+              pool.returnResource(res);
+            }
+          } catch (Exception e) {
+            errors.incrementAndGet();
+          }
+        }
+      });
+
+    for (Thread t : threads)
+      t.start();
+    for (Thread t : threads)
+      t.join();
+
+    Assert.assertEquals(errors.get(), 0);
+    Assert.assertTrue(maxInUse.get() <= 5);
+    Assert.assertTrue(listener.created.get() <= 5);
+    Assert.assertEquals(pool.getInUseResources(), 0);
+    Assert.assertEquals(pool.getAcquired(), 16 * 2000);
+  }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.cache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.orientechnologies.common.concur.resource.OSharedResourceAdaptiveExternal;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.memory.OMemoryWatchDog;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+
+/**
+ * Cache with a budget of entries and of memory. The memory of each record is estimated from the size of its serialized buffer. The
+ * memory used by all the instances is summed up and checked against a global budget, so the sessions can't fill the heap all
+ * together. When a budget is exceeded the least recently used records not dirty nor pinned are evicted. The evicted records are
+ * kept by weak reference: if the application still uses them they are returned again, otherwise the GC reclaims them.<br/>
+ * The low memory listener of the {@link OMemoryWatchDog} is registered only when no memory budget is set.
+ *
+ * @author Luca Garulli
+ */
+public class OBudgetedCache implements OCache {
+  private static final int                                     ENTRY_OVERHEAD = 96;
+  private static final AtomicLong                              globalMemory   = new AtomicLong();
+
+  private final OSharedResourceAdaptiveExternal                lock           = new OSharedResourceAdaptiveExternal(
+                                                                                  OGlobalConfiguration.ENVIRONMENT_CONCURRENT
+                                                                                      .getValueAsBoolean(), 0, true);
+  private final AtomicBoolean                                  enabled        = new AtomicBoolean(false);
+
+  private final LinkedHashMap<ORID, OCachedEntry>              cache          = new LinkedHashMap<ORID, OCachedEntry>(16, 0.75f,
+                                                                                  true);
+  private final Map<ORID, OEvictedReference>                   evicted        = new HashMap<ORID, OEvictedReference>();
+  private final ReferenceQueue<ORecordInternal<?>>             evictedQueue   = new ReferenceQueue<ORecordInternal<?>>();
+  private final int                                            limit;
+  private final long                                           maxMemory;
+  private long                                                 usedMemory;
+
+  protected OMemoryWatchDog.Listener                           lowMemoryListener;
+
+  private static class OCachedEntry {
+    private final ORecordInternal<?> record;
+    private final int                size;
+
+    private OCachedEntry(final ORecordInternal<?> iRecord) {
+      record = iRecord;
+      size = iRecord.getSize() + ENTRY_OVERHEAD;
+    }
+  }
+
+  private static class OEvictedReference extends WeakReference<ORecordInternal<?>> {
+    private final ORID rid;
+
+    private OEvictedReference(final ORecordInternal<?> iRecord, final ReferenceQueue<ORecordInternal<?>> iQueue) {
+      super(iRecord, iQueue);
+      rid = iRecord.getIdentity();
+    }
+  }
+
+  /**
+   * Creates a new cache.
+   *
+   * @param iLimit
+   *          Maximum number of records, 0 or negative means no limit
+   * @param iMaxMemory
+   *          Maximum memory in bytes, 0 or negative means no limit
+   */
+  public OBudgetedCache(final int iLimit, final long iMaxMemory) {
+    limit = iLimit;
+    maxMemory = iMaxMemory;
+  }
+
+  public void startup() {
+    if (maxMemory <= 0 && getGlobalMaxMemory() <= 0)
+      lowMemoryListener = Orient.instance().getMemoryWatchDog().addListener(new OLowMemoryListener());
+    enable();
+  }
+
+  public void shutdown() {
+    if (lowMemoryListener != null) {
+      Orient.instance().getMemoryWatchDog().removeListener(lowMemoryListener);
+      lowMemoryListener = null;
+    }
+    disable();
+  }
+
+  public boolean isEnabled() {
+    return enabled.get();
+  }
+
+  public boolean enable() {
+    return enabled.compareAndSet(false, true);
+  }
+
+  public boolean disable() {
+    clear();
+    return enabled.compareAndSet(true, false);
+  }
+
+  public ORecordInternal<?> get(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    lock.acquireExclusiveLock();
+    try {
+      final OCachedEntry entry = cache.get(id);
+      if (entry != null)
+        return entry.record;
+
+      // LOOK INTO THE EVICTED RECORDS STILL IN USE
+      final OEvictedReference ref = evicted.remove(id);
+      if (ref == null)
+        return null;
+
+      final ORecordInternal<?> record = ref.get();
+      if (record != null)
+        putEntry(record);
+      return record;
+
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
+  public ORecordInternal<?> put(final ORecordInternal<?> record) {
+    if (!isEnabled())
+      return null;
+
+    lock.acquireExclusiveLock();
+    try {
+      evicted.remove(record.getIdentity());
+      return putEntry(record);
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
+  public ORecordInternal<?> remove(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    lock.acquireExclusiveLock();
+    try {
+      final OEvictedReference ref = evicted.remove(id);
+
+      final OCachedEntry entry = cache.remove(id);
+      if (entry != null) {
+        releaseMemory(entry.size);
+        return entry.record;
+      }
+
+      return ref != null ? ref.get() : null;
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
+  public void clear() {
+    if (!isEnabled())
+      return;
+
+    lock.acquireExclusiveLock();
+    try {
+      cache.clear();
+      evicted.clear();
+      releaseMemory(usedMemory);
+      while (evictedQueue.poll() != null)
+        ;
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
+  public int size() {
+    lock.acquireSharedLock();
+    try {
+      return cache.size();
+    } finally {
+      lock.releaseSharedLock();
+    }
+  }
+
+  public int limit() {
+    return limit;
+  }
+
+  public Collection<ORID> keys() {
+    lock.acquireExclusiveLock();
+    try {
+      return new ArrayList<ORID>(cache.keySet());
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
+  public void lock(final ORID id) {
+    lock.acquireExclusiveLock();
+  }
+
+  public void unlock(final ORID id) {
+    lock.releaseExclusiveLock();
+  }
+
+  /**
+   * Returns the estimated memory used by the records of this cache.
+   */
+  public long getUsedMemory() {
+    lock.acquireSharedLock();
+    try {
+      return usedMemory;
+    } finally {
+      lock.releaseSharedLock();
+    }
+  }
+
+  public long getMaxMemory() {
+    return maxMemory;
+  }
+
+  /**
+   * Returns the estimated memory used by all the budgeted caches.
+   */
+  public static long getGlobalUsedMemory() {
+    return globalMemory.get();
+  }
+
+  public static long getGlobalMaxMemory() {
+    return OGlobalConfiguration.CACHE_LEVEL1_MAX_MEMORY_GLOBAL.getValueAsLong();
+  }
+
+  private ORecordInternal<?> putEntry(final ORecordInternal<?> record) {
+    purgeEvicted();
+
+    final OCachedEntry entry = new OCachedEntry(record);
+    final OCachedEntry previous = cache.put(record.getIdentity(), entry);
+    if (previous != null)
+      releaseMemory(previous.size);
+    reserveMemory(entry.size);
+
+    evict();
+
+    return previous != null ? previous.record : null;
+  }
+
+  /**
+   * Evicts the least recently used records until all the budgets are respected. Dirty and pinned records are never evicted.
+   */
+  private void evict() {
+    final long globalMax = getGlobalMaxMemory();
+    if (!isOverBudget(globalMax))
+      return;
+
+    for (Iterator<OCachedEntry> it = cache.values().iterator(); it.hasNext() && isOverBudget(globalMax);) {
+      final OCachedEntry entry = it.next();
+      if (entry.record.isDirty() || entry.record.isPinned() == Boolean.TRUE)
+        continue;
+
+      it.remove();
+      releaseMemory(entry.size);
+      evicted.put(entry.record.getIdentity(), new OEvictedReference(entry.record, evictedQueue));
+    }
+  }
+
+  private boolean isOverBudget(final long iGlobalMax) {
+    return (limit > 0 && cache.size() > limit) || (maxMemory > 0 && usedMemory > maxMemory)
+        || (iGlobalMax > 0 && globalMemory.get() > iGlobalMax);
+  }
+
+  /**
+   * Removes the references to the evicted records already reclaimed by the GC.
+   */
+  private void purgeEvicted() {
+    OEvictedReference ref;
+    while ((ref = (OEvictedReference) evictedQueue.poll()) != null)
+      if (evicted.get(ref.rid) == ref)
+        evicted.remove(ref.rid);
+  }
+
+  private void reserveMemory(final long iSize) {
+    usedMemory += iSize;
+    globalMemory.addAndGet(iSize);
+  }
+
+  private void releaseMemory(final long iSize) {
+    usedMemory -= iSize;
+    globalMemory.addAndGet(-iSize);
+  }
+
+  class OLowMemoryListener implements OMemoryWatchDog.Listener {
+    public void memoryUsageLow(final long freeMemory, final long freeMemoryPercentage) {
+      try {
+        if (size() == 0)
+          return;
+
+        OLogManager.instance().debug(this, "Low memory (%d%%): clearing %d cached records", freeMemoryPercentage, size());
+
+        lock.acquireExclusiveLock();
+        try {
+          for (Iterator<OCachedEntry> it = cache.values().iterator(); it.hasNext();) {
+            final OCachedEntry entry = it.next();
+            if (!entry.record.isDirty() && entry.record.isPinned() != Boolean.TRUE) {
+              it.remove();
+              releaseMemory(entry.size);
+            }
+          }
+        } finally {
+          lock.releaseExclusiveLock();
+        }
+      } catch (Exception e) {
+        OLogManager.instance().error(this, "Error occurred during budgeted cache cleanup", e);
+      }
+    }
+  }
+}
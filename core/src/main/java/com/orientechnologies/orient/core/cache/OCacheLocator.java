@@ -15,6 +15,7 @@
  */
 package com.orientechnologies.orient.core.cache;
 
+import static com.orientechnologies.orient.core.config.OGlobalConfiguration.CACHE_LEVEL1_MAX_MEMORY;
 import static com.orientechnologies.orient.core.config.OGlobalConfiguration.CACHE_LEVEL1_SIZE;
 import static com.orientechnologies.orient.core.config.OGlobalConfiguration.CACHE_LEVEL2_IMPL;
 import static com.orientechnologies.orient.core.config.OGlobalConfiguration.CACHE_LEVEL2_SIZE;
@@ -28,7 +29,7 @@ import com.orientechnologies.common.log.OLogManager;
  */
 public class OCacheLocator {
   public OCache primaryCache() {
-    return new ODefaultCache(null, CACHE_LEVEL1_SIZE.getValueAsInteger());
+    return new OBudgetedCache(CACHE_LEVEL1_SIZE.getValueAsInteger(), CACHE_LEVEL1_MAX_MEMORY.getValueAsLong());
   }
 
   public OCache secondaryCache(final String iStorageName) {
@@ -17,6 +17,8 @@ package com.orientechnologies.orient.core.cache;
 
 import static com.orientechnologies.orient.core.metadata.OMetadata.CLUSTER_INDEX_NAME;
 
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
@@ -53,6 +55,17 @@ public class OLevel1RecordCache extends OAbstractRecordCache {
 
     super.startup();
     setEnable(OGlobalConfiguration.CACHE_LEVEL1_ENABLED.getValueAsBoolean());
+
+    if (underlying instanceof OBudgetedCache)
+      Orient
+          .instance()
+          .getProfiler()
+          .registerHookValue(profilerPrefix + "memory", "Estimated memory used by the records in cache", METRIC_TYPE.SIZE,
+              new OProfilerHookValue() {
+                public Object getValue() {
+                  return ((OBudgetedCache) underlying).getUsedMemory();
+                }
+              }, profilerMetadataPrefix + "memory");
   }
 
   /**
@@ -133,6 +146,9 @@ public class OLevel1RecordCache extends OAbstractRecordCache {
   public void shutdown() {
     super.shutdown();
     secondary = null;
+
+    if (underlying instanceof OBudgetedCache)
+      Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "memory");
   }
 
   @Override
@@ -158,6 +174,9 @@ public class OLevel1RecordCache extends OAbstractRecordCache {
 
   @Override
   public String toString() {
+    if (underlying instanceof OBudgetedCache)
+      return "DB level1 cache records = " + getSize() + ", maxSize= " + getMaxSize() + ", memory= "
+          + ((OBudgetedCache) underlying).getUsedMemory() + ", maxMemory= " + ((OBudgetedCache) underlying).getMaxMemory();
     return "DB level1 cache records = " + getSize() + ", maxSize= " + getMaxSize();
   }
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.command;
+
+import com.orientechnologies.common.concur.OTimeoutException;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.exception.OCommandInterruptedException;
+
+/**
+ * Watches the execution of a command in the current thread. The executors call {@link #checkRecord()} for every record browsed and
+ * {@link #checkResult()} for every record returned, after skip, projections, grouping and ordering: the command is interrupted as
+ * soon as it's cancelled by another thread or it exceeds the limits on records browsed, results and execution time. The checks
+ * are cheap: a volatile read and a counter, while the clock is consulted once every 64 records.<br/>
+ * <br/>
+ * The counters are volatile and updated by the executing thread only: other threads, like the ones listing the running commands,
+ * read the last values without locking.
+ *
+ * @author Luca Garulli
+ *
+ */
+public class OCommandMonitor {
+  private static final ThreadLocal<OCommandMonitor> CURRENT         = new ThreadLocal<OCommandMonitor>();
+  private static final int                          CLOCK_CHECK_MASK = 63;
+
+  private final String                              text;
+  private final long                                startedOn;
+  private final long                                timeout;
+  private final long                                maxRecords;
+  private final long                                maxResults;
+  private volatile boolean                          cancelled;
+  private volatile long                             records;
+  private volatile long                             results;
+
+  /**
+   * Creates a new monitor.
+   *
+   * @param iText
+   *          Text of the command
+   * @param iTimeout
+   *          Maximum execution time in milliseconds, 0 means no limit
+   * @param iMaxRecords
+   *          Maximum number of records to browse, 0 means no limit
+   * @param iMaxResults
+   *          Maximum number of records in the result set, 0 means no limit
+   */
+  public OCommandMonitor(final String iText, final long iTimeout, final long iMaxRecords, final long iMaxResults) {
+    text = iText;
+    startedOn = System.currentTimeMillis();
+    timeout = iTimeout;
+    maxRecords = iMaxRecords;
+    maxResults = iMaxResults;
+  }
+
+  /**
+   * Returns the monitor of the command executed by the current thread, if any.
+   */
+  public static OCommandMonitor get() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Binds the monitor to the current thread, or unbinds the current one if null.
+   */
+  public static void set(final OCommandMonitor iMonitor) {
+    if (iMonitor == null)
+      CURRENT.remove();
+    else
+      CURRENT.set(iMonitor);
+  }
+
+  /**
+   * Accounts a browsed record.
+   *
+   * @throws OCommandInterruptedException
+   *           if the command has been cancelled
+   * @throws OTimeoutException
+   *           if the command is running for more than the timeout
+   * @throws OCommandExecutionException
+   *           if the command browsed too many records
+   */
+  public void checkRecord() {
+    checkCancelled();
+
+    ++records;
+    if (maxRecords > 0 && records > maxRecords)
+      throw new OCommandExecutionException("Command exceeded the limit of " + maxRecords + " records browsed: " + text);
+
+    if (timeout > 0 && (records & CLOCK_CHECK_MASK) == 0)
+      checkTimeout();
+  }
+
+  /**
+   * Accounts a record returned in the result set.
+   *
+   * @throws OCommandInterruptedException
+   *           if the command has been cancelled
+   * @throws OCommandExecutionException
+   *           if the result set is too big
+   */
+  public void checkResult() {
+    checkCancelled();
+
+    ++results;
+    if (maxResults > 0 && results > maxResults)
+      throw new OCommandExecutionException("Command exceeded the limit of " + maxResults + " records in the result set: " + text);
+  }
+
+  /**
+   * Checks if the command has been cancelled, without accounting anything.
+   *
+   * @throws OCommandInterruptedException
+   *           if the command has been cancelled
+   */
+  public void checkCancelled() {
+    if (cancelled)
+      throw new OCommandInterruptedException("Command cancelled: " + text);
+  }
+
+  /**
+   * Checks the execution time.
+   *
+   * @throws OTimeoutException
+   *           if the command is running for more than the timeout
+   */
+  public void checkTimeout() {
+    if (timeout > 0 && System.currentTimeMillis() - startedOn > timeout)
+      throw new OTimeoutException("Command execution timeout exceed (" + timeout + "ms): " + text);
+  }
+
+  /**
+   * Requests the interruption of the command: the executing thread stops at the next check.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public long getStartedOn() {
+    return startedOn;
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+
+  public long getMaxRecords() {
+    return maxRecords;
+  }
+
+  public long getMaxResults() {
+    return maxResults;
+  }
+
+  public long getRecords() {
+    return records;
+  }
+
+  public long getResults() {
+    return results;
+  }
+
+  @Override
+  public String toString() {
+    return text + " (running for " + (System.currentTimeMillis() - startedOn) + "ms, records=" + records + ", results="
+        + results + (cancelled ? ", cancelled" : "") + ")";
+  }
+}
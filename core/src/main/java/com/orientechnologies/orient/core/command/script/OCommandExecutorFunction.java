@@ -67,47 +67,46 @@ public class OCommandExecutorFunction extends OCommandExecutorAbstract {
     final OFunction f = db.getMetadata().getFunctionLibrary().getFunction(parserText);
 
     final OScriptManager scriptManager = Orient.instance().getScriptManager();
-    final ScriptEngine scriptEngine = scriptManager.getEngine(f.getLanguage());
-    final Bindings binding = scriptManager.bind(scriptEngine.getBindings(ScriptContext.ENGINE_SCOPE), (ODatabaseRecordTx) db,
-        iContext, iArgs);
-
+    // THE ENGINE COMES WITH THE FUNCTION LIBRARY ALREADY COMPILED
+    final ScriptEngine scriptEngine = scriptManager.acquireDatabaseEngine(db, f.getLanguage());
     try {
-      // COMPILE FUNCTION LIBRARY
-      final String lib = scriptManager.getLibrary(db, f.getLanguage());
-      if (lib != null)
-        try {
-          scriptEngine.eval(lib);
-        } catch (ScriptException e) {
-          scriptManager.getErrorMessage(e, lib);
-        }
-
-      if (scriptEngine instanceof Invocable) {
-        // INVOKE AS FUNCTION. PARAMS ARE PASSED BY POSITION
-        final Invocable invocableEngine = (Invocable) scriptEngine;
-        Object[] args = null;
-        if (iArgs != null) {
-          args = new Object[iArgs.size()];
-          int i = 0;
-          for (Entry<Object, Object> arg : iArgs.entrySet())
-            args[i++] = arg.getValue();
+      // BIND IN THE GLOBAL SCOPE TO LEAVE THE LIBRARY IN THE ENGINE SCOPE UNTOUCHED
+      final Bindings binding = scriptManager.bind(scriptEngine.getBindings(ScriptContext.GLOBAL_SCOPE), (ODatabaseRecordTx) db,
+          iContext, iArgs);
+
+      try {
+        if (scriptEngine instanceof Invocable) {
+          // INVOKE AS FUNCTION. PARAMS ARE PASSED BY POSITION
+          final Invocable invocableEngine = (Invocable) scriptEngine;
+          Object[] args = null;
+          if (iArgs != null) {
+            args = new Object[iArgs.size()];
+            int i = 0;
+            for (Entry<Object, Object> arg : iArgs.entrySet())
+              args[i++] = arg.getValue();
+          }
+          return invocableEngine.invokeFunction(parserText, args);
+
+        } else {
+          // INVOKE THE CODE SNIPPET
+          final Object[] args = iArgs == null ? null : iArgs.values().toArray();
+          return scriptEngine.eval(scriptManager.getFunctionInvoke(f, args), binding);
         }
-        return invocableEngine.invokeFunction(parserText, args);
-
-      } else {
-        // INVOKE THE CODE SNIPPET
-        final Object[] args = iArgs == null ? null : iArgs.values().toArray();
-        return scriptEngine.eval(scriptManager.getFunctionInvoke(f, args), binding);
+      } catch (ScriptException e) {
+        throw new OCommandScriptException("Error on execution of the script", request.getText(), e.getColumnNumber(), e);
+      } catch (NoSuchMethodException e) {
+        throw new OCommandScriptException("Error on execution of the script", request.getText(), 0, e);
+      } catch (OCommandScriptException e) {
+        // PASS THROUGH
+        throw e;
+
+      } finally {
+        scriptManager.unbind(binding);
+        // THE ENGINE IS REUSED: DON'T LEAK THE VARIABLES OF THIS INVOCATION TO THE NEXT ONE
+        binding.clear();
       }
-    } catch (ScriptException e) {
-      throw new OCommandScriptException("Error on execution of the script", request.getText(), e.getColumnNumber(), e);
-    } catch (NoSuchMethodException e) {
-      throw new OCommandScriptException("Error on execution of the script", request.getText(), 0, e);
-    } catch (OCommandScriptException e) {
-      // PASS THROUGH
-      throw e;
-
     } finally {
-      scriptManager.unbind(binding);
+      scriptManager.releaseDatabaseEngine(db.getURL(), f.getLanguage(), scriptEngine);
     }
   }
 
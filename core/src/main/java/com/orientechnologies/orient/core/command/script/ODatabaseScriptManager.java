@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.command.script;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+import com.orientechnologies.common.concur.lock.OLockException;
+import com.orientechnologies.common.concur.resource.OResourcePool;
+import com.orientechnologies.common.concur.resource.OResourcePoolListener;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseComplex;
+
+/**
+ * Pools the script engines of a database, one pool per language. Every engine is created with the library of the database
+ * functions already evaluated, so the functions can be invoked directly. The engines are used by one thread at a time: the
+ * variables of the invocation are bound in the GLOBAL_SCOPE bindings of the engine, that is cleared after the invocation, and
+ * never in the ENGINE_SCOPE, that contains the library. The variables assigned by the functions without declaring them end in the
+ * ENGINE_SCOPE: at release the ENGINE_SCOPE is restored as it was after the evaluation of the library.
+ * <p>
+ * When all the pooled engines are in use, like with functions that call other functions, a temporary engine is created and
+ * discarded at release. When the library changes {@link OScriptManager#close(String)} discards the whole manager: the engines still
+ * in use are discarded at release.
+ *
+ * @author Luca Garulli
+ *
+ */
+public class ODatabaseScriptManager {
+  private final OScriptManager                                            scriptManager;
+  private final ConcurrentMap<String, OResourcePool<String, ScriptEngine>> pools   = new ConcurrentHashMap<String, OResourcePool<String, ScriptEngine>>();
+  // ENGINE SCOPE OF THE POOLED ENGINES AFTER THE EVALUATION OF THE LIBRARY
+  private final ConcurrentMap<ScriptEngine, Map<String, Object>>          pooled  = new ConcurrentHashMap<ScriptEngine, Map<String, Object>>();
+  private volatile boolean                                                closed;
+
+  public ODatabaseScriptManager(final OScriptManager iScriptManager) {
+    scriptManager = iScriptManager;
+  }
+
+  public ScriptEngine acquireEngine(final ODatabaseComplex<?> iDatabase, final String iLanguage) {
+    final String language = iLanguage.toLowerCase();
+
+    OResourcePool<String, ScriptEngine> pool = pools.get(language);
+    if (pool == null) {
+      pool = new OResourcePool<String, ScriptEngine>(OGlobalConfiguration.SCRIPT_POOL.getValueAsInteger(),
+          new OResourcePoolListener<String, ScriptEngine>() {
+            public ScriptEngine createNewResource(final String iKey, final Object... iAdditionalArgs) {
+              final ScriptEngine engine = createEngine((ODatabaseComplex<?>) iAdditionalArgs[0], iKey);
+              pooled.put(engine, new HashMap<String, Object>(engine.getBindings(ScriptContext.ENGINE_SCOPE)));
+              return engine;
+            }
+
+            public boolean reuseResource(final String iKey, final Object[] iAdditionalArgs, final ScriptEngine iValue) {
+              return true;
+            }
+          });
+
+      final OResourcePool<String, ScriptEngine> existent = pools.putIfAbsent(language, pool);
+      if (existent != null)
+        pool = existent;
+    }
+
+    try {
+      // DON'T WAIT: A FUNCTION CAN INVOKE OTHER FUNCTIONS IN THE SAME THREAD WHILE HOLDING ITS ENGINE
+      return pool.getResource(language, 0, iDatabase);
+    } catch (OLockException e) {
+      // POOL EXHAUSTED: USE A TEMPORARY ENGINE
+      return createEngine(iDatabase, language);
+    }
+  }
+
+  public void releaseEngine(final String iLanguage, final ScriptEngine iEngine) {
+    final Map<String, Object> library = pooled.get(iEngine);
+    if (closed || library == null)
+      // TEMPORARY ENGINE OR CREATED WITH A PREVIOUS VERSION OF THE LIBRARY: DISCARD IT
+      return;
+
+    resetBindings(iEngine.getBindings(ScriptContext.ENGINE_SCOPE), library);
+
+    final OResourcePool<String, ScriptEngine> pool = pools.get(iLanguage.toLowerCase());
+    if (pool != null)
+      pool.returnResource(iEngine);
+  }
+
+  public void close() {
+    closed = true;
+    for (OResourcePool<String, ScriptEngine> pool : pools.values())
+      pool.close();
+    pools.clear();
+    pooled.clear();
+  }
+
+  /**
+   * Removes the variables added to the engine scope and restores the ones overwritten.
+   */
+  protected void resetBindings(final Bindings iBindings, final Map<String, Object> iLibrary) {
+    for (String name : new ArrayList<String>(iBindings.keySet()))
+      if (!iLibrary.containsKey(name))
+        iBindings.remove(name);
+
+    for (Entry<String, Object> entry : iLibrary.entrySet())
+      if (iBindings.get(entry.getKey()) != entry.getValue())
+        iBindings.put(entry.getKey(), entry.getValue());
+  }
+
+  protected ScriptEngine createEngine(final ODatabaseComplex<?> iDatabase, final String iLanguage) {
+    final ScriptEngine engine = scriptManager.createEngine(iLanguage);
+    engine.setBindings(new SimpleBindings(), ScriptContext.GLOBAL_SCOPE);
+
+    // COMPILE FUNCTION LIBRARY
+    final String lib = scriptManager.getLibrary(iDatabase, iLanguage);
+    if (lib != null)
+      try {
+        engine.eval(lib);
+      } catch (ScriptException e) {
+        scriptManager.getErrorMessage(e, lib);
+      }
+
+    return engine;
+  }
+}
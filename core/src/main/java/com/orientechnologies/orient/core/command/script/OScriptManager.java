@@ -23,6 +23,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.script.Bindings;
 import javax.script.ScriptEngine;
@@ -59,6 +61,7 @@ public class OScriptManager {
   protected String                           defaultLanguage    = DEF_LANGUAGE;
   protected Map<String, OScriptFormatter>    formatters         = new HashMap<String, OScriptFormatter>();
   protected List<OScriptInjection>           injections         = new ArrayList<OScriptInjection>();
+  protected ConcurrentMap<String, ODatabaseScriptManager> dbManagers = new ConcurrentHashMap<String, ODatabaseScriptManager>();
   protected static final Object[]            EMPTY_PARAMS       = new Object[] {};
   protected static final int                 LINES_AROUND_ERROR = 5;
 
@@ -165,6 +168,67 @@ public class OScriptManager {
     return scriptEngine;
   }
 
+  /**
+   * Creates a new engine for the language, even if the language has a shared engine.
+   */
+  public ScriptEngine createEngine(final String iLanguage) {
+    if (iLanguage == null)
+      throw new OCommandScriptException("No language was specified");
+
+    final String lang = iLanguage.toLowerCase();
+    final ScriptEngine sharedEngine = sharedEngines.get(lang);
+    final ScriptEngineFactory scriptEngineFactory = sharedEngine != null ? sharedEngine.getFactory() : engines.get(lang);
+    if (scriptEngineFactory == null)
+      throw new OCommandScriptException("Unsupported language: " + iLanguage + ". Supported languages are: "
+          + getSupportedLanguages());
+
+    return scriptEngineFactory.getScriptEngine();
+  }
+
+  /**
+   * Acquires an engine from the pool of the database with the library of the database functions already compiled. The engine must
+   * be released with {@link #releaseDatabaseEngine(String, String, ScriptEngine)} passing the database URL.
+   * 
+   * @param iDatabase
+   *          Current database instance
+   * @param iLanguage
+   *          Language name
+   */
+  public ScriptEngine acquireDatabaseEngine(final ODatabaseComplex<?> iDatabase, final String iLanguage) {
+    if (iLanguage == null)
+      throw new OCommandScriptException("No language was specified");
+
+    // THE NAME IS NOT UNIQUE: DATABASES WITH THE SAME NAME CAN BE IN DIFFERENT PATHS OR STORAGES
+    final String dbURL = iDatabase.getURL();
+    ODatabaseScriptManager dbManager = dbManagers.get(dbURL);
+    if (dbManager == null) {
+      dbManager = new ODatabaseScriptManager(this);
+      final ODatabaseScriptManager existent = dbManagers.putIfAbsent(dbURL, dbManager);
+      if (existent != null)
+        dbManager = existent;
+    }
+    return dbManager.acquireEngine(iDatabase, iLanguage);
+  }
+
+  public void releaseDatabaseEngine(final String iDatabaseURL, final String iLanguage, final ScriptEngine iEngine) {
+    final ODatabaseScriptManager dbManager = dbManagers.get(iDatabaseURL);
+    if (dbManager != null)
+      dbManager.releaseEngine(iLanguage, iEngine);
+  }
+
+  /**
+   * Discards the engines of the database. Called when the library of the database functions changes and when the database is
+   * dropped.
+   * 
+   * @param iDatabaseURL
+   *          Database URL
+   */
+  public void close(final String iDatabaseURL) {
+    final ODatabaseScriptManager dbManager = dbManagers.remove(iDatabaseURL);
+    if (dbManager != null)
+      dbManager.close();
+  }
+
   public Iterable<String> getSupportedLanguages() {
     final HashSet<String> result = new HashSet<String>();
     result.addAll(sharedEngines.keySet());
@@ -21,6 +21,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import com.orientechnologies.orient.core.command.OCommand;
+import com.orientechnologies.orient.core.command.OCommandMonitor;
 import com.orientechnologies.orient.core.command.OCommandPredicate;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 
@@ -81,10 +82,15 @@ public class OTraverse implements OCommand, Iterable<OIdentifiable>, Iterator<OI
     if (limit > 0 && resultCount >= limit)
       return null;
 
+    final OCommandMonitor monitor = OCommandMonitor.get();
+
     OIdentifiable result;
     OTraverseAbstractProcess<?> toProcess;
     // RESUME THE LAST PROCESS
     while ((toProcess = currentProcess()) != null) {
+      if (monitor != null)
+        monitor.checkRecord();
+
       result = (OIdentifiable) toProcess.process();
       if (result != null) {
         resultCount++;
@@ -19,6 +19,7 @@ import java.util.Iterator;
 
 import com.orientechnologies.common.collection.OMultiValue;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.db.record.ORecordLazyList;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 
 public class OTraverseFieldProcess extends OTraverseAbstractProcess<Iterator<String>> {
@@ -37,9 +38,12 @@ public class OTraverseFieldProcess extends OTraverseAbstractProcess<Iterator<Str
 			if (fieldValue != null) {
 				final OTraverseAbstractProcess<?> subProcess;
 
-				if (OMultiValue.isMultiValue(fieldValue))
+				if (OMultiValue.isMultiValue(fieldValue)) {
+					if (fieldValue instanceof ORecordLazyList)
+						// LOAD ALL THE LINKED RECORDS AT ONCE
+						((ORecordLazyList) fieldValue).convertLinks2Records();
 					subProcess = new OTraverseMultiValueProcess(command, OMultiValue.getMultiValueIterator(fieldValue));
-				else if (fieldValue instanceof OIdentifiable && ((OIdentifiable) fieldValue).getRecord() instanceof ODocument)
+				} else if (fieldValue instanceof OIdentifiable && ((OIdentifiable) fieldValue).getRecord() instanceof ODocument)
 					subProcess = new OTraverseRecordProcess(command, (ODocument) ((OIdentifiable) fieldValue).getRecord());
 				else
 					continue;
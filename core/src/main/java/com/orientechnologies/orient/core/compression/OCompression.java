@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.compression;
+
+/**
+ * Compresses the record content before it is written by the storage and uncompresses it after it has been read. Implementations
+ * must be thread safe because the same instance is shared by all the threads working against a cluster.
+ * 
+ * @author Luca Garulli
+ * @see OCompressionFactory
+ */
+public interface OCompression {
+  public byte[] compress(byte[] content);
+
+  public byte[] uncompress(byte[] content);
+
+  /**
+   * Returns the name of the algorithm, such as "snappy" or "deflate".
+   */
+  public String getName();
+
+  /**
+   * Returns the full specification in the form &lt;name&gt;[:&lt;configuration&gt;] accepted by
+   * {@link OCompressionFactory#getCompression(String)}. This is the value stored in the cluster configuration.
+   */
+  public String getSpecification();
+}
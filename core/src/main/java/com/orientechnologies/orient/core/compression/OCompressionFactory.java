@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.compression;
+
+import java.util.Locale;
+
+import com.orientechnologies.orient.core.exception.OConfigurationException;
+import com.orientechnologies.orient.core.serialization.OBase64Utils;
+
+/**
+ * Creates the compression instances from their specification in the form &lt;name&gt;[:&lt;configuration&gt;]. Supported
+ * specifications are:
+ * <ul>
+ * <li><b>nothing</b>, no compression</li>
+ * <li><b>snappy</b></li>
+ * <li><b>deflate[:&lt;level&gt;]</b>, with level between 1 and 9</li>
+ * <li><b>dictionary:&lt;base64-dictionary&gt;</b>, deflate primed with a shared dictionary</li>
+ * </ul>
+ * 
+ * @author Luca Garulli
+ */
+public class OCompressionFactory {
+  public static final char                SEPARATOR = ':';
+  public static final OCompressionFactory INSTANCE  = new OCompressionFactory();
+
+  /**
+   * Returns the compression for the specification, or the default one if the specification is null.
+   */
+  public OCompression getCompression(final String iSpecification, final OCompression iDefault) {
+    if (iSpecification == null)
+      return iDefault;
+    return getCompression(iSpecification);
+  }
+
+  public OCompression getCompression(final String iSpecification) {
+    if (iSpecification == null)
+      throw new OConfigurationException("Compression not specified");
+
+    final int sep = iSpecification.indexOf(SEPARATOR);
+    final String name = (sep > -1 ? iSpecification.substring(0, sep) : iSpecification).trim().toLowerCase(Locale.ENGLISH);
+    final String configuration = sep > -1 ? iSpecification.substring(sep + 1).trim() : null;
+
+    if (name.equals(ONothingCompression.NAME) || name.equals("none"))
+      return ONothingCompression.INSTANCE;
+
+    if (name.equals(OSnappyCompression.NAME))
+      return OSnappyCompression.INSTANCE;
+
+    if (name.equals(ODeflateCompression.NAME)) {
+      if (configuration == null || configuration.length() == 0)
+        return new ODeflateCompression();
+      try {
+        return new ODeflateCompression(Integer.parseInt(configuration));
+      } catch (NumberFormatException e) {
+        throw new OConfigurationException("Invalid deflate compression level '" + configuration + "'");
+      }
+    }
+
+    if (name.equals(ODictionaryCompression.NAME)) {
+      // AN EMPTY DICTIONARY ("dictionary:") IS VALID: IT IS THE RESULT OF THE TRAINING ON AN EMPTY CLUSTER
+      if (configuration == null)
+        throw new OConfigurationException("Dictionary compression requires a dictionary. Use " + OCompressionSampler.class.getSimpleName()
+            + " to train it from the cluster's records");
+      return new ODictionaryCompression(OBase64Utils.decode(configuration));
+    }
+
+    throw new OConfigurationException("Unsupported compression '" + iSpecification + "'. Supported are: "
+        + ONothingCompression.NAME + ", " + OSnappyCompression.NAME + ", " + ODeflateCompression.NAME + "[:<level>], "
+        + ODictionaryCompression.NAME);
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.compression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.storage.OCluster;
+import com.orientechnologies.orient.core.storage.OClusterEntryIterator;
+import com.orientechnologies.orient.core.storage.OPhysicalPosition;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OStorage;
+
+/**
+ * Samples the records of a cluster to measure the ratio and the speed of the available compressions and to suggest the best one.
+ * The samples are taken at regular intervals along the whole cluster. The dictionary is trained on half of the samples and all
+ * the compressions are measured on the other half, so the dictionary is not favoured by compressing the records it contains.
+ * <p>
+ * It also resolves the values of ALTER CLUSTER &lt;cluster&gt; COMPRESSION &lt;value&gt; where, besides the specifications
+ * supported by {@link OCompressionFactory}, "auto" applies the suggested compression and "dictionary" trains a new dictionary from
+ * the cluster's records.
+ * 
+ * @author Luca Garulli
+ */
+public class OCompressionSampler {
+  public static final String AUTO            = "auto";
+  public static final int    DEFAULT_SAMPLES = 1000;
+
+  // BELOW THIS SAVING THE CONTENT IS CONSIDERED ALREADY COMPRESSED AND THE CPU IS NOT WORTH PAYING
+  private static final float MIN_SAVING      = 0.1f;
+  // COMPRESSIONS WITH A RESULT WITHIN THIS TOLERANCE FROM THE BEST ONE ARE CONSIDERED EQUIVALENT: THE FASTEST WINS
+  private static final float SIZE_TOLERANCE  = 0.05f;
+
+  private final OStorage     storage;
+  private final int          clusterId;
+
+  public static class OResult {
+    public final OCompression compression;
+    public final long         originalSize;
+    public final long         compressedSize;
+    public final long         elapsedNanos;
+
+    public OResult(final OCompression iCompression, final long iOriginalSize, final long iCompressedSize, final long iElapsedNanos) {
+      compression = iCompression;
+      originalSize = iOriginalSize;
+      compressedSize = iCompressedSize;
+      elapsedNanos = iElapsedNanos;
+    }
+
+    /**
+     * Returns the compressed size as a fraction of the original one: lower is better.
+     */
+    public float getRatio() {
+      return originalSize > 0 ? (float) compressedSize / originalSize : 1f;
+    }
+
+    public String getLabel() {
+      return OCompressionSampler.getLabel(compression);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ENGLISH, "%s: ratio=%.3f size=%d/%d time=%.2fms", getLabel(), getRatio(), compressedSize,
+          originalSize, elapsedNanos / 1000000f);
+    }
+  }
+
+  public OCompressionSampler(final OStorage iStorage, final int iClusterId) {
+    storage = iStorage;
+    clusterId = iClusterId;
+  }
+
+  /**
+   * Returns a short description of the compression: its specification, but the dictionary that is too long to be displayed.
+   */
+  public static String getLabel(final OCompression iCompression) {
+    return iCompression instanceof ODictionaryCompression ? iCompression.getName() : iCompression.getSpecification();
+  }
+
+  /**
+   * Reads up to iMaxRecords records taken at regular intervals along the cluster.
+   */
+  public List<byte[]> sample(final int iMaxRecords) {
+    final OCluster cluster = storage.getClusterById(clusterId);
+    final long entries = cluster.getEntries();
+    if (entries == 0 || iMaxRecords <= 0)
+      return Collections.emptyList();
+
+    final long step = Math.max(1, entries / iMaxRecords);
+
+    final List<ORecordId> rids = new ArrayList<ORecordId>();
+    long i = 0;
+    for (Iterator<OPhysicalPosition> it = new OClusterEntryIterator(cluster); it.hasNext() && rids.size() < iMaxRecords; ++i) {
+      final OPhysicalPosition ppos = it.next();
+      if (i % step == 0)
+        rids.add(new ORecordId(clusterId, ppos.clusterPosition));
+    }
+
+    final Map<ORecordId, ORawBuffer> buffers = storage.readRecords(rids);
+
+    final List<byte[]> samples = new ArrayList<byte[]>(rids.size());
+    for (ORecordId rid : rids) {
+      final ORawBuffer buffer = buffers.get(rid);
+      if (buffer != null && buffer.buffer != null && buffer.buffer.length > 0)
+        samples.add(buffer.buffer);
+    }
+    return samples;
+  }
+
+  /**
+   * Measures all the available compressions against the samples. The results are sorted by compressed size.
+   */
+  public List<OResult> evaluate(final List<byte[]> iSamples) {
+    final List<byte[]> training = new ArrayList<byte[]>();
+    final List<byte[]> evaluation = new ArrayList<byte[]>();
+    if (iSamples.size() < 2)
+      evaluation.addAll(iSamples);
+    else
+      for (int i = 0; i < iSamples.size(); ++i)
+        (i % 2 == 0 ? training : evaluation).add(iSamples.get(i));
+
+    final List<OCompression> candidates = new ArrayList<OCompression>(Arrays.asList(ONothingCompression.INSTANCE,
+        OSnappyCompression.INSTANCE, new ODeflateCompression(1), new ODeflateCompression(), new ODeflateCompression(9)));
+    if (!training.isEmpty())
+      candidates.add(new ODictionaryCompression(ODictionaryCompression.train(training, ODictionaryCompression.MAX_DICTIONARY_SIZE)));
+
+    final List<OResult> results = new ArrayList<OResult>(candidates.size());
+    for (OCompression compression : candidates)
+      results.add(measure(compression, evaluation));
+
+    Collections.sort(results, new Comparator<OResult>() {
+      public int compare(final OResult o1, final OResult o2) {
+        return o1.compressedSize < o2.compressedSize ? -1 : (o1.compressedSize == o2.compressedSize ? 0 : 1);
+      }
+    });
+    return results;
+  }
+
+  /**
+   * Picks the compression to use: "nothing" if no compression saves enough space, otherwise the fastest among the ones close to
+   * the best ratio.
+   */
+  public OCompression suggest(final List<OResult> iResults) {
+    OResult best = null;
+    for (OResult result : iResults)
+      if (best == null || result.compressedSize < best.compressedSize)
+        best = result;
+
+    if (best == null || best.getRatio() > 1f - MIN_SAVING)
+      return ONothingCompression.INSTANCE;
+
+    OResult fastest = best;
+    for (OResult result : iResults)
+      if (result.compressedSize <= best.compressedSize * (1f + SIZE_TOLERANCE) && result.elapsedNanos < fastest.elapsedNanos
+          && result.getRatio() <= 1f - MIN_SAVING)
+        fastest = result;
+
+    return fastest.compression;
+  }
+
+  public OCompression suggest() {
+    return suggest(evaluate(sample(DEFAULT_SAMPLES)));
+  }
+
+  /**
+   * Resolves the value of the COMPRESSION cluster attribute. Returns null if the value is null, meaning the default compression of
+   * the cluster type.
+   */
+  public OCompression resolve(final String iValue) {
+    if (iValue == null)
+      return null;
+
+    final String value = iValue.trim();
+    if (value.equalsIgnoreCase(AUTO))
+      return suggest();
+
+    if (value.equalsIgnoreCase(ODictionaryCompression.NAME))
+      return new ODictionaryCompression(ODictionaryCompression.train(sample(DEFAULT_SAMPLES),
+          ODictionaryCompression.MAX_DICTIONARY_SIZE));
+
+    return OCompressionFactory.INSTANCE.getCompression(value);
+  }
+
+  private OResult measure(final OCompression iCompression, final List<byte[]> iSamples) {
+    long originalSize = 0;
+    long compressedSize = 0;
+
+    final long begin = System.nanoTime();
+    for (byte[] sample : iSamples) {
+      final byte[] compressed = iCompression.compress(sample);
+      iCompression.uncompress(compressed);
+
+      originalSize += sample.length;
+      compressedSize += compressed.length;
+    }
+
+    return new OResult(iCompression, originalSize, compressedSize, System.nanoTime() - begin);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.compression;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.orientechnologies.orient.core.exception.OConfigurationException;
+import com.orientechnologies.orient.core.exception.OStorageException;
+
+/**
+ * Deflate compression with a configurable level between 1 (fastest) and 9 (best ratio). The compressed content is prefixed by
+ * the length of the original content to allocate the exact buffer on uncompress.
+ * 
+ * @author Luca Garulli
+ */
+public class ODeflateCompression implements OCompression {
+  public static final String NAME          = "deflate";
+  public static final int    DEFAULT_LEVEL = 6;
+
+  private static final int   LENGTH_SIZE   = 4;
+
+  protected final int        level;
+
+  public ODeflateCompression() {
+    this(DEFAULT_LEVEL);
+  }
+
+  public ODeflateCompression(final int iLevel) {
+    if (iLevel < Deflater.BEST_SPEED || iLevel > Deflater.BEST_COMPRESSION)
+      throw new OConfigurationException("Invalid deflate compression level " + iLevel + ". Range is " + Deflater.BEST_SPEED + "-"
+          + Deflater.BEST_COMPRESSION);
+    level = iLevel;
+  }
+
+  public byte[] compress(final byte[] content) {
+    final Deflater deflater = new Deflater(level);
+    try {
+      prepare(deflater);
+      deflater.setInput(content);
+      deflater.finish();
+
+      // THE DEFLATED CONTENT CAN BE A BIT BIGGER THAN THE ORIGINAL ONE IF NOT COMPRESSIBLE
+      byte[] buffer = new byte[LENGTH_SIZE + content.length + (content.length >> 6) + 64];
+      int length = LENGTH_SIZE;
+      while (!deflater.finished()) {
+        if (length == buffer.length) {
+          final byte[] newBuffer = new byte[buffer.length << 1];
+          System.arraycopy(buffer, 0, newBuffer, 0, length);
+          buffer = newBuffer;
+        }
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+
+      buffer[0] = (byte) (content.length >>> 24);
+      buffer[1] = (byte) (content.length >>> 16);
+      buffer[2] = (byte) (content.length >>> 8);
+      buffer[3] = (byte) content.length;
+
+      final byte[] result = new byte[length];
+      System.arraycopy(buffer, 0, result, 0, length);
+      return result;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  public byte[] uncompress(final byte[] content) {
+    final int length = ((content[0] & 0xFF) << 24) | ((content[1] & 0xFF) << 16) | ((content[2] & 0xFF) << 8)
+        | (content[3] & 0xFF);
+
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(content, LENGTH_SIZE, content.length - LENGTH_SIZE);
+
+      final byte[] result = new byte[length];
+      int read = 0;
+      while (read < length) {
+        final int bytes = inflater.inflate(result, read, length - read);
+        if (bytes == 0) {
+          if (inflater.needsDictionary())
+            prepare(inflater);
+          else if (inflater.finished() || inflater.needsInput())
+            throw new OStorageException("Compressed content is truncated: expected " + length + " bytes but found " + read);
+        }
+        read += bytes;
+      }
+      return result;
+
+    } catch (DataFormatException e) {
+      throw new OStorageException("Error on uncompressing content with " + getName() + " compression", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  public String getName() {
+    return NAME;
+  }
+
+  public String getSpecification() {
+    return NAME + OCompressionFactory.SEPARATOR + level;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  protected void prepare(final Deflater iDeflater) {
+  }
+
+  protected void prepare(final Inflater iInflater) {
+    throw new OStorageException("Compressed content requires a dictionary but " + getName() + " compression has none");
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.compression;
+
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.orientechnologies.orient.core.serialization.OBase64Utils;
+
+/**
+ * Deflate compression primed with a dictionary shared by all the records of a cluster. Small records compress poorly one at a
+ * time because each one repeats the same field names: with a dictionary containing them the repetitions are replaced by
+ * references since the first record. The dictionary is stored in the cluster configuration encoded in Base64, so changing it
+ * requires re-compressing the cluster's records.
+ * 
+ * @author Luca Garulli
+ */
+public class ODictionaryCompression extends ODeflateCompression {
+  public static final String NAME                = "dictionary";
+  public static final int    MAX_DICTIONARY_SIZE = 32 * 1024;
+
+  private final byte[]       dictionary;
+
+  public ODictionaryCompression(final byte[] iDictionary) {
+    this.dictionary = iDictionary;
+  }
+
+  /**
+   * Builds a dictionary from a sample of records. Deflate gives shorter references to the end of the dictionary, so the samples
+   * are appended up to the maximum dictionary size in reverse order to keep the first ones, usually the most representative, at
+   * the end.
+   * 
+   * @param iSamples
+   *          Record contents, the most representative first
+   * @param iMaxSize
+   *          Maximum size of the dictionary, up to {@link #MAX_DICTIONARY_SIZE}
+   */
+  public static byte[] train(final List<byte[]> iSamples, final int iMaxSize) {
+    final int maxSize = Math.min(iMaxSize, MAX_DICTIONARY_SIZE);
+
+    int size = 0;
+    int samples = 0;
+    for (byte[] sample : iSamples) {
+      if (size + sample.length > maxSize)
+        break;
+      size += sample.length;
+      samples++;
+    }
+
+    final byte[] dictionary = new byte[size];
+    int offset = size;
+    for (int i = 0; i < samples; ++i) {
+      final byte[] sample = iSamples.get(i);
+      offset -= sample.length;
+      System.arraycopy(sample, 0, dictionary, offset, sample.length);
+    }
+    return dictionary;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public String getSpecification() {
+    return NAME + OCompressionFactory.SEPARATOR + OBase64Utils.encodeBytes(dictionary);
+  }
+
+  public byte[] getDictionary() {
+    return dictionary;
+  }
+
+  @Override
+  protected void prepare(final Deflater iDeflater) {
+    if (dictionary.length > 0)
+      iDeflater.setDictionary(dictionary);
+  }
+
+  @Override
+  protected void prepare(final Inflater iInflater) {
+    iInflater.setDictionary(dictionary);
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.compression;
+
+import org.iq80.snappy.Snappy;
+
+/**
+ * Fast compression with a moderate ratio. It is the default of the paginated clusters.
+ * 
+ * @author Luca Garulli
+ */
+public class OSnappyCompression implements OCompression {
+  public static final String             NAME     = "snappy";
+  public static final OSnappyCompression INSTANCE = new OSnappyCompression();
+
+  public byte[] compress(final byte[] content) {
+    return Snappy.compress(content);
+  }
+
+  public byte[] uncompress(final byte[] content) {
+    return Snappy.uncompress(content, 0, content.length);
+  }
+
+  public String getName() {
+    return NAME;
+  }
+
+  public String getSpecification() {
+    return NAME;
+  }
+}
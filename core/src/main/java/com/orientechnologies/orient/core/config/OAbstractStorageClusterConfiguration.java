@@ -20,6 +20,7 @@ public abstract class OAbstractStorageClusterConfiguration implements OStorageCl
 	public String	name;
 	public String	location;
 	protected int	dataSegmentId;
+	protected String	compression;
 
 	public OAbstractStorageClusterConfiguration(final String name, final int id, final int iDataSegmentId) {
 		this.name = name;
@@ -46,4 +47,12 @@ public abstract class OAbstractStorageClusterConfiguration implements OStorageCl
 	public String getLocation() {
 		return location;
 	}
+
+	public String getCompression() {
+		return compression;
+	}
+
+	public void setCompression(final String iCompression) {
+		compression = iCompression;
+	}
 }
@@ -84,11 +84,23 @@ public enum OGlobalConfiguration {
   STORAGE_USE_TOMBSTONES("storage.useTombstones", "When record will be deleted its cluster"
       + " position will not be freed but tombstone will be placed instead", Boolean.class, false),
 
+  STORAGE_SCAN_READ_AHEAD("storage.scan.readAhead",
+      "Maximum number of records read with one storage call while a cluster is browsed forward. 0 disables the read-ahead",
+      Integer.class, 256),
+
   // CACHE
   CACHE_LEVEL1_ENABLED("cache.level1.enabled", "Use the level-1 cache", Boolean.class, true),
 
   CACHE_LEVEL1_SIZE("cache.level1.size", "Size of the cache that keeps the record in memory", Integer.class, -1),
 
+  CACHE_LEVEL1_MAX_MEMORY("cache.level1.maxMemory",
+      "Maximum memory used by the level-1 cache of each database instance, estimated from the serialized size of the records. 0 means no limit",
+      Long.class, 16 * 1024 * 1024),
+
+  CACHE_LEVEL1_MAX_MEMORY_GLOBAL("cache.level1.maxMemoryGlobal",
+      "Maximum memory used by the level-1 caches of all the database instances together. 0 means no limit", Long.class,
+      Runtime.getRuntime().maxMemory() / 4),
+
   CACHE_LEVEL2_ENABLED("cache.level2.enabled", "Use the level-2 cache", Boolean.class, true),
 
   CACHE_LEVEL2_SIZE("cache.level2.size", "Size of the cache that keeps the record in memory", Integer.class, -1),
@@ -202,6 +214,12 @@ public enum OGlobalConfiguration {
   MVRBTREE_RID_NODE_SAVE_MEMORY("mvrbtree.ridNodeSaveMemory",
       "Save memory usage by avoid keeping RIDs in memory but creating them at every access", Boolean.class, Boolean.FALSE),
 
+  // BAG OF RIDS
+  RID_BAG_EMBEDDED_TO_TREE_THRESHOLD(
+      "ridBag.embeddedToTreeThreshold",
+      "Valid for set of rids owned by a record. It's the threshold as number of entries to move the embedded sorted array of rids to the MVRB-Tree. -1 means never move to the tree, 0 means always use the tree",
+      Integer.class, 20000),
+
   // COLLECTIONS
   LAZYSET_WORK_ON_STREAM("lazyset.workOnStream", "Upon add avoid unmarshalling set", Boolean.class, true),
 
@@ -216,6 +234,18 @@ public enum OGlobalConfiguration {
       "Max distance in bytes between holes to cause their defrag. Set it to -1 to use dynamic size. Beware that if the db is huge moving blocks to defrag could be expensive",
       Integer.class, 32768),
 
+  FILE_COMPACTION_THRESHOLD("file.compaction.threshold",
+      "Percentage of the data segment size lost in holes that starts the background compaction. 0 = disabled", Integer.class, 0),
+
+  FILE_COMPACTION_CHECK_INTERVAL("file.compaction.checkInterval",
+      "Interval in ms between the checks of the fragmentation of the data segments. 0 = disabled", Integer.class, 300000),
+
+  FILE_COMPACTION_BATCH_SIZE("file.compaction.batchSize",
+      "Max number of records moved by the compaction while the storage is locked", Integer.class, 100),
+
+  FILE_COMPACTION_BATCH_DELAY("file.compaction.batchDelay",
+      "Pause in ms of the compaction between two batches to let the other operations run", Integer.class, 50),
+
   FILE_MMAP_USE_OLD_MANAGER("file.mmap.useOldManager",
       "Manager that will be used to handle mmap files. true = USE OLD MANAGER, false = USE NEW MANAGER", boolean.class, false),
 
@@ -305,6 +335,10 @@ public enum OGlobalConfiguration {
 
   NETWORK_BINARY_DEBUG("network.binary.debug", "Debug mode: print all data incoming on the binary channel", Boolean.class, false),
 
+  NETWORK_BINARY_STORED_RECORDS("network.binary.storedRecords",
+      "Sends the records loaded by the clients as they are stored, still compressed, leaving the decompression to the client",
+      Boolean.class, true),
+
   NETWORK_HTTP_MAX_CONTENT_LENGTH("network.http.maxLength", "TCP/IP max content length in bytes for HTTP requests", Integer.class,
       1000000),
 
@@ -313,6 +347,10 @@ public enum OGlobalConfiguration {
   NETWORK_HTTP_SESSION_EXPIRE_TIMEOUT("network.http.sessionExpireTimeout",
       "Timeout after which an http session is considered tp have expired (seconds)", Integer.class, 300),
 
+  NETWORK_HTTP_SESSION_MAX_PER_USER("network.http.sessionMaxPerUser",
+      "Max number of http sessions of the same user on the same database: when exceeded the least recently used session is removed. 0 = unlimited",
+      Integer.class, 100),
+
   // PROFILER
   PROFILER_ENABLED("profiler.enabled", "Enable the recording of statistics and counters", Boolean.class, false,
       new OConfigurationChangeCallback() {
@@ -358,6 +396,25 @@ public enum OGlobalConfiguration {
   // COMMAND
   COMMAND_TIMEOUT("command.timeout", "Default timeout for commands expressed in milliseconds", Long.class, 0),
 
+  COMMAND_MAX_RECORDS("command.maxRecords",
+      "Maximum number of records a command executed by the server can browse before to be interrupted. 0 means no limit",
+      Long.class, 0),
+
+  COMMAND_MAX_RESULTS("command.maxResults",
+      "Maximum number of records a command executed by the server can return before to be interrupted. 0 means no limit",
+      Long.class, 0),
+
+  SCRIPT_POOL("script.pool.maxSize",
+      "Maximum number of script engines with the function library already compiled to pool per database and language",
+      Integer.class, 20),
+
+  SQL_GRAPH_PATH_MAX_DEPTH("sql.graph.pathMaxDepth",
+      "Maximum number of hops explored by the path functions like shortestPath() and dijkstra(). 0 means unlimited",
+      Integer.class, 0),
+
+  SQL_GRAPH_PATH_MAX_VISITED("sql.graph.pathMaxVisited",
+      "Maximum number of vertices visited by the path functions before to abort the search. 0 means unlimited", Integer.class, 0),
+
   // CLIENT
   CLIENT_CHANNEL_MIN_POOL("client.channel.minPool", "Minimum pool size", Integer.class, 1),
 
@@ -381,7 +438,11 @@ public enum OGlobalConfiguration {
       Level.class, Level.FINE),
 
   SERVER_LOG_DUMP_CLIENT_EXCEPTION_FULLSTACKTRACE("server.log.dumpClientExceptionFullStackTrace",
-      "Dumps the full stack trace of the exception to sent to the client", Level.class, Boolean.TRUE);
+      "Dumps the full stack trace of the exception to sent to the client", Level.class, Boolean.TRUE),
+
+  // DISTRIBUTED
+  DISTRIBUTED_ALIGN_SNAPSHOT_THRESHOLD("distributed.align.snapshotThreshold",
+      "Number of journaled operations to align over which the whole database is sent instead of the delta", Integer.class, 50000);
 
   private final String                 key;
   private final Object                 defValue;
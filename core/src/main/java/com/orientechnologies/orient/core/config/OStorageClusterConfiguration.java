@@ -24,4 +24,11 @@ public interface OStorageClusterConfiguration {
 	public String getLocation();
 
 	public int getDataSegmentId();
+
+	/**
+	 * Returns the compression specification of the cluster's records, or null to use the default of the cluster type.
+	 */
+	public String getCompression();
+
+	public void setCompression(String iCompression);
 }
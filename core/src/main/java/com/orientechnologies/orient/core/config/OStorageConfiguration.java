@@ -40,6 +40,12 @@ import com.orientechnologies.orient.core.version.OVersionFactory;
  * <ul>
  * 3 = introduced file directory in physical segments and data-segment id in clusters
  * </ul>
+ * <ul>
+ * 6 = introduced compression in clusters
+ * </ul>
+ * <ul>
+ * 7 = introduced the delta format in the sets of RIDs embedded in the records
+ * </ul>
  * </li>
  * 
  * @author Luca
@@ -53,7 +59,7 @@ public class OStorageConfiguration implements OSerializableStream {
   public static final String                DEFAULT_TIMEZONE = "UTC";
   public static final String                DEFAULT_CHARSET  = "UTF-8";
 
-  public static final int                   CURRENT_VERSION  = 5;
+  public static final int                   CURRENT_VERSION  = 7;
 
   public int                                version          = -1;
   public String                             name;
@@ -223,6 +229,9 @@ public class OStorageConfiguration implements OSerializableStream {
       } else
         throw new IllegalArgumentException("Unsupported cluster type: " + clusterType);
 
+      if (version >= 6)
+        currentCluster.setCompression(read(values[index++]));
+
       // MAKE ROOMS, EVENTUALLY FILLING EMPTIES ENTRIES
       for (int c = clusters.size(); c <= clusterId; ++c)
         clusters.add(null);
@@ -314,6 +323,8 @@ public class OStorageConfiguration implements OSerializableStream {
       } else if (c instanceof OStorageEHClusterConfiguration) {
         write(buffer, "h");
       }
+
+      write(buffer, c.getCompression());
     }
 
     write(buffer, dataSegments.size());
@@ -412,6 +423,7 @@ public class OStorageConfiguration implements OSerializableStream {
   }
 
   public void create() throws IOException {
+    version = CURRENT_VERSION;
     storage.createRecord(0, CONFIG_RID, new byte[] { 0, 0, 0, 0 }, OVersionFactory.instance().createVersion(),
         ORecordBytes.RECORD_TYPE, (byte) 0, null);
   }
@@ -13,6 +13,7 @@ public class OStorageEHClusterConfiguration implements OStorageClusterConfigurat
   public String                          name;
   public String                          location;
   public int                             dataSegmentId;
+  public String                          compression;
 
   public OStorageEHClusterConfiguration(OStorageConfiguration root, int id, String name, String location, int dataSegmentId) {
     this.root = root;
@@ -41,4 +42,14 @@ public class OStorageEHClusterConfiguration implements OStorageClusterConfigurat
   public int getDataSegmentId() {
     return dataSegmentId;
   }
+
+  @Override
+  public String getCompression() {
+    return compression;
+  }
+
+  @Override
+  public void setCompression(final String iCompression) {
+    compression = iCompression;
+  }
 }
@@ -22,6 +22,7 @@ public class OStoragePhysicalClusterConfigurationLocal extends OStorageSegmentCo
 
   private OStorageFileConfiguration holeFile;
   private int                       dataSegmentId;
+  private String                    compression;
 
   public OStoragePhysicalClusterConfigurationLocal(final OStorageConfiguration iStorageConfiguration, final int iId,
       final int iDataSegmentId) {
@@ -75,4 +76,12 @@ public class OStoragePhysicalClusterConfigurationLocal extends OStorageSegmentCo
     this.dataSegmentId = dataSegmentId;
   }
 
+  public String getCompression() {
+    return compression;
+  }
+
+  public void setCompression(final String iCompression) {
+    compression = iCompression;
+  }
+
 }
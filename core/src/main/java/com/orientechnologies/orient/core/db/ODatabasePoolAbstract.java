@@ -16,11 +16,12 @@
 package com.orientechnologies.orient.core.db;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.orientechnologies.common.concur.lock.OLockException;
 import com.orientechnologies.common.concur.resource.OResourcePool;
@@ -34,10 +35,10 @@ import com.orientechnologies.orient.core.storage.OStorage;
 
 public abstract class ODatabasePoolAbstract<DB extends ODatabase> implements OResourcePoolListener<String, DB>, OOrientListener {
 
-  private final HashMap<String, OResourcePool<String, DB>> pools = new HashMap<String, OResourcePool<String, DB>>();
-  private int                                              maxSize;
-  private int                                              timeout;
-  protected Object                                         owner;
+  private final ConcurrentMap<String, OResourcePool<String, DB>> pools = new ConcurrentHashMap<String, OResourcePool<String, DB>>();
+  private int                                                    maxSize;
+  private int                                                    timeout;
+  protected Object                                               owner;
 
   public ODatabasePoolAbstract(final Object iOwner, final int iMinSize, final int iMaxSize) {
     this(iOwner, iMinSize, iMaxSize, OGlobalConfiguration.CLIENT_CONNECT_POOL_WAIT_TIMEOUT.getValueAsInteger());
@@ -58,31 +59,32 @@ public abstract class ODatabasePoolAbstract<DB extends ODatabase> implements ORe
       throws OLockException {
     final String dbPooledName = OIOUtils.getUnixFileName(iUserName + "@" + iURL);
 
-    synchronized (pools) {
-      OResourcePool<String, DB> pool = pools.get(dbPooledName);
-      if (pool == null)
-        // CREATE A NEW ONE
-        pool = new OResourcePool<String, DB>(maxSize, this);
+    OResourcePool<String, DB> pool = pools.get(dbPooledName);
+    if (pool == null) {
+      // CREATE A NEW ONE
+      pool = new OResourcePool<String, DB>(maxSize, this);
 
       final DB db = pool.getResource(iURL, timeout, iUserName, iUserPassword, iOptionalParams);
 
-      // PUT IN THE POOL MAP ONLY IF AUTHENTICATION SUCCEED
-      pools.put(dbPooledName, pool);
+      // PUT IN THE POOL MAP ONLY IF AUTHENTICATION SUCCEED. IF ANOTHER THREAD CREATED THE SAME POOL IN THE MEANWHILE, CLOSE THIS ONE:
+      // THE DATABASE WILL BE ADOPTED BY THE OTHER POOL WHEN RELEASED
+      if (pools.putIfAbsent(dbPooledName, pool) != null)
+        pool.close();
       return db;
     }
+
+    return pool.getResource(iURL, timeout, iUserName, iUserPassword, iOptionalParams);
   }
 
   public void release(final DB iDatabase) {
     final String dbPooledName = iDatabase instanceof ODatabaseComplex ? ((ODatabaseComplex<?>) iDatabase).getUser().getName() + "@"
         + iDatabase.getURL() : iDatabase.getURL();
 
-    synchronized (pools) {
-      final OResourcePool<String, DB> pool = pools.get(dbPooledName);
-      if (pool == null)
-        throw new OLockException("Cannot release a database URL not acquired before. URL: " + iDatabase.getName());
+    final OResourcePool<String, DB> pool = pools.get(dbPooledName);
+    if (pool == null)
+      throw new OLockException("Cannot release a database URL not acquired before. URL: " + iDatabase.getName());
 
-      pool.returnResource(iDatabase);
-    }
+    pool.returnResource(iDatabase);
   }
 
   public DB reuseResource(final String iKey, final DB iValue) {
@@ -123,7 +125,7 @@ public abstract class ODatabasePoolAbstract<DB extends ODatabase> implements ORe
 
       if (pool != null) {
         for (DB db : pool.getResources()) {
-          if (db.getStorage().getStatus() == OStorage.STATUS.OPEN)
+          if (db.getStorage() != null && db.getStorage().getStatus() == OStorage.STATUS.OPEN)
             try {
               OLogManager.instance().debug(this, "Closing pooled database '%s'...", db.getName());
               ((ODatabasePooled) db).forceClose();
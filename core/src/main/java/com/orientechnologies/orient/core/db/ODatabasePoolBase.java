@@ -15,10 +15,17 @@
  */
 package com.orientechnologies.orient.core.db;
 
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.orientechnologies.common.concur.resource.OResourcePool;
 import com.orientechnologies.orient.core.exception.OSecurityAccessException;
+import com.orientechnologies.orient.core.exception.OSecurityException;
+import com.orientechnologies.orient.core.metadata.security.OUser;
+import com.orientechnologies.orient.core.security.OSecurityManager;
 
 /**
  * Database pool base class.
@@ -32,14 +39,34 @@ public abstract class ODatabasePoolBase<DB extends ODatabase> extends Thread {
   protected final String              userName;
   protected final String              userPassword;
 
+  /**
+   * Passwords already checked per user and database: avoids the check against the user record, serialized on the shared digest, at
+   * every acquire. Only a salted digest of the password is kept, with the stored hash of the user to check it again if the
+   * password of the user changes.
+   */
+  private final ConcurrentMap<String, OCheckedPassword> checkedPasswords = new ConcurrentHashMap<String, OCheckedPassword>();
+  private final byte[]                                  salt             = new byte[16];
+
+  private static class OCheckedPassword {
+    private final byte[] passwordDigest;
+    private final String hash;
+
+    private OCheckedPassword(final byte[] iPasswordDigest, final String iHash) {
+      passwordDigest = iPasswordDigest;
+      hash = iHash;
+    }
+  }
+
   protected ODatabasePoolBase() {
     url = userName = userPassword = null;
+    new SecureRandom().nextBytes(salt);
   }
 
   protected ODatabasePoolBase(final String iURL, final String iUserName, final String iUserPassword) {
     url = iURL;
     userName = iUserName;
     userPassword = iUserPassword;
+    new SecureRandom().nextBytes(salt);
   }
 
   public ODatabasePoolBase<DB> setup() {
@@ -73,7 +100,7 @@ public abstract class ODatabasePoolBase<DB extends ODatabase> extends Thread {
                 if (iValue.getStorage().isClosed())
                   // STORAGE HAS BEEN CLOSED: REOPEN IT
                   iValue.getStorage().open((String) iAdditionalArgs[0], (String) iAdditionalArgs[1], null);
-                else if (!((ODatabaseComplex<?>) iValue).getUser().checkPassword((String) iAdditionalArgs[1]))
+                else if (!checkPassword(iKey, ((ODatabaseComplex<?>) iValue).getUser(), (String) iAdditionalArgs[1]))
                   throw new OSecurityAccessException(iValue.getName(), "User or password not valid for database: '"
                       + iValue.getName() + "'");
 
@@ -87,6 +114,36 @@ public abstract class ODatabasePoolBase<DB extends ODatabase> extends Thread {
     return this;
   }
 
+  protected boolean checkPassword(final String iURL, final OUser iUser, final String iPassword) {
+    final String key = iUser.getName() + "@" + iURL;
+    final String hash = iUser.getPassword();
+
+    final OCheckedPassword checked = checkedPasswords.get(key);
+    if (checked != null && checked.hash.equals(hash))
+      return MessageDigest.isEqual(checked.passwordDigest, digestPassword(iPassword));
+
+    if (!iUser.checkPassword(iPassword))
+      return false;
+
+    if (hash != null)
+      checkedPasswords.put(key, new OCheckedPassword(digestPassword(iPassword), hash));
+    return true;
+  }
+
+  /**
+   * Hashes the password with the salt of the pool. A new digest is used on every call to not contend the one of the security
+   * manager.
+   */
+  private byte[] digestPassword(final String iPassword) {
+    try {
+      final MessageDigest md = MessageDigest.getInstance(OSecurityManager.ALGORITHM);
+      md.update(salt);
+      return md.digest(iPassword.getBytes("UTF-8"));
+    } catch (Exception e) {
+      throw new OSecurityException("Cannot hash the password", e);
+    }
+  }
+
   /**
    * Acquires a connection from the pool using the configured URL, user-name and user-password. If the pool is empty, then the
    * caller thread will wait for it.
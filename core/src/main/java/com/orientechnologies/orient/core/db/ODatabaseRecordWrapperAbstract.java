@@ -15,7 +15,9 @@
  */
 package com.orientechnologies.orient.core.db;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.orientechnologies.orient.core.command.OCommandRequest;
@@ -243,6 +245,10 @@ public abstract class ODatabaseRecordWrapperAbstract<DB extends ODatabaseRecord>
     return (RET) underlying.getRecord(iIdentifiable);
   }
 
+  public Map<ORID, ORecordInternal<?>> loadRecords(final Collection<? extends OIdentifiable> iRecordIds) {
+    return underlying.loadRecords(iRecordIds);
+  }
+
   public <RET extends ORecordInternal<?>> RET load(final ORecordInternal<?> iRecord) {
     return (RET) underlying.load(iRecord);
   }
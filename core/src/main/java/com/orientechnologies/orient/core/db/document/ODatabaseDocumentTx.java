@@ -33,7 +33,7 @@ import com.orientechnologies.orient.core.exception.ODatabaseException;
 import com.orientechnologies.orient.core.exception.OValidationException;
 import com.orientechnologies.orient.core.id.OClusterPosition;
 import com.orientechnologies.orient.core.index.OIndex;
-import com.orientechnologies.orient.core.index.OIndexMVRBTreeAbstract;
+import com.orientechnologies.orient.core.index.OIndexInternal;
 import com.orientechnologies.orient.core.iterator.ORecordIteratorClass;
 import com.orientechnologies.orient.core.iterator.ORecordIteratorCluster;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
@@ -55,26 +55,26 @@ public class ODatabaseDocumentTx extends ODatabaseRecordWrapperAbstract<ODatabas
     super(iSource);
   }
 
-  private void freezeIndexes(final List<OIndexMVRBTreeAbstract<?>> indexesToFreeze, boolean throwException) {
+  private void freezeIndexes(final List<OIndexInternal<?>> indexesToFreeze, boolean throwException) {
     if (indexesToFreeze != null) {
-      for (OIndexMVRBTreeAbstract<?> indexToLock : indexesToFreeze) {
+      for (OIndexInternal<?> indexToLock : indexesToFreeze) {
         indexToLock.freeze(throwException);
       }
     }
   }
 
-  private void flushIndexes(List<OIndexMVRBTreeAbstract<?>> indexesToFlush) {
-    for (OIndexMVRBTreeAbstract<?> index : indexesToFlush) {
+  private void flushIndexes(List<OIndexInternal<?>> indexesToFlush) {
+    for (OIndexInternal<?> index : indexesToFlush) {
       index.flush();
     }
   }
 
-  private List<OIndexMVRBTreeAbstract<?>> prepareIndexesToFreeze(Collection<? extends OIndex<?>> indexes) {
-    List<OIndexMVRBTreeAbstract<?>> indexesToFreeze = null;
+  private List<OIndexInternal<?>> prepareIndexesToFreeze(Collection<? extends OIndex<?>> indexes) {
+    List<OIndexInternal<?>> indexesToFreeze = null;
     if (indexes != null && !indexes.isEmpty()) {
-      indexesToFreeze = new ArrayList<OIndexMVRBTreeAbstract<?>>(indexes.size());
+      indexesToFreeze = new ArrayList<OIndexInternal<?>>(indexes.size());
       for (OIndex<?> index : indexes) {
-        indexesToFreeze.add((OIndexMVRBTreeAbstract<?>) index.getInternal());
+        indexesToFreeze.add((OIndexInternal<?>) index.getInternal());
       }
 
       Collections.sort(indexesToFreeze, new Comparator<OIndex<?>>() {
@@ -109,7 +109,7 @@ public class ODatabaseDocumentTx extends ODatabaseRecordWrapperAbstract<ODatabas
     final long startTime = Orient.instance().getProfiler().startChrono();
 
     final Collection<? extends OIndex<?>> indexes = getMetadata().getIndexManager().getIndexes();
-    final List<OIndexMVRBTreeAbstract<?>> indexesToLock = prepareIndexesToFreeze(indexes);
+    final List<OIndexInternal<?>> indexesToLock = prepareIndexesToFreeze(indexes);
 
     freezeIndexes(indexesToLock, true);
     flushIndexes(indexesToLock);
@@ -132,7 +132,7 @@ public class ODatabaseDocumentTx extends ODatabaseRecordWrapperAbstract<ODatabas
     final long startTime = Orient.instance().getProfiler().startChrono();
 
     final Collection<? extends OIndex<?>> indexes = getMetadata().getIndexManager().getIndexes();
-    final List<OIndexMVRBTreeAbstract<?>> indexesToLock = prepareIndexesToFreeze(indexes);
+    final List<OIndexInternal<?>> indexesToLock = prepareIndexesToFreeze(indexes);
 
     freezeIndexes(indexesToLock, false);
     flushIndexes(indexesToLock);
@@ -15,9 +15,11 @@
  */
 package com.orientechnologies.orient.core.db.graph;
 
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -28,8 +30,11 @@ import com.orientechnologies.orient.core.db.record.ODatabaseRecordAbstract;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecordTx;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.iterator.OLazyWrapperIterator;
 import com.orientechnologies.orient.core.iterator.ORecordIteratorClass;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.storage.OStorage;
@@ -69,12 +74,30 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
   public static final String EDGE_FIELD_OUT         = "out";
   public static final String LABEL                  = "label";
 
+  /**
+   * Prefix of the vertex fields that partition the edges by label, like "out@friend". The '@' is reserved to the record attributes,
+   * so the names can't collide with the user fields. The prefix alone is the field with the labels.
+   */
+  public static final String VERTEX_FIELD_OUT_LABELS = VERTEX_FIELD_OUT + "@";
+  public static final String VERTEX_FIELD_IN_LABELS  = VERTEX_FIELD_IN + "@";
+
+  /**
+   * Custom attribute of the edge classes that enables lightweight edges.
+   */
+  public static final String EDGE_CUSTOM_LIGHTWEIGHT = "lightweight";
+
   private boolean            useCustomTypes         = true;
   private boolean            safeMode               = false;
   private LOCK_MODE          lockMode               = LOCK_MODE.DATABASE_LEVEL_LOCKING;
   protected OClass           vertexBaseClass;
   protected OClass           edgeBaseClass;
 
+  /**
+   * Version of the schema {@link #isLightweightEdgesEnabled()} has been computed on: it's computed again once the schema changes.
+   */
+  private int                lightweightEdgesSchemaVersion = -1;
+  private boolean            lightweightEdgesEnabled;
+
   public OGraphDatabase(final String iURL) {
     super(iURL);
   }
@@ -201,6 +224,9 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
 
     final OClass cls = checkEdgeClass(iClassName);
 
+    if ((iFields == null || iFields.length == 0) && isLightweightEdgeType(cls))
+      return createLightweightEdge(iOutVertex, iInVertex, cls);
+
     final boolean safeMode = beginBlock();
     try {
 
@@ -225,18 +251,7 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
       acquireWriteLock(iOutVertex);
       try {
 
-        final Object outField = iOutVertex.field(VERTEX_FIELD_OUT);
-        final OMVRBTreeRIDSet out;
-        if (outField instanceof OMVRBTreeRIDSet) {
-          out = (OMVRBTreeRIDSet) outField;
-        } else if (outField instanceof Collection<?>) {
-          out = new OMVRBTreeRIDSet(iOutVertex, (Collection<OIdentifiable>) outField);
-          iOutVertex.field(VERTEX_FIELD_OUT, out);
-        } else {
-          out = new OMVRBTreeRIDSet(iOutVertex);
-          iOutVertex.field(VERTEX_FIELD_OUT, out);
-        }
-        out.add(edge);
+        getOrCreateEdgeSet(iOutVertex, VERTEX_FIELD_OUT).add(edge);
       } finally {
         releaseWriteLock(iOutVertex);
       }
@@ -245,18 +260,7 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
       acquireWriteLock(iInVertex);
       try {
 
-        final Object inField = iInVertex.field(VERTEX_FIELD_IN);
-        final OMVRBTreeRIDSet in;
-        if (inField instanceof OMVRBTreeRIDSet) {
-          in = (OMVRBTreeRIDSet) inField;
-        } else if (inField instanceof Collection<?>) {
-          in = new OMVRBTreeRIDSet(iInVertex, (Collection<OIdentifiable>) inField);
-          iInVertex.field(VERTEX_FIELD_IN, in);
-        } else {
-          in = new OMVRBTreeRIDSet(iInVertex);
-          iInVertex.field(VERTEX_FIELD_IN, in);
-        }
-        in.add(edge);
+        getOrCreateEdgeSet(iInVertex, VERTEX_FIELD_IN).add(edge);
 
       } finally {
         releaseWriteLock(iInVertex);
@@ -277,11 +281,51 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     }
   }
 
+  /**
+   * Creates a lightweight edge: the vertices are linked directly to each other without an edge document. Only one lightweight edge
+   * can connect the same vertices in the same direction.
+   * 
+   * @return A transient edge that represents the link
+   */
+  public ODocument createLightweightEdge(final ODocument iOutVertex, final ODocument iInVertex, final OClass iClass) {
+    final boolean safeMode = beginBlock();
+    try {
+
+      acquireWriteLock(iOutVertex);
+      try {
+        getOrCreateEdgeSet(iOutVertex, VERTEX_FIELD_OUT).add(iInVertex);
+      } finally {
+        releaseWriteLock(iOutVertex);
+      }
+
+      acquireWriteLock(iInVertex);
+      try {
+        getOrCreateEdgeSet(iInVertex, VERTEX_FIELD_IN).add(iOutVertex);
+      } finally {
+        releaseWriteLock(iInVertex);
+      }
+
+      save(iOutVertex);
+      save(iInVertex);
+
+      commitBlock(safeMode);
+
+      return new OGraphLightweightEdge(iClass, iOutVertex, iInVertex);
+
+    } catch (RuntimeException e) {
+      rollbackBlock(safeMode);
+      throw e;
+    }
+  }
+
   @SuppressWarnings("unchecked")
   public boolean removeEdge(final OIdentifiable iEdge) {
     if (iEdge == null)
       return false;
 
+    if (iEdge instanceof OGraphLightweightEdge)
+      return removeLightweightEdge((OGraphLightweightEdge) iEdge);
+
     final ODocument edge = iEdge.getRecord();
     if (edge == null)
       return false;
@@ -298,7 +342,6 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
           final Set<ODocument> out = ((Set<ODocument>) outVertex.field(VERTEX_FIELD_OUT));
           if (out != null)
             out.remove(edge);
-          save(outVertex);
         }
 
       } finally {
@@ -315,15 +358,20 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
           final Set<ODocument> in = ((Set<ODocument>) inVertex.field(VERTEX_FIELD_IN));
           if (in != null)
             in.remove(edge);
-          save(inVertex);
         }
 
       } finally {
         releaseWriteLock(inVertex);
       }
 
+      // THE DELETE UPDATES THE PARTITIONS BY LABEL: SAVE THE VERTICES ONLY AFTER IT
       delete(edge);
 
+      if (outVertex != null)
+        save(outVertex);
+      if (inVertex != null)
+        save(inVertex);
+
       commitBlock(safeMode);
 
     } catch (RuntimeException e) {
@@ -333,6 +381,45 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     return true;
   }
 
+  protected boolean removeLightweightEdge(final OGraphLightweightEdge iEdge) {
+    final ODocument outVertex = iEdge.field(EDGE_FIELD_OUT);
+    final ODocument inVertex = iEdge.field(EDGE_FIELD_IN);
+
+    final boolean safeMode = beginBlock();
+    try {
+      boolean removed = false;
+
+      acquireWriteLock(outVertex);
+      try {
+        final Set<OIdentifiable> out = outVertex.field(VERTEX_FIELD_OUT);
+        if (out != null && out.remove(inVertex)) {
+          save(outVertex);
+          removed = true;
+        }
+      } finally {
+        releaseWriteLock(outVertex);
+      }
+
+      acquireWriteLock(inVertex);
+      try {
+        final Set<OIdentifiable> in = inVertex.field(VERTEX_FIELD_IN);
+        if (in != null && in.remove(outVertex)) {
+          save(inVertex);
+          removed = true;
+        }
+      } finally {
+        releaseWriteLock(inVertex);
+      }
+
+      commitBlock(safeMode);
+      return removed;
+
+    } catch (RuntimeException e) {
+      rollbackBlock(safeMode);
+      throw e;
+    }
+  }
+
   public boolean removeVertex(final OIdentifiable iVertex) {
     if (iVertex == null)
       return false;
@@ -351,17 +438,32 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
       acquireWriteLock(vertex);
       try {
 
+        // THE VERTEX IS GOING TO BE DELETED: DON'T UPDATE ITS PARTITIONS BY LABEL ON EVERY EDGE DELETE
+        for (String field : vertex.fieldNames())
+          if (isLabelField(field))
+            vertex.removeField(field);
+
         Set<ODocument> edges = vertex.field(VERTEX_FIELD_OUT);
         if (edges != null) {
           for (ODocument edge : edges) {
             if (edge != null) {
+              if (isLightweightLink(edge)) {
+                // LIGHTWEIGHT EDGE: THE ITEM IS THE OTHER VERTEX
+                otherEdges = edge.field(VERTEX_FIELD_IN);
+                if (otherEdges != null && otherEdges.remove(vertex))
+                  save(edge);
+                continue;
+              }
+
               otherVertex = edge.field(EDGE_FIELD_IN);
               if (otherVertex != null) {
                 otherEdges = otherVertex.field(VERTEX_FIELD_IN);
-                if (otherEdges != null && otherEdges.remove(edge))
-                  save(otherVertex);
+                if (otherEdges != null)
+                  otherEdges.remove(edge);
               }
               delete(edge);
+              if (otherVertex != null)
+                save(otherVertex);
             }
           }
         }
@@ -371,13 +473,23 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
         if (edges != null) {
           for (ODocument edge : edges) {
             if (edge != null) {
+              if (isLightweightLink(edge)) {
+                // LIGHTWEIGHT EDGE: THE ITEM IS THE OTHER VERTEX
+                otherEdges = edge.field(VERTEX_FIELD_OUT);
+                if (otherEdges != null && otherEdges.remove(vertex))
+                  save(edge);
+                continue;
+              }
+
               otherVertex = edge.field(EDGE_FIELD_OUT);
               if (otherVertex != null) {
                 otherEdges = otherVertex.field(VERTEX_FIELD_OUT);
-                if (otherEdges != null && otherEdges.remove(edge))
-                  save(otherVertex);
+                if (otherEdges != null)
+                  otherEdges.remove(edge);
               }
               delete(edge);
+              if (otherVertex != null)
+                save(otherVertex);
             }
           }
         }
@@ -450,26 +562,12 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
       acquireReadLock(iVertex1);
       try {
 
-        // CHECK OUT EDGES
-        for (OIdentifiable e : getOutEdges(iVertex1)) {
-          final ODocument edge = (ODocument) e.getRecord();
-
-          if (checkEdge(edge, iLabels, iClassNames)) {
-            final OIdentifiable in = edge.<ODocument> field("in");
-            if (in != null && in.equals(iVertex2))
-              result.add(edge);
-          }
-        }
-
-        // CHECK IN EDGES
-        for (OIdentifiable e : getInEdges(iVertex1)) {
-          final ODocument edge = (ODocument) e.getRecord();
-
-          if (checkEdge(edge, iLabels, iClassNames)) {
-            final OIdentifiable out = edge.<ODocument> field("out");
-            if (out != null && out.equals(iVertex2))
-              result.add(edge);
-          }
+        final ODocument vertex1 = iVertex1.getRecord();
+        final ODocument vertex2 = iVertex2.getRecord();
+        if (vertex1 != null && vertex2 != null) {
+          // OUT EDGES OF THE FIRST VERTEX ARE THE IN EDGES OF THE SECOND ONE AND VICEVERSA
+          addEdgesBetweenVertexes(result, vertex1, VERTEX_FIELD_OUT, vertex2, VERTEX_FIELD_IN, iLabels, iClassNames);
+          addEdgesBetweenVertexes(result, vertex1, VERTEX_FIELD_IN, vertex2, VERTEX_FIELD_OUT, iLabels, iClassNames);
         }
 
       } finally {
@@ -506,22 +604,7 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     acquireReadLock(iVertex);
     try {
 
-      final OMVRBTreeRIDSet set = vertex.field(VERTEX_FIELD_OUT);
-
-      if (iLabel == null)
-        // RETURN THE ENTIRE COLLECTION
-        if (set != null)
-          return Collections.unmodifiableSet(set);
-        else
-          return Collections.emptySet();
-
-      // FILTER BY LABEL
-      result = new HashSet<OIdentifiable>();
-      if (set != null)
-        for (OIdentifiable item : set) {
-          if (iLabel == null || iLabel.equals(((ODocument) item).field(LABEL)))
-            result.add(item);
-        }
+      result = getEdges(vertex, VERTEX_FIELD_OUT, iLabel);
 
     } finally {
       releaseReadLock(iVertex);
@@ -568,6 +651,23 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     return filterEdgesByProperties((OMVRBTreeRIDSet) vertex.field(VERTEX_FIELD_OUT), iProperties);
   }
 
+  /**
+   * Retrieves the outgoing edges of vertex iVertex having label equals to iLabel and the requested properties iProperties set to the
+   * passed values.
+   * 
+   * @param iVertex
+   *          Target vertex
+   * @param iLabel
+   *          Label to search
+   * @param iProperties
+   *          Map where keys are property names and values the expected values
+   * @return
+   */
+  public Set<OIdentifiable> getOutEdgesHavingProperties(final OIdentifiable iVertex, final String iLabel,
+      final Map<String, Object> iProperties) {
+    return filterEdgesByProperties(getOutEdges(iVertex, iLabel), iProperties);
+  }
+
   public Set<OIdentifiable> getInEdges(final OIdentifiable iVertex) {
     return getInEdges(iVertex, null);
   }
@@ -584,22 +684,7 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     acquireReadLock(iVertex);
     try {
 
-      final OMVRBTreeRIDSet set = vertex.field(VERTEX_FIELD_IN);
-
-      if (iLabel == null)
-        // RETURN THE ENTIRE COLLECTION
-        if (set != null)
-          return Collections.unmodifiableSet(set);
-        else
-          return Collections.emptySet();
-
-      // FILTER BY LABEL
-      result = new HashSet<OIdentifiable>();
-      if (set != null)
-        for (OIdentifiable item : set) {
-          if (iLabel == null || iLabel.equals(((ODocument) item).field(LABEL)))
-            result.add(item);
-        }
+      result = getEdges(vertex, VERTEX_FIELD_IN, iLabel);
 
     } finally {
       releaseReadLock(iVertex);
@@ -643,6 +728,23 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     return filterEdgesByProperties((OMVRBTreeRIDSet) iVertex.field(VERTEX_FIELD_IN), iProperties);
   }
 
+  /**
+   * Retrieves the incoming edges of vertex iVertex having label equals to iLabel and the requested properties iProperties set to the
+   * passed values.
+   * 
+   * @param iVertex
+   *          Target vertex
+   * @param iLabel
+   *          Label to search
+   * @param iProperties
+   *          Map where keys are property names and values the expected values
+   * @return
+   */
+  public Set<OIdentifiable> getInEdgesHavingProperties(final OIdentifiable iVertex, final String iLabel,
+      final Map<String, Object> iProperties) {
+    return filterEdgesByProperties(getInEdges(iVertex, iLabel), iProperties);
+  }
+
   public ODocument getInVertex(final OIdentifiable iEdge) {
     if (iEdge == null)
       return null;
@@ -683,7 +785,7 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     return (ODocument) v;
   }
 
-  public Set<OIdentifiable> filterEdgesByProperties(final OMVRBTreeRIDSet iEdges, final Iterable<String> iPropertyNames) {
+  public Set<OIdentifiable> filterEdgesByProperties(final Set<OIdentifiable> iEdges, final Iterable<String> iPropertyNames) {
     acquireReadLock(null);
     try {
 
@@ -713,7 +815,7 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     }
   }
 
-  public Set<OIdentifiable> filterEdgesByProperties(final OMVRBTreeRIDSet iEdges, final Map<String, Object> iProperties) {
+  public Set<OIdentifiable> filterEdgesByProperties(final Set<OIdentifiable> iEdges, final Map<String, Object> iProperties) {
     acquireReadLock(null);
     try {
 
@@ -1065,6 +1167,279 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     return good;
   }
 
+  /**
+   * Returns the name of the vertex field that contains the edges of a direction having a label, like "out@friend", or null if the
+   * label can't be part of a field name. Those edges are not partitioned.
+   * 
+   * @param iDirectionField
+   *          {@link #VERTEX_FIELD_OUT} or {@link #VERTEX_FIELD_IN}
+   * @param iLabel
+   *          Edge label
+   */
+  public static String getLabelFieldName(final String iDirectionField, final Object iLabel) {
+    if (!(iLabel instanceof String))
+      return null;
+
+    final String label = (String) iLabel;
+    if (label.length() == 0)
+      return null;
+
+    for (int i = 0; i < label.length(); ++i)
+      if (!Character.isLetterOrDigit(label.charAt(i)) && label.charAt(i) != '_')
+        return null;
+
+    return getLabelsFieldName(iDirectionField) + label;
+  }
+
+  /**
+   * Returns the name of the vertex field with the labels of the partitioned edges of a direction. A vertex without it has never been
+   * partitioned.
+   */
+  public static String getLabelsFieldName(final String iDirectionField) {
+    return VERTEX_FIELD_OUT.equals(iDirectionField) ? VERTEX_FIELD_OUT_LABELS : VERTEX_FIELD_IN_LABELS;
+  }
+
+  /**
+   * Returns true if the vertex field is used to partition the edges by label.
+   */
+  public static boolean isLabelField(final String iFieldName) {
+    return iFieldName.startsWith(VERTEX_FIELD_OUT_LABELS) || iFieldName.startsWith(VERTEX_FIELD_IN_LABELS);
+  }
+
+  /**
+   * Returns the edges of a direction having a label. If the vertex is partitioned only the edges of the label are browsed,
+   * otherwise all the edges are loaded and filtered.
+   */
+  protected Set<OIdentifiable> getEdges(final ODocument iVertex, final String iDirectionField, final String iLabel) {
+    final Set<OIdentifiable> edges = getStoredEdges(iVertex, iDirectionField, iLabel);
+    if (iLabel == null && !edges.isEmpty() && isLightweightEdgesEnabled())
+      // ONLY THE EDGES WITHOUT LABEL CAN BE LIGHTWEIGHT
+      return convertLightweightEdges(iVertex, iDirectionField, edges);
+    return edges;
+  }
+
+  /**
+   * Returns the edges of a direction having a label as stored in the vertex: the lightweight edges are links to the other vertex.
+   */
+  protected Set<OIdentifiable> getStoredEdges(final ODocument iVertex, final String iDirectionField, final String iLabel) {
+    if (iLabel == null) {
+      // RETURN THE ENTIRE COLLECTION
+      final Set<OIdentifiable> set = iVertex.field(iDirectionField);
+      if (set == null)
+        return Collections.emptySet();
+      else
+        return Collections.unmodifiableSet(set);
+    }
+
+    final String labelField = getLabelFieldName(iDirectionField, iLabel);
+    if (labelField != null && iVertex.containsField(getLabelsFieldName(iDirectionField))) {
+      // PARTITIONED BY LABEL
+      final Set<OIdentifiable> partition = iVertex.field(labelField);
+      if (partition != null)
+        return Collections.unmodifiableSet(partition);
+      else
+        return Collections.emptySet();
+    }
+
+    // FILTER BY LABEL
+    final Set<OIdentifiable> set = iVertex.field(iDirectionField);
+    final Set<OIdentifiable> result = new HashSet<OIdentifiable>();
+    if (set != null) {
+      final int[] vertexClusterIds = getVertexClusterIds();
+      for (OIdentifiable item : set) {
+        if (!isLightweightLink(item, vertexClusterIds) && iLabel.equals(((ODocument) item).field(LABEL)))
+          result.add(item);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a view of the edges that replaces the lightweight edges, stored as links to the other vertex, with transient edges. The
+   * edges are converted while browsing, so only the other vertices of the lightweight edges browsed are loaded.
+   */
+  protected Set<OIdentifiable> convertLightweightEdges(final ODocument iVertex, final String iDirectionField,
+      final Set<OIdentifiable> iEdges) {
+    final int[] vertexClusterIds = getVertexClusterIds();
+    return new AbstractSet<OIdentifiable>() {
+      @Override
+      public Iterator<OIdentifiable> iterator() {
+        return new OLazyWrapperIterator<OIdentifiable>(iEdges.iterator()) {
+          @Override
+          public boolean filter(final OIdentifiable iObject) {
+            return true;
+          }
+
+          @Override
+          public OIdentifiable createWrapper(final Object iObject) {
+            final OIdentifiable item = (OIdentifiable) iObject;
+            return isLightweightLink(item, vertexClusterIds) ? toLightweightEdge(iVertex, iDirectionField, item) : item;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return iEdges.size();
+      }
+    };
+  }
+
+  protected OGraphLightweightEdge toLightweightEdge(final ODocument iVertex, final String iDirectionField,
+      final OIdentifiable iOtherVertex) {
+    final ODocument other = iOtherVertex.getRecord();
+    return VERTEX_FIELD_OUT.equals(iDirectionField) ? new OGraphLightweightEdge(edgeBaseClass, iVertex, other)
+        : new OGraphLightweightEdge(edgeBaseClass, other, iVertex);
+  }
+
+  /**
+   * Returns true if the item of a vertex edge set is a lightweight edge, namely a direct link to the other vertex. The check uses
+   * the cluster of the record without loading it.
+   */
+  public boolean isLightweightLink(final OIdentifiable iItem) {
+    return isLightweightLink(iItem, getVertexClusterIds());
+  }
+
+  /**
+   * Returns true if the item is a lightweight edge, checking its cluster against the ones of the vertices previously read by
+   * {@link #getVertexClusterIds()}.
+   */
+  protected boolean isLightweightLink(final OIdentifiable iItem, final int[] iVertexClusterIds) {
+    if (iItem == null || iVertexClusterIds == null)
+      return false;
+
+    final int clusterId = iItem.getIdentity().getClusterId();
+    for (int id : iVertexClusterIds)
+      if (id == clusterId)
+        return true;
+    return false;
+  }
+
+  /**
+   * Returns the clusters of the vertex classes, or null if the vertex class doesn't exist.
+   */
+  protected int[] getVertexClusterIds() {
+    // READ THE CLASS FROM THE SCHEMA: THE VERTEX CLUSTERS CAN BE CHANGED BY OTHER DATABASE INSTANCES
+    final OClass vertexClass = getMetadata().getSchema().getClass(VERTEX_CLASS_NAME);
+    return vertexClass != null ? vertexClass.getPolymorphicClusterIds() : null;
+  }
+
+  /**
+   * Returns true if at least one edge class creates lightweight edges. The setting is read from the schema again only when its
+   * version changes, so it reflects the changes made by other database instances.
+   */
+  public boolean isLightweightEdgesEnabled() {
+    final OSchema schema = getMetadata().getSchema();
+    final int schemaVersion = schema.getVersion();
+    if (schemaVersion != lightweightEdgesSchemaVersion) {
+      lightweightEdgesEnabled = false;
+
+      final OClass edgeClass = schema.getClass(EDGE_CLASS_NAME);
+      if (edgeClass != null)
+        for (OClass cls : schema.getClasses())
+          if (cls.isSubClassOf(edgeClass) && isLightweightEdgeType(cls)) {
+            lightweightEdgesEnabled = true;
+            break;
+          }
+
+      lightweightEdgesSchemaVersion = schemaVersion;
+    }
+    return lightweightEdgesEnabled;
+  }
+
+  /**
+   * Returns true if the edges of the class without properties are created as lightweight edges.
+   */
+  public boolean isLightweightEdgeType(OClass iClass) {
+    for (; iClass != null; iClass = iClass.getSuperClass()) {
+      final String value = iClass.getCustom(EDGE_CUSTOM_LIGHTWEIGHT);
+      if (value != null)
+        return Boolean.parseBoolean(value);
+    }
+    return false;
+  }
+
+  /**
+   * Enables or disables the lightweight edges for an edge class and its sub classes. The edges already created don't change.
+   */
+  public OGraphDatabase setLightweightEdgeType(final String iClassName, final boolean iLightweight) {
+    final OClass cls = checkEdgeClass(iClassName);
+    cls.setCustom(EDGE_CUSTOM_LIGHTWEIGHT, Boolean.toString(iLightweight));
+    if (iLightweight) {
+      // THE EDGE SETS CAN CONTAIN VERTICES TOO
+      for (String field : new String[] { VERTEX_FIELD_OUT, VERTEX_FIELD_IN }) {
+        final OProperty prop = getMetadata().getSchema().getClass(VERTEX_CLASS_NAME).getProperty(field);
+        if (prop != null && prop.getLinkedClass() != null)
+          prop.set(OProperty.ATTRIBUTES.LINKEDCLASS, null);
+      }
+    }
+
+    // THE SCHEMA HAS BEEN RELOADED
+    vertexBaseClass = getMetadata().getSchema().getClass(VERTEX_CLASS_NAME);
+    edgeBaseClass = getMetadata().getSchema().getClass(EDGE_CLASS_NAME);
+    return this;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected OMVRBTreeRIDSet getOrCreateEdgeSet(final ODocument iVertex, final String iDirectionField) {
+    final Object field = iVertex.field(iDirectionField);
+    final OMVRBTreeRIDSet set;
+    if (field instanceof OMVRBTreeRIDSet) {
+      set = (OMVRBTreeRIDSet) field;
+    } else if (field instanceof Collection<?>) {
+      set = new OMVRBTreeRIDSet(iVertex, (Collection<OIdentifiable>) field);
+      iVertex.field(iDirectionField, set);
+    } else {
+      set = new OMVRBTreeRIDSet(iVertex);
+      iVertex.field(iDirectionField, set);
+    }
+    return set;
+  }
+
+  /**
+   * Adds the edges from iVertex1 to iVertex2 browsing the smallest set between the edges of iVertex1 and iVertex2.
+   */
+  protected void addEdgesBetweenVertexes(final Set<OIdentifiable> iResult, final ODocument iVertex1, final String iField1,
+      final ODocument iVertex2, final String iField2, final String[] iLabels, final String[] iClassNames) {
+    if (iLabels == null)
+      addEdgesBetweenVertexes(iResult, iVertex1, iField1, iVertex2, iField2, (String) null, iClassNames);
+    else
+      for (String label : iLabels)
+        addEdgesBetweenVertexes(iResult, iVertex1, iField1, iVertex2, iField2, label, iClassNames);
+  }
+
+  protected void addEdgesBetweenVertexes(final Set<OIdentifiable> iResult, final ODocument iVertex1, final String iField1,
+      final ODocument iVertex2, final String iField2, final String iLabel, final String[] iClassNames) {
+    // THE LIGHTWEIGHT EDGES ARE CONVERTED ONLY IF THEY LINK THE OTHER VERTEX
+    final Set<OIdentifiable> edges1 = getStoredEdges(iVertex1, iField1, iLabel);
+    final Set<OIdentifiable> edges2 = getStoredEdges(iVertex2, iField2, iLabel);
+
+    final boolean browseFirst = edges1.size() <= edges2.size();
+    final Set<OIdentifiable> edges = browseFirst ? edges1 : edges2;
+    final ORID other = browseFirst ? iVertex2.getIdentity() : iVertex1.getIdentity();
+    // THE EDGE FIELD THAT POINTS TO THE OTHER VERTEX
+    final String otherField = VERTEX_FIELD_OUT.equals(browseFirst ? iField1 : iField2) ? EDGE_FIELD_IN : EDGE_FIELD_OUT;
+    final String[] labels = iLabel != null ? new String[] { iLabel } : null;
+    final int[] vertexClusterIds = getVertexClusterIds();
+
+    for (OIdentifiable e : edges) {
+      if (isLightweightLink(e, vertexClusterIds)) {
+        // LIGHTWEIGHT EDGES HAVE NO LABEL AND CLASS
+        if (iLabel == null && iClassNames == null && other.equals(e.getIdentity()))
+          iResult.add(toLightweightEdge(browseFirst ? iVertex1 : iVertex2, browseFirst ? iField1 : iField2, e));
+        continue;
+      }
+
+      final ODocument edge = (ODocument) e.getRecord();
+      if (edge == null)
+        continue;
+
+      final Object v = edge.rawField(otherField);
+      if (v instanceof OIdentifiable && other.equals(((OIdentifiable) v).getIdentity()) && checkEdge(edge, labels, iClassNames))
+        iResult.add(edge);
+    }
+  }
+
   public LOCK_MODE getLockMode() {
     return lockMode;
   }
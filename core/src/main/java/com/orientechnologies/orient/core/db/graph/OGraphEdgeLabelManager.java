@@ -0,0 +1,218 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.db.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.hook.ODocumentHookAbstract;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
+
+/**
+ * Keeps the edges of the vertices partitioned by label. Besides the "out" and "in" sets with all the edges, each vertex has a set
+ * of edges per label, like "out@friend", and the list of the labels in "out@" and "in@". The hook is registered against every
+ * database, so the partitions are updated when the edges are created, deleted, change the label or the vertices also through the
+ * document API. The lookup of the edges by label costs as the matching edges and not as the edges of the vertex. Vertices created
+ * before the partitioning are migrated the first time a labeled edge is connected.
+ *
+ * @author Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ */
+public class OGraphEdgeLabelManager extends ODocumentHookAbstract {
+
+  @Override
+  public void onRecordAfterCreate(final ODocument iEdge) {
+    if (!isEdge(iEdge))
+      return;
+
+    final Object label = iEdge.field(OGraphDatabase.LABEL);
+    if (label != null)
+      updateVertices(iEdge, null, null, null, (OIdentifiable) iEdge.field(OGraphDatabase.EDGE_FIELD_OUT),
+          (OIdentifiable) iEdge.field(OGraphDatabase.EDGE_FIELD_IN), label);
+  }
+
+  @Override
+  public void onRecordAfterUpdate(final ODocument iEdge) {
+    if (!isEdge(iEdge))
+      return;
+
+    final List<String> dirtyFields = Arrays.asList(iEdge.getDirtyFields());
+    final boolean labelChanged = dirtyFields.contains(OGraphDatabase.LABEL);
+    final boolean outChanged = dirtyFields.contains(OGraphDatabase.EDGE_FIELD_OUT);
+    final boolean inChanged = dirtyFields.contains(OGraphDatabase.EDGE_FIELD_IN);
+    if (!labelChanged && !outChanged && !inChanged)
+      return;
+
+    final Object newLabel = iEdge.field(OGraphDatabase.LABEL);
+    final Object oldLabel = labelChanged ? iEdge.getOriginalValue(OGraphDatabase.LABEL) : newLabel;
+    if (oldLabel == null && newLabel == null)
+      // NEVER PARTITIONED
+      return;
+
+    final OIdentifiable newOut = iEdge.field(OGraphDatabase.EDGE_FIELD_OUT);
+    final OIdentifiable oldOut = outChanged ? (OIdentifiable) iEdge.getOriginalValue(OGraphDatabase.EDGE_FIELD_OUT) : newOut;
+    final OIdentifiable newIn = iEdge.field(OGraphDatabase.EDGE_FIELD_IN);
+    final OIdentifiable oldIn = inChanged ? (OIdentifiable) iEdge.getOriginalValue(OGraphDatabase.EDGE_FIELD_IN) : newIn;
+
+    updateVertices(iEdge, oldOut, oldIn, oldLabel, newOut, newIn, newLabel);
+  }
+
+  @Override
+  public RESULT onRecordBeforeDelete(final ODocument iEdge) {
+    if (!isEdge(iEdge))
+      return RESULT.RECORD_NOT_CHANGED;
+
+    final Object label = iEdge.field(OGraphDatabase.LABEL);
+    if (label != null)
+      updateVertices(iEdge, (OIdentifiable) iEdge.field(OGraphDatabase.EDGE_FIELD_OUT),
+          (OIdentifiable) iEdge.field(OGraphDatabase.EDGE_FIELD_IN), label, null, null, null);
+    return RESULT.RECORD_NOT_CHANGED;
+  }
+
+  /**
+   * All the instances are the same hook: this avoids to register it more times against the same database.
+   */
+  @Override
+  public boolean equals(final Object obj) {
+    return obj instanceof OGraphEdgeLabelManager;
+  }
+
+  @Override
+  public int hashCode() {
+    return OGraphEdgeLabelManager.class.hashCode();
+  }
+
+  protected boolean isEdge(final ODocument iDocument) {
+    final OClass cls = iDocument.getSchemaClass();
+    return cls != null && cls.isSubClassOf(OGraphDatabase.EDGE_CLASS_NAME);
+  }
+
+  /**
+   * Moves the edge from the partitions of the old vertices and label to the partitions of the new ones. Every vertex changed is
+   * saved only once, even when it's both the ends of the edge.
+   */
+  protected void updateVertices(final ODocument iEdge, final OIdentifiable iOldOut, final OIdentifiable iOldIn,
+      final Object iOldLabel, final OIdentifiable iNewOut, final OIdentifiable iNewIn, final Object iNewLabel) {
+    final Set<ODocument> changed = new HashSet<ODocument>();
+
+    updateVertex(iEdge, OGraphDatabase.VERTEX_FIELD_OUT, iOldOut, iOldLabel, iNewOut, iNewLabel, changed);
+    updateVertex(iEdge, OGraphDatabase.VERTEX_FIELD_IN, iOldIn, iOldLabel, iNewIn, iNewLabel, changed);
+
+    for (ODocument vertex : changed) {
+      vertex.setDirty();
+      vertex.save();
+    }
+  }
+
+  protected void updateVertex(final ODocument iEdge, final String iVertexField, final OIdentifiable iOldVertex,
+      final Object iOldLabel, final OIdentifiable iNewVertex, final Object iNewLabel, final Set<ODocument> iChanged) {
+    if (iOldVertex == null ? iNewVertex == null : iOldVertex.equals(iNewVertex))
+      if (iOldLabel == null ? iNewLabel == null : iOldLabel.equals(iNewLabel))
+        // NOTHING TO MOVE
+        return;
+
+    final ODocument oldVertex = iOldVertex != null ? (ODocument) iOldVertex.getRecord() : null;
+    if (oldVertex != null && removeFromPartition(iEdge, oldVertex, iVertexField, iOldLabel))
+      iChanged.add(oldVertex);
+
+    final ODocument newVertex = iNewVertex != null ? (ODocument) iNewVertex.getRecord() : null;
+    if (newVertex != null && addToPartition(iEdge, newVertex, iVertexField, iNewLabel))
+      iChanged.add(newVertex);
+  }
+
+  protected boolean removeFromPartition(final ODocument iEdge, final ODocument iVertex, final String iVertexField,
+      final Object iLabel) {
+    final String field = OGraphDatabase.getLabelFieldName(iVertexField, iLabel);
+    if (field == null)
+      return false;
+
+    final Collection<OIdentifiable> partition = iVertex.field(field);
+    return partition != null && partition.remove(iEdge);
+  }
+
+  protected boolean addToPartition(final ODocument iEdge, final ODocument iVertex, final String iVertexField, final Object iLabel) {
+    final String field = OGraphDatabase.getLabelFieldName(iVertexField, iLabel);
+    if (field == null)
+      return false;
+
+    boolean changed = false;
+
+    final String labelsField = OGraphDatabase.getLabelsFieldName(iVertexField);
+    Set<String> labels = iVertex.field(labelsField);
+    if (labels == null) {
+      // FIRST LABELED EDGE: PARTITION THE EXISTENT EDGES, THE NEW ONE IS ALREADY THERE IF LINKED BY THE VERTEX
+      labels = partitionEdges(iVertex, iVertexField);
+      changed = true;
+    }
+
+    if (getPartition(iVertex, field).add(iEdge))
+      changed = true;
+
+    if (labels.add(iLabel.toString())) {
+      iVertex.field(labelsField, labels);
+      changed = true;
+    }
+
+    return changed;
+  }
+
+  /**
+   * Builds the partitions of a vertex that has never been partitioned.
+   *
+   * @return The labels found
+   */
+  protected Set<String> partitionEdges(final ODocument iVertex, final String iVertexField) {
+    final Set<String> labels = new HashSet<String>();
+
+    final Collection<OIdentifiable> edges = iVertex.field(iVertexField);
+    if (edges != null)
+      for (OIdentifiable e : edges) {
+        final ODocument edge = e.getRecord();
+        if (edge == null || !isEdge(edge))
+          // DELETED OR LIGHTWEIGHT EDGE
+          continue;
+
+        final Object label = edge.field(OGraphDatabase.LABEL);
+        final String field = OGraphDatabase.getLabelFieldName(iVertexField, label);
+        if (field != null) {
+          getPartition(iVertex, field).add(edge);
+          labels.add(label.toString());
+        }
+      }
+
+    iVertex.field(OGraphDatabase.getLabelsFieldName(iVertexField), labels);
+    return iVertex.field(OGraphDatabase.getLabelsFieldName(iVertexField));
+  }
+
+  protected OMVRBTreeRIDSet getPartition(final ODocument iVertex, final String iField) {
+    final Object value = iVertex.field(iField);
+    if (value instanceof OMVRBTreeRIDSet)
+      return (OMVRBTreeRIDSet) value;
+
+    final OMVRBTreeRIDSet partition = new OMVRBTreeRIDSet(iVertex);
+    if (value instanceof Collection<?>)
+      for (Object o : (Collection<?>) value)
+        partition.add((OIdentifiable) o);
+    iVertex.field(iField, partition);
+    return partition;
+  }
+}
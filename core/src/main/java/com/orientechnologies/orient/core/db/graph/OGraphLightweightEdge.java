@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.db.graph;
+
+import com.orientechnologies.orient.core.exception.OGraphException;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Transient edge that represents a lightweight edge, stored as a direct link between the two vertices without an edge document.
+ * It has only the "out" and "in" fields and cannot be saved with other properties.
+ * 
+ * @author Luca Garulli (l.garulli--at--orientechnologies.com)
+ * 
+ */
+@SuppressWarnings("unchecked")
+public class OGraphLightweightEdge extends ODocument {
+  private static final long serialVersionUID = 1L;
+
+
+  public OGraphLightweightEdge(final OClass iClass, final ODocument iOutVertex, final ODocument iInVertex) {
+    super(iClass);
+    field(OGraphDatabase.EDGE_FIELD_OUT, iOutVertex);
+    field(OGraphDatabase.EDGE_FIELD_IN, iInVertex);
+    unsetDirty();
+  }
+
+  @Override
+  public ODocument save(final boolean forceCreate) {
+    return save(null, forceCreate);
+  }
+
+  @Override
+  public ODocument save(final String iClusterName, final boolean forceCreate) {
+    if (isDirty())
+      throw new OGraphException("Cannot save the lightweight edge " + this.<ODocument> field(OGraphDatabase.EDGE_FIELD_OUT).getIdentity()
+          + "->" + this.<ODocument> field(OGraphDatabase.EDGE_FIELD_IN).getIdentity() + " because lightweight edges have no properties. Create it with the properties"
+          + " or disable lightweight edges for the class " + getClassName());
+
+    // ALREADY STORED AS LINK BETWEEN THE VERTICES
+    return this;
+  }
+}
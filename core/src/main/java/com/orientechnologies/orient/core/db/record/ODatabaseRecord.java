@@ -15,9 +15,13 @@
  */
 package com.orientechnologies.orient.core.db.record;
 
+import java.util.Collection;
+import java.util.Map;
+
 import com.orientechnologies.orient.core.db.ODataSegmentStrategy;
 import com.orientechnologies.orient.core.db.ODatabaseComplex;
 import com.orientechnologies.orient.core.id.OClusterPosition;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.iterator.ORecordIteratorCluster;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 
@@ -63,6 +67,16 @@ public interface ODatabaseRecord extends ODatabaseComplex<ORecordInternal<?>> {
    */
   public <RET extends ORecordInternal<?>> RET getRecord(OIdentifiable iIdentifiable);
 
+  /**
+   * Loads multiple records at once. The records not available in the current transaction or in the cache are read from the storage
+   * with one call.
+   * 
+   * @param iRecordIds
+   *          Identities of the records to load
+   * @return The records loaded by identity. Deleted and not existent records are not contained
+   */
+  public Map<ORID, ORecordInternal<?>> loadRecords(Collection<? extends OIdentifiable> iRecordIds);
+
   /**
    * Returns the default record type for this kind of database.
    */
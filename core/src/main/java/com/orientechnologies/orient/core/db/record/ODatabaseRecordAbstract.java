@@ -16,7 +16,10 @@
 package com.orientechnologies.orient.core.db.record;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +40,7 @@ import com.orientechnologies.orient.core.db.ODatabaseListener;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.ODatabaseWrapperAbstract;
 import com.orientechnologies.orient.core.db.ODefaultDataSegmentStrategy;
+import com.orientechnologies.orient.core.db.graph.OGraphEdgeLabelManager;
 import com.orientechnologies.orient.core.db.raw.ODatabaseRaw;
 import com.orientechnologies.orient.core.dictionary.ODictionary;
 import com.orientechnologies.orient.core.exception.ODatabaseException;
@@ -143,6 +147,7 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
         registerHook(new ORestrictedAccessHook(), ORecordHook.HOOK_POSITION.FIRST);
         registerHook(new OUserTrigger(), ORecordHook.HOOK_POSITION.EARLY);
         registerHook(new OFunctionTrigger(), ORecordHook.HOOK_POSITION.REGULAR);
+        registerHook(new OGraphEdgeLabelManager(), ORecordHook.HOOK_POSITION.REGULAR);
         registerHook(new OClassIndexManager(), ORecordHook.HOOK_POSITION.LAST);
         registerHook(new OSchedulerTrigger(), ORecordHook.HOOK_POSITION.LAST);
       } else
@@ -181,6 +186,7 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
         registerHook(new ORestrictedAccessHook(), ORecordHook.HOOK_POSITION.FIRST);
         registerHook(new OUserTrigger(), ORecordHook.HOOK_POSITION.EARLY);
         registerHook(new OFunctionTrigger(), ORecordHook.HOOK_POSITION.REGULAR);
+        registerHook(new OGraphEdgeLabelManager(), ORecordHook.HOOK_POSITION.REGULAR);
         registerHook(new OClassIndexManager(), ORecordHook.HOOK_POSITION.LAST);
         registerHook(new OSchedulerTrigger(), ORecordHook.HOOK_POSITION.LAST);
       }
@@ -213,6 +219,9 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
 			metadata = null;
 		}
 
+		// THE POOLED SCRIPT ENGINES HAVE THE LIBRARY OF THE DROPPED DATABASE
+		Orient.instance().getScriptManager().close(getURL());
+
 		super.drop();
   }
 
@@ -248,6 +257,47 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
     return (RET) load(iRecord, null);
   }
 
+  public Map<ORID, ORecordInternal<?>> loadRecords(final Collection<? extends OIdentifiable> iRecordIds) {
+    checkOpeness();
+
+    final Map<ORID, ORecordInternal<?>> result = new HashMap<ORID, ORecordInternal<?>>(iRecordIds.size());
+    final Set<ORecordId> toRead = new HashSet<ORecordId>();
+
+    for (OIdentifiable id : iRecordIds) {
+      if (id == null)
+        continue;
+
+      final ORID rid = id.getIdentity();
+      if (result.containsKey(rid) || toRead.contains(rid))
+        continue;
+
+      if (!rid.isPersistent() || getTransaction().getRecord(rid) != null || getLevel1Cache().findRecord(rid) != null) {
+        // ALREADY IN MEMORY
+        final ORecordInternal<?> record = load(rid);
+        if (record != null)
+          result.put(rid, record);
+      } else {
+        checkSecurity(ODatabaseSecurityResources.CLUSTER, ORole.PERMISSION_READ, getClusterNameById(rid.getClusterId()));
+        toRead.add((ORecordId) rid);
+      }
+    }
+
+    if (toRead.isEmpty())
+      return result;
+
+    final Map<ORecordId, ORawBuffer> buffers = underlying.read(toRead);
+    for (ORecordId rid : toRead) {
+      final ORawBuffer buffer = buffers.get(rid);
+      if (buffer != null) {
+        final ORecordInternal<?> record = executeReadRecord(rid, null, null, false, false, buffer);
+        if (record != null)
+          result.put(rid, record);
+      }
+    }
+
+    return result;
+  }
+
   @Override
   public void reload() {
     metadata.reload();
@@ -627,6 +677,17 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
 
   public <RET extends ORecordInternal<?>> RET executeReadRecord(final ORecordId iRid, ORecordInternal<?> iRecord,
       final String iFetchPlan, final boolean iIgnoreCache, boolean loadTombstones) {
+    return executeReadRecord(iRid, iRecord, iFetchPlan, iIgnoreCache, loadTombstones, null);
+  }
+
+  /**
+   * Reads a record using the content already read from the storage, if any. Used by the iterators that read ahead the records.
+   * 
+   * @param iReadContent
+   *          Content of the record read from the storage, or null to read it now
+   */
+  public <RET extends ORecordInternal<?>> RET executeReadRecord(final ORecordId iRid, ORecordInternal<?> iRecord,
+      final String iFetchPlan, final boolean iIgnoreCache, boolean loadTombstones, final ORawBuffer iReadContent) {
     checkOpeness();
 
     // setCurrentDatabaseinThreadLocal();
@@ -662,7 +723,8 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
         return (RET) record;
       }
 
-      final ORawBuffer recordBuffer = underlying.read(iRid, iFetchPlan, iIgnoreCache, loadTombstones).getResult();
+      final ORawBuffer recordBuffer = iReadContent != null ? iReadContent : underlying.read(iRid, iFetchPlan, iIgnoreCache,
+          loadTombstones).getResult();
       if (recordBuffer == null)
         return null;
 
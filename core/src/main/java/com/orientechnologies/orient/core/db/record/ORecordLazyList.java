@@ -15,19 +15,23 @@
  */
 package com.orientechnologies.orient.core.db.record;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 import com.orientechnologies.common.collection.OLazyIterator;
 import com.orientechnologies.common.collection.OLazyIteratorListWrapper;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.record.ORecordMultiValueHelper.MULTIVALUE_CONTENT_TYPE;
 import com.orientechnologies.orient.core.exception.ORecordNotFoundException;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
 
@@ -300,6 +304,8 @@ public class ORecordLazyList extends ORecordTrackedList implements ORecordLazyMu
       // PRECONDITIONS
       return;
 
+    preloadLinks();
+
     for (int i = 0; i < size(); ++i) {
       try {
         convertLink2Record(i);
@@ -332,6 +338,43 @@ public class ORecordLazyList extends ORecordTrackedList implements ORecordLazyMu
     return allConverted;
   }
 
+  /**
+   * Loads all the linked records with one request to the storage and replaces the links with them, instead of loading them one by
+   * one.
+   */
+  private void preloadLinks() {
+    if (ridOnly || !ODatabaseRecordThreadLocal.INSTANCE.isDefined())
+      return;
+
+    final List<ORecordId> rids = new ArrayList<ORecordId>();
+    for (int i = 0; i < super.size(); ++i) {
+      final OIdentifiable o = super.get(i);
+      if (o instanceof ORecordId && ((ORecordId) o).isPersistent())
+        rids.add((ORecordId) o);
+    }
+
+    if (rids.size() < 2)
+      return;
+
+    final Map<ORID, ORecordInternal<?>> records = ODatabaseRecordThreadLocal.INSTANCE.get().loadRecords(rids);
+    if (records.isEmpty())
+      return;
+
+    marshalling = true;
+    try {
+      for (int i = 0; i < super.size(); ++i) {
+        final OIdentifiable o = super.get(i);
+        if (o instanceof ORecordId) {
+          final ORecordInternal<?> record = records.get(o);
+          if (record != null)
+            super.set(i, record);
+        }
+      }
+    } finally {
+      marshalling = false;
+    }
+  }
+
   /**
    * Convert the item requested from link to record.
    * 
@@ -0,0 +1,727 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.db.record;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.id.OClusterPosition;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.OClusterPositionLong;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.storage.OStorage;
+
+/**
+ * Compact set of RIDs. The persistent RIDs are kept as primitives in a sorted array, where each entry packs the cluster id in the
+ * highest 16 bits and the cluster position in the lowest 48 bits, so membership is a binary search and bulk changes are merges of
+ * sorted arrays. The persistent RIDs that don't fit are kept unpacked in a set, the records with a temporary identity are kept apart
+ * by identity until they are saved.<br/>
+ * <br/>
+ * The content is streamed sorted, with the positions after the first one of each cluster written as delta from the previous one:
+ * <code>&lt;#10:3,+1,+8,#12:0&gt;</code>. The delta format is written only against storages from the configuration version
+ * {@link #DELTA_FORMAT_STORAGE_VERSION}, otherwise and for the threads that require it (see {@link #setLegacyFormat(boolean)}) the
+ * classic format with all the RIDs is written. Both the formats are read. The content is parsed only at the first access and
+ * streamed back as is if not changed and in the format required.
+ *
+ * @author Luca Garulli
+ *
+ */
+public class ORidBag implements Iterable<OIdentifiable> {
+  /**
+   * First version of the storage configuration that declares the support of the delta format.
+   */
+  public static final int                        DELTA_FORMAT_STORAGE_VERSION = 7;
+
+  private static final long[]                    EMPTY                        = new long[0];
+  private static final int                       POSITION_BITS                = 48;
+  private static final long                      POSITION_MASK                = (1L << POSITION_BITS) - 1;
+  private static final Object                    NEWMAP_VALUE                 = new Object();
+  private static final ThreadLocal<Boolean>      LEGACY_FORMAT                = new ThreadLocal<Boolean>();
+
+  private long[]                                 entries                      = EMPTY;
+  private int                                    size;
+  private Set<ORID>                              unpacked;
+  private IdentityHashMap<OIdentifiable, Object> newEntries;
+  private IdentityHashMap<ORecord<?>, Object>    addedRecords;
+  private StringBuilder                          stream;
+  private int                                    modifications;
+
+  public ORidBag() {
+  }
+
+  /**
+   * Copy constructor
+   *
+   * @param iSource
+   *          Source bag
+   */
+  public ORidBag(final ORidBag iSource) {
+    stream = iSource.stream;
+    entries = Arrays.copyOf(iSource.entries, iSource.size);
+    size = iSource.size;
+    if (iSource.unpacked != null)
+      unpacked = new LinkedHashSet<ORID>(iSource.unpacked);
+    if (iSource.newEntries != null)
+      newEntries = new IdentityHashMap<OIdentifiable, Object>(iSource.newEntries);
+    if (iSource.addedRecords != null)
+      addedRecords = new IdentityHashMap<ORecord<?>, Object>(iSource.addedRecords);
+  }
+
+  /**
+   * Forces the classic format in the content streamed by the current thread, like the records sent to the clients that don't read
+   * the delta format.
+   */
+  public static void setLegacyFormat(final boolean iLegacy) {
+    if (iLegacy)
+      LEGACY_FORMAT.set(Boolean.TRUE);
+    else
+      LEGACY_FORMAT.remove();
+  }
+
+  /**
+   * Tells if the content streamed by the current thread can use the delta format: the current database must have a storage that
+   * declares its support and the thread must not require the legacy format.
+   */
+  public static boolean isDeltaFormatEnabled() {
+    if (LEGACY_FORMAT.get() != null)
+      return false;
+
+    final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    if (database == null)
+      return false;
+
+    final OStorage storage = database.getStorage();
+    return storage != null && storage.getConfiguration() != null
+        && storage.getConfiguration().version >= DELTA_FORMAT_STORAGE_VERSION;
+  }
+
+  /**
+   * Tells if a serialized record could contain sets of RIDs in the delta format. False positives are possible, for example with
+   * strings containing ",+", but not false negatives.
+   */
+  public static boolean containsDeltaFormat(final byte[] iStream) {
+    if (iStream != null)
+      for (int i = 1; i < iStream.length; ++i)
+        if (iStream[i] == '+' && iStream[i - 1] == OStringSerializerHelper.COLLECTION_SEPARATOR)
+          return true;
+    return false;
+  }
+
+  public int size() {
+    unmarshall();
+    return size + (unpacked != null ? unpacked.size() : 0) + (newEntries != null ? newEntries.size() : 0);
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public boolean contains(final Object iValue) {
+    if (!(iValue instanceof OIdentifiable))
+      return false;
+
+    unmarshall();
+    promoteNewEntries();
+
+    final ORID rid = ((OIdentifiable) iValue).getIdentity();
+    final long key = toKey(rid);
+    if (key > -1)
+      return Arrays.binarySearch(entries, 0, size, key) > -1;
+
+    if (rid.isPersistent())
+      return unpacked != null && unpacked.contains(rid);
+
+    return newEntries != null && newEntries.containsKey(iValue);
+  }
+
+  public boolean add(final OIdentifiable iValue) {
+    if (iValue == null)
+      return false;
+
+    unmarshall();
+    promoteNewEntries();
+
+    final ORID rid = iValue.getIdentity();
+    final long key = toKey(rid);
+    if (key == -1 && rid.isPersistent()) {
+      // PERSISTENT RID THAT DOESN'T FIT IN A LONG
+      if (!addUnpacked(rid))
+        return false;
+      trackChanges(iValue);
+      changed();
+      return true;
+    }
+
+    if (key == -1) {
+      // TEMPORARY IDENTITY: KEEP THE RECORD UNTIL IT'S SAVED
+      if (newEntries == null)
+        newEntries = new IdentityHashMap<OIdentifiable, Object>();
+      else if (newEntries.containsKey(iValue))
+        return false;
+      newEntries.put(iValue, NEWMAP_VALUE);
+      changed();
+      return true;
+    }
+
+    final int index = Arrays.binarySearch(entries, 0, size, key);
+    if (index > -1)
+      return false;
+
+    insert(-(index + 1), key);
+    trackChanges(iValue);
+    changed();
+    return true;
+  }
+
+  /**
+   * Adds all the values merging them with the content in one pass.
+   *
+   * @return The values added
+   */
+  public List<OIdentifiable> addAll(final Collection<? extends OIdentifiable> iValues) {
+    unmarshall();
+    promoteNewEntries();
+
+    final List<OIdentifiable> added = new ArrayList<OIdentifiable>();
+
+    final long[] keys = new long[iValues.size()];
+    int keyCount = 0;
+    for (OIdentifiable value : iValues) {
+      if (value == null)
+        continue;
+
+      final long key = toKey(value.getIdentity());
+      if (key > -1) {
+        keys[keyCount++] = key;
+        trackChanges(value);
+      } else if (add(value))
+        added.add(value);
+    }
+
+    if (keyCount == 0)
+      return added;
+
+    Arrays.sort(keys, 0, keyCount);
+
+    // MERGE THE TWO SORTED ARRAYS SKIPPING THE DUPLICATES
+    final long[] merged = new long[size + keyCount];
+    int i = 0, j = 0, m = 0;
+    while (i < size || j < keyCount) {
+      final long next;
+      if (j >= keyCount || i < size && entries[i] <= keys[j]) {
+        next = entries[i++];
+        if (j < keyCount && keys[j] == next)
+          j++;
+      } else {
+        next = keys[j++];
+        if (m > 0 && merged[m - 1] == next)
+          // DUPLICATED IN THE VALUES TO ADD
+          continue;
+        added.add(toRID(next));
+      }
+
+      if (m == 0 || merged[m - 1] != next)
+        merged[m++] = next;
+    }
+
+    if (m == size)
+      return added;
+
+    entries = merged;
+    size = m;
+    changed();
+    return added;
+  }
+
+  public boolean remove(final Object iValue) {
+    if (!(iValue instanceof OIdentifiable))
+      return false;
+
+    unmarshall();
+    promoteNewEntries();
+
+    if (newEntries != null && newEntries.remove(iValue) != null) {
+      if (newEntries.isEmpty())
+        newEntries = null;
+      changed();
+      return true;
+    }
+
+    final ORID rid = ((OIdentifiable) iValue).getIdentity();
+    final long key = toKey(rid);
+    if (key == -1) {
+      if (unpacked == null || !unpacked.remove(rid))
+        return false;
+      if (unpacked.isEmpty())
+        unpacked = null;
+      changed();
+      return true;
+    }
+
+    final int index = Arrays.binarySearch(entries, 0, size, key);
+    if (index < 0)
+      return false;
+
+    delete(index);
+    changed();
+    return true;
+  }
+
+  /**
+   * Removes all the values in one pass over the content.
+   *
+   * @return The values removed
+   */
+  public List<OIdentifiable> removeAll(final Collection<?> iValues) {
+    unmarshall();
+    promoteNewEntries();
+
+    final List<OIdentifiable> removed = new ArrayList<OIdentifiable>();
+
+    final long[] keys = new long[iValues.size()];
+    int keyCount = 0;
+    for (Object value : iValues) {
+      if (!(value instanceof OIdentifiable))
+        continue;
+
+      final long key = toKey(((OIdentifiable) value).getIdentity());
+      if (key > -1)
+        keys[keyCount++] = key;
+      else if (remove(value))
+        removed.add((OIdentifiable) value);
+    }
+
+    if (keyCount == 0)
+      return removed;
+
+    Arrays.sort(keys, 0, keyCount);
+
+    // KEEP THE ENTRIES NOT IN THE SORTED KEYS
+    int j = 0, m = 0;
+    for (int i = 0; i < size; ++i) {
+      while (j < keyCount && keys[j] < entries[i])
+        j++;
+
+      if (j < keyCount && keys[j] == entries[i])
+        removed.add(toRID(entries[i]));
+      else
+        entries[m++] = entries[i];
+    }
+
+    if (m < size) {
+      size = m;
+      changed();
+    }
+    return removed;
+  }
+
+  /**
+   * Keeps only the values contained in the collection.
+   *
+   * @return The values removed
+   */
+  public List<OIdentifiable> retainAll(final Collection<?> iValues) {
+    final List<OIdentifiable> toRemove = new ArrayList<OIdentifiable>();
+    for (OIdentifiable value : this)
+      if (!iValues.contains(value))
+        toRemove.add(value);
+
+    return removeAll(toRemove);
+  }
+
+  public void clear() {
+    stream = null;
+    entries = EMPTY;
+    size = 0;
+    unpacked = null;
+    newEntries = null;
+    addedRecords = null;
+    changed();
+  }
+
+  /**
+   * Browses the content: first the persistent RIDs in order, then the unpacked ones and the records with a temporary identity.
+   */
+  public Iterator<OIdentifiable> iterator() {
+    unmarshall();
+    promoteNewEntries();
+
+    final OIdentifiable[] others = getUnpackedAndNewEntries();
+
+    return new Iterator<OIdentifiable>() {
+      private int           next                  = 0;
+      private int           expectedModifications = modifications;
+      private OIdentifiable last;
+
+      public boolean hasNext() {
+        return next < size + (others != null ? others.length : 0);
+      }
+
+      public OIdentifiable next() {
+        if (modifications != expectedModifications)
+          throw new ConcurrentModificationException();
+        if (!hasNext())
+          throw new NoSuchElementException();
+
+        last = next < size ? toRID(entries[next]) : others[next - size];
+        next++;
+        return last;
+      }
+
+      public void remove() {
+        if (last == null)
+          throw new IllegalStateException();
+        if (modifications != expectedModifications)
+          throw new ConcurrentModificationException();
+
+        ORidBag.this.remove(last);
+        if (next <= size + 1 && toKey(last.getIdentity()) > -1)
+          // THE NEXT ENTRIES ARE SHIFTED BACK
+          next--;
+
+        last = null;
+        expectedModifications = modifications;
+      }
+    };
+  }
+
+  /**
+   * Returns the records to save before to stream the RIDs: the records with a temporary identity and the ones added since the last
+   * call that are dirty.
+   */
+  public Collection<ORecord<?>> getRecordsToSave() {
+    final List<ORecord<?>> records = new ArrayList<ORecord<?>>();
+
+    if (newEntries != null)
+      for (OIdentifiable value : newEntries.keySet())
+        if (value instanceof ORecord<?>)
+          records.add((ORecord<?>) value);
+
+    if (addedRecords != null)
+      for (ORecord<?> record : addedRecords.keySet())
+        if (record.isDirty())
+          records.add(record);
+    addedRecords = null;
+
+    return records;
+  }
+
+  public ORidBag fromStream(final StringBuilder iInput) {
+    entries = EMPTY;
+    size = 0;
+    unpacked = null;
+    newEntries = null;
+    addedRecords = null;
+    stream = iInput != null && iInput.length() > 0 ? iInput : null;
+    return this;
+  }
+
+  /**
+   * Streams the content in the delta format if enabled for the current thread, otherwise in the classic format.
+   *
+   * @see #isDeltaFormatEnabled()
+   */
+  public StringBuilder toStream(final StringBuilder iOutput) {
+    return toStream(iOutput, isDeltaFormatEnabled());
+  }
+
+  public StringBuilder toStream(final StringBuilder iOutput, final boolean iDeltaFormat) {
+    if (stream != null && stream.indexOf(":-") > -1)
+      // TEMPORARY RIDS: RESOLVE THEM AGAINST THE RECORDS THAT COULD BE SAVED IN THE MEANWHILE
+      unmarshall();
+    else if (stream != null && !iDeltaFormat && stream.indexOf(",+") > -1)
+      // DELTA FORMAT NOT ALLOWED: WRITE ALL THE RIDS
+      unmarshall();
+
+    if (stream != null) {
+      // NOT CHANGED: COPY THE CONTENT AS IS
+      if (stream.charAt(0) != OStringSerializerHelper.SET_BEGIN && stream.charAt(0) != OStringSerializerHelper.LIST_BEGIN) {
+        iOutput.append(OStringSerializerHelper.SET_BEGIN);
+        iOutput.append(stream);
+        iOutput.append(OStringSerializerHelper.SET_END);
+      } else
+        iOutput.append(stream);
+      return iOutput;
+    }
+
+    promoteNewEntries();
+
+    iOutput.append(OStringSerializerHelper.SET_BEGIN);
+
+    int lastClusterId = -1;
+    long lastPosition = 0;
+    for (int i = 0; i < size; ++i) {
+      if (i > 0)
+        iOutput.append(OStringSerializerHelper.COLLECTION_SEPARATOR);
+
+      final int clusterId = (int) (entries[i] >>> POSITION_BITS);
+      final long position = entries[i] & POSITION_MASK;
+
+      if (clusterId == lastClusterId && iDeltaFormat)
+        iOutput.append('+').append(position - lastPosition);
+      else {
+        iOutput.append(OStringSerializerHelper.LINK).append(clusterId).append(ORID.SEPARATOR).append(position);
+        lastClusterId = clusterId;
+      }
+      lastPosition = position;
+    }
+
+    final OIdentifiable[] others = getUnpackedAndNewEntries();
+    if (others != null)
+      for (OIdentifiable value : others) {
+        if (size > 0 || value != others[0])
+          iOutput.append(OStringSerializerHelper.COLLECTION_SEPARATOR);
+        value.getIdentity().toString(iOutput);
+      }
+
+    iOutput.append(OStringSerializerHelper.SET_END);
+    return iOutput;
+  }
+
+  @Override
+  public String toString() {
+    return toStream(new StringBuilder()).toString();
+  }
+
+  /**
+   * Parses the streamed content, if any.
+   */
+  protected void unmarshall() {
+    if (stream == null)
+      return;
+
+    final StringBuilder input = stream;
+    stream = null;
+
+    int begin = 0;
+    int end = input.length();
+    if (end > 0
+        && (input.charAt(0) == OStringSerializerHelper.SET_BEGIN || input.charAt(0) == OStringSerializerHelper.LIST_BEGIN)) {
+      begin++;
+      end--;
+    }
+
+    long[] keys = new long[Math.max((end - begin) / 4, 4)];
+    int keyCount = 0;
+    boolean sorted = true;
+
+    int clusterId = -1;
+    long position = 0;
+    for (int i = begin; i < end;) {
+      int separator = i;
+      while (separator < end && input.charAt(separator) != OStringSerializerHelper.COLLECTION_SEPARATOR)
+        separator++;
+
+      if (separator > i) {
+        if (input.charAt(i) == '+')
+          // DELTA FROM THE PREVIOUS POSITION
+          position += parseLong(input, i + 1, separator);
+        else {
+          final int start = input.charAt(i) == OStringSerializerHelper.LINK ? i + 1 : i;
+          final int colon = indexOf(input, ORID.SEPARATOR, start, separator);
+          if (colon == -1)
+            throw new IllegalArgumentException("Invalid RID in set: " + input.substring(i, separator));
+
+          clusterId = (int) parseLong(input, start, colon);
+          position = parseLong(input, colon + 1, separator);
+        }
+
+        if (position < 0 || clusterId < 0) {
+          // TEMPORARY RID: KEEP THE RECORD OF THE TRANSACTION, IF ANY
+          final ORecordId rid = new ORecordId(clusterId, OClusterPositionFactory.INSTANCE.valueOf(position));
+          final OIdentifiable record = ODatabaseRecordThreadLocal.INSTANCE.isDefined() ? rid.getRecord() : null;
+          if (newEntries == null)
+            newEntries = new IdentityHashMap<OIdentifiable, Object>();
+          newEntries.put(record != null ? record : rid, NEWMAP_VALUE);
+          i = separator + 1;
+          continue;
+        }
+
+        if (clusterId > Short.MAX_VALUE || position > POSITION_MASK) {
+          // PERSISTENT RID THAT DOESN'T FIT IN A LONG
+          addUnpacked(new ORecordId(clusterId, OClusterPositionFactory.INSTANCE.valueOf(position)));
+          i = separator + 1;
+          continue;
+        }
+
+        if (keyCount == keys.length)
+          keys = Arrays.copyOf(keys, keys.length << 1);
+
+        keys[keyCount] = ((long) clusterId << POSITION_BITS) | position;
+        if (keyCount > 0 && keys[keyCount] <= keys[keyCount - 1])
+          sorted = false;
+        keyCount++;
+      }
+
+      i = separator + 1;
+    }
+
+    if (!sorted) {
+      // CLASSIC FORMAT IN INSERTION ORDER
+      Arrays.sort(keys, 0, keyCount);
+      int m = 0;
+      for (int i = 0; i < keyCount; ++i)
+        if (m == 0 || keys[m - 1] != keys[i])
+          keys[m++] = keys[i];
+      keyCount = m;
+    }
+
+    entries = keys;
+    size = keyCount;
+  }
+
+  /**
+   * Moves the records saved in the meanwhile among the persistent RIDs.
+   */
+  private void promoteNewEntries() {
+    if (newEntries == null)
+      return;
+
+    for (Iterator<OIdentifiable> it = newEntries.keySet().iterator(); it.hasNext();) {
+      final ORID rid = it.next().getIdentity();
+      if (!rid.isPersistent())
+        continue;
+
+      it.remove();
+
+      final long key = toKey(rid);
+      if (key == -1)
+        addUnpacked(rid);
+      else {
+        final int index = Arrays.binarySearch(entries, 0, size, key);
+        if (index < 0)
+          insert(-(index + 1), key);
+      }
+    }
+
+    if (newEntries.isEmpty())
+      newEntries = null;
+  }
+
+  private boolean addUnpacked(final ORID iRID) {
+    if (unpacked == null)
+      unpacked = new LinkedHashSet<ORID>();
+    // COPY THE RID: THE IDENTITY OF A RECORD CAN CHANGE
+    return unpacked.add(iRID.copy());
+  }
+
+  private OIdentifiable[] getUnpackedAndNewEntries() {
+    final int unpackedSize = unpacked != null ? unpacked.size() : 0;
+    final int newSize = newEntries != null ? newEntries.size() : 0;
+    if (unpackedSize + newSize == 0)
+      return null;
+
+    final OIdentifiable[] result = new OIdentifiable[unpackedSize + newSize];
+    int i = 0;
+    if (unpacked != null)
+      for (ORID rid : unpacked)
+        result[i++] = rid;
+    if (newEntries != null)
+      for (OIdentifiable value : newEntries.keySet())
+        result[i++] = value;
+    return result;
+  }
+
+  private void trackChanges(final OIdentifiable iValue) {
+    if (iValue instanceof ORecord<?>) {
+      if (addedRecords == null)
+        addedRecords = new IdentityHashMap<ORecord<?>, Object>();
+      addedRecords.put((ORecord<?>) iValue, NEWMAP_VALUE);
+    }
+  }
+
+  private void insert(final int iIndex, final long iKey) {
+    if (size == entries.length)
+      entries = Arrays.copyOf(entries, Math.max(size << 1, 8));
+
+    System.arraycopy(entries, iIndex, entries, iIndex + 1, size - iIndex);
+    entries[iIndex] = iKey;
+    size++;
+  }
+
+  private void delete(final int iIndex) {
+    System.arraycopy(entries, iIndex + 1, entries, iIndex, size - iIndex - 1);
+    size--;
+  }
+
+  private void changed() {
+    stream = null;
+    modifications++;
+  }
+
+  /**
+   * Returns the RID packed in a long, or -1 if the RID is temporary or doesn't fit.
+   */
+  private static long toKey(final ORID iRID) {
+    final int clusterId = iRID.getClusterId();
+    if (clusterId < 0 || clusterId > Short.MAX_VALUE)
+      return -1;
+
+    final OClusterPosition clusterPosition = iRID.getClusterPosition();
+    if (!(clusterPosition instanceof OClusterPositionLong))
+      return -1;
+
+    final long position = clusterPosition.longValue();
+    if (position < 0 || position > POSITION_MASK)
+      return -1;
+
+    return ((long) clusterId << POSITION_BITS) | position;
+  }
+
+  private static ORecordId toRID(final long iKey) {
+    return new ORecordId((int) (iKey >>> POSITION_BITS), OClusterPositionFactory.INSTANCE.valueOf(iKey & POSITION_MASK));
+  }
+
+  private static long parseLong(final StringBuilder iInput, final int iBegin, final int iEnd) {
+    if (iBegin >= iEnd)
+      throw new IllegalArgumentException("Invalid number in set: empty");
+
+    boolean negative = false;
+    int i = iBegin;
+    if (iInput.charAt(i) == '-') {
+      negative = true;
+      i++;
+    }
+
+    long value = 0;
+    for (; i < iEnd; ++i) {
+      final char c = iInput.charAt(i);
+      if (c < '0' || c > '9')
+        throw new IllegalArgumentException("Invalid number in set: " + iInput.substring(iBegin, iEnd));
+      value = value * 10 + (c - '0');
+    }
+    return negative ? -value : value;
+  }
+
+  private static int indexOf(final StringBuilder iInput, final char iChar, final int iBegin, final int iEnd) {
+    for (int i = iBegin; i < iEnd; ++i)
+      if (iInput.charAt(i) == iChar)
+        return i;
+    return -1;
+  }
+}
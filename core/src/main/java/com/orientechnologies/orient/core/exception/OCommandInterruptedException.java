@@ -0,0 +1,30 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.exception;
+
+/**
+ * The command has been cancelled while running.
+ *
+ * @author Luca Garulli
+ *
+ */
+public class OCommandInterruptedException extends OCommandExecutionException {
+  private static final long serialVersionUID = 1L;
+
+  public OCommandInterruptedException(final String message) {
+    super(message);
+  }
+}
@@ -16,6 +16,7 @@
 package com.orientechnologies.orient.core.fetch;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -451,6 +452,8 @@ public class OFetchHelper {
     } else
       throw new IllegalStateException("Unrecognized type: " + fieldValue.getClass());
 
+    final Map<ORID, ORecordInternal<?>> preloaded = preloadLinks(iRootRecord.getDatabase(), linked, iLevelFromRoot, parsedRecords);
+
     final Iterator<?> iter;
     if (linked instanceof ORecordLazyMultiValue)
       iter = ((ORecordLazyMultiValue) linked).rawIterator();
@@ -469,7 +472,8 @@ public class OFetchHelper {
         final Integer fieldDepthLevel = parsedRecords.get(d.getIdentity());
         if (!d.getIdentity().isValid() || (fieldDepthLevel != null && fieldDepthLevel.intValue() == iLevelFromRoot)) {
           removeParsedFromMap(parsedRecords, d);
-          d = d.getRecord();
+          final ORecordInternal<?> record = preloaded != null ? preloaded.get(d.getIdentity()) : null;
+          d = record != null ? record : d.getRecord();
 
           if (!(d instanceof ODocument)) {
             iListener.processStandardField(null, d, fieldName, iContext, iUserObject);
@@ -499,6 +503,42 @@ public class OFetchHelper {
       iContext.onAfterMap(iRootRecord, fieldName, iUserObject);
   }
 
+  /**
+   * Loads with one request to the storage all the linked records of the collection that will be fetched.
+   * 
+   * @return The records loaded by RID, or null if there was nothing to load
+   */
+  private static Map<ORID, ORecordInternal<?>> preloadLinks(final ODatabaseRecord iDatabase, final Collection<?> iLinked,
+      final int iLevelFromRoot, final Map<ORID, Integer> parsedRecords) {
+    if (iDatabase == null)
+      return null;
+
+    final Iterator<?> iter;
+    if (iLinked instanceof ORecordLazyMultiValue)
+      iter = ((ORecordLazyMultiValue) iLinked).rawIterator();
+    else
+      iter = iLinked.iterator();
+
+    List<ORecordId> rids = null;
+    while (iter.hasNext()) {
+      final Object o = iter.next();
+      if (!(o instanceof ORecordId) || !((ORecordId) o).isPersistent())
+        continue;
+
+      final Integer fieldDepthLevel = parsedRecords.get(o);
+      if (fieldDepthLevel != null && fieldDepthLevel.intValue() == iLevelFromRoot) {
+        if (rids == null)
+          rids = new ArrayList<ORecordId>();
+        rids.add((ORecordId) o);
+      }
+    }
+
+    if (rids == null || rids.size() < 2)
+      return null;
+
+    return iDatabase.loadRecords(rids);
+  }
+
   private static void fetchDocument(final ORecordSchemaAware<?> iRootRecord, final Object iUserObject,
       final Map<String, Integer> iFetchPlan, final OIdentifiable fieldValue, final String fieldName, final int iCurrentLevel,
       final int iLevelFromRoot, final int iFieldDepthLevel, final Map<ORID, Integer> parsedRecords,
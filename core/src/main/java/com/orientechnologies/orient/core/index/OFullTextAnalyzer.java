@@ -0,0 +1,45 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import java.util.List;
+
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Splits the text indexed by a full-text index in the terms to index. The position of a term in the returned list is used as term
+ * position by phrase searches. Implementations must have a public empty constructor since the index instantiates them by the class
+ * name stored in its configuration.
+ * 
+ * @author Luca Garulli
+ * 
+ */
+public interface OFullTextAnalyzer {
+  /**
+   * Returns the terms of the text in the order they appear.
+   */
+  public List<String> analyze(String iText);
+
+  /**
+   * Reads the analyzer settings from the index configuration.
+   */
+  public void configure(ODocument iConfiguration);
+
+  /**
+   * Writes the analyzer settings in the index configuration.
+   */
+  public void updateConfiguration(ODocument iConfiguration);
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+
+/**
+ * Default analyzer of full-text indexes: splits the text by separator characters, strips the ignored characters and skips the stop
+ * words. Terms are case sensitive.
+ * 
+ * @author Luca Garulli
+ * 
+ */
+public class OFullTextDefaultAnalyzer implements OFullTextAnalyzer {
+  public static final String  CONFIG_STOP_WORDS      = "stopWords";
+  public static final String  CONFIG_SEPARATOR_CHARS = "separatorChars";
+  public static final String  CONFIG_IGNORE_CHARS    = "ignoreChars";
+
+  private static final String DEF_SEPARATOR_CHARS    = " \r\n\t:;,.|+*/\\=!?[]()";
+  private static final String DEF_IGNORE_CHARS       = "'\"";
+  private static final String DEF_STOP_WORDS         = "the in a at as and or for his her " + "him this that what which while "
+                                                         + "up with be was is";
+
+  private String              separatorChars         = DEF_SEPARATOR_CHARS;
+  private String              ignoreChars            = DEF_IGNORE_CHARS;
+  private Set<String>         stopWords;
+
+  public OFullTextDefaultAnalyzer() {
+    stopWords = new HashSet<String>(OStringSerializerHelper.split(DEF_STOP_WORDS, ' '));
+  }
+
+  public List<String> analyze(final String iText) {
+    final List<String> result = new ArrayList<String>();
+
+    final List<String> words = (List<String>) OStringSerializerHelper.split(new ArrayList<String>(), iText, 0, -1, separatorChars);
+
+    final StringBuilder buffer = new StringBuilder();
+
+    char c;
+    boolean ignore;
+    for (String word : words) {
+      buffer.setLength(0);
+
+      for (int i = 0; i < word.length(); ++i) {
+        c = word.charAt(i);
+        ignore = false;
+        for (int k = 0; k < ignoreChars.length(); ++k)
+          if (c == ignoreChars.charAt(k)) {
+            ignore = true;
+            break;
+          }
+
+        if (!ignore)
+          buffer.append(c);
+      }
+
+      word = buffer.toString();
+
+      // CHECK IF IT'S A STOP WORD
+      if (word.length() == 0 || stopWords.contains(word))
+        continue;
+
+      result.add(word);
+    }
+
+    return result;
+  }
+
+  public void configure(final ODocument iConfiguration) {
+    final String separators = iConfiguration.field(CONFIG_SEPARATOR_CHARS);
+    if (separators != null)
+      separatorChars = separators;
+
+    final String ignore = iConfiguration.field(CONFIG_IGNORE_CHARS);
+    if (ignore != null)
+      ignoreChars = ignore;
+
+    final Collection<String> stop = iConfiguration.field(CONFIG_STOP_WORDS);
+    if (stop != null)
+      stopWords = new HashSet<String>(stop);
+  }
+
+  public void updateConfiguration(final ODocument iConfiguration) {
+    iConfiguration.field(CONFIG_SEPARATOR_CHARS, separatorChars);
+    iConfiguration.field(CONFIG_IGNORE_CHARS, ignoreChars);
+    iConfiguration.field(CONFIG_STOP_WORDS, stopWords);
+  }
+
+  public String getSeparatorChars() {
+    return separatorChars;
+  }
+
+  public OFullTextDefaultAnalyzer setSeparatorChars(final String iSeparatorChars) {
+    separatorChars = iSeparatorChars;
+    return this;
+  }
+
+  public String getIgnoreChars() {
+    return ignoreChars;
+  }
+
+  public OFullTextDefaultAnalyzer setIgnoreChars(final String iIgnoreChars) {
+    ignoreChars = iIgnoreChars;
+    return this;
+  }
+
+  public Set<String> getStopWords() {
+    return stopWords;
+  }
+
+  public OFullTextDefaultAnalyzer setStopWords(final Set<String> iStopWords) {
+    stopWords = iStopWords;
+    return this;
+  }
+}
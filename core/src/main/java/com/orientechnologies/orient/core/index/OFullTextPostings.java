@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.Set;
+
+import com.orientechnologies.orient.core.id.ORID;
+
+/**
+ * Posting list of a full-text term: the records containing the term with the positions of the term in each record. The term
+ * frequency is the number of positions. The index stores every (term, record) pair as a separate entry, so indexing a record
+ * never reads the postings of the other records: this class collects the entries of a term loaded by a search. The positions of
+ * an entry are stored compressed:
+ *
+ * <pre>
+ * tf:varint ( position-delta:varint )*
+ * </pre>
+ *
+ * @author Luca Garulli
+ *
+ */
+public class OFullTextPostings {
+  private final Map<ORID, int[]> entries;
+
+  public OFullTextPostings(final Map<ORID, int[]> iEntries) {
+    entries = iEntries;
+  }
+
+  /**
+   * Returns the sorted positions of the term in the record, or null if the record doesn't contain the term.
+   */
+  public int[] get(final ORID iRecord) {
+    return entries.get(iRecord);
+  }
+
+  public Set<ORID> getRecords() {
+    return entries.keySet();
+  }
+
+  /**
+   * Returns the number of records containing the term.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /**
+   * Merges two sorted arrays of positions.
+   */
+  public static int[] merge(final int[] iPositions, final int[] iOthers) {
+    final int[] merged = new int[iPositions.length + iOthers.length];
+    int i = 0, k = 0, m = 0;
+    while (i < iPositions.length && k < iOthers.length)
+      merged[m++] = iPositions[i] <= iOthers[k] ? iPositions[i++] : iOthers[k++];
+    while (i < iPositions.length)
+      merged[m++] = iPositions[i++];
+    while (k < iOthers.length)
+      merged[m++] = iOthers[k++];
+    return merged;
+  }
+
+  public static byte[] toStream(final int[] iPositions) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(iPositions.length + 1);
+    writeVarLong(out, iPositions.length);
+    int lastPosition = 0;
+    for (int p : iPositions) {
+      writeVarLong(out, p - lastPosition);
+      lastPosition = p;
+    }
+    return out.toByteArray();
+  }
+
+  public static int[] fromStream(final byte[] iStream) {
+    final int[] offset = new int[] { 0 };
+    final int[] positions = new int[(int) readVarLong(iStream, offset)];
+    int lastPosition = 0;
+    for (int i = 0; i < positions.length; ++i) {
+      lastPosition += (int) readVarLong(iStream, offset);
+      positions[i] = lastPosition;
+    }
+    return positions;
+  }
+
+  private static void writeVarLong(final ByteArrayOutputStream iOut, long iValue) {
+    while ((iValue & ~0x7FL) != 0) {
+      iOut.write((int) ((iValue & 0x7F) | 0x80));
+      iValue >>>= 7;
+    }
+    iOut.write((int) iValue);
+  }
+
+  private static long readVarLong(final byte[] iStream, final int[] iOffset) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = iStream[iOffset[0]++];
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
@@ -15,51 +15,82 @@
  */
 package com.orientechnologies.orient.core.index;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Set;
 
+import com.orientechnologies.common.collection.OCompositeKey;
 import com.orientechnologies.common.listener.OProgressListener;
+import com.orientechnologies.orient.core.db.ODatabase;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.db.record.ORecordElement;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.iterator.OLazyWrapperIterator;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.OLinkSerializer;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.index.OCompositeKeySerializer;
 import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializer;
-import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
+import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerBytes;
+import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerListRID;
+import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerLong;
+import com.orientechnologies.orient.core.type.tree.OMVRBTreeDatabaseLazySave;
+import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeProviderAbstract;
 
 /**
- * Fast index for full-text searches.
- * 
+ * Fast index for full-text searches. The text is split in terms by a pluggable {@link OFullTextAnalyzer}, then every term points
+ * to the records containing it. Besides the lookup of single terms, the index supports ranked searches by {@link #search(String,
+ * int)}: the matching records are scored using BM25 and only the best ones are returned. Phrases between double quotes are
+ * required to appear in the record with the same term sequence.<br/>
+ * Every (term, record) pair is an entry of the postings tree holding the compressed positions of the term in the record, see
+ * {@link OFullTextPostings}, so indexing a record updates only its own entries. The number of terms of every record is kept in a
+ * separate tree, so the search never loads the records.
+ *
  * @author Luca Garulli
- * 
+ *
  */
 public class OIndexFullText extends OIndexMultiValues {
 
-  public static final String  TYPE_ID                = OClass.INDEX_TYPE.FULLTEXT.toString();
+  public static final String                                  TYPE_ID             = OClass.INDEX_TYPE.FULLTEXT.toString();
+
+  private static final String                                 CONFIG_ANALYZER     = "analyzer";
+  private static final String                                 CONFIG_POSTINGS_RID = "postingsRid";
+  private static final String                                 CONFIG_LENGTHS_RID  = "lengthsRid";
+
+  // BM25 PARAMETERS: TERM FREQUENCY SATURATION AND LENGTH NORMALIZATION
+  private static final double                                 BM25_K1             = 1.2;
+  private static final double                                 BM25_B              = 0.75;
 
-  private static final String CONFIG_STOP_WORDS      = "stopWords";
-  private static final String CONFIG_SEPARATOR_CHARS = "separatorChars";
-  private static final String CONFIG_IGNORE_CHARS    = "ignoreChars";
+  // KEY OF THE TOTAL NUMBER OF TERMS IN THE LENGTHS TREE: AN INVALID RID THAT CAN'T BE INDEXED
+  private static final ORID                                   TERMS_KEY           = new ORecordId();
 
-  private static String       DEF_SEPARATOR_CHARS    = " \r\n\t:;,.|+*/\\=!?[]()";
-  private static String       DEF_IGNORE_CHARS       = "'\"";
-  private static String       DEF_STOP_WORDS         = "the in a at as and or for his her " + "him this that what which while "
-                                                         + "up with be was is";
-  private final String        separatorChars         = DEF_SEPARATOR_CHARS;
-  private final String        ignoreChars            = DEF_IGNORE_CHARS;
-  private final Set<String>   stopWords;
+  private OFullTextAnalyzer                                   analyzer            = new OFullTextDefaultAnalyzer();
+  private OMVRBTreeDatabaseLazySave<OCompositeKey, byte[]>    postings;
+  private OMVRBTreeDatabaseLazySave<OIdentifiable, Long>      lengths;
 
   public OIndexFullText() {
     super(TYPE_ID);
-    stopWords = new HashSet<String>(OStringSerializerHelper.split(DEF_STOP_WORDS, ' '));
   }
 
   /**
    * Index an entire document field by field and save the index at the end.
-   * 
+   *
    * @param iDocument
    *          The document to index
    */
@@ -74,14 +105,8 @@ public class OIndexFullText extends OIndexMultiValues {
         put(fieldValue, iDocument);
       }
 
-      acquireExclusiveLock();
-      try {
-
-        map.save();
+      lazySave();
 
-      } finally {
-        releaseExclusiveLock();
-      }
     } finally {
       modificationLock.releaseModificationLock();
     }
@@ -89,7 +114,8 @@ public class OIndexFullText extends OIndexMultiValues {
 
   /**
    * Indexes a value and save the index. Splits the value in single words and index each one. Save of the index is responsibility of
-   * the caller.
+   * the caller. All the words of the value are indexed under the same lock. The positions of the words follow the ones of the values
+   * already indexed for the same record.
    */
   @Override
   public OIndexFullText put(final Object iKey, final OIdentifiable iSingleValue) {
@@ -99,33 +125,48 @@ public class OIndexFullText extends OIndexMultiValues {
     modificationLock.requestModificationLock();
 
     try {
-      final List<String> words = splitIntoWords(iKey.toString());
-
-      // FOREACH WORD CREATE THE LINK TO THE CURRENT DOCUMENT
-      for (final String word : words) {
-        acquireExclusiveLock();
+      final List<String> words = analyzer.analyze(iKey.toString());
+      if (words.isEmpty())
+        return this;
 
-        try {
-          Set<OIdentifiable> refs;
+      acquireExclusiveLock();
+      try {
+        final ORID rid = iSingleValue.getIdentity();
 
-          // SEARCH FOR THE WORD
-          refs = map.get(word);
+        final Long indexedTerms = lengths.get(rid);
+        final int offset = indexedTerms != null ? indexedTerms.intValue() : 0;
 
-          if (refs == null) {
-            // WORD NOT EXISTS: CREATE THE KEYWORD CONTAINER THE FIRST TIME THE WORD IS FOUND
-            refs = new OMVRBTreeRIDSet();
-            ((OMVRBTreeRIDSet) refs).setAutoConvertToRecord(false);
+        // GROUP THE POSITIONS BY WORD
+        final Map<String, List<Integer>> positions = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0; i < words.size(); ++i) {
+          List<Integer> wordPositions = positions.get(words.get(i));
+          if (wordPositions == null) {
+            wordPositions = new ArrayList<Integer>();
+            positions.put(words.get(i), wordPositions);
           }
+          wordPositions.add(offset + i);
+        }
 
-          // ADD THE CURRENT DOCUMENT AS REF FOR THAT WORD
-          refs.add(iSingleValue);
+        // FOREACH WORD CREATE THE LINK TO THE CURRENT DOCUMENT
+        for (final Entry<String, List<Integer>> entry : positions.entrySet()) {
+          int[] wordPositions = new int[entry.getValue().size()];
+          for (int i = 0; i < wordPositions.length; ++i)
+            wordPositions[i] = entry.getValue().get(i);
 
-          // SAVE THE INDEX ENTRY
-          map.put(word, refs);
+          // ONLY THE ENTRY OF THE WORD IN THE CURRENT DOCUMENT IS UPDATED
+          final OCompositeKey key = new OCompositeKey(entry.getKey(), rid);
+          final byte[] stream = postings.get(key);
+          if (stream != null)
+            wordPositions = OFullTextPostings.merge(OFullTextPostings.fromStream(stream), wordPositions);
 
-        } finally {
-          releaseExclusiveLock();
+          postings.put(key, OFullTextPostings.toStream(wordPositions));
         }
+
+        lengths.put(rid, (long) (offset + words.size()));
+        addTerms(words.size());
+
+      } finally {
+        releaseExclusiveLock();
       }
       return this;
     } finally {
@@ -136,7 +177,7 @@ public class OIndexFullText extends OIndexMultiValues {
   /**
    * Splits passed in key on several words and remove records with keys equals to any item of split result and values equals to
    * passed in value.
-   * 
+   *
    * @param iKey
    *          Key to remove.
    * @param value
@@ -149,53 +190,539 @@ public class OIndexFullText extends OIndexMultiValues {
     modificationLock.requestModificationLock();
 
     try {
-      final List<String> words = splitIntoWords(iKey.toString());
+      final List<String> words = analyzer.analyze(iKey.toString());
       boolean removed = false;
 
-      for (final String word : words) {
-        acquireExclusiveLock();
-        try {
+      acquireExclusiveLock();
+      try {
 
-          final Set<OIdentifiable> recs = map.get(word);
-          if (recs != null && !recs.isEmpty()) {
-            if (recs.remove(value)) {
-              if (recs.isEmpty())
-                map.remove(word);
-              else
-                map.put(word, recs);
-              removed = true;
-            }
+        for (final String word : new LinkedHashSet<String>(words))
+          if (postings.remove(new OCompositeKey(word, value.getIdentity())) != null)
+            removed = true;
+
+        if (removed)
+          removeTerms(value.getIdentity(), words.size());
+
+      } finally {
+        releaseExclusiveLock();
+      }
+
+      return removed;
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  @Override
+  public int remove(final OIdentifiable iRecord) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+
+        final List<OCompositeKey> keys = new ArrayList<OCompositeKey>();
+        for (final OCompositeKey key : postings.keySet())
+          if (key.getKeys().get(1).equals(iRecord.getIdentity()))
+            keys.add(key);
+
+        for (final OCompositeKey key : keys)
+          postings.remove(key);
+
+        // ALL THE TERMS OF THE RECORD ARE GONE
+        removeTerms(iRecord.getIdentity(), Integer.MAX_VALUE);
+
+        return keys.size();
+
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  /**
+   * Splits passed in key on several words and remove all the records of each word.
+   */
+  @Override
+  public boolean remove(final Object iKey) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+
+        final Map<OCompositeKey, byte[]> entries = new LinkedHashMap<OCompositeKey, byte[]>();
+        for (final String word : new LinkedHashSet<String>(analyzer.analyze(iKey.toString()))) {
+          final Iterator<Entry<OCompositeKey, byte[]>> it = getPostings(word, true, word, true);
+          while (it.hasNext()) {
+            final Entry<OCompositeKey, byte[]> entry = it.next();
+            entries.put(entry.getKey(), entry.getValue());
           }
-        } finally {
-          releaseExclusiveLock();
         }
+
+        for (final Entry<OCompositeKey, byte[]> entry : entries.entrySet()) {
+          postings.remove(entry.getKey());
+          removeTerms((ORID) entry.getKey().getKeys().get(1), OFullTextPostings.fromStream(entry.getValue()).length);
+        }
+
+        return !entries.isEmpty();
+
+      } finally {
+        releaseExclusiveLock();
       }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  @Override
+  public Set<OIdentifiable> get(final Object iKey) {
+    return (Set<OIdentifiable>) getValuesBetween(iKey, true, iKey, true, -1);
+  }
+
+  @Override
+  public long count(final Object iKey) {
+    acquireExclusiveLock();
+    try {
+
+      long count = 0;
+      for (final Iterator<?> it = getPostings(iKey, true, iKey, true); it.hasNext(); it.next())
+        ++count;
+      return count;
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public boolean contains(final Object iKey) {
+    acquireExclusiveLock();
+    try {
+
+      return getPostings(iKey, true, iKey, true).hasNext();
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public Collection<OIdentifiable> getValuesBetween(final Object iRangeFrom, final boolean iFromInclusive, final Object iRangeTo,
+      final boolean iToInclusive, final int maxValuesToFetch) {
+    acquireExclusiveLock();
+    try {
+
+      final Set<OIdentifiable> result = new HashSet<OIdentifiable>();
+      final Iterator<Entry<OCompositeKey, byte[]>> it = getPostings(iRangeFrom, iFromInclusive, iRangeTo, iToInclusive);
+      while (it.hasNext() && (maxValuesToFetch < 0 || result.size() < maxValuesToFetch))
+        result.add((OIdentifiable) it.next().getKey().getKeys().get(1));
+      return result;
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public Collection<OIdentifiable> getValuesMajor(final Object fromKey, final boolean isInclusive, final int maxValuesToFetch) {
+    return getValuesBetween(fromKey, isInclusive, null, true, maxValuesToFetch);
+  }
+
+  @Override
+  public Collection<OIdentifiable> getValuesMinor(final Object toKey, final boolean isInclusive, final int maxValuesToFetch) {
+    return getValuesBetween(null, true, toKey, isInclusive, maxValuesToFetch);
+  }
+
+  @Override
+  public Collection<OIdentifiable> getValues(final Collection<?> iKeys, final int maxValuesToFetch) {
+    final Set<OIdentifiable> result = new HashSet<OIdentifiable>();
+    for (final Object key : iKeys) {
+      if (maxValuesToFetch > -1 && result.size() >= maxValuesToFetch)
+        break;
+      result.addAll(getValuesBetween(key, true, key, true, maxValuesToFetch > -1 ? maxValuesToFetch - result.size() : -1));
+    }
+    return result;
+  }
+
+  @Override
+  public Collection<ODocument> getEntriesMajor(final Object fromKey, final boolean isInclusive, final int maxEntriesToFetch) {
+    return getEntries(fromKey, isInclusive, null, true, maxEntriesToFetch);
+  }
+
+  @Override
+  public Collection<ODocument> getEntriesMinor(final Object toKey, final boolean isInclusive, final int maxEntriesToFetch) {
+    return getEntries(null, true, toKey, isInclusive, maxEntriesToFetch);
+  }
+
+  @Override
+  public Collection<ODocument> getEntriesBetween(final Object iRangeFrom, final Object iRangeTo, final boolean iInclusive,
+      final int maxEntriesToFetch) {
+    return getEntries(iRangeFrom, iInclusive, iRangeTo, iInclusive, maxEntriesToFetch);
+  }
+
+  @Override
+  public Collection<ODocument> getEntries(final Collection<?> iKeys, final int maxEntriesToFetch) {
+    final List<ODocument> result = new ArrayList<ODocument>();
+    for (final Object key : iKeys) {
+      if (maxEntriesToFetch > -1 && result.size() >= maxEntriesToFetch)
+        break;
+      result.addAll(getEntries(key, true, key, true, maxEntriesToFetch > -1 ? maxEntriesToFetch - result.size() : -1));
+    }
+    return result;
+  }
+
+  @Override
+  public long getSize() {
+    acquireExclusiveLock();
+    try {
+
+      return postings.size();
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public long getKeySize() {
+    long size = 0;
+    for (final Iterator<Object> it = keys().iterator(); it.hasNext(); it.next())
+      ++size;
+    return size;
+  }
+
+  @Override
+  public Iterator<Entry<Object, Set<OIdentifiable>>> iterator() {
+    acquireExclusiveLock();
+    try {
+
+      return new OTermsIterator(postings.entrySet().iterator());
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public Iterator<Entry<Object, Set<OIdentifiable>>> inverseIterator() {
+    acquireExclusiveLock();
+    try {
+
+      return new OTermsIterator(postings.descendingMap().entrySet().iterator());
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public Iterable<Object> keys() {
+    acquireExclusiveLock();
+    try {
+
+      return new OLazyWrapperIterator<Object>(postings.keySet().iterator()) {
+        private Object lastTerm;
+
+        @Override
+        public boolean filter(final Object iTerm) {
+          // THE ENTRIES OF A TERM ARE CONTIGUOUS
+          if (iTerm.equals(lastTerm))
+            return false;
+          lastTerm = iTerm;
+          return true;
+        }
+
+        @Override
+        public Object createWrapper(final Object iKey) {
+          return ((OCompositeKey) iKey).getKeys().get(0);
+        }
+      };
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public Iterator<OIdentifiable> valuesIterator() {
+    acquireExclusiveLock();
+    try {
+
+      return new ORecordsIterator(postings.keySet().iterator());
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public Iterator<OIdentifiable> valuesInverseIterator() {
+    acquireExclusiveLock();
+    try {
+
+      return new ORecordsIterator(postings.descendingKeySet().iterator());
 
-      return removed;
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public OIndex<Set<OIdentifiable>> clear() {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+
+        super.clear();
+        postings.clear();
+        lengths.clear();
+        return this;
+
+      } finally {
+        releaseExclusiveLock();
+      }
     } finally {
       modificationLock.releaseModificationLock();
     }
   }
 
+  @Override
+  public long rebuild(final OProgressListener iProgressListener) {
+    acquireExclusiveLock();
+    try {
+
+      setTreesLazyUpdates();
+      postings.clear();
+      lengths.clear();
+      return super.rebuild(iProgressListener);
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  /**
+   * Returns the number of the indexed records.
+   */
+  public long getDocuments() {
+    acquireSharedLock();
+    try {
+
+      synchronized (lengths) {
+        return lengths.containsKey(TERMS_KEY) ? lengths.size() - 1 : lengths.size();
+      }
+
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  /**
+   * Returns the number of terms of all the indexed records.
+   */
+  public long getTerms() {
+    acquireSharedLock();
+    try {
+
+      synchronized (lengths) {
+        final Long terms = lengths.get(TERMS_KEY);
+        return terms != null ? terms : 0;
+      }
+
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  /**
+   * Searches the records matching the query and returns them ordered by relevance. The query is analyzed as the indexed text: the
+   * records containing at least one of the terms are returned, unless the query contains phrases between double quotes. In this
+   * case only the records containing all the phrases are returned. The records are scored by the frequencies and the positions
+   * stored in the posting lists, without loading them.
+   *
+   * @param iQuery
+   *          Query text, such as <code>red "running shoes"</code>
+   * @param iLimit
+   *          Maximum number of records to return, 0 or negative for all the matching records
+   * @return The matching records ordered by descending score
+   */
+  public List<OIdentifiable> search(final String iQuery, final int iLimit) {
+    final List<List<String>> phrases = new ArrayList<List<String>>();
+    final Set<String> queryTerms = new LinkedHashSet<String>();
+    parseQuery(iQuery, phrases, queryTerms);
+
+    if (queryTerms.isEmpty())
+      return Collections.emptyList();
+
+    // THE SHARED LOCK EXCLUDES THE WRITERS ONLY: THE TREES MOVE THEIR CURSOR ON READ, SO THE ACCESSES TO THEM ARE SERIALIZED
+    acquireSharedLock();
+    try {
+
+      // LOAD THE POSTINGS OF THE QUERY TERMS
+      final Map<String, OFullTextPostings> termPostings = new HashMap<String, OFullTextPostings>();
+      for (final String term : queryTerms) {
+        final Map<ORID, int[]> entries = new HashMap<ORID, int[]>();
+        synchronized (postings) {
+          final Iterator<Entry<OCompositeKey, byte[]>> it = getPostings(term, true, term, true);
+          while (it.hasNext()) {
+            final Entry<OCompositeKey, byte[]> entry = it.next();
+            entries.put((ORID) entry.getKey().getKeys().get(1), OFullTextPostings.fromStream(entry.getValue()));
+          }
+        }
+        termPostings.put(term, new OFullTextPostings(entries));
+      }
+
+      final Collection<ORID> candidates = getCandidates(phrases, queryTerms, termPostings);
+      if (candidates.isEmpty())
+        return Collections.emptyList();
+
+      final long totalDocuments = getDocuments();
+      final double averageLength = totalDocuments > 0 ? (double) getTerms() / totalDocuments : 0;
+
+      // MIN-HEAP OF THE BEST RECORDS: THE HEAD IS THE FIRST TO DISCARD
+      final PriorityQueue<OScoredRecord> best = new PriorityQueue<OScoredRecord>(iLimit > 0 ? iLimit + 1 : candidates.size());
+
+      for (final ORID candidate : candidates) {
+        if (!matchPhrases(phrases, candidate, termPostings))
+          continue;
+
+        final Long indexedTerms;
+        synchronized (lengths) {
+          indexedTerms = lengths.get(candidate);
+        }
+        final double length = indexedTerms != null ? indexedTerms : 0;
+        final double normalization = BM25_K1
+            * (1 - BM25_B + BM25_B * (averageLength > 0 ? length / averageLength : 1));
+
+        double score = 0;
+        for (final String term : queryTerms) {
+          final OFullTextPostings postingList = termPostings.get(term);
+          final int[] positions = postingList.get(candidate);
+          if (positions == null)
+            continue;
+
+          final int tf = positions.length;
+          final int df = postingList.size();
+          final long n = Math.max(totalDocuments, df);
+
+          final double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+          score += idf * tf * (BM25_K1 + 1) / (tf + normalization);
+        }
+
+        if (score <= 0)
+          continue;
+
+        best.add(new OScoredRecord(candidate, score));
+        if (iLimit > 0 && best.size() > iLimit)
+          // DISCARD THE WORST ONE
+          best.poll();
+      }
+
+      final OIdentifiable[] result = new OIdentifiable[best.size()];
+      for (int i = result.length - 1; i >= 0; --i)
+        result[i] = best.poll().record;
+
+      final List<OIdentifiable> list = new ArrayList<OIdentifiable>(result.length);
+      Collections.addAll(list, result);
+      return list;
+
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public OFullTextAnalyzer getAnalyzer() {
+    return analyzer;
+  }
+
+  /**
+   * Changes the analyzer. The index must be rebuilt to apply it to the already indexed records.
+   */
+  public OIndexFullText setAnalyzer(final OFullTextAnalyzer iAnalyzer) {
+    acquireExclusiveLock();
+    try {
+
+      analyzer = iAnalyzer;
+      if (map != null)
+        updateConfiguration();
+      return this;
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
   @Override
   public OIndexInternal<?> create(String iName, OIndexDefinition iIndexDefinition, ODatabaseRecord iDatabase,
       String iClusterIndexName, int[] iClusterIdsToIndex, OProgressListener iProgressListener, OStreamSerializer iValueSerializer) {
 
-    if (iIndexDefinition.getFields().size() > 1) {
+    // MANUAL INDEXES HAVE NO DEFINITION
+    if (iIndexDefinition != null && iIndexDefinition.getFields().size() > 1) {
       throw new OIndexException(TYPE_ID + " indexes cannot be used as composite ones.");
     }
 
-    return super.create(iName, iIndexDefinition, iDatabase, iClusterIndexName, iClusterIdsToIndex, iProgressListener,
-        iValueSerializer);
+    // THE TREES ARE FILLED BY THE REBUILD EXECUTED BY THE CREATION
+    createTrees(iClusterIndexName);
+    try {
+      return super.create(iName, iIndexDefinition, iDatabase, iClusterIndexName, iClusterIdsToIndex, iProgressListener,
+          iValueSerializer);
+    } catch (RuntimeException e) {
+      postings.delete();
+      lengths.delete();
+      throw e;
+    }
   }
 
   @Override
   public OIndexMultiValues create(String iName, OIndexDefinition indexDefinition, ODatabaseRecord iDatabase,
       String iClusterIndexName, int[] iClusterIdsToIndex, OProgressListener iProgressListener) {
-    if (indexDefinition.getFields().size() > 1) {
-      throw new OIndexException(TYPE_ID + " indexes cannot be used as composite ones.");
+    return (OIndexMultiValues) create(iName, indexDefinition, iDatabase, iClusterIndexName, iClusterIdsToIndex, iProgressListener,
+        OStreamSerializerListRID.INSTANCE);
+  }
+
+  @Override
+  public boolean loadFromConfiguration(final ODocument iConfig) {
+    final String analyzerClassName = iConfig.field(CONFIG_ANALYZER);
+    if (analyzerClassName != null && !analyzerClassName.equals(analyzer.getClass().getName()))
+      try {
+        analyzer = (OFullTextAnalyzer) Class.forName(analyzerClassName).newInstance();
+      } catch (Exception e) {
+        throw new OIndexException("Cannot create the analyzer '" + analyzerClassName + "' of the full-text index", e);
+      }
+    analyzer.configure(iConfig);
+
+    final ORID postingsRid = iConfig.field(CONFIG_POSTINGS_RID, ORID.class);
+    final ORID lengthsRid = iConfig.field(CONFIG_LENGTHS_RID, ORID.class);
+    if (postingsRid != null && lengthsRid != null) {
+      postings = new OMVRBTreeDatabaseLazySave<OCompositeKey, byte[]>(getDatabase(), postingsRid, maxUpdatesBeforeSave);
+      postings.load();
+      lengths = new OMVRBTreeDatabaseLazySave<OIdentifiable, Long>(getDatabase(), lengthsRid, maxUpdatesBeforeSave);
+      lengths.load();
+      if (!super.loadFromConfiguration(iConfig))
+        return false;
+
+      setTreesLazyUpdates();
+      return true;
     }
-    return super.create(iName, indexDefinition, iDatabase, iClusterIndexName, iClusterIdsToIndex, iProgressListener);
+
+    // CREATED BEFORE THE POSTINGS: BUILD THEM
+    final ORID mapRid = iConfig.field(CONFIG_MAP_RID, ORID.class);
+    createTrees(mapRid != null ? getDatabase().getClusterNameById(mapRid.getClusterId()) : null);
+    if (!super.loadFromConfiguration(iConfig))
+      return false;
+
+    setTreesLazyUpdates();
+    if (isAutomatic())
+      rebuild();
+    else
+      importEntries();
+    updateConfiguration();
+    return true;
   }
 
   @Override
@@ -204,9 +731,12 @@ public class OIndexFullText extends OIndexMultiValues {
     configuration.setInternalStatus(ORecordElement.STATUS.UNMARSHALLING);
 
     try {
-      configuration.field(CONFIG_SEPARATOR_CHARS, separatorChars);
-      configuration.field(CONFIG_IGNORE_CHARS, ignoreChars);
-      configuration.field(CONFIG_STOP_WORDS, stopWords);
+      configuration.field(CONFIG_ANALYZER, analyzer.getClass().getName());
+      analyzer.updateConfiguration(configuration);
+      configuration.field(CONFIG_POSTINGS_RID, ((OMVRBTreeProviderAbstract<OCompositeKey, ?>) postings.getProvider()).getRecord()
+          .getIdentity());
+      configuration.field(CONFIG_LENGTHS_RID, ((OMVRBTreeProviderAbstract<OIdentifiable, ?>) lengths.getProvider()).getRecord()
+          .getIdentity());
 
     } finally {
       configuration.setInternalStatus(ORecordElement.STATUS.LOADED);
@@ -214,42 +744,129 @@ public class OIndexFullText extends OIndexMultiValues {
     return configuration;
   }
 
-  private List<String> splitIntoWords(final String iKey) {
-    final List<String> result = new ArrayList<String>();
+  @Override
+  public OIndexInternal<Set<OIdentifiable>> delete() {
+    modificationLock.requestModificationLock();
 
-    final List<String> words = (List<String>) OStringSerializerHelper.split(new ArrayList<String>(), iKey, 0, -1, separatorChars);
+    try {
+      acquireExclusiveLock();
+      try {
 
-    final StringBuilder buffer = new StringBuilder();
-    // FOREACH WORD CREATE THE LINK TO THE CURRENT DOCUMENT
+        super.delete();
+        postings.delete();
+        lengths.delete();
+        return this;
 
-    char c;
-    boolean ignore;
-    for (String word : words) {
-      buffer.setLength(0);
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
 
-      for (int i = 0; i < word.length(); ++i) {
-        c = word.charAt(i);
-        ignore = false;
-        for (int k = 0; k < ignoreChars.length(); ++k)
-          if (c == ignoreChars.charAt(k)) {
-            ignore = true;
-            break;
-          }
+  @Override
+  public OIndexInternal<Set<OIdentifiable>> lazySave() {
+    acquireExclusiveLock();
+    try {
 
-        if (!ignore)
-          buffer.append(c);
-      }
+      super.lazySave();
+      postings.lazySave();
+      lengths.lazySave();
+      return this;
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
 
-      word = buffer.toString();
+  @Override
+  public void unload() {
+    acquireExclusiveLock();
+    try {
 
-      // CHECK IF IT'S A STOP WORD
-      if (stopWords.contains(word))
-        continue;
+      super.unload();
+      postings.unload();
+      lengths.unload();
 
-      result.add(word);
+    } finally {
+      releaseExclusiveLock();
     }
+  }
 
-    return result;
+  @Override
+  public void commit(final ODocument iDocument) {
+    if (iDocument == null)
+      return;
+
+    acquireExclusiveLock();
+    try {
+      postings.setRunningTransaction(true);
+      lengths.setRunningTransaction(true);
+
+      super.commit(iDocument);
+
+    } finally {
+      postings.setRunningTransaction(false);
+      lengths.setRunningTransaction(false);
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public void onBeforeTxBegin(final ODatabase iDatabase) {
+    acquireExclusiveLock();
+    try {
+
+      super.onBeforeTxBegin(iDatabase);
+      postings.commitChanges(true);
+      lengths.commitChanges(true);
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public void onAfterTxRollback(final ODatabase iDatabase) {
+    acquireExclusiveLock();
+    try {
+
+      super.onAfterTxRollback(iDatabase);
+      postings.unload();
+      lengths.unload();
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public void onAfterTxCommit(final ODatabase iDatabase) {
+    acquireExclusiveLock();
+    try {
+
+      super.onAfterTxCommit(iDatabase);
+      postings.onAfterTxCommit();
+      lengths.onAfterTxCommit();
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public void onClose(final ODatabase iDatabase) {
+    acquireExclusiveLock();
+    try {
+
+      super.onClose(iDatabase);
+      postings.commitChanges();
+      lengths.commitChanges();
+
+    } finally {
+      releaseExclusiveLock();
+    }
   }
 
   public boolean canBeUsedInEqualityOperators() {
@@ -259,4 +876,264 @@ public class OIndexFullText extends OIndexMultiValues {
   public boolean supportsOrderedIterations() {
     return false;
   }
+
+  private void createTrees(final String iClusterIndexName) {
+    postings = new OMVRBTreeDatabaseLazySave<OCompositeKey, byte[]>(iClusterIndexName, OCompositeKeySerializer.INSTANCE,
+        OStreamSerializerBytes.INSTANCE, 2, maxUpdatesBeforeSave);
+    lengths = new OMVRBTreeDatabaseLazySave<OIdentifiable, Long>(iClusterIndexName, OLinkSerializer.INSTANCE,
+        OStreamSerializerLong.INSTANCE, 1, maxUpdatesBeforeSave);
+  }
+
+  /**
+   * The trees are created before the index knows if it's automatic: align them to the lazy updates of the index.
+   */
+  private void setTreesLazyUpdates() {
+    postings.setMaxUpdatesBeforeSave(maxUpdatesBeforeSave);
+    lengths.setMaxUpdatesBeforeSave(maxUpdatesBeforeSave);
+  }
+
+  /**
+   * Moves the entries of a manual index created before the postings to the postings tree. The positions of the terms aren't
+   * known, so the records are found by term but not ranked until they are indexed again.
+   */
+  private void importEntries() {
+    for (final Entry<Object, Set<OIdentifiable>> entry : map.entrySet())
+      for (final OIdentifiable value : entry.getValue())
+        postings.put(new OCompositeKey(entry.getKey().toString(), value.getIdentity()), OFullTextPostings.toStream(new int[0]));
+    map.clear();
+  }
+
+  /**
+   * Browses the postings of the terms in the range in ascending order. A null term is an open end of the range.
+   */
+  private Iterator<Entry<OCompositeKey, byte[]>> getPostings(final Object iFromTerm, final boolean iFromInclusive,
+      final Object iToTerm, final boolean iToInclusive) {
+    final String from = iFromTerm != null ? iFromTerm.toString() : null;
+    final String to = iToTerm != null ? iToTerm.toString() : null;
+
+    // THE PARTIAL KEY STARTS FROM THE FIRST RECORD OF THE TERM
+    final Iterator<Entry<OCompositeKey, byte[]>> it = from != null ? postings.tailMap(new OCompositeKey(from), true).entrySet()
+        .iterator() : postings.entrySet().iterator();
+
+    return new Iterator<Entry<OCompositeKey, byte[]>>() {
+      private Entry<OCompositeKey, byte[]> next;
+      private boolean                      end;
+
+      public boolean hasNext() {
+        while (next == null && !end && it.hasNext()) {
+          final Entry<OCompositeKey, byte[]> entry = it.next();
+          final String term = (String) entry.getKey().getKeys().get(0);
+
+          if (from != null && !iFromInclusive && term.equals(from))
+            continue;
+
+          if (to != null) {
+            final int compare = term.compareTo(to);
+            if (compare > 0 || compare == 0 && !iToInclusive) {
+              end = true;
+              break;
+            }
+          }
+
+          next = new AbstractMap.SimpleImmutableEntry<OCompositeKey, byte[]>(entry.getKey(), entry.getValue());
+        }
+        return next != null;
+      }
+
+      public Entry<OCompositeKey, byte[]> next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        try {
+          return next;
+        } finally {
+          next = null;
+        }
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException("remove");
+      }
+    };
+  }
+
+  private Collection<ODocument> getEntries(final Object iRangeFrom, final boolean iFromInclusive, final Object iRangeTo,
+      final boolean iToInclusive, final int maxEntriesToFetch) {
+    acquireExclusiveLock();
+    try {
+
+      final List<ODocument> result = new ArrayList<ODocument>();
+      final Iterator<Entry<OCompositeKey, byte[]>> it = getPostings(iRangeFrom, iFromInclusive, iRangeTo, iToInclusive);
+      while (it.hasNext() && (maxEntriesToFetch < 0 || result.size() < maxEntriesToFetch)) {
+        final List<Object> key = it.next().getKey().getKeys();
+
+        final ODocument document = new ODocument();
+        document.field("key", key.get(0));
+        document.field("rid", ((OIdentifiable) key.get(1)).getIdentity());
+        document.unsetDirty();
+
+        result.add(document);
+      }
+      return result;
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  private void addTerms(final int iTerms) {
+    final Long terms = lengths.get(TERMS_KEY);
+    lengths.put(TERMS_KEY, (terms != null ? terms : 0) + iTerms);
+  }
+
+  /**
+   * Removes the terms of a value from the length of the record and from the total. The record is forgotten when it has no more
+   * terms.
+   */
+  private void removeTerms(final ORID iRecord, final int iTerms) {
+    final Long indexedTerms = lengths.get(iRecord);
+    if (indexedTerms == null)
+      return;
+
+    final long removedTerms;
+    if (iTerms >= indexedTerms) {
+      lengths.remove(iRecord);
+      removedTerms = indexedTerms;
+    } else {
+      lengths.put(iRecord, indexedTerms - iTerms);
+      removedTerms = iTerms;
+    }
+
+    final Long terms = lengths.get(TERMS_KEY);
+    lengths.put(TERMS_KEY, Math.max(0, (terms != null ? terms : 0) - removedTerms));
+  }
+
+  /**
+   * Splits the query in phrases, delimited by double quotes, and terms.
+   */
+  private void parseQuery(final String iQuery, final List<List<String>> iPhrases, final Set<String> iTerms) {
+    final String[] parts = iQuery.split("\"", -1);
+    for (int i = 0; i < parts.length; ++i) {
+      final List<String> words = analyzer.analyze(parts[i]);
+      // ODD PARTS ARE BETWEEN QUOTES
+      if (i % 2 == 1 && !words.isEmpty())
+        iPhrases.add(words);
+      iTerms.addAll(words);
+    }
+  }
+
+  /**
+   * Returns the records to score: the records containing all the phrase terms if any, otherwise the records containing any term.
+   * The intersection starts from the rarest term.
+   */
+  private static Collection<ORID> getCandidates(final List<List<String>> iPhrases, final Set<String> iTerms,
+      final Map<String, OFullTextPostings> iPostings) {
+    if (iPhrases.isEmpty()) {
+      final Set<ORID> union = new HashSet<ORID>();
+      for (final String term : iTerms)
+        union.addAll(iPostings.get(term).getRecords());
+      return union;
+    }
+
+    final List<Set<ORID>> required = new ArrayList<Set<ORID>>();
+    for (final List<String> phrase : iPhrases)
+      for (final String term : phrase)
+        required.add(iPostings.get(term).getRecords());
+
+    Collections.sort(required, new Comparator<Set<ORID>>() {
+      public int compare(final Set<ORID> o1, final Set<ORID> o2) {
+        return o1.size() - o2.size();
+      }
+    });
+
+    final Set<ORID> intersection = new HashSet<ORID>(required.get(0));
+    for (int i = 1; i < required.size() && !intersection.isEmpty(); ++i)
+      intersection.retainAll(required.get(i));
+    return intersection;
+  }
+
+  private static boolean matchPhrases(final List<List<String>> iPhrases, final ORID iRecord,
+      final Map<String, OFullTextPostings> iPostings) {
+    for (final List<String> phrase : iPhrases) {
+      final int[] starts = iPostings.get(phrase.get(0)).get(iRecord);
+      if (starts == null)
+        return false;
+
+      boolean found = false;
+      for (int k = 0; k < starts.length && !found; ++k) {
+        found = true;
+        for (int i = 1; i < phrase.size() && found; ++i) {
+          final int[] next = iPostings.get(phrase.get(i)).get(iRecord);
+          found = next != null && Arrays.binarySearch(next, starts[k] + i) >= 0;
+        }
+      }
+
+      if (!found)
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Groups the contiguous postings of every term in an entry of the term with its records.
+   */
+  private static class OTermsIterator implements Iterator<Entry<Object, Set<OIdentifiable>>> {
+    private final Iterator<Entry<OCompositeKey, byte[]>> postings;
+    private OCompositeKey                                nextKey;
+
+    private OTermsIterator(final Iterator<Entry<OCompositeKey, byte[]>> iPostings) {
+      postings = iPostings;
+    }
+
+    public boolean hasNext() {
+      return nextKey != null || postings.hasNext();
+    }
+
+    public Entry<Object, Set<OIdentifiable>> next() {
+      if (nextKey == null)
+        nextKey = postings.next().getKey();
+
+      final Object term = nextKey.getKeys().get(0);
+      final Set<OIdentifiable> records = new HashSet<OIdentifiable>();
+      while (nextKey != null && nextKey.getKeys().get(0).equals(term)) {
+        records.add((OIdentifiable) nextKey.getKeys().get(1));
+        nextKey = postings.hasNext() ? postings.next().getKey() : null;
+      }
+
+      return new AbstractMap.SimpleImmutableEntry<Object, Set<OIdentifiable>>(term, records);
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+
+  private static class ORecordsIterator extends OLazyWrapperIterator<OIdentifiable> {
+    private ORecordsIterator(final Iterator<OCompositeKey> iKeys) {
+      super(iKeys);
+    }
+
+    @Override
+    public boolean filter(final OIdentifiable iRecord) {
+      return true;
+    }
+
+    @Override
+    public OIdentifiable createWrapper(final Object iKey) {
+      return (OIdentifiable) ((OCompositeKey) iKey).getKeys().get(1);
+    }
+  }
+
+  private static class OScoredRecord implements Comparable<OScoredRecord> {
+    private final OIdentifiable record;
+    private final double        score;
+
+    private OScoredRecord(final OIdentifiable iRecord, final double iScore) {
+      record = iRecord;
+      score = iScore;
+    }
+
+    public int compareTo(final OScoredRecord o) {
+      return Double.compare(score, o.score);
+    }
+  }
 }
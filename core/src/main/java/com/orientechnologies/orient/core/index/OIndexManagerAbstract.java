@@ -36,6 +36,9 @@ import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.dictionary.ODictionary;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.index.sbtree.local.ODictionarySBTreeIndex;
+import com.orientechnologies.orient.core.index.sbtree.local.OLocalSBTreeIndexOneValue;
+import com.orientechnologies.orient.core.index.sbtree.local.ONotUniqueSBTreeIndex;
 import com.orientechnologies.orient.core.metadata.OMetadata;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OType;
@@ -377,11 +380,11 @@ public abstract class OIndexManagerAbstract extends ODocumentWrapperNoClass impl
 
   protected OIndex<?> preProcessBeforeReturn(final OIndexInternal<?> index) {
     getDatabase().registerListener(index);
-    if (index instanceof OIndexMultiValues)
+    if (index instanceof OIndexMultiValues || index instanceof ONotUniqueSBTreeIndex)
       return new OIndexTxAwareMultiValue(getDatabase(), (OIndex<Collection<OIdentifiable>>) getIndexInstance(index));
-    else if (index instanceof OIndexDictionary)
+    else if (index instanceof OIndexDictionary || index instanceof ODictionarySBTreeIndex)
       return new OIndexTxAwareDictionary(getDatabase(), (OIndex<OIdentifiable>) getIndexInstance(index));
-    else if (index instanceof OIndexOneValue)
+    else if (index instanceof OIndexOneValue || index instanceof OLocalSBTreeIndexOneValue)
       return new OIndexTxAwareOneValue(getDatabase(), (OIndex<OIdentifiable>) getIndexInstance(index));
     return index;
   }
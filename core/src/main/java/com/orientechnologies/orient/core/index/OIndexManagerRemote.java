@@ -22,6 +22,7 @@ import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.db.record.ORecordElement;
 import com.orientechnologies.orient.core.db.record.ORecordTrackedSet;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.index.sbtree.local.ONotUniqueSBTreeIndex;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.OCommandSQL;
@@ -35,7 +36,7 @@ public class OIndexManagerRemote extends OIndexManagerAbstract {
 
   @Override
   protected OIndex<?> getIndexInstance(final OIndex<?> iIndex) {
-    if (iIndex instanceof OIndexMultiValues)
+    if (iIndex instanceof OIndexMultiValues || iIndex instanceof ONotUniqueSBTreeIndex)
       return new OIndexRemoteMultiValue(iIndex.getName(), iIndex.getType(), iIndex.getIdentity(), iIndex.getDefinition(),
           getConfiguration(), iIndex.getClusters());
     return new OIndexRemoteOneValue(iIndex.getName(), iIndex.getType(), iIndex.getIdentity(), iIndex.getDefinition(),
@@ -149,11 +149,13 @@ public class O2QCache implements ODiskCache {
 
   @Override
   public void release(long fileId, long pageIndex) {
-    LRUEntry lruEntry = get(fileId, pageIndex);
-    if (lruEntry != null)
-      lruEntry.usageCounter--;
-    else
-      throw new IllegalStateException("record should be released is already free!");
+    synchronized (syncObject) {
+      LRUEntry lruEntry = get(fileId, pageIndex);
+      if (lruEntry != null)
+        lruEntry.usageCounter--;
+      else
+        throw new IllegalStateException("record should be released is already free!");
+    }
   }
 
   @Override
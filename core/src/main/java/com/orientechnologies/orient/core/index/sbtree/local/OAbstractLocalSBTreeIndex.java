@@ -0,0 +1,960 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.sbtree.local;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.orientechnologies.common.collection.OCompositeKey;
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.common.concur.lock.OModificationLock;
+import com.orientechnologies.common.concur.resource.OCloseable;
+import com.orientechnologies.common.concur.resource.OSharedResourceAdaptiveExternal;
+import com.orientechnologies.common.listener.OProgressListener;
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabase;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.db.record.ORecordElement;
+import com.orientechnologies.orient.core.exception.OConfigurationException;
+import com.orientechnologies.orient.core.exception.OTransactionException;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.index.ODocumentFieldsHashSet;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexDefinition;
+import com.orientechnologies.orient.core.index.OIndexException;
+import com.orientechnologies.orient.core.index.OIndexInternal;
+import com.orientechnologies.orient.core.index.ORuntimeKeyIndexDefinition;
+import com.orientechnologies.orient.core.index.OSimpleKeyIndexDefinition;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.profiler.OJVMProfiler;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.record.impl.ORecordBytes;
+import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.serialization.serializer.binary.OBinarySerializerFactory;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.OLinkSerializer;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.index.OCompositeKeySerializer;
+import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerAnyStreamable;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChanges.OPERATION;
+
+/**
+ * Index stored in a {@link OSBTree} of pages handled by the disk cache of the local storage, instead of a tree of records. The tree
+ * stores the RID as value: indexes with multiple values per key store the RID also as last item of the key, so every entry in the
+ * tree is unique and all the values of a key are close each other.<br/>
+ * Range queries and iterators browse the leaves through the sibling links: iterators fetch the entries in batches, resuming from
+ * the last key read, so they never keep pages pinned between two calls.
+ *
+ * @author Luca Garulli
+ */
+public abstract class OAbstractLocalSBTreeIndex<T> extends OSharedResourceAdaptiveExternal implements OIndexInternal<T>, OCloseable {
+  public static final String                     FILE_EXTENSION   = ".sbt";
+  protected static final String                  CONFIG_MAP_RID   = "mapRid";
+  protected static final String                  CONFIG_CLUSTERS  = "clusters";
+  private static final int                       CURSOR_BATCH     = 256;
+
+  protected final OModificationLock              modificationLock = new OModificationLock();
+  protected final OSBTree<Object, OIdentifiable> tree             = new OSBTree<Object, OIdentifiable>(FILE_EXTENSION);
+  protected final String                         databaseName;
+  protected String                               name;
+  protected String                               type;
+  protected OIndexDefinition                     indexDefinition;
+  protected Set<String>                          clustersToIndex  = new LinkedHashSet<String>();
+  protected ODocument                            configuration;
+  private ORID                                   identity;
+  private boolean                                loaded;
+
+  public OAbstractLocalSBTreeIndex(final String iType) {
+    super(OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean(), OGlobalConfiguration.MVRBTREE_TIMEOUT
+        .getValueAsInteger(), true);
+
+    databaseName = ODatabaseRecordThreadLocal.INSTANCE.get().getName();
+    type = iType;
+  }
+
+  /**
+   * Converts the key passed by the user in the key to search in the tree. Partial keys are allowed.
+   */
+  protected abstract Object enclose(Object iKey);
+
+  /**
+   * Converts the key stored in the tree in the key passed by the user.
+   */
+  protected abstract Object extractKey(Object iTreeKey);
+
+  /**
+   * Returns the serializer of the keys stored in the tree, null if not known yet.
+   */
+  protected abstract OBinarySerializer<?> getTreeKeySerializer();
+
+  @SuppressWarnings("unchecked")
+  public OIndex<T> create(final String iName, final OIndexDefinition iIndexDefinition, final ODatabaseRecord iDatabase,
+      final String iClusterIndexName, final int[] iClusterIdsToIndex, final OProgressListener iProgressListener) {
+    if (!(iDatabase.getStorage() instanceof OStorageLocalAbstract))
+      throw new OConfigurationException("Index type " + type + " works only with local storage");
+
+    acquireExclusiveLock();
+    try {
+      name = iName;
+      configuration = new ODocument();
+      indexDefinition = iIndexDefinition;
+
+      // SAVE AN EMPTY RECORD AS IDENTITY OF THE INDEX
+      final ORecord<?> emptyRecord = new ORecordBytes(new byte[] {});
+      emptyRecord.save(iClusterIndexName);
+      identity = emptyRecord.getIdentity();
+
+      if (iClusterIdsToIndex != null)
+        for (final int id : iClusterIdsToIndex)
+          clustersToIndex.add(iDatabase.getClusterNameById(id));
+
+      tree.create(name, (OBinarySerializer<Object>) getTreeKeySerializer(), OLinkSerializer.INSTANCE,
+          (OStorageLocalAbstract) iDatabase.getStorage());
+      loaded = true;
+
+      installHooks(iDatabase);
+
+      rebuild(iProgressListener);
+      updateConfiguration();
+    } catch (Exception e) {
+      if (loaded)
+        tree.delete();
+      if (e instanceof OIndexException)
+        throw (OIndexException) e;
+
+      throw new OIndexException("Cannot create the index '" + iName + "'", e);
+    } finally {
+      releaseExclusiveLock();
+    }
+    return this;
+  }
+
+  @SuppressWarnings("unchecked")
+  public boolean loadFromConfiguration(final ODocument iConfig) {
+    acquireExclusiveLock();
+    try {
+      final ORID rid = (ORID) iConfig.field(CONFIG_MAP_RID, ORID.class);
+      if (rid == null)
+        throw new OIndexException("Error during deserialization of index definition: '" + CONFIG_MAP_RID + "' attribute is null");
+      identity = rid;
+
+      configuration = iConfig;
+      name = configuration.field(OIndexInternal.CONFIG_NAME);
+      type = configuration.field(OIndexInternal.CONFIG_TYPE);
+
+      final ODocument indexDefinitionDoc = configuration.field(OIndexInternal.INDEX_DEFINITION);
+      if (indexDefinitionDoc != null) {
+        try {
+          final String indexDefClassName = configuration.field(OIndexInternal.INDEX_DEFINITION_CLASS);
+          final Class<?> indexDefClass = Class.forName(indexDefClassName);
+          indexDefinition = (OIndexDefinition) indexDefClass.getDeclaredConstructor().newInstance();
+          indexDefinition.fromStream(indexDefinitionDoc);
+
+        } catch (final ClassNotFoundException e) {
+          throw new OIndexException("Error during deserialization of index definition", e);
+        } catch (final NoSuchMethodException e) {
+          throw new OIndexException("Error during deserialization of index definition", e);
+        } catch (final InvocationTargetException e) {
+          throw new OIndexException("Error during deserialization of index definition", e);
+        } catch (final InstantiationException e) {
+          throw new OIndexException("Error during deserialization of index definition", e);
+        } catch (final IllegalAccessException e) {
+          throw new OIndexException("Error during deserialization of index definition", e);
+        }
+      }
+
+      clustersToIndex.clear();
+      final Collection<? extends String> clusters = configuration.field(CONFIG_CLUSTERS);
+      if (clusters != null)
+        clustersToIndex.addAll(clusters);
+
+      // REMOTE CLIENTS USE ONLY THE CONFIGURATION
+      final ODatabaseRecord database = getDatabase();
+      if (database.getStorage() instanceof OStorageLocalAbstract) {
+        tree.load(name, (OBinarySerializer<Object>) getTreeKeySerializer(), (OStorageLocalAbstract) database.getStorage());
+        loaded = true;
+        installHooks(database);
+      }
+
+      return true;
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public OType[] getKeyTypes() {
+    if (indexDefinition == null)
+      return null;
+
+    return indexDefinition.getTypes();
+  }
+
+  public OIndexDefinition getDefinition() {
+    return indexDefinition;
+  }
+
+  public Collection<OIdentifiable> getValuesBetween(final Object iRangeFrom, final Object iRangeTo) {
+    return getValuesBetween(iRangeFrom, true, iRangeTo, true);
+  }
+
+  public Collection<OIdentifiable> getValuesBetween(final Object iRangeFrom, final boolean iFromInclusive, final Object iRangeTo,
+      final boolean iToInclusive) {
+    return getValuesBetween(iRangeFrom, iFromInclusive, iRangeTo, iToInclusive, -1);
+  }
+
+  public Collection<OIdentifiable> getValuesBetween(final Object iRangeFrom, final boolean iFromInclusive, final Object iRangeTo,
+      final boolean iToInclusive, final int maxValuesToFetch) {
+    acquireSharedLock();
+    try {
+      final ValuesCollector collector = new ValuesCollector(maxValuesToFetch);
+      tree.loadEntriesBetween(enclose(iRangeFrom), iFromInclusive, enclose(iRangeTo), iToInclusive, collector);
+      return collector.result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public Collection<OIdentifiable> getValuesMajor(final Object fromKey, final boolean isInclusive) {
+    return getValuesMajor(fromKey, isInclusive, -1);
+  }
+
+  public Collection<OIdentifiable> getValuesMajor(final Object fromKey, final boolean isInclusive, final int maxValuesToFetch) {
+    acquireSharedLock();
+    try {
+      final ValuesCollector collector = new ValuesCollector(maxValuesToFetch);
+      tree.loadEntriesMajor(enclose(fromKey), isInclusive, collector);
+      return collector.result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public Collection<OIdentifiable> getValuesMinor(final Object toKey, final boolean isInclusive) {
+    return getValuesMinor(toKey, isInclusive, -1);
+  }
+
+  public Collection<OIdentifiable> getValuesMinor(final Object toKey, final boolean isInclusive, final int maxValuesToFetch) {
+    acquireSharedLock();
+    try {
+      final ValuesCollector collector = new ValuesCollector(maxValuesToFetch);
+      tree.loadEntriesMinor(enclose(toKey), isInclusive, collector);
+      return collector.result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public Collection<ODocument> getEntriesMajor(final Object fromKey, final boolean isInclusive) {
+    return getEntriesMajor(fromKey, isInclusive, -1);
+  }
+
+  public Collection<ODocument> getEntriesMajor(final Object fromKey, final boolean isInclusive, final int maxEntriesToFetch) {
+    acquireSharedLock();
+    try {
+      final EntriesCollector collector = new EntriesCollector(maxEntriesToFetch);
+      tree.loadEntriesMajor(enclose(fromKey), isInclusive, collector);
+      return collector.result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public Collection<ODocument> getEntriesMinor(final Object toKey, final boolean isInclusive) {
+    return getEntriesMinor(toKey, isInclusive, -1);
+  }
+
+  public Collection<ODocument> getEntriesMinor(final Object toKey, final boolean isInclusive, final int maxEntriesToFetch) {
+    acquireSharedLock();
+    try {
+      final EntriesCollector collector = new EntriesCollector(maxEntriesToFetch);
+      tree.loadEntriesMinor(enclose(toKey), isInclusive, collector);
+      return collector.result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public Collection<ODocument> getEntriesBetween(final Object iRangeFrom, final Object iRangeTo) {
+    return getEntriesBetween(iRangeFrom, iRangeTo, true);
+  }
+
+  public Collection<ODocument> getEntriesBetween(final Object iRangeFrom, final Object iRangeTo, final boolean iInclusive) {
+    return getEntriesBetween(iRangeFrom, iRangeTo, iInclusive, -1);
+  }
+
+  public Collection<ODocument> getEntriesBetween(final Object iRangeFrom, final Object iRangeTo, final boolean iInclusive,
+      final int maxEntriesToFetch) {
+    acquireSharedLock();
+    try {
+      final EntriesCollector collector = new EntriesCollector(maxEntriesToFetch);
+      tree.loadEntriesBetween(enclose(iRangeFrom), iInclusive, enclose(iRangeTo), iInclusive, collector);
+      return collector.result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public Collection<OIdentifiable> getValues(final Collection<?> iKeys) {
+    return getValues(iKeys, -1);
+  }
+
+  public Collection<OIdentifiable> getValues(final Collection<?> iKeys, final int maxValuesToFetch) {
+    final List<Object> sortedKeys = new ArrayList<Object>(iKeys);
+    Collections.sort(sortedKeys, ODefaultComparator.INSTANCE);
+
+    acquireSharedLock();
+    try {
+      final ValuesCollector collector = new ValuesCollector(maxValuesToFetch);
+      for (final Object key : sortedKeys) {
+        if (collector.isFull())
+          break;
+
+        final Object treeKey = enclose(key);
+        tree.loadEntriesBetween(treeKey, true, treeKey, true, collector);
+      }
+      return collector.result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public Collection<ODocument> getEntries(final Collection<?> iKeys) {
+    return getEntries(iKeys, -1);
+  }
+
+  public Collection<ODocument> getEntries(final Collection<?> iKeys, final int maxEntriesToFetch) {
+    final List<Object> sortedKeys = new ArrayList<Object>(iKeys);
+    Collections.sort(sortedKeys, ODefaultComparator.INSTANCE);
+
+    acquireSharedLock();
+    try {
+      final EntriesCollector collector = new EntriesCollector(maxEntriesToFetch);
+      for (final Object key : sortedKeys) {
+        if (collector.isFull())
+          break;
+
+        final Object treeKey = enclose(key);
+        tree.loadEntriesBetween(treeKey, true, treeKey, true, collector);
+      }
+      return collector.result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public Iterator<OIdentifiable> valuesIterator() {
+    return new ValuesIterator(new OSBTreeCursor(true));
+  }
+
+  public Iterator<OIdentifiable> valuesInverseIterator() {
+    return new ValuesIterator(new OSBTreeCursor(false));
+  }
+
+  public int remove(final OIdentifiable iRecord) {
+    modificationLock.requestModificationLock();
+    try {
+      acquireExclusiveLock();
+      try {
+        final ORID rid = iRecord.getIdentity();
+
+        final List<Object> treeKeys = new ArrayList<Object>();
+        for (final Iterator<Entry<Object, OIdentifiable>> it = new OSBTreeCursor(true); it.hasNext();) {
+          final Entry<Object, OIdentifiable> entry = it.next();
+          if (entry.getValue().equals(rid))
+            treeKeys.add(entry.getKey());
+        }
+
+        for (final Object treeKey : treeKeys)
+          tree.remove(treeKey);
+
+        return treeKeys.size();
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  public OIndex<T> clear() {
+    modificationLock.requestModificationLock();
+    try {
+      acquireExclusiveLock();
+      try {
+        tree.clear();
+        return this;
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  public OIndexInternal<T> delete() {
+    modificationLock.requestModificationLock();
+    try {
+      acquireExclusiveLock();
+      try {
+        tree.delete();
+        return this;
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  public long getSize() {
+    return tree.size();
+  }
+
+  public OIndex<T> lazySave() {
+    flush();
+    return this;
+  }
+
+  public void flush() {
+    acquireSharedLock();
+    try {
+      if (loaded)
+        tree.flush();
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public void close() {
+    acquireExclusiveLock();
+    try {
+      if (loaded)
+        tree.close();
+      loaded = false;
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public void unload() {
+  }
+
+  public String getDatabaseName() {
+    return databaseName;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public boolean isAutomatic() {
+    return indexDefinition != null && indexDefinition.getClassName() != null;
+  }
+
+  public long rebuild() {
+    return rebuild(null);
+  }
+
+  /**
+   * Populates the index with all the existent records. Uses the massive insert intent to speed up and keep the consumed memory low.
+   */
+  public long rebuild(final OProgressListener iProgressListener) {
+    long documentIndexed = 0;
+
+    final boolean intentInstalled = getDatabase().declareIntent(new OIntentMassiveInsert());
+
+    acquireExclusiveLock();
+    try {
+      try {
+        tree.clear();
+      } catch (Exception e) {
+        // IGNORE EXCEPTION: IF THE REBUILD WAS LAUNCHED IN CASE OF RID INVALID CLEAR ALWAYS GOES IN ERROR
+      }
+
+      int documentNum = 0;
+      long documentTotal = 0;
+
+      for (final String cluster : clustersToIndex)
+        documentTotal += getDatabase().countClusterElements(cluster);
+
+      if (iProgressListener != null)
+        iProgressListener.onBegin(this, documentTotal);
+
+      for (final String clusterName : clustersToIndex)
+        try {
+          for (final ORecord<?> record : getDatabase().browseCluster(clusterName)) {
+            if (record instanceof ODocument) {
+              final ODocument doc = (ODocument) record;
+
+              if (indexDefinition == null)
+                throw new OConfigurationException("Index '" + name + "' cannot be rebuilt because has no a valid definition ("
+                    + indexDefinition + ")");
+
+              final Object fieldValue = indexDefinition.getDocumentValueToIndex(doc);
+
+              if (fieldValue != null) {
+                if (fieldValue instanceof Collection) {
+                  for (final Object fieldValueItem : (Collection<?>) fieldValue) {
+                    put(fieldValueItem, doc);
+                  }
+                } else
+                  put(fieldValue, doc);
+
+                ++documentIndexed;
+              }
+            }
+            documentNum++;
+
+            if (iProgressListener != null)
+              iProgressListener.onProgress(this, documentNum, documentNum * 100f / documentTotal);
+          }
+        } catch (NoSuchElementException e) {
+          // END OF CLUSTER REACHED, IGNORE IT
+        }
+
+      flush();
+
+      if (iProgressListener != null)
+        iProgressListener.onCompletition(this, true);
+
+    } catch (final Exception e) {
+      if (iProgressListener != null)
+        iProgressListener.onCompletition(this, false);
+
+      try {
+        tree.clear();
+      } catch (Exception e2) {
+        // IGNORE EXCEPTION: IF THE REBUILD WAS LAUNCHED IN CASE OF RID INVALID CLEAR ALWAYS GOES IN ERROR
+      }
+
+      throw new OIndexException("Error on rebuilding the index for clusters: " + clustersToIndex, e);
+
+    } finally {
+      if (intentInstalled)
+        getDatabase().declareIntent(null);
+
+      releaseExclusiveLock();
+    }
+
+    return documentIndexed;
+  }
+
+  public ODocument getConfiguration() {
+    return configuration;
+  }
+
+  public ORID getIdentity() {
+    return identity;
+  }
+
+  public OIndexInternal<T> getInternal() {
+    return this;
+  }
+
+  public Set<String> getClusters() {
+    acquireSharedLock();
+    try {
+      return Collections.unmodifiableSet(clustersToIndex);
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public OIndex<T> addCluster(final String iClusterName) {
+    acquireExclusiveLock();
+    try {
+      if (clustersToIndex.add(iClusterName))
+        updateConfiguration();
+      return this;
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public OIndex<T> removeCluster(final String iClusterName) {
+    acquireExclusiveLock();
+    try {
+      if (clustersToIndex.remove(iClusterName))
+        updateConfiguration();
+      return this;
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public void checkEntry(final OIdentifiable iRecord, final Object iKey) {
+  }
+
+  public ODocument updateConfiguration() {
+    acquireExclusiveLock();
+    try {
+      configuration.setInternalStatus(ORecordElement.STATUS.UNMARSHALLING);
+
+      try {
+        configuration.field(OIndexInternal.CONFIG_TYPE, type);
+        configuration.field(OIndexInternal.CONFIG_NAME, name);
+
+        if (indexDefinition != null) {
+          final ODocument indexDefDocument = indexDefinition.toStream();
+          if (!indexDefDocument.hasOwners())
+            indexDefDocument.addOwner(configuration);
+
+          configuration.field(OIndexInternal.INDEX_DEFINITION, indexDefDocument, OType.EMBEDDED);
+          configuration.field(OIndexInternal.INDEX_DEFINITION_CLASS, indexDefinition.getClass().getName());
+        } else {
+          configuration.removeField(OIndexInternal.INDEX_DEFINITION);
+          configuration.removeField(OIndexInternal.INDEX_DEFINITION_CLASS);
+        }
+
+        configuration.field(CONFIG_CLUSTERS, clustersToIndex, OType.EMBEDDEDSET);
+        configuration.field(CONFIG_MAP_RID, identity);
+      } finally {
+        configuration.setInternalStatus(ORecordElement.STATUS.LOADED);
+      }
+
+      return configuration;
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public void commit(final ODocument iDocument) {
+    if (iDocument == null)
+      return;
+
+    acquireExclusiveLock();
+    try {
+      final Boolean clearAll = (Boolean) iDocument.field("clear");
+      if (clearAll != null && clearAll)
+        clear();
+
+      final Collection<ODocument> entries = iDocument.field("entries");
+
+      for (final ODocument entry : entries) {
+        final String serializedKey = OStringSerializerHelper.decode((String) entry.field("k"));
+
+        final Object key;
+
+        try {
+          if (serializedKey.equals("*"))
+            key = "*";
+          else {
+            final ODocument keyContainer = new ODocument();
+            keyContainer.setLazyLoad(false);
+
+            keyContainer.fromString(serializedKey);
+
+            final Object storedKey = keyContainer.field("key");
+            if (storedKey instanceof List)
+              key = new OCompositeKey((List<? extends Comparable<?>>) storedKey);
+            else if (Boolean.TRUE.equals(keyContainer.field("binary"))) {
+              key = OStreamSerializerAnyStreamable.INSTANCE.fromStream((byte[]) storedKey);
+            } else
+              key = storedKey;
+          }
+        } catch (IOException ioe) {
+          throw new OTransactionException("Error during index changes deserialization. ", ioe);
+        }
+
+        final List<ODocument> operations = (List<ODocument>) entry.field("ops");
+        if (operations != null) {
+          for (final ODocument op : operations) {
+            final int operation = (Integer) op.rawField("o");
+            final OIdentifiable value = op.field("v", OType.LINK);
+
+            if (operation == OPERATION.PUT.ordinal())
+              put(key, value);
+            else if (operation == OPERATION.REMOVE.ordinal()) {
+              if (key.equals("*"))
+                remove(value);
+              else if (value == null)
+                remove(key);
+              else
+                remove(key, value);
+            }
+          }
+        }
+      }
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public void freeze(final boolean throwException) {
+    modificationLock.prohibitModifications(throwException);
+  }
+
+  public void release() {
+    modificationLock.allowModifications();
+  }
+
+  public void acquireModificationLock() {
+    modificationLock.requestModificationLock();
+  }
+
+  public void releaseModificationLock() {
+    modificationLock.releaseModificationLock();
+  }
+
+  public void onCreate(final ODatabase iDatabase) {
+  }
+
+  public void onDelete(final ODatabase iDatabase) {
+  }
+
+  public void onOpen(final ODatabase iDatabase) {
+  }
+
+  public void onBeforeTxBegin(final ODatabase iDatabase) {
+  }
+
+  public void onBeforeTxRollback(final ODatabase iDatabase) {
+  }
+
+  public void onAfterTxRollback(final ODatabase iDatabase) {
+  }
+
+  public void onBeforeTxCommit(final ODatabase iDatabase) {
+  }
+
+  public void onAfterTxCommit(final ODatabase iDatabase) {
+  }
+
+  public void onClose(final ODatabase iDatabase) {
+  }
+
+  public boolean onCorruptionRepairDatabase(final ODatabase iDatabase, final String iReason, final String iWhatWillbeFixed) {
+    return false;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o)
+      return true;
+    if (o == null || getClass() != o.getClass())
+      return false;
+
+    final OAbstractLocalSBTreeIndex<?> that = (OAbstractLocalSBTreeIndex<?>) o;
+
+    if (!name.equals(that.name))
+      return false;
+
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return name.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected void checkForKeyType(final Object iKey) {
+    if (indexDefinition == null) {
+      // RECOGNIZE THE KEY TYPE AT RUN-TIME
+
+      final OType type = OType.getTypeByClass(iKey.getClass());
+      if (type == null)
+        return;
+
+      indexDefinition = new OSimpleKeyIndexDefinition(type);
+      if (tree.getKeySerializer() == null)
+        tree.setKeySerializer((OBinarySerializer<Object>) getTreeKeySerializer());
+      updateConfiguration();
+    }
+  }
+
+  /**
+   * Returns the serializer of the keys as passed by the user, null if the index has no definition.
+   */
+  protected OBinarySerializer<?> detectKeySerializer() {
+    if (indexDefinition == null)
+      return null;
+    if (indexDefinition instanceof ORuntimeKeyIndexDefinition)
+      return ((ORuntimeKeyIndexDefinition<?>) indexDefinition).getSerializer();
+    if (indexDefinition.getTypes().length > 1)
+      return OCompositeKeySerializer.INSTANCE;
+    return OBinarySerializerFactory.INSTANCE.getObjectSerializer(indexDefinition.getTypes()[0]);
+  }
+
+  protected ODatabaseRecord getDatabase() {
+    return ODatabaseRecordThreadLocal.INSTANCE.get();
+  }
+
+  protected void installHooks(final ODatabaseRecord iDatabase) {
+    final OJVMProfiler profiler = Orient.instance().getProfiler();
+    final String profilerPrefix = profiler.getDatabaseMetric(iDatabase.getName(), "index." + name + '.');
+    final String profilerMetadataPrefix = "db.*.index.*.";
+
+    profiler.registerHookValue(profilerPrefix + "items", "Index size", METRIC_TYPE.SIZE, new OProfilerHookValue() {
+      public Object getValue() {
+        return tree.size();
+      }
+    }, profilerMetadataPrefix + "items");
+  }
+
+  /**
+   * Collects the values of the entries up to the maximum passed.
+   */
+  private static class ValuesCollector implements OSBTree.RangeResultListener<Object, OIdentifiable> {
+    private final Set<OIdentifiable> result = new HashSet<OIdentifiable>();
+    private final int                limit;
+
+    private ValuesCollector(final int iLimit) {
+      limit = iLimit;
+    }
+
+    public boolean addResult(final Map.Entry<Object, OIdentifiable> iEntry) {
+      if (isFull())
+        return false;
+      result.add(iEntry.getValue());
+      return !isFull();
+    }
+
+    private boolean isFull() {
+      return limit > -1 && result.size() >= limit;
+    }
+  }
+
+  /**
+   * Collects the entries as documents with "key" and "rid" fields up to the maximum passed.
+   */
+  private class EntriesCollector implements OSBTree.RangeResultListener<Object, OIdentifiable> {
+    private final Set<ODocument> result = new ODocumentFieldsHashSet();
+    private final int            limit;
+
+    private EntriesCollector(final int iLimit) {
+      limit = iLimit;
+    }
+
+    public boolean addResult(final Map.Entry<Object, OIdentifiable> iEntry) {
+      if (isFull())
+        return false;
+
+      final ODocument document = new ODocument();
+      document.field("key", extractKey(iEntry.getKey()));
+      document.field("rid", iEntry.getValue().getIdentity());
+      document.unsetDirty();
+      result.add(document);
+
+      return !isFull();
+    }
+
+    private boolean isFull() {
+      return limit > -1 && result.size() >= limit;
+    }
+  }
+
+  /**
+   * Iterates over the entries of the tree reading them in batches. Every batch starts after the last key of the previous one, so
+   * changes made between two batches are seen and no page stays pinned.
+   */
+  protected class OSBTreeCursor implements Iterator<Entry<Object, OIdentifiable>> {
+    private final boolean                           ascending;
+    private Iterator<Entry<Object, OIdentifiable>> batch    = Collections.<Entry<Object, OIdentifiable>> emptyList().iterator();
+    private Object                                  lastKey;
+    private boolean                                 finished;
+
+    public OSBTreeCursor(final boolean iAscending) {
+      ascending = iAscending;
+    }
+
+    public boolean hasNext() {
+      if (batch.hasNext())
+        return true;
+      if (finished)
+        return false;
+
+      final List<Entry<Object, OIdentifiable>> entries = new ArrayList<Entry<Object, OIdentifiable>>(CURSOR_BATCH);
+      final OSBTree.RangeResultListener<Object, OIdentifiable> listener = new OSBTree.RangeResultListener<Object, OIdentifiable>() {
+        public boolean addResult(final Entry<Object, OIdentifiable> iEntry) {
+          entries.add(iEntry);
+          return entries.size() < CURSOR_BATCH;
+        }
+      };
+
+      if (ascending)
+        tree.loadEntriesMajor(lastKey, false, listener);
+      else
+        tree.loadEntriesMinor(lastKey, false, listener);
+
+      finished = entries.size() < CURSOR_BATCH;
+      if (!entries.isEmpty())
+        lastKey = entries.get(entries.size() - 1).getKey();
+
+      batch = entries.iterator();
+      return batch.hasNext();
+    }
+
+    public Entry<Object, OIdentifiable> next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      return batch.next();
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+
+  private static class ValuesIterator implements Iterator<OIdentifiable> {
+    private final Iterator<Entry<Object, OIdentifiable>> entries;
+
+    private ValuesIterator(final Iterator<Entry<Object, OIdentifiable>> iEntries) {
+      entries = iEntries;
+    }
+
+    public boolean hasNext() {
+      return entries.hasNext();
+    }
+
+    public OIdentifiable next() {
+      return entries.next().getValue();
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.sbtree.local;
+
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+
+/**
+ * SB-Tree dictionary: one value for a key, a new value replaces the previous one.
+ *
+ * @author Luca Garulli
+ */
+public class ODictionarySBTreeIndex extends OLocalSBTreeIndexOneValue {
+  public static final String TYPE_ID = OClass.INDEX_TYPE.DICTIONARY_SBTREE.toString();
+
+  public ODictionarySBTreeIndex() {
+    super(TYPE_ID);
+  }
+
+  public ODictionarySBTreeIndex put(final Object iKey, final OIdentifiable iSingleValue) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+        checkForKeyType(iKey);
+
+        final OIdentifiable value = tree.get(iKey);
+
+        if (value == null || !value.equals(iSingleValue.getIdentity()))
+          tree.put(iKey, iSingleValue.getIdentity());
+
+        return this;
+
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  /**
+   * Disables check of entries.
+   */
+  @Override
+  public void checkEntry(final OIdentifiable iRecord, final Object iKey) {
+  }
+
+  public boolean canBeUsedInEqualityOperators() {
+    return true;
+  }
+
+  public boolean supportsOrderedIterations() {
+    return false;
+  }
+}
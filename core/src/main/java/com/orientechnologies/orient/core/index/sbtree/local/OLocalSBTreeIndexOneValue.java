@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.sbtree.local;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.index.OIndexException;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChanges;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChanges.OPERATION;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChangesPerKey;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChangesPerKey.OTransactionIndexEntry;
+
+/**
+ * Abstract SB-Tree index that allows only one value for a key. Keys are stored in the tree as passed by the user.
+ *
+ * @author Luca Garulli
+ */
+public abstract class OLocalSBTreeIndexOneValue extends OAbstractLocalSBTreeIndex<OIdentifiable> {
+  public OLocalSBTreeIndexOneValue(final String iType) {
+    super(iType);
+  }
+
+  public OIdentifiable get(final Object iKey) {
+    acquireSharedLock();
+    try {
+      return tree.get(iKey);
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public long count(final Object iKey) {
+    return contains(iKey) ? 1 : 0;
+  }
+
+  public boolean contains(final Object iKey) {
+    return get(iKey) != null;
+  }
+
+  public boolean remove(final Object iKey) {
+    modificationLock.requestModificationLock();
+    try {
+      acquireExclusiveLock();
+      try {
+        return tree.remove(iKey) != null;
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  public boolean remove(final Object iKey, final OIdentifiable iValue) {
+    return remove(iKey);
+  }
+
+  public long getKeySize() {
+    return getSize();
+  }
+
+  @Override
+  public void checkEntry(final OIdentifiable iRecord, final Object iKey) {
+    // CHECK IF ALREADY EXIST
+    final OIdentifiable indexedRID = get(iKey);
+    if (indexedRID != null && !indexedRID.getIdentity().equals(iRecord.getIdentity())) {
+      // CHECK IF IN THE SAME TX THE ENTRY WAS DELETED
+      final OTransactionIndexChanges indexChanges = ODatabaseRecordThreadLocal.INSTANCE.get().getTransaction()
+          .getIndexChanges(getName());
+      if (indexChanges != null) {
+        final OTransactionIndexChangesPerKey keyChanges = indexChanges.getChangesPerKey(iKey);
+        if (keyChanges != null) {
+          for (OTransactionIndexEntry entry : keyChanges.entries) {
+            if (entry.operation == OPERATION.REMOVE)
+              // WAS DELETED, OK!
+              return;
+          }
+        }
+      }
+
+      OLogManager.instance().exception("Found duplicated key '%s' previously assigned to the record %s", null,
+          OIndexException.class, iKey, indexedRID);
+    }
+  }
+
+  public Iterator<Entry<Object, OIdentifiable>> iterator() {
+    return new OSBTreeCursor(true);
+  }
+
+  public Iterator<Entry<Object, OIdentifiable>> inverseIterator() {
+    return new OSBTreeCursor(false);
+  }
+
+  public Iterable<Object> keys() {
+    return new Iterable<Object>() {
+      public Iterator<Object> iterator() {
+        final Iterator<Entry<Object, OIdentifiable>> entries = new OSBTreeCursor(true);
+        return new Iterator<Object>() {
+          public boolean hasNext() {
+            return entries.hasNext();
+          }
+
+          public Object next() {
+            return entries.next().getKey();
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException("remove");
+          }
+        };
+      }
+    };
+  }
+
+  @Override
+  protected Object enclose(final Object iKey) {
+    return iKey;
+  }
+
+  @Override
+  protected Object extractKey(final Object iTreeKey) {
+    return iTreeKey;
+  }
+
+  @Override
+  protected OBinarySerializer<?> getTreeKeySerializer() {
+    return detectKeySerializer();
+  }
+}
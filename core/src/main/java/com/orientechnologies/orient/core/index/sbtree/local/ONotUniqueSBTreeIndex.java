@@ -0,0 +1,245 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.sbtree.local;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.orientechnologies.common.collection.OCompositeKey;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.index.OCompositeKeySerializer;
+
+/**
+ * SB-Tree index implementation that allows multiple values for the same key. Every value is stored as a separate entry of the tree
+ * with key composed by the key passed and the RID, so the values of a key are read with a range query on the key prefix.
+ *
+ * @author Luca Garulli
+ */
+public class ONotUniqueSBTreeIndex extends OAbstractLocalSBTreeIndex<Set<OIdentifiable>> {
+  public static final String TYPE_ID = OClass.INDEX_TYPE.NOTUNIQUE_SBTREE.toString();
+
+  public ONotUniqueSBTreeIndex() {
+    super(TYPE_ID);
+  }
+
+  public Set<OIdentifiable> get(final Object iKey) {
+    final Set<OIdentifiable> values = (Set<OIdentifiable>) getValuesBetween(iKey, true, iKey, true, -1);
+    if (values.isEmpty())
+      return Collections.emptySet();
+    return values;
+  }
+
+  public long count(final Object iKey) {
+    return getValuesBetween(iKey, true, iKey, true, -1).size();
+  }
+
+  public boolean contains(final Object iKey) {
+    return !getValuesBetween(iKey, true, iKey, true, 1).isEmpty();
+  }
+
+  public ONotUniqueSBTreeIndex put(final Object iKey, final OIdentifiable iSingleValue) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+        checkForKeyType(iKey);
+
+        if (!iSingleValue.getIdentity().isValid())
+          ((ORecord<?>) iSingleValue).save();
+
+        tree.put(enclose(iKey, iSingleValue), iSingleValue.getIdentity());
+        return this;
+
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  public boolean remove(final Object iKey) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+        final Set<OIdentifiable> values = get(iKey);
+        for (final OIdentifiable value : values)
+          tree.remove(enclose(iKey, value));
+
+        return !values.isEmpty();
+
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  public boolean remove(final Object iKey, final OIdentifiable iValue) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+        return tree.remove(enclose(iKey, iValue)) != null;
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  /**
+   * Counts the distinct keys browsing all the entries.
+   */
+  public long getKeySize() {
+    long keys = 0;
+    for (final Iterator<Object> it = keys().iterator(); it.hasNext(); it.next())
+      keys++;
+    return keys;
+  }
+
+  public Iterator<Entry<Object, Set<OIdentifiable>>> iterator() {
+    return new GroupingIterator(new OSBTreeCursor(true));
+  }
+
+  public Iterator<Entry<Object, Set<OIdentifiable>>> inverseIterator() {
+    return new GroupingIterator(new OSBTreeCursor(false));
+  }
+
+  public Iterable<Object> keys() {
+    return new Iterable<Object>() {
+      public Iterator<Object> iterator() {
+        final Iterator<Entry<Object, Set<OIdentifiable>>> entries = new GroupingIterator(new OSBTreeCursor(true));
+        return new Iterator<Object>() {
+          public boolean hasNext() {
+            return entries.hasNext();
+          }
+
+          public Object next() {
+            return entries.next().getKey();
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException("remove");
+          }
+        };
+      }
+    };
+  }
+
+  public boolean canBeUsedInEqualityOperators() {
+    return true;
+  }
+
+  public boolean supportsOrderedIterations() {
+    return true;
+  }
+
+  @Override
+  protected Object enclose(final Object iKey) {
+    if (iKey == null)
+      return null;
+    if (iKey instanceof OCompositeKey)
+      return iKey;
+    final OCompositeKey compositeKey = new OCompositeKey();
+    compositeKey.addKey(iKey);
+    return compositeKey;
+  }
+
+  protected OCompositeKey enclose(final Object iKey, final OIdentifiable iValue) {
+    final OCompositeKey compositeKey = new OCompositeKey();
+    if (iKey instanceof OCompositeKey)
+      for (final Object key : ((OCompositeKey) iKey).getKeys())
+        compositeKey.addKey(key);
+    else
+      compositeKey.addKey(iKey);
+    compositeKey.addKey(iValue.getIdentity());
+    return compositeKey;
+  }
+
+  @Override
+  protected Object extractKey(final Object iTreeKey) {
+    final List<Object> keys = ((OCompositeKey) iTreeKey).getKeys();
+    if (keys.size() == 2 && (indexDefinition == null || indexDefinition.getTypes().length == 1))
+      return keys.get(0);
+    return new OCompositeKey(new ArrayList<Object>(keys.subList(0, keys.size() - 1)));
+  }
+
+  @Override
+  protected OBinarySerializer<?> getTreeKeySerializer() {
+    return OCompositeKeySerializer.INSTANCE;
+  }
+
+  /**
+   * Groups the consecutive entries of the tree with the same key.
+   */
+  private class GroupingIterator implements Iterator<Entry<Object, Set<OIdentifiable>>> {
+    private final Iterator<Entry<Object, OIdentifiable>> entries;
+    private Entry<Object, OIdentifiable>                 nextEntry;
+
+    private GroupingIterator(final Iterator<Entry<Object, OIdentifiable>> iEntries) {
+      entries = iEntries;
+      if (entries.hasNext())
+        nextEntry = entries.next();
+    }
+
+    public boolean hasNext() {
+      return nextEntry != null;
+    }
+
+    public Entry<Object, Set<OIdentifiable>> next() {
+      if (nextEntry == null)
+        throw new NoSuchElementException();
+
+      final Object key = extractKey(nextEntry.getKey());
+      final Set<OIdentifiable> values = new HashSet<OIdentifiable>();
+      values.add(nextEntry.getValue());
+
+      nextEntry = null;
+      while (entries.hasNext()) {
+        final Entry<Object, OIdentifiable> entry = entries.next();
+        if (!key.equals(extractKey(entry.getKey()))) {
+          nextEntry = entry;
+          break;
+        }
+        values.add(entry.getValue());
+      }
+
+      return new AbstractMap.SimpleImmutableEntry<Object, Set<OIdentifiable>>(key, values);
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+}
@@ -0,0 +1,669 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.sbtree.local;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.orientechnologies.common.concur.resource.OSharedResourceAdaptive;
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.config.OStorageSegmentConfiguration;
+import com.orientechnologies.orient.core.index.OIndexException;
+import com.orientechnologies.orient.core.index.hashindex.local.cache.ODiskCache;
+import com.orientechnologies.orient.core.serialization.serializer.binary.OBinarySerializerFactory;
+import com.orientechnologies.orient.core.storage.fs.OFileFactory;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
+
+/**
+ * B+tree whose nodes are fixed size pages of the disk cache. All the entries are kept in the leaves, that are linked to the
+ * siblings to browse ranges of keys in both directions without climbing the tree. The root is always the first page of the file:
+ * when it's split its content is moved to two new pages, so the root never changes position.<br/>
+ * Readers work in parallel under the shared lock: while descending the child page is pinned before the parent is released
+ * (latch coupling), so the pages in use are never evicted by the cache. Writers acquire the exclusive lock. Pages are never merged
+ * on delete: empty leaves are skipped while browsing and reused by the next insertions in the same range.
+ *
+ * @author Luca Garulli
+ */
+public class OSBTree<K, V> extends OSharedResourceAdaptive {
+  private static final long     ROOT_INDEX   = 0;
+
+  private final String          fileExtension;
+  private final ODirectMemory   directMemory = ODirectMemoryFactory.INSTANCE.directMemory();
+
+  private OStorageLocalAbstract storage;
+  private String                name;
+  private ODiskCache            diskCache;
+  private long                  fileId;
+  private volatile long         size;
+
+  private OBinarySerializer<K>  keySerializer;
+  private OBinarySerializer<V>  valueSerializer;
+
+  /**
+   * Listener of the entries found browsing a range of keys.
+   */
+  public interface RangeResultListener<K, V> {
+    /**
+     * Receives the next entry.
+     *
+     * @return false to stop browsing
+     */
+    boolean addResult(Map.Entry<K, V> iEntry);
+  }
+
+  public OSBTree(final String iFileExtension) {
+    super(OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean());
+    fileExtension = iFileExtension;
+  }
+
+  public void create(final String iName, final OBinarySerializer<K> iKeySerializer, final OBinarySerializer<V> iValueSerializer,
+      final OStorageLocalAbstract iStorage) {
+    acquireExclusiveLock();
+    try {
+      storage = iStorage;
+      diskCache = storage.getDiskCache();
+      name = iName;
+      keySerializer = iKeySerializer;
+      valueSerializer = iValueSerializer;
+
+      fileId = diskCache.openFile(createFileConfiguration(), fileExtension);
+      diskCache.truncateFile(fileId);
+
+      initRoot();
+    } catch (IOException e) {
+      throw new OIndexException("Error during creation of sbtree " + iName, e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  /**
+   * Opens an existent tree.
+   *
+   * @param iKeySerializer
+   *          Key serializer to use, if null the one stored in the tree is used
+   */
+  @SuppressWarnings("unchecked")
+  public void load(final String iName, final OBinarySerializer<K> iKeySerializer, final OStorageLocalAbstract iStorage) {
+    acquireExclusiveLock();
+    try {
+      storage = iStorage;
+      diskCache = storage.getDiskCache();
+      name = iName;
+
+      fileId = diskCache.openFile(createFileConfiguration(), fileExtension);
+      if (diskCache.getFilledUpTo(fileId) == 0)
+        throw new OIndexException("Sbtree " + iName + " is empty or missing");
+
+      final long rootPointer = diskCache.load(fileId, ROOT_INDEX);
+      try {
+        final OSBTreeBucket<K, V> root = new OSBTreeBucket<K, V>(rootPointer, directMemory, null, null);
+        size = root.getTreeSize();
+
+        if (iKeySerializer != null)
+          keySerializer = iKeySerializer;
+        else if (root.getKeySerializerId() != 0)
+          keySerializer = (OBinarySerializer<K>) OBinarySerializerFactory.INSTANCE.getObjectSerializer(root.getKeySerializerId());
+        valueSerializer = (OBinarySerializer<V>) OBinarySerializerFactory.INSTANCE.getObjectSerializer(root.getValueSerializerId());
+      } finally {
+        diskCache.release(fileId, ROOT_INDEX);
+      }
+    } catch (IOException e) {
+      throw new OIndexException("Error during loading of sbtree " + iName, e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public OBinarySerializer<K> getKeySerializer() {
+    return keySerializer;
+  }
+
+  /**
+   * Sets the key serializer when the type of the keys is known only at the first insertion.
+   */
+  public void setKeySerializer(final OBinarySerializer<K> iKeySerializer) {
+    acquireExclusiveLock();
+    try {
+      keySerializer = iKeySerializer;
+
+      final long rootPointer = diskCache.load(fileId, ROOT_INDEX);
+      try {
+        new OSBTreeBucket<K, V>(rootPointer, directMemory, null, null).setKeySerializerId(iKeySerializer.getId());
+        diskCache.markDirty(fileId, ROOT_INDEX);
+      } finally {
+        diskCache.release(fileId, ROOT_INDEX);
+      }
+    } catch (IOException e) {
+      throw new OIndexException("Error during setting of key serializer of sbtree " + name, e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public long size() {
+    return size;
+  }
+
+  public V get(final K iKey) {
+    acquireSharedLock();
+    try {
+      final long leafIndex = findLeaf(iKey, false);
+      final long leafPointer = diskCache.load(fileId, leafIndex);
+      try {
+        final OSBTreeBucket<K, V> leaf = new OSBTreeBucket<K, V>(leafPointer, directMemory, keySerializer, valueSerializer);
+        final int index = leaf.find(iKey);
+        return index >= 0 ? leaf.getValue(index) : null;
+      } finally {
+        diskCache.release(fileId, leafIndex);
+      }
+    } catch (IOException e) {
+      throw new OIndexException("Error during retrieving of key " + iKey + " in sbtree " + name, e);
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  /**
+   * Inserts or replaces the value of a key.
+   */
+  public void put(final K iKey, final V iValue) {
+    acquireExclusiveLock();
+    try {
+      checkEntrySize(iKey, iValue);
+
+      final List<Long> path = new ArrayList<Long>();
+      final long leafIndex = findLeafForUpdate(iKey, path);
+
+      final long leafPointer = diskCache.load(fileId, leafIndex);
+      try {
+        final OSBTreeBucket<K, V> leaf = new OSBTreeBucket<K, V>(leafPointer, directMemory, keySerializer, valueSerializer);
+        int index = leaf.find(iKey);
+        if (index >= 0) {
+          if (leaf.updateValue(index, iValue)) {
+            diskCache.markDirty(fileId, leafIndex);
+            return;
+          }
+
+          // NO ROOM FOR THE NEW VALUE: REMOVE THE ENTRY AND INSERT IT AGAIN SPLITTING THE PAGE
+          leaf.remove(index);
+          diskCache.markDirty(fileId, leafIndex);
+        } else {
+          index = -index - 1;
+          setSize(size + 1);
+        }
+
+        final OSBTreeBucket.SBTreeEntry<K, V> entry = new OSBTreeBucket.SBTreeEntry<K, V>(-1, -1, iKey, iValue);
+        if (leaf.addEntry(index, entry))
+          diskCache.markDirty(fileId, leafIndex);
+        else
+          splitAndInsert(leafIndex, leaf, index, entry, path);
+
+      } finally {
+        diskCache.release(fileId, leafIndex);
+      }
+    } catch (IOException e) {
+      throw new OIndexException("Error during insertion of key " + iKey + " in sbtree " + name, e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  /**
+   * Removes a key.
+   *
+   * @return The value removed, otherwise null
+   */
+  public V remove(final K iKey) {
+    acquireExclusiveLock();
+    try {
+      final long leafIndex = findLeaf(iKey, false);
+      final long leafPointer = diskCache.load(fileId, leafIndex);
+      try {
+        final OSBTreeBucket<K, V> leaf = new OSBTreeBucket<K, V>(leafPointer, directMemory, keySerializer, valueSerializer);
+        final int index = leaf.find(iKey);
+        if (index < 0)
+          return null;
+
+        final V removed = leaf.getValue(index);
+        leaf.remove(index);
+        diskCache.markDirty(fileId, leafIndex);
+
+        setSize(size - 1);
+        return removed;
+      } finally {
+        diskCache.release(fileId, leafIndex);
+      }
+    } catch (IOException e) {
+      throw new OIndexException("Error during removal of key " + iKey + " from sbtree " + name, e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  /**
+   * Browses in ascending order the keys greater than the key passed. Partial composite keys match all the keys with the same
+   * prefix.
+   *
+   * @param iFromKey
+   *          Lower bound, null to start from the first key
+   */
+  public void loadEntriesMajor(final K iFromKey, final boolean iInclusive, final RangeResultListener<K, V> iListener) {
+    loadEntriesBetween(iFromKey, iInclusive, null, false, iListener);
+  }
+
+  /**
+   * Browses in descending order the keys lower than the key passed. Partial composite keys match all the keys with the same
+   * prefix.
+   *
+   * @param iToKey
+   *          Upper bound, null to start from the last key
+   */
+  public void loadEntriesMinor(final K iToKey, final boolean iInclusive, final RangeResultListener<K, V> iListener) {
+    acquireSharedLock();
+    try {
+      long pageIndex;
+      int index;
+
+      if (iToKey == null) {
+        pageIndex = findLeaf(null, false);
+        index = Integer.MAX_VALUE;
+      } else {
+        // INCLUSIVE: LAST KEY <= TO, EXCLUSIVE: LAST KEY < TO
+        pageIndex = findLeaf(iToKey, !iInclusive);
+        index = -1;
+      }
+
+      long pointer = diskCache.load(fileId, pageIndex);
+      try {
+        OSBTreeBucket<K, V> page = new OSBTreeBucket<K, V>(pointer, directMemory, keySerializer, valueSerializer);
+        if (index == Integer.MAX_VALUE)
+          index = page.size() - 1;
+        else
+          index = (iInclusive ? page.upperBound(iToKey) : page.lowerBound(iToKey)) - 1;
+
+        while (true) {
+          for (; index >= 0; index--)
+            if (!iListener.addResult(page.getEntry(index)))
+              return;
+
+          final long previous = page.getLeftSibling();
+          if (previous < 0)
+            return;
+
+          // PIN THE SIBLING BEFORE RELEASING THE CURRENT PAGE
+          pointer = diskCache.load(fileId, previous);
+          diskCache.release(fileId, pageIndex);
+          pageIndex = previous;
+
+          page = new OSBTreeBucket<K, V>(pointer, directMemory, keySerializer, valueSerializer);
+          index = page.size() - 1;
+        }
+      } finally {
+        diskCache.release(fileId, pageIndex);
+      }
+    } catch (IOException e) {
+      throw new OIndexException("Error during browsing of sbtree " + name, e);
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  /**
+   * Browses in ascending order the keys between the keys passed. Partial composite keys match all the keys with the same prefix.
+   *
+   * @param iFromKey
+   *          Lower bound, null to start from the first key
+   * @param iToKey
+   *          Upper bound, null to browse up to the last key
+   */
+  public void loadEntriesBetween(final K iFromKey, final boolean iFromInclusive, final K iToKey, final boolean iToInclusive,
+      final RangeResultListener<K, V> iListener) {
+    acquireSharedLock();
+    try {
+      // INCLUSIVE: FIRST KEY >= FROM, EXCLUSIVE: FIRST KEY > FROM
+      long pageIndex = findLeaf(iFromKey, iFromKey == null || iFromInclusive);
+
+      long pointer = diskCache.load(fileId, pageIndex);
+      try {
+        OSBTreeBucket<K, V> page = new OSBTreeBucket<K, V>(pointer, directMemory, keySerializer, valueSerializer);
+        int index;
+        if (iFromKey == null)
+          index = 0;
+        else
+          index = iFromInclusive ? page.lowerBound(iFromKey) : page.upperBound(iFromKey);
+
+        while (true) {
+          final int pageSize = page.size();
+          if (iToKey != null && pageSize > 0) {
+            // COMPUTE THE LAST INDEX OF THE RANGE IN THIS PAGE
+            final int end = iToInclusive ? page.upperBound(iToKey) : page.lowerBound(iToKey);
+            for (; index < end; index++)
+              if (!iListener.addResult(page.getEntry(index)))
+                return;
+
+            if (end < pageSize)
+              return;
+          } else
+            for (; index < pageSize; index++)
+              if (!iListener.addResult(page.getEntry(index)))
+                return;
+
+          final long next = page.getRightSibling();
+          if (next < 0)
+            return;
+
+          // PIN THE SIBLING BEFORE RELEASING THE CURRENT PAGE
+          pointer = diskCache.load(fileId, next);
+          diskCache.release(fileId, pageIndex);
+          pageIndex = next;
+
+          page = new OSBTreeBucket<K, V>(pointer, directMemory, keySerializer, valueSerializer);
+          index = 0;
+        }
+      } finally {
+        diskCache.release(fileId, pageIndex);
+      }
+    } catch (IOException e) {
+      throw new OIndexException("Error during browsing of sbtree " + name, e);
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public void clear() {
+    acquireExclusiveLock();
+    try {
+      diskCache.truncateFile(fileId);
+      initRoot();
+    } catch (IOException e) {
+      throw new OIndexException("Error during clear of sbtree " + name, e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public void flush() {
+    acquireExclusiveLock();
+    try {
+      diskCache.flushFile(fileId);
+    } catch (IOException e) {
+      throw new OIndexException("Error during flush of sbtree " + name, e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public void close() {
+    acquireExclusiveLock();
+    try {
+      diskCache.closeFile(fileId);
+    } catch (IOException e) {
+      throw new OIndexException("Error during close of sbtree " + name, e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public void delete() {
+    acquireExclusiveLock();
+    try {
+      diskCache.deleteFile(fileId);
+    } catch (IOException e) {
+      throw new OIndexException("Error during deletion of sbtree " + name, e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  private OStorageSegmentConfiguration createFileConfiguration() {
+    final OStorageSegmentConfiguration fileConfiguration = new OStorageSegmentConfiguration(storage.getConfiguration(), name, 0);
+    fileConfiguration.fileType = OFileFactory.CLASSIC;
+    fileConfiguration.fileMaxSize = "10000Mb";
+    return fileConfiguration;
+  }
+
+  private void initRoot() throws IOException {
+    final long rootPointer = diskCache.load(fileId, ROOT_INDEX);
+    try {
+      final OSBTreeBucket<K, V> root = new OSBTreeBucket<K, V>(rootPointer, true, directMemory, keySerializer, valueSerializer);
+      root.setTreeSize(0);
+      root.setKeySerializerId(keySerializer != null ? keySerializer.getId() : 0);
+      root.setValueSerializerId(valueSerializer.getId());
+      diskCache.markDirty(fileId, ROOT_INDEX);
+    } finally {
+      diskCache.release(fileId, ROOT_INDEX);
+    }
+    size = 0;
+  }
+
+  private void setSize(final long iSize) throws IOException {
+    final long rootPointer = diskCache.load(fileId, ROOT_INDEX);
+    try {
+      new OSBTreeBucket<K, V>(rootPointer, directMemory, keySerializer, valueSerializer).setTreeSize(iSize);
+      diskCache.markDirty(fileId, ROOT_INDEX);
+    } finally {
+      diskCache.release(fileId, ROOT_INDEX);
+    }
+    size = iSize;
+  }
+
+  private void checkEntrySize(final K iKey, final V iValue) {
+    final int entrySize = Math.max(keySerializer.getObjectSize(iKey) + valueSerializer.getObjectSize(iValue),
+        keySerializer.getObjectSize(iKey) + 2 * OLongSerializer.LONG_SIZE);
+    if (entrySize > OSBTreeBucket.MAX_ENTRY_SIZE)
+      throw new OIndexException("Key " + iKey + " is too big to be stored in sbtree " + name + ": entry size is " + entrySize
+          + " bytes, while the maximum allowed is " + OSBTreeBucket.MAX_ENTRY_SIZE);
+  }
+
+  /**
+   * Descends the tree up to the leaf that could contain the key. Pages are coupled: the child is pinned before the parent is
+   * released.
+   *
+   * @param iKey
+   *          Key to search, null to get the first leaf (or the last one if iLowerBound is false)
+   * @param iLowerBound
+   *          true to descend in the leftmost leaf that could contain keys equal to a partial key, false to descend in the rightmost
+   *          one
+   */
+  private long findLeaf(final K iKey, final boolean iLowerBound) throws IOException {
+    long pageIndex = ROOT_INDEX;
+    long pointer = diskCache.load(fileId, pageIndex);
+    try {
+      while (true) {
+        final OSBTreeBucket<K, V> page = new OSBTreeBucket<K, V>(pointer, directMemory, keySerializer, valueSerializer);
+        if (page.isLeaf())
+          return pageIndex;
+
+        final long child = getChild(page, iKey, iLowerBound);
+        pointer = diskCache.load(fileId, child);
+        diskCache.release(fileId, pageIndex);
+        pageIndex = child;
+      }
+    } finally {
+      diskCache.release(fileId, pageIndex);
+    }
+  }
+
+  /**
+   * Descends the tree up to the leaf where the key should be placed, collecting the path of the inner pages.
+   */
+  private long findLeafForUpdate(final K iKey, final List<Long> iPath) throws IOException {
+    long pageIndex = ROOT_INDEX;
+    while (true) {
+      final long child;
+      final long pointer = diskCache.load(fileId, pageIndex);
+      try {
+        final OSBTreeBucket<K, V> page = new OSBTreeBucket<K, V>(pointer, directMemory, keySerializer, valueSerializer);
+        if (page.isLeaf())
+          return pageIndex;
+
+        iPath.add(pageIndex);
+        child = getChild(page, iKey, false);
+      } finally {
+        diskCache.release(fileId, pageIndex);
+      }
+      pageIndex = child;
+    }
+  }
+
+  private long getChild(final OSBTreeBucket<K, V> iPage, final K iKey, final boolean iLowerBound) {
+    final int pageSize = iPage.size();
+    if (iKey == null)
+      return iLowerBound ? iPage.getLeftChild(0) : iPage.getRightChild(pageSize - 1);
+
+    final int index = iLowerBound ? iPage.lowerBound(iKey) : iPage.upperBound(iKey);
+    if (index >= pageSize)
+      return iPage.getRightChild(pageSize - 1);
+    return iPage.getLeftChild(index);
+  }
+
+  /**
+   * Splits a full page inserting the entry and propagates the separator to the parent, splitting it too if needed.
+   */
+  private void splitAndInsert(final long iPageIndex, final OSBTreeBucket<K, V> iPage, final int iIndex,
+      final OSBTreeBucket.SBTreeEntry<K, V> iEntry, final List<Long> iPath) throws IOException {
+    final boolean leaf = iPage.isLeaf();
+
+    final List<OSBTreeBucket.SBTreeEntry<K, V>> entries = new ArrayList<OSBTreeBucket.SBTreeEntry<K, V>>(iPage.size() + 1);
+    int totalSize = 0;
+    for (int i = 0; i < iPage.size(); i++) {
+      final OSBTreeBucket.SBTreeEntry<K, V> entry = iPage.getEntry(i);
+      entries.add(entry);
+      totalSize += iPage.getEntrySize(entry);
+    }
+    entries.add(iIndex, iEntry);
+    totalSize += iPage.getEntrySize(iEntry);
+
+    // SPLIT BY SIZE: EVERY ENTRY IS AT MOST A QUARTER OF PAGE, SO BOTH HALVES FIT
+    int middle = 0;
+    for (int half = 0; middle < entries.size() && half + iPage.getEntrySize(entries.get(middle)) <= totalSize / 2; middle++)
+      half += iPage.getEntrySize(entries.get(middle));
+    middle = Math.max(1, Math.min(middle, entries.size() - (leaf ? 1 : 2)));
+
+    final List<OSBTreeBucket.SBTreeEntry<K, V>> leftEntries = entries.subList(0, middle);
+    final List<OSBTreeBucket.SBTreeEntry<K, V>> rightEntries = entries.subList(leaf ? middle : middle + 1, entries.size());
+    final K separator = entries.get(middle).key;
+
+    if (iPageIndex == ROOT_INDEX) {
+      // MOVE THE CONTENT OF THE ROOT IN TWO NEW PAGES
+      final long leftIndex = diskCache.getFilledUpTo(fileId);
+      final long leftPointer = diskCache.load(fileId, leftIndex);
+      try {
+        final long rightIndex = diskCache.getFilledUpTo(fileId);
+        final long rightPointer = diskCache.load(fileId, rightIndex);
+        try {
+          final OSBTreeBucket<K, V> left = new OSBTreeBucket<K, V>(leftPointer, leaf, directMemory, keySerializer, valueSerializer);
+          fill(left, leftEntries);
+          final OSBTreeBucket<K, V> right = new OSBTreeBucket<K, V>(rightPointer, leaf, directMemory, keySerializer,
+              valueSerializer);
+          fill(right, rightEntries);
+
+          if (leaf) {
+            left.setRightSibling(rightIndex);
+            right.setLeftSibling(leftIndex);
+          }
+
+          iPage.reset(false);
+          iPage.addEntry(0, new OSBTreeBucket.SBTreeEntry<K, V>(leftIndex, rightIndex, separator, null));
+
+          diskCache.markDirty(fileId, rightIndex);
+        } finally {
+          diskCache.release(fileId, rightIndex);
+        }
+        diskCache.markDirty(fileId, leftIndex);
+      } finally {
+        diskCache.release(fileId, leftIndex);
+      }
+      diskCache.markDirty(fileId, iPageIndex);
+      return;
+    }
+
+    final long rightIndex = diskCache.getFilledUpTo(fileId);
+    final long rightPointer = diskCache.load(fileId, rightIndex);
+    try {
+      final OSBTreeBucket<K, V> right = new OSBTreeBucket<K, V>(rightPointer, leaf, directMemory, keySerializer, valueSerializer);
+      fill(right, rightEntries);
+
+      if (leaf) {
+        final long oldRight = iPage.getRightSibling();
+        final long oldLeft = iPage.getLeftSibling();
+
+        iPage.reset(true);
+        iPage.setLeftSibling(oldLeft);
+        iPage.setRightSibling(rightIndex);
+        right.setLeftSibling(iPageIndex);
+        right.setRightSibling(oldRight);
+
+        if (oldRight >= 0) {
+          final long oldRightPointer = diskCache.load(fileId, oldRight);
+          try {
+            new OSBTreeBucket<K, V>(oldRightPointer, directMemory, keySerializer, valueSerializer).setLeftSibling(rightIndex);
+            diskCache.markDirty(fileId, oldRight);
+          } finally {
+            diskCache.release(fileId, oldRight);
+          }
+        }
+      } else
+        iPage.reset(false);
+
+      fill(iPage, leftEntries);
+      diskCache.markDirty(fileId, rightIndex);
+    } finally {
+      diskCache.release(fileId, rightIndex);
+    }
+    diskCache.markDirty(fileId, iPageIndex);
+
+    // INSERT THE SEPARATOR IN THE PARENT
+    final long parentIndex = iPath.remove(iPath.size() - 1);
+    final long parentPointer = diskCache.load(fileId, parentIndex);
+    try {
+      final OSBTreeBucket<K, V> parent = new OSBTreeBucket<K, V>(parentPointer, directMemory, keySerializer, valueSerializer);
+      final int index = parent.upperBound(separator);
+      final OSBTreeBucket.SBTreeEntry<K, V> parentEntry = new OSBTreeBucket.SBTreeEntry<K, V>(iPageIndex, rightIndex, separator,
+          null);
+
+      if (parent.addEntry(index, parentEntry)) {
+        // THE NEXT ENTRY SHARED THE SPLIT PAGE AS LEFT CHILD
+        if (index + 1 < parent.size())
+          parent.setLeftChild(index + 1, rightIndex);
+        diskCache.markDirty(fileId, parentIndex);
+      } else {
+        if (index < parent.size())
+          parent.setLeftChild(index, rightIndex);
+        splitAndInsert(parentIndex, parent, index, parentEntry, iPath);
+      }
+    } finally {
+      diskCache.release(fileId, parentIndex);
+    }
+  }
+
+  private void fill(final OSBTreeBucket<K, V> iPage, final List<OSBTreeBucket.SBTreeEntry<K, V>> iEntries) {
+    for (int i = 0; i < iEntries.size(); i++)
+      if (!iPage.addEntry(i, iEntries.get(i)))
+        throw new OIndexException("Error during split of page in sbtree " + name + ": entries don't fit in the page");
+  }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.sbtree.local;
+
+import java.util.Comparator;
+import java.util.Map;
+
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.serialization.types.OByteSerializer;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+
+/**
+ * Page of the {@link OSBTree}. The entries are kept sorted by key: the positions array grows from the header to the end of the
+ * page, while the serialized entries grow from the end of the page to the header. Leaf pages contain key and value and are linked
+ * to the sibling leaves, inner pages contain the left child, the right child and the key.<br/>
+ * Header fields used only by the root page keep the size of the tree and the serializers.
+ *
+ * @author Luca Garulli
+ */
+public class OSBTreeBucket<K, V> {
+  private static final int            FREE_POINTER_OFFSET     = 0;
+  private static final int            SIZE_OFFSET             = FREE_POINTER_OFFSET + OIntegerSerializer.INT_SIZE;
+  private static final int            IS_LEAF_OFFSET          = SIZE_OFFSET + OIntegerSerializer.INT_SIZE;
+  private static final int            LEFT_SIBLING_OFFSET     = IS_LEAF_OFFSET + OByteSerializer.BYTE_SIZE;
+  private static final int            RIGHT_SIBLING_OFFSET    = LEFT_SIBLING_OFFSET + OLongSerializer.LONG_SIZE;
+  private static final int            TREE_SIZE_OFFSET        = RIGHT_SIBLING_OFFSET + OLongSerializer.LONG_SIZE;
+  private static final int            KEY_SERIALIZER_OFFSET   = TREE_SIZE_OFFSET + OLongSerializer.LONG_SIZE;
+  private static final int            VALUE_SERIALIZER_OFFSET = KEY_SERIALIZER_OFFSET + OByteSerializer.BYTE_SIZE;
+  private static final int            POSITIONS_ARRAY_OFFSET  = VALUE_SERIALIZER_OFFSET + OByteSerializer.BYTE_SIZE;
+
+  public static final int             MAX_PAGE_SIZE_BYTES     = OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * 1024;
+
+  /**
+   * Maximum size of an entry: a page must always be able to contain at least 4 entries to split correctly.
+   */
+  public static final int             MAX_ENTRY_SIZE          = (MAX_PAGE_SIZE_BYTES - POSITIONS_ARRAY_OFFSET) / 4
+                                                                  - OIntegerSerializer.INT_SIZE;
+
+  private final long                  pagePointer;
+  private final ODirectMemory         directMemory;
+  private final OBinarySerializer<K>  keySerializer;
+  private final OBinarySerializer<V>  valueSerializer;
+  private final Comparator<? super K> comparator              = ODefaultComparator.INSTANCE;
+
+  /**
+   * Initializes a new empty page.
+   */
+  public OSBTreeBucket(final long iPagePointer, final boolean iLeaf, final ODirectMemory iDirectMemory,
+      final OBinarySerializer<K> iKeySerializer, final OBinarySerializer<V> iValueSerializer) {
+    this(iPagePointer, iDirectMemory, iKeySerializer, iValueSerializer);
+    reset(iLeaf);
+  }
+
+  /**
+   * Wraps an existent page.
+   */
+  public OSBTreeBucket(final long iPagePointer, final ODirectMemory iDirectMemory, final OBinarySerializer<K> iKeySerializer,
+      final OBinarySerializer<V> iValueSerializer) {
+    pagePointer = iPagePointer;
+    directMemory = iDirectMemory;
+    keySerializer = iKeySerializer;
+    valueSerializer = iValueSerializer;
+  }
+
+  /**
+   * Removes all the entries and the sibling links. The fields of the root are left untouched.
+   */
+  public void reset(final boolean iLeaf) {
+    setInt(FREE_POINTER_OFFSET, MAX_PAGE_SIZE_BYTES);
+    setInt(SIZE_OFFSET, 0);
+    directMemory.setByte(pagePointer + IS_LEAF_OFFSET, iLeaf ? (byte) 1 : (byte) 0);
+    setLeftSibling(-1);
+    setRightSibling(-1);
+  }
+
+  public int size() {
+    return getInt(SIZE_OFFSET);
+  }
+
+  public boolean isLeaf() {
+    return directMemory.getByte(pagePointer + IS_LEAF_OFFSET) > 0;
+  }
+
+  /**
+   * Searches the key.
+   *
+   * @return The index of the key if found, otherwise -(insertion point + 1)
+   */
+  public int find(final K iKey) {
+    int low = 0;
+    int high = size() - 1;
+
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int cmp = comparator.compare(getKey(mid), iKey);
+
+      if (cmp < 0)
+        low = mid + 1;
+      else if (cmp > 0)
+        high = mid - 1;
+      else
+        return mid;
+    }
+    return -(low + 1);
+  }
+
+  /**
+   * Returns the index of the first key greater or equal than the key passed. Partial composite keys match all the keys with the
+   * same prefix.
+   */
+  public int lowerBound(final K iKey) {
+    int low = 0;
+    int high = size();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (comparator.compare(getKey(mid), iKey) < 0)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
+  /**
+   * Returns the index of the first key greater than the key passed. Partial composite keys match all the keys with the same
+   * prefix.
+   */
+  public int upperBound(final K iKey) {
+    int low = 0;
+    int high = size();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (comparator.compare(getKey(mid), iKey) <= 0)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
+  public K getKey(final int iIndex) {
+    long pointer = pagePointer + getEntryPosition(iIndex);
+    if (!isLeaf())
+      pointer += 2 * OLongSerializer.LONG_SIZE;
+    return keySerializer.deserializeFromDirectMemory(directMemory, pointer);
+  }
+
+  public V getValue(final int iIndex) {
+    final long pointer = pagePointer + getEntryPosition(iIndex);
+    return valueSerializer.deserializeFromDirectMemory(directMemory,
+        pointer + keySerializer.getObjectSizeInDirectMemory(directMemory, pointer));
+  }
+
+  public long getLeftChild(final int iIndex) {
+    return getLong(getEntryPosition(iIndex));
+  }
+
+  public void setLeftChild(final int iIndex, final long iPageIndex) {
+    setLong(getEntryPosition(iIndex), iPageIndex);
+  }
+
+  public long getRightChild(final int iIndex) {
+    return getLong(getEntryPosition(iIndex) + OLongSerializer.LONG_SIZE);
+  }
+
+  public void setRightChild(final int iIndex, final long iPageIndex) {
+    setLong(getEntryPosition(iIndex) + OLongSerializer.LONG_SIZE, iPageIndex);
+  }
+
+  public SBTreeEntry<K, V> getEntry(final int iIndex) {
+    if (isLeaf())
+      return new SBTreeEntry<K, V>(-1, -1, getKey(iIndex), getValue(iIndex));
+    return new SBTreeEntry<K, V>(getLeftChild(iIndex), getRightChild(iIndex), getKey(iIndex), null);
+  }
+
+  /**
+   * Inserts the entry at the position passed.
+   *
+   * @return false if the page has no room for the entry
+   */
+  public boolean addEntry(final int iIndex, final SBTreeEntry<K, V> iEntry) {
+    final int entrySize = getEntrySize(iEntry);
+    final int size = size();
+    final int freePointer = getInt(FREE_POINTER_OFFSET);
+    if (freePointer - entrySize < POSITIONS_ARRAY_OFFSET + (size + 1) * OIntegerSerializer.INT_SIZE)
+      return false;
+
+    final int positionOffset = POSITIONS_ARRAY_OFFSET + iIndex * OIntegerSerializer.INT_SIZE;
+    directMemory.copyData(pagePointer + positionOffset, pagePointer + positionOffset + OIntegerSerializer.INT_SIZE, (size - iIndex)
+        * OIntegerSerializer.INT_SIZE);
+
+    final int entryPosition = freePointer - entrySize;
+    setInt(positionOffset, entryPosition);
+    serializeEntry(iEntry, entryPosition);
+
+    setInt(FREE_POINTER_OFFSET, entryPosition);
+    setInt(SIZE_OFFSET, size + 1);
+    return true;
+  }
+
+  /**
+   * Replaces the value of a leaf entry.
+   *
+   * @return false if the page has no room for the new value, in this case the page is not changed
+   */
+  public boolean updateValue(final int iIndex, final V iValue) {
+    final int entryPosition = getEntryPosition(iIndex);
+    final int keySize = keySerializer.getObjectSizeInDirectMemory(directMemory, pagePointer + entryPosition);
+    final int oldSize = valueSerializer.getObjectSizeInDirectMemory(directMemory, pagePointer + entryPosition + keySize);
+    final int newSize = valueSerializer.getObjectSize(iValue);
+
+    if (oldSize == newSize) {
+      valueSerializer.serializeInDirectMemory(iValue, directMemory, pagePointer + entryPosition + keySize);
+      return true;
+    }
+
+    if (newSize - oldSize > getFreeSpace())
+      return false;
+
+    final K key = getKey(iIndex);
+    remove(iIndex);
+    addEntry(iIndex, new SBTreeEntry<K, V>(-1, -1, key, iValue));
+    return true;
+  }
+
+  public void remove(final int iIndex) {
+    final int size = size();
+    final int positionOffset = POSITIONS_ARRAY_OFFSET + iIndex * OIntegerSerializer.INT_SIZE;
+    final int entryPosition = getInt(positionOffset);
+    final int entrySize = getEntrySizeInPage(entryPosition);
+
+    directMemory.copyData(pagePointer + positionOffset + OIntegerSerializer.INT_SIZE, pagePointer + positionOffset, (size - iIndex - 1)
+        * OIntegerSerializer.INT_SIZE);
+
+    // COMPACT THE ENTRIES MOVING THE ONES BEFORE THE REMOVED ENTRY
+    final int freePointer = getInt(FREE_POINTER_OFFSET);
+    if (entryPosition > freePointer)
+      directMemory.copyData(pagePointer + freePointer, pagePointer + freePointer + entrySize, entryPosition - freePointer);
+
+    for (int i = 0; i < size - 1; i++) {
+      final int offset = POSITIONS_ARRAY_OFFSET + i * OIntegerSerializer.INT_SIZE;
+      final int position = getInt(offset);
+      if (position < entryPosition)
+        setInt(offset, position + entrySize);
+    }
+
+    setInt(FREE_POINTER_OFFSET, freePointer + entrySize);
+    setInt(SIZE_OFFSET, size - 1);
+  }
+
+  public int getFreeSpace() {
+    return getInt(FREE_POINTER_OFFSET) - POSITIONS_ARRAY_OFFSET - size() * OIntegerSerializer.INT_SIZE;
+  }
+
+  public long getLeftSibling() {
+    return getLong(LEFT_SIBLING_OFFSET);
+  }
+
+  public void setLeftSibling(final long iPageIndex) {
+    setLong(LEFT_SIBLING_OFFSET, iPageIndex);
+  }
+
+  public long getRightSibling() {
+    return getLong(RIGHT_SIBLING_OFFSET);
+  }
+
+  public void setRightSibling(final long iPageIndex) {
+    setLong(RIGHT_SIBLING_OFFSET, iPageIndex);
+  }
+
+  public long getTreeSize() {
+    return getLong(TREE_SIZE_OFFSET);
+  }
+
+  public void setTreeSize(final long iSize) {
+    setLong(TREE_SIZE_OFFSET, iSize);
+  }
+
+  public byte getKeySerializerId() {
+    return directMemory.getByte(pagePointer + KEY_SERIALIZER_OFFSET);
+  }
+
+  public void setKeySerializerId(final byte iId) {
+    directMemory.setByte(pagePointer + KEY_SERIALIZER_OFFSET, iId);
+  }
+
+  public byte getValueSerializerId() {
+    return directMemory.getByte(pagePointer + VALUE_SERIALIZER_OFFSET);
+  }
+
+  public void setValueSerializerId(final byte iId) {
+    directMemory.setByte(pagePointer + VALUE_SERIALIZER_OFFSET, iId);
+  }
+
+  public int getEntrySize(final SBTreeEntry<K, V> iEntry) {
+    if (isLeaf())
+      return keySerializer.getObjectSize(iEntry.key) + valueSerializer.getObjectSize(iEntry.value);
+    return 2 * OLongSerializer.LONG_SIZE + keySerializer.getObjectSize(iEntry.key);
+  }
+
+  private int getEntrySizeInPage(final int iEntryPosition) {
+    if (isLeaf()) {
+      final int keySize = keySerializer.getObjectSizeInDirectMemory(directMemory, pagePointer + iEntryPosition);
+      return keySize + valueSerializer.getObjectSizeInDirectMemory(directMemory, pagePointer + iEntryPosition + keySize);
+    }
+    return 2 * OLongSerializer.LONG_SIZE
+        + keySerializer.getObjectSizeInDirectMemory(directMemory, pagePointer + iEntryPosition + 2 * OLongSerializer.LONG_SIZE);
+  }
+
+  private void serializeEntry(final SBTreeEntry<K, V> iEntry, int iPosition) {
+    if (isLeaf()) {
+      keySerializer.serializeInDirectMemory(iEntry.key, directMemory, pagePointer + iPosition);
+      iPosition += keySerializer.getObjectSize(iEntry.key);
+      valueSerializer.serializeInDirectMemory(iEntry.value, directMemory, pagePointer + iPosition);
+    } else {
+      setLong(iPosition, iEntry.leftChild);
+      setLong(iPosition + OLongSerializer.LONG_SIZE, iEntry.rightChild);
+      keySerializer.serializeInDirectMemory(iEntry.key, directMemory, pagePointer + iPosition + 2 * OLongSerializer.LONG_SIZE);
+    }
+  }
+
+  private int getEntryPosition(final int iIndex) {
+    return getInt(POSITIONS_ARRAY_OFFSET + iIndex * OIntegerSerializer.INT_SIZE);
+  }
+
+  private int getInt(final int iOffset) {
+    return OIntegerSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, pagePointer + iOffset);
+  }
+
+  private void setInt(final int iOffset, final int iValue) {
+    OIntegerSerializer.INSTANCE.serializeInDirectMemory(iValue, directMemory, pagePointer + iOffset);
+  }
+
+  private long getLong(final int iOffset) {
+    return OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, pagePointer + iOffset);
+  }
+
+  private void setLong(final int iOffset, final long iValue) {
+    OLongSerializer.INSTANCE.serializeInDirectMemory(iValue, directMemory, pagePointer + iOffset);
+  }
+
+  /**
+   * Entry of the page. Leaf entries have key and value, inner entries have key and children.
+   */
+  public static final class SBTreeEntry<K, V> implements Map.Entry<K, V> {
+    public final long leftChild;
+    public final long rightChild;
+    public final K    key;
+    public final V    value;
+
+    public SBTreeEntry(final long iLeftChild, final long iRightChild, final K iKey, final V iValue) {
+      leftChild = iLeftChild;
+      rightChild = iRightChild;
+      key = iKey;
+      value = iValue;
+    }
+
+    public K getKey() {
+      return key;
+    }
+
+    public V getValue() {
+      return value;
+    }
+
+    public V setValue(final V iValue) {
+      throw new UnsupportedOperationException("setValue");
+    }
+
+    @Override
+    public String toString() {
+      return key + "=" + value;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.sbtree.local;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.exception.OConfigurationException;
+import com.orientechnologies.orient.core.index.OIndexFactory;
+import com.orientechnologies.orient.core.index.OIndexInternal;
+
+/**
+ * Factory of the indexes based on the page-based SB-Tree. The check of the storage type is delegated to the creation of the index, so
+ * remote clients can still instance the indexes read from the configuration.
+ *
+ * @author Luca Garulli
+ */
+public class OSBTreeIndexFactory implements OIndexFactory {
+  public static final Set<String> SUPPORTED_TYPES;
+
+  static {
+    final Set<String> types = new HashSet<String>();
+    types.add(OUniqueSBTreeIndex.TYPE_ID);
+    types.add(ONotUniqueSBTreeIndex.TYPE_ID);
+    types.add(ODictionarySBTreeIndex.TYPE_ID);
+    SUPPORTED_TYPES = Collections.unmodifiableSet(types);
+  }
+
+  public Set<String> getTypes() {
+    return SUPPORTED_TYPES;
+  }
+
+  public OIndexInternal<?> createIndex(final ODatabaseRecord iDatabase, final String iIndexType) throws OConfigurationException {
+    if (ODirectMemoryFactory.INSTANCE.directMemory() == null)
+      throw new OConfigurationException("There is no suitable direct memory implementation for this platform."
+          + " Index creation was canceled.");
+
+    if (OUniqueSBTreeIndex.TYPE_ID.equals(iIndexType))
+      return new OUniqueSBTreeIndex();
+    else if (ONotUniqueSBTreeIndex.TYPE_ID.equals(iIndexType))
+      return new ONotUniqueSBTreeIndex();
+    else if (ODictionarySBTreeIndex.TYPE_ID.equals(iIndexType))
+      return new ODictionarySBTreeIndex();
+
+    throw new OConfigurationException("Unsupported type : " + iIndexType);
+  }
+}
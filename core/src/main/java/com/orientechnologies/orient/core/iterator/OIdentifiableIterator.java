@@ -15,12 +15,15 @@
  */
 package com.orientechnologies.orient.core.iterator;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecordAbstract;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.db.record.ORecordOperation;
 import com.orientechnologies.orient.core.exception.ODatabaseException;
@@ -29,11 +32,15 @@ import com.orientechnologies.orient.core.id.OClusterPositionFactory;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
 import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocal;
 
 /**
  * Iterator class to browse forward and backward the records of a cluster. Once browsed in a direction, the iterator cannot change
- * it.
+ * it. When a local cluster is browsed forward outside a transaction the iterator reads ahead the next records with one storage
+ * call. The read-ahead window starts after some sequential moves, doubles at every read up to the
+ * {@link OGlobalConfiguration#STORAGE_SCAN_READ_AHEAD} setting and restarts from scratch when the storage is changed meanwhile.
  * 
  * @author Luca Garulli
  */
@@ -69,6 +76,13 @@ public abstract class OIdentifiableIterator<REC extends OIdentifiable> implement
   private final boolean            useCache;
   private final boolean            iterateThroughTombstones;
 
+  private static final int         READ_AHEAD_THRESHOLD   = 4;
+  private static final int         READ_AHEAD_MIN_WINDOW  = 16;
+  private int                      sequentialMoves        = 0;
+  private int                      readAheadWindow        = 0;
+  private ORawBuffer[]             readAheadBuffers       = null;
+  private long                     readAheadVersion;
+
   public OIdentifiableIterator(final ODatabaseRecord iDatabase, final ODatabaseRecord iLowLevelDatabase, final boolean useCache,
       final boolean iterateThroughTombstones) {
     database = iDatabase;
@@ -272,7 +286,11 @@ public abstract class OIdentifiableIterator<REC extends OIdentifiable> implement
         return null;
 
       try {
-        if (iRecord != null) {
+        final ORawBuffer readAhead = getReadAheadBuffer();
+        if (readAhead != null)
+          iRecord = ((ODatabaseRecordAbstract) lowLevelDatabase).executeReadRecord(new ORecordId(current.clusterId,
+              current.clusterPosition), iRecord, fetchPlan, !useCache, iterateThroughTombstones, readAhead);
+        else if (iRecord != null) {
           iRecord.setIdentity(new ORecordId(current.clusterId, current.clusterPosition));
           iRecord = lowLevelDatabase.load(iRecord, fetchPlan, !useCache, iterateThroughTombstones);
         } else
@@ -298,11 +316,20 @@ public abstract class OIdentifiableIterator<REC extends OIdentifiable> implement
     } else {
       if (currentEntry.compareTo(lastClusterEntry) >= 0)
         return false;
+
+      if (readAheadBuffers != null && dbStorage.getVersion() != readAheadVersion) {
+        // STORAGE CHANGED: DISCARD THE RECORDS READ AHEAD AND RESTART FROM THE CURRENT ONE
+        positionsToProcess = new OPhysicalPosition[] { positionsToProcess[currentEntryPosition] };
+        currentEntryPosition = 0;
+        readAheadBuffers = null;
+        readAheadWindow = 0;
+        sequentialMoves = 0;
+      }
     }
 
     incrementEntreePosition();
     while (positionsToProcess.length > 0 && currentEntryPosition >= positionsToProcess.length) {
-      positionsToProcess = dbStorage.higherPhysicalPositions(current.clusterId, positionsToProcess[positionsToProcess.length - 1]);
+      positionsToProcess = higherPhysicalPositions(positionsToProcess[positionsToProcess.length - 1]);
 
       currentEntryPosition = -1;
       incrementEntreePosition();
@@ -390,6 +417,60 @@ public abstract class OIdentifiableIterator<REC extends OIdentifiable> implement
     currentEntry = OClusterPosition.INVALID_POSITION;
     positionsToProcess = null;
     currentEntryPosition = -1;
+    readAheadBuffers = null;
+  }
+
+  /**
+   * Returns the positions after the passed one. After some sequential moves forward the records are read ahead together with their
+   * positions, if the storage supports it.
+   */
+  private OPhysicalPosition[] higherPhysicalPositions(final OPhysicalPosition iFrom) {
+    readAheadBuffers = null;
+
+    if (readAheadWindow == 0 && ++sequentialMoves >= READ_AHEAD_THRESHOLD && isReadAheadAllowed())
+      readAheadWindow = Math.min(READ_AHEAD_MIN_WINDOW, OGlobalConfiguration.STORAGE_SCAN_READ_AHEAD.getValueAsInteger());
+
+    if (readAheadWindow <= 0 || database.getTransaction().isActive())
+      return dbStorage.higherPhysicalPositions(current.clusterId, iFrom);
+
+    int window = readAheadWindow;
+    if (limit > -1)
+      window = (int) Math.max(1, Math.min(window, limit - browsedRecords));
+
+    final OPhysicalPosition[] positions = new OPhysicalPosition[window];
+    final ORawBuffer[] buffers = new ORawBuffer[window];
+
+    // TAKE THE VERSION BEFORE READING: ANY CHANGE FROM NOW ON INVALIDATES THE RECORDS READ
+    readAheadVersion = dbStorage.getVersion();
+    final int read = ((OStorageLocal) dbStorage).readRecordsAhead(current.clusterId, iFrom, positions, buffers,
+        iterateThroughTombstones);
+
+    readAheadWindow = Math.min(readAheadWindow * 2, OGlobalConfiguration.STORAGE_SCAN_READ_AHEAD.getValueAsInteger());
+
+    if (read == 0)
+      return new OPhysicalPosition[0];
+
+    readAheadBuffers = read < window ? Arrays.copyOf(buffers, read) : buffers;
+    return read < window ? Arrays.copyOf(positions, read) : positions;
+  }
+
+  private boolean isReadAheadAllowed() {
+    return directionForward != null && directionForward && dbStorage instanceof OStorageLocal
+        && lowLevelDatabase instanceof ODatabaseRecordAbstract;
+  }
+
+  /**
+   * Returns the content read ahead for the current record, if still valid.
+   */
+  private ORawBuffer getReadAheadBuffer() {
+    if (readAheadBuffers == null || currentEntryPosition < 0 || currentEntryPosition >= readAheadBuffers.length
+        || !positionsToProcess[currentEntryPosition].clusterPosition.equals(current.clusterPosition))
+      return null;
+
+    if (dbStorage.getVersion() != readAheadVersion || database.getTransaction().isActive())
+      return null;
+
+    return readAheadBuffers[currentEntryPosition];
   }
 
   protected OClusterPosition currentPosition() {
@@ -16,11 +16,13 @@
 package com.orientechnologies.orient.core.metadata.function;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.command.OCommandManager;
 import com.orientechnologies.orient.core.command.script.OCommandExecutorFunction;
 import com.orientechnologies.orient.core.command.script.OCommandFunction;
@@ -52,17 +54,24 @@ public class OFunctionLibraryImpl implements OFunctionLibrary {
   }
 
   public void load() {
-    functions.clear();
-
     // LOAD ALL THE FUNCTIONS IN MEMORY
     final ODatabaseRecord db = ODatabaseRecordThreadLocal.INSTANCE.get();
+    final Map<String, OFunction> loaded = new HashMap<String, OFunction>();
+
     if (db.getMetadata().getSchema().existsClass("OFunction")) {
       List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>("select from OFunction order by name"));
       for (ODocument d : result) {
         d.reload();
-        functions.put(d.field("name").toString().toUpperCase(), new OFunction(d));
+        loaded.put(d.field("name").toString().toUpperCase(), new OFunction(d));
       }
     }
+
+    // REPLACE THE FUNCTIONS WITHOUT EMPTYING THE LIBRARY: THE CONCURRENT CALLS NEVER SEE A PARTIAL ONE
+    functions.putAll(loaded);
+    functions.keySet().retainAll(loaded.keySet());
+
+    // THE POOLED SCRIPT ENGINES HAVE THE PREVIOUS LIBRARY COMPILED: DISCARD THEM ONCE THE NEW ONE IS COMPLETE
+    Orient.instance().getScriptManager().close(db.getURL());
   }
 
   public Set<String> getFunctionNames() {
@@ -78,6 +87,7 @@ public class OFunctionLibraryImpl implements OFunctionLibrary {
 
     final OFunction f = new OFunction().setName(iName);
     functions.put(iName.toUpperCase(), f);
+    Orient.instance().getScriptManager().close(ODatabaseRecordThreadLocal.INSTANCE.get().getURL());
 
     return f;
   }
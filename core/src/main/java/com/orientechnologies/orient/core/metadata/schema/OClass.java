@@ -35,7 +35,8 @@ public interface OClass extends Comparable<OClass> {
   }
 
   public static enum INDEX_TYPE {
-    UNIQUE(true), NOTUNIQUE(true), FULLTEXT(true), DICTIONARY(false), PROXY(true), UNIQUE_HASH(false);
+    UNIQUE(true), NOTUNIQUE(true), FULLTEXT(true), DICTIONARY(false), PROXY(true), UNIQUE_HASH(false), UNIQUE_SBTREE(true), NOTUNIQUE_SBTREE(
+        true), DICTIONARY_SBTREE(false);
 
     private final boolean automaticIndexable;
 
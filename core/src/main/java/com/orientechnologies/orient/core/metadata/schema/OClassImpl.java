@@ -29,6 +29,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.orientechnologies.common.listener.OProgressListener;
 import com.orientechnologies.common.util.OArrays;
@@ -82,6 +84,10 @@ public class OClassImpl extends ODocumentWrapperNoClass implements OClass {
   protected Map<String, String>          customFields;
   private static final Iterator<OClass>  EMPTY_CLASSES    = new ArrayList<OClass>().iterator();
 
+  // FIELD NAMES SHARED BY ALL THE DOCUMENTS OF THE CLASS
+  private static final int               MAX_FIELD_NAMES  = 1000;
+  private final ConcurrentMap<String, String> fieldNames  = new ConcurrentHashMap<String, String>();
+
   /**
    * Constructor used in unmarshalling.
    */
@@ -323,6 +329,24 @@ public class OClassImpl extends ODocumentWrapperNoClass implements OClass {
     return (Collection<OProperty>) (indexedProps != null ? indexedProps : Collections.emptyList());
   }
 
+  /**
+   * Returns the instance of the field name shared by the documents of the class, so every document doesn't keep its own copy of
+   * the name. The dictionary is bounded to avoid schema-less classes with generated field names to grow it forever.
+   */
+  public String getSharedFieldName(final String iFieldName) {
+    final String shared = fieldNames.get(iFieldName);
+    if (shared != null)
+      return shared;
+
+    if (fieldNames.size() >= MAX_FIELD_NAMES)
+      return iFieldName;
+
+    // COPY IT TO AVOID KEEPING THE BUFFER OF THE RECORD THE NAME HAS BEEN PARSED FROM
+    final String name = new String(iFieldName);
+    final String existent = fieldNames.putIfAbsent(name, name);
+    return existent != null ? existent : name;
+  }
+
   public OProperty getProperty(final String iPropertyName) {
     OClassImpl currentClass = this;
     OProperty p = null;
@@ -244,12 +244,15 @@ public class OPropertyImpl extends ODocumentWrapperNoClass implements OProperty
     final String cmd = String.format("alter property %s linkedclass %s", getFullName(), iLinkedClass);
     getDatabase().command(new OCommandSQL(cmd)).execute();
     this.linkedClass = iLinkedClass;
+    this.linkedClassName = null;
     return this;
   }
 
   public void setLinkedClassInternal(final OClass iLinkedClass) {
     getDatabase().checkSecurity(ODatabaseSecurityResources.SCHEMA, ORole.PERMISSION_UPDATE);
     this.linkedClass = iLinkedClass;
+    // THE NAME WOULD RELOAD THE OLD CLASS
+    this.linkedClassName = null;
   }
 
   public OType getLinkedType() {
@@ -686,6 +689,8 @@ public class OPropertyImpl extends ODocumentWrapperNoClass implements OProperty
         document.field("linkedType", linkedType.id);
       if (linkedClass != null || linkedClassName != null)
         document.field("linkedClass", linkedClass != null ? linkedClass.getName() : linkedClassName);
+      else
+        document.removeField("linkedClass");
 
       document.field("customFields", customFields != null && customFields.size() > 0 ? customFields : null, OType.EMBEDDEDMAP);
 
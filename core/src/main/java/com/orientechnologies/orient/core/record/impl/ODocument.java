@@ -29,7 +29,6 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -281,8 +280,7 @@ public class ODocument extends ORecordSchemaAwareAbstract<Object> implements Ite
       destination._owners = new ArrayList<WeakReference<ORecordElement>>(_owners);
 
     if (_fieldValues != null) {
-      destination._fieldValues = _fieldValues instanceof LinkedHashMap ? new LinkedHashMap<String, Object>()
-          : new HashMap<String, Object>();
+      destination._fieldValues = new ODocumentFieldMap(destination, _fieldValues.size());
       for (Entry<String, Object> entry : _fieldValues.entrySet())
         ODocumentHelper.copyFieldValue(destination, entry);
     }
@@ -1247,10 +1245,17 @@ public class ODocument extends ORecordSchemaAwareAbstract<Object> implements Ite
     return _owners != null && !_owners.isEmpty();
   }
 
+  /**
+   * Returns the class of the document if already known, without loading or unmarshalling the record.
+   */
+  protected OClass getLoadedSchemaClass() {
+    return _clazz;
+  }
+
   @Override
   protected boolean checkForFields(final String... iFields) {
     if (_fieldValues == null)
-      _fieldValues = _ordered ? new LinkedHashMap<String, Object>() : new HashMap<String, Object>();
+      _fieldValues = new ODocumentFieldMap(this);
 
     if (_status == ORecordElement.STATUS.LOADED && _source != null)
       // POPULATE FIELDS LAZY
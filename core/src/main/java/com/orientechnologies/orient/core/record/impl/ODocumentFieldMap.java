@@ -0,0 +1,274 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.record.impl;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OClassImpl;
+
+/**
+ * Compact map of the document fields. Names and values are kept in two arrays in insertion order, instead of one entry object per
+ * field. The names are shared with the other documents of the same class through the class dictionary, so the documents held in
+ * the caches don't keep a copy of the same names each. Small documents are searched linearly; a hash index of the positions is
+ * built only when the document has many fields.
+ * 
+ * @author Luca Garulli
+ * 
+ */
+public class ODocumentFieldMap extends AbstractMap<String, Object> {
+  private static final int     DEF_CAPACITY    = 4;
+  private static final int     INDEX_THRESHOLD = 16;
+
+  private final ODocument      owner;
+  private String[]             names;
+  private Object[]             values;
+  private int                  size;
+  private int                  modCount;
+  private Map<String, Integer> index;
+  private Set<Entry<String, Object>> entrySet;
+
+  public ODocumentFieldMap(final ODocument iOwner) {
+    this(iOwner, DEF_CAPACITY);
+  }
+
+  public ODocumentFieldMap(final ODocument iOwner, final int iCapacity) {
+    owner = iOwner;
+    names = new String[Math.max(iCapacity, 1)];
+    values = new Object[names.length];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(final Object iKey) {
+    return indexOf(iKey) > -1;
+  }
+
+  @Override
+  public Object get(final Object iKey) {
+    final int pos = indexOf(iKey);
+    return pos > -1 ? values[pos] : null;
+  }
+
+  @Override
+  public Object put(final String iKey, final Object iValue) {
+    final int pos = indexOf(iKey);
+    if (pos > -1) {
+      final Object old = values[pos];
+      values[pos] = iValue;
+      return old;
+    }
+
+    if (size == names.length) {
+      final int capacity = size + (size >> 1) + 1;
+      final String[] newNames = new String[capacity];
+      System.arraycopy(names, 0, newNames, 0, size);
+      names = newNames;
+      final Object[] newValues = new Object[capacity];
+      System.arraycopy(values, 0, newValues, 0, size);
+      values = newValues;
+    }
+
+    final String name = shareName(iKey);
+    names[size] = name;
+    values[size] = iValue;
+    if (index != null)
+      index.put(name, size);
+    size++;
+    modCount++;
+    return null;
+  }
+
+  @Override
+  public Object remove(final Object iKey) {
+    final int pos = indexOf(iKey);
+    if (pos < 0)
+      return null;
+
+    final Object old = values[pos];
+    removeAt(pos);
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < size; ++i) {
+      names[i] = null;
+      values[i] = null;
+    }
+    size = 0;
+    index = null;
+    modCount++;
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    if (entrySet == null)
+      entrySet = new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          return new OFieldIterator();
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+
+        @Override
+        public void clear() {
+          ODocumentFieldMap.this.clear();
+        }
+      };
+    return entrySet;
+  }
+
+  private int indexOf(final Object iKey) {
+    if (iKey == null)
+      return -1;
+
+    if (size > INDEX_THRESHOLD) {
+      if (index == null) {
+        index = new HashMap<String, Integer>(size * 2);
+        for (int i = 0; i < size; ++i)
+          index.put(names[i], i);
+      }
+      final Integer pos = index.get(iKey);
+      return pos != null ? pos : -1;
+    }
+
+    // SHARED NAMES ARE FOUND BY IDENTITY
+    for (int i = 0; i < size; ++i)
+      if (names[i] == iKey)
+        return i;
+    for (int i = 0; i < size; ++i)
+      if (names[i].equals(iKey))
+        return i;
+    return -1;
+  }
+
+  private void removeAt(final int iPosition) {
+    final int moved = size - iPosition - 1;
+    if (moved > 0) {
+      System.arraycopy(names, iPosition + 1, names, iPosition, moved);
+      System.arraycopy(values, iPosition + 1, values, iPosition, moved);
+    }
+    size--;
+    names[size] = null;
+    values[size] = null;
+    // POSITIONS ARE CHANGED: THE INDEX WILL BE REBUILT IF NEEDED
+    index = null;
+    modCount++;
+  }
+
+  private String shareName(final String iName) {
+    final OClass cls = owner != null ? owner.getLoadedSchemaClass() : null;
+    if (cls instanceof OClassImpl)
+      return ((OClassImpl) cls).getSharedFieldName(iName);
+    return iName;
+  }
+
+  private class OFieldIterator implements Iterator<Entry<String, Object>> {
+    private int next;
+    private int last = -1;
+    private int expectedModCount = modCount;
+
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    public Entry<String, Object> next() {
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      if (next >= size)
+        throw new NoSuchElementException();
+
+      last = next++;
+      return new OFieldEntry(last);
+    }
+
+    public void remove() {
+      if (last < 0)
+        throw new IllegalStateException();
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+
+      removeAt(last);
+      next = last;
+      last = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  private class OFieldEntry implements Entry<String, Object> {
+    private final int    position;
+    private final String name;
+
+    private OFieldEntry(final int iPosition) {
+      position = iPosition;
+      name = names[iPosition];
+    }
+
+    public String getKey() {
+      return name;
+    }
+
+    public Object getValue() {
+      // THE ENTRY IS VALID UNTIL THE MAP IS STRUCTURALLY MODIFIED
+      return position < size && names[position] == name ? values[position] : get(name);
+    }
+
+    public Object setValue(final Object iValue) {
+      if (position < size && names[position] == name) {
+        final Object old = values[position];
+        values[position] = iValue;
+        return old;
+      }
+      return put(name, iValue);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (!(o instanceof Entry))
+        return false;
+      final Entry<?, ?> e = (Entry<?, ?>) o;
+      final Object value = getValue();
+      return name.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      final Object value = getValue();
+      return name.hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return name + "=" + getValue();
+    }
+  }
+}
@@ -45,6 +45,9 @@ public class OStreamSerializerFactory {
 			else if (iName.equals(OStreamSerializerListRID.NAME))
 				return OStreamSerializerListRID.INSTANCE;
 
+			else if (iName.equals(OStreamSerializerBytes.NAME))
+				return OStreamSerializerBytes.INSTANCE;
+
 			else if(iName.equals(OCompositeKeySerializer.NAME))
 				return OCompositeKeySerializer.INSTANCE;
 
@@ -117,10 +117,24 @@ public class OCommandExecutorSQLCreateEdge extends OCommandExecutorSQLSetAware {
     List<ODocument> edges = new ArrayList<ODocument>();
     for (ORecordId from : fromIds) {
       for (ORecordId to : toIds) {
-        final ODocument edge = ((OGraphDatabase) database).createEdge(from, to, clazz.getName());
-        OSQLHelper.bindParameters(edge, fields, new OCommandParameters(iArgs), context);
-        if (content != null)
-          edge.merge(content, true, false);
+        final ODocument edge;
+        if (fields == null && content == null)
+          // WITHOUT PROPERTIES THE EDGE CAN BE LIGHTWEIGHT
+          edge = ((OGraphDatabase) database).createEdge(from, to, clazz.getName());
+        else {
+          // BIND THE PROPERTIES BEFORE THE CREATION TO ALWAYS HAVE AN EDGE DOCUMENT
+          final ODocument properties = new ODocument(clazz);
+          OSQLHelper.bindParameters(properties, fields, new OCommandParameters(iArgs), context);
+          if (content != null)
+            properties.merge(content, true, false);
+
+          final Map<String, Object> values = new LinkedHashMap<String, Object>();
+          for (String f : properties.fieldNames())
+            values.put(f, properties.field(f));
+
+          edge = ((OGraphDatabase) database).createEdge((ODocument) from.getRecord(), (ODocument) to.getRecord(),
+              clazz.getName(), values.isEmpty() ? null : new Object[] { values });
+        }
 
         if (clusterName != null)
           edge.save(clusterName);
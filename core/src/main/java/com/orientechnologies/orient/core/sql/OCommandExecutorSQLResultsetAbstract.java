@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import com.orientechnologies.orient.core.command.OCommandMonitor;
 import com.orientechnologies.orient.core.command.OCommandRequest;
 import com.orientechnologies.orient.core.command.OCommandRequestText;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
@@ -86,6 +87,7 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
   protected Iterable<OIdentifiable>                tempResult;
   protected int                                    resultCount;
   protected int                                    skip               = 0;
+  protected OCommandMonitor                        monitor;
 
   /**
    * Compile the filter conditions only the first time.
@@ -125,6 +127,7 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
    */
   protected boolean assignTarget(final Map<Object, Object> iArgs) {
     parameters = iArgs;
+    monitor = OCommandMonitor.get();
     if (parsedTarget == null)
       return true;
 
@@ -158,8 +161,12 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
   protected Object getResult() {
     if (tempResult != null) {
       for (OIdentifiable d : tempResult)
-        if (d != null)
+        if (d != null) {
+          if (monitor != null)
+            monitor.checkResult();
+
           request.getResultListener().result(d);
+        }
     }
 
     if (request instanceof OSQLSynchQuery)
@@ -170,6 +177,9 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
 
   protected boolean handleResult(final OIdentifiable iRecord) {
     if (iRecord != null) {
+      if (monitor != null)
+        monitor.checkResult();
+
       resultCount++;
 
       OIdentifiable recordCopy = iRecord instanceof ORecord<?> ? ((ORecord<?>) iRecord).copy() : iRecord.getIdentity().copy();
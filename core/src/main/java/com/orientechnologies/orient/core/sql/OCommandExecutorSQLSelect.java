@@ -35,6 +35,7 @@ import com.orientechnologies.common.concur.OTimeoutException;
 import com.orientechnologies.common.concur.resource.OSharedResource;
 import com.orientechnologies.common.util.OPair;
 import com.orientechnologies.orient.core.command.OBasicCommandContext;
+import com.orientechnologies.orient.core.command.OCommandMonitor;
 import com.orientechnologies.orient.core.command.OCommandRequest;
 import com.orientechnologies.orient.core.command.OCommandRequestInternal;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
@@ -92,6 +93,7 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
   public static final String          KEYWORD_ORDER        = "ORDER";
   public static final String          KEYWORD_BY           = "BY";
   public static final String          KEYWORD_GROUP        = "GROUP";
+  private static final int            TIMEOUT_CHECK_MASK   = 63;
 
   private Map<String, String>         projectionDefinition = null;
   private Map<String, Object>         projections          = null;    // THIS HAS BEEN KEPT FOR COMPATIBILITY; BUT IT'S
@@ -104,6 +106,8 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
   private int                         fetchLimit           = -1;
   private OIdentifiable               lastRecord;
   private Iterator<OIdentifiable>     subIterator;
+  private long                        executionBegun;
+  private int                         timeoutChecks;
 
   /**
    * Compile the filter conditions only the first time.
@@ -313,6 +317,11 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
       for (Entry<Object, Object> arg : iArgs.entrySet())
         context.setVariable(arg.getKey().toString(), arg.getValue());
 
+    final Long begun = (Long) context.getVariable(OCommandRequestInternal.EXECUTION_BEGUN);
+    executionBegun = begun != null ? begun.longValue() : 0;
+    // BOUND HERE TOO: THE OPTIMIZED EXECUTION DOESN'T ASSIGN THE TARGET
+    monitor = OCommandMonitor.get();
+
     if (!optimizeExecution()) {
       fetchLimit = getQueryFetchLimit();
 
@@ -382,19 +391,23 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     return true;
   }
 
+  /**
+   * Checks the monitor of the command, if any, and the timeout. The clock is consulted once every 64 records.
+   * 
+   * @return false if the execution must end returning the results collected so far, otherwise true
+   */
   protected boolean checkTimeout() {
-    if (timeoutMs > 0) {
-      final Long begun = (Long) context.getVariable(OCommandRequestInternal.EXECUTION_BEGUN);
-      if (begun != null) {
-        if (System.currentTimeMillis() - begun.longValue() > timeoutMs) {
-          // TIMEOUT!
-          switch (timeoutStrategy) {
-          case RETURN:
-            return false;
-          case EXCEPTION:
-            throw new OTimeoutException("Command execution timeout exceed (" + timeoutMs + "ms)");
-          }
-        }
+    if (monitor != null)
+      monitor.checkRecord();
+
+    if (timeoutMs > 0 && executionBegun > 0 && (timeoutChecks++ & TIMEOUT_CHECK_MASK) == 0
+        && System.currentTimeMillis() - executionBegun > timeoutMs) {
+      // TIMEOUT!
+      switch (timeoutStrategy) {
+      case RETURN:
+        return false;
+      case EXCEPTION:
+        throw new OTimeoutException("Command execution timeout exceed (" + timeoutMs + "ms)");
       }
     }
     return true;
@@ -403,6 +416,10 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
   protected boolean handleResult(final OIdentifiable iRecord) {
     lastRecord = null;
 
+    if (monitor != null)
+      // THE RESULTS ARE ACCOUNTED ONLY WHEN RETURNED, AFTER SKIP, PROJECTIONS, GROUPING AND ORDERING
+      monitor.checkCancelled();
+
     if (orderedFields == null && skip > 0) {
       skip--;
       return true;
@@ -464,6 +481,9 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
 
     if (orderedFields == null && flattenTarget == null) {
       // SEND THE RESULT INLINE
+      if (monitor != null)
+        monitor.checkResult();
+
       if (request.getResultListener() != null)
         request.getResultListener().result(iRecord);
 
@@ -820,6 +840,9 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
         context.updateMetric("indexReads", indexResultSet.size());
 
         for (OIdentifiable identifiable : indexResultSet) {
+          if (!checkTimeout())
+            break;
+
           ORecord<?> record = identifiable.getRecord();
           // Don't throw exceptions is record is null, as indexed queries may fail when using record level security
           if ((record != null) && filter((ORecordInternal<?>) record)) {
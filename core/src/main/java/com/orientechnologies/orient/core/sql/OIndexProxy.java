@@ -24,6 +24,9 @@ import com.orientechnologies.orient.core.index.OIndexInternal;
 import com.orientechnologies.orient.core.index.OIndexNotUnique;
 import com.orientechnologies.orient.core.index.OIndexOneValue;
 import com.orientechnologies.orient.core.index.OIndexUnique;
+import com.orientechnologies.orient.core.index.sbtree.local.OLocalSBTreeIndexOneValue;
+import com.orientechnologies.orient.core.index.sbtree.local.ONotUniqueSBTreeIndex;
+import com.orientechnologies.orient.core.index.sbtree.local.OUniqueSBTreeIndex;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.profiler.OJVMProfiler;
@@ -94,7 +97,7 @@ public class OIndexProxy<T> implements OIndex<T> {
     final Object result = lastIndex.get(iKey);
 
     final Collection<T> resultSet = applyTailIndexes(result, -1);
-    if (getInternal() instanceof OIndexOneValue && resultSet.size() == 1) {
+    if ((getInternal() instanceof OIndexOneValue || getInternal() instanceof OLocalSBTreeIndexOneValue) && resultSet.size() == 1) {
       return resultSet.iterator().next();
     } else {
       return (T) resultSet;
@@ -344,7 +347,8 @@ public class OIndexProxy<T> implements OIndex<T> {
     for (OIndex<?> index : involvedIndexes) {
       bestIndex = index;
       OIndexInternal<?> bestInternalIndex = index.getInternal();
-      if (bestInternalIndex instanceof OIndexUnique || bestInternalIndex instanceof OIndexNotUnique) {
+      if (bestInternalIndex instanceof OIndexUnique || bestInternalIndex instanceof OIndexNotUnique
+          || bestInternalIndex instanceof OUniqueSBTreeIndex || bestInternalIndex instanceof ONotUniqueSBTreeIndex) {
         return index;
       }
     }
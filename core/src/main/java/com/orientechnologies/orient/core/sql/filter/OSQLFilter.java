@@ -60,7 +60,7 @@ public class OSQLFilter extends OSQLPredicate implements OCommandPredicate {
 		if (rootCondition == null)
 			return true;
 
-		return rootCondition.evaluate(iRecord, iCurrentResult, iContext);
+		return getCompiledCondition(iRecord).evaluate(iRecord, iCurrentResult, iContext);
 	}
 
 	public OSQLFilterCondition getRootCondition() {
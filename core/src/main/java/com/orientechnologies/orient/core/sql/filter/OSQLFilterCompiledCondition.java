@@ -0,0 +1,423 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql.filter;
+
+import java.util.Date;
+
+import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.db.record.ORecordElement;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OSQLHelper;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperator;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorAnd;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorEquality;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorEquals;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMajor;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMajorEquals;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMinor;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMinorEquals;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorNot;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorNotEquals;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorOr;
+import com.orientechnologies.orient.core.sql.query.OSQLQuery;
+
+/**
+ * Compiled form of a {@link OSQLFilterCondition} tree. The compilation resolves once the types of the fields against the schema
+ * class, folds the constant conditions and short-circuits AND/OR. Comparisons between a field and a constant are executed on the
+ * primitive values without conversions. Everything that cannot be compiled, and every value whose run-time type doesn't match the
+ * expected one, is delegated to the interpreted {@link OSQLFilterCondition#evaluate(OIdentifiable, ODocument, OCommandContext)}, so
+ * the result is always the same.
+ *
+ * @author Luca Garulli
+ *
+ */
+public abstract class OSQLFilterCompiledCondition {
+  public abstract Object evaluate(OIdentifiable iRecord, ODocument iCurrentResult, OCommandContext iContext);
+
+  /**
+   * Compiles a condition.
+   *
+   * @param iCondition
+   *          Condition to compile
+   * @param iClass
+   *          Schema class of the records to evaluate, or null if unknown
+   */
+  public static OSQLFilterCompiledCondition compile(final OSQLFilterCondition iCondition, final OClass iClass) {
+    final Object left = iCondition.getLeft();
+    final Object right = iCondition.getRight();
+    final OQueryOperator operator = iCondition.getOperator();
+
+    if (left instanceof OSQLQuery<?> || right instanceof OSQLQuery<?>)
+      // SUB-QUERIES ARE EXECUTED BY THE CONDITION ITSELF
+      return new OInterpreted(iCondition);
+
+    if (operator == null) {
+      if (left instanceof OSQLFilterCondition)
+        return fold(new OUnary(compile((OSQLFilterCondition) left, iClass)));
+      return new OInterpreted(iCondition);
+    }
+
+    if (operator instanceof OQueryOperatorAnd || operator instanceof OQueryOperatorOr) {
+      final OSQLFilterCompiledCondition l = compileOperand(left, iClass);
+      final OSQLFilterCompiledCondition r = compileOperand(right, iClass);
+      if (l == null || r == null)
+        return new OInterpreted(iCondition);
+
+      return fold(operator instanceof OQueryOperatorAnd ? new OAnd(l, r) : new OOr(l, r));
+    }
+
+    if (operator instanceof OQueryOperatorNot) {
+      final OSQLFilterCompiledCondition l = compileOperand(left, iClass);
+      if (l == null || right != null || ((OQueryOperatorNot) operator).getNext() != null)
+        return new OInterpreted(iCondition);
+
+      return fold(new ONot(l));
+    }
+
+    if (operator instanceof OQueryOperatorEquality && isConstant(left) && isConstant(right))
+      // CONSTANT EXPRESSION: EVALUATE IT ONCE
+      try {
+        return new OConstant(iCondition.evaluate(null, null, null));
+      } catch (RuntimeException e) {
+        return new OInterpreted(iCondition);
+      }
+
+    final int comparison = getComparison(operator);
+    if (comparison > -1 && left instanceof OSQLFilterItemField && !((OSQLFilterItemField) left).hasChainOperators()
+        && (isConstant(right) || right instanceof OSQLFilterItemParameter)) {
+      OType type = null;
+      if (iClass != null) {
+        final OProperty prop = iClass.getProperty(((OSQLFilterItemField) left).getRoot());
+        if (prop != null)
+          type = prop.getType();
+      }
+      return new OFieldComparison(iCondition, (OSQLFilterItemField) left, comparison, right, type);
+    }
+
+    return new OInterpreted(iCondition);
+  }
+
+  protected static OSQLFilterCompiledCondition compileOperand(final Object iOperand, final OClass iClass) {
+    if (iOperand instanceof OSQLFilterCondition)
+      return compile((OSQLFilterCondition) iOperand, iClass);
+    if (isConstant(iOperand))
+      return new OConstant(iOperand);
+    return null;
+  }
+
+  protected static OSQLFilterCompiledCondition fold(final OSQLFilterCompiledCondition iCondition) {
+    if (iCondition.isConstant())
+      return new OConstant(iCondition.evaluate(null, null, null));
+    return iCondition;
+  }
+
+  protected static boolean isConstant(final Object iValue) {
+    if (iValue instanceof String)
+      return !iValue.equals(OSQLHelper.DEFINED) && !iValue.equals(OSQLHelper.NOT_NULL);
+    return iValue == null || iValue instanceof Number || iValue instanceof Boolean || iValue instanceof Date;
+  }
+
+  protected static int getComparison(final OQueryOperator iOperator) {
+    // CHECK THE EXACT CLASS: SUB-CLASSES COULD CHANGE THE BEHAVIOR
+    final Class<?> cls = iOperator.getClass();
+    if (cls == OQueryOperatorEquals.class)
+      return OFieldComparison.EQ;
+    if (cls == OQueryOperatorNotEquals.class)
+      return OFieldComparison.NE;
+    if (cls == OQueryOperatorMajor.class)
+      return OFieldComparison.GT;
+    if (cls == OQueryOperatorMajorEquals.class)
+      return OFieldComparison.GE;
+    if (cls == OQueryOperatorMinor.class)
+      return OFieldComparison.LT;
+    if (cls == OQueryOperatorMinorEquals.class)
+      return OFieldComparison.LE;
+    return -1;
+  }
+
+  protected static Boolean toBoolean(final Object iValue) {
+    // THE INTERPRETED OPERATORS RETURN FALSE ON NULL AND ON NON BOOLEAN VALUES
+    return iValue instanceof Boolean && (Boolean) iValue ? Boolean.TRUE : Boolean.FALSE;
+  }
+
+  protected boolean isConstant() {
+    return false;
+  }
+
+  /**
+   * Constant value, result of folding.
+   */
+  protected static class OConstant extends OSQLFilterCompiledCondition {
+    protected final Object value;
+
+    protected OConstant(final Object iValue) {
+      value = iValue;
+    }
+
+    @Override
+    public Object evaluate(final OIdentifiable iRecord, final ODocument iCurrentResult, final OCommandContext iContext) {
+      return value;
+    }
+
+    @Override
+    protected boolean isConstant() {
+      return true;
+    }
+  }
+
+  /**
+   * Condition evaluated by the interpreter.
+   */
+  protected static class OInterpreted extends OSQLFilterCompiledCondition {
+    protected final OSQLFilterCondition condition;
+
+    protected OInterpreted(final OSQLFilterCondition iCondition) {
+      condition = iCondition;
+    }
+
+    @Override
+    public Object evaluate(final OIdentifiable iRecord, final ODocument iCurrentResult, final OCommandContext iContext) {
+      return condition.evaluate(iRecord, iCurrentResult, iContext);
+    }
+  }
+
+  /**
+   * Condition between parenthesis.
+   */
+  protected static class OUnary extends OSQLFilterCompiledCondition {
+    protected final OSQLFilterCompiledCondition inner;
+
+    protected OUnary(final OSQLFilterCompiledCondition iInner) {
+      inner = iInner;
+    }
+
+    @Override
+    public Object evaluate(final OIdentifiable iRecord, final ODocument iCurrentResult, final OCommandContext iContext) {
+      final Object result = inner.evaluate(iRecord, iCurrentResult, iContext);
+      return result != null ? result : Boolean.FALSE;
+    }
+
+    @Override
+    protected boolean isConstant() {
+      return inner.isConstant();
+    }
+  }
+
+  protected static class OAnd extends OSQLFilterCompiledCondition {
+    protected final OSQLFilterCompiledCondition left;
+    protected final OSQLFilterCompiledCondition right;
+
+    protected OAnd(final OSQLFilterCompiledCondition iLeft, final OSQLFilterCompiledCondition iRight) {
+      left = iLeft;
+      right = iRight;
+    }
+
+    @Override
+    public Object evaluate(final OIdentifiable iRecord, final ODocument iCurrentResult, final OCommandContext iContext) {
+      if (toBoolean(left.evaluate(iRecord, iCurrentResult, iContext)) == Boolean.FALSE)
+        return Boolean.FALSE;
+      return toBoolean(right.evaluate(iRecord, iCurrentResult, iContext));
+    }
+
+    @Override
+    protected boolean isConstant() {
+      return left.isConstant() && right.isConstant();
+    }
+  }
+
+  protected static class OOr extends OSQLFilterCompiledCondition {
+    protected final OSQLFilterCompiledCondition left;
+    protected final OSQLFilterCompiledCondition right;
+
+    protected OOr(final OSQLFilterCompiledCondition iLeft, final OSQLFilterCompiledCondition iRight) {
+      left = iLeft;
+      right = iRight;
+    }
+
+    @Override
+    public Object evaluate(final OIdentifiable iRecord, final ODocument iCurrentResult, final OCommandContext iContext) {
+      final Object l = left.evaluate(iRecord, iCurrentResult, iContext);
+      if (!(l instanceof Boolean))
+        return Boolean.FALSE;
+      if ((Boolean) l)
+        return Boolean.TRUE;
+      return toBoolean(right.evaluate(iRecord, iCurrentResult, iContext));
+    }
+
+    @Override
+    protected boolean isConstant() {
+      return left.isConstant() && right.isConstant();
+    }
+  }
+
+  protected static class ONot extends OSQLFilterCompiledCondition {
+    protected final OSQLFilterCompiledCondition inner;
+
+    protected ONot(final OSQLFilterCompiledCondition iInner) {
+      inner = iInner;
+    }
+
+    @Override
+    public Object evaluate(final OIdentifiable iRecord, final ODocument iCurrentResult, final OCommandContext iContext) {
+      final Object result = inner.evaluate(iRecord, iCurrentResult, iContext);
+      if (!(result instanceof Boolean))
+        return Boolean.FALSE;
+      return (Boolean) result ? Boolean.FALSE : Boolean.TRUE;
+    }
+
+    @Override
+    protected boolean isConstant() {
+      return inner.isConstant();
+    }
+  }
+
+  /**
+   * Comparison between a field and a constant or a parameter. The type of the field is taken from the schema when available,
+   * otherwise from the value.
+   */
+  protected static class OFieldComparison extends OSQLFilterCompiledCondition {
+    protected static final int          EQ = 0;
+    protected static final int          NE = 1;
+    protected static final int          GT = 2;
+    protected static final int          GE = 3;
+    protected static final int          LT = 4;
+    protected static final int          LE = 5;
+
+    protected final OSQLFilterCondition condition;
+    protected final OSQLFilterItemField field;
+    protected final int                 comparison;
+    protected final Object              right;
+    protected final OType               type;
+
+    protected OFieldComparison(final OSQLFilterCondition iCondition, final OSQLFilterItemField iField, final int iComparison,
+        final Object iRight, final OType iType) {
+      condition = iCondition;
+      field = iField;
+      comparison = iComparison;
+      right = iRight;
+      type = iType;
+    }
+
+    @Override
+    public Object evaluate(final OIdentifiable iRecord, final ODocument iCurrentResult, final OCommandContext iContext) {
+      if (iRecord == null || iCurrentResult != null)
+        return condition.evaluate(iRecord, iCurrentResult, iContext);
+
+      final ORecord<?> record = iRecord.getRecord();
+      if (!(record instanceof ODocument) || record.getInternalStatus() == ORecordElement.STATUS.NOT_LOADED)
+        return condition.evaluate(iRecord, iCurrentResult, iContext);
+
+      final Object l = field.getValue(record, iContext);
+      final Object r = right instanceof OSQLFilterItemParameter ? ((OSQLFilterItemParameter) right).getValue(null, iContext)
+          : right;
+
+      if (l == null || r == null)
+        // ALL THE COMPARISON OPERATORS RETURN FALSE WITH NULLS
+        return Boolean.FALSE;
+
+      final OType t = type != null ? type : getType(l);
+      if (t != null)
+        switch (t) {
+        case INTEGER:
+          if (l instanceof Integer && r instanceof Integer) {
+            final int lv = (Integer) l;
+            final int rv = (Integer) r;
+            return result(lv < rv ? -1 : (lv == rv ? 0 : 1));
+          }
+          break;
+
+        case LONG:
+          if (l instanceof Long && (r instanceof Long || r instanceof Integer)) {
+            final long lv = (Long) l;
+            final long rv = ((Number) r).longValue();
+            return result(lv < rv ? -1 : (lv == rv ? 0 : 1));
+          }
+          break;
+
+        case DOUBLE:
+          if (l instanceof Double && (r instanceof Double || r instanceof Integer || r instanceof Long))
+            return result(Double.compare((Double) l, ((Number) r).doubleValue()));
+          break;
+
+        case FLOAT:
+          if (l instanceof Float && (r instanceof Float || r instanceof Integer))
+            return result(Float.compare((Float) l, ((Number) r).floatValue()));
+          break;
+
+        case STRING:
+          // THE INTERPRETER HANDLES THE SPECIAL VALUES "DEFINED" AND "NOT NULL"
+          if (l instanceof String && r instanceof String && isConstant(l) && isConstant(r)) {
+            if (comparison == EQ)
+              return l.equals(r) ? Boolean.TRUE : Boolean.FALSE;
+            if (comparison == NE)
+              return l.equals(r) ? Boolean.FALSE : Boolean.TRUE;
+            return result(((String) l).compareTo((String) r));
+          }
+          break;
+
+        default:
+          break;
+        }
+
+      // TYPES DON'T MATCH: USE THE INTERPRETER THAT CONVERTS THE VALUES
+      return condition.evaluate(iRecord, iCurrentResult, iContext);
+    }
+
+    protected Boolean result(final int iCompare) {
+      final boolean result;
+      switch (comparison) {
+      case EQ:
+        result = iCompare == 0;
+        break;
+      case NE:
+        result = iCompare != 0;
+        break;
+      case GT:
+        result = iCompare > 0;
+        break;
+      case GE:
+        result = iCompare >= 0;
+        break;
+      case LT:
+        result = iCompare < 0;
+        break;
+      default:
+        result = iCompare <= 0;
+        break;
+      }
+      return result ? Boolean.TRUE : Boolean.FALSE;
+    }
+
+    protected static OType getType(final Object iValue) {
+      if (iValue instanceof Integer)
+        return OType.INTEGER;
+      if (iValue instanceof String)
+        return OType.STRING;
+      if (iValue instanceof Long)
+        return OType.LONG;
+      if (iValue instanceof Double)
+        return OType.DOUBLE;
+      if (iValue instanceof Float)
+        return OType.FLOAT;
+      return null;
+    }
+  }
+}
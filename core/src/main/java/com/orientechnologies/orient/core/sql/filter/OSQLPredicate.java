@@ -22,11 +22,13 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.orientechnologies.common.parser.OBaseParser;
 import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.command.OCommandPredicate;
 import com.orientechnologies.orient.core.exception.OQueryParsingException;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OProperty;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.ORecordSchemaAware;
@@ -54,6 +56,22 @@ public class OSQLPredicate extends OBaseParser implements OCommandPredicate {
   protected int                           braces;
   protected OCommandContext               context;
 
+  private final Map<String, OSQLFilterCompiledCondition> compiledConditions = new ConcurrentHashMap<String, OSQLFilterCompiledCondition>();
+  private volatile OCompiledEntry                        lastCompiled;
+
+  /**
+   * Last compiled condition with its class, to avoid the lookup in the cache while scanning records of the same class.
+   */
+  private static class OCompiledEntry {
+    private final OClass                      schemaClass;
+    private final OSQLFilterCompiledCondition condition;
+
+    private OCompiledEntry(final OClass iClass, final OSQLFilterCompiledCondition iCondition) {
+      schemaClass = iClass;
+      condition = iCondition;
+    }
+  }
+
   public OSQLPredicate() {
   }
 
@@ -80,6 +98,7 @@ public class OSQLPredicate extends OBaseParser implements OCommandPredicate {
       parserSkipWhiteSpaces();
 
       rootCondition = (OSQLFilterCondition) extractConditions(null);
+      resetCompiledConditions();
 
       optimize();
     } catch (OQueryParsingException e) {
@@ -106,7 +125,33 @@ public class OSQLPredicate extends OBaseParser implements OCommandPredicate {
     if (rootCondition == null)
       return true;
 
-    return rootCondition.evaluate((ORecordSchemaAware<?>) iRecord, iCurrentResult, iContext);
+    return getCompiledCondition(iRecord).evaluate((ORecordSchemaAware<?>) iRecord, iCurrentResult, iContext);
+  }
+
+  /**
+   * Returns the root condition compiled against the schema class of the record. The compiled conditions are cached per class.
+   */
+  protected OSQLFilterCompiledCondition getCompiledCondition(final ORecord<?> iRecord) {
+    final OClass cls = iRecord instanceof ODocument ? ((ODocument) iRecord).getSchemaClass() : null;
+
+    final OCompiledEntry last = lastCompiled;
+    if (last != null && last.schemaClass == cls)
+      return last.condition;
+
+    final String key = cls != null ? cls.getName() : "";
+    OSQLFilterCompiledCondition compiled = compiledConditions.get(key);
+    if (compiled == null) {
+      compiled = OSQLFilterCompiledCondition.compile(rootCondition, cls);
+      compiledConditions.put(key, compiled);
+    }
+
+    lastCompiled = new OCompiledEntry(cls, compiled);
+    return compiled;
+  }
+
+  protected void resetCompiledConditions() {
+    lastCompiled = null;
+    compiledConditions.clear();
   }
 
   private Object extractConditions(final OSQLFilterCondition iParentCondition) {
@@ -389,6 +434,7 @@ public class OSQLPredicate extends OBaseParser implements OCommandPredicate {
 
   public void setRootCondition(final OSQLFilterCondition iCondition) {
     rootCondition = iCondition;
+    resetCompiledConditions();
   }
 
   protected void optimize() {
@@ -31,6 +31,7 @@ import com.orientechnologies.orient.core.sql.functions.coll.OSQLFunctionMap;
 import com.orientechnologies.orient.core.sql.functions.coll.OSQLFunctionSet;
 import com.orientechnologies.orient.core.sql.functions.coll.OSQLFunctionUnion;
 import com.orientechnologies.orient.core.sql.functions.geo.OSQLFunctionDistance;
+import com.orientechnologies.orient.core.sql.functions.graph.OSQLFunctionAstar;
 import com.orientechnologies.orient.core.sql.functions.graph.OSQLFunctionDijkstra;
 import com.orientechnologies.orient.core.sql.functions.graph.OSQLFunctionShortestPath;
 import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionAverage;
@@ -46,6 +47,7 @@ import com.orientechnologies.orient.core.sql.functions.misc.OSQLFunctionEncode;
 import com.orientechnologies.orient.core.sql.functions.misc.OSQLFunctionFormat;
 import com.orientechnologies.orient.core.sql.functions.misc.OSQLFunctionIf;
 import com.orientechnologies.orient.core.sql.functions.misc.OSQLFunctionIfNull;
+import com.orientechnologies.orient.core.sql.functions.misc.OSQLFunctionSearchText;
 import com.orientechnologies.orient.core.sql.functions.misc.OSQLFunctionSysdate;
 
 /**
@@ -76,6 +78,7 @@ public final class ODefaultSQLFunctionFactory implements OSQLFunctionFactory {
     FUNCTIONS.put(OSQLFunctionMap.NAME.toUpperCase(Locale.ENGLISH), OSQLFunctionMap.class);
     FUNCTIONS.put(OSQLFunctionEncode.NAME.toUpperCase(Locale.ENGLISH), new OSQLFunctionEncode());
     FUNCTIONS.put(OSQLFunctionDecode.NAME.toUpperCase(Locale.ENGLISH), new OSQLFunctionDecode());
+    FUNCTIONS.put(OSQLFunctionSearchText.NAME.toUpperCase(Locale.ENGLISH), OSQLFunctionSearchText.class);
 
     // MATH FUNCTIONS
     FUNCTIONS.put(OSQLFunctionMin.NAME.toUpperCase(Locale.ENGLISH), OSQLFunctionMin.class);
@@ -88,8 +91,9 @@ public final class ODefaultSQLFunctionFactory implements OSQLFunctionFactory {
     FUNCTIONS.put(OSQLFunctionDistance.NAME.toUpperCase(Locale.ENGLISH), new OSQLFunctionDistance());
 
     // GRAPH FUNCTIONS
-    FUNCTIONS.put(OSQLFunctionDijkstra.NAME.toUpperCase(Locale.ENGLISH), new OSQLFunctionDijkstra());
-    FUNCTIONS.put(OSQLFunctionShortestPath.NAME.toUpperCase(Locale.ENGLISH), new OSQLFunctionShortestPath());
+    FUNCTIONS.put(OSQLFunctionDijkstra.NAME.toUpperCase(Locale.ENGLISH), OSQLFunctionDijkstra.class);
+    FUNCTIONS.put(OSQLFunctionAstar.NAME.toUpperCase(Locale.ENGLISH), OSQLFunctionAstar.class);
+    FUNCTIONS.put(OSQLFunctionShortestPath.NAME.toUpperCase(Locale.ENGLISH), OSQLFunctionShortestPath.class);
   }
 
   public Set<String> getFunctionNames() {
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql.functions.graph;
+
+import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.function.OFunction;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * A* search: like Dijkstra but the vertices are explored in order of the cost so far plus the estimated cost to the destination.
+ * The estimate is computed by a stored function that receives the current vertex and the destination vertex and returns a number.
+ * 
+ * @author Luca Garulli (l.garulli--at--orientechnologies.com)
+ * 
+ */
+public class OSQLFunctionAstar extends OSQLFunctionDijkstra {
+  public static final String NAME = "astar";
+
+  protected OFunction        paramHeuristic;
+  protected OCommandContext  context;
+
+  public OSQLFunctionAstar() {
+    super(NAME, 4, 5);
+  }
+
+  @Override
+  public Object execute(OIdentifiable iCurrentRecord, ODocument iCurrentResult, final Object[] iParameters, OCommandContext iContext) {
+    final ORecordInternal<?> record = (ORecordInternal<?>) (iCurrentRecord != null ? iCurrentRecord.getRecord() : null);
+
+    final String functionName = getNameParameter(iParameters[3], record, iContext);
+    paramHeuristic = getFunction(functionName);
+    context = iContext;
+
+    // THE DIRECTION IS THE 5TH PARAMETER: MOVE IT WHERE DIJKSTRA EXPECTS IT
+    final Object[] params = new Object[iParameters.length > 4 ? 4 : 3];
+    System.arraycopy(iParameters, 0, params, 0, 3);
+    if (iParameters.length > 4)
+      params[3] = iParameters[4];
+
+    return super.execute(iCurrentRecord, iCurrentResult, params, iContext);
+  }
+
+  @Override
+  public String getSyntax() {
+    return "Syntax error: astar(<sourceVertex>, <destinationVertex>, <weightEdgeFieldName>, <heuristicFunction>, [<direction>])";
+  }
+
+  @Override
+  protected float getHeuristic(final ORID iVertex, final ORID iDestination) {
+    final Object result = paramHeuristic.executeInContext(context, iVertex.getRecord(), iDestination.getRecord());
+
+    if (result instanceof Number)
+      return ((Number) result).floatValue();
+
+    throw new OCommandExecutionException("Heuristic function '" + paramHeuristic.getName() + "' of " + NAME
+        + "() must return a number, but returned: " + result);
+  }
+
+  protected OFunction getFunction(final String iName) {
+    final OFunction f = ODatabaseRecordThreadLocal.INSTANCE.get().getMetadata().getFunctionLibrary().getFunction(iName);
+    if (f == null)
+      throw new OCommandExecutionException("Heuristic function '" + iName + "' of " + NAME + "() was not found");
+    return f;
+  }
+}
@@ -15,8 +15,6 @@
  */
 package com.orientechnologies.orient.core.sql.functions.graph;
 
-import java.util.Set;
-
 import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.graph.OGraphDatabase;
@@ -29,19 +27,23 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.OSQLHelper;
 
 /**
- * Dijkstra's algorithm describes how to find the cheapest path from one node to another node in a directed weighted graph.
+ * Dijkstra's algorithm describes how to find the cheapest path from one node to another node in a directed weighted graph. The
+ * weight is read from the traversed edge; edges without the weight field cost 0.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
-public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder<Float> {
+public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder {
   public static final String NAME = "dijkstra";
-  private static final Float MIN  = new Float(0f);
 
-  private String             paramWeightFieldName;
+  protected String           paramWeightFieldName;
 
   public OSQLFunctionDijkstra() {
-    super(NAME, 3, 4);
+    this(NAME, 3, 4);
+  }
+
+  protected OSQLFunctionDijkstra(final String iName, final int iMinParams, final int iMaxParams) {
+    super(iName, iMinParams, iMaxParams);
   }
 
   public Object execute(OIdentifiable iCurrentRecord, ODocument iCurrentResult, final Object[] iParameters, OCommandContext iContext) {
@@ -53,7 +55,7 @@ public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder<Float> {
 
     paramSourceVertex = (OIdentifiable) OSQLHelper.getValue(iParameters[0], record, iContext);
     paramDestinationVertex = (OIdentifiable) OSQLHelper.getValue(iParameters[1], record, iContext);
-    paramWeightFieldName = (String) OSQLHelper.getValue(iParameters[2], record, iContext);
+    paramWeightFieldName = getNameParameter(iParameters[2], record, iContext);
     if (iParameters.length > 3)
       paramDirection = DIRECTION.valueOf(iParameters[3].toString().toUpperCase());
 
@@ -65,37 +67,19 @@ public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder<Float> {
   }
 
   @Override
-  protected Float getShortestDistance(final OIdentifiable destination) {
-    if (destination == null)
-      return Float.MAX_VALUE;
-
-    final Float d = distance.get(destination);
-    return d == null ? Float.MAX_VALUE : d;
+  protected boolean isWeighted() {
+    return true;
   }
 
   @Override
-  protected Float getMinimumDistance() {
-    return MIN;
-  }
-
-  protected Float getDistance(final OIdentifiable node, final OIdentifiable target) {
-    final Set<OIdentifiable> edges = db.getEdgesBetweenVertexes(node, target);
-    if (!edges.isEmpty()) {
-      final ODocument e = edges.iterator().next().getRecord();
-      if (e != null) {
-        final Object fieldValue = e.field(paramWeightFieldName);
-        if (fieldValue != null)
-          if (fieldValue instanceof Float)
-            return (Float) fieldValue;
-          else if (fieldValue instanceof Number)
-            return ((Number) fieldValue).floatValue();
-      }
-    }
-    return MIN;
-  }
+  protected float getWeight(final ODocument iEdge) {
+    if (iEdge == null)
+      // LIGHTWEIGHT EDGE
+      return 0f;
 
-  @Override
-  protected Float sumDistances(final Float iDistance1, final Float iDistance2) {
-    return iDistance1.floatValue() + iDistance2.floatValue();
+    final Object fieldValue = iEdge.field(paramWeightFieldName);
+    if (fieldValue instanceof Number)
+      return ((Number) fieldValue).floatValue();
+    return 0f;
   }
 }
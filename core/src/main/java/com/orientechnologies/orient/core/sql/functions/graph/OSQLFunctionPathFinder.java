@@ -16,85 +16,174 @@
 package com.orientechnologies.orient.core.sql.functions.graph;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
+import com.orientechnologies.common.io.OIOUtils;
 import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.graph.OGraphDatabase;
 import com.orientechnologies.orient.core.db.graph.OGraphDatabase.DIRECTION;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.db.record.ORecordLazyMultiValue;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OSQLHelper;
 import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionMathAbstract;
+import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
 
 /**
- * Abstract class to find paths between nodes.
- * 
+ * Abstract class to find paths between nodes. Weighted paths are found with Dijkstra, or A* when an heuristic is provided, using a
+ * binary heap with decrease-key. Unweighted paths are found with a bidirectional breadth-first search. The adjacent vertices are
+ * read by RID from the edge sets of the vertex: the edge documents are loaded only to read the other vertex and the weight,
+ * while the adjacent vertices are never loaded until they are expanded.
+ *
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
- * 
+ *
  */
-public abstract class OSQLFunctionPathFinder<T extends Comparable<T>> extends OSQLFunctionMathAbstract {
-  protected OGraphDatabase                    db;
-  protected Set<OIdentifiable>                settledNodes;
-  protected Set<OIdentifiable>                unSettledNodes;
-  protected Map<OIdentifiable, OIdentifiable> predecessors;
-  protected Map<OIdentifiable, T>             distance;
+public abstract class OSQLFunctionPathFinder extends OSQLFunctionMathAbstract {
+  protected OGraphDatabase            db;
+  protected OIdentifiable             paramSourceVertex;
+  protected OIdentifiable             paramDestinationVertex;
+  protected OGraphDatabase.DIRECTION  paramDirection  = DIRECTION.OUT;
+  protected int                       paramMaxDepth   = OGlobalConfiguration.SQL_GRAPH_PATH_MAX_DEPTH.getValueAsInteger();
+  protected int                       maxVisited      = OGlobalConfiguration.SQL_GRAPH_PATH_MAX_VISITED.getValueAsInteger();
+  protected LinkedList<OIdentifiable> path;
 
-  protected OIdentifiable                     paramSourceVertex;
-  protected OIdentifiable                     paramDestinationVertex;
-  protected OGraphDatabase.DIRECTION          paramDirection = DIRECTION.OUT;
+  /**
+   * Vertex reached by the weighted search.
+   */
+  protected static class OPathNode {
+    protected final ORID rid;
+    protected float      cost;
+    protected float      estimate;
+    protected int        depth;
+    protected OPathNode  predecessor;
+    protected int        heapIndex = -1;
+    protected boolean    settled;
 
-  public OSQLFunctionPathFinder(final String iName, final int iMinParams, final int iMaxParams) {
-    super(iName, iMinParams, iMaxParams);
+    protected OPathNode(final ORID iRid) {
+      rid = iRid;
+    }
   }
 
-  protected abstract T getDistance(OIdentifiable node, OIdentifiable target);
+  /**
+   * Binary min-heap of nodes ordered by estimated cost that supports decrease-key.
+   */
+  protected static class OPathHeap {
+    private OPathNode[] nodes = new OPathNode[64];
+    private int         size;
 
-  protected abstract T getShortestDistance(OIdentifiable destination);
+    public boolean isEmpty() {
+      return size == 0;
+    }
 
-  protected abstract T getMinimumDistance();
+    public void add(final OPathNode iNode) {
+      if (size == nodes.length) {
+        final OPathNode[] newNodes = new OPathNode[nodes.length * 2];
+        System.arraycopy(nodes, 0, newNodes, 0, size);
+        nodes = newNodes;
+      }
+      iNode.heapIndex = size;
+      nodes[size++] = iNode;
+      siftUp(iNode.heapIndex);
+    }
 
-  protected abstract T sumDistances(T iDistance1, T iDistance2);
+    public OPathNode poll() {
+      if (size == 0)
+        return null;
 
-  public Object execute(final Object[] iParameters, final OCommandContext iContext) {
-    settledNodes = new HashSet<OIdentifiable>();
-    unSettledNodes = new HashSet<OIdentifiable>();
-    distance = new HashMap<OIdentifiable, T>();
-    predecessors = new HashMap<OIdentifiable, OIdentifiable>();
-    distance.put(paramSourceVertex, getMinimumDistance());
-    unSettledNodes.add(paramSourceVertex);
-
-    while (continueTraversing()) {
-      final OIdentifiable node = getMinimum(unSettledNodes);
-      settledNodes.add(node);
-      unSettledNodes.remove(node);
-      findMinimalDistances(node);
+      final OPathNode first = nodes[0];
+      first.heapIndex = -1;
+
+      final OPathNode last = nodes[--size];
+      nodes[size] = null;
+      if (size > 0) {
+        nodes[0] = last;
+        last.heapIndex = 0;
+        siftDown(0);
+      }
+      return first;
+    }
+
+    /**
+     * Moves the node up after its estimate has been decreased.
+     */
+    public void decreaseKey(final OPathNode iNode) {
+      siftUp(iNode.heapIndex);
+    }
+
+    private void siftUp(int i) {
+      final OPathNode node = nodes[i];
+      while (i > 0) {
+        final int parent = (i - 1) >>> 1;
+        if (nodes[parent].estimate <= node.estimate)
+          break;
+        nodes[i] = nodes[parent];
+        nodes[i].heapIndex = i;
+        i = parent;
+      }
+      nodes[i] = node;
+      node.heapIndex = i;
     }
 
-    return getPath(paramDestinationVertex);
+    private void siftDown(int i) {
+      final OPathNode node = nodes[i];
+      final int half = size >>> 1;
+      while (i < half) {
+        int child = (i << 1) + 1;
+        if (child + 1 < size && nodes[child + 1].estimate < nodes[child].estimate)
+          child++;
+        if (node.estimate <= nodes[child].estimate)
+          break;
+        nodes[i] = nodes[child];
+        nodes[i].heapIndex = i;
+        i = child;
+      }
+      nodes[i] = node;
+      node.heapIndex = i;
+    }
   }
 
-  /*
-   * This method returns the path from the source to the selected target and NULL if no path exists
+  public OSQLFunctionPathFinder(final String iName, final int iMinParams, final int iMaxParams) {
+    super(iName, iMinParams, iMaxParams);
+  }
+
+  /**
+   * Returns the weight of an edge, or 1 if the search is not weighted. The edge is null for lightweight edges.
+   */
+  protected abstract float getWeight(ODocument iEdge);
+
+  /**
+   * Returns true if the edges have different weights. Unweighted searches use the bidirectional breadth-first search.
    */
-  public LinkedList<OIdentifiable> getPath(final OIdentifiable target) {
-    final LinkedList<OIdentifiable> path = new LinkedList<OIdentifiable>();
-    OIdentifiable step = target;
-    // Check if a path exists
-    if (predecessors.get(step) == null) {
+  protected abstract boolean isWeighted();
+
+  /**
+   * Returns the estimated cost to reach the destination from a vertex. The default implementation returns 0, that turns A* into
+   * Dijkstra. To find the shortest path the estimate must never be greater than the real cost.
+   */
+  protected float getHeuristic(final ORID iVertex, final ORID iDestination) {
+    return 0;
+  }
+
+  public Object execute(final Object[] iParameters, final OCommandContext iContext) {
+    if (paramSourceVertex == null || paramDestinationVertex == null)
       return null;
-    }
-    path.add(step);
-    while (predecessors.get(step) != null) {
-      step = predecessors.get(step);
-      path.add(step);
-    }
-    // Put it into the correct order
-    Collections.reverse(path);
+
+    final ORID source = paramSourceVertex.getIdentity();
+    final ORID destination = paramDestinationVertex.getIdentity();
+    if (source.equals(destination))
+      // NO PATH TO ITSELF
+      return null;
+
+    path = isWeighted() ? findWeightedPath(source, destination) : findUnweightedPath(source, destination);
     return path;
   }
 
@@ -104,57 +193,230 @@ public abstract class OSQLFunctionPathFinder<T extends Comparable<T>> extends OS
 
   @Override
   public Object getResult() {
-    return settledNodes;
+    return path;
   }
 
-  protected void findMinimalDistances(final OIdentifiable node) {
-    final List<OIdentifiable> adjacentNodes = getNeighbors(node);
-    for (OIdentifiable target : adjacentNodes) {
-      final T d = sumDistances(getShortestDistance(node), getDistance(node, target));
+  /**
+   * Dijkstra/A* search.
+   */
+  protected LinkedList<OIdentifiable> findWeightedPath(final ORID iSource, final ORID iDestination) {
+    final Map<ORID, OPathNode> nodes = new HashMap<ORID, OPathNode>();
+    final OPathHeap heap = new OPathHeap();
+
+    final OPathNode start = new OPathNode(iSource);
+    start.estimate = getHeuristic(iSource, iDestination);
+    nodes.put(iSource, start);
+    heap.add(start);
+
+    final List<ORID> vertices = new ArrayList<ORID>();
+    final List<ODocument> edges = new ArrayList<ODocument>();
+
+    while (!heap.isEmpty()) {
+      final OPathNode node = heap.poll();
+      node.settled = true;
 
-      if (getShortestDistance(target).compareTo(d) > 0) {
-        distance.put(target, d);
-        predecessors.put(target, node);
-        unSettledNodes.add(target);
+      if (node.rid.equals(iDestination)) {
+        final LinkedList<OIdentifiable> result = new LinkedList<OIdentifiable>();
+        for (OPathNode step = node; step != null; step = step.predecessor)
+          result.addFirst(step.rid);
+        return result;
+      }
+
+      if (paramMaxDepth > 0 && node.depth >= paramMaxDepth)
+        continue;
+
+      getNeighbors(node.rid, paramDirection, vertices, edges);
+
+      for (int i = 0; i < vertices.size(); ++i) {
+        final ORID rid = vertices.get(i);
+
+        OPathNode neighbor = nodes.get(rid);
+        if (neighbor != null && neighbor.settled)
+          continue;
+
+        final float cost = node.cost + getWeight(edges.get(i));
+
+        if (neighbor == null) {
+          neighbor = new OPathNode(rid);
+          neighbor.cost = cost;
+          neighbor.estimate = cost + getHeuristic(rid, iDestination);
+          neighbor.depth = node.depth + 1;
+          neighbor.predecessor = node;
+          nodes.put(rid, neighbor);
+          heap.add(neighbor);
+          checkVisited(nodes.size());
+
+        } else if (cost < neighbor.cost) {
+          // FOUND A SHORTER PATH
+          neighbor.estimate -= neighbor.cost - cost;
+          neighbor.cost = cost;
+          neighbor.depth = node.depth + 1;
+          neighbor.predecessor = node;
+          heap.decreaseKey(neighbor);
+        }
       }
     }
 
+    return null;
   }
 
-  protected List<OIdentifiable> getNeighbors(final OIdentifiable node) {
-    final List<OIdentifiable> neighbors = new ArrayList<OIdentifiable>();
-    if (node != null) {
-      if (paramDirection == DIRECTION.BOTH || paramDirection == DIRECTION.OUT)
-        for (OIdentifiable edge : db.getOutEdges(node)) {
-          final ODocument inVertex = db.getInVertex(edge);
-          if (inVertex != null && !isSettled(inVertex))
-            neighbors.add(inVertex);
-        }
+  /**
+   * Bidirectional breadth-first search: expands alternatively the smallest frontier from the source and from the destination
+   * until they meet.
+   */
+  protected LinkedList<OIdentifiable> findUnweightedPath(final ORID iSource, final ORID iDestination) {
+    // VISITED VERTICES WITH THE PREVIOUS VERTEX TOWARD THE SOURCE OR THE NEXT ONE TOWARD THE DESTINATION
+    final Map<ORID, ORID> fromSource = new HashMap<ORID, ORID>();
+    final Map<ORID, ORID> fromDestination = new HashMap<ORID, ORID>();
+    fromSource.put(iSource, null);
+    fromDestination.put(iDestination, null);
+
+    List<ORID> sourceFrontier = new ArrayList<ORID>();
+    List<ORID> destinationFrontier = new ArrayList<ORID>();
+    sourceFrontier.add(iSource);
+    destinationFrontier.add(iDestination);
+
+    final DIRECTION reverseDirection = paramDirection == DIRECTION.OUT ? DIRECTION.IN
+        : paramDirection == DIRECTION.IN ? DIRECTION.OUT : DIRECTION.BOTH;
+
+    final List<ORID> vertices = new ArrayList<ORID>();
+    int depth = 0;
+
+    while (!sourceFrontier.isEmpty() && !destinationFrontier.isEmpty()) {
+      if (paramMaxDepth > 0 && depth >= paramMaxDepth)
+        break;
+      depth++;
+
+      final boolean forward = sourceFrontier.size() <= destinationFrontier.size();
+      final List<ORID> frontier = forward ? sourceFrontier : destinationFrontier;
+      final Map<ORID, ORID> visited = forward ? fromSource : fromDestination;
+      final Map<ORID, ORID> other = forward ? fromDestination : fromSource;
+
+      final List<ORID> next = new ArrayList<ORID>();
+      for (ORID vertex : frontier) {
+        getNeighbors(vertex, forward ? paramDirection : reverseDirection, vertices, null);
+
+        for (ORID neighbor : vertices) {
+          if (visited.containsKey(neighbor))
+            continue;
+
+          visited.put(neighbor, vertex);
+
+          if (other.containsKey(neighbor))
+            // THE TWO SEARCHES MET
+            return buildPath(neighbor, fromSource, fromDestination);
 
-      if (paramDirection == DIRECTION.BOTH || paramDirection == DIRECTION.IN)
-        for (OIdentifiable edge : db.getInEdges(node)) {
-          final ODocument outVertex = db.getOutVertex(edge);
-          if (outVertex != null && !isSettled(outVertex))
-            neighbors.add(outVertex);
+          next.add(neighbor);
         }
+      }
+
+      checkVisited(fromSource.size() + fromDestination.size());
+
+      if (forward)
+        sourceFrontier = next;
+      else
+        destinationFrontier = next;
     }
-    return neighbors;
+
+    return null;
+  }
+
+  protected LinkedList<OIdentifiable> buildPath(final ORID iMeeting, final Map<ORID, ORID> iFromSource,
+      final Map<ORID, ORID> iFromDestination) {
+    final LinkedList<OIdentifiable> result = new LinkedList<OIdentifiable>();
+    for (ORID step = iMeeting; step != null; step = iFromSource.get(step))
+      result.addFirst(step);
+    for (ORID step = iFromDestination.get(iMeeting); step != null; step = iFromDestination.get(step))
+      result.addLast(step);
+    return result;
+  }
+
+  /**
+   * Collects the adjacent vertices of a vertex.
+   *
+   * @param iVertex
+   *          Vertex to expand
+   * @param iDirection
+   *          Direction of the edges to follow
+   * @param iVertices
+   *          Filled with the RIDs of the adjacent vertices
+   * @param iEdges
+   *          If not null, filled with the edges in the same order of the vertices. Lightweight edges are null
+   */
+  protected void getNeighbors(final ORID iVertex, final DIRECTION iDirection, final List<ORID> iVertices,
+      final List<ODocument> iEdges) {
+    iVertices.clear();
+    if (iEdges != null)
+      iEdges.clear();
+
+    final ODocument vertex = iVertex.getRecord();
+    if (vertex == null)
+      return;
+
+    if (iDirection == DIRECTION.BOTH || iDirection == DIRECTION.OUT)
+      addNeighbors(vertex.rawField(OGraphDatabase.VERTEX_FIELD_OUT), OGraphDatabase.EDGE_FIELD_IN, iVertices, iEdges);
+
+    if (iDirection == DIRECTION.BOTH || iDirection == DIRECTION.IN)
+      addNeighbors(vertex.rawField(OGraphDatabase.VERTEX_FIELD_IN), OGraphDatabase.EDGE_FIELD_OUT, iVertices, iEdges);
   }
 
-  protected OIdentifiable getMinimum(final Set<OIdentifiable> vertexes) {
-    OIdentifiable minimum = null;
-    for (OIdentifiable vertex : vertexes) {
-      if (minimum == null || getShortestDistance(vertex).compareTo(getShortestDistance(minimum)) < 0)
-        minimum = vertex;
+  @SuppressWarnings("unchecked")
+  protected void addNeighbors(final Object iEdgeSet, final String iVertexField, final List<ORID> iVertices,
+      final List<ODocument> iEdges) {
+    final Iterator<OIdentifiable> it;
+    if (iEdgeSet instanceof OMVRBTreeRIDSet)
+      it = ((OMVRBTreeRIDSet) iEdgeSet).iterator(false);
+    else if (iEdgeSet instanceof ORecordLazyMultiValue)
+      it = ((ORecordLazyMultiValue) iEdgeSet).rawIterator();
+    else if (iEdgeSet instanceof Collection<?>)
+      it = ((Collection<OIdentifiable>) iEdgeSet).iterator();
+    else
+      return;
+
+    while (it.hasNext()) {
+      final OIdentifiable e = it.next();
+      if (e == null)
+        continue;
+
+      if (db.isLightweightLink(e)) {
+        // LIGHTWEIGHT EDGE: THE LINK POINTS DIRECTLY TO THE OTHER VERTEX
+        iVertices.add(e.getIdentity());
+        if (iEdges != null)
+          iEdges.add(null);
+        continue;
+      }
+
+      final ODocument edge = e.getRecord();
+      if (edge == null)
+        continue;
+
+      // READ THE LINK WITHOUT LOADING THE OTHER VERTEX
+      final Object v = edge.rawField(iVertexField);
+      if (v instanceof OIdentifiable) {
+        iVertices.add(((OIdentifiable) v).getIdentity());
+        if (iEdges != null)
+          iEdges.add(edge);
+      }
     }
-    return minimum;
   }
 
-  protected boolean isSettled(final OIdentifiable vertex) {
-    return settledNodes.contains(vertex);
+  /**
+   * Returns a parameter that contains a name, like the weight field. Strings are taken as they are instead of being resolved as
+   * fields of the current record.
+   */
+  protected static String getNameParameter(final Object iParameter, final ORecordInternal<?> iRecord,
+      final OCommandContext iContext) {
+    if (iParameter instanceof String)
+      return OIOUtils.getStringContent(iParameter);
+
+    final Object value = OSQLHelper.getValue(iParameter, iRecord, iContext);
+    return value != null ? value.toString() : null;
   }
 
-  protected boolean continueTraversing() {
-    return unSettledNodes.size() > 0;
+  protected void checkVisited(final int iVisited) {
+    if (maxVisited > 0 && iVisited > maxVisited)
+      throw new OCommandExecutionException("Path search of function " + getName() + "() visited more than " + maxVisited
+          + " vertices. Use a lower max depth or increase the limit with the setting '"
+          + OGlobalConfiguration.SQL_GRAPH_PATH_MAX_VISITED.getKey() + "'");
   }
 }
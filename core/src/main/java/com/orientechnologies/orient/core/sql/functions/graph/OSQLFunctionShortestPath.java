@@ -27,18 +27,17 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.OSQLHelper;
 
 /**
- * Shortest path algorithm to find the shortest path from one node to another node in a directed graph.
+ * Shortest path algorithm to find the shortest path from one node to another node in a directed graph. Uses a bidirectional
+ * breadth-first search, optionally limited to a maximum number of hops.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
-public class OSQLFunctionShortestPath extends OSQLFunctionPathFinder<Integer> {
-  public static final String   NAME     = "shortestPath";
-  private static final Integer MIN      = new Integer(0);
-  private static final Integer DISTANCE = new Integer(1);
+public class OSQLFunctionShortestPath extends OSQLFunctionPathFinder {
+  public static final String NAME = "shortestPath";
 
   public OSQLFunctionShortestPath() {
-    super(NAME, 2, 3);
+    super(NAME, 2, 4);
   }
 
   public Object execute(final OIdentifiable iCurrentRecord, ODocument iCurrentResult, final Object[] iParameters, final OCommandContext iContext) {
@@ -52,34 +51,23 @@ public class OSQLFunctionShortestPath extends OSQLFunctionPathFinder<Integer> {
     paramDestinationVertex = (OIdentifiable) OSQLHelper.getValue(iParameters[1], record, iContext);
     if (iParameters.length > 2)
       paramDirection = DIRECTION.valueOf(iParameters[2].toString().toUpperCase());
+    if (iParameters.length > 3)
+      paramMaxDepth = Integer.parseInt(OSQLHelper.getValue(iParameters[3], record, iContext).toString());
 
     return super.execute(iParameters, iContext);
   }
 
   public String getSyntax() {
-    return "Syntax error: shortestPath(<sourceVertex>, <destinationVertex>, [<direction>])";
+    return "Syntax error: shortestPath(<sourceVertex>, <destinationVertex>, [<direction>], [<maxDepth>])";
   }
 
   @Override
-  protected Integer getShortestDistance(final OIdentifiable destination) {
-    if (destination == null)
-      return Integer.MAX_VALUE;
-
-    final Integer d = distance.get(destination);
-    return d == null ? Integer.MAX_VALUE : d;
-  }
-
-  @Override
-  protected Integer getMinimumDistance() {
-    return MIN;
-  }
-
-  protected Integer getDistance(final OIdentifiable node, final OIdentifiable target) {
-    return DISTANCE;
+  protected boolean isWeighted() {
+    return false;
   }
 
   @Override
-  protected Integer sumDistances(final Integer iDistance1, final Integer iDistance2) {
-    return iDistance1.intValue() + iDistance2.intValue();
+  protected float getWeight(final ODocument iEdge) {
+    return 1f;
   }
 }
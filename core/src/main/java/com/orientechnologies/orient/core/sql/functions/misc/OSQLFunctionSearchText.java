@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql.functions.misc;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexFullText;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionAbstract;
+
+/**
+ * Searches in a full-text index and returns the matching records ordered by relevance. Phrases between double quotes must be
+ * contained in the records. The result is computed once per query, so the function can be used in the WHERE condition too:
+ * <code>select from Product where @rid in searchText('Product.description', 'red "running shoes"', 20)</code>.
+ * 
+ * @author Luca Garulli (l.garulli--at--orientechnologies.com)
+ * 
+ */
+public class OSQLFunctionSearchText extends OSQLFunctionAbstract {
+  public static final String  NAME = "searchText";
+
+  private Object[]            lastParameters;
+  private List<OIdentifiable> lastResult;
+
+  public OSQLFunctionSearchText() {
+    super(NAME, 2, 3);
+  }
+
+  public Object execute(final OIdentifiable iCurrentRecord, final ODocument iCurrentResult, final Object[] iParameters,
+      final OCommandContext iContext) {
+    if (iParameters[0] == null || iParameters[1] == null)
+      return null;
+
+    if (lastResult != null && Arrays.equals(iParameters, lastParameters))
+      // SAME SEARCH OF THE PREVIOUS RECORD
+      return lastResult;
+
+    final String indexName = iParameters[0].toString();
+    final OIndex<?> index = ODatabaseRecordThreadLocal.INSTANCE.get().getMetadata().getIndexManager().getIndex(indexName);
+    if (index == null)
+      throw new OCommandExecutionException("Index '" + indexName + "' not found");
+
+    if (!(index.getInternal() instanceof OIndexFullText))
+      throw new OCommandExecutionException("Index '" + indexName + "' is not a full-text index");
+
+    final int limit = iParameters.length > 2 && iParameters[2] != null ? (Integer) OType.convert(iParameters[2], Integer.class)
+        : 0;
+
+    lastResult = ((OIndexFullText) index.getInternal()).search(iParameters[1].toString(), limit);
+    lastParameters = iParameters.clone();
+    return lastResult;
+  }
+
+  public String getSyntax() {
+    return "Syntax error: searchText(<index-name>, <query>, [<limit>])";
+  }
+}
@@ -35,7 +35,7 @@ import com.orientechnologies.orient.core.version.ORecordVersion;
 public interface OCluster {
 
   public static enum ATTRIBUTES {
-    NAME, DATASEGMENT
+    NAME, DATASEGMENT, COMPRESSION
   }
 
   public void configure(OStorage iStorage, int iId, String iClusterName, final String iLocation, int iDataSegmentId,
@@ -87,6 +87,15 @@ public interface OStorage extends OSharedContainer {
   public OStorageOperationResult<ORawBuffer> readRecord(ORecordId iRid, String iFetchPlan, boolean iIgnoreCache,
       ORecordCallback<ORawBuffer> iCallback, boolean loadTombstones);
 
+  /**
+   * Reads multiple records with one call.
+   * 
+   * @param iRids
+   *          Record ids to read
+   * @return The contents of the records by record id. Deleted and not existent records are not contained
+   */
+  public Map<ORecordId, ORawBuffer> readRecords(Collection<ORecordId> iRids);
+
   public OStorageOperationResult<ORecordVersion> updateRecord(ORecordId iRecordId, byte[] iContent, ORecordVersion iVersion,
       byte iRecordType, int iMode, ORecordCallback<ORecordVersion> iCallback);
 
@@ -15,6 +15,9 @@
  */
 package com.orientechnologies.orient.core.storage;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicLong;
@@ -30,6 +33,7 @@ import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.config.OStorageConfiguration;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.exception.OSecurityException;
+import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.metadata.OMetadata;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.security.OSecurityShared;
@@ -124,6 +128,19 @@ public abstract class OStorageAbstract extends OSharedContainerImpl implements O
     return dropCluster(getClusterIdByName(iClusterName));
   }
 
+  /**
+   * Reads the records one by one. Storages able to read multiple records at once override it.
+   */
+  public Map<ORecordId, ORawBuffer> readRecords(final Collection<ORecordId> iRids) {
+    final Map<ORecordId, ORawBuffer> result = new HashMap<ORecordId, ORawBuffer>(iRids.size());
+    for (ORecordId rid : iRids) {
+      final ORawBuffer buffer = readRecord(rid, null, false, null, false).getResult();
+      if (buffer != null)
+        result.put(rid, buffer);
+    }
+    return result;
+  }
+
   protected boolean checkForClose(final boolean iForce) {
     if (status == STATUS.CLOSED)
       return false;
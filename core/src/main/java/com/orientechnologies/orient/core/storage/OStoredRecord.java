@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage;
+
+import com.orientechnologies.orient.core.compression.OCompression;
+import com.orientechnologies.orient.core.version.ORecordVersion;
+
+/**
+ * Record content in the form it's stored in the cluster, still compressed. The content is in the first <code>length</code> bytes
+ * of the buffer, that can be larger and can be shared with the caller to avoid the allocation of a new array on every read.
+ *
+ * @author Luca Garulli
+ * @see ORawBuffer
+ */
+public class OStoredRecord {
+  public final byte[]         buffer;
+  public final int            length;
+  public final ORecordVersion version;
+  public final byte           recordType;
+  public final OCompression   compression;
+
+  public OStoredRecord(final byte[] buffer, final int length, final ORecordVersion version, final byte recordType,
+      final OCompression compression) {
+    this.buffer = buffer;
+    this.length = length;
+    this.version = version;
+    this.recordType = recordType;
+    this.compression = compression;
+  }
+
+  /**
+   * Returns the uncompressed content as a new raw buffer.
+   */
+  public ORawBuffer toRawBuffer() {
+    final byte[] content = new byte[length];
+    System.arraycopy(buffer, 0, content, 0, length);
+    return new ORawBuffer(compression.uncompress(content), version, recordType);
+  }
+
+  @Override
+  public String toString() {
+    return "size:" + length + ", compression:" + compression.getName();
+  }
+}
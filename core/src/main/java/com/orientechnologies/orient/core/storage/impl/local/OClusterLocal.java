@@ -22,6 +22,10 @@ import com.orientechnologies.common.concur.resource.OSharedResourceAdaptive;
 import com.orientechnologies.common.io.OFileUtils;
 import com.orientechnologies.common.io.OIOException;
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.compression.OCompression;
+import com.orientechnologies.orient.core.compression.OCompressionFactory;
+import com.orientechnologies.orient.core.compression.OCompressionSampler;
+import com.orientechnologies.orient.core.compression.ONothingCompression;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.config.OStorageClusterConfiguration;
 import com.orientechnologies.orient.core.config.OStorageClusterHoleConfiguration;
@@ -76,6 +80,7 @@ public class OClusterLocal extends OSharedResourceAdaptive implements OCluster {
   private OStorageLocal                             storage;
   private String                                    name;
   private long                                      version;
+  private volatile OCompression                     compression        = ONothingCompression.INSTANCE;
 
   public OClusterLocal() {
     super(OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean());
@@ -83,6 +88,7 @@ public class OClusterLocal extends OSharedResourceAdaptive implements OCluster {
 
   public void configure(final OStorage iStorage, OStorageClusterConfiguration iConfig) throws IOException {
     config = (OStoragePhysicalClusterConfigurationLocal) iConfig;
+    compression = OCompressionFactory.INSTANCE.getCompression(config.getCompression(), ONothingCompression.INSTANCE);
     init(iStorage, config.getId(), config.getName(), config.getLocation(), config.getDataSegmentId());
   }
 
@@ -245,6 +251,12 @@ public class OClusterLocal extends OSharedResourceAdaptive implements OCluster {
 
     final String stringValue = iValue != null ? iValue.toString() : null;
 
+    if (iAttribute == ATTRIBUTES.COMPRESSION) {
+      // THE CONTENT IS IN THE DATA SEGMENTS: THE STORAGE RE-COMPRESSES IT UNDER ITS OWN LOCK, TAKEN BEFORE THE CLUSTER ONE
+      storage.setClusterCompression(this, new OCompressionSampler(storage, id).resolve(stringValue));
+      return;
+    }
+
     acquireExclusiveLock();
     try {
 
@@ -623,6 +635,26 @@ public class OClusterLocal extends OSharedResourceAdaptive implements OCluster {
     return config;
   }
 
+  public OCompression getCompression() {
+    return compression;
+  }
+
+  /**
+   * Changes the compression of the cluster. It's called by the storage once the records have been re-compressed.
+   * 
+   * @param iCompression
+   *          The new compression, or null to use the default one
+   */
+  protected void setCompression(final OCompression iCompression) {
+    acquireExclusiveLock();
+    try {
+      compression = iCompression != null ? iCompression : ONothingCompression.INSTANCE;
+      config.setCompression(iCompression != null ? iCompression.getSpecification() : null);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
   private void setNameInternal(final String iNewName) {
     if (storage.getClusterIdByName(iNewName) > -1)
       throw new IllegalArgumentException("Cluster with name '" + iNewName + "' already exists");
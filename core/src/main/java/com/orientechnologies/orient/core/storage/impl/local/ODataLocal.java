@@ -23,6 +23,8 @@ import com.orientechnologies.common.concur.resource.OSharedResourceAdaptiveExter
 import com.orientechnologies.common.io.OFileUtils;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.compression.OCompression;
+import com.orientechnologies.orient.core.compression.ONothingCompression;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.config.OStorageDataConfiguration;
 import com.orientechnologies.orient.core.config.OStorageDataHoleConfiguration;
@@ -47,6 +49,8 @@ import com.orientechnologies.orient.core.storage.fs.OFile;
  * | 4 bytes .... | 2 bytes .... | 8 or 192 | <RECORD SIZE> bytes. |<br/>
  * +--------------+--------------+--------------+----------------------+<br/>
  * = 14+? bytes<br/>
+ * <br/>
+ * The content is compressed with the compression of the record's cluster, looked up by the cluster id.<br/>
  */
 public class ODataLocal extends OMultiFileSegment implements ODataSegment {
   static final String                           DEF_EXTENSION    = ".oda";
@@ -198,13 +202,14 @@ public class ODataLocal extends OMultiFileSegment implements ODataSegment {
       // AVOID UNUSEFUL CREATION OF EMPTY RECORD: IT WILL BE CREATED AT FIRST UPDATE
       return -1;
 
-    final int recordSize = iContent.length + RECORD_FIX_SIZE;
+    final byte[] content = getCompression(iRid.clusterId).compress(iContent);
+    final int recordSize = content.length + RECORD_FIX_SIZE;
 
     acquireExclusiveLock();
     try {
 
       final long[] newFilePosition = getFreeSpace(recordSize);
-      writeRecord(newFilePosition, iRid.clusterId, iRid.clusterPosition, iContent);
+      writeRecord(newFilePosition, iRid.clusterId, iRid.clusterPosition, content);
       return getAbsolutePosition(newFilePosition);
 
     } finally {
@@ -218,6 +223,16 @@ public class ODataLocal extends OMultiFileSegment implements ODataSegment {
    * @throws IOException
    */
   public byte[] getRecord(final long iPosition) throws IOException {
+    return getRecord(iPosition, null);
+  }
+
+  /**
+   * Returns the record content from file uncompressed with the compression received as parameter, or with the compression of the
+   * record's cluster if null. Pass {@link ONothingCompression#INSTANCE} to get the content as stored.
+   * 
+   * @throws IOException
+   */
+  public byte[] getRecord(final long iPosition, final OCompression iCompression) throws IOException {
     if (iPosition == -1)
       return null;
 
@@ -246,7 +261,10 @@ public class ODataLocal extends OMultiFileSegment implements ODataSegment {
 
       final byte[] content = new byte[recordSize];
       file.read(pos[1] + RECORD_FIX_SIZE, content, recordSize);
-      return content;
+
+      final OCompression compression = iCompression != null ? iCompression : getCompression(file.readShort(pos[1]
+          + OBinaryProtocol.SIZE_INT));
+      return compression.uncompress(content);
 
     } finally {
       releaseSharedLock();
@@ -318,6 +336,21 @@ public class ODataLocal extends OMultiFileSegment implements ODataSegment {
    * @throws IOException
    */
   public long setRecord(final long iPosition, final ORecordId iRid, final byte[] iContent) throws IOException {
+    return setRecord(iPosition, iRid, iContent, null);
+  }
+
+  /**
+   * Set the record content in file compressed with the compression received as parameter, or with the compression of the
+   * record's cluster if null.
+   * 
+   * @return The new record offset or the same received as parameter is the old space was reused.
+   * @throws IOException
+   */
+  public long setRecord(final long iPosition, final ORecordId iRid, final byte[] iContent, final OCompression iCompression)
+      throws IOException {
+    final byte[] content = iContent != null ? (iCompression != null ? iCompression : getCompression(iRid.clusterId))
+        .compress(iContent) : null;
+
     acquireExclusiveLock();
     try {
 
@@ -325,18 +358,18 @@ public class ODataLocal extends OMultiFileSegment implements ODataSegment {
       final OFile file = files[(int) pos[0]];
 
       final int recordSize = file.readInt(pos[1]);
-      final int contentLength = iContent != null ? iContent.length : 0;
+      final int contentLength = content != null ? content.length : 0;
 
       if (contentLength == recordSize) {
         // USE THE OLD SPACE SINCE SIZE ISN'T CHANGED
-        file.write(pos[1] + RECORD_FIX_SIZE, iContent);
+        file.write(pos[1] + RECORD_FIX_SIZE, content);
 
         Orient.instance().getProfiler().updateCounter(PROFILER_UPDATE_REUSED_ALL, "", +1);
         return iPosition;
       } else if (recordSize - contentLength > RECORD_FIX_SIZE + 50) {
         // USE THE OLD SPACE BUT UPDATE THE CURRENT SIZE. IT'S PREFEREABLE TO USE THE SAME INSTEAD OF FINDING A BEST SUITED FOR IT
         // TO AVOID CHANGES TO REF FILE AS WELL.
-        writeRecord(pos, iRid.clusterId, iRid.clusterPosition, iContent);
+        writeRecord(pos, iRid.clusterId, iRid.clusterPosition, content);
 
         // CREATE A HOLE WITH THE DIFFERENCE OF SPACE
         createHole(iPosition + RECORD_FIX_SIZE + contentLength, recordSize - contentLength - RECORD_FIX_SIZE);
@@ -349,7 +382,7 @@ public class ODataLocal extends OMultiFileSegment implements ODataSegment {
 
         // USE A NEW SPACE
         pos = getFreeSpace(contentLength + RECORD_FIX_SIZE);
-        writeRecord(pos, iRid.clusterId, iRid.clusterPosition, iContent);
+        writeRecord(pos, iRid.clusterId, iRid.clusterPosition, content);
 
         Orient.instance().getProfiler()
             .updateCounter(PROFILER_UPDATE_NOT_REUSED, "Space not reused in data segment during record update", +1);
@@ -422,10 +455,113 @@ public class ODataLocal extends OMultiFileSegment implements ODataSegment {
     }
   }
 
+  /**
+   * Returns the total space in bytes of the holes.
+   */
+  public long getHolesSize() {
+    acquireSharedLock();
+    try {
+
+      return holeSegment.getHolesSize();
+
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  /**
+   * Compacts the segment by moving the records that follow each hole to the hole's start, so the holes move toward the end of the
+   * files, where the space is reclaimed by shrinking them. Adjacent holes are merged. The holes are browsed from the hole index
+   * and not from the file, because the space recycled partially from a hole has no marker in the file. Only the records owned by
+   * their cluster are moved: the cluster pointers are updated to the new positions, so the caller must lock the storage in
+   * exclusive mode.
+   * 
+   * @param iPosition
+   *          Position to start from
+   * @param iMaxMoves
+   *          Max number of records to move in this call
+   * @param iResult
+   *          Receives the bytes moved in [0] and the bytes reclaimed in [1]
+   * @return The position to continue from, or -1 if the segment is compacted
+   * @throws IOException
+   */
+  public long compact(final long iPosition, final int iMaxMoves, final long[] iResult) throws IOException {
+    acquireExclusiveLock();
+    try {
+
+      int moves = 0;
+      ODataHoleInfo hole = holeSegment.getFirstHoleFrom(iPosition);
+      while (hole != null) {
+        if (hole.size <= 0) {
+          // EMPTY HOLE: JUST REMOVE IT
+          final long holeOffset = hole.dataOffset;
+          holeSegment.deleteHole(hole.holeOffset);
+          hole = holeSegment.getFirstHoleFrom(holeOffset);
+          continue;
+        }
+
+        final long[] pos = getRelativePosition(hole.dataOffset);
+        final OFile file = files[(int) pos[0]];
+
+        if (pos[1] + hole.size >= file.getFilledUpTo()) {
+          // LAST HOLE OF THE FILE: GIVE BACK ITS SPACE
+          iResult[1] += file.getFilledUpTo() - pos[1];
+          holeSegment.deleteHole(hole.holeOffset);
+          file.shrink((int) pos[1]);
+
+          if (pos[0] + 1 >= files.length)
+            return -1;
+
+          // CONTINUE WITH THE NEXT FILE
+          hole = holeSegment.getFirstHoleFrom(getAbsolutePosition(new long[] { pos[0] + 1, 0 }));
+          continue;
+        }
+
+        final long next = hole.dataOffset + hole.size;
+        final ODataHoleInfo nextHole = holeSegment.getFirstHoleFrom(next);
+
+        if (nextHole != null && nextHole.dataOffset == next) {
+          // CONSECUTIVE HOLES: MERGE THEM
+          final int holeSize = hole.size + nextHole.size;
+          holeSegment.deleteHole(nextHole.holeOffset);
+          holeSegment.updateHole(hole, hole.dataOffset, holeSize);
+          file.writeInt(pos[1], holeSize * -1);
+          continue;
+        }
+
+        if (moves >= iMaxMoves)
+          return hole.dataOffset;
+
+        if (!isMovable(file, pos[1] + hole.size, next)) {
+          // NOT A RECORD OF A CLUSTER: LEAVE THE HOLE THERE
+          hole = nextHole;
+          continue;
+        }
+
+        final int sizeMoved = moveRecord(next, hole.dataOffset);
+        iResult[0] += sizeMoved;
+        moves++;
+
+        // THE HOLE IS NOW AFTER THE MOVED RECORD
+        holeSegment.updateHole(hole, hole.dataOffset + sizeMoved, hole.size);
+        file.writeInt(pos[1] + sizeMoved, hole.size * -1);
+      }
+
+      return -1;
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
   public int getId() {
     return id;
   }
 
+  private OCompression getCompression(final int iClusterId) {
+    return ((OStorageLocal) storage).getClusterCompression(iClusterId);
+  }
+
   private void createHole(final long iRecordOffset, final int iRecordSize) throws IOException {
     long holePositionOffset = iRecordOffset;
     int holeSize = iRecordSize + RECORD_FIX_SIZE;
@@ -656,6 +792,35 @@ public class ODataLocal extends OMultiFileSegment implements ODataSegment {
     return recordSize + RECORD_FIX_SIZE;
   }
 
+  /**
+   * Tells if at the position there is a record that can be moved, namely a record whose cluster points to that position.
+   */
+  private boolean isMovable(final OFile file, final long iFileOffset, final long iPosition) throws IOException {
+    final int recordSize = file.readInt(iFileOffset);
+    if (recordSize < 0 || iFileOffset + RECORD_FIX_SIZE + recordSize > file.getFilledUpTo())
+      return false;
+
+    final int clusterId = file.readShort(iFileOffset + OBinaryProtocol.SIZE_INT);
+    if (clusterId < 0)
+      // TEMP RECORD
+      return false;
+
+    final byte[] clusterPositionContent = new byte[CLUSTER_POS_SIZE];
+    file.read(iFileOffset + OBinaryProtocol.SIZE_INT + OBinaryProtocol.SIZE_SHORT, clusterPositionContent, CLUSTER_POS_SIZE);
+
+    final OCluster cluster;
+    try {
+      cluster = storage.getClusterById(clusterId);
+    } catch (IllegalArgumentException e) {
+      // CLUSTER DROPPED
+      return false;
+    }
+
+    final OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(OClusterPositionFactory.INSTANCE
+        .fromStream(clusterPositionContent)));
+    return ppos != null && ppos.dataSegmentId == id && ppos.dataSegmentPos == iPosition;
+  }
+
   private void writeRecord(final long[] iFilePosition, final int iClusterSegment, final OClusterPosition iClusterPosition,
       final byte[] iContent) throws IOException {
     final OFile file = files[(int) iFilePosition[0]];
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.impl.local;
+
+import java.io.IOException;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.storage.OStorage.STATUS;
+
+/**
+ * Compacts online the data segments of a local storage. A timer task checks periodically the space lost in holes and, when it
+ * exceeds the configured percentage of a segment, starts the compaction in a background thread. The compaction works in batches:
+ * every batch locks the storage in exclusive mode, moves a limited number of records toward the front of the segment and releases
+ * the lock, then waits to let the other operations run.
+ * <p>
+ * The background compaction is disabled by default: set "file.compaction.threshold" to enable it.
+ *
+ * @author Luca Garulli
+ *
+ */
+public class ODataLocalCompactor {
+  private final OStorageLocal storage;
+  private final String        PROFILER_MOVED;
+  private final String        PROFILER_RECLAIMED;
+  private final AtomicLong    movedBytes     = new AtomicLong();
+  private final AtomicLong    reclaimedBytes = new AtomicLong();
+  private TimerTask           checkTask;
+  private volatile Thread     compaction;
+  private volatile float      progress       = 1f;
+  private volatile boolean    shutdown;
+
+  public ODataLocalCompactor(final OStorageLocal iStorage) {
+    storage = iStorage;
+
+    PROFILER_MOVED = "db." + storage.getName() + ".data.compaction.moved";
+    PROFILER_RECLAIMED = "db." + storage.getName() + ".data.compaction.reclaimed";
+  }
+
+  /**
+   * Schedules the periodic check of the fragmentation, if enabled.
+   */
+  public void startup() {
+    shutdown = false;
+
+    final int interval = OGlobalConfiguration.FILE_COMPACTION_CHECK_INTERVAL.getValueAsInteger();
+    final int threshold = OGlobalConfiguration.FILE_COMPACTION_THRESHOLD.getValueAsInteger();
+    if (interval <= 0 || threshold <= 0)
+      return;
+
+    checkTask = new TimerTask() {
+      @Override
+      public void run() {
+        try {
+          if (storage.getStatus() == STATUS.OPEN && !isRunning() && getFragmentedSegment(threshold) != null)
+            start(threshold);
+        } catch (Exception e) {
+          // DON'T KILL THE SHARED TIMER
+          OLogManager.instance().debug(this, "Error on checking the fragmentation of storage '%s'", e, storage.getName());
+        }
+      }
+    };
+
+    Orient.getTimer().schedule(checkTask, interval, interval);
+  }
+
+  /**
+   * Cancels the periodic check and stops the running compaction at the end of the current batch.
+   */
+  public void shutdown() {
+    shutdown = true;
+
+    if (checkTask != null) {
+      checkTask.cancel();
+      checkTask = null;
+    }
+  }
+
+  /**
+   * Starts the compaction in background.
+   *
+   * @param iThreshold
+   *          Minimum percentage of space in holes to compact a segment, 0 to compact all of them
+   * @return false if the compaction is already running, otherwise true
+   */
+  public synchronized boolean start(final int iThreshold) {
+    if (shutdown || compaction != null)
+      return false;
+
+    compaction = new Thread(new Runnable() {
+      public void run() {
+        try {
+          compact(iThreshold);
+        } catch (Exception e) {
+          OLogManager.instance().error(this, "Error on compaction of the data segments of storage '%s'", e, storage.getName());
+        } finally {
+          compaction = null;
+        }
+      }
+    }, "OrientDB Data Compaction (" + storage.getName() + ")");
+    compaction.setDaemon(true);
+    compaction.start();
+    return true;
+  }
+
+  /**
+   * Compacts the data segments in the current thread.
+   *
+   * @param iThreshold
+   *          Minimum percentage of space in holes to compact a segment, 0 to compact all of them
+   * @throws IOException
+   */
+  public void compact(final int iThreshold) throws IOException {
+    final int batchSize = OGlobalConfiguration.FILE_COMPACTION_BATCH_SIZE.getValueAsInteger();
+    final int batchDelay = OGlobalConfiguration.FILE_COMPACTION_BATCH_DELAY.getValueAsInteger();
+
+    final ODataLocal[] segments = storage.getDataSegments();
+    final long[] result = new long[2];
+
+    progress = 0f;
+    for (int i = 0; i < segments.length; ++i) {
+      final ODataLocal data = segments[i];
+      if (data == null || iThreshold > 0 && getFragmentation(data) < iThreshold)
+        continue;
+
+      final long size = Math.max(data.getSize(), 1);
+      final long movedBefore = movedBytes.get();
+      final long reclaimedBefore = reclaimedBytes.get();
+      long position = 0;
+      while (position > -1) {
+        if (shutdown || storage.getStatus() != STATUS.OPEN)
+          return;
+
+        result[0] = 0;
+        result[1] = 0;
+        position = storage.compactDataSegment(data, position, batchSize, result);
+
+        movedBytes.addAndGet(result[0]);
+        reclaimedBytes.addAndGet(result[1]);
+        Orient.instance().getProfiler().updateCounter(PROFILER_MOVED, "Bytes moved by the compaction of data segments", result[0]);
+        Orient.instance().getProfiler()
+            .updateCounter(PROFILER_RECLAIMED, "Bytes reclaimed by the compaction of data segments", result[1]);
+
+        progress = (i + (position > -1 ? Math.min(position / (float) size, 1f) : 1f)) / segments.length;
+
+        if (position > -1 && batchDelay > 0)
+          try {
+            Thread.sleep(batchDelay);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+      }
+
+      OLogManager.instance().info(this, "Compacted data segment '%s' of storage '%s': moved %s, reclaimed %s", data.getName(),
+          storage.getName(), OFileUtils.getSizeAsString(movedBytes.get() - movedBefore),
+          OFileUtils.getSizeAsString(reclaimedBytes.get() - reclaimedBefore));
+    }
+    progress = 1f;
+  }
+
+  public boolean isRunning() {
+    return compaction != null;
+  }
+
+  /**
+   * Returns the progress of the last compaction, between 0 and 1.
+   */
+  public float getProgress() {
+    return progress;
+  }
+
+  /**
+   * Returns the bytes of the records moved since the storage was opened.
+   */
+  public long getMovedBytes() {
+    return movedBytes.get();
+  }
+
+  /**
+   * Returns the bytes given back to the file system since the storage was opened.
+   */
+  public long getReclaimedBytes() {
+    return reclaimedBytes.get();
+  }
+
+  private ODataLocal getFragmentedSegment(final int iThreshold) {
+    for (ODataLocal data : storage.getDataSegments())
+      if (data != null && getFragmentation(data) >= iThreshold)
+        return data;
+    return null;
+  }
+
+  private static int getFragmentation(final ODataLocal iData) {
+    final long size = iData.getSize();
+    if (size <= 0)
+      return 0;
+    return (int) (iData.getHolesSize() * 100 / size);
+  }
+}
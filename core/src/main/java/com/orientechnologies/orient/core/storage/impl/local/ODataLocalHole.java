@@ -42,6 +42,7 @@ public class ODataLocalHole extends OSingleFileSegment {
   private static final int                                    DEF_START_SIZE     = 262144;
   private static final int                                    RECORD_SIZE        = 12;
   private int                                                 maxHoleSize        = -1;
+  private long                                                holesSize;
 
   private final List<Integer>                                 freeHoles          = new ArrayList<Integer>();
   private final ODataHoleInfo                                 cursor             = new ODataHoleInfo();
@@ -117,6 +118,7 @@ public class ODataLocalHole extends OSingleFileSegment {
 
     availableHolesBySize.put(hole, hole);
     availableHolesByPosition.put(hole, hole);
+    holesSize += iRecordSize;
 
     if (maxHoleSize < iRecordSize)
       maxHoleSize = iRecordSize;
@@ -254,8 +256,10 @@ public class ODataLocalHole extends OSingleFileSegment {
 
     if (offsetChanged)
       iHole.dataOffset = iNewDataOffset;
-    if (sizeChanged)
+    if (sizeChanged) {
+      holesSize += iNewRecordSize - iHole.size;
       iHole.size = iNewRecordSize;
+    }
 
     if (offsetChanged)
       availableHolesByPosition.put(iHole, iHole);
@@ -286,6 +290,7 @@ public class ODataLocalHole extends OSingleFileSegment {
     final ODataHoleInfo hole = availableHolesList.get(iHolePosition);
     availableHolesBySize.remove(hole);
     availableHolesByPosition.remove(hole);
+    holesSize -= hole.size;
 
     hole.dataOffset = -1;
     freeHoles.add(iHolePosition);
@@ -299,6 +304,21 @@ public class ODataLocalHole extends OSingleFileSegment {
     return (file.getFilledUpTo() / RECORD_SIZE);
   }
 
+  /**
+   * Returns the total space in bytes of the holes.
+   */
+  public synchronized long getHolesSize() {
+    return holesSize;
+  }
+
+  /**
+   * Returns the first hole that starts at the position or after it, or null if there are no more holes.
+   */
+  public synchronized ODataHoleInfo getFirstHoleFrom(final long iPosition) {
+    cursor.dataOffset = iPosition;
+    return availableHolesByPosition.ceilingKey(cursor);
+  }
+
   @Override
   public synchronized void synch() throws IOException {
     super.synch();
@@ -325,6 +345,7 @@ public class ODataLocalHole extends OSingleFileSegment {
       else {
         availableHolesBySize.put(hole, hole);
         availableHolesByPosition.put(hole, hole);
+        holesSize += recordSize;
 
         if (maxHoleSize < recordSize)
           maxHoleSize = recordSize;
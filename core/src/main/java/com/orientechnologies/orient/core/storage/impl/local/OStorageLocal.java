@@ -20,7 +20,11 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +46,8 @@ import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
 import com.orientechnologies.common.util.OArrays;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.command.OCommandOutputListener;
+import com.orientechnologies.orient.core.compression.OCompression;
+import com.orientechnologies.orient.core.compression.ONothingCompression;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.config.OStorageClusterConfiguration;
 import com.orientechnologies.orient.core.config.OStorageConfiguration;
@@ -95,7 +101,7 @@ public class OStorageLocal extends OStorageLocalAbstract {
   private int                           defaultClusterId          = -1;
 
   private static String[]               ALL_FILE_EXTENSIONS       = { "ocf", ".och", ".ocl", ".oda", ".odh", ".otx", ".ocs",
-      ".oef", ".oem", ".oet"                                     };
+      ".oef", ".oem", ".oet", ".sbt"                             };
 
   private long                          positionGenerator         = 1;
 
@@ -105,6 +111,8 @@ public class OStorageLocal extends OStorageLocalAbstract {
 
   private final ODiskCache              diskCache;
 
+  private ODataLocalCompactor           compactor;
+
   public OStorageLocal(final String iName, final String iFilePath, final String iMode) throws IOException {
     super(iName, iFilePath, iMode);
 
@@ -229,6 +237,8 @@ public class OStorageLocal extends OStorageLocalAbstract {
 
       txManager.open();
 
+      startupCompactor();
+
     } catch (Exception e) {
       close(true);
       throw new OStorageException("Cannot open local storage '" + url + "' with mode=" + mode, e);
@@ -312,6 +322,8 @@ public class OStorageLocal extends OStorageLocalAbstract {
       configuration.create();
 
       txManager.create();
+
+      startupCompactor();
     } catch (OStorageException e) {
       close();
       throw e;
@@ -349,6 +361,11 @@ public class OStorageLocal extends OStorageLocalAbstract {
 
       status = STATUS.CLOSING;
 
+      if (compactor != null) {
+        compactor.shutdown();
+        compactor = null;
+      }
+
       for (OCluster cluster : clusters)
         if (cluster != null)
           cluster.close();
@@ -649,7 +666,7 @@ public class OStorageLocal extends OStorageLocalAbstract {
                 // REGULAR DATA CHUNK
                 nextPos = pos + ODataLocal.RECORD_FIX_SIZE + recordSize;
 
-                final byte[] buffer = d.getRecord(pos);
+                final byte[] buffer = d.getRecord(pos, ONothingCompression.INSTANCE);
                 if (buffer.length != recordSize) {
                   formatMessage(iVerbose, iListener,
                       "WARN: Chunk %s:%d (offset=%d size=%d) has wrong record size because the record length is %d ", d.getName(),
@@ -744,6 +761,63 @@ public class OStorageLocal extends OStorageLocalAbstract {
     }
   }
 
+  /**
+   * Returns the compression of the records of a cluster. It's called by the data segments on every access, so it doesn't lock the
+   * storage.
+   */
+  public OCompression getClusterCompression(final int iClusterId) {
+    final OCluster[] currentClusters = clusters;
+    if (iClusterId < 0 || iClusterId >= currentClusters.length || !(currentClusters[iClusterId] instanceof OClusterLocal))
+      return ONothingCompression.INSTANCE;
+    return ((OClusterLocal) currentClusters[iClusterId]).getCompression();
+  }
+
+  /**
+   * Re-compresses all the records of a cluster with a new compression. The records are shared with the other clusters in the data
+   * segments, so the storage is locked in exclusive mode for the whole operation.
+   * 
+   * @param iCompression
+   *          The new compression, or null to use the default one
+   */
+  public void setClusterCompression(final OClusterLocal iCluster, final OCompression iCompression) {
+    final OCompression newCompression = iCompression != null ? iCompression : ONothingCompression.INSTANCE;
+
+    modificationLock.requestModificationLock();
+    try {
+      lock.acquireExclusiveLock();
+      try {
+        final OCompression oldCompression = iCluster.getCompression();
+
+        if (!newCompression.getSpecification().equals(oldCompression.getSpecification()))
+          for (Iterator<OPhysicalPosition> it = new OClusterEntryIterator(iCluster); it.hasNext();) {
+            final OPhysicalPosition ppos = iCluster.getPhysicalPosition(it.next());
+            if (ppos == null || ppos.dataSegmentPos < 0 || !checkForRecordValidity(ppos))
+              continue;
+
+            final ODataLocal data = getDataSegmentById(ppos.dataSegmentId);
+            final byte[] content = data.getRecord(ppos.dataSegmentPos, oldCompression);
+            if (content == null)
+              continue;
+
+            final long newDataSegmentPos = data.setRecord(ppos.dataSegmentPos, new ORecordId(iCluster.getId(), ppos.clusterPosition),
+                content, newCompression);
+            if (newDataSegmentPos != ppos.dataSegmentPos)
+              iCluster.updateDataSegmentPosition(ppos.clusterPosition, ppos.dataSegmentId, newDataSegmentPos);
+          }
+
+        iCluster.setCompression(iCompression);
+        configuration.update();
+
+      } catch (IOException e) {
+        throw new OStorageException("Error on changing the compression of cluster '" + iCluster.getName() + "'", e);
+      } finally {
+        lock.releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
   public int getDataSegmentIdByName(final String iDataSegmentName) {
     if (iDataSegmentName == null)
       return 0;
@@ -859,6 +933,44 @@ public class OStorageLocal extends OStorageLocalAbstract {
     return dataSegments;
   }
 
+  /**
+   * Returns the compactor of the data segments, or null if the storage is closed.
+   */
+  public ODataLocalCompactor getCompactor() {
+    return compactor;
+  }
+
+  /**
+   * Compacts a batch of the data segment locking the storage in exclusive mode. Used by {@link ODataLocalCompactor}.
+   * 
+   * @return The position to continue from, or -1 if the data segment is compacted or it is not available anymore
+   * @see ODataLocal#compact(long, int, long[])
+   */
+  public long compactDataSegment(final ODataLocal iData, final long iPosition, final int iMaxMoves, final long[] iResult)
+      throws IOException {
+    modificationLock.requestModificationLock();
+    try {
+      lock.acquireExclusiveLock();
+      try {
+
+        if (status != STATUS.OPEN || iData.getId() >= dataSegments.length || dataSegments[iData.getId()] != iData)
+          // CLOSED OR DROPPED
+          return -1;
+
+        final long position = iData.compact(iPosition, iMaxMoves, iResult);
+        if (iResult[0] > 0)
+          // RECORDS MOVED: INVALIDATE THE READ-AHEAD OF THE ITERATORS
+          version.incrementAndGet();
+        return position;
+
+      } finally {
+        lock.releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
   public OStorageLocalTxExecuter getTxManager() {
     return txManager;
   }
@@ -875,6 +987,7 @@ public class OStorageLocal extends OStorageLocalAbstract {
       if (cluster == null)
         return false;
 
+      version.incrementAndGet();
       getLevel2Cache().freeCluster(iClusterId);
 
       cluster.delete();
@@ -1054,6 +1167,7 @@ public class OStorageLocal extends OStorageLocalAbstract {
       try {
         lockManager.acquireLock(Thread.currentThread(), rid, LOCK.EXCLUSIVE);
         try {
+          version.incrementAndGet();
           OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
           if (ppos == null) {
             if (!cluster.isHashBased())
@@ -1449,11 +1563,10 @@ public class OStorageLocal extends OStorageLocalAbstract {
     lock.acquireSharedLock();
     try {
 
-      final List<ODataHoleInfo> holes = getHolesList();
       long size = 0;
-      for (ODataHoleInfo h : holes)
-        if (h.dataOffset > -1 && h.size > 0)
-          size += h.size;
+      for (ODataLocal d : dataSegments)
+        if (d != null)
+          size += d.getHolesSize();
 
       return size;
 
@@ -1724,6 +1837,7 @@ public class OStorageLocal extends OStorageLocalAbstract {
             + " has already exists.");
 
       rid.clusterPosition = ppos.clusterPosition;
+      version.incrementAndGet();
 
       lockManager.acquireLock(Thread.currentThread(), rid, LOCK.EXCLUSIVE);
       try {
@@ -1763,9 +1877,24 @@ public class OStorageLocal extends OStorageLocalAbstract {
 
     lock.acquireExclusiveLock();
     try {
+      version.incrementAndGet();
       final OPhysicalPosition ppos = moveRecord(originalId, newId);
 
       final ODataLocal dataLocal = getDataSegmentById(ppos.dataSegmentId);
+      if (ppos.dataSegmentPos > -1
+          && !getClusterCompression(originalId.getClusterId()).getSpecification().equals(
+              getClusterCompression(newId.getClusterId()).getSpecification())) {
+        // THE DESTINATION CLUSTER USES ANOTHER COMPRESSION: RE-WRITE THE CONTENT
+        final byte[] content = dataLocal.getRecord(ppos.dataSegmentPos);
+        final long newDataSegmentPos = dataLocal.setRecord(ppos.dataSegmentPos, (ORecordId) newId, content);
+        if (newDataSegmentPos != ppos.dataSegmentPos) {
+          getClusterById(newId.getClusterId()).updateDataSegmentPosition(ppos.clusterPosition, ppos.dataSegmentId,
+              newDataSegmentPos);
+          ppos.dataSegmentPos = newDataSegmentPos;
+        }
+      }
+
+      // THE CONTENT REWRITTEN IN THE SAME SPACE KEEPS THE OLD IDENTITY IN THE HEADER
       dataLocal.setRecordRid(ppos.dataSegmentPos, newId);
 
     } catch (IOException e) {
@@ -1834,6 +1963,147 @@ public class OStorageLocal extends OStorageLocalAbstract {
     }
   }
 
+  /**
+   * Reads the records that follow a position of a cluster with one storage call. Used by the iterators to read ahead while
+   * browsing a cluster forward: the storage shared lock is acquired once for all the records and the contents are read from the
+   * data segments in order of offset, so the files are accessed sequentially.
+   * 
+   * @param iClusterId
+   *          Cluster id
+   * @param iFrom
+   *          Position to start from, excluded
+   * @param iPositions
+   *          Array filled with the physical positions found
+   * @param iBuffers
+   *          Array filled with the contents of the records found, null for the deleted ones
+   * @param iLoadTombstones
+   *          If true returns a buffer without content for the tombstones
+   * @return The number of records read, at most the length of iPositions
+   */
+  public int readRecordsAhead(final int iClusterId, final OPhysicalPosition iFrom, final OPhysicalPosition[] iPositions,
+      final ORawBuffer[] iBuffers, final boolean iLoadTombstones) {
+    checkOpeness();
+
+    final OCluster cluster = getClusterById(iClusterId);
+
+    final long timer = Orient.instance().getProfiler().startChrono();
+
+    // WRITERS ACQUIRE THE EXCLUSIVE LOCK: THE SHARED ONE IS ENOUGH TO READ ALL THE RECORDS WITHOUT LOCKING THEM ONE BY ONE
+    lock.acquireSharedLock();
+    try {
+      int found = 0;
+      OPhysicalPosition[] next = cluster.higherPositions(iFrom);
+      while (next.length > 0) {
+        for (int i = 0; i < next.length && found < iPositions.length; ++i)
+          iPositions[found++] = next[i];
+
+        if (found >= iPositions.length)
+          break;
+
+        next = cluster.higherPositions(iPositions[found - 1]);
+      }
+
+      readContents(iPositions, iBuffers, found, iLoadTombstones);
+
+      return found;
+
+    } catch (IOException e) {
+      // THE ITERATORS TAKE 0 RECORDS AS THE END OF THE CLUSTER: PROPAGATE THE ERROR
+      OLogManager.instance().error(this, "Error on reading ahead the records of cluster " + cluster, e, OStorageException.class);
+      return 0;
+    } finally {
+      lock.releaseSharedLock();
+
+      Orient.instance().getProfiler()
+          .stopChrono("db." + name + ".readRecordsAhead", "Read ahead records from local database", timer, "db.*.readRecordsAhead");
+    }
+  }
+
+  /**
+   * Reads the records sorted by cluster and position, under one storage shared lock. The contents are read from the data segments
+   * in order of offset.
+   */
+  @Override
+  public Map<ORecordId, ORawBuffer> readRecords(final Collection<ORecordId> iRids) {
+    checkOpeness();
+
+    final ORecordId[] rids = iRids.toArray(new ORecordId[iRids.size()]);
+    Arrays.sort(rids);
+
+    final Map<ORecordId, ORawBuffer> result = new HashMap<ORecordId, ORawBuffer>(rids.length);
+
+    final long timer = Orient.instance().getProfiler().startChrono();
+
+    lock.acquireSharedLock();
+    try {
+      final OPhysicalPosition[] positions = new OPhysicalPosition[rids.length];
+      final ORawBuffer[] buffers = new ORawBuffer[rids.length];
+
+      int found = 0;
+      for (ORecordId rid : rids) {
+        if (!rid.isPersistent())
+          continue;
+
+        final OPhysicalPosition ppos = getClusterById(rid.clusterId).getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
+        if (ppos != null) {
+          rids[found] = rid;
+          positions[found++] = ppos;
+        }
+      }
+
+      readContents(positions, buffers, found, false);
+
+      for (int i = 0; i < found; ++i)
+        if (buffers[i] != null)
+          result.put(rids[i], buffers[i]);
+
+      return result;
+
+    } catch (IOException e) {
+      // A PARTIAL RESULT WOULD LOOK LIKE MISSING RECORDS: PROPAGATE THE ERROR
+      OLogManager.instance().error(this, "Error on reading records " + iRids, e, OStorageException.class);
+      return null;
+    } finally {
+      lock.releaseSharedLock();
+
+      Orient.instance().getProfiler()
+          .stopChrono("db." + name + ".readRecords", "Read multiple records from local database", timer, "db.*.readRecords");
+    }
+  }
+
+  /**
+   * Reads the contents of the records in order of data segment and offset, so the files are accessed sequentially.
+   */
+  private void readContents(final OPhysicalPosition[] iPositions, final ORawBuffer[] iBuffers, final int iCount,
+      final boolean iLoadTombstones) throws IOException {
+    final Integer[] order = new Integer[iCount];
+    for (int i = 0; i < iCount; ++i)
+      order[i] = i;
+
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(final Integer o1, final Integer o2) {
+        final OPhysicalPosition p1 = iPositions[o1];
+        final OPhysicalPosition p2 = iPositions[o2];
+        if (p1.dataSegmentId != p2.dataSegmentId)
+          return p1.dataSegmentId < p2.dataSegmentId ? -1 : 1;
+        return p1.dataSegmentPos < p2.dataSegmentPos ? -1 : (p1.dataSegmentPos == p2.dataSegmentPos ? 0 : 1);
+      }
+    });
+
+    for (Integer i : order) {
+      final OPhysicalPosition ppos = iPositions[i];
+
+      if (iLoadTombstones && ppos.recordVersion.isTombstone())
+        iBuffers[i] = new ORawBuffer(null, ppos.recordVersion, ppos.recordType);
+      else if (!checkForRecordValidity(ppos))
+        // DELETED
+        iBuffers[i] = null;
+      else
+        iBuffers[i] = new ORawBuffer(getDataSegmentById(ppos.dataSegmentId).getRecord(ppos.dataSegmentPos), ppos.recordVersion,
+            ppos.recordType);
+    }
+  }
+
   protected OPhysicalPosition updateRecord(final OCluster iClusterSegment, final ORecordId rid, final byte[] recordContent,
       final ORecordVersion recordVersion, final byte iRecordType) {
     assert (lock.assertExclusiveLockHold());
@@ -1853,6 +2123,8 @@ public class OStorageLocal extends OStorageLocalAbstract {
         if (!checkForRecordValidity(ppos))
           return null;
 
+        version.incrementAndGet();
+
         // VERSION CONTROL CHECK
         switch (recordVersion.getCounter()) {
         // DOCUMENT UPDATE, NO VERSION CONTROL
@@ -1934,6 +2206,8 @@ public class OStorageLocal extends OStorageLocalAbstract {
           // ALREADY DELETED
           return null;
 
+        version.incrementAndGet();
+
         // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
         if (iVersion.getCounter() > -1 && !ppos.recordVersion.equals(iVersion))
           if (OFastConcurrentModificationException.enabled())
@@ -2014,6 +2288,11 @@ public class OStorageLocal extends OStorageLocalAbstract {
             }, "db.*.data.holeSize");
   }
 
+  private void startupCompactor() {
+    compactor = new ODataLocalCompactor(this);
+    compactor.startup();
+  }
+
   private void uninstallProfilerHooks() {
     Orient.instance().getProfiler().unregisterHookValue("db." + name + ".data.holes");
     Orient.instance().getProfiler().unregisterHookValue("db." + name + ".data.holeSize");
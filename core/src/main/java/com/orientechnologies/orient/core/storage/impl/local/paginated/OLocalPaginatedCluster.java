@@ -32,7 +32,16 @@ package com.orientechnologies.orient.core.storage.impl.local.paginated;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import com.orientechnologies.common.concur.lock.OModificationLock;
 import com.orientechnologies.common.concur.resource.OSharedResourceAdaptive;
 import com.orientechnologies.common.directmemory.ODirectMemory;
@@ -42,6 +51,10 @@ import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.serialization.types.OByteSerializer;
 import com.orientechnologies.common.serialization.types.OIntegerSerializer;
 import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.orient.core.compression.OCompression;
+import com.orientechnologies.orient.core.compression.OCompressionFactory;
+import com.orientechnologies.orient.core.compression.OCompressionSampler;
+import com.orientechnologies.orient.core.compression.OSnappyCompression;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.config.OStorageClusterConfiguration;
 import com.orientechnologies.orient.core.config.OStorageFileConfiguration;
@@ -57,12 +70,12 @@ import com.orientechnologies.orient.core.storage.OClusterEntryIterator;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
 import com.orientechnologies.orient.core.storage.ORawBuffer;
 import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.OStoredRecord;
 import com.orientechnologies.orient.core.storage.fs.OFile;
 import com.orientechnologies.orient.core.storage.fs.OFileFactory;
 import com.orientechnologies.orient.core.storage.impl.local.OSingleFileSegment;
 import com.orientechnologies.orient.core.storage.impl.local.OStorageVariableParser;
 import com.orientechnologies.orient.core.version.ORecordVersion;
-import org.iq80.snappy.Snappy;
 
 import static com.orientechnologies.orient.core.config.OGlobalConfiguration.DISK_CACHE_PAGE_SIZE;
 import static com.orientechnologies.orient.core.config.OGlobalConfiguration.PAGINATED_STORAGE_LOWEST_FREELIST_BOUNDARY;
@@ -79,6 +92,8 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
   private static final int                          PAGE_INDEX_OFFSET            = 16;
   private static final int                          RECORD_POSITION_MASK         = 0xFFFF;
   private static final int                          ONE_KB                       = 1024;
+  private static final int                          PAGE_LATCHES                 = 256;
+  private static final int                          FREE_SPACE_MAP_STATE         = -1;
 
   private ODiskCache                                diskCache;
 
@@ -87,26 +102,30 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
   private volatile int                              id;
   private long                                      fileId;
 
-  private long                                      size;
-  private long                                      recordsSize;
+  private final AtomicLong                          size                         = new AtomicLong();
+  private final AtomicLong                          recordsSize                  = new AtomicLong();
 
   private final ODirectMemory                       directMemory                 = ODirectMemoryFactory.INSTANCE.directMemory();
 
   private OStoragePhysicalClusterConfigurationLocal config;
+  private volatile OCompression                     compression;
 
   private OSingleFileSegment                        clusterStateHolder;
 
-  private long[]                                    freePageLists                = new long[DISK_CACHE_PAGE_SIZE
+  private final OFreeSpaceMap                       freeSpaceMap                 = new OFreeSpaceMap(DISK_CACHE_PAGE_SIZE
                                                                                      .getValueAsInteger()
                                                                                      - PAGINATED_STORAGE_LOWEST_FREELIST_BOUNDARY
-                                                                                         .getValueAsInteger()];
+                                                                                         .getValueAsInteger());
+
+  private final ReadWriteLock[]                     pageLatches                  = new ReadWriteLock[PAGE_LATCHES];
+  private final Object                              pageAllocationLock           = new Object();
 
   private final OModificationLock externalModificationLock = new OModificationLock();
 
   public OLocalPaginatedCluster() {
     super(OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean());
-    for (int i = 0; i < freePageLists.length; i++)
-      freePageLists[i] = -1;
+    for (int i = 0; i < pageLatches.length; i++)
+      pageLatches[i] = new ReentrantReadWriteLock();
   }
 
   @Override
@@ -152,6 +171,8 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     diskCache = storageLocal.getDiskCache();
     name = config.getName();
     this.id = config.getId();
+    // CLUSTERS CREATED BEFORE THE COMPRESSION WAS CONFIGURABLE ARE COMPRESSED WITH SNAPPY
+    compression = OCompressionFactory.INSTANCE.getCompression(config.getCompression(), OSnappyCompression.INSTANCE);
 
     OStorageFileConfiguration clusterStateConfiguration = new OStorageFileConfiguration(null,
         OStorageVariableParser.DB_PATH_VARIABLE + "/" + config.getName() + CLUSTER_STATE_FILE_EXTENSION, OFileFactory.CLASSIC,
@@ -188,9 +209,9 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
           localPage.setPrevPage(-1);
 
           int freePageIndex = calculateFreePageIndex(localPage);
-          assert freePageIndex == freePageLists.length - 1;
+          assert freePageIndex == freeSpaceMap.getBucketsCount() - 1;
 
-          freePageLists[freePageIndex] = 0;
+          freeSpaceMap.update(0, freePageIndex);
         } finally {
           diskCache.markDirty(fileId, 0);
           diskCache.release(fileId, 0);
@@ -265,6 +286,10 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
     final String stringValue = value != null ? value.toString() : null;
 
+    // THE COMPRESSION IS RESOLVED BEFORE LOCKING THE CLUSTER BECAUSE IT COULD READ A SAMPLE OF THE RECORDS
+    final OCompression newCompression = attribute == ATTRIBUTES.COMPRESSION ? new OCompressionSampler(storageLocal, id)
+        .resolve(stringValue) : null;
+
     externalModificationLock.requestModificationLock();
     try {
       acquireExclusiveLock();
@@ -274,6 +299,9 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
           case NAME:
             setNameInternal(stringValue);
             break;
+          case COMPRESSION:
+            setCompressionInternal(newCompression);
+            break;
         }
 
       } finally {
@@ -294,6 +322,28 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     storageLocal.getConfiguration().update();
   }
 
+  private void setCompressionInternal(final OCompression newCompression) throws IOException {
+    final OCompression recordCompression = newCompression != null ? newCompression : OSnappyCompression.INSTANCE;
+
+    if (!recordCompression.getSpecification().equals(compression.getSpecification()))
+      // THE RECORDS ARE READ WITH THE OLD COMPRESSION AND RE-WRITTEN WITH THE NEW ONE UNDER THE EXCLUSIVE LOCK, SO NOBODY CAN
+      // READ OR WRITE THEM WITH THE WRONG COMPRESSION
+      for (Iterator<OPhysicalPosition> it = new OClusterEntryIterator(this); it.hasNext();) {
+        final OClusterPosition position = it.next().clusterPosition;
+        final ORawBuffer buffer = readRecord(position);
+        if (buffer != null)
+          updateEntry(position, createFullEntry(recordCompression.compress(buffer.buffer), buffer.recordType), buffer.version);
+      }
+
+    compression = recordCompression;
+    config.setCompression(newCompression != null ? newCompression.getSpecification() : null);
+    storageLocal.getConfiguration().update();
+  }
+
+  public OCompression getCompression() {
+    return compression;
+  }
+
   @Override
   public void convertToTombstone(OClusterPosition iPosition) throws IOException {
     throw new UnsupportedOperationException("convertToTombstone");
@@ -301,114 +351,56 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
   public OPhysicalPosition createRecord(byte[] content, final ORecordVersion recordVersion, final byte recordType)
       throws IOException {
+    // COMPRESSION AND SPLIT IN CHUNKS ARE EXECUTED OUTSIDE OF ANY LOCK
+    final OCompression recordCompression = compression;
+    List<byte[]> chunks = splitInChunks(createFullEntry(recordCompression.compress(content), recordType));
+
     externalModificationLock.requestModificationLock();
     try {
-      acquireExclusiveLock();
+      acquireSharedLock();
       try {
-        content = Snappy.compress(content);
-        int entryContentLength = content.length + 2 * OByteSerializer.BYTE_SIZE + OLongSerializer.LONG_SIZE;
-
-        if (entryContentLength < OLocalPage.MAX_RECORD_SIZE) {
-          byte[] entryContent = new byte[entryContentLength];
-
-          int entryPosition = 0;
-          entryContent[entryPosition] = recordType;
-          entryPosition++;
-
-          System.arraycopy(content, 0, entryContent, entryPosition, content.length);
-          entryPosition += content.length;
-
-          entryContent[entryPosition] = 1;
-          entryPosition++;
-
-          OLongSerializer.INSTANCE.serializeNative(-1L, entryContent, entryPosition);
-          final AddEntryResult addEntryResult = addEntry(recordVersion, entryContent);
-
-          size++;
-          recordsSize += addEntryResult.recordsSizeDiff;
-
-          return createPhysicalPosition(recordType, addEntryResult.pagePointer, addEntryResult.recordVersion);
-        } else {
-          int entrySize = content.length + OByteSerializer.BYTE_SIZE;
-
-          int fullEntryPosition = 0;
-          byte[] fullEntry = new byte[entrySize];
-
-          fullEntry[fullEntryPosition] = recordType;
-          fullEntryPosition++;
+        if (recordCompression != compression)
+          // THE COMPRESSION HAS BEEN CHANGED IN THE MEANWHILE
+          chunks = splitInChunks(createFullEntry(compression.compress(content), recordType));
 
-          System.arraycopy(content, 0, fullEntry, fullEntryPosition, content.length);
+        final AddEntryResult firstEntryResult = addEntry(recordVersion, chunks.get(0));
+        int recordsSizeDiff = firstEntryResult.recordsSizeDiff;
 
-          long prevPageRecordPointer = -1;
-          long firstPagePointer = -1;
-          ORecordVersion version = null;
+        long prevPagePointer = firstEntryResult.pagePointer;
+        for (int i = 1; i < chunks.size(); i++) {
+          final AddEntryResult addEntryResult = addEntry(recordVersion, chunks.get(i));
+          recordsSizeDiff += addEntryResult.recordsSizeDiff;
 
-          int from = 0;
-          int to = from + (OLocalPage.MAX_RECORD_SIZE - OByteSerializer.BYTE_SIZE - OLongSerializer.LONG_SIZE);
-
-          int recordsSizeDiff = 0;
-
-          do {
-            byte[] entryContent = new byte[to - from + OByteSerializer.BYTE_SIZE + OLongSerializer.LONG_SIZE];
-            System.arraycopy(fullEntry, from, entryContent, 0, to - from);
-
-            if (from > 0)
-              entryContent[entryContent.length - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE] = 0;
-            else
-              entryContent[entryContent.length - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE] = 1;
-
-            OLongSerializer.INSTANCE.serializeNative(-1L, entryContent, entryContent.length - OLongSerializer.LONG_SIZE);
-
-            final AddEntryResult addEntryResult = addEntry(recordVersion, entryContent);
-            recordsSizeDiff += addEntryResult.recordsSizeDiff;
-
-            if (firstPagePointer == -1) {
-              firstPagePointer = addEntryResult.pagePointer;
-              version = addEntryResult.recordVersion;
-            }
-
-            long addedPagePointer = addEntryResult.pagePointer;
-            if (prevPageRecordPointer >= 0) {
-
-              long prevPageIndex = prevPageRecordPointer >>> PAGE_INDEX_OFFSET;
-              int prevPageRecordPosition = (int) (prevPageRecordPointer & RECORD_POSITION_MASK);
-
-              long prevPageMemoryPointer = diskCache.load(fileId, prevPageIndex);
-              try {
-                final OLocalPage prevPage = new OLocalPage(prevPageMemoryPointer, false);
-
-                long recordPointer = prevPage.getRecordPointer(prevPageRecordPosition);
-                int prevPageRecordSize = prevPage.getRecordSize(prevPageRecordPosition);
-
-                OLongSerializer.INSTANCE.serializeInDirectMemory(addedPagePointer, directMemory, recordPointer + prevPageRecordSize
-                    - OLongSerializer.LONG_SIZE);
-              } finally {
-                diskCache.markDirty(fileId, prevPageIndex);
-                diskCache.release(fileId, prevPageIndex);
-              }
-            }
-
-            prevPageRecordPointer = addedPagePointer;
-            from = to;
-            to = to + (OLocalPage.MAX_RECORD_SIZE - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE);
-            if (to > fullEntry.length)
-              to = fullEntry.length;
+          linkChunk(prevPagePointer, addEntryResult.pagePointer);
+          prevPagePointer = addEntryResult.pagePointer;
+        }
 
-          } while (from < to);
+        if (chunks.size() > 1)
+          publishRecord(firstEntryResult.pagePointer);
 
-          size++;
-          recordsSize += recordsSizeDiff;
+        size.incrementAndGet();
+        recordsSize.addAndGet(recordsSizeDiff);
 
-          return createPhysicalPosition(recordType, firstPagePointer, version);
-        }
+        return createPhysicalPosition(recordType, firstEntryResult.pagePointer, firstEntryResult.recordVersion);
       } finally {
-        releaseExclusiveLock();
+        releaseSharedLock();
       }
     } finally {
       externalModificationLock.releaseModificationLock();
     }
   }
 
+  private List<byte[]> splitInChunks(final byte[] fullEntry) {
+    final int chunkSize = OLocalPage.MAX_RECORD_SIZE - OByteSerializer.BYTE_SIZE - OLongSerializer.LONG_SIZE;
+
+    final List<byte[]> chunks = new ArrayList<byte[]>();
+    for (int from = 0; from < fullEntry.length; from += chunkSize)
+      // A RECORD SPLIT IN MORE CHUNKS BECOMES VISIBLE ONLY WHEN ALL ITS CHUNKS ARE LINKED
+      chunks.add(createChunk(fullEntry, from, Math.min(from + chunkSize, fullEntry.length), from == 0
+          && fullEntry.length <= chunkSize));
+    return chunks;
+  }
+
   private OPhysicalPosition createPhysicalPosition(byte recordType, long firstPagePointer, ORecordVersion version) {
     final OPhysicalPosition physicalPosition = new OPhysicalPosition();
     physicalPosition.recordType = recordType;
@@ -437,29 +429,35 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
       long nextPagePointer = -1;
       ORecordVersion recordVersion = null;
       do {
-        long pointer = diskCache.load(fileId, pageIndex);
+        final Lock pageLatch = getPageLatch(pageIndex).readLock();
+        pageLatch.lock();
         try {
-          final OLocalPage localPage = new OLocalPage(pointer, false);
+          long pointer = diskCache.load(fileId, pageIndex);
+          try {
+            final OLocalPage localPage = new OLocalPage(pointer, false);
 
-          long recordPointer = localPage.getRecordPointer(recordPosition);
+            long recordPointer = localPage.getRecordPointer(recordPosition);
 
-          if (recordPointer == ODirectMemory.NULL_POINTER) {
-            if (recordChunks.isEmpty())
-              return null;
-            else
-              throw new OStorageException("Content of record " + new ORecordId(id, clusterPosition) + " was broken.");
-          }
+            if (recordPointer == ODirectMemory.NULL_POINTER) {
+              if (recordChunks.isEmpty())
+                return null;
+              else
+                throw new OStorageException("Content of record " + new ORecordId(id, clusterPosition) + " was broken.");
+            }
 
-          byte[] content = directMemory.get(recordPointer, localPage.getRecordSize(recordPosition));
+            byte[] content = directMemory.get(recordPointer, localPage.getRecordSize(recordPosition));
 
-          if (recordVersion == null)
-            recordVersion = localPage.getRecordVersion(recordPosition);
+            if (recordVersion == null)
+              recordVersion = localPage.getRecordVersion(recordPosition);
 
-          recordChunks.add(content);
-          nextPagePointer = OLongSerializer.INSTANCE.deserializeNative(content, content.length - OLongSerializer.LONG_SIZE);
-          contentSize += content.length - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE;
+            recordChunks.add(content);
+            nextPagePointer = OLongSerializer.INSTANCE.deserializeNative(content, content.length - OLongSerializer.LONG_SIZE);
+            contentSize += content.length - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE;
+          } finally {
+            diskCache.release(fileId, pageIndex);
+          }
         } finally {
-          diskCache.release(fileId, pageIndex);
+          pageLatch.unlock();
         }
 
         pageIndex = nextPagePointer >>> PAGE_INDEX_OFFSET;
@@ -487,17 +485,99 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
       byte[] recordContent = new byte[fullContent.length - (2 * OByteSerializer.BYTE_SIZE) - OLongSerializer.LONG_SIZE];
       System.arraycopy(fullContent, fullContentPosition, recordContent, 0, recordContent.length);
 
-      recordContent = Snappy.uncompress(recordContent, 0, recordContent.length);
+      recordContent = compression.uncompress(recordContent);
       return new ORawBuffer(recordContent, recordVersion, recordType);
     } finally {
       releaseSharedLock();
     }
   }
 
+  /**
+   * Reads the record in the form it's stored, without uncompressing it. The content is copied from the pages straight in the
+   * buffer passed, or in a new array if the buffer is too small, so no intermediate copy is made.
+   *
+   * @param iBuffer
+   *          Buffer to fill, can be null
+   * @return The stored record or null if not found
+   */
+  public OStoredRecord readStoredRecord(final OClusterPosition clusterPosition, final byte[] iBuffer) throws IOException {
+    acquireSharedLock();
+    try {
+      long pagePointer = clusterPosition.longValue();
+      int recordPosition = (int) (pagePointer & RECORD_POSITION_MASK);
+
+      long pageIndex = pagePointer >>> PAGE_INDEX_OFFSET;
+
+      if (diskCache.getFilledUpTo(fileId) < pageIndex)
+        return null;
+
+      byte[] content = iBuffer != null ? iBuffer : new byte[0];
+      int contentSize = 0;
+
+      long nextPagePointer = -1;
+      ORecordVersion recordVersion = null;
+      byte recordType = 0;
+      do {
+        final Lock pageLatch = getPageLatch(pageIndex).readLock();
+        pageLatch.lock();
+        try {
+          long pointer = diskCache.load(fileId, pageIndex);
+          try {
+            final OLocalPage localPage = new OLocalPage(pointer, false);
+
+            long recordPointer = localPage.getRecordPointer(recordPosition);
+
+            if (recordPointer == ODirectMemory.NULL_POINTER) {
+              if (recordVersion == null)
+                return null;
+              else
+                throw new OStorageException("Content of record " + new ORecordId(id, clusterPosition) + " was broken.");
+            }
+
+            final int chunkSize = localPage.getRecordSize(recordPosition) - OByteSerializer.BYTE_SIZE - OLongSerializer.LONG_SIZE;
+
+            // THE FIRST CHUNK STARTS WITH THE RECORD TYPE
+            int chunkOffset = 0;
+            if (recordVersion == null) {
+              recordVersion = localPage.getRecordVersion(recordPosition);
+              recordType = directMemory.getByte(recordPointer);
+              chunkOffset = OByteSerializer.BYTE_SIZE;
+            }
+
+            final int copySize = chunkSize - chunkOffset;
+            if (contentSize + copySize > content.length) {
+              final byte[] newContent = new byte[Math.max(contentSize + copySize, content.length << 1)];
+              System.arraycopy(content, 0, newContent, 0, contentSize);
+              content = newContent;
+            }
+
+            directMemory.get(recordPointer + chunkOffset, content, contentSize, copySize);
+            contentSize += copySize;
+
+            nextPagePointer = OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, recordPointer + chunkSize
+                + OByteSerializer.BYTE_SIZE);
+          } finally {
+            diskCache.release(fileId, pageIndex);
+          }
+        } finally {
+          pageLatch.unlock();
+        }
+
+        pageIndex = nextPagePointer >>> PAGE_INDEX_OFFSET;
+        recordPosition = (int) (nextPagePointer & RECORD_POSITION_MASK);
+      } while (nextPagePointer >= 0);
+
+      // THE COMPRESSION CAN'T CHANGE WHILE THE SHARED LOCK IS HELD
+      return new OStoredRecord(content, contentSize, recordVersion, recordType, compression);
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
   public boolean deleteRecord(OClusterPosition clusterPosition) throws IOException {
     externalModificationLock.requestModificationLock();
     try {
-      acquireExclusiveLock();
+      acquireSharedLock();
       try {
         long pagePointer = clusterPosition.longValue();
         int recordPosition = (int) (pagePointer & RECORD_POSITION_MASK);
@@ -510,44 +590,48 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
         long nextPagePointer = -1;
         int removedContentSize = 0;
         do {
-          long pointer = diskCache.load(fileId, pageIndex);
-          int initialFreePageIndex;
+          final Lock pageLatch = getPageLatch(pageIndex).writeLock();
+          pageLatch.lock();
           try {
-            final OLocalPage localPage = new OLocalPage(pointer, false);
-            initialFreePageIndex = calculateFreePageIndex(localPage);
+            long pointer = diskCache.load(fileId, pageIndex);
+            try {
+              final OLocalPage localPage = new OLocalPage(pointer, false);
 
-            long recordPointer = localPage.getRecordPointer(recordPosition);
-            if (recordPointer == ODirectMemory.NULL_POINTER) {
-              if (removedContentSize == 0)
-                return false;
-              else
-                throw new OStorageException("Content of record " + new ORecordId(id, clusterPosition) + " was broken.");
-            }
+              long recordPointer = localPage.getRecordPointer(recordPosition);
+              if (recordPointer == ODirectMemory.NULL_POINTER) {
+                if (removedContentSize == 0)
+                  return false;
+                else
+                  throw new OStorageException("Content of record " + new ORecordId(id, clusterPosition) + " was broken.");
+              }
 
-            byte[] content = directMemory.get(recordPointer, localPage.getRecordSize(recordPosition));
+              byte[] content = directMemory.get(recordPointer, localPage.getRecordSize(recordPosition));
 
-            int initialFreeSpace = localPage.getFreeSpace();
-            localPage.deleteRecord(recordPosition);
+              int initialFreeSpace = localPage.getFreeSpace();
+              localPage.deleteRecord(recordPosition);
 
-            removedContentSize += localPage.getFreeSpace() - initialFreeSpace;
-            nextPagePointer = OLongSerializer.INSTANCE.deserializeNative(content, content.length - OLongSerializer.LONG_SIZE);
+              removedContentSize += localPage.getFreeSpace() - initialFreeSpace;
+              nextPagePointer = OLongSerializer.INSTANCE.deserializeNative(content, content.length - OLongSerializer.LONG_SIZE);
+
+              freeSpaceMap.update(pageIndex, calculateFreePageIndex(localPage));
+            } finally {
+              diskCache.markDirty(fileId, pageIndex);
+              diskCache.release(fileId, pageIndex);
+            }
           } finally {
-            diskCache.markDirty(fileId, pageIndex);
-            diskCache.release(fileId, pageIndex);
+            pageLatch.unlock();
           }
 
-          updateFreePagesIndex(initialFreePageIndex, pageIndex);
-
           pageIndex = nextPagePointer >>> PAGE_INDEX_OFFSET;
           recordPosition = (int) (nextPagePointer & RECORD_POSITION_MASK);
         } while (nextPagePointer >= 0);
 
-        size--;
-        recordsSize -= removedContentSize;
+        size.decrementAndGet();
+        recordsSize.addAndGet(-removedContentSize);
 
         return true;
       } finally {
-        releaseExclusiveLock();
+        releaseSharedLock();
       }
     } finally {
       externalModificationLock.releaseModificationLock();
@@ -556,305 +640,317 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
   public void updateRecord(OClusterPosition clusterPosition, byte[] content, final ORecordVersion recordVersion,
       final byte recordType) throws IOException {
+    // COMPRESSION IS EXECUTED OUTSIDE OF ANY LOCK
+    final OCompression recordCompression = compression;
+    byte[] fullEntry = createFullEntry(recordCompression.compress(content), recordType);
+
     externalModificationLock.requestModificationLock();
     try {
-      acquireExclusiveLock();
+      acquireSharedLock();
       try {
-        content = Snappy.compress(content);
+        if (recordCompression != compression)
+          // THE COMPRESSION HAS BEEN CHANGED IN THE MEANWHILE
+          fullEntry = createFullEntry(compression.compress(content), recordType);
 
-        long firstPagePointer = clusterPosition.longValue();
-        int recordPosition = (int) (firstPagePointer & RECORD_POSITION_MASK);
-
-        long firstPageIndex = firstPagePointer >>> PAGE_INDEX_OFFSET;
-
-        if (diskCache.getFilledUpTo(fileId) < firstPageIndex)
-          return;
-
-        long firstPageMemoryPointer = diskCache.load(fileId, firstPageIndex);
-        int firstPageFreeIndex;
-        int recordsSizeDiff;
-
-        try {
-          final OLocalPage firstPage = new OLocalPage(firstPageMemoryPointer, false);
-          firstPageFreeIndex = calculateFreePageIndex(firstPage);
-
-          long oldRecordChunkPointer = firstPage.getRecordPointer(recordPosition);
-          if (oldRecordChunkPointer == ODirectMemory.NULL_POINTER)
-            return;
-
-          long nextPagePointer = OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, oldRecordChunkPointer
-              + firstPage.getRecordSize(recordPosition) - OLongSerializer.LONG_SIZE);
+        updateEntry(clusterPosition, fullEntry, recordVersion);
+      } finally {
+        releaseSharedLock();
+      }
+    } finally {
+      externalModificationLock.releaseModificationLock();
+    }
+  }
 
-          int freeSpace = firstPage.getFreeSpace();
-          firstPage.deleteRecord(recordPosition);
-          recordsSizeDiff = freeSpace - firstPage.getFreeSpace();
+  private void updateEntry(final OClusterPosition clusterPosition, final byte[] fullEntry, final ORecordVersion recordVersion)
+      throws IOException {
+    long firstPagePointer = clusterPosition.longValue();
+    int recordPosition = (int) (firstPagePointer & RECORD_POSITION_MASK);
 
-          while (nextPagePointer >= 0) {
-            long secondaryPageIndex = nextPagePointer >>> PAGE_INDEX_OFFSET;
-            int secondaryRecordPosition = (int) (nextPagePointer & RECORD_POSITION_MASK);
+    long firstPageIndex = firstPagePointer >>> PAGE_INDEX_OFFSET;
 
-            long pointer = diskCache.load(fileId, secondaryPageIndex);
-            try {
-              OLocalPage localPage = new OLocalPage(pointer, false);
-              int secondaryFreePageIndex = calculateFreePageIndex(localPage);
-              oldRecordChunkPointer = localPage.getRecordPointer(secondaryRecordPosition);
+    if (diskCache.getFilledUpTo(fileId) < firstPageIndex)
+      return;
 
-              if (oldRecordChunkPointer == ODirectMemory.NULL_POINTER)
-                throw new OStorageException("Data for record with id " + new ORecordId(id, clusterPosition) + " are broken.");
+    long nextPagePointer;
+    int recordsSizeDiff;
+    int to;
 
-              nextPagePointer = OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, oldRecordChunkPointer
-                  + localPage.getRecordSize(secondaryRecordPosition) - OLongSerializer.LONG_SIZE);
+    // THE FIRST CHUNK IS REPLACED UNDER THE LATCH OF ITS PAGE TO KEEP THE SAME POSITION, THE REST OF THE RECORD IS PROTECTED
+    // BY THE RECORD LOCK OF THE STORAGE
+    final Lock firstPageLatch = getPageLatch(firstPageIndex).writeLock();
+    firstPageLatch.lock();
+    try {
+      long firstPageMemoryPointer = diskCache.load(fileId, firstPageIndex);
+      try {
+        final OLocalPage firstPage = new OLocalPage(firstPageMemoryPointer, false);
 
-              freeSpace = localPage.getFreeSpace();
-              localPage.deleteRecord(secondaryRecordPosition);
-              recordsSizeDiff += freeSpace - localPage.getFreeSpace();
+        long oldRecordChunkPointer = firstPage.getRecordPointer(recordPosition);
+        if (oldRecordChunkPointer == ODirectMemory.NULL_POINTER)
+          return;
 
-              updateFreePagesIndex(secondaryFreePageIndex, secondaryPageIndex);
-            } finally {
-              diskCache.markDirty(fileId, secondaryPageIndex);
-              diskCache.release(fileId, secondaryPageIndex);
-            }
-          }
+        nextPagePointer = OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, oldRecordChunkPointer
+            + firstPage.getRecordSize(recordPosition) - OLongSerializer.LONG_SIZE);
 
-          int entrySize = content.length + OByteSerializer.BYTE_SIZE;
+        int freeSpace = firstPage.getFreeSpace();
+        firstPage.deleteRecord(recordPosition);
+        recordsSizeDiff = freeSpace - firstPage.getFreeSpace();
 
-          int fullEntryPosition = 0;
-          byte[] fullEntry = new byte[entrySize];
+        to = firstPage.getMaxRecordSize() - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE;
+        if (to > fullEntry.length)
+          to = fullEntry.length;
 
-          fullEntry[fullEntryPosition] = recordType;
-          fullEntryPosition++;
+        int initialFreeSpace = firstPage.getFreeSpace();
+        final long newFirstPagePointer = (firstPageIndex << PAGE_INDEX_OFFSET)
+            | firstPage.appendRecord(recordVersion, createChunk(fullEntry, 0, to, true));
+        assert newFirstPagePointer == firstPagePointer;
 
-          System.arraycopy(content, 0, fullEntry, fullEntryPosition, content.length);
+        recordsSizeDiff += initialFreeSpace - firstPage.getFreeSpace();
 
-          int from = 0;
-          int to = firstPage.getMaxRecordSize() - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE;
-          if (to > fullEntry.length)
-            to = fullEntry.length;
+        freeSpaceMap.update(firstPageIndex, calculateFreePageIndex(firstPage));
+      } finally {
+        diskCache.markDirty(fileId, firstPageIndex);
+        diskCache.release(fileId, firstPageIndex);
+      }
+    } finally {
+      firstPageLatch.unlock();
+    }
 
-          byte[] entryContent = new byte[to - from + OLongSerializer.LONG_SIZE + OByteSerializer.BYTE_SIZE];
-          System.arraycopy(fullEntry, from, entryContent, 0, to - from);
+    while (nextPagePointer >= 0) {
+      long secondaryPageIndex = nextPagePointer >>> PAGE_INDEX_OFFSET;
+      int secondaryRecordPosition = (int) (nextPagePointer & RECORD_POSITION_MASK);
 
-          entryContent[entryContent.length - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE] = 1;
-          OLongSerializer.INSTANCE.serializeNative(-1L, entryContent, entryContent.length - OLongSerializer.LONG_SIZE);
+      final Lock pageLatch = getPageLatch(secondaryPageIndex).writeLock();
+      pageLatch.lock();
+      try {
+        long pointer = diskCache.load(fileId, secondaryPageIndex);
+        try {
+          OLocalPage localPage = new OLocalPage(pointer, false);
+          long oldRecordChunkPointer = localPage.getRecordPointer(secondaryRecordPosition);
 
-          int initialFreeSpace = firstPage.getFreeSpace();
-          nextPagePointer = (firstPageIndex << PAGE_INDEX_OFFSET) | firstPage.appendRecord(recordVersion, entryContent);
-          assert nextPagePointer == firstPagePointer;
+          if (oldRecordChunkPointer == ODirectMemory.NULL_POINTER)
+            throw new OStorageException("Data for record with id " + new ORecordId(id, clusterPosition) + " are broken.");
 
-          recordsSizeDiff += initialFreeSpace - firstPage.getFreeSpace();
+          nextPagePointer = OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, oldRecordChunkPointer
+              + localPage.getRecordSize(secondaryRecordPosition) - OLongSerializer.LONG_SIZE);
 
-          updateFreePagesIndex(firstPageFreeIndex, firstPageIndex);
+          int freeSpace = localPage.getFreeSpace();
+          localPage.deleteRecord(secondaryRecordPosition);
+          recordsSizeDiff += freeSpace - localPage.getFreeSpace();
 
-          from = to;
-          to = from + (OLocalPage.MAX_RECORD_SIZE - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE);
-          if (to > fullEntry.length)
-            to = fullEntry.length;
+          freeSpaceMap.update(secondaryPageIndex, calculateFreePageIndex(localPage));
+        } finally {
+          diskCache.markDirty(fileId, secondaryPageIndex);
+          diskCache.release(fileId, secondaryPageIndex);
+        }
+      } finally {
+        pageLatch.unlock();
+      }
+    }
 
-          long prevPagePointer = firstPagePointer;
-          while (to > from) {
-            entryContent = new byte[to - from + OLongSerializer.LONG_SIZE + OByteSerializer.BYTE_SIZE];
-            System.arraycopy(fullEntry, from, entryContent, 0, to - from);
+    int from = to;
+    to = from + (OLocalPage.MAX_RECORD_SIZE - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE);
+    if (to > fullEntry.length)
+      to = fullEntry.length;
 
-            entryContent[entryContent.length - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE] = 0;
+    long prevPagePointer = firstPagePointer;
+    while (to > from) {
+      final AddEntryResult addEntryResult = addEntry(recordVersion, createChunk(fullEntry, from, to, false));
+      recordsSizeDiff += addEntryResult.recordsSizeDiff;
 
-            OLongSerializer.INSTANCE.serializeNative(-1L, entryContent, entryContent.length - OLongSerializer.LONG_SIZE);
-            final AddEntryResult addEntryResult = addEntry(recordVersion, entryContent);
+      linkChunk(prevPagePointer, addEntryResult.pagePointer);
+      prevPagePointer = addEntryResult.pagePointer;
 
-            recordsSizeDiff += addEntryResult.recordsSizeDiff;
-            nextPagePointer = addEntryResult.pagePointer;
+      from = to;
+      to = from + (OLocalPage.MAX_RECORD_SIZE - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE);
+      if (to > fullEntry.length)
+        to = fullEntry.length;
+    }
 
-            long prevPageIndex = prevPagePointer >>> PAGE_INDEX_OFFSET;
-            int prevPageRecordPosition = (int) (prevPagePointer & RECORD_POSITION_MASK);
+    recordsSize.addAndGet(recordsSizeDiff);
+  }
 
-            long prevPageMemoryPointer = diskCache.load(fileId, prevPageIndex);
-            try {
-              final OLocalPage prevPage = new OLocalPage(prevPageMemoryPointer, false);
+  private static byte[] createFullEntry(byte[] content, byte recordType) {
+    final byte[] fullEntry = new byte[content.length + OByteSerializer.BYTE_SIZE];
+    fullEntry[0] = recordType;
+    System.arraycopy(content, 0, fullEntry, OByteSerializer.BYTE_SIZE, content.length);
+    return fullEntry;
+  }
 
-              final int recordSize = prevPage.getRecordSize(prevPageRecordPosition);
-              final long recordPointer = prevPage.getRecordPointer(prevPageRecordPosition);
+  /**
+   * Creates the chunk of a record: the content, the flag that tells if it's the first chunk of the record and the pointer to the
+   * next chunk, initially -1.
+   */
+  private static byte[] createChunk(byte[] fullEntry, int from, int to, boolean firstChunk) {
+    final byte[] entryContent = new byte[to - from + OByteSerializer.BYTE_SIZE + OLongSerializer.LONG_SIZE];
+    System.arraycopy(fullEntry, from, entryContent, 0, to - from);
+
+    entryContent[entryContent.length - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE] = (byte) (firstChunk ? 1 : 0);
+    OLongSerializer.INSTANCE.serializeNative(-1L, entryContent, entryContent.length - OLongSerializer.LONG_SIZE);
+    return entryContent;
+  }
 
-              OLongSerializer.INSTANCE.serializeInDirectMemory(nextPagePointer, directMemory, recordPointer + recordSize
-                  - OLongSerializer.LONG_SIZE);
-            } finally {
-              diskCache.markDirty(fileId, prevPageIndex);
-              diskCache.release(fileId, prevPageIndex);
-            }
+  private void linkChunk(long prevPagePointer, long nextPagePointer) throws IOException {
+    long prevPageIndex = prevPagePointer >>> PAGE_INDEX_OFFSET;
+    int prevPageRecordPosition = (int) (prevPagePointer & RECORD_POSITION_MASK);
 
-            prevPagePointer = nextPagePointer;
+    final Lock pageLatch = getPageLatch(prevPageIndex).writeLock();
+    pageLatch.lock();
+    try {
+      long prevPageMemoryPointer = diskCache.load(fileId, prevPageIndex);
+      try {
+        final OLocalPage prevPage = new OLocalPage(prevPageMemoryPointer, false);
 
-            from = to;
-            to = from + (OLocalPage.MAX_RECORD_SIZE - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE);
-            if (to > fullEntry.length)
-              to = fullEntry.length;
-          }
+        final int recordSize = prevPage.getRecordSize(prevPageRecordPosition);
+        final long recordPointer = prevPage.getRecordPointer(prevPageRecordPosition);
 
-          recordsSize += recordsSizeDiff;
-        } finally {
-          diskCache.markDirty(fileId, firstPageIndex);
-          diskCache.release(fileId, firstPageIndex);
-        }
+        OLongSerializer.INSTANCE.serializeInDirectMemory(nextPagePointer, directMemory, recordPointer + recordSize
+            - OLongSerializer.LONG_SIZE);
       } finally {
-        releaseExclusiveLock();
+        diskCache.markDirty(fileId, prevPageIndex);
+        diskCache.release(fileId, prevPageIndex);
       }
     } finally {
-      externalModificationLock.releaseModificationLock();
+      pageLatch.unlock();
     }
   }
 
-  private AddEntryResult addEntry(ORecordVersion recordVersion, byte[] entryContent) throws IOException {
-    final FindFreePageResult findFreePageResult = findFreePage(entryContent.length);
-
-    int freePageIndex = findFreePageResult.freePageIndex;
-    long pageIndex = findFreePageResult.pageIndex;
-    boolean newRecord = freePageIndex >= freePageLists.length;
+  /**
+   * Flags the first chunk of a record created in more chunks, so the record becomes visible only when all its chunks are linked.
+   */
+  private void publishRecord(long firstPagePointer) throws IOException {
+    long pageIndex = firstPagePointer >>> PAGE_INDEX_OFFSET;
+    int recordPosition = (int) (firstPagePointer & RECORD_POSITION_MASK);
 
-    long pagePointer = diskCache.load(fileId, pageIndex);
-    int recordSizesDiff;
-    int position;
-    final ORecordVersion finalVersion;
+    final Lock pageLatch = getPageLatch(pageIndex).writeLock();
+    pageLatch.lock();
     try {
-      final OLocalPage localPage = new OLocalPage(pagePointer, newRecord);
-      assert newRecord || freePageIndex == calculateFreePageIndex(localPage);
-
-      int initialFreeSpace = localPage.getFreeSpace();
-
-      position = localPage.appendRecord(recordVersion, entryContent);
-      assert position >= 0;
-
-      finalVersion = localPage.getRecordVersion(position);
+      long pointer = diskCache.load(fileId, pageIndex);
+      try {
+        final OLocalPage localPage = new OLocalPage(pointer, false);
 
-      int freeSpace = localPage.getFreeSpace();
-      recordSizesDiff = initialFreeSpace - freeSpace;
+        final long recordPointer = localPage.getRecordPointer(recordPosition);
+        directMemory.setByte(recordPointer + localPage.getRecordSize(recordPosition) - OLongSerializer.LONG_SIZE
+            - OByteSerializer.BYTE_SIZE, (byte) 1);
+      } finally {
+        diskCache.markDirty(fileId, pageIndex);
+        diskCache.release(fileId, pageIndex);
+      }
     } finally {
-      diskCache.markDirty(fileId, pageIndex);
-      diskCache.release(fileId, pageIndex);
+      pageLatch.unlock();
     }
-
-    updateFreePagesIndex(freePageIndex, pageIndex);
-
-    return new AddEntryResult((pageIndex << PAGE_INDEX_OFFSET) | position, finalVersion, recordSizesDiff);
   }
 
-  private FindFreePageResult findFreePage(int contentSize) throws IOException {
+  private AddEntryResult addEntry(ORecordVersion recordVersion, byte[] entryContent) throws IOException {
     while (true) {
-      int freePageIndex = contentSize / ONE_KB;
-      freePageIndex -= PAGINATED_STORAGE_LOWEST_FREELIST_BOUNDARY.getValueAsInteger();
-      if (freePageIndex < 0)
-        freePageIndex = 0;
+      // THE PAGE IS RETURNED ALREADY LATCHED
+      final long pageIndex = findFreePage(entryContent.length);
+      final Lock pageLatch = getPageLatch(pageIndex).writeLock();
+      try {
+        long pagePointer = diskCache.load(fileId, pageIndex);
+        try {
+          final OLocalPage localPage = new OLocalPage(pagePointer, false);
 
-      long pageIndex;
-      do {
-        pageIndex = freePageLists[freePageIndex];
-        freePageIndex++;
-      } while (pageIndex < 0 && freePageIndex < freePageLists.length);
+          int initialFreeSpace = localPage.getFreeSpace();
 
-      if (pageIndex < 0)
-        pageIndex = diskCache.getFilledUpTo(fileId);
-      else
-        freePageIndex--;
+          final int position = localPage.appendRecord(recordVersion, entryContent);
+          freeSpaceMap.update(pageIndex, calculateFreePageIndex(localPage));
+          if (position < 0)
+            continue;
 
-      if (freePageIndex < freePageLists.length) {
-        long pointer = diskCache.load(fileId, pageIndex);
-        int realFreePageIndex;
-        try {
-          OLocalPage localPage = new OLocalPage(pointer, false);
-          realFreePageIndex = calculateFreePageIndex(localPage);
+          final ORecordVersion finalVersion = localPage.getRecordVersion(position);
+          final int recordSizesDiff = initialFreeSpace - localPage.getFreeSpace();
+
+          return new AddEntryResult((pageIndex << PAGE_INDEX_OFFSET) | position, finalVersion, recordSizesDiff);
         } finally {
+          diskCache.markDirty(fileId, pageIndex);
           diskCache.release(fileId, pageIndex);
         }
-
-        if (realFreePageIndex != freePageIndex) {
-          OLogManager.instance().warn(this,
-              "Page in file %s with index %d was placed in wrong free list, this error will be fixed automatically.",
-              name + DEF_EXTENSION, pageIndex);
-
-          updateFreePagesIndex(freePageIndex, pageIndex);
-          continue;
-        }
+      } finally {
+        pageLatch.unlock();
       }
-
-      return new FindFreePageResult(pageIndex, freePageIndex);
     }
   }
 
-  private void updateFreePagesIndex(int prevFreePageIndex, long pageIndex) throws IOException {
-    long pointer = diskCache.load(fileId, pageIndex);
-    try {
-      final OLocalPage localPage = new OLocalPage(pointer, false);
+  /**
+   * Finds a page with enough space for the content and returns it with its write latch acquired. Busy pages are skipped and waited
+   * for only if no other page is available, as last option a new page is appended to the file.
+   */
+  private long findFreePage(int contentSize) throws IOException {
+    int freePageIndex = contentSize / ONE_KB;
+    freePageIndex -= PAGINATED_STORAGE_LOWEST_FREELIST_BOUNDARY.getValueAsInteger();
+    if (freePageIndex < 0)
+      freePageIndex = 0;
+
+    long busyPageIndex = -1;
+    for (Iterator<Long> it = freeSpaceMap.pages(freePageIndex); it.hasNext();) {
+      final long pageIndex = it.next();
+
+      final Lock pageLatch = getPageLatch(pageIndex).writeLock();
+      if (!pageLatch.tryLock()) {
+        if (busyPageIndex < 0)
+          busyPageIndex = pageIndex;
+        continue;
+      }
 
-      int newFreePageIndex = calculateFreePageIndex(localPage);
+      if (hasSpace(pageIndex, contentSize))
+        return pageIndex;
 
-      if (prevFreePageIndex == newFreePageIndex)
-        return;
+      pageLatch.unlock();
+    }
 
-      long nextPageIndex = localPage.getNextPage();
-      long prevPageIndex = localPage.getPrevPage();
+    if (busyPageIndex >= 0) {
+      final Lock pageLatch = getPageLatch(busyPageIndex).writeLock();
+      pageLatch.lock();
 
-      if (prevPageIndex >= 0) {
-        long prevPagePointer = diskCache.load(fileId, prevPageIndex);
-        try {
-          final OLocalPage prevPage = new OLocalPage(prevPagePointer, false);
-          assert calculateFreePageIndex(prevPage) == prevFreePageIndex;
-          prevPage.setNextPage(nextPageIndex);
-        } finally {
-          diskCache.markDirty(fileId, prevPageIndex);
-          diskCache.release(fileId, prevPageIndex);
-        }
-      }
+      if (hasSpace(busyPageIndex, contentSize))
+        return busyPageIndex;
 
-      if (nextPageIndex >= 0) {
-        long nextPagePointer = diskCache.load(fileId, nextPageIndex);
-        try {
-          final OLocalPage nextPage = new OLocalPage(nextPagePointer, false);
-          assert calculateFreePageIndex(nextPage) == prevFreePageIndex;
-          nextPage.setPrevPage(prevPageIndex);
-        } finally {
-          diskCache.markDirty(fileId, nextPageIndex);
-          diskCache.release(fileId, nextPageIndex);
-        }
-      }
+      pageLatch.unlock();
+    }
 
-      localPage.setNextPage(-1);
-      localPage.setPrevPage(-1);
+    synchronized (pageAllocationLock) {
+      final long pageIndex = diskCache.getFilledUpTo(fileId);
 
-      if (prevFreePageIndex < 0 && newFreePageIndex < 0)
-        return;
+      // THE LATCH IS ACQUIRED BEFORE THE PAGE IS VISIBLE TO THE READERS
+      getPageLatch(pageIndex).writeLock().lock();
 
-      if (prevFreePageIndex >= 0 && prevFreePageIndex < freePageLists.length) {
-        if (prevPageIndex < 0)
-          freePageLists[prevFreePageIndex] = nextPageIndex;
+      long pointer = diskCache.load(fileId, pageIndex);
+      try {
+        new OLocalPage(pointer, true);
+      } finally {
+        diskCache.markDirty(fileId, pageIndex);
+        diskCache.release(fileId, pageIndex);
       }
+      return pageIndex;
+    }
+  }
 
-      if (newFreePageIndex >= 0) {
-        long oldFreePage = freePageLists[newFreePageIndex];
-        if (oldFreePage >= 0) {
-          long oldFreePagePointer = diskCache.load(fileId, oldFreePage);
-          try {
-            final OLocalPage oldFreeLocalPage = new OLocalPage(oldFreePagePointer, false);
-            assert calculateFreePageIndex(oldFreeLocalPage) == newFreePageIndex;
-
-            oldFreeLocalPage.setPrevPage(pageIndex);
-          } finally {
-            diskCache.markDirty(fileId, oldFreePage);
-            diskCache.release(fileId, oldFreePage);
-          }
-
-          localPage.setNextPage(oldFreePage);
-          localPage.setPrevPage(-1);
-        }
+  /**
+   * Checks the free space of a page already latched. If the page can't contain the content its position in the free space map is
+   * fixed.
+   */
+  private boolean hasSpace(long pageIndex, int contentSize) throws IOException {
+    long pointer = diskCache.load(fileId, pageIndex);
+    try {
+      final OLocalPage localPage = new OLocalPage(pointer, false);
+      if (localPage.getMaxRecordSize() >= contentSize)
+        return true;
 
-        freePageLists[newFreePageIndex] = pageIndex;
-      }
+      freeSpaceMap.update(pageIndex, calculateFreePageIndex(localPage));
+      return false;
     } finally {
-      diskCache.markDirty(fileId, pageIndex);
       diskCache.release(fileId, pageIndex);
     }
   }
 
+  private ReadWriteLock getPageLatch(long pageIndex) {
+    return pageLatches[(int) (pageIndex & (PAGE_LATCHES - 1))];
+  }
+
   private int calculateFreePageIndex(OLocalPage localPage) {
     int newFreePageIndex;
     if (localPage.isEmpty())
-      newFreePageIndex = freePageLists.length - 1;
+      newFreePageIndex = freeSpaceMap.getBucketsCount() - 1;
     else {
       newFreePageIndex = (localPage.getMaxRecordSize() - (ONE_KB - 1)) / ONE_KB;
 
@@ -884,11 +980,10 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
         diskCache.truncateFile(fileId);
         clusterStateHolder.truncate();
 
-        size = 0;
-        recordsSize = 0;
+        size.set(0);
+        recordsSize.set(0);
 
-        for (int i = 0; i < freePageLists.length; i++)
-          freePageLists[i] = -1;
+        freeSpaceMap.clear();
       } finally {
         releaseExclusiveLock();
       }
@@ -926,30 +1021,36 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
       if (pageIndex >= pagesCount)
         return null;
 
-      long pointer = diskCache.load(fileId, pageIndex);
+      final Lock pageLatch = getPageLatch(pageIndex).readLock();
+      pageLatch.lock();
       try {
-        final OLocalPage localPage = new OLocalPage(pointer, false);
-        long recordPointer = localPage.getRecordPointer(recordPosition);
+        long pointer = diskCache.load(fileId, pageIndex);
+        try {
+          final OLocalPage localPage = new OLocalPage(pointer, false);
+          long recordPointer = localPage.getRecordPointer(recordPosition);
 
-        if (recordPointer == ODirectMemory.NULL_POINTER)
-          return null;
+          if (recordPointer == ODirectMemory.NULL_POINTER)
+            return null;
 
-        int recordSize = localPage.getRecordSize(recordPosition);
-        if (directMemory.getByte(recordPointer + recordSize - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE) == 0)
-          return null;
+          int recordSize = localPage.getRecordSize(recordPosition);
+          if (directMemory.getByte(recordPointer + recordSize - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE) == 0)
+            return null;
 
-        final OPhysicalPosition physicalPosition = new OPhysicalPosition();
-        physicalPosition.dataSegmentId = -1;
-        physicalPosition.dataSegmentPos = -1;
-        physicalPosition.recordSize = -1;
+          final OPhysicalPosition physicalPosition = new OPhysicalPosition();
+          physicalPosition.dataSegmentId = -1;
+          physicalPosition.dataSegmentPos = -1;
+          physicalPosition.recordSize = -1;
 
-        physicalPosition.recordType = directMemory.getByte(recordPointer);
-        physicalPosition.recordVersion = localPage.getRecordVersion(recordPosition);
-        physicalPosition.clusterPosition = position.clusterPosition;
+          physicalPosition.recordType = directMemory.getByte(recordPointer);
+          physicalPosition.recordVersion = localPage.getRecordVersion(recordPosition);
+          physicalPosition.clusterPosition = position.clusterPosition;
 
-        return physicalPosition;
+          return physicalPosition;
+        } finally {
+          diskCache.release(fileId, pageIndex);
+        }
       } finally {
-        diskCache.release(fileId, pageIndex);
+        pageLatch.unlock();
       }
 
     } finally {
@@ -979,7 +1080,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
   @Override
   public long getEntries() {
-    return size;
+    return size.get();
   }
 
   @Override
@@ -1002,28 +1103,34 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     try {
       long pagesCount = diskCache.getFilledUpTo(fileId);
       for (long i = pagesCount - 1; i >= 0; i--) {
-        long pagePointer = diskCache.load(fileId, i);
+        final Lock pageLatch = getPageLatch(i).readLock();
+        pageLatch.lock();
         try {
-          final OLocalPage localPage = new OLocalPage(pagePointer, false);
-          final int recordsCount = localPage.getRecordsCount();
+          long pagePointer = diskCache.load(fileId, i);
+          try {
+            final OLocalPage localPage = new OLocalPage(pagePointer, false);
+            final int recordsCount = localPage.getRecordsCount();
 
-          if (recordsCount > 0) {
-            int recordPosition = Integer.MAX_VALUE;
+            if (recordsCount > 0) {
+              int recordPosition = Integer.MAX_VALUE;
 
-            for (int n = 0; n < recordsCount; n++) {
-              recordPosition = localPage.findLastRecord(recordPosition);
+              for (int n = 0; n < recordsCount; n++) {
+                recordPosition = localPage.findLastRecord(recordPosition);
 
-              long recordPointer = localPage.getRecordPointer(recordPosition);
-              int recordSize = localPage.getRecordSize(recordPosition);
+                long recordPointer = localPage.getRecordPointer(recordPosition);
+                int recordSize = localPage.getRecordSize(recordPosition);
 
-              if (directMemory.getByte(recordPointer + recordSize - OByteSerializer.BYTE_SIZE - OLongSerializer.LONG_SIZE) == 1)
-                return OClusterPositionFactory.INSTANCE.valueOf((i << PAGE_INDEX_OFFSET) | recordPosition);
+                if (directMemory.getByte(recordPointer + recordSize - OByteSerializer.BYTE_SIZE - OLongSerializer.LONG_SIZE) == 1)
+                  return OClusterPositionFactory.INSTANCE.valueOf((i << PAGE_INDEX_OFFSET) | recordPosition);
 
-              recordPosition--;
+                recordPosition--;
+              }
             }
+          } finally {
+            diskCache.release(fileId, i);
           }
         } finally {
-          diskCache.release(fileId, i);
+          pageLatch.unlock();
         }
       }
 
@@ -1085,7 +1192,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
   public long getRecordsSize() throws IOException {
     acquireSharedLock();
     try {
-      return recordsSize;
+      return recordsSize.get();
     } finally {
       releaseSharedLock();
     }
@@ -1177,45 +1284,51 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
   private OPhysicalPosition[] findFirstPhysicalPosition(long pageIndex, int recordPosition) throws IOException {
     long pagesCount = diskCache.getFilledUpTo(fileId);
     pageLoop: for (long i = pageIndex; i < pagesCount; i++) {
-      long pointer = diskCache.load(fileId, i);
-
+      final Lock pageLatch = getPageLatch(i).readLock();
+      pageLatch.lock();
       try {
-        final OLocalPage localPage = new OLocalPage(pointer, false);
-
-        int recordsCount = localPage.getRecordsCount();
-
-        if (recordsCount > 0) {
-          while (true) {
-            recordPosition = localPage.findFirstRecord(recordPosition);
-            if (recordPosition < 0) {
-              recordPosition = 0;
-              continue pageLoop;
-            } else {
-              long recordPointer = localPage.getRecordPointer(recordPosition);
-              int recordSize = localPage.getRecordSize(recordPosition);
-
-              if (directMemory.getByte(recordPointer + recordSize - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE) == 1) {
-                OPhysicalPosition physicalPosition = new OPhysicalPosition();
+        long pointer = diskCache.load(fileId, i);
 
-                physicalPosition.clusterPosition = OClusterPositionFactory.INSTANCE.valueOf((i << PAGE_INDEX_OFFSET)
-                    | recordPosition);
-                physicalPosition.recordVersion = localPage.getRecordVersion(recordPosition);
-                physicalPosition.recordType = directMemory.getByte(recordPointer);
+        try {
+          final OLocalPage localPage = new OLocalPage(pointer, false);
 
-                physicalPosition.recordSize = -1;
-                physicalPosition.dataSegmentId = -1;
-                physicalPosition.dataSegmentPos = -1;
+          int recordsCount = localPage.getRecordsCount();
 
-                return new OPhysicalPosition[] { physicalPosition };
+          if (recordsCount > 0) {
+            while (true) {
+              recordPosition = localPage.findFirstRecord(recordPosition);
+              if (recordPosition < 0) {
+                recordPosition = 0;
+                continue pageLoop;
+              } else {
+                long recordPointer = localPage.getRecordPointer(recordPosition);
+                int recordSize = localPage.getRecordSize(recordPosition);
+
+                if (directMemory.getByte(recordPointer + recordSize - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE) == 1) {
+                  OPhysicalPosition physicalPosition = new OPhysicalPosition();
+
+                  physicalPosition.clusterPosition = OClusterPositionFactory.INSTANCE.valueOf((i << PAGE_INDEX_OFFSET)
+                      | recordPosition);
+                  physicalPosition.recordVersion = localPage.getRecordVersion(recordPosition);
+                  physicalPosition.recordType = directMemory.getByte(recordPointer);
+
+                  physicalPosition.recordSize = -1;
+                  physicalPosition.dataSegmentId = -1;
+                  physicalPosition.dataSegmentPos = -1;
+
+                  return new OPhysicalPosition[] { physicalPosition };
+                }
+
+                recordPosition++;
               }
-
-              recordPosition++;
             }
           }
-        }
 
+        } finally {
+          diskCache.release(fileId, i);
+        }
       } finally {
-        diskCache.release(fileId, i);
+        pageLatch.unlock();
       }
     }
 
@@ -1233,44 +1346,50 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     }
 
     pageLoop: for (long i = endPageIndex; i >= 0; i--) {
-      long pointer = diskCache.load(fileId, i);
+      final Lock pageLatch = getPageLatch(i).readLock();
+      pageLatch.lock();
       try {
-        final OLocalPage localPage = new OLocalPage(pointer, false);
+        long pointer = diskCache.load(fileId, i);
+        try {
+          final OLocalPage localPage = new OLocalPage(pointer, false);
 
-        int recordsCount = localPage.getRecordsCount();
+          int recordsCount = localPage.getRecordsCount();
 
-        if (recordsCount > 0) {
-          while (true) {
-            recordPosition = localPage.findLastRecord(recordPosition);
-            if (recordPosition < 0) {
-              recordPosition = Integer.MAX_VALUE;
-              continue pageLoop;
-            } else {
-              long recordPointer = localPage.getRecordPointer(recordPosition);
-              int recordSize = localPage.getRecordSize(recordPosition);
+          if (recordsCount > 0) {
+            while (true) {
+              recordPosition = localPage.findLastRecord(recordPosition);
+              if (recordPosition < 0) {
+                recordPosition = Integer.MAX_VALUE;
+                continue pageLoop;
+              } else {
+                long recordPointer = localPage.getRecordPointer(recordPosition);
+                int recordSize = localPage.getRecordSize(recordPosition);
 
-              if (directMemory.getByte(recordPointer + recordSize - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE) == 1) {
-                OPhysicalPosition physicalPosition = new OPhysicalPosition();
+                if (directMemory.getByte(recordPointer + recordSize - OLongSerializer.LONG_SIZE - OByteSerializer.BYTE_SIZE) == 1) {
+                  OPhysicalPosition physicalPosition = new OPhysicalPosition();
 
-                physicalPosition.clusterPosition = OClusterPositionFactory.INSTANCE.valueOf((i << PAGE_INDEX_OFFSET)
-                    | recordPosition);
-                physicalPosition.recordVersion = localPage.getRecordVersion(recordPosition);
-                physicalPosition.recordType = directMemory.getByte(recordPointer);
+                  physicalPosition.clusterPosition = OClusterPositionFactory.INSTANCE.valueOf((i << PAGE_INDEX_OFFSET)
+                      | recordPosition);
+                  physicalPosition.recordVersion = localPage.getRecordVersion(recordPosition);
+                  physicalPosition.recordType = directMemory.getByte(recordPointer);
 
-                physicalPosition.recordSize = -1;
-                physicalPosition.dataSegmentId = -1;
-                physicalPosition.dataSegmentPos = -1;
+                  physicalPosition.recordSize = -1;
+                  physicalPosition.dataSegmentId = -1;
+                  physicalPosition.dataSegmentPos = -1;
 
-                return new OPhysicalPosition[] { physicalPosition };
-              }
+                  return new OPhysicalPosition[] { physicalPosition };
+                }
 
-              recordPosition--;
+                recordPosition--;
+              }
             }
           }
-        }
 
+        } finally {
+          diskCache.release(fileId, i);
+        }
       } finally {
-        diskCache.release(fileId, i);
+        pageLatch.unlock();
       }
     }
 
@@ -1278,25 +1397,36 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
   }
 
   private void storeClusterState() throws IOException {
+    final List<Map.Entry<Long, Integer>> freePages = freeSpaceMap.entries();
+
     clusterStateHolder.truncate();
-    final int stateSize = OIntegerSerializer.INT_SIZE + 2 * OLongSerializer.LONG_SIZE + freePageLists.length
-        * OLongSerializer.LONG_SIZE;
+    final int stateSize = 3 * OIntegerSerializer.INT_SIZE + 2 * OLongSerializer.LONG_SIZE + freePages.size()
+        * (OLongSerializer.LONG_SIZE + OIntegerSerializer.INT_SIZE);
     OFile file = clusterStateHolder.getFile();
     file.allocateSpace(stateSize);
 
     long fileOffset = 0;
-    file.writeLong(fileOffset, size);
+    file.writeLong(fileOffset, size.get());
     fileOffset += OLongSerializer.LONG_SIZE;
 
-    file.writeLong(fileOffset, recordsSize);
+    file.writeLong(fileOffset, recordsSize.get());
     fileOffset += OLongSerializer.LONG_SIZE;
 
-    file.writeInt(fileOffset, freePageLists.length);
+    file.writeInt(fileOffset, FREE_SPACE_MAP_STATE);
+    fileOffset += OIntegerSerializer.INT_SIZE;
+
+    file.writeInt(fileOffset, freeSpaceMap.getBucketsCount());
     fileOffset += OIntegerSerializer.INT_SIZE;
 
-    for (long freePageIndex : freePageLists) {
-      file.writeLong(fileOffset, freePageIndex);
+    file.writeInt(fileOffset, freePages.size());
+    fileOffset += OIntegerSerializer.INT_SIZE;
+
+    for (Map.Entry<Long, Integer> freePage : freePages) {
+      file.writeLong(fileOffset, freePage.getKey());
       fileOffset += OLongSerializer.LONG_SIZE;
+
+      file.writeInt(fileOffset, freePage.getValue());
+      fileOffset += OIntegerSerializer.INT_SIZE;
     }
   }
 
@@ -1304,64 +1434,51 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     OFile file = clusterStateHolder.getFile();
     long fileOffset = 0;
 
-    size = file.readLong(fileOffset);
+    size.set(file.readLong(fileOffset));
     fileOffset += OLongSerializer.LONG_SIZE;
 
-    recordsSize = file.readLong(fileOffset);
+    recordsSize.set(file.readLong(fileOffset));
     fileOffset += OLongSerializer.LONG_SIZE;
 
-    int freePageIndexesSize = file.readInt(fileOffset);
+    freeSpaceMap.clear();
+
+    // THE STATE WRITTEN BY THE PREVIOUS VERSIONS CONTAINS THE HEADS OF THE FREE LISTS: THE MAP IS REBUILT FROM THE PAGES
+    final int stateType = file.readInt(fileOffset);
     fileOffset += OIntegerSerializer.INT_SIZE;
+    if (stateType != FREE_SPACE_MAP_STATE) {
+      rebuildFreeSpaceMap();
+      return;
+    }
 
-    freePageLists = new long[freePageIndexesSize];
+    final int bucketsCount = file.readInt(fileOffset);
+    fileOffset += OIntegerSerializer.INT_SIZE;
+    if (bucketsCount != freeSpaceMap.getBucketsCount()) {
+      rebuildFreeSpaceMap();
+      return;
+    }
+
+    final int freePagesCount = file.readInt(fileOffset);
+    fileOffset += OIntegerSerializer.INT_SIZE;
 
-    for (int i = 0; i < freePageIndexesSize; i++) {
-      freePageLists[i] = file.readLong(fileOffset);
+    for (int i = 0; i < freePagesCount; i++) {
+      final long pageIndex = file.readLong(fileOffset);
       fileOffset += OLongSerializer.LONG_SIZE;
+
+      freeSpaceMap.update(pageIndex, file.readInt(fileOffset));
+      fileOffset += OIntegerSerializer.INT_SIZE;
     }
   }
 
-  private boolean checkFreePages() throws IOException {
-    long filledUpTo = diskCache.getFilledUpTo(fileId);
+  private void rebuildFreeSpaceMap() throws IOException {
+    final long filledUpTo = diskCache.getFilledUpTo(fileId);
     for (long i = 0; i < filledUpTo; i++) {
       long pointer = diskCache.load(fileId, i);
-      int freePageIndex;
       try {
-        final OLocalPage page = new OLocalPage(pointer, false);
-        freePageIndex = calculateFreePageIndex(page);
-        if (freePageIndex < 0)
-          continue;
+        freeSpaceMap.update(i, calculateFreePageIndex(new OLocalPage(pointer, false)));
       } finally {
         diskCache.release(fileId, i);
       }
-
-      if (!findInFreeList(freePageIndex, i))
-        return false;
     }
-
-    return true;
-  }
-
-  private boolean findInFreeList(int freePageIndex, long testPageIndex) throws IOException {
-    long pageIndex = freePageLists[freePageIndex];
-    long prevPageIndex = -1;
-    while (pageIndex != testPageIndex && pageIndex >= 0) {
-      long nextPageIndex;
-      long pointer = diskCache.load(fileId, pageIndex);
-      try {
-        final OLocalPage localPage = new OLocalPage(pointer, false);
-        assert prevPageIndex == localPage.getPrevPage();
-
-        prevPageIndex = pageIndex;
-        nextPageIndex = localPage.getNextPage();
-      } finally {
-        diskCache.release(fileId, pageIndex);
-      }
-
-      pageIndex = nextPageIndex;
-    }
-
-    return pageIndex == testPageIndex;
   }
 
   private static final class AddEntryResult {
@@ -1376,13 +1493,75 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     }
   }
 
-  private static final class FindFreePageResult {
-    private final long pageIndex;
-    private final int  freePageIndex;
+  /**
+   * Map of the pages with free space, grouped by the size of the biggest record they can contain. It's updated by the owner of the
+   * page latch, while the lookups don't lock anything: the free space of the page found is checked again under its latch.
+   */
+  private static final class OFreeSpaceMap {
+    private final List<ConcurrentSkipListSet<Long>> buckets;
+    private final ConcurrentHashMap<Long, Integer>  pageBuckets = new ConcurrentHashMap<Long, Integer>();
+
+    private OFreeSpaceMap(int bucketsCount) {
+      buckets = new ArrayList<ConcurrentSkipListSet<Long>>(bucketsCount);
+      for (int i = 0; i < bucketsCount; i++)
+        buckets.add(new ConcurrentSkipListSet<Long>());
+    }
+
+    private int getBucketsCount() {
+      return buckets.size();
+    }
+
+    /**
+     * Moves the page in the bucket, a negative bucket removes the page from the map.
+     */
+    private void update(long pageIndex, int bucket) {
+      final Integer prevBucket = bucket >= 0 ? pageBuckets.put(pageIndex, bucket) : pageBuckets.remove(pageIndex);
+      if (prevBucket != null && prevBucket == bucket)
+        return;
+
+      if (prevBucket != null)
+        buckets.get(prevBucket).remove(pageIndex);
+      if (bucket >= 0)
+        buckets.get(bucket).add(pageIndex);
+    }
+
+    /**
+     * Browses the pages of the bucket and of the bigger ones, starting from the lowest page index of each bucket.
+     */
+    private Iterator<Long> pages(final int fromBucket) {
+      return new Iterator<Long>() {
+        private int            bucket = fromBucket;
+        private Iterator<Long> current = buckets.get(fromBucket).iterator();
+
+        public boolean hasNext() {
+          while (!current.hasNext()) {
+            if (++bucket >= buckets.size())
+              return false;
+            current = buckets.get(bucket).iterator();
+          }
+          return true;
+        }
+
+        public Long next() {
+          if (!hasNext())
+            throw new NoSuchElementException();
+          return current.next();
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException("remove");
+        }
+      };
+    }
+
+    private List<Map.Entry<Long, Integer>> entries() {
+      return new ArrayList<Map.Entry<Long, Integer>>(pageBuckets.entrySet());
+    }
 
-    private FindFreePageResult(long pageIndex, int freePageIndex) {
-      this.pageIndex = pageIndex;
-      this.freePageIndex = freePageIndex;
+    private void clear() {
+      pageBuckets.clear();
+      for (ConcurrentSkipListSet<Long> bucket : buckets)
+        bucket.clear();
     }
   }
 }
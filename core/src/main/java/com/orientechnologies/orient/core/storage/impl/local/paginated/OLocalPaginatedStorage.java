@@ -63,6 +63,7 @@ import com.orientechnologies.orient.core.storage.ORecordCallback;
 import com.orientechnologies.orient.core.storage.ORecordMetadata;
 import com.orientechnologies.orient.core.storage.OStorage;
 import com.orientechnologies.orient.core.storage.OStorageOperationResult;
+import com.orientechnologies.orient.core.storage.OStoredRecord;
 import com.orientechnologies.orient.core.storage.impl.local.OClusterLocal;
 import com.orientechnologies.orient.core.storage.impl.local.ODataLocal;
 import com.orientechnologies.orient.core.storage.impl.local.OStorageConfigurationSegment;
@@ -89,7 +90,7 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
   private int                                       defaultClusterId    = -1;
 
   private static String[]                           ALL_FILE_EXTENSIONS = { ".ocf", ".pls", ".pcl", ".oda", ".odh", ".otx", ".ocs",
-      ".oef", ".oem", ".oet"                                           };
+      ".oef", ".oem", ".oet", ".sbt"                                   };
 
   private OModificationLock                         modificationLock    = new OModificationLock();
 
@@ -689,6 +690,44 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     }
   }
 
+  /**
+   * Reads the record in the form it's stored by the cluster, without uncompressing it. Used to send the records over the network
+   * and let the client uncompress them.
+   *
+   * @param iBuffer
+   *          Buffer to fill with the content if large enough, can be null
+   * @return The stored record or null if not found
+   * @see OLocalPaginatedCluster#readStoredRecord(com.orientechnologies.orient.core.id.OClusterPosition, byte[])
+   */
+  public OStoredRecord readStoredRecord(final ORecordId iRid, final byte[] iBuffer) {
+    checkOpeness();
+
+    if (!iRid.isPersistent())
+      throw new IllegalArgumentException("Cannot read record " + iRid + " since the position is invalid in database '" + name + '\'');
+
+    final OLocalPaginatedCluster cluster = getClusterById(iRid.clusterId);
+    cluster.getExternalModificationLock().requestModificationLock();
+    try {
+      lock.acquireSharedLock();
+      try {
+        lockManager.acquireLock(Thread.currentThread(), iRid, OLockManager.LOCK.SHARED);
+        try {
+          return cluster.readStoredRecord(iRid.clusterPosition, iBuffer);
+        } finally {
+          lockManager.releaseLock(Thread.currentThread(), iRid, OLockManager.LOCK.SHARED);
+        }
+
+      } catch (IOException e) {
+        OLogManager.instance().error(this, "Error on reading record " + iRid + " (cluster: " + cluster + ')', e);
+        return null;
+      } finally {
+        lock.releaseSharedLock();
+      }
+    } finally {
+      cluster.getExternalModificationLock().releaseModificationLock();
+    }
+  }
+
   public OStorageOperationResult<ORecordVersion> updateRecord(final ORecordId rid, final byte[] content,
       final ORecordVersion version, final byte recordType, final int mode, ORecordCallback<ORecordVersion> callback) {
     checkOpeness();
@@ -730,13 +769,19 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
 
             default:
               // MVCC CONTROL AND RECORD UPDATE OR WRONG VERSION VALUE
-              // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
-              if (!version.equals(ppos.recordVersion))
-                if (OFastConcurrentModificationException.enabled())
-                  throw OFastConcurrentModificationException.instance();
-                else
-                  throw new OConcurrentModificationException(rid, ppos.recordVersion, version, ORecordOperation.UPDATED);
-              ppos.recordVersion.increment();
+              if (version.getCounter() > -1) {
+                // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
+                if (!version.equals(ppos.recordVersion))
+                  if (OFastConcurrentModificationException.enabled())
+                    throw OFastConcurrentModificationException.instance();
+                  else
+                    throw new OConcurrentModificationException(rid, ppos.recordVersion, version, ORecordOperation.UPDATED);
+                ppos.recordVersion.increment();
+              } else {
+                // DOCUMENT ROLLBACKED
+                version.clearRollbackMode();
+                ppos.recordVersion.copyFrom(version);
+              }
             }
 
             cluster.updateRecord(rid.clusterPosition, content, ppos.recordVersion, recordType);
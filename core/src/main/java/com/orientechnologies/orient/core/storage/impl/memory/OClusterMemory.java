@@ -18,6 +18,9 @@ package com.orientechnologies.orient.core.storage.impl.memory;
 import java.io.IOException;
 
 import com.orientechnologies.common.concur.resource.OSharedResourceAdaptive;
+import com.orientechnologies.orient.core.compression.OCompression;
+import com.orientechnologies.orient.core.compression.OCompressionSampler;
+import com.orientechnologies.orient.core.compression.ONothingCompression;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.config.OStorageClusterConfiguration;
 import com.orientechnologies.orient.core.storage.OCluster;
@@ -31,6 +34,7 @@ public abstract class OClusterMemory extends OSharedResourceAdaptive implements
   private int                id;
   private String             name;
   private int                dataSegmentId;
+  private OCompression       compression = ONothingCompression.INSTANCE;
 
   public OClusterMemory() {
     super(OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean());
@@ -111,6 +115,10 @@ public abstract class OClusterMemory extends OSharedResourceAdaptive implements
     final String stringValue = iValue != null ? iValue.toString() : null;
 
     switch (iAttribute) {
+    case COMPRESSION:
+      ((OStorageMemory) storage).setClusterCompression(this, new OCompressionSampler(storage, id).resolve(stringValue));
+      break;
+
     case NAME:
       name = stringValue;
       break;
@@ -125,6 +133,17 @@ public abstract class OClusterMemory extends OSharedResourceAdaptive implements
     return id;
   }
 
+  public OCompression getCompression() {
+    return compression;
+  }
+
+  /**
+   * Changes the compression of the cluster. It's called by the storage once the records have been re-compressed.
+   */
+  protected void setCompression(final OCompression iCompression) {
+    compression = iCompression != null ? iCompression : ONothingCompression.INSTANCE;
+  }
+
   public String getName() {
     return name;
   }
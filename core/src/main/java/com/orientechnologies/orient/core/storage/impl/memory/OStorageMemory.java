@@ -21,6 +21,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +31,8 @@ import com.orientechnologies.common.concur.lock.OLockManager.LOCK;
 import com.orientechnologies.common.exception.OException;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.compression.OCompression;
+import com.orientechnologies.orient.core.compression.ONothingCompression;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.config.OStorageConfiguration;
 import com.orientechnologies.orient.core.db.record.ORecordOperation;
@@ -303,10 +306,10 @@ public class OStorageMemory extends OStorageEmbedded {
     lock.acquireSharedLock();
     try {
       final ODataSegmentMemory data = getDataSegmentById(iDataSegmentId);
-
-      final long offset = data.createRecord(iContent);
       final OCluster cluster = getClusterById(iRid.clusterId);
 
+      final long offset = data.createRecord(getCompression(cluster).compress(iContent));
+
       // ASSIGN THE POSITION IN THE CLUSTER
       final OPhysicalPosition ppos = new OPhysicalPosition(iDataSegmentId, offset, iRecordType);
       if (cluster.isHashBased()) {
@@ -372,7 +375,8 @@ public class OStorageMemory extends OStorageEmbedded {
 
         final ODataSegmentMemory dataSegment = getDataSegmentById(ppos.dataSegmentId);
 
-        return new ORawBuffer(dataSegment.readRecord(ppos.dataSegmentPos), ppos.recordVersion, ppos.recordType);
+        return new ORawBuffer(getCompression(iClusterSegment).uncompress(dataSegment.readRecord(ppos.dataSegmentPos)),
+            ppos.recordVersion, ppos.recordType);
 
       } finally {
         lockManager.releaseLock(Thread.currentThread(), iRid, LOCK.SHARED);
@@ -423,7 +427,7 @@ public class OStorageMemory extends OStorageEmbedded {
         }
 
         final ODataSegmentMemory dataSegment = getDataSegmentById(ppos.dataSegmentId);
-        dataSegment.updateRecord(ppos.dataSegmentPos, iContent);
+        dataSegment.updateRecord(ppos.dataSegmentPos, getCompression(cluster).compress(iContent));
 
         if (iCallback != null)
           iCallback.call(null, ppos.recordVersion);
@@ -459,6 +463,9 @@ public class OStorageMemory extends OStorageEmbedded {
     try {
       lockManager.acquireLock(Thread.currentThread(), rid, LOCK.EXCLUSIVE);
       try {
+        if (content != null)
+          content = getCompression(cluster).compress(content);
+
         OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
         if (ppos == null) {
           if (!cluster.isHashBased())
@@ -847,7 +854,16 @@ public class OStorageMemory extends OStorageEmbedded {
 
     lock.acquireExclusiveLock();
     try {
-      moveRecord(originalId, newId);
+      final OPhysicalPosition ppos = moveRecord(originalId, newId);
+
+      final OCompression originalCompression = getCompression(getClusterById(originalId.getClusterId()));
+      final OCompression newCompression = getCompression(getClusterById(newId.getClusterId()));
+      if (ppos.dataSegmentPos > -1 && !originalCompression.getSpecification().equals(newCompression.getSpecification())) {
+        // THE DESTINATION CLUSTER USES ANOTHER COMPRESSION
+        final ODataSegmentMemory dataSegment = getDataSegmentById(ppos.dataSegmentId);
+        dataSegment.updateRecord(ppos.dataSegmentPos,
+            newCompression.compress(originalCompression.uncompress(dataSegment.readRecord(ppos.dataSegmentPos))));
+      }
     } catch (IOException ioe) {
       OLogManager.instance().error(this, "Error on changing method identity from " + originalId + " to " + newId, ioe);
     } finally {
@@ -861,6 +877,40 @@ public class OStorageMemory extends OStorageEmbedded {
     }
   }
 
+  /**
+   * Re-compresses all the records of a cluster with a new compression. The storage is locked in exclusive mode for the whole
+   * operation.
+   * 
+   * @param iCompression
+   *          The new compression, or null to use the default one
+   */
+  public void setClusterCompression(final OClusterMemory iCluster, final OCompression iCompression) {
+    final OCompression newCompression = iCompression != null ? iCompression : ONothingCompression.INSTANCE;
+
+    lock.acquireExclusiveLock();
+    try {
+      final OCompression oldCompression = iCluster.getCompression();
+
+      if (!newCompression.getSpecification().equals(oldCompression.getSpecification()))
+        for (Iterator<OPhysicalPosition> it = iCluster.absoluteIterator(); it.hasNext();) {
+          final OPhysicalPosition ppos = iCluster.getPhysicalPosition(it.next());
+          if (ppos == null || ppos.dataSegmentPos < 0 || ppos.recordVersion.isTombstone())
+            continue;
+
+          final ODataSegmentMemory dataSegment = getDataSegmentById(ppos.dataSegmentId);
+          dataSegment.updateRecord(ppos.dataSegmentPos,
+              newCompression.compress(oldCompression.uncompress(dataSegment.readRecord(ppos.dataSegmentPos))));
+        }
+
+      iCluster.setCompression(iCompression);
+
+    } catch (IOException e) {
+      throw new OStorageException("Error on changing the compression of cluster '" + iCluster.getName() + "'", e);
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
   @Override
   public boolean checkForRecordValidity(final OPhysicalPosition ppos) {
     if (ppos.dataSegmentId > 0)
@@ -878,6 +928,10 @@ public class OStorageMemory extends OStorageEmbedded {
     return true;
   }
 
+  private OCompression getCompression(final OCluster iCluster) {
+    return ((OClusterMemory) iCluster).getCompression();
+  }
+
   private void commitEntry(final OTransaction iTx, final ORecordOperation txEntry) throws IOException {
 
     final ORecordId rid = (ORecordId) txEntry.getRecord().getIdentity();
@@ -24,6 +24,7 @@ import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.orientechnologies.common.concur.resource.OSharedResourceAdaptiveExternal;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabaseComplex.OPERATION_MODE;
@@ -34,7 +35,7 @@ import com.orientechnologies.orient.core.id.OClusterPositionFactory;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.index.OIndex;
-import com.orientechnologies.orient.core.index.OIndexMVRBTreeAbstract;
+import com.orientechnologies.orient.core.index.OIndexInternal;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
@@ -69,14 +70,14 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
         Collections.sort(involvedIndexes);
 
       // LOCK INVOLVED INDEXES
-      List<OIndexMVRBTreeAbstract<?>> lockedIndexes = null;
+      List<OIndexInternal<?>> lockedIndexes = null;
       try {
         if (involvedIndexes != null)
           for (String indexName : involvedIndexes) {
-            final OIndexMVRBTreeAbstract<?> index = (OIndexMVRBTreeAbstract<?>) database.getMetadata().getIndexManager()
+            final OIndexInternal<?> index = (OIndexInternal<?>) database.getMetadata().getIndexManager()
                 .getIndexInternal(indexName);
             if (lockedIndexes == null)
-              lockedIndexes = new ArrayList<OIndexMVRBTreeAbstract<?>>();
+              lockedIndexes = new ArrayList<OIndexInternal<?>>();
 
             index.acquireModificationLock();
             lockedIndexes.add(index);
@@ -96,7 +97,7 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
 
         if (indexesToLock != null && !indexesToLock.isEmpty()) {
           if (lockedIndexes == null)
-            lockedIndexes = new ArrayList<OIndexMVRBTreeAbstract<?>>();
+            lockedIndexes = new ArrayList<OIndexInternal<?>>();
 
           for (OIndex<?> index : indexesToLock) {
             for (Entry<ORID, ORecordOperation> entry : recordEntries.entrySet()) {
@@ -106,14 +107,15 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
                 if (!lockedIndexes.contains(index.getInternal()) && doc.getSchemaClass() != null && index.getDefinition() != null
                     && doc.getSchemaClass().isSubClassOf(index.getDefinition().getClassName())) {
                   index.getInternal().acquireModificationLock();
-                  lockedIndexes.add((OIndexMVRBTreeAbstract<?>) index.getInternal());
+                  lockedIndexes.add((OIndexInternal<?>) index.getInternal());
                 }
               }
             }
           }
 
-          for (OIndexMVRBTreeAbstract<?> index : lockedIndexes)
-            index.acquireExclusiveLock();
+          for (OIndexInternal<?> index : lockedIndexes)
+            if (index instanceof OSharedResourceAdaptiveExternal)
+              ((OSharedResourceAdaptiveExternal) index).acquireExclusiveLock();
         }
 
         database.getStorage().callInLock(new Callable<Void>() {
@@ -137,10 +139,11 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
       } finally {
         // RELEASE INDEX LOCKS IF ANY
         if (lockedIndexes != null) {
-          for (OIndexMVRBTreeAbstract<?> index : lockedIndexes)
-            index.releaseExclusiveLock();
+          for (OIndexInternal<?> index : lockedIndexes)
+            if (index instanceof OSharedResourceAdaptiveExternal)
+              ((OSharedResourceAdaptiveExternal) index).releaseExclusiveLock();
 
-          for (OIndexMVRBTreeAbstract<?> index : lockedIndexes)
+          for (OIndexInternal<?> index : lockedIndexes)
             index.releaseModificationLock();
 
         }
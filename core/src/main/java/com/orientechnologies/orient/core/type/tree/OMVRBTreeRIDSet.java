@@ -15,37 +15,59 @@
  */
 package com.orientechnologies.orient.core.type.tree;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import com.orientechnologies.common.collection.OLazyIterator;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.db.record.ODetachable;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.db.record.OLazyRecordIterator;
 import com.orientechnologies.orient.core.db.record.OMultiValueChangeEvent;
 import com.orientechnologies.orient.core.db.record.OMultiValueChangeListener;
 import com.orientechnologies.orient.core.db.record.ORecordLazyMultiValue;
+import com.orientechnologies.orient.core.db.record.ORidBag;
 import com.orientechnologies.orient.core.db.record.OTrackedMultiValue;
 import com.orientechnologies.orient.core.exception.OSerializationException;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
 import com.orientechnologies.orient.core.serialization.OSerializableStream;
+import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
 import com.orientechnologies.orient.core.serialization.serializer.string.OStringBuilderSerializable;
 import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeRIDProvider;
 
 /**
- * Persistent Set<OIdentifiable> implementation that uses the MVRB-Tree to handle entries in persistent way.
+ * Persistent Set<OIdentifiable> implementation that uses the MVRB-Tree to handle entries in persistent way.<br/>
+ * <br/>
+ * The sets owned by a record start as an embedded {@link ORidBag}, a sorted array of RIDs streamed inside the owner. The content is
+ * moved to the MVRB-Tree, stored in its own records, only when the set grows over the
+ * {@link OGlobalConfiguration#RID_BAG_EMBEDDED_TO_TREE_THRESHOLD} entries. Once in the tree cannot come back to the embedded mode.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
 public class OMVRBTreeRIDSet implements Set<OIdentifiable>, OTrackedMultiValue<OIdentifiable, OIdentifiable>,
     ORecordLazyMultiValue, OStringBuilderSerializable, OSerializableStream, ODetachable {
-  private static final long  serialVersionUID = 1L;
+  private static final long                                            serialVersionUID    = 1L;
 
-  private final OMVRBTreeRID tree;
+  private OMVRBTreeRID                                                 tree;
+
+  // EMBEDDED MODE
+  private ORidBag                                                      bag;
+  private ORecord<?>                                                   owner;
+  private boolean                                                      autoConvertToRecord = true;
+  private Set<OMultiValueChangeListener<OIdentifiable, OIdentifiable>> changeListeners;
 
   public OMVRBTreeRIDSet() {
     this(new OMVRBTreeRID());
@@ -60,11 +82,18 @@ public class OMVRBTreeRIDSet implements Set<OIdentifiable>, OTrackedMultiValue<O
   }
 
   public OMVRBTreeRIDSet(final ORecord<?> iOwner) {
-    this((OMVRBTreeRID) new OMVRBTreeRID().setOwner(iOwner));
+    if (isEmbeddable())
+      initBag(iOwner, new ORidBag());
+    else
+      tree = (OMVRBTreeRID) new OMVRBTreeRID().setOwner(iOwner);
   }
 
   public OMVRBTreeRIDSet(final ORecord<?> iOwner, final Collection<OIdentifiable> iInitValues) {
-    this((OMVRBTreeRID) new OMVRBTreeRID(iInitValues).setOwner(iOwner));
+    if (isEmbeddable()) {
+      initBag(iOwner, new ORidBag());
+      bag.addAll(iInitValues);
+    } else
+      tree = (OMVRBTreeRID) new OMVRBTreeRID(iInitValues).setOwner(iOwner);
   }
 
   public OMVRBTreeRIDSet(final OMVRBTreeRID iProvider) {
@@ -78,54 +107,119 @@ public class OMVRBTreeRIDSet implements Set<OIdentifiable>, OTrackedMultiValue<O
    *          Source object
    */
   public OMVRBTreeRIDSet(final OMVRBTreeRIDSet iSource, final ODocument iClone) {
-    tree = new OMVRBTreeRID(iSource.tree);
-    tree.setOwner(iClone);
+    if (iSource.tree != null) {
+      tree = new OMVRBTreeRID(iSource.tree);
+      tree.setOwner(iClone);
+    } else {
+      initBag(iClone, new ORidBag(iSource.bag));
+      autoConvertToRecord = iSource.autoConvertToRecord;
+    }
+  }
+
+  /**
+   * Tells if the content is embedded in the owner record, otherwise it's stored in the MVRB-Tree.
+   */
+  public boolean isEmbedded() {
+    return tree == null;
   }
 
   public int size() {
+    if (tree == null)
+      return bag.size();
     return tree.size();
   }
 
   public boolean isEmpty() {
+    if (tree == null)
+      return bag.isEmpty();
     return tree.isEmpty();
   }
 
   public boolean contains(final Object o) {
+    if (tree == null)
+      return bag.contains(o);
     return tree.containsKey(o);
   }
 
   public OLazyIterator<OIdentifiable> iterator(final boolean iAutoConvertToRecord) {
+    if (tree == null) {
+      final Iterator<OIdentifiable> underlying = bag.iterator();
+      return new OLazyRecordIterator(new Iterator<OIdentifiable>() {
+        private OIdentifiable last;
+
+        public boolean hasNext() {
+          return underlying.hasNext();
+        }
+
+        public OIdentifiable next() {
+          return last = underlying.next();
+        }
+
+        public void remove() {
+          underlying.remove();
+          fireCollectionChangedEvent(new OMultiValueChangeEvent<OIdentifiable, OIdentifiable>(
+              OMultiValueChangeEvent.OChangeType.REMOVE, last, null, last));
+        }
+      }, iAutoConvertToRecord);
+    }
     return tree.iterator(iAutoConvertToRecord);
   }
 
   public OLazyIterator<OIdentifiable> iterator() {
-    return tree.iterator();
+    return iterator(isAutoConvertToRecord());
   }
 
   public Object[] toArray() {
+    if (tree == null)
+      return toCollection().toArray();
     return tree.toArray();
   }
 
   public <T> T[] toArray(final T[] a) {
+    if (tree == null)
+      return toCollection().toArray(a);
     return tree.toArray(a);
   }
 
   public boolean add(final OIdentifiable e) {
+    if (tree == null) {
+      if (!bag.add(e))
+        return false;
+      fireCollectionChangedEvent(new OMultiValueChangeEvent<OIdentifiable, OIdentifiable>(OMultiValueChangeEvent.OChangeType.ADD, e,
+          e));
+      return true;
+    }
     return tree.put(e, null) == null;
   }
 
   public boolean remove(final Object o) {
+    if (tree == null) {
+      if (!bag.remove(o))
+        return false;
+      fireCollectionChangedEvent(new OMultiValueChangeEvent<OIdentifiable, OIdentifiable>(OMultiValueChangeEvent.OChangeType.REMOVE,
+          (OIdentifiable) o, null, (OIdentifiable) o));
+      return true;
+    }
     return tree.remove(o) != null;
   }
 
   public boolean containsAll(final Collection<?> c) {
     for (Object o : c)
-      if (!tree.containsKey(o))
+      if (!contains(o))
         return false;
     return true;
   }
 
   public boolean addAll(final Collection<? extends OIdentifiable> c) {
+    if (tree == null) {
+      // MERGE ALL THE VALUES AT ONCE
+      final List<OIdentifiable> added = bag.addAll(c);
+      for (OIdentifiable o : added)
+        fireCollectionChangedEvent(new OMultiValueChangeEvent<OIdentifiable, OIdentifiable>(OMultiValueChangeEvent.OChangeType.ADD,
+            o, o));
+      return !added.isEmpty();
+    }
+
     boolean changed = false;
     for (OIdentifiable o : c)
       if (add(o) && !changed)
@@ -134,18 +228,33 @@ public class OMVRBTreeRIDSet implements Set<OIdentifiable>, OTrackedMultiValue<O
   }
 
   public boolean retainAll(final Collection<?> c) {
+    if (tree == null)
+      return fireRemoved(bag.retainAll(c));
     return tree.retainAll(c);
   }
 
   public boolean removeAll(final Collection<?> c) {
+    if (tree == null)
+      return fireRemoved(bag.removeAll(c));
     return tree.removeAll(c);
   }
 
   public boolean detach() {
+    if (tree == null)
+      return saveRecords();
     return tree.detach();
   }
 
   public void clear() {
+    if (tree == null) {
+      final List<OIdentifiable> removed = changeListeners.isEmpty() ? null : toCollection();
+      bag.clear();
+      if (removed != null)
+        fireRemoved(removed);
+      else if (owner != null)
+        owner.setDirty();
+      return;
+    }
     tree.clear();
   }
 
@@ -155,6 +264,8 @@ public class OMVRBTreeRIDSet implements Set<OIdentifiable>, OTrackedMultiValue<O
   }
 
   public ODocument toDocument() {
+    if (tree == null)
+      convertToTree();
     return ((OMVRBTreeRIDProvider) tree.getProvider()).toDocument();
   }
 
@@ -164,6 +275,16 @@ public class OMVRBTreeRIDSet implements Set<OIdentifiable>, OTrackedMultiValue<O
   }
 
   public OStringBuilderSerializable fromStream(final StringBuilder iSource) {
+    if (tree == null) {
+      if (iSource == null || iSource.length() == 0 || isEmbeddedStream(iSource.charAt(0))) {
+        bag.fromStream(iSource);
+        return this;
+      }
+
+      // STORED IN THE TREE
+      convertToTree();
+    }
+
     ((OMVRBTreeRIDProvider) tree.getProvider()).fromStream(iSource);
     return this;
   }
@@ -174,6 +295,21 @@ public class OMVRBTreeRIDSet implements Set<OIdentifiable>, OTrackedMultiValue<O
   }
 
   public OStringBuilderSerializable toStream(StringBuilder iOutput) throws OSerializationException {
+    if (tree == null) {
+      saveRecords();
+
+      final int threshold = OGlobalConfiguration.RID_BAG_EMBEDDED_TO_TREE_THRESHOLD.getValueAsInteger();
+      final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+      if (threshold < 0 || bag.size() <= threshold || database == null || database.getTransaction().isActive()) {
+        // IN TRANSACTION THE TREE CANNOT BE CREATED BECAUSE IT WOULD STORE TEMPORARY RIDS
+        bag.toStream(iOutput);
+        return this;
+      }
+
+      // TOO BIG TO BE EMBEDDED
+      convertToTree();
+    }
+
     ((OMVRBTreeRIDProvider) tree.getProvider()).toStream(iOutput);
     return this;
   }
@@ -186,51 +322,168 @@ public class OMVRBTreeRIDSet implements Set<OIdentifiable>, OTrackedMultiValue<O
 
   @Override
   public String toString() {
+    if (tree == null)
+      return bag.toString();
     return tree.toString();
   }
 
   @Override
   public void addChangeListener(OMultiValueChangeListener<OIdentifiable, OIdentifiable> changeListener) {
-    tree.addChangeListener(changeListener);
+    if (tree == null)
+      changeListeners.add(changeListener);
+    else
+      tree.addChangeListener(changeListener);
   }
 
   @Override
   public void removeRecordChangeListener(OMultiValueChangeListener<OIdentifiable, OIdentifiable> changeListener) {
-    tree.removeRecordChangeListener(changeListener);
+    if (tree == null)
+      changeListeners.remove(changeListener);
+    else
+      tree.removeRecordChangeListener(changeListener);
   }
 
   @Override
   public Object returnOriginalState(List<OMultiValueChangeEvent<OIdentifiable, OIdentifiable>> changeEvents) {
-    return tree.returnOriginalState(changeEvents);
+    if (tree != null)
+      return tree.returnOriginalState(changeEvents);
+
+    final Set<OIdentifiable> reverted = new HashSet<OIdentifiable>(toCollection());
+
+    final ListIterator<OMultiValueChangeEvent<OIdentifiable, OIdentifiable>> listIterator = changeEvents.listIterator(changeEvents
+        .size());
+
+    while (listIterator.hasPrevious()) {
+      final OMultiValueChangeEvent<OIdentifiable, OIdentifiable> event = listIterator.previous();
+      switch (event.getChangeType()) {
+      case ADD:
+        reverted.remove(event.getKey());
+        break;
+      case REMOVE:
+        reverted.add(event.getOldValue());
+        break;
+      default:
+        throw new IllegalArgumentException("Invalid change type : " + event.getChangeType());
+      }
+    }
+
+    return reverted;
   }
 
   @Override
   public Class<?> getGenericClass() {
-    return tree.getGenericClass();
+    return OIdentifiable.class;
   }
 
   @Override
   public Iterator<OIdentifiable> rawIterator() {
+    if (tree == null)
+      return iterator(false);
     return tree.rawIterator();
   }
 
   @Override
   public void convertLinks2Records() {
-    tree.convertLinks2Records();
+    if (tree != null)
+      tree.convertLinks2Records();
   }
 
   @Override
   public boolean convertRecords2Links() {
+    if (tree == null)
+      return false;
     return tree.convertRecords2Links();
   }
 
   @Override
   public boolean isAutoConvertToRecord() {
+    if (tree == null)
+      return autoConvertToRecord;
     return tree.isAutoConvertToRecord();
   }
 
   @Override
   public void setAutoConvertToRecord(final boolean convertToRecord) {
-    tree.setAutoConvertToRecord(convertToRecord);
+    if (tree == null)
+      autoConvertToRecord = convertToRecord;
+    else
+      tree.setAutoConvertToRecord(convertToRecord);
+  }
+
+  protected void initBag(final ORecord<?> iOwner, final ORidBag iBag) {
+    owner = iOwner;
+    bag = iBag;
+    changeListeners = Collections
+        .newSetFromMap(new WeakHashMap<OMultiValueChangeListener<OIdentifiable, OIdentifiable>, Boolean>());
+  }
+
+  /**
+   * Moves the content in the MVRB-Tree keeping owner, listeners and settings.
+   */
+  protected void convertToTree() {
+    final OMVRBTreeRID newTree = new OMVRBTreeRID();
+    newTree.setOwner(owner);
+    newTree.setAutoConvertToRecord(autoConvertToRecord);
+    for (OMultiValueChangeListener<OIdentifiable, OIdentifiable> listener : changeListeners)
+      newTree.addChangeListener(listener);
+
+    final List<OIdentifiable> content = toCollection();
+    tree = newTree;
+    if (!content.isEmpty())
+      tree.putAll(content);
+
+    bag = null;
+    owner = null;
+    changeListeners = null;
+  }
+
+  /**
+   * Saves the records with a temporary identity and the changed ones.
+   * 
+   * @return true if all the records are persistent, otherwise false
+   */
+  protected boolean saveRecords() {
+    boolean persistent = true;
+    for (ORecord<?> record : bag.getRecordsToSave()) {
+      record.save();
+      if (record.getIdentity().isNew())
+        // SAVED IN TRANSACTION
+        persistent = false;
+    }
+    return persistent;
+  }
+
+  protected void fireCollectionChangedEvent(final OMultiValueChangeEvent<OIdentifiable, OIdentifiable> event) {
+    if (owner != null)
+      owner.setDirty();
+
+    for (final OMultiValueChangeListener<OIdentifiable, OIdentifiable> changeListener : changeListeners)
+      if (changeListener != null)
+        changeListener.onAfterRecordChanged(event);
+  }
+
+  private boolean fireRemoved(final List<OIdentifiable> iRemoved) {
+    for (OIdentifiable o : iRemoved)
+      fireCollectionChangedEvent(new OMultiValueChangeEvent<OIdentifiable, OIdentifiable>(OMultiValueChangeEvent.OChangeType.REMOVE,
+          o, null, o));
+    return !iRemoved.isEmpty();
+  }
+
+  private List<OIdentifiable> toCollection() {
+    final List<OIdentifiable> content = new ArrayList<OIdentifiable>(bag.size());
+    for (OIdentifiable o : bag)
+      content.add(o);
+    return content;
+  }
+
+  private static boolean isEmbeddedStream(final char iFirstChar) {
+    return iFirstChar == OStringSerializerHelper.SET_BEGIN || iFirstChar == OStringSerializerHelper.LIST_BEGIN
+        || iFirstChar == OStringSerializerHelper.LINK || Character.isDigit(iFirstChar);
+  }
+
+  private static boolean isEmbeddable() {
+    // THE BAG PACKS ONLY THE POSITIONS AS LONG
+    return OGlobalConfiguration.RID_BAG_EMBEDDED_TO_TREE_THRESHOLD.getValueAsInteger() != 0
+        && OClusterPositionFactory.INSTANCE instanceof OClusterPositionFactory.OClusterPositionFactoryLong;
   }
 }
@@ -0,0 +1,101 @@
+package com.orientechnologies.orient.core.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ORecordBytes;
+
+@Test
+public class OBudgetedCacheTest {
+  public void evictsEldestRecordsOverEntryLimit() {
+    final OBudgetedCache sut = new OBudgetedCache(10, 0);
+    sut.startup();
+    for (int i = 0; i < 20; i++)
+      sut.put(record(i, 10));
+
+    assertEquals(sut.size(), 10);
+    assertTrue(sut.keys().contains(record(19, 10).getIdentity()));
+    assertTrue(!sut.keys().contains(record(0, 10).getIdentity()));
+    sut.shutdown();
+  }
+
+  public void evictsRecordsOverMemoryBudget() {
+    final OBudgetedCache sut = new OBudgetedCache(0, 10000);
+    sut.startup();
+    for (int i = 0; i < 100; i++)
+      sut.put(record(i, 1000));
+
+    assertTrue(sut.getUsedMemory() <= 10000);
+    assertTrue(sut.size() > 0);
+    assertTrue(sut.size() < 10);
+    sut.shutdown();
+  }
+
+  public void neverEvictsDirtyRecords() {
+    final OBudgetedCache sut = new OBudgetedCache(5, 0);
+    sut.startup();
+    final List<ORecordInternal<?>> dirty = new ArrayList<ORecordInternal<?>>();
+    for (int i = 0; i < 5; i++) {
+      final ORecordInternal<?> r = record(i, 10);
+      r.setDirty();
+      dirty.add(r);
+      sut.put(r);
+    }
+    for (int i = 5; i < 10; i++)
+      sut.put(record(i, 10));
+
+    for (ORecordInternal<?> r : dirty)
+      assertTrue(sut.keys().contains(r.getIdentity()));
+    sut.shutdown();
+  }
+
+  public void returnsEvictedRecordsStillReferenced() {
+    final OBudgetedCache sut = new OBudgetedCache(1, 0);
+    sut.startup();
+    final ORecordInternal<?> first = record(1, 10);
+    sut.put(first);
+    sut.put(record(2, 10));
+
+    assertTrue(!sut.keys().contains(first.getIdentity()));
+    assertSame(sut.get(first.getIdentity()), first);
+    sut.shutdown();
+  }
+
+  public void releasesMemoryOnRemoveAndClear() {
+    final long globalBefore = OBudgetedCache.getGlobalUsedMemory();
+
+    final OBudgetedCache sut = new OBudgetedCache(0, 0);
+    sut.startup();
+    for (int i = 0; i < 10; i++)
+      sut.put(record(i, 100));
+    assertTrue(OBudgetedCache.getGlobalUsedMemory() > globalBefore);
+
+    final long used = sut.getUsedMemory();
+    assertNotNull(sut.remove(record(0, 100).getIdentity()));
+    assertTrue(sut.getUsedMemory() < used);
+
+    sut.clear();
+    assertEquals(sut.getUsedMemory(), 0);
+    assertEquals(OBudgetedCache.getGlobalUsedMemory(), globalBefore);
+    assertNull(sut.get(record(1, 100).getIdentity()));
+    sut.shutdown();
+  }
+
+  private ORecordInternal<?> record(final int iPosition, final int iSize) {
+    final ORecordBytes record = new ORecordBytes(new byte[iSize]);
+    record.setIdentity(new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(iPosition)));
+    record.unsetDirty();
+    return record;
+  }
+}
@@ -0,0 +1,88 @@
+package com.orientechnologies.orient.core.command;
+
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.exception.OCommandInterruptedException;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OCommandMonitorTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeClass
+  public void beforeClass() {
+    db = new ODatabaseDocumentTx("memory:commandMonitorTest");
+    db.create();
+
+    for (int i = 0; i < 200; ++i)
+      new ODocument("Item").field("id", i).field("group", i % 4).save();
+  }
+
+  @AfterClass
+  public void afterClass() {
+    db.drop();
+  }
+
+  public void testNoLimits() {
+    final OCommandMonitor monitor = new OCommandMonitor("select from Item", 0, 0, 0);
+    final List<ODocument> result = execute(monitor, "select from Item where id < 10");
+
+    Assert.assertEquals(result.size(), 10);
+    Assert.assertEquals(monitor.getRecords(), 200);
+    Assert.assertEquals(monitor.getResults(), 10);
+  }
+
+  @Test(expectedExceptions = OCommandExecutionException.class)
+  public void testMaxRecords() {
+    execute(new OCommandMonitor("select from Item", 0, 100, 0), "select from Item where id < 10");
+  }
+
+  @Test(expectedExceptions = OCommandExecutionException.class)
+  public void testMaxResults() {
+    execute(new OCommandMonitor("select from Item", 0, 0, 50), "select from Item");
+  }
+
+  public void testMaxResultsCountsTheReturnedRecords() {
+    Assert.assertEquals(executeWithMaxResults(10, "select count(*) from Item", 1).get(0).field("count"), 200l);
+    Assert.assertEquals(executeWithMaxResults(10, "select group, count(*) from Item group by group", 4).size(), 4);
+    Assert.assertEquals(executeWithMaxResults(10, "select from Item order by id desc limit 10", 10).get(0).field("id"), 199);
+    Assert.assertEquals(executeWithMaxResults(10, "select from Item skip 190", 10).size(), 10);
+    Assert.assertEquals(executeWithMaxResults(10, "select from Item where id < 5 order by id", 5).size(), 5);
+  }
+
+  @Test(expectedExceptions = OCommandExecutionException.class)
+  public void testMaxResultsOnOrderedRecords() {
+    execute(new OCommandMonitor("select from Item", 0, 0, 50), "select from Item order by id limit 51");
+  }
+
+  @Test(expectedExceptions = OCommandInterruptedException.class)
+  public void testCancel() {
+    final OCommandMonitor monitor = new OCommandMonitor("select from Item", 0, 0, 0);
+    monitor.cancel();
+    execute(monitor, "select from Item");
+  }
+
+  private List<ODocument> executeWithMaxResults(final long iMaxResults, final String iQuery, final long iExpectedResults) {
+    final OCommandMonitor monitor = new OCommandMonitor(iQuery, 0, 0, iMaxResults);
+    final List<ODocument> result = execute(monitor, iQuery);
+    Assert.assertEquals(monitor.getResults(), iExpectedResults);
+    return result;
+  }
+
+  private List<ODocument> execute(final OCommandMonitor iMonitor, final String iQuery) {
+    OCommandMonitor.set(iMonitor);
+    try {
+      return db.query(new OSQLSynchQuery<ODocument>(iQuery));
+    } finally {
+      OCommandMonitor.set(null);
+    }
+  }
+}
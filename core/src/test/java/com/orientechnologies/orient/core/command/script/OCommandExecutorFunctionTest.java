@@ -0,0 +1,138 @@
+package com.orientechnologies.orient.core.command.script;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.script.ScriptEngine;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.metadata.function.OFunction;
+
+@Test
+public class OCommandExecutorFunctionTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeClass
+  public void beforeClass() {
+    db = new ODatabaseDocumentTx("memory:functionExecutorTest");
+    db.create();
+
+    db.getMetadata().getFunctionLibrary().createFunction("sum").setLanguage("javascript").setParameters(Arrays.asList("a", "b"))
+        .setCode("return a + b;");
+    db.getMetadata().getFunctionLibrary().createFunction("twice").setLanguage("javascript")
+        .setParameters(Arrays.asList("a")).setCode("return sum(a, a);");
+  }
+
+  @AfterClass
+  public void afterClass() {
+    db.drop();
+  }
+
+  public void invokesFunctionsWithTheCompiledLibrary() {
+    Assert.assertEquals(((Number) db.getMetadata().getFunctionLibrary().getFunction("sum").execute(3, 4)).intValue(), 7);
+    Assert.assertEquals(((Number) db.getMetadata().getFunctionLibrary().getFunction("twice").execute(5)).intValue(), 10);
+  }
+
+  public void reusesTheEngines() {
+    final OScriptManager scriptManager = Orient.instance().getScriptManager();
+    final ScriptEngine engine = scriptManager.acquireDatabaseEngine(db, "javascript");
+    scriptManager.releaseDatabaseEngine(db.getURL(), "javascript", engine);
+
+    Assert.assertSame(scriptManager.acquireDatabaseEngine(db, "javascript"), engine);
+    scriptManager.releaseDatabaseEngine(db.getURL(), "javascript", engine);
+  }
+
+  public void doesNotLeakArgumentsBetweenInvocations() {
+    final OFunction f = db.getMetadata().getFunctionLibrary().createFunction("leaked").setLanguage("javascript")
+        .setParameters(Arrays.asList("value")).setCode("return typeof secret;");
+
+    final Map<Object, Object> args = new HashMap<Object, Object>();
+    args.put("secret", 1);
+    final OCommandExecutorFunction executor = new OCommandExecutorFunction().parse(new OCommandFunction("leaked"));
+    Assert.assertEquals(executor.execute(args), "number");
+
+    Assert.assertEquals(f.execute("x"), "undefined");
+  }
+
+  public void doesNotLeakGlobalsBetweenInvocations() {
+    db.getMetadata().getFunctionLibrary().createFunction("setGlobal").setLanguage("javascript").setCode("counter = 1; return 1;");
+    final OFunction read = db.getMetadata().getFunctionLibrary().createFunction("readGlobal").setLanguage("javascript")
+        .setCode("return typeof counter;");
+    final OFunction overwrite = db.getMetadata().getFunctionLibrary().createFunction("overwriteSum").setLanguage("javascript")
+        .setCode("sum = function(a, b) { return 0; }; return 1;");
+
+    db.getMetadata().getFunctionLibrary().getFunction("setGlobal").execute();
+    Assert.assertEquals(read.execute(), "undefined");
+
+    overwrite.execute();
+    Assert.assertEquals(((Number) db.getMetadata().getFunctionLibrary().getFunction("twice").execute(5)).intValue(), 10);
+  }
+
+  public void removesTheEnginesOfDroppedDatabases() {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = System.getProperty("java.io.tmpdir");
+
+    final ODatabaseDocumentTx other = new ODatabaseDocumentTx("local:" + buildDirectory + File.separator
+        + "functionExecutorDropTest");
+    if (other.exists()) {
+      other.open("admin", "admin");
+      other.drop();
+    }
+    other.create();
+    try {
+      other.getMetadata().getFunctionLibrary().createFunction("sum").setLanguage("javascript")
+          .setParameters(Arrays.asList("a", "b")).setCode("return a * b;");
+      Assert.assertEquals(((Number) other.getMetadata().getFunctionLibrary().getFunction("sum").execute(3, 4)).intValue(), 12);
+
+      // THE ENGINES ARE KEPT BY URL
+      Assert.assertTrue(Orient.instance().getScriptManager().dbManagers.containsKey(other.getURL()));
+    } finally {
+      other.drop();
+      ODatabaseRecordThreadLocal.INSTANCE.set(db);
+    }
+    Assert.assertFalse(Orient.instance().getScriptManager().dbManagers.containsKey(other.getURL()));
+  }
+
+  public void recompilesTheLibraryWhenAFunctionChanges() {
+    final OScriptManager scriptManager = Orient.instance().getScriptManager();
+    final ScriptEngine engine = scriptManager.acquireDatabaseEngine(db, "javascript");
+    scriptManager.releaseDatabaseEngine(db.getURL(), "javascript", engine);
+
+    final OFunction f = db.getMetadata().getFunctionLibrary().createFunction("changing").setLanguage("javascript")
+        .setCode("return 1;");
+    Assert.assertEquals(((Number) f.execute()).intValue(), 1);
+
+    f.setCode("return 2;");
+    Assert.assertEquals(((Number) db.getMetadata().getFunctionLibrary().getFunction("changing").execute()).intValue(), 2);
+
+    final ScriptEngine newEngine = scriptManager.acquireDatabaseEngine(db, "javascript");
+    Assert.assertNotSame(newEngine, engine);
+    scriptManager.releaseDatabaseEngine(db.getURL(), "javascript", newEngine);
+  }
+
+  public void discardsTheEnginesInUseWhenTheLibraryIsReloaded() {
+    final OScriptManager scriptManager = Orient.instance().getScriptManager();
+    final ScriptEngine engine = scriptManager.acquireDatabaseEngine(db, "javascript");
+
+    db.getMetadata().getFunctionLibrary().load();
+    Assert.assertNotNull(db.getMetadata().getFunctionLibrary().getFunction("sum"));
+
+    // RELEASED AFTER THE RELOAD: THE ENGINE ISN'T POOLED AGAIN
+    scriptManager.releaseDatabaseEngine(db.getURL(), "javascript", engine);
+    final ScriptEngine newEngine = scriptManager.acquireDatabaseEngine(db, "javascript");
+    Assert.assertNotSame(newEngine, engine);
+    scriptManager.releaseDatabaseEngine(db.getURL(), "javascript", newEngine);
+
+    Assert.assertEquals(((Number) db.getMetadata().getFunctionLibrary().getFunction("twice").execute(5)).intValue(), 10);
+  }
+}
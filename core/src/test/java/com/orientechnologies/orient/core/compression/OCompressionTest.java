@@ -0,0 +1,237 @@
+package com.orientechnologies.orient.core.compression;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.exception.OConfigurationException;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.record.impl.ORecordBytes;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.storage.OCluster;
+import com.orientechnologies.orient.core.storage.OPhysicalPosition;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocal;
+import com.orientechnologies.orient.core.storage.impl.memory.OClusterMemory;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+
+@Test
+public class OCompressionTest {
+  private final Random random = new Random(7);
+
+  public void compressionsRestoreTheContent() {
+    final List<byte[]> samples = documents(100);
+    final List<OCompression> compressions = new ArrayList<OCompression>();
+    for (String spec : new String[] { "nothing", "snappy", "deflate", "deflate:1", "deflate:9" })
+      compressions.add(OCompressionFactory.INSTANCE.getCompression(spec));
+    compressions.add(new ODictionaryCompression(ODictionaryCompression.train(samples, ODictionaryCompression.MAX_DICTIONARY_SIZE)));
+    compressions.add(new ODictionaryCompression(new byte[0]));
+
+    final List<byte[]> contents = new ArrayList<byte[]>(documents(10));
+    contents.add(new byte[0]);
+    contents.add(random(10000));
+
+    for (OCompression compression : compressions) {
+      final OCompression fromSpecification = OCompressionFactory.INSTANCE.getCompression(compression.getSpecification());
+      for (byte[] content : contents) {
+        assertEquals(compression.uncompress(compression.compress(content)), content);
+        assertEquals(fromSpecification.uncompress(compression.compress(content)), content);
+      }
+    }
+  }
+
+  public void dictionaryCompressesSmallRecordsBetter() {
+    final List<byte[]> samples = documents(200);
+    final ODictionaryCompression dictionary = new ODictionaryCompression(ODictionaryCompression.train(samples.subList(0, 100),
+        ODictionaryCompression.MAX_DICTIONARY_SIZE));
+    final ODeflateCompression deflate = new ODeflateCompression();
+
+    long dictionarySize = 0;
+    long deflateSize = 0;
+    for (byte[] sample : samples.subList(100, 200)) {
+      dictionarySize += dictionary.compress(sample).length;
+      deflateSize += deflate.compress(sample).length;
+    }
+    assertTrue(dictionarySize < deflateSize / 2, "dictionary=" + dictionarySize + " deflate=" + deflateSize);
+  }
+
+  @Test(expectedExceptions = OConfigurationException.class)
+  public void unknownCompressionIsRejected() {
+    OCompressionFactory.INSTANCE.getCompression("lzma");
+  }
+
+  @Test(expectedExceptions = OConfigurationException.class)
+  public void invalidDeflateLevelIsRejected() {
+    OCompressionFactory.INSTANCE.getCompression("deflate:10");
+  }
+
+  public void alterClusterRecompressesTheRecords() {
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx("memory:compressionTest");
+    db.create();
+    try {
+      final int clusterId = db.addCluster("compressed", OStorage.CLUSTER_TYPE.PHYSICAL);
+      final List<ORID> rids = new ArrayList<ORID>();
+      for (int i = 0; i < 300; i++) {
+        final ODocument doc = new ODocument();
+        doc.field("name", "name" + i).field("surname", "surname" + i).field("address", "street " + i);
+        doc.save("compressed");
+        rids.add(doc.getIdentity());
+      }
+
+      final OClusterMemory cluster = (OClusterMemory) db.getStorage().getClusterById(clusterId);
+      for (String compression : new String[] { "deflate:9", "dictionary", "snappy", "auto", "null" }) {
+        db.command(new OCommandSQL("alter cluster compressed compression " + compression)).execute();
+        db.getLevel1Cache().clear();
+
+        for (int i = 0; i < rids.size(); i++) {
+          final ODocument doc = db.load(rids.get(i));
+          assertEquals(doc.field("surname"), "surname" + i);
+        }
+      }
+      assertEquals(cluster.getCompression(), ONothingCompression.INSTANCE);
+
+      db.command(new OCommandSQL("alter cluster compressed compression dictionary")).execute();
+      assertEquals(cluster.getCompression().getName(), ODictionaryCompression.NAME);
+
+      final ODocument doc = db.load(rids.get(0));
+      doc.field("name", "updated").save();
+      db.getLevel1Cache().clear();
+      assertEquals(db.<ODocument> load(rids.get(0)).field("name"), "updated");
+    } finally {
+      db.drop();
+    }
+  }
+
+  public void changeIdentityRecompressesLocalRecords() {
+    final ODatabaseDocumentTx db = createDatabase("local", "compressionChangeIdentityTest");
+    try {
+      db.addCluster("source", OStorage.CLUSTER_TYPE.PHYSICAL);
+      db.addCluster("destination", OStorage.CLUSTER_TYPE.PHYSICAL);
+      db.command(new OCommandSQL("alter cluster source compression deflate:1")).execute();
+
+      final OStorageLocal storage = (OStorageLocal) db.getStorage();
+      final OCluster destination = storage.getClusterById(db.getClusterIdByName("destination"));
+
+      // INCOMPRESSIBLE CONTENTS HAVE THE SAME SIZE WITH BOTH THE COMPRESSIONS: THE CONTENT IS REWRITTEN IN THE SAME SPACE
+      for (String compression : new String[] { "deflate:9", "snappy" }) {
+        db.command(new OCommandSQL("alter cluster destination compression " + compression)).execute();
+
+        final List<byte[]> contents = new ArrayList<byte[]>();
+        contents.add(random(2000));
+        contents.add(documents(1).get(0));
+
+        for (byte[] content : contents) {
+          final ORecordBytes record = new ORecordBytes(content);
+          record.save("source");
+
+          final ORecordId newRid = new ORecordId(destination.getId(), OClusterPositionFactory.INSTANCE.valueOf(destination
+              .getLastPosition().longValue() + 1));
+          storage.changeRecordIdentity(record.getIdentity(), newRid);
+
+          final ORawBuffer buffer = storage.readRecord(newRid, null, false, null, false).getResult();
+          assertEquals(buffer.buffer, content);
+
+          final OPhysicalPosition ppos = destination.getPhysicalPosition(new OPhysicalPosition(newRid.getClusterPosition()));
+          assertEquals(storage.getDataSegmentById(ppos.dataSegmentId).getRecordRid(ppos.dataSegmentPos), newRid);
+        }
+      }
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    } finally {
+      db.drop();
+    }
+  }
+
+  public void movedRecordsAreRecompressedInPaginatedClusters() {
+    final ODatabaseDocumentTx db = createDatabase("plocal", "compressionMovePaginatedTest");
+    try {
+      final int sourceId = db.addCluster("source", OStorage.CLUSTER_TYPE.PHYSICAL);
+      final int destinationId = db.addCluster("destination", OStorage.CLUSTER_TYPE.PHYSICAL);
+      db.command(new OCommandSQL("alter cluster source compression deflate:1")).execute();
+
+      // THE PAGINATED CLUSTERS CAN'T CHANGE THE IDENTITY OF A RECORD: THE RECORD IS MOVED BY CREATING IT AGAIN
+      final OStorage storage = db.getStorage();
+      for (String compression : new String[] { "deflate:9", "snappy", "nothing" }) {
+        db.command(new OCommandSQL("alter cluster destination compression " + compression)).execute();
+
+        for (byte[] content : new byte[][] { random(2000), documents(1).get(0) }) {
+          final ORecordId source = new ORecordId(sourceId);
+          storage.createRecord(0, source, content, OVersionFactory.instance().createVersion(), ORecordBytes.RECORD_TYPE, 0, null);
+
+          final ORawBuffer buffer = storage.readRecord(source, null, false, null, false).getResult();
+          final ORecordId moved = new ORecordId(destinationId);
+          storage.createRecord(0, moved, buffer.buffer, OVersionFactory.instance().createVersion(), buffer.recordType, 0, null);
+          storage.deleteRecord(source, buffer.version, 0, null);
+
+          assertEquals(storage.readRecord(moved, null, false, null, false).getResult().buffer, content);
+        }
+      }
+
+      db.close();
+      db.open("admin", "admin");
+      assertEquals(db.countClusterElements("destination"), 6);
+      for (ORecordBytes record : db.browseCluster("destination", ORecordBytes.class))
+        assertTrue(record.toStream().length > 0);
+    } finally {
+      db.drop();
+    }
+  }
+
+  public void samplerSuggestsNothingForIncompressibleContent() {
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx("memory:compressionSamplerTest");
+    db.create();
+    try {
+      final int clusterId = db.addCluster("blobs", OStorage.CLUSTER_TYPE.PHYSICAL);
+      for (int i = 0; i < 50; i++)
+        new ORecordBytes(random(2000)).save("blobs");
+
+      final OCompressionSampler sampler = new OCompressionSampler(db.getStorage(), clusterId);
+      final List<byte[]> samples = sampler.sample(20);
+      assertEquals(samples.size(), 20);
+      assertEquals(sampler.suggest(sampler.evaluate(samples)), ONothingCompression.INSTANCE);
+    } finally {
+      db.drop();
+    }
+  }
+
+  private ODatabaseDocumentTx createDatabase(final String iEngine, final String iName) {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = System.getProperty("java.io.tmpdir");
+
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx(iEngine + ":" + buildDirectory + File.separator + iName);
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+    }
+    return db.create();
+  }
+
+  private List<byte[]> documents(final int iCount) {
+    final Random random = new Random(7);
+    final List<byte[]> documents = new ArrayList<byte[]>();
+    for (int i = 0; i < iCount; i++)
+      documents.add(("Person@name:\"name" + random.nextInt(1000) + "\",surname:\"surname" + random.nextInt(1000)
+          + "\",birthDate:" + random.nextInt() + "t,city:#13:" + random.nextInt(100) + ",tags:[\"customer\",\"active\"]")
+          .getBytes());
+    return documents;
+  }
+
+  private byte[] random(final int iSize) {
+    final byte[] content = new byte[iSize];
+    random.nextBytes(content);
+    return content;
+  }
+}
@@ -0,0 +1,46 @@
+package com.orientechnologies.orient.core.db.document;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.exception.OSecurityAccessException;
+
+@Test
+public class ODatabaseDocumentPoolTest {
+  private ODatabaseDocumentTx   database;
+  private ODatabaseDocumentPool pool;
+
+  @BeforeClass
+  public void beforeClass() {
+    database = new ODatabaseDocumentTx("memory:ODatabaseDocumentPoolTest").create();
+    pool = new ODatabaseDocumentPool();
+    pool.setup(1, 5);
+  }
+
+  @AfterClass
+  public void afterClass() {
+    pool.close();
+    database.drop();
+  }
+
+  public void testPasswordCheckedOnReuse() {
+    final ODatabaseDocumentTx db = pool.acquire(database.getURL(), "admin", "admin");
+    db.close();
+
+    // THE PASSWORD IS CHECKED BY THE CACHED DIGEST
+    pool.acquire(database.getURL(), "admin", "admin").close();
+
+    try {
+      pool.acquire(database.getURL(), "admin", "wrong");
+      Assert.fail();
+    } catch (OSecurityAccessException e) {
+      // EXPECTED
+    }
+
+    final ODatabaseDocumentTx reused = pool.acquire(database.getURL(), "admin", "admin");
+    Assert.assertFalse(reused.isClosed());
+    reused.close();
+  }
+}
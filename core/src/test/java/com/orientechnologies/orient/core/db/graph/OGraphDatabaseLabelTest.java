@@ -0,0 +1,164 @@
+package com.orientechnologies.orient.core.db.graph;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class OGraphDatabaseLabelTest {
+  private OGraphDatabase db;
+
+  @BeforeClass
+  public void init() {
+    db = new OGraphDatabase("memory:graphLabelTest");
+    db.create();
+  }
+
+  @AfterClass
+  public void close() {
+    db.drop();
+  }
+
+  public void testPartitionedEdges() {
+    final ODocument tom = db.createVertex().field("name", "Tom").save();
+    final ODocument ferrari = db.createVertex().field("brand", "Ferrari").save();
+    final ODocument maserati = db.createVertex().field("brand", "Maserati").save();
+
+    db.createEdge(tom, ferrari).field("label", "drives").save();
+    final ODocument owns = db.createEdge(tom, maserati).field("label", "owns").save();
+    db.createEdge(tom, maserati, null, "label", "drives").save();
+    db.createEdge(tom, ferrari).save();
+
+    Assert.assertEquals(db.getOutEdges(tom).size(), 4);
+    Assert.assertEquals(db.getOutEdges(tom, "drives").size(), 2);
+    Assert.assertEquals(db.getOutEdges(tom, "owns").size(), 1);
+    Assert.assertEquals(db.getOutEdges(tom, "sells").size(), 0);
+    Assert.assertEquals(db.getInEdges(maserati, "drives").size(), 1);
+    Assert.assertNotNull(tom.field(OGraphDatabase.getLabelFieldName(OGraphDatabase.VERTEX_FIELD_OUT, "drives")));
+    Assert.assertEquals(db.getEdgesBetweenVertexes(tom, maserati, new String[] { "drives" }).size(), 1);
+    Assert.assertEquals(db.getEdgesBetweenVertexes(maserati, tom).size(), 2);
+
+    // CHANGE THE LABEL
+    owns.field("label", "drives").save();
+    Assert.assertEquals(db.getOutEdges(tom, "drives").size(), 3);
+    Assert.assertEquals(db.getOutEdges(tom, "owns").size(), 0);
+    Assert.assertEquals(db.getInEdges(maserati, "drives").size(), 2);
+
+    db.removeEdge(owns);
+    Assert.assertEquals(db.getOutEdges(tom, "drives").size(), 2);
+    Assert.assertEquals(db.getInEdges(maserati, "drives").size(), 1);
+
+    // RELOAD FROM THE STORAGE
+    db.getLevel1Cache().clear();
+    final ODocument reloaded = db.load(tom.getIdentity());
+    Assert.assertEquals(db.getOutEdges(reloaded, "drives").size(), 2);
+    final Set<OIdentifiable> labels = reloaded.field(OGraphDatabase.VERTEX_FIELD_OUT_LABELS);
+    Assert.assertTrue(labels.contains("drives"));
+  }
+
+  public void testMigrationOfUnpartitionedVertex() {
+    final ODocument v1 = db.createVertex().save();
+    final ODocument v2 = db.createVertex().save();
+
+    db.createEdge(v1, v2).save();
+    Assert.assertNull(v1.field(OGraphDatabase.VERTEX_FIELD_OUT_LABELS));
+
+    // LABEL IS SET WITHOUT PARTITIONS: FALLBACK TO THE SCAN
+    final ODocument e = db.createEdge(v1, v2);
+    e.field("label", "knows");
+    db.getOutEdges(v1);
+    Assert.assertEquals(db.getOutEdges(v1, "knows").size(), 1);
+
+    e.save();
+    Assert.assertNotNull(v1.field(OGraphDatabase.VERTEX_FIELD_OUT_LABELS));
+    Assert.assertEquals(db.getOutEdges(v1, "knows").size(), 1);
+  }
+
+  public void testLabelNotUsableAsFieldName() {
+    final ODocument v1 = db.createVertex().save();
+    final ODocument v2 = db.createVertex().save();
+
+    db.createEdge(v1, v2).field("label", "is friend of").save();
+    Assert.assertEquals(db.getOutEdges(v1, "is friend of").size(), 1);
+    Assert.assertEquals(db.getInEdges(v2, "is friend of").size(), 1);
+  }
+
+  public void testUserFieldsWithDirectionPrefix() {
+    final ODocument shop = db.createVertex().field("in_stock", 10).field("out_of_stock", false).save();
+    final ODocument item = db.createVertex().save();
+
+    db.createEdge(shop, item).field("label", "stock").save();
+
+    Assert.assertFalse(OGraphDatabase.isLabelField("in_stock"));
+    Assert.assertFalse(OGraphDatabase.isLabelField("out_of_stock"));
+    Assert.assertTrue(OGraphDatabase.isLabelField(OGraphDatabase.getLabelFieldName(OGraphDatabase.VERTEX_FIELD_OUT, "stock")));
+    Assert.assertEquals(shop.field("in_stock"), 10);
+    Assert.assertEquals(db.getOutEdges(shop, "stock").size(), 1);
+  }
+
+  public void testEdgesWrittenThroughDocumentAPI() {
+    final ODatabaseDocumentTx docDb = new ODatabaseDocumentTx(db.getURL()).open("admin", "admin");
+    try {
+      final ODocument v1 = new ODocument(OGraphDatabase.VERTEX_CLASS_NAME).save();
+      final ODocument v2 = new ODocument(OGraphDatabase.VERTEX_CLASS_NAME).save();
+      final ODocument v3 = new ODocument(OGraphDatabase.VERTEX_CLASS_NAME).save();
+
+      final ODocument edge = new ODocument(OGraphDatabase.EDGE_CLASS_NAME).field("out", v1).field("in", v2).field("label", "likes");
+      edge.save();
+      v1.field("out", new HashSet<OIdentifiable>(Collections.singleton((OIdentifiable) edge))).save();
+      v2.field("in", new HashSet<OIdentifiable>(Collections.singleton((OIdentifiable) edge))).save();
+
+      final String outField = OGraphDatabase.getLabelFieldName(OGraphDatabase.VERTEX_FIELD_OUT, "likes");
+      final String inField = OGraphDatabase.getLabelFieldName(OGraphDatabase.VERTEX_FIELD_IN, "likes");
+      Assert.assertEquals(((Set<?>) v1.field(outField)).size(), 1);
+      Assert.assertEquals(((Set<?>) v2.field(inField)).size(), 1);
+
+      // MOVE THE IN VERTEX
+      edge.field("in", v3).save();
+      Assert.assertEquals(((Set<?>) v2.field(inField)).size(), 0);
+      Assert.assertEquals(((Set<?>) v3.field(inField)).size(), 1);
+      Assert.assertEquals(((Set<?>) v1.field(outField)).size(), 1);
+
+      edge.delete();
+      Assert.assertEquals(((Set<?>) v1.field(outField)).size(), 0);
+      Assert.assertEquals(((Set<?>) v3.field(inField)).size(), 0);
+    } finally {
+      docDb.close();
+      ODatabaseRecordThreadLocal.INSTANCE.set(db);
+    }
+  }
+
+  public void testVertexSavedOnce() {
+    final ODocument v1 = db.createVertex().save();
+    final ODocument v2 = db.createVertex().save();
+    db.createEdge(v1, v2).field("label", "knows").save();
+
+    final int v1Version = v1.getVersion();
+    final int v2Version = v2.getVersion();
+
+    // SAME LABEL: NOTHING TO MOVE
+    final ODocument edge = db.getOutEdges(v1, "knows").iterator().next().getRecord();
+    edge.field("weight", 2).save();
+    Assert.assertEquals(v1.getVersion(), v1Version);
+    Assert.assertEquals(v2.getVersion(), v2Version);
+
+    // SELF LOOP: BOTH THE PARTITIONS ARE IN THE SAME VERTEX
+    final ODocument loop = db.createEdge(v1, v1).field("label", "self").save();
+    final int loopVersion = v1.getVersion();
+    loop.field("label", "me").save();
+    Assert.assertEquals(v1.getVersion(), loopVersion + 1);
+    Assert.assertEquals(db.getOutEdges(v1, "me").size(), 1);
+    Assert.assertEquals(db.getInEdges(v1, "me").size(), 1);
+    Assert.assertEquals(db.getOutEdges(v1, "self").size(), 0);
+  }
+}
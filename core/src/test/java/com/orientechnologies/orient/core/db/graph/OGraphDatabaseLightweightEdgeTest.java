@@ -0,0 +1,141 @@
+package com.orientechnologies.orient.core.db.graph;
+
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OGraphException;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OGraphDatabaseLightweightEdgeTest {
+  private OGraphDatabase db;
+
+  @BeforeClass
+  public void init() {
+    db = new OGraphDatabase("memory:graphLightweightEdgeTest");
+    db.create();
+    db.createEdgeType("Light");
+    db.setLightweightEdgeType("Light", true);
+  }
+
+  @AfterClass
+  public void close() {
+    db.drop();
+  }
+
+  public void testCreateAndBrowse() {
+    final ODocument a = db.createVertex().field("name", "a").save();
+    final ODocument b = db.createVertex().field("name", "b").save();
+    final ODocument c = db.createVertex().field("name", "c").save();
+
+    final ODocument light = db.createEdge(a, b, "Light").save();
+    Assert.assertTrue(light instanceof OGraphLightweightEdge);
+    db.createEdge(a, c).save();
+    final ODocument full = db.createEdge(b, c, "Light", "weight", 3).save();
+    Assert.assertFalse(full instanceof OGraphLightweightEdge);
+
+    Assert.assertEquals(db.countClass("Light"), 1);
+    Assert.assertEquals(db.getOutEdges(a).size(), 2);
+    Assert.assertEquals(db.getInEdges(b).size(), 1);
+
+    final OIdentifiable inEdge = db.getInEdges(b).iterator().next();
+    Assert.assertEquals(db.getOutVertex(inEdge).getIdentity(), a.getIdentity());
+    Assert.assertEquals(db.getInVertex(inEdge).getIdentity(), b.getIdentity());
+
+    Assert.assertEquals(db.getEdgesBetweenVertexes(a, b).size(), 1);
+    Assert.assertEquals(db.getEdgesBetweenVertexes(b, a).size(), 1);
+    Assert.assertEquals(db.getEdgesBetweenVertexes(a, b, new String[] { "any" }).size(), 0);
+
+    // GRAPH FUNCTIONS FOLLOW BOTH THE KINDS OF EDGES
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>("select shortestPath(" + a.getIdentity() + ", "
+        + c.getIdentity() + ") as path"));
+    Assert.assertEquals(((List<?>) result.get(0).field("path")).size(), 2);
+
+    db.getLevel1Cache().clear();
+    final ODocument reloaded = db.load(a.getIdentity());
+    Assert.assertEquals(db.getOutEdges(reloaded).size(), 2);
+  }
+
+  public void testRemove() {
+    final ODocument a = db.createVertex().save();
+    final ODocument b = db.createVertex().save();
+    final ODocument c = db.createVertex().save();
+
+    final ODocument light = db.createEdge(a, b, "Light");
+    db.createEdge(c, a, "Light");
+
+    Assert.assertTrue(db.removeEdge(light));
+    Assert.assertEquals(db.getOutEdges(a).size(), 0);
+    Assert.assertEquals(db.getInEdges(b).size(), 0);
+
+    Assert.assertTrue(db.removeVertex(a));
+    Assert.assertEquals(db.getOutEdges(c).size(), 0);
+  }
+
+  public void testSQL() {
+    final ODocument a = db.createVertex().save();
+    final ODocument b = db.createVertex().save();
+
+    final long edges = db.countClass("Light");
+    db.command(new OCommandSQL("create edge Light from " + a.getIdentity() + " to " + b.getIdentity())).execute();
+    Assert.assertEquals(db.countClass("Light"), edges);
+    db.command(new OCommandSQL("create edge Light from " + a.getIdentity() + " to " + b.getIdentity() + " set weight = 1"))
+        .execute();
+    Assert.assertEquals(db.countClass("Light"), edges + 1);
+
+    db.getLevel1Cache().clear();
+    Assert.assertEquals(db.getOutEdges(db.load(a.getIdentity())).size(), 2);
+  }
+
+  @Test(expectedExceptions = OGraphException.class)
+  public void testCannotSaveProperties() {
+    final ODocument a = db.createVertex().save();
+    final ODocument b = db.createVertex().save();
+    db.createEdge(a, b, "Light").field("weight", 3).save();
+  }
+
+  public void testSettingReadFromSchema() {
+    final OGraphDatabase db1 = new OGraphDatabase("memory:graphLightweightEdgeSchemaTest");
+    db1.create();
+    try {
+      final OGraphDatabase db2 = new OGraphDatabase(db1.getURL());
+      db2.open("admin", "admin");
+      try {
+        Assert.assertFalse(db2.isLightweightEdgesEnabled());
+
+        // ENABLED BY ANOTHER INSTANCE AFTER THE OPEN
+        db1.createEdgeType("Late");
+        db1.setLightweightEdgeType("Late", true);
+
+        Assert.assertTrue(db2.isLightweightEdgesEnabled());
+        final ODocument a = db2.createVertex().save();
+        final ODocument b = db2.createVertex().save();
+        db2.createEdge(a, b, "Late").save();
+
+        final OIdentifiable edge = db2.getOutEdges(a).iterator().next();
+        Assert.assertTrue(edge instanceof OGraphLightweightEdge);
+        Assert.assertEquals(db2.getInVertex(edge).getIdentity(), b.getIdentity());
+
+        // DISABLED AGAIN: THE CACHED SETTING FOLLOWS THE SCHEMA
+        ODatabaseRecordThreadLocal.INSTANCE.set(db1);
+        db1.setLightweightEdgeType("Late", false);
+        ODatabaseRecordThreadLocal.INSTANCE.set(db2);
+        Assert.assertFalse(db2.isLightweightEdgesEnabled());
+      } finally {
+        db2.close();
+      }
+    } finally {
+      ODatabaseRecordThreadLocal.INSTANCE.set(db1);
+      db1.drop();
+      ODatabaseRecordThreadLocal.INSTANCE.set(db);
+    }
+  }
+}
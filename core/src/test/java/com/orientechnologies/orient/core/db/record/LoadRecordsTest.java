@@ -0,0 +1,106 @@
+package com.orientechnologies.orient.core.db.record;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class LoadRecordsTest {
+  private static final int    RECORDS = 50;
+  private ODatabaseDocumentTx db;
+  private List<ORID>          rids    = new ArrayList<ORID>();
+
+  @BeforeClass
+  public void beforeClass() {
+    String dbPath = System.getProperty("java.io.tmpdir");
+    if (!dbPath.endsWith(File.separator))
+      dbPath += "/";
+    dbPath += "orientdb/loadRecordsTest";
+
+    db = new ODatabaseDocumentTx("local:" + dbPath);
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+      db = new ODatabaseDocumentTx("local:" + dbPath);
+    }
+    db.create();
+
+    db.getMetadata().getSchema().createClass("Item");
+    for (int i = 0; i < RECORDS; ++i)
+      rids.add(new ODocument("Item").field("id", i).save().getIdentity());
+  }
+
+  @AfterClass
+  public void afterClass() {
+    db.drop();
+  }
+
+  public void testLoadRecords() {
+    db.getLevel1Cache().invalidate();
+
+    final Map<ORID, ORecordInternal<?>> records = db.loadRecords(rids);
+    Assert.assertEquals(records.size(), RECORDS);
+    for (int i = 0; i < RECORDS; ++i) {
+      final ODocument doc = (ODocument) records.get(rids.get(i));
+      Assert.assertNotNull(doc);
+      Assert.assertEquals(doc.field("id"), i);
+    }
+  }
+
+  public void testLoadMissingRecords() {
+    final ODocument deleted = new ODocument("Item").field("id", -1).save();
+    final ORID deletedRid = deleted.getIdentity().copy();
+    deleted.delete();
+    db.getLevel1Cache().invalidate();
+
+    final List<ORID> toLoad = new ArrayList<ORID>();
+    toLoad.add(rids.get(0));
+    toLoad.add(deletedRid);
+    toLoad.add(new ORecordId(rids.get(0).getClusterId(), rids.get(RECORDS - 1).getClusterPosition().inc().inc().inc()));
+    toLoad.add(rids.get(1));
+
+    final Map<ORID, ORecordInternal<?>> records = db.loadRecords(toLoad);
+    Assert.assertEquals(records.size(), 2);
+    Assert.assertTrue(records.containsKey(rids.get(0)));
+    Assert.assertTrue(records.containsKey(rids.get(1)));
+  }
+
+  public void testLazyListConversion() {
+    final ODocument owner = new ODocument("Item");
+    final List<ODocument> linked = new ArrayList<ODocument>();
+    for (int i = 0; i < 10; ++i)
+      linked.add(db.<ODocument> load(rids.get(i)));
+    owner.field("links", linked);
+    owner.save();
+
+    db.getLevel1Cache().invalidate();
+
+    final ODocument reloaded = db.load(owner.getIdentity());
+    final List<OIdentifiable> links = reloaded.field("links");
+    Assert.assertTrue(links instanceof ORecordLazyList);
+
+    ((ORecordLazyList) links).convertLinks2Records();
+
+    // THE RAW ITERATOR DOESN'T CONVERT: ALL THE ITEMS MUST BE ALREADY LOADED
+    int i = 0;
+    for (Iterator<OIdentifiable> it = ((ORecordLazyList) links).rawIterator(); it.hasNext(); ++i) {
+      final OIdentifiable o = it.next();
+      Assert.assertTrue(o instanceof ODocument);
+      Assert.assertEquals(((ODocument) o).field("id"), i);
+    }
+    Assert.assertEquals(i, 10);
+  }
+}
@@ -0,0 +1,302 @@
+package com.orientechnologies.orient.core.db.record;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
+
+@Test
+public class ORidBagTest {
+  public void testAddContainsRemove() {
+    final ORidBag bag = new ORidBag();
+    Assert.assertTrue(bag.add(rid(10, 5)));
+    Assert.assertTrue(bag.add(rid(9, 100)));
+    Assert.assertTrue(bag.add(rid(10, 1)));
+    Assert.assertFalse(bag.add(rid(10, 5)));
+
+    Assert.assertEquals(bag.size(), 3);
+    Assert.assertTrue(bag.contains(rid(10, 5)));
+    Assert.assertFalse(bag.contains(rid(10, 6)));
+
+    Assert.assertTrue(bag.remove(rid(10, 5)));
+    Assert.assertFalse(bag.remove(rid(10, 5)));
+    Assert.assertEquals(toList(bag), Arrays.asList(rid(9, 100), rid(10, 1)));
+  }
+
+  public void testBulkOperations() {
+    final ORidBag bag = new ORidBag();
+    bag.add(rid(5, 2));
+    bag.add(rid(5, 4));
+
+    final List<OIdentifiable> added = bag.addAll(Arrays.asList(rid(5, 3), rid(5, 4), rid(5, 1), rid(5, 3)));
+    Assert.assertEquals(added, Arrays.asList(rid(5, 1), rid(5, 3)));
+    Assert.assertEquals(toList(bag), Arrays.asList(rid(5, 1), rid(5, 2), rid(5, 3), rid(5, 4)));
+
+    final List<OIdentifiable> removed = bag.removeAll(Arrays.asList(rid(5, 4), rid(5, 1), rid(6, 1)));
+    Assert.assertEquals(removed, Arrays.asList(rid(5, 1), rid(5, 4)));
+
+    bag.retainAll(Arrays.asList(rid(5, 3)));
+    Assert.assertEquals(toList(bag), Arrays.asList(rid(5, 3)));
+  }
+
+  public void testIteratorRemove() {
+    final ORidBag bag = new ORidBag();
+    for (int i = 0; i < 10; ++i)
+      bag.add(rid(3, i));
+
+    for (Iterator<OIdentifiable> it = bag.iterator(); it.hasNext();)
+      if (it.next().getIdentity().getClusterPosition().longValue() % 2 == 0)
+        it.remove();
+
+    Assert.assertEquals(bag.size(), 5);
+    for (OIdentifiable rid : bag)
+      Assert.assertEquals(rid.getIdentity().getClusterPosition().longValue() % 2, 1);
+  }
+
+  public void testDeltaStreaming() {
+    final ORidBag bag = new ORidBag();
+    bag.add(rid(10, 5));
+    bag.add(rid(9, 100));
+    bag.add(rid(9, 101));
+    bag.add(rid(9, 104));
+    bag.add(rid(10, 1));
+
+    final String stream = bag.toStream(new StringBuilder(), true).toString();
+    Assert.assertEquals(stream, "<#9:100,+1,+3,#10:1,+4>");
+
+    final ORidBag loaded = new ORidBag().fromStream(new StringBuilder(stream));
+    Assert.assertEquals(toList(loaded), toList(bag));
+
+    // UNCHANGED: STREAMED AS IS
+    Assert.assertEquals(loaded.toStream(new StringBuilder(), true).toString(), stream);
+
+    // DELTA FORMAT NOT ALLOWED: ALL THE RIDS ARE WRITTEN
+    Assert.assertEquals(loaded.toStream(new StringBuilder(), false).toString(), "<#9:100,#9:101,#9:104,#10:1,#10:5>");
+  }
+
+  public void testLegacyStreaming() {
+    final ORidBag bag = new ORidBag().fromStream(new StringBuilder("#10:5,#9:100,#10:5"));
+    Assert.assertEquals(toList(bag), Arrays.asList(rid(9, 100), rid(10, 5)));
+
+    bag.add(rid(9, 102));
+    Assert.assertEquals(bag.toStream(new StringBuilder(), true).toString(), "<#9:100,+2,#10:5>");
+
+    // NO DATABASE DECLARES THE SUPPORT OF THE DELTA FORMAT
+    Assert.assertEquals(bag.toString(), "<#9:100,#9:102,#10:5>");
+  }
+
+  public void testUnpackedRids() {
+    final long bigPosition = 1L << 48;
+
+    final ORidBag bag = new ORidBag();
+    Assert.assertTrue(bag.add(rid(5, 1)));
+    Assert.assertTrue(bag.add(rid(7, bigPosition + 5)));
+    Assert.assertTrue(bag.add(rid(5, bigPosition)));
+
+    // PERSISTENT RIDS ARE COMPARED BY VALUE, NOT BY IDENTITY
+    Assert.assertFalse(bag.add(rid(7, bigPosition + 5)));
+    Assert.assertFalse(bag.add(rid(5, bigPosition)));
+    Assert.assertEquals(bag.size(), 3);
+    Assert.assertTrue(bag.contains(rid(5, bigPosition)));
+    Assert.assertFalse(bag.contains(rid(6, 0)));
+
+    final String stream = bag.toStream(new StringBuilder(), true).toString();
+    Assert.assertEquals(stream, "<#5:1,#7:" + (bigPosition + 5) + ",#5:" + bigPosition + ">");
+
+    final ORidBag loaded = new ORidBag().fromStream(new StringBuilder(stream));
+    Assert.assertEquals(toList(loaded), Arrays.asList(rid(5, 1), rid(7, bigPosition + 5), rid(5, bigPosition)));
+
+    Assert.assertTrue(loaded.remove(rid(7, bigPosition + 5)));
+    Assert.assertFalse(loaded.remove(rid(7, bigPosition + 5)));
+    Assert.assertEquals(loaded.removeAll(Arrays.asList(rid(5, bigPosition), rid(5, 1))).size(), 2);
+    Assert.assertTrue(loaded.isEmpty());
+  }
+
+  public void testPositionsOverTheMaskAreNotPacked() {
+    // THE POSITION DOESN'T FIT IN 48 BITS: PACKED IT WOULD BECOME #6:0
+    final ORidBag bag = new ORidBag().fromStream(new StringBuilder("<#5:281474976710656,#5:1,+2>"));
+    Assert.assertEquals(toList(bag), Arrays.asList(rid(5, 1), rid(5, 3), rid(5, 281474976710656L)));
+    Assert.assertFalse(bag.contains(rid(6, 0)));
+  }
+
+  public void testSetEvents() {
+    final ODocument doc = new ODocument();
+    doc.unsetDirty();
+
+    final OMVRBTreeRIDSet set = new OMVRBTreeRIDSet(doc);
+    Assert.assertTrue(set.isEmbedded());
+
+    final List<OMultiValueChangeEvent<OIdentifiable, OIdentifiable>> events = new ArrayList<OMultiValueChangeEvent<OIdentifiable, OIdentifiable>>();
+    set.addChangeListener(new OMultiValueChangeListener<OIdentifiable, OIdentifiable>() {
+      public void onAfterRecordChanged(final OMultiValueChangeEvent<OIdentifiable, OIdentifiable> event) {
+        events.add(event);
+      }
+    });
+
+    set.add(rid(5, 1));
+    Assert.assertTrue(doc.isDirty());
+
+    set.addAll(Arrays.asList(rid(5, 2), rid(5, 1)));
+    set.remove(rid(5, 1));
+
+    Assert.assertEquals(events.size(), 3);
+    Assert.assertEquals(events.get(0).getChangeType(), OMultiValueChangeEvent.OChangeType.ADD);
+    Assert.assertEquals(events.get(1).getKey(), rid(5, 2));
+    Assert.assertEquals(events.get(2).getChangeType(), OMultiValueChangeEvent.OChangeType.REMOVE);
+
+    final Set<OIdentifiable> original = new HashSet<OIdentifiable>();
+    Assert.assertEquals(set.returnOriginalState(events), original);
+  }
+
+  public void testDocumentRoundTrip() {
+    final int oldThreshold = OGlobalConfiguration.RID_BAG_EMBEDDED_TO_TREE_THRESHOLD.getValueAsInteger();
+    OGlobalConfiguration.RID_BAG_EMBEDDED_TO_TREE_THRESHOLD.setValue(50);
+
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx("memory:ridBagTest");
+    db.create();
+    try {
+      final List<ODocument> linked = new ArrayList<ODocument>();
+      for (int i = 0; i < 60; ++i)
+        linked.add(new ODocument().field("id", i).save());
+
+      final ODocument doc = new ODocument();
+      final OMVRBTreeRIDSet set = new OMVRBTreeRIDSet(doc);
+      set.addAll(linked.subList(0, 30));
+      // NOT SAVED YET: SAVED WITH THE OWNER
+      set.add(new ODocument().field("id", -1));
+      doc.field("links", set);
+      doc.save();
+
+      ODocument loaded = db.load(doc.getIdentity(), "*:-1", true);
+      OMVRBTreeRIDSet loadedSet = loaded.field("links");
+      Assert.assertTrue(loadedSet.isEmbedded());
+      Assert.assertEquals(loadedSet.size(), 31);
+      Assert.assertTrue(loadedSet.contains(linked.get(10)));
+
+      // OVER THE THRESHOLD: MOVED TO THE TREE
+      loadedSet.addAll(linked.subList(30, 60));
+      loaded.save();
+      Assert.assertFalse(loadedSet.isEmbedded());
+
+      loaded = db.load(doc.getIdentity(), "*:-1", true);
+      loadedSet = loaded.field("links");
+      Assert.assertFalse(loadedSet.isEmbedded());
+      Assert.assertEquals(loadedSet.size(), 61);
+      for (ODocument d : linked)
+        Assert.assertTrue(loadedSet.contains(d));
+    } finally {
+      db.drop();
+      OGlobalConfiguration.RID_BAG_EMBEDDED_TO_TREE_THRESHOLD.setValue(oldThreshold);
+    }
+  }
+
+  public void testDeltaFormatRequiresStorageSupport() {
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx("memory:ridBagFormatTest");
+    db.create();
+    try {
+      final ODocument doc = new ODocument();
+      final OMVRBTreeRIDSet set = new OMVRBTreeRIDSet(doc);
+      for (int i = 0; i < 10; ++i)
+        set.add(rid(5, i));
+      doc.field("links", set);
+      doc.save();
+
+      // NEW STORAGES DECLARE THE SUPPORT
+      Assert.assertTrue(ORidBag.containsDeltaFormat(doc.toStream()));
+
+      // THE CLIENTS THAT DON'T READ THE DELTA FORMAT RECEIVE A COPY STREAMED AGAIN
+      final ODocument copy = new ODocument();
+      copy.fromStream(doc.toStream());
+      copy.deserializeFields();
+      copy.setDirty();
+      ORidBag.setLegacyFormat(true);
+      try {
+        final byte[] legacy = copy.toStream();
+        Assert.assertFalse(ORidBag.containsDeltaFormat(legacy));
+        Assert.assertEquals(((OMVRBTreeRIDSet) new ODocument(legacy).field("links")).size(), 10);
+      } finally {
+        ORidBag.setLegacyFormat(false);
+      }
+
+      // STORAGES CREATED BEFORE THE DELTA FORMAT KEEP THE CLASSIC ONE
+      final int version = db.getStorage().getConfiguration().version;
+      db.getStorage().getConfiguration().version = ORidBag.DELTA_FORMAT_STORAGE_VERSION - 1;
+      try {
+        set.add(rid(5, 20));
+        doc.save();
+        Assert.assertFalse(ORidBag.containsDeltaFormat(doc.toStream()));
+      } finally {
+        db.getStorage().getConfiguration().version = version;
+      }
+    } finally {
+      db.drop();
+    }
+  }
+
+  public void testMigrationToTreeAtDefaultThreshold() {
+    // THE DEFAULT THRESHOLD
+    final int threshold = 20000;
+
+    final Object oldThreshold = OGlobalConfiguration.RID_BAG_EMBEDDED_TO_TREE_THRESHOLD.getValue();
+    OGlobalConfiguration.RID_BAG_EMBEDDED_TO_TREE_THRESHOLD.setValue(threshold);
+
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx("memory:ridBagMigrationTest");
+    db.create();
+    try {
+      final ODocument doc = new ODocument();
+      final OMVRBTreeRIDSet set = new OMVRBTreeRIDSet(doc);
+      final List<OIdentifiable> rids = new ArrayList<OIdentifiable>();
+      for (int i = 0; i < threshold; ++i)
+        rids.add(rid(5, i));
+      set.addAll(rids);
+      doc.field("links", set);
+      doc.save();
+
+      // AT THE THRESHOLD: STILL EMBEDDED
+      ODocument loaded = db.load(doc.getIdentity(), "*:-1", true);
+      OMVRBTreeRIDSet loadedSet = loaded.field("links");
+      Assert.assertTrue(loadedSet.isEmbedded());
+      Assert.assertEquals(loadedSet.size(), threshold);
+
+      // ONE MORE: MOVED TO THE TREE
+      loadedSet.add(rid(6, 0));
+      loaded.save();
+      Assert.assertFalse(loadedSet.isEmbedded());
+
+      loaded = db.load(doc.getIdentity(), "*:-1", true);
+      loadedSet = loaded.field("links");
+      Assert.assertFalse(loadedSet.isEmbedded());
+      Assert.assertEquals(loadedSet.size(), threshold + 1);
+      Assert.assertTrue(loadedSet.contains(rid(5, 0)));
+      Assert.assertTrue(loadedSet.contains(rid(5, threshold - 1)));
+      Assert.assertTrue(loadedSet.contains(rid(6, 0)));
+      Assert.assertEquals(loadedSet.getGenericClass(), OIdentifiable.class);
+    } finally {
+      db.drop();
+      OGlobalConfiguration.RID_BAG_EMBEDDED_TO_TREE_THRESHOLD.setValue(oldThreshold);
+    }
+  }
+
+  private static ORecordId rid(final int iClusterId, final long iPosition) {
+    return new ORecordId(iClusterId, OClusterPositionFactory.INSTANCE.valueOf(iPosition));
+  }
+
+  private static List<OIdentifiable> toList(final Iterable<OIdentifiable> iValues) {
+    final List<OIdentifiable> list = new ArrayList<OIdentifiable>();
+    for (OIdentifiable value : iValues)
+      list.add(value);
+    return list;
+  }
+}
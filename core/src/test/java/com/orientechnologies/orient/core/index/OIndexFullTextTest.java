@@ -0,0 +1,195 @@
+package com.orientechnologies.orient.core.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OIndexFullTextTest {
+  private ODatabaseDocumentTx db;
+  private OIndexFullText      index;
+  private ODocument           runningShoes;
+  private ODocument           redRunningShoes;
+  private ODocument           shirt;
+
+  @BeforeClass
+  public void init() {
+    db = new ODatabaseDocumentTx("memory:fullTextTest");
+    db.create();
+
+    final OClass product = db.getMetadata().getSchema().createClass("Product");
+    product.createProperty("description", OType.STRING).createIndex(OClass.INDEX_TYPE.FULLTEXT);
+
+    new ODocument("Product").field("description", "shoes for walking").save();
+    runningShoes = new ODocument("Product").field("description", "running shoes, light shoes for running").save();
+    redRunningShoes = new ODocument("Product").field("description", "red shoes: running shoes and red socks").save();
+    shirt = new ODocument("Product").field("description", "red running shirt").save();
+
+    index = (OIndexFullText) db.getMetadata().getIndexManager().getIndex("Product.description").getInternal();
+  }
+
+  @AfterClass
+  public void close() {
+    db.drop();
+  }
+
+  public void testTermLookup() {
+    Assert.assertEquals(index.get("shoes").size(), 3);
+    Assert.assertEquals(index.get("running").size(), 3);
+    Assert.assertEquals(index.get("the").size(), 0);
+  }
+
+  public void testRankedSearch() {
+    final List<OIdentifiable> result = index.search("running shoes", 0);
+    Assert.assertEquals(result.size(), 4);
+    // THE SHORT DOCUMENT WITH BOTH TERMS TWICE COMES FIRST, THE ONE WITHOUT "shoes" LAST
+    Assert.assertEquals(result.get(0), runningShoes.getIdentity());
+    Assert.assertEquals(result.get(3), shirt.getIdentity());
+
+    final List<OIdentifiable> top = index.search("running shoes", 2);
+    Assert.assertEquals(top, result.subList(0, 2));
+
+    Assert.assertTrue(index.search("unknown", 10).isEmpty());
+  }
+
+  public void testPhraseSearch() {
+    final List<OIdentifiable> result = index.search("\"red running\"", 0);
+    Assert.assertEquals(result.size(), 1);
+    Assert.assertEquals(result.get(0), shirt.getIdentity());
+
+    final List<OIdentifiable> runningShoesRed = index.search("\"running shoes\" red", 0);
+    Assert.assertEquals(runningShoesRed.size(), 2);
+    Assert.assertEquals(runningShoesRed.get(0), redRunningShoes.getIdentity());
+    Assert.assertEquals(runningShoesRed.get(1), runningShoes.getIdentity());
+  }
+
+  public void testCounters() {
+    Assert.assertEquals(index.getDocuments(), 4);
+    Assert.assertEquals(index.getTerms(), countTerms());
+  }
+
+  public void testPositionsStream() {
+    final int[] positions = OFullTextPostings.merge(new int[] { 3, 7 }, new int[] { 5, 200 });
+    Assert.assertTrue(Arrays.equals(positions, new int[] { 3, 5, 7, 200 }));
+    Assert.assertTrue(Arrays.equals(OFullTextPostings.fromStream(OFullTextPostings.toStream(positions)), positions));
+    Assert.assertEquals(OFullTextPostings.fromStream(OFullTextPostings.toStream(new int[0])).length, 0);
+  }
+
+  public void testEntriesByTermAndRecord() {
+    final OIndexFullText manual = (OIndexFullText) db.getMetadata().getIndexManager()
+        .createIndex("entriesFullText", OClass.INDEX_TYPE.FULLTEXT.toString(), null, null, null).getInternal();
+    try {
+      manual.put("green shoes", runningShoes);
+      manual.put("green socks", shirt);
+      manual.put("green laces", runningShoes);
+
+      // ONE ENTRY FOR EVERY TERM OF EVERY RECORD
+      Assert.assertEquals(manual.getSize(), 5);
+      Assert.assertEquals(manual.getKeySize(), 4);
+      Assert.assertEquals(manual.count("green"), 2);
+      Assert.assertTrue(manual.contains("laces"));
+      Assert.assertFalse(manual.contains("red"));
+
+      final Iterator<Entry<Object, Set<OIdentifiable>>> it = manual.iterator();
+      Assert.assertEquals(it.next().getKey(), "green");
+      final Entry<Object, Set<OIdentifiable>> laces = it.next();
+      Assert.assertEquals(laces.getKey(), "laces");
+      Assert.assertEquals(laces.getValue(), Collections.singleton(runningShoes.getIdentity()));
+
+      Assert.assertEquals(manual.getValuesBetween("laces", "socks").size(), 2);
+      Assert.assertEquals(manual.search("\"green laces\"", 0), Collections.singletonList(runningShoes.getIdentity()));
+
+      Assert.assertTrue(manual.remove("green"));
+      Assert.assertFalse(manual.contains("green"));
+      Assert.assertEquals(manual.getSize(), 3);
+      Assert.assertEquals(manual.getTerms(), 3);
+    } finally {
+      db.getMetadata().getIndexManager().dropIndex("entriesFullText");
+    }
+  }
+
+  public void testManualIndex() {
+    final OIndexFullText manual = (OIndexFullText) db.getMetadata().getIndexManager()
+        .createIndex("manualFullText", OClass.INDEX_TYPE.FULLTEXT.toString(), null, null, null).getInternal();
+    try {
+      manual.put("green running shoes", runningShoes);
+      manual.put("green socks", shirt);
+
+      final List<OIdentifiable> result = manual.search("green shoes", 0);
+      Assert.assertEquals(result.size(), 2);
+      Assert.assertEquals(result.get(0), runningShoes.getIdentity());
+      Assert.assertEquals(manual.search("\"running shoes\"", 0).size(), 1);
+
+      Assert.assertTrue(manual.remove("green socks", shirt));
+      Assert.assertEquals(manual.getDocuments(), 1);
+      Assert.assertEquals(manual.getTerms(), 3);
+    } finally {
+      db.getMetadata().getIndexManager().dropIndex("manualFullText");
+    }
+  }
+
+  @Test(dependsOnMethods = { "testTermLookup", "testRankedSearch", "testPhraseSearch", "testCounters", "testManualIndex",
+      "testEntriesByTermAndRecord" })
+  public void testUpdateAndDelete() {
+    shirt.field("description", "Blue shirt").save();
+    Assert.assertFalse(index.search("red", 0).contains(shirt.getIdentity()));
+    Assert.assertEquals(index.search("blue", 0).size(), 0);
+    Assert.assertEquals(index.search("Blue", 0).size(), 1);
+    Assert.assertEquals(index.getDocuments(), 4);
+    Assert.assertEquals(index.getTerms(), countTerms());
+
+    redRunningShoes.delete();
+    Assert.assertTrue(index.search("red", 0).isEmpty());
+    Assert.assertEquals(index.getDocuments(), 3);
+    Assert.assertEquals(index.getTerms(), countTerms());
+  }
+
+  @Test(dependsOnMethods = "testUpdateAndDelete")
+  public void testReload() {
+    final List<OIdentifiable> before = index.search("running shoes", 0);
+
+    index.flush();
+    index.unload();
+    index.loadFromConfiguration(index.getConfiguration());
+
+    Assert.assertEquals(index.search("running shoes", 0), before);
+    Assert.assertEquals(index.getDocuments(), 3);
+    Assert.assertEquals(index.getTerms(), countTerms());
+  }
+
+  @Test(dependsOnMethods = "testReload")
+  public void testSQLFunction() {
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>(
+        "select from Product where @rid in searchText('Product.description', 'running shoes', 1)"));
+    Assert.assertEquals(result.size(), 1);
+    Assert.assertEquals(result.get(0).getIdentity(), runningShoes.getIdentity());
+
+    db.command(new OCommandSQL("delete from Product")).execute();
+    Assert.assertTrue(index.search("shoes", 0).isEmpty());
+    Assert.assertEquals(index.getDocuments(), 0);
+    Assert.assertEquals(index.getTerms(), 0);
+  }
+
+  private long countTerms() {
+    long terms = 0;
+    for (ODocument product : db.browseClass("Product"))
+      terms += index.getAnalyzer().analyze((String) product.field("description")).size();
+    return terms;
+  }
+}
@@ -0,0 +1,137 @@
+package com.orientechnologies.orient.core.index.sbtree.local;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.collection.OCompositeKey;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexException;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class OSBTreeIndexTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeClass
+  public void beforeClass() {
+    String dbPath = System.getProperty("java.io.tmpdir");
+    if (!dbPath.endsWith(File.separator))
+      dbPath += "/";
+    dbPath += "orientdb/sbTreeIndexTest";
+
+    db = new ODatabaseDocumentTx("local:" + dbPath);
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+      db = new ODatabaseDocumentTx("local:" + dbPath);
+    }
+    db.create();
+
+    final OClass person = db.getMetadata().getSchema().createClass("Person");
+    person.createProperty("name", OType.STRING);
+    person.createProperty("city", OType.STRING);
+    person.createProperty("age", OType.INTEGER);
+    person.createIndex("Person.name", OClass.INDEX_TYPE.UNIQUE_SBTREE, "name");
+    person.createIndex("Person.city", OClass.INDEX_TYPE.NOTUNIQUE_SBTREE, "city");
+    person.createIndex("Person.cityAge", OClass.INDEX_TYPE.NOTUNIQUE_SBTREE, "city", "age");
+  }
+
+  @AfterClass
+  public void afterClass() {
+    db.drop();
+  }
+
+  public void testAutomaticIndexes() {
+    for (int i = 0; i < 100; i++)
+      new ODocument("Person").field("name", "name" + i).field("city", "city" + (i % 10)).field("age", i).save();
+
+    final OIndex<?> names = db.getMetadata().getIndexManager().getIndex("Person.name");
+    Assert.assertEquals(names.getSize(), 100);
+    Assert.assertEquals(((OIdentifiable) names.get("name42")).<ODocument> getRecord().field("age"), 42);
+    Assert.assertNull(names.get("missing"));
+
+    final OIndex<?> cities = db.getMetadata().getIndexManager().getIndex("Person.city");
+    Assert.assertEquals(cities.getSize(), 100);
+    Assert.assertEquals(cities.getKeySize(), 10);
+    Assert.assertEquals(((Collection<?>) cities.get("city3")).size(), 10);
+    Assert.assertEquals(cities.getValuesBetween("city1", true, "city3", false).size(), 20);
+  }
+
+  @Test(dependsOnMethods = "testAutomaticIndexes", expectedExceptions = OIndexException.class)
+  public void testDuplicateRejected() {
+    new ODocument("Person").field("name", "name7").save();
+  }
+
+  @Test(dependsOnMethods = "testDuplicateRejected")
+  public void testPartialCompositeKey() {
+    final OIndex<?> cityAge = db.getMetadata().getIndexManager().getIndex("Person.cityAge");
+    Assert.assertEquals(cityAge.getValuesBetween(new OCompositeKey("city5"), true, new OCompositeKey("city5"), true).size(), 10);
+    Assert.assertEquals(((Collection<?>) cityAge.get(new OCompositeKey("city5", 15))).size(), 1);
+    Assert.assertEquals(cityAge.getValuesMajor(new OCompositeKey("city9", 50), true).size(), 5);
+  }
+
+  @Test(dependsOnMethods = "testPartialCompositeKey")
+  public void testUpdateAndDelete() {
+    final OIndex<?> names = db.getMetadata().getIndexManager().getIndex("Person.name");
+    final OIndex<?> cities = db.getMetadata().getIndexManager().getIndex("Person.city");
+
+    final ODocument doc = ((OIdentifiable) names.get("name1")).getRecord();
+    doc.field("city", "elsewhere").save();
+    Assert.assertEquals(((Collection<?>) cities.get("city1")).size(), 9);
+    Assert.assertEquals(((Collection<?>) cities.get("elsewhere")).size(), 1);
+
+    doc.delete();
+    Assert.assertNull(names.get("name1"));
+    Assert.assertEquals(((Collection<?>) cities.get("elsewhere")).size(), 0);
+  }
+
+  @Test(dependsOnMethods = "testUpdateAndDelete")
+  public void testTransaction() {
+    final OIndex<?> names = db.getMetadata().getIndexManager().getIndex("Person.name");
+
+    db.begin();
+    new ODocument("Person").field("name", "txName").field("city", "txCity").field("age", 1).save();
+    Assert.assertNotNull(names.get("txName"));
+    db.commit();
+    Assert.assertNotNull(names.get("txName"));
+
+    db.begin();
+    new ODocument("Person").field("name", "rolledBack").save();
+    db.rollback();
+    Assert.assertNull(names.get("rolledBack"));
+  }
+
+  @Test(dependsOnMethods = "testTransaction")
+  public void testOrderedIterationAndReopen() {
+    OIndex<?> cities = db.getMetadata().getIndexManager().getIndex("Person.city");
+    final Iterator<? extends Map.Entry<Object, ?>> it = cities.iterator();
+    String previous = null;
+    int keys = 0;
+    while (it.hasNext()) {
+      final String key = (String) it.next().getKey();
+      if (previous != null)
+        Assert.assertTrue(previous.compareTo(key) < 0);
+      previous = key;
+      keys++;
+    }
+    Assert.assertEquals(keys, cities.getKeySize());
+
+    db.close();
+    db.open("admin", "admin");
+
+    cities = db.getMetadata().getIndexManager().getIndex("Person.city");
+    Assert.assertEquals(((Collection<?>) cities.get("city3")).size(), 10);
+    Assert.assertNotNull(db.getMetadata().getIndexManager().getIndex("Person.name").get("txName"));
+  }
+}
@@ -0,0 +1,152 @@
+package com.orientechnologies.orient.core.index.sbtree.local;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.serialization.types.OStringSerializer;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.OLinkSerializer;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
+
+@Test
+public class OSBTreeTest {
+  private static final int                   KEYS = 20000;
+  private ODatabaseDocumentTx                db;
+  private OSBTree<String, OIdentifiable>     tree;
+
+  @BeforeClass
+  public void beforeClass() {
+    String dbPath = System.getProperty("java.io.tmpdir");
+    if (!dbPath.endsWith(File.separator))
+      dbPath += "/";
+    dbPath += "orientdb/sbTreeTest";
+
+    db = new ODatabaseDocumentTx("local:" + dbPath);
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+      db = new ODatabaseDocumentTx("local:" + dbPath);
+    }
+    db.create();
+
+    tree = new OSBTree<String, OIdentifiable>(".sbt");
+    tree.create("sbTreeTest", OStringSerializer.INSTANCE, OLinkSerializer.INSTANCE, (OStorageLocalAbstract) db.getStorage());
+  }
+
+  @AfterClass
+  public void afterClass() {
+    tree.delete();
+    db.drop();
+  }
+
+  public void testPutGet() {
+    // LONG KEYS FORCE SPLITS ON MORE THAN ONE LEVEL
+    for (int i = 0; i < KEYS; i++)
+      tree.put(key(i), rid(i));
+
+    Assert.assertEquals(tree.size(), KEYS);
+    for (int i = 0; i < KEYS; i++)
+      Assert.assertEquals(tree.get(key(i)), rid(i));
+    Assert.assertNull(tree.get(key(KEYS)));
+  }
+
+  @Test(dependsOnMethods = "testPutGet")
+  public void testUpdate() {
+    tree.put(key(10), rid(-10));
+    Assert.assertEquals(tree.get(key(10)), rid(-10));
+    Assert.assertEquals(tree.size(), KEYS);
+    tree.put(key(10), rid(10));
+  }
+
+  @Test(dependsOnMethods = "testUpdate")
+  public void testRanges() {
+    List<Map.Entry<String, OIdentifiable>> result = collectBetween(key(100), true, key(200), true);
+    Assert.assertEquals(result.size(), 101);
+    for (int i = 0; i < result.size(); i++)
+      Assert.assertEquals(result.get(i).getKey(), key(100 + i));
+
+    Assert.assertEquals(collectBetween(key(100), false, key(200), false).size(), 99);
+    Assert.assertEquals(collectBetween(null, true, key(99), true).size(), 100);
+
+    final List<Map.Entry<String, OIdentifiable>> major = new ArrayList<Map.Entry<String, OIdentifiable>>();
+    tree.loadEntriesMajor(key(KEYS - 50), false, collector(major));
+    Assert.assertEquals(major.size(), 49);
+    Assert.assertEquals(major.get(0).getKey(), key(KEYS - 49));
+
+    final List<Map.Entry<String, OIdentifiable>> minor = new ArrayList<Map.Entry<String, OIdentifiable>>();
+    tree.loadEntriesMinor(key(50), true, collector(minor));
+    Assert.assertEquals(minor.size(), 51);
+    Assert.assertEquals(minor.get(0).getKey(), key(50));
+    Assert.assertEquals(minor.get(50).getKey(), key(0));
+
+    final List<Map.Entry<String, OIdentifiable>> all = new ArrayList<Map.Entry<String, OIdentifiable>>();
+    tree.loadEntriesMinor(null, true, collector(all));
+    Assert.assertEquals(all.size(), KEYS);
+    Assert.assertEquals(all.get(0).getKey(), key(KEYS - 1));
+  }
+
+  @Test(dependsOnMethods = "testRanges")
+  public void testRemove() {
+    for (int i = 0; i < KEYS; i += 2)
+      Assert.assertEquals(tree.remove(key(i)), rid(i));
+    Assert.assertNull(tree.remove(key(0)));
+
+    Assert.assertEquals(tree.size(), KEYS / 2);
+    for (int i = 0; i < KEYS; i++)
+      if (i % 2 == 0)
+        Assert.assertNull(tree.get(key(i)));
+      else
+        Assert.assertEquals(tree.get(key(i)), rid(i));
+
+    Assert.assertEquals(collectBetween(key(100), true, key(200), true).size(), 50);
+  }
+
+  @Test(dependsOnMethods = "testRemove")
+  public void testReopen() {
+    tree.close();
+
+    tree = new OSBTree<String, OIdentifiable>(".sbt");
+    tree.load("sbTreeTest", null, (OStorageLocalAbstract) db.getStorage());
+
+    Assert.assertEquals(tree.size(), KEYS / 2);
+    for (int i = 1; i < KEYS; i += 2)
+      Assert.assertEquals(tree.get(key(i)), rid(i));
+  }
+
+  private List<Map.Entry<String, OIdentifiable>> collectBetween(final String iFrom, final boolean iFromInclusive, final String iTo,
+      final boolean iToInclusive) {
+    final List<Map.Entry<String, OIdentifiable>> result = new ArrayList<Map.Entry<String, OIdentifiable>>();
+    tree.loadEntriesBetween(iFrom, iFromInclusive, iTo, iToInclusive, collector(result));
+    return result;
+  }
+
+  private OSBTree.RangeResultListener<String, OIdentifiable> collector(final List<Map.Entry<String, OIdentifiable>> iResult) {
+    return new OSBTree.RangeResultListener<String, OIdentifiable>() {
+      public boolean addResult(final Map.Entry<String, OIdentifiable> entry) {
+        iResult.add(entry);
+        return true;
+      }
+    };
+  }
+
+  private static String key(final int i) {
+    final StringBuilder builder = new StringBuilder(String.format("%08d", i));
+    while (builder.length() < 300)
+      builder.append('x');
+    return builder.toString();
+  }
+
+  private static ORecordId rid(final int i) {
+    return new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(Math.abs(i) + (i < 0 ? 1000000 : 0)));
+  }
+}
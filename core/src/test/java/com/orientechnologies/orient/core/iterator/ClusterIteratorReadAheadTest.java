@@ -0,0 +1,101 @@
+package com.orientechnologies.orient.core.iterator;
+
+import java.io.File;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+
+@Test
+public class ClusterIteratorReadAheadTest {
+  private static final int    RECORDS = 1000;
+  private ODatabaseDocumentTx db;
+
+  @BeforeClass
+  public void beforeClass() {
+    String dbPath = System.getProperty("java.io.tmpdir");
+    if (!dbPath.endsWith(File.separator))
+      dbPath += "/";
+    dbPath += "orientdb/readAheadTest";
+
+    db = new ODatabaseDocumentTx("local:" + dbPath);
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+      db = new ODatabaseDocumentTx("local:" + dbPath);
+    }
+    db.create();
+
+    db.getMetadata().getSchema().createClass("Scan");
+    for (int i = 0; i < RECORDS; ++i)
+      new ODocument("Scan").field("id", i).save();
+  }
+
+  @AfterClass
+  public void afterClass() {
+    db.drop();
+  }
+
+  public void testBrowseAll() {
+    int expected = 0;
+    for (ODocument doc : db.browseClass("Scan")) {
+      Assert.assertEquals(doc.field("id"), expected);
+      expected++;
+    }
+    Assert.assertEquals(expected, RECORDS);
+  }
+
+  public void testBrowseWithLimit() {
+    final ORecordIteratorClass<ODocument> it = db.browseClass("Scan");
+    it.setLimit(100);
+
+    int browsed = 0;
+    for (ODocument doc : it) {
+      Assert.assertEquals(doc.field("id"), browsed);
+      browsed++;
+    }
+    Assert.assertEquals(browsed, 100);
+  }
+
+  public void testUpdateWhileBrowsing() {
+    // WITHOUT CACHE THE RECORDS ARE ALWAYS READ FROM THE STORAGE OR FROM THE READ-AHEAD
+    final ORecordIteratorClass<ODocument> it = new ORecordIteratorClass<ODocument>(db, (ODatabaseRecord) db.getUnderlying(),
+        "Scan", true, false, false);
+
+    int browsed = 0;
+    for (ODocument doc : it) {
+      if (browsed > 0)
+        Assert.assertEquals(doc.field("touched"), browsed - 1);
+
+      if (browsed + 1 < RECORDS) {
+        // CHANGE THE NEXT RECORD: THE RECORDS READ AHEAD MUST BE DISCARDED
+        final ORecordId next = new ORecordId(doc.getIdentity().getClusterId(), doc.getIdentity().getClusterPosition().inc());
+        db.command(new OCommandSQL("update " + next + " set touched = " + browsed)).execute();
+      }
+
+      browsed++;
+    }
+    Assert.assertEquals(browsed, RECORDS);
+  }
+
+  public void testBrowseAfterDelete() {
+    final ODocument doc = new ODocument("Scan").field("id", RECORDS);
+    doc.save();
+
+    int browsed = 0;
+    for (ODocument d : db.browseClass("Scan")) {
+      if (browsed == 0)
+        doc.delete();
+      Assert.assertFalse(d.getIdentity().equals(doc.getIdentity()));
+      browsed++;
+    }
+    Assert.assertEquals(browsed, RECORDS);
+  }
+}
@@ -0,0 +1,69 @@
+package com.orientechnologies.orient.core.record.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+
+@Test
+public class ODocumentFieldMapTest {
+
+  public void testInsertionOrder() {
+    final ODocumentFieldMap map = new ODocumentFieldMap(null);
+    for (int i = 0; i < 40; ++i)
+      Assert.assertNull(map.put("f" + i, i));
+
+    Assert.assertEquals(map.size(), 40);
+    int i = 0;
+    for (String key : map.keySet())
+      Assert.assertEquals(key, "f" + i++);
+
+    Assert.assertEquals(map.put("f10", "ten"), 10);
+    Assert.assertEquals(map.get("f10"), "ten");
+    Assert.assertEquals(map.remove("f0"), 0);
+    Assert.assertEquals(map.get("f39"), 39);
+    Assert.assertFalse(map.containsKey("f0"));
+    Assert.assertNull(map.get("missing"));
+    Assert.assertEquals(map.size(), 39);
+  }
+
+  public void testIteratorRemove() {
+    final ODocumentFieldMap map = new ODocumentFieldMap(null);
+    map.put("a", 1);
+    map.put("b", 2);
+    map.put("c", 3);
+
+    final Iterator<Entry<String, Object>> it = map.entrySet().iterator();
+    while (it.hasNext()) {
+      final Entry<String, Object> entry = it.next();
+      if (entry.getKey().equals("b"))
+        it.remove();
+      else
+        entry.setValue(((Integer) entry.getValue()) * 10);
+    }
+
+    Assert.assertEquals(map.keySet().toArray(), new Object[] { "a", "c" });
+    Assert.assertEquals(map.get("a"), 10);
+    Assert.assertEquals(map.get("c"), 30);
+  }
+
+  public void testSharedFieldNames() {
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx("memory:documentFieldMapTest");
+    db.create();
+    try {
+      db.getMetadata().getSchema().createClass("Person");
+
+      final ODocument first = new ODocument("Person").field(new String("name"), "Jay");
+      final ODocument second = new ODocument("Person").field(new String("name"), "Jack");
+
+      Assert.assertSame(first.fieldNames()[0], second.fieldNames()[0]);
+      Assert.assertEquals(Arrays.asList(second.fieldNames()), Arrays.asList("name"));
+    } finally {
+      db.drop();
+    }
+  }
+}
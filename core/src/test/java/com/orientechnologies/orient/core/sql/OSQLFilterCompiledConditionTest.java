@@ -0,0 +1,100 @@
+package com.orientechnologies.orient.core.sql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.filter.OSQLFilterCompiledCondition;
+import com.orientechnologies.orient.core.sql.filter.OSQLPredicate;
+
+@Test
+public class OSQLFilterCompiledConditionTest {
+  private ODatabaseDocumentTx db;
+  private List<ODocument>     docs = new ArrayList<ODocument>();
+
+  @BeforeClass
+  public void init() {
+    db = new ODatabaseDocumentTx("memory:compiledConditionTest");
+    db.create();
+
+    final OClass cls = db.getMetadata().getSchema().createClass("Item");
+    cls.createProperty("i", OType.INTEGER);
+    cls.createProperty("l", OType.LONG);
+    cls.createProperty("d", OType.DOUBLE);
+    cls.createProperty("f", OType.FLOAT);
+    cls.createProperty("s", OType.STRING);
+
+    for (int n = 0; n < 20; ++n) {
+      final ODocument doc = new ODocument("Item");
+      if (n % 7 != 0)
+        doc.field("i", n);
+      doc.field("l", (long) n * 1000);
+      doc.field("d", n / 3d);
+      doc.field("f", n / 4f);
+      doc.field("s", "v" + n);
+      doc.field("free", n % 2 == 0 ? n : "x" + n);
+      doc.save();
+      docs.add(doc);
+    }
+  }
+
+  @AfterClass
+  public void close() {
+    db.drop();
+  }
+
+  public void testSameResultsOfInterpreter() {
+    final String[] predicates = { "i = 5", "i <> 5", "i > 5", "i >= 5", "i < 5", "i <= 5", "i = 5.0", "i > '5'", "l = 5000",
+        "l > 4000 and l < 9000", "d > 2.5", "d = 1", "f >= 2.25", "f = 1", "s = 'v3'", "s > 'v3'", "s <> 'v3'", "free = 4",
+        "free = 'x3'", "i > 3 and s = 'v5'", "i < 3 or s = 'v15'", "not (i = 3)", "(i = 3)", "1 = 1 and i = 4", "1 = 2 or i = 4",
+        "missing = 3", "i = null", "i is null", "i = 3 and (s = 'v3' or l = 0)", "@rid = #0:0" };
+
+    for (String text : predicates) {
+      final OSQLPredicate predicate = new OSQLPredicate(text);
+      final OSQLFilterCompiledCondition compiled = OSQLFilterCompiledCondition.compile(predicate.getRootCondition(), db
+          .getMetadata().getSchema().getClass("Item"));
+
+      for (ODocument doc : docs) {
+        Object interpreted;
+        try {
+          interpreted = predicate.getRootCondition().evaluate(doc, null, null);
+        } catch (RuntimeException e) {
+          interpreted = e.getClass();
+        }
+
+        Object result;
+        try {
+          result = compiled.evaluate(doc, null, null);
+        } catch (RuntimeException e) {
+          result = e.getClass();
+        }
+
+        Assert.assertEquals(result, interpreted, text + " on " + doc);
+      }
+    }
+  }
+
+  public void testParameters() {
+    final OSQLPredicate predicate = new OSQLPredicate("i > ?");
+    final Map<Object, Object> params = new HashMap<Object, Object>();
+    params.put(0, 10);
+    predicate.bindParameters(params);
+
+    int found = 0;
+    for (ODocument doc : docs)
+      if (Boolean.TRUE.equals(predicate.evaluate(doc, null, null)))
+        found++;
+
+    Assert.assertEquals(found, 8);
+  }
+}
@@ -0,0 +1,82 @@
+package com.orientechnologies.orient.core.sql.functions.graph;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.graph.OGraphDatabase;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OSQLFunctionPathFinderTest {
+  private OGraphDatabase db;
+  private ODocument[]    v = new ODocument[6];
+
+  @BeforeClass
+  public void init() {
+    db = new OGraphDatabase("memory:pathFinderTest");
+    db.create();
+
+    for (int i = 0; i < v.length; ++i)
+      v[i] = db.createVertex().field("name", "v" + i).save();
+
+    // 0 -> 1 -> 2 -> 3 IS SHORTER IN HOPS, 0 -> 4 -> 3 IS CHEAPER AFTER 0 -> 1 -> 5 -> 3
+    edge(0, 1, 1);
+    edge(1, 2, 1);
+    edge(2, 3, 10);
+    edge(0, 4, 20);
+    edge(4, 3, 1);
+    edge(1, 5, 1);
+    edge(5, 3, 1);
+  }
+
+  @AfterClass
+  public void close() {
+    db.drop();
+  }
+
+  public void testShortestPath() {
+    Assert.assertEquals(path("shortestPath(" + v[0].getIdentity() + ", " + v[3].getIdentity() + ")").size(), 3);
+    Assert.assertEquals(path("shortestPath(" + v[0].getIdentity() + ", " + v[2].getIdentity() + ")"), rids(0, 1, 2));
+    Assert.assertNull(path("shortestPath(" + v[3].getIdentity() + ", " + v[0].getIdentity() + ")"));
+    Assert.assertEquals(path("shortestPath(" + v[3].getIdentity() + ", " + v[0].getIdentity() + ", 'in')").size(), 3);
+    Assert.assertEquals(path("shortestPath(" + v[3].getIdentity() + ", " + v[0].getIdentity() + ", 'both')").size(), 3);
+    Assert.assertNull(path("shortestPath(" + v[0].getIdentity() + ", " + v[3].getIdentity() + ", 'out', 1)"));
+  }
+
+  public void testDijkstra() {
+    Assert.assertEquals(path("dijkstra(" + v[0].getIdentity() + ", " + v[3].getIdentity() + ", 'weight')"), rids(0, 1, 5, 3));
+    Assert.assertEquals(path("dijkstra(" + v[0].getIdentity() + ", " + v[3].getIdentity() + ", 'weight', 'out')"),
+        rids(0, 1, 5, 3));
+  }
+
+  public void testAstar() {
+    db.getMetadata().getFunctionLibrary().createFunction("zero").setLanguage("javascript").setParameters(Arrays.asList("a", "b")).setCode("return 0;");
+    Assert.assertEquals(path("astar(" + v[0].getIdentity() + ", " + v[3].getIdentity() + ", 'weight', 'zero')"),
+        rids(0, 1, 5, 3));
+  }
+
+  private void edge(final int iFrom, final int iTo, final int iWeight) {
+    db.createEdge(v[iFrom], v[iTo]).field("weight", iWeight).save();
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<OIdentifiable> path(final String iFunction) {
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>("select " + iFunction + " as path"));
+    Assert.assertEquals(result.size(), 1);
+    return (List<OIdentifiable>) result.get(0).field("path");
+  }
+
+  private List<Object> rids(final int... iVertices) {
+    final Object[] rids = new Object[iVertices.length];
+    for (int i = 0; i < iVertices.length; ++i)
+      rids[i] = v[iVertices[i]].getIdentity();
+    return Arrays.asList(rids);
+  }
+}
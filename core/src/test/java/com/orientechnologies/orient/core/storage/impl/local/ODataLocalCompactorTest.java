@@ -0,0 +1,114 @@
+package com.orientechnologies.orient.core.storage.impl.local;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class ODataLocalCompactorTest {
+  private ODatabaseDocumentTx db;
+  private int                 oldBatchDelay;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    oldBatchDelay = OGlobalConfiguration.FILE_COMPACTION_BATCH_DELAY.getValueAsInteger();
+    OGlobalConfiguration.FILE_COMPACTION_BATCH_DELAY.setValue(0);
+
+    String dbPath = System.getProperty("java.io.tmpdir");
+    if (!dbPath.endsWith(File.separator))
+      dbPath += "/";
+    db = new ODatabaseDocumentTx("local:" + dbPath + "orientdb/dataLocalCompactorTest");
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+    }
+    db.create();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    db.drop();
+    OGlobalConfiguration.FILE_COMPACTION_BATCH_DELAY.setValue(oldBatchDelay);
+  }
+
+  public void compactsAndKeepsTheRecords() throws Exception {
+    final List<ORID> rids = new ArrayList<ORID>();
+    for (int i = 0; i < 1000; ++i)
+      rids.add(new ODocument("Compacted").field("id", i).field("text", text(i, 400)).save().getIdentity());
+
+    // DELETE ONE RECORD EVERY THREE AND SHRINK THE OTHERS
+    for (int i = 0; i < rids.size(); ++i) {
+      final ODocument doc = db.load(rids.get(i));
+      if (i % 3 == 0)
+        doc.delete();
+      else
+        doc.field("text", text(i, 10)).save();
+    }
+
+    final OStorageLocal storage = (OStorageLocal) db.getStorage();
+    final ODataLocal data = storage.getDataSegmentById(0);
+    final long sizeBefore = data.getSize();
+    Assert.assertTrue(data.getHolesSize() > 0);
+
+    storage.getCompactor().compact(0);
+
+    Assert.assertTrue(data.getSize() < sizeBefore);
+    Assert.assertEquals(data.getHolesSize(), 0);
+    Assert.assertEquals(storage.getCompactor().getReclaimedBytes(), sizeBefore - data.getSize());
+    Assert.assertTrue(storage.getCompactor().getMovedBytes() > 0);
+    Assert.assertEquals(storage.getCompactor().getProgress(), 1f);
+
+    // NEW RECORDS GO AT THE END OF THE SHRUNK FILE
+    final ORID added = new ODocument("Compacted").field("id", -1).field("text", text(-1, 100)).save().getIdentity();
+
+    db.close();
+    db.open("admin", "admin");
+
+    for (int i = 0; i < rids.size(); ++i) {
+      final ODocument doc = db.load(rids.get(i));
+      if (i % 3 == 0) {
+        if (!rids.get(i).equals(added))
+          // THE DELETED POSITIONS ARE RECYCLED BY THE CLUSTER
+          Assert.assertNull(doc);
+      } else {
+        Assert.assertEquals(doc.field("id"), i);
+        Assert.assertEquals(doc.field("text"), text(i, 10));
+      }
+    }
+    Assert.assertEquals(((ODocument) db.load(added)).field("text"), text(-1, 100));
+  }
+
+  public void startsInBackground() throws Exception {
+    for (int i = 0; i < 100; ++i)
+      new ODocument("Compacted").field("text", text(i, 400)).save().delete();
+
+    final ODataLocalCompactor compactor = ((OStorageLocal) db.getStorage()).getCompactor();
+    Assert.assertTrue(compactor.start(0));
+
+    final long timeout = System.currentTimeMillis() + 60000;
+    while (compactor.isRunning()) {
+      Assert.assertTrue(System.currentTimeMillis() < timeout, "The compaction didn't end in time");
+      Thread.sleep(10);
+    }
+
+    Assert.assertTrue(compactor.getReclaimedBytes() > 0);
+    Assert.assertEquals(((OStorageLocal) db.getStorage()).getDataSegmentById(0).getHolesSize(), 0);
+  }
+
+  private static String text(final int iSeed, final int iLength) {
+    final StringBuilder buffer = new StringBuilder(iLength);
+    while (buffer.length() < iLength)
+      buffer.append(iSeed).append('-');
+    return buffer.substring(0, iLength);
+  }
+}
@@ -9,10 +9,15 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
@@ -33,6 +38,7 @@ import com.orientechnologies.orient.core.index.hashindex.local.cache.O2QCache;
 import com.orientechnologies.orient.core.index.hashindex.local.cache.ODiskCache;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
 import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OStoredRecord;
 import com.orientechnologies.orient.core.storage.impl.local.OStorageVariableParser;
 import com.orientechnologies.orient.core.version.ORecordVersion;
 import com.orientechnologies.orient.core.version.OVersionFactory;
@@ -131,6 +137,36 @@ public class LocalPaginatedClusterTest {
     Assert.assertEquals(rawBuffer.recordType, 1);
   }
 
+  public void testReadStoredRecord() throws IOException {
+    byte[] smallRecord = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 0 };
+    byte[] bigRecord = new byte[2 * 65536 + 100];
+    MersenneTwisterFast mersenneTwisterFast = new MersenneTwisterFast();
+    mersenneTwisterFast.nextBytes(bigRecord);
+
+    ORecordVersion recordVersion = OVersionFactory.instance().createVersion();
+    recordVersion.increment();
+
+    OPhysicalPosition smallPosition = paginatedCluster.createRecord(smallRecord, recordVersion, (byte) 1);
+    OPhysicalPosition bigPosition = paginatedCluster.createRecord(bigRecord, recordVersion, (byte) 2);
+
+    byte[] buffer = new byte[1024];
+    OStoredRecord storedRecord = paginatedCluster.readStoredRecord(smallPosition.clusterPosition, buffer);
+    Assert.assertNotNull(storedRecord);
+    Assert.assertSame(storedRecord.buffer, buffer);
+    Assert.assertEquals(storedRecord.version, recordVersion);
+    Assert.assertEquals(storedRecord.recordType, 1);
+    Assert.assertEquals(storedRecord.toRawBuffer().buffer, smallRecord);
+
+    storedRecord = paginatedCluster.readStoredRecord(bigPosition.clusterPosition, buffer);
+    Assert.assertNotNull(storedRecord);
+    Assert.assertEquals(storedRecord.version, recordVersion);
+    Assert.assertEquals(storedRecord.recordType, 2);
+    Assert.assertEquals(storedRecord.toRawBuffer().buffer, bigRecord);
+
+    paginatedCluster.deleteRecord(smallPosition.clusterPosition);
+    Assert.assertNull(paginatedCluster.readStoredRecord(smallPosition.clusterPosition, buffer));
+  }
+
   public void testAddManySmallRecords() throws IOException {
     final int records = 10000;
 
@@ -821,4 +857,55 @@ public class LocalPaginatedClusterTest {
       Assert.assertEquals(physicalPosition.dataSegmentId, position.dataSegmentId);
     }
   }
+
+  public void testConcurrentAddAndDeleteRecords() throws Exception {
+    final int threads = 8;
+    final int records = 2000;
+
+    final ORecordVersion recordVersion = OVersionFactory.instance().createVersion();
+    recordVersion.increment();
+
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final List<Future<Map<OClusterPosition, byte[]>>> futures = new ArrayList<Future<Map<OClusterPosition, byte[]>>>();
+    for (int n = 0; n < threads; n++) {
+      final long seed = System.currentTimeMillis() + n;
+      futures.add(executor.submit(new Callable<Map<OClusterPosition, byte[]>>() {
+        public Map<OClusterPosition, byte[]> call() throws Exception {
+          final MersenneTwisterFast mersenneTwisterFast = new MersenneTwisterFast(seed);
+          final Map<OClusterPosition, byte[]> positionRecordMap = new HashMap<OClusterPosition, byte[]>();
+
+          for (int i = 0; i < records; i++) {
+            int recordSize = mersenneTwisterFast.nextInt(2 * OLocalPage.MAX_RECORD_SIZE) + 1;
+            byte[] record = new byte[recordSize];
+            mersenneTwisterFast.nextBytes(record);
+
+            final OPhysicalPosition physicalPosition = paginatedCluster.createRecord(record, recordVersion, (byte) 2);
+            Assert.assertNull(positionRecordMap.put(physicalPosition.clusterPosition, record));
+
+            if (mersenneTwisterFast.nextInt(4) == 0) {
+              Assert.assertTrue(paginatedCluster.deleteRecord(physicalPosition.clusterPosition));
+              positionRecordMap.remove(physicalPosition.clusterPosition);
+            }
+          }
+
+          return positionRecordMap;
+        }
+      }));
+    }
+
+    final Map<OClusterPosition, byte[]> positionRecordMap = new HashMap<OClusterPosition, byte[]>();
+    for (Future<Map<OClusterPosition, byte[]>> future : futures)
+      for (Map.Entry<OClusterPosition, byte[]> entry : future.get().entrySet())
+        Assert.assertNull(positionRecordMap.put(entry.getKey(), entry.getValue()));
+    executor.shutdown();
+
+    Assert.assertEquals(paginatedCluster.getEntries(), positionRecordMap.size());
+    for (Map.Entry<OClusterPosition, byte[]> entry : positionRecordMap.entrySet()) {
+      ORawBuffer rawBuffer = paginatedCluster.readRecord(entry.getKey());
+      Assert.assertNotNull(rawBuffer);
+
+      Assert.assertEquals(rawBuffer.buffer, entry.getValue());
+      Assert.assertEquals(rawBuffer.recordType, 2);
+    }
+  }
 }
@@ -0,0 +1,74 @@
+package com.orientechnologies.orient.core.storage.impl.local.paginated;
+
+import java.io.File;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.version.ORecordVersion;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+
+@Test
+public class LocalPaginatedStorageUpdateTest {
+  private ODatabaseDocumentTx database;
+
+  @BeforeClass
+  public void beforeClass() {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = System.getProperty("java.io.tmpdir");
+
+    database = new ODatabaseDocumentTx("plocal:" + buildDirectory + File.separator + "LocalPaginatedStorageUpdateTest");
+    if (database.exists()) {
+      database.open("admin", "admin");
+      database.drop();
+    }
+    database.create();
+  }
+
+  @AfterClass
+  public void afterClass() {
+    database.drop();
+  }
+
+  public void testUpdateChecksVersion() {
+    final ODocument doc = new ODocument().field("name", "version");
+    doc.save();
+
+    final ORecordId rid = (ORecordId) doc.getIdentity();
+    final ORecordVersion wrongVersion = doc.getRecordVersion().copy();
+    wrongVersion.increment();
+
+    try {
+      database.getStorage().updateRecord(rid, doc.toStream(), wrongVersion, ODocument.RECORD_TYPE, 0, null);
+      Assert.fail("The version should have been checked");
+    } catch (OConcurrentModificationException e) {
+    }
+  }
+
+  public void testUpdateWithRollbackVersion() {
+    final ODocument doc = new ODocument().field("name", "rollback");
+    doc.save();
+
+    final ORecordId rid = (ORecordId) doc.getIdentity();
+
+    // FORCE A VERSION NOT RELATED TO THE CURRENT ONE, AS AN ALIGNMENT DOES
+    final ORecordVersion version = OVersionFactory.instance().createVersion();
+    version.setCounter(10);
+    version.setRollbackMode();
+
+    final ORecordVersion result = database.getStorage()
+        .updateRecord(rid, doc.toStream(), version, ODocument.RECORD_TYPE, 0, null).getResult();
+    Assert.assertEquals(result.getCounter(), 10);
+
+    final ORawBuffer buffer = database.getStorage().readRecord(rid, null, false, null, false).getResult();
+    Assert.assertEquals(buffer.version.getCounter(), 10);
+  }
+}
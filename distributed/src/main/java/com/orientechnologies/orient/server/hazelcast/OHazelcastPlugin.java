@@ -526,6 +526,12 @@ public class OHazelcastPlugin extends ODistributedAbstractPlugin implements Memb
 
   @Override
   public void endAlignment(final String iNode, final String iDatabaseName) {
+    synchronized (synchronizers) {
+      final OStorageSynchronizer synch = synchronizers.get(iDatabaseName);
+      if (synch != null)
+        synch.endAlignment(iNode);
+    }
+
     synchronized (pendingAlignments) {
       if (pendingAlignments.remove(iNode + "/" + iDatabaseName) == null) {
         OLogManager.instance().error(this,
@@ -625,6 +631,7 @@ public class OHazelcastPlugin extends ODistributedAbstractPlugin implements Memb
     final String nodeId = getNodeId(iEvent.getMember());
     getConfigurationMap().remove("node." + nodeId);
     remoteClusterNodes.remove(nodeId);
+    onNodeLeft(nodeId);
   }
 
   @Override
@@ -643,6 +650,7 @@ public class OHazelcastPlugin extends ODistributedAbstractPlugin implements Memb
       final String nodeId = ((ODocument) iEvent.getValue()).field("id");
       OLogManager.instance().warn(this, "DISTRIBUTED -> disconnected cluster node %s", nodeId);
       remoteClusterNodes.remove(nodeId);
+      onNodeLeft(nodeId);
 
       OClientConnectionManager.instance().pushDistribCfg2Clients(getClusterConfiguration());
     }
@@ -17,8 +17,11 @@
 package com.orientechnologies.orient.server.hazelcast.sharding;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -134,6 +137,25 @@ public class OAutoshardedStorageImpl implements OAutoshardedStorage {
       return new OStorageOperationResult<ORawBuffer>(node.readRecord(wrapped.getName(), iRid), true);
   }
 
+  @Override
+  public Map<ORecordId, ORawBuffer> readRecords(Collection<ORecordId> iRids) {
+    // READ THE LOCAL RECORDS AT ONCE, THE OTHERS FROM THEIR NODES
+    final List<ORecordId> local = new ArrayList<ORecordId>();
+    final Map<ORecordId, ORawBuffer> result = new HashMap<ORecordId, ORawBuffer>(iRids.size());
+    for (ORecordId rid : iRids)
+      if (undistributedClusters.contains(rid.getClusterId()) || serverInstance.findSuccessor(rid.clusterPosition.longValue()).isLocal())
+        local.add(rid);
+      else {
+        final ORawBuffer buffer = readRecord(rid, null, false, null, false).getResult();
+        if (buffer != null)
+          result.put(rid, buffer);
+      }
+
+    if (!local.isEmpty())
+      result.putAll(wrapped.readRecords(local));
+    return result;
+  }
+
   @Override
   public OStorageOperationResult<ORecordVersion> updateRecord(ORecordId iRecordId, byte[] iContent, ORecordVersion iVersion,
       byte iRecordType, int iMode, ORecordCallback<ORecordVersion> iCallback) {
@@ -144,7 +144,7 @@ public abstract class OChannel extends OSharedResourceExternalTimeout {
     metricTransmittedBytes += iDelta;
   }
 
-  protected void updateMetricReceivedBytes(final int iDelta) {
+  public void updateMetricReceivedBytes(final int iDelta) {
     metricGlobalReceivedBytes.addAndGet(iDelta);
     metricReceivedBytes += iDelta;
   }
@@ -835,18 +835,12 @@ public class OObjectEntitySerializer {
   }
 
   public static Object getFieldValue(Field iField, Object iInstance) throws IllegalArgumentException, IllegalAccessException {
-    if (!iField.isAccessible()) {
-      iField.setAccessible(true);
-    }
-    return iField.get(iInstance);
+    return OObjectFieldAccessorFactory.getAccessor(iField).get(iInstance);
   }
 
   public static void setFieldValue(Field iField, Object iInstance, Object iValue) throws IllegalArgumentException,
       IllegalAccessException {
-    if (!iField.isAccessible()) {
-      iField.setAccessible(true);
-    }
-    iField.set(iInstance, iValue);
+    OObjectFieldAccessorFactory.getAccessor(iField).set(iInstance, iValue);
   }
 
   public static void invokeBeforeSerializationCallbacks(Class<?> iClass, Object iInstance, ODocument iDocument) {
@@ -0,0 +1,30 @@
+/*
+ *
+ * Copyright 2012 Luca Molino (molino.luca--AT--gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.object.enhancement;
+
+/**
+ * Reads and writes a field of the entity instances, bypassing the getters and setters of the proxies. Accessors are created once
+ * per field by {@link OObjectFieldAccessorFactory}.
+ * 
+ * @author Luca Molino (molino.luca--at--gmail.com)
+ * 
+ */
+public interface OObjectFieldAccessor {
+  public Object get(Object iInstance) throws IllegalAccessException;
+
+  public void set(Object iInstance, Object iValue) throws IllegalAccessException;
+}
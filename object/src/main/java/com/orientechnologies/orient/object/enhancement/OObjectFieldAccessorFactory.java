@@ -0,0 +1,61 @@
+/*
+ *
+ * Copyright 2012 Luca Molino (molino.luca--AT--gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.object.enhancement;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates and caches the field accessors. Instance fields are accessed by memory offset when sun.misc.Unsafe is available, static
+ * and volatile fields and other JVMs use reflection.
+ * 
+ * @author Luca Molino (molino.luca--at--gmail.com)
+ * 
+ */
+public class OObjectFieldAccessorFactory {
+  private static final boolean                                UNSAFE_AVAILABLE;
+  private static final ConcurrentMap<Field, OObjectFieldAccessor> accessors = new ConcurrentHashMap<Field, OObjectFieldAccessor>();
+
+  static {
+    boolean available;
+    try {
+      Class.forName("sun.misc.Unsafe");
+      available = OObjectFieldAccessorUnsafe.isSupported();
+    } catch (Throwable t) {
+      // IGNORE IT: USE REFLECTION
+      available = false;
+    }
+    UNSAFE_AVAILABLE = available;
+  }
+
+  public static OObjectFieldAccessor getAccessor(final Field iField) {
+    OObjectFieldAccessor accessor = accessors.get(iField);
+    if (accessor == null) {
+      if (UNSAFE_AVAILABLE && !Modifier.isStatic(iField.getModifiers()) && !Modifier.isVolatile(iField.getModifiers()))
+        accessor = new OObjectFieldAccessorUnsafe(iField);
+      else
+        accessor = new OObjectFieldAccessorReflection(iField);
+
+      final OObjectFieldAccessor existent = accessors.putIfAbsent(iField, accessor);
+      if (existent != null)
+        accessor = existent;
+    }
+    return accessor;
+  }
+}
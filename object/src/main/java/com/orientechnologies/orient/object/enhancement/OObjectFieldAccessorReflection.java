@@ -0,0 +1,43 @@
+/*
+ *
+ * Copyright 2012 Luca Molino (molino.luca--AT--gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.object.enhancement;
+
+import java.lang.reflect.Field;
+
+/**
+ * Field accessor based on reflection.
+ * 
+ * @author Luca Molino (molino.luca--at--gmail.com)
+ * 
+ */
+public class OObjectFieldAccessorReflection implements OObjectFieldAccessor {
+  private final Field field;
+
+  public OObjectFieldAccessorReflection(final Field iField) {
+    field = iField;
+    if (!field.isAccessible())
+      field.setAccessible(true);
+  }
+
+  public Object get(final Object iInstance) throws IllegalAccessException {
+    return field.get(iInstance);
+  }
+
+  public void set(final Object iInstance, final Object iValue) throws IllegalAccessException {
+    field.set(iInstance, iValue);
+  }
+}
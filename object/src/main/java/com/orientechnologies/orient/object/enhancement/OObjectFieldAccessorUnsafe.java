@@ -0,0 +1,128 @@
+/*
+ *
+ * Copyright 2012 Luca Molino (molino.luca--AT--gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.object.enhancement;
+
+import java.lang.reflect.Field;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+
+import sun.misc.Unsafe;
+
+/**
+ * Field accessor that reads and writes the field at its memory offset, avoiding the access checks and the boxing of the arguments
+ * of reflection. The instance and the value are checked against the field types before any access. Values that need a widening
+ * conversion, like an Integer set to a long field, are delegated to reflection.
+ * 
+ * @author Luca Molino (molino.luca--at--gmail.com)
+ * 
+ */
+@SuppressWarnings("restriction")
+public class OObjectFieldAccessorUnsafe implements OObjectFieldAccessor {
+  private static final Unsafe                  UNSAFE;
+
+  private final Field                          field;
+  private final Class<?>                       declaringClass;
+  private final Class<?>                       type;
+  private final long                           offset;
+  private final OObjectFieldAccessorReflection fallback;
+
+  static {
+    UNSAFE = (Unsafe) AccessController.doPrivileged(new PrivilegedAction<Object>() {
+      public Object run() {
+        try {
+          final Field f = Unsafe.class.getDeclaredField("theUnsafe");
+          f.setAccessible(true);
+          return f.get(null);
+        } catch (Exception e) {
+          return null;
+        }
+      }
+    });
+  }
+
+  public OObjectFieldAccessorUnsafe(final Field iField) {
+    field = iField;
+    declaringClass = iField.getDeclaringClass();
+    type = iField.getType();
+    offset = UNSAFE.objectFieldOffset(iField);
+    fallback = new OObjectFieldAccessorReflection(iField);
+  }
+
+  public static boolean isSupported() {
+    return UNSAFE != null;
+  }
+
+  public Object get(final Object iInstance) throws IllegalAccessException {
+    checkInstance(iInstance);
+
+    if (!type.isPrimitive())
+      return UNSAFE.getObject(iInstance, offset);
+    else if (type == int.class)
+      return UNSAFE.getInt(iInstance, offset);
+    else if (type == long.class)
+      return UNSAFE.getLong(iInstance, offset);
+    else if (type == boolean.class)
+      return UNSAFE.getBoolean(iInstance, offset);
+    else if (type == double.class)
+      return UNSAFE.getDouble(iInstance, offset);
+    else if (type == float.class)
+      return UNSAFE.getFloat(iInstance, offset);
+    else if (type == short.class)
+      return UNSAFE.getShort(iInstance, offset);
+    else if (type == byte.class)
+      return UNSAFE.getByte(iInstance, offset);
+    else
+      return UNSAFE.getChar(iInstance, offset);
+  }
+
+  public void set(final Object iInstance, final Object iValue) throws IllegalAccessException {
+    checkInstance(iInstance);
+
+    if (!type.isPrimitive()) {
+      if (iValue != null && !type.isInstance(iValue))
+        throw new IllegalArgumentException("Cannot set " + type.getName() + " field " + field.getName() + " to "
+            + iValue.getClass().getName());
+      UNSAFE.putObject(iInstance, offset, iValue);
+    } else if (type == int.class && iValue instanceof Integer)
+      UNSAFE.putInt(iInstance, offset, (Integer) iValue);
+    else if (type == long.class && iValue instanceof Long)
+      UNSAFE.putLong(iInstance, offset, (Long) iValue);
+    else if (type == boolean.class && iValue instanceof Boolean)
+      UNSAFE.putBoolean(iInstance, offset, (Boolean) iValue);
+    else if (type == double.class && iValue instanceof Double)
+      UNSAFE.putDouble(iInstance, offset, (Double) iValue);
+    else if (type == float.class && iValue instanceof Float)
+      UNSAFE.putFloat(iInstance, offset, (Float) iValue);
+    else if (type == short.class && iValue instanceof Short)
+      UNSAFE.putShort(iInstance, offset, (Short) iValue);
+    else if (type == byte.class && iValue instanceof Byte)
+      UNSAFE.putByte(iInstance, offset, (Byte) iValue);
+    else if (type == char.class && iValue instanceof Character)
+      UNSAFE.putChar(iInstance, offset, (Character) iValue);
+    else
+      // WIDENING CONVERSION OR WRONG TYPE: LET REFLECTION CONVERT IT OR THROW THE EXCEPTION
+      fallback.set(iInstance, iValue);
+  }
+
+  private void checkInstance(final Object iInstance) {
+    if (iInstance == null)
+      throw new NullPointerException("Cannot access field " + field.getName() + " of a null instance");
+    if (!declaringClass.isInstance(iInstance))
+      throw new IllegalArgumentException("Cannot access field " + declaringClass.getName() + "." + field.getName() + " of "
+          + iInstance.getClass().getName());
+  }
+}
@@ -17,6 +17,8 @@
 package com.orientechnologies.orient.object.enhancement;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javassist.util.proxy.MethodFilter;
 
@@ -27,6 +29,12 @@ import com.orientechnologies.common.log.OLogManager;
  * 
  */
 public class OObjectMethodFilter implements MethodFilter {
+  public enum METHOD_TYPE {
+    GETTER, SETTER, OTHER
+  }
+
+  private final ConcurrentMap<Method, METHOD_TYPE> methodTypes = new ConcurrentHashMap<Method, METHOD_TYPE>();
+  private final ConcurrentMap<Method, String>      fieldNames  = new ConcurrentHashMap<Method, String>();
 
   public boolean isHandled(final Method m) {
     final String methodName = m.getName();
@@ -49,6 +57,37 @@ public class OObjectMethodFilter implements MethodFilter {
     }
   }
 
+  /**
+   * Returns if the method is a getter or a setter. The result is computed only the first time, then it's taken from the cache: the
+   * proxies call it at every method invocation.
+   */
+  public METHOD_TYPE getMethodType(final Method m) throws SecurityException, NoSuchFieldException {
+    METHOD_TYPE type = methodTypes.get(m);
+    if (type == null) {
+      if (isSetterMethod(m.getName(), m))
+        type = METHOD_TYPE.SETTER;
+      else if (isGetterMethod(m.getName(), m))
+        type = METHOD_TYPE.GETTER;
+      else
+        type = METHOD_TYPE.OTHER;
+      methodTypes.put(m, type);
+    }
+    return type;
+  }
+
+  /**
+   * Cached version of {@link #getFieldName(Method)}.
+   */
+  public String resolveFieldName(final Method m) {
+    String fieldName = fieldNames.get(m);
+    if (fieldName == null) {
+      fieldName = getFieldName(m);
+      if (fieldName != null)
+        fieldNames.put(m, fieldName);
+    }
+    return fieldName;
+  }
+
   public String getFieldName(final Method m) {
     final String methodName = m.getName();
 
@@ -105,12 +105,14 @@ public class OObjectProxyMethodHandler implements MethodHandler {
 
   public Object invoke(final Object self, final Method m, final Method proceed, final Object[] args) throws Throwable {
     final OObjectMethodFilter filter = OObjectEntityEnhancer.getInstance().getMethodFilter(self.getClass());
-    if (filter.isSetterMethod(m.getName(), m)) {
+    switch (filter.getMethodType(m)) {
+    case SETTER:
       return manageSetMethod(self, m, proceed, args);
-    } else if (filter.isGetterMethod(m.getName(), m)) {
+    case GETTER:
       return manageGetMethod(self, m, proceed, args);
+    default:
+      return proceed.invoke(self, args);
     }
-    return proceed.invoke(self, args);
   }
 
   /**
@@ -247,7 +249,7 @@ public class OObjectProxyMethodHandler implements MethodHandler {
   protected Object manageGetMethod(final Object self, final Method m, final Method proceed, final Object[] args)
       throws IllegalAccessException, InvocationTargetException, NoSuchMethodException, SecurityException, IllegalArgumentException,
       NoSuchFieldException {
-    final String fieldName = OObjectEntityEnhancer.getInstance().getMethodFilter(self.getClass()).getFieldName(m);
+    final String fieldName = OObjectEntityEnhancer.getInstance().getMethodFilter(self.getClass()).resolveFieldName(m);
 
     final ORID docRID = doc.getIdentity();
 
@@ -639,7 +641,7 @@ public class OObjectProxyMethodHandler implements MethodHandler {
   protected Object manageSetMethod(final Object self, final Method m, final Method proceed, final Object[] args)
       throws IllegalAccessException, InvocationTargetException {
     final String fieldName;
-    fieldName = OObjectEntityEnhancer.getInstance().getMethodFilter(self.getClass()).getFieldName(m);
+    fieldName = OObjectEntityEnhancer.getInstance().getMethodFilter(self.getClass()).resolveFieldName(m);
     args[0] = setValue(self, fieldName, args[0]);
     return proceed.invoke(self, args);
   }
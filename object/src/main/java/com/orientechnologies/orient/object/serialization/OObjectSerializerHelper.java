@@ -76,6 +76,7 @@ import com.orientechnologies.orient.object.db.ODatabasePojoAbstract;
 import com.orientechnologies.orient.object.db.OLazyObjectList;
 import com.orientechnologies.orient.object.db.OLazyObjectMap;
 import com.orientechnologies.orient.object.db.OObjectNotDetachedException;
+import com.orientechnologies.orient.object.enhancement.OObjectFieldAccessorFactory;
 import com.orientechnologies.orient.object.fetch.OObjectFetchContext;
 import com.orientechnologies.orient.object.fetch.OObjectFetchListener;
 
@@ -199,7 +200,7 @@ public class OObjectSerializerHelper {
       if (o instanceof Method)
         return ((Method) o).invoke(iPojo);
       else if (o instanceof Field)
-        return ((Field) o).get(iPojo);
+        return OObjectFieldAccessorFactory.getAccessor((Field) o).get(iPojo);
       return null;
     } catch (Exception e) {
       throw new OSchemaException("Cannot get the value of the property: " + iProperty, e);
@@ -219,7 +220,7 @@ public class OObjectSerializerHelper {
         ((Method) o).invoke(iPojo,
             OObjectSerializerHelper.convertInObject(iPojo, iProperty, iValue, ((Method) o).getParameterTypes()[0]));
       } else if (o instanceof Field) {
-        ((Field) o).set(iPojo, OType.convert(iValue, ((Field) o).getType()));
+        OObjectFieldAccessorFactory.getAccessor((Field) o).set(iPojo, OType.convert(iValue, ((Field) o).getType()));
       }
 
     } catch (Exception e) {
@@ -0,0 +1,71 @@
+package com.orientechnologies.orient.object.enhancement;
+
+import java.lang.reflect.Field;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class OObjectFieldAccessorTest {
+  @SuppressWarnings("unused")
+  private static class Entity {
+    private String  name;
+    private int     age;
+    private long    size;
+    private boolean active;
+    private Object  any;
+  }
+
+  public void testReadWrite() throws Exception {
+    final Entity entity = new Entity();
+
+    set(entity, "name", "Jay");
+    set(entity, "age", 42);
+    set(entity, "size", 10l);
+    set(entity, "active", true);
+    set(entity, "any", 3.14);
+
+    Assert.assertEquals(entity.name, "Jay");
+    Assert.assertEquals(entity.age, 42);
+    Assert.assertEquals(entity.size, 10l);
+    Assert.assertTrue(entity.active);
+    Assert.assertEquals(entity.any, 3.14);
+
+    Assert.assertEquals(get(entity, "name"), "Jay");
+    Assert.assertEquals(get(entity, "age"), 42);
+    Assert.assertEquals(get(entity, "size"), 10l);
+    Assert.assertEquals(get(entity, "active"), true);
+
+    set(entity, "name", null);
+    Assert.assertNull(get(entity, "name"));
+  }
+
+  public void testWideningConversion() throws Exception {
+    final Entity entity = new Entity();
+    set(entity, "size", 7);
+    Assert.assertEquals(entity.size, 7l);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongValueType() throws Exception {
+    set(new Entity(), "name", 10);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongInstance() throws Exception {
+    get("not an entity", "name");
+  }
+
+  public void testCache() throws Exception {
+    final Field f = Entity.class.getDeclaredField("name");
+    Assert.assertSame(OObjectFieldAccessorFactory.getAccessor(f), OObjectFieldAccessorFactory.getAccessor(f));
+  }
+
+  private static Object get(final Object iInstance, final String iField) throws Exception {
+    return OObjectFieldAccessorFactory.getAccessor(Entity.class.getDeclaredField(iField)).get(iInstance);
+  }
+
+  private static void set(final Object iInstance, final String iField, final Object iValue) throws Exception {
+    OObjectFieldAccessorFactory.getAccessor(Entity.class.getDeclaredField(iField)).set(iInstance, iValue);
+  }
+}
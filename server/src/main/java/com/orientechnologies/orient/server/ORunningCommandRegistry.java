@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.command.OCommandMonitor;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+
+/**
+ * Registry of the commands running in the server, one per connection since every connection executes its requests in sequence.
+ * Every command is executed under a {@link OCommandMonitor} that applies the server limits on execution time, records browsed and
+ * result size, and that can be cancelled by another connection.
+ *
+ * @author Luca Garulli
+ *
+ */
+public class ORunningCommandRegistry {
+  private final ConcurrentHashMap<Integer, OCommandMonitor> commands = new ConcurrentHashMap<Integer, OCommandMonitor>();
+
+  /**
+   * Registers the command and binds its monitor to the current thread. Must be followed by {@link #end(OClientConnection)}.
+   *
+   * @param iConnection
+   *          Connection executing the command
+   * @param iText
+   *          Text of the command
+   * @param iTimeout
+   *          Timeout requested by the client in milliseconds, 0 for the server default. The server timeout, if any, is never
+   *          exceeded
+   */
+  public OCommandMonitor begin(final OClientConnection iConnection, final String iText, final long iTimeout) {
+    final long serverTimeout = OGlobalConfiguration.COMMAND_TIMEOUT.getValueAsLong();
+
+    final long timeout;
+    if (serverTimeout > 0 && iTimeout > 0)
+      timeout = Math.min(serverTimeout, iTimeout);
+    else
+      timeout = Math.max(serverTimeout, iTimeout);
+
+    final OCommandMonitor monitor = new OCommandMonitor(iText, timeout, OGlobalConfiguration.COMMAND_MAX_RECORDS.getValueAsLong(),
+        OGlobalConfiguration.COMMAND_MAX_RESULTS.getValueAsLong());
+
+    commands.put(iConnection.id, monitor);
+    OCommandMonitor.set(monitor);
+    return monitor;
+  }
+
+  public void end(final OClientConnection iConnection) {
+    OCommandMonitor.set(null);
+    commands.remove(iConnection.id);
+  }
+
+  /**
+   * Returns the command running in the connection, if any.
+   */
+  public OCommandMonitor get(final int iConnectionId) {
+    return commands.get(iConnectionId);
+  }
+
+  /**
+   * Returns the running commands by connection id.
+   */
+  public Map<Integer, OCommandMonitor> getCommands() {
+    return new HashMap<Integer, OCommandMonitor>(commands);
+  }
+
+  /**
+   * Cancels the command running in the connection. The command is interrupted at its next check.
+   *
+   * @return true if a command was running, otherwise false
+   */
+  public boolean cancel(final int iConnectionId) {
+    final OCommandMonitor monitor = commands.get(iConnectionId);
+    if (monitor == null)
+      return false;
+
+    OLogManager.instance().info(this, "Cancelling command of connection %d: %s", iConnectionId, monitor);
+    monitor.cancel();
+    return true;
+  }
+}
@@ -84,6 +84,7 @@ public class OServer {
   protected List<OServerLifecycleListener>                 lifecycleListeners = new ArrayList<OServerLifecycleListener>();
   protected OConfigurableHooksManager                      hookManager;
   protected ODistributedServerManager                      distributedManager;
+  protected final ORunningCommandRegistry                  runningCommands    = new ORunningCommandRegistry();
   protected static ThreadGroup                             threadGroup;
 
   private final CountDownLatch                             startupLatch       = new CountDownLatch(1);
@@ -419,6 +420,13 @@ public class OServer {
     return contextConfiguration;
   }
 
+  /**
+   * Returns the registry of the commands running in the server.
+   */
+  public ORunningCommandRegistry getRunningCommands() {
+    return runningCommands;
+  }
+
   @SuppressWarnings("unchecked")
   public <RET extends OServerHandler> RET getPluginByClass(final Class<RET> iHandlerClass) {
     try {
@@ -63,6 +63,11 @@ public abstract class ODistributedAbstractPlugin extends OServerHandlerAbstract
   protected Class<? extends OReplicationConflictResolver> confictResolverClass;
   protected boolean                                       alignmentStartup;
   protected int                                           alignmentTimer;
+  protected int                                           replicationBatchSize       = 100;
+  protected int                                           replicationWindow          = 16;
+  protected int                                           replicationWriteQuorum     = -1;
+  protected OReadBalancer                                 readBalancer               = new OReadBalancer(
+                                                                                         OReadBalancer.READ_POLICY.LOCAL);
 
   @SuppressWarnings("unchecked")
   @Override
@@ -92,6 +97,14 @@ public abstract class ODistributedAbstractPlugin extends OServerHandlerAbstract
         alignmentStartup = Boolean.parseBoolean(param.value);
       else if (param.name.equalsIgnoreCase("alignment.timer"))
         alignmentTimer = Integer.parseInt(param.value);
+      else if (param.name.equalsIgnoreCase("replication.batchSize"))
+        replicationBatchSize = Integer.parseInt(param.value);
+      else if (param.name.equalsIgnoreCase("replication.window"))
+        replicationWindow = Integer.parseInt(param.value);
+      else if (param.name.equalsIgnoreCase("replication.writeQuorum"))
+        replicationWriteQuorum = param.value.equalsIgnoreCase("all") ? -1 : Integer.parseInt(param.value);
+      else if (param.name.equalsIgnoreCase("read.policy"))
+        readBalancer = new OReadBalancer(OReadBalancer.parsePolicy(param.value));
     }
 
     // CHECK THE CONFIGURATION
@@ -124,9 +137,25 @@ public abstract class ODistributedAbstractPlugin extends OServerHandlerAbstract
       return;
 
     Orient.instance().removeDbLifecycleListener(this);
+
+    synchronized (synchronizers) {
+      for (OStorageSynchronizer sync : synchronizers.values())
+        sync.close();
+    }
+
     super.shutdown();
   }
 
+  /**
+   * Stops the replication of all the databases to a node that left the cluster.
+   */
+  protected void onNodeLeft(final String iNodeId) {
+    synchronized (synchronizers) {
+      for (OStorageSynchronizer sync : synchronizers.values())
+        sync.removeNode(iNodeId);
+    }
+  }
+
   /**
    * Auto register myself as hook.
    */
@@ -147,10 +176,13 @@ public abstract class ODistributedAbstractPlugin extends OServerHandlerAbstract
   }
 
   /**
-   * Remove myself as hook.
+   * Ends the session of the distributed storage. It's called also when a pooled database is released to the pool, while the
+   * storage is kept.
    */
   @Override
   public void onClose(final ODatabase iDatabase) {
+    if (iDatabase instanceof ODatabaseComplex<?> && ((ODatabaseComplex<?>) iDatabase).getStorage() instanceof ODistributedStorage)
+      ((ODistributedStorage) ((ODatabaseComplex<?>) iDatabase).getStorage()).unpinFromMaster();
   }
 
   @Override
@@ -209,6 +241,22 @@ public abstract class ODistributedAbstractPlugin extends OServerHandlerAbstract
     }
   }
 
+  public int getReplicationBatchSize() {
+    return replicationBatchSize;
+  }
+
+  public int getReplicationWindow() {
+    return replicationWindow;
+  }
+
+  public int getReplicationWriteQuorum() {
+    return replicationWriteQuorum;
+  }
+
+  public OReadBalancer getReadBalancer() {
+    return readBalancer;
+  }
+
   public Collection<String> getSynchronousReplicaNodes(final String iDatabaseName, final String iClusterName, final Object iKey) {
     return getReplicaNodes("synch-replicas", iDatabaseName, iClusterName, iKey);
   }
@@ -108,4 +108,25 @@ public interface ODistributedServerManager {
   public Lock getLock(String iLockName);
 
   public Class<? extends OReplicationConflictResolver> getConfictResolverClass();
+
+  /**
+   * Returns the maximum number of operations grouped in one replication batch.
+   */
+  public int getReplicationBatchSize();
+
+  /**
+   * Returns the maximum number of batches queued per node before the writers wait.
+   */
+  public int getReplicationWindow();
+
+  /**
+   * Returns the number of remote nodes that must acknowledge a SYNCHRONOUS operation before returning to the caller. -1 means all
+   * the nodes.
+   */
+  public int getReplicationWriteQuorum();
+
+  /**
+   * Returns the balancer that selects the node to read the records from.
+   */
+  public OReadBalancer getReadBalancer();
 }
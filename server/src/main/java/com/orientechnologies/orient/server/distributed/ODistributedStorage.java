@@ -16,7 +16,10 @@
 package com.orientechnologies.orient.server.distributed;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -33,6 +36,7 @@ import com.orientechnologies.orient.core.command.OCommandExecutor;
 import com.orientechnologies.orient.core.command.OCommandManager;
 import com.orientechnologies.orient.core.command.OCommandRequestText;
 import com.orientechnologies.orient.core.config.OStorageConfiguration;
+import com.orientechnologies.orient.core.db.record.ORecordOperation;
 import com.orientechnologies.orient.core.exception.OStorageException;
 import com.orientechnologies.orient.core.id.OClusterPosition;
 import com.orientechnologies.orient.core.id.ORID;
@@ -55,10 +59,13 @@ import com.orientechnologies.orient.server.task.OCreateRecordDistributedTask;
 import com.orientechnologies.orient.server.task.ODeleteRecordDistributedTask;
 import com.orientechnologies.orient.server.task.OReadRecordDistributedTask;
 import com.orientechnologies.orient.server.task.OSQLCommandDistributedTask;
+import com.orientechnologies.orient.server.task.OTxCommitDistributedTask;
 import com.orientechnologies.orient.server.task.OUpdateRecordDistributedTask;
 
 /**
- * Distributed storage implementation that routes to the owner node the request.
+ * Distributed storage implementation that routes to the owner node the request. Reads are served by the node selected by the
+ * {@link OReadBalancer}: to guarantee read-your-writes, once the session has written a record all its reads go to the master
+ * node until the session ends. A read that fails on a replica is retried against the master.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  */
@@ -67,10 +74,16 @@ public class ODistributedStorage implements OStorage {
   protected final OStorageEmbedded          wrapped;
   protected final OStorageSynchronizer      dbSynchronizer;
 
-  protected boolean                         eventuallyConsistent = true;
-  protected EXECUTION_MODE                  createRecordMode     = EXECUTION_MODE.SYNCHRONOUS;
-  protected EXECUTION_MODE                  updateRecordMode     = EXECUTION_MODE.SYNCHRONOUS;
-  protected EXECUTION_MODE                  deleteRecordMode     = EXECUTION_MODE.SYNCHRONOUS;
+  protected EXECUTION_MODE                  createRecordMode   = EXECUTION_MODE.SYNCHRONOUS;
+  protected EXECUTION_MODE                  updateRecordMode   = EXECUTION_MODE.SYNCHRONOUS;
+  protected EXECUTION_MODE                  deleteRecordMode   = EXECUTION_MODE.SYNCHRONOUS;
+  protected EXECUTION_MODE                  commitMode         = EXECUTION_MODE.SYNCHRONOUS;
+
+  /**
+   * True once the session has written something: the replicas could have not applied it yet, so the reads go to the master. It's
+   * reset by {@link #unpinFromMaster()} when the session ends.
+   */
+  protected volatile boolean                pinnedToMaster     = false;
 
   public ODistributedStorage(final ODistributedServerManager iCluster, final OStorageSynchronizer dbSynchronizer,
       final OStorageEmbedded wrapped) {
@@ -79,6 +92,13 @@ public class ODistributedStorage implements OStorage {
     this.dbSynchronizer = dbSynchronizer;
   }
 
+  /**
+   * Ends the session: the next one, like the one of a pooled database reused, starts balancing the reads again.
+   */
+  public void unpinFromMaster() {
+    pinnedToMaster = false;
+  }
+
   public Object command(final OCommandRequestText iCommand) {
 
     final OCommandExecutor executor = OCommandManager.instance().getExecutor(iCommand);
@@ -96,8 +116,10 @@ public class ODistributedStorage implements OStorage {
     else
       distribute = false;
 
-    if (distribute)
+    if (distribute) {
       ODistributedThreadLocal.INSTANCE.distributedExecution = true;
+      pinnedToMaster = true;
+    }
 
     try {
       // EXECUTE IT LOCALLY
@@ -138,6 +160,8 @@ public class ODistributedStorage implements OStorage {
 
     Object result = null;
 
+    pinnedToMaster = true;
+
     try {
       result = dManager.routeOperation2Node(getClusterNameFromRID(iRecordId), iRecordId,
           new OCreateRecordDistributedTask(dManager.getLocalNodeId(), wrapped.getName(), createRecordMode, iRecordId, iContent,
@@ -152,18 +176,82 @@ public class ODistributedStorage implements OStorage {
     return new OStorageOperationResult<OPhysicalPosition>((OPhysicalPosition) result);
   }
 
+  public Map<ORecordId, ORawBuffer> readRecords(final Collection<ORecordId> iRids) {
+    if (ODistributedThreadLocal.INSTANCE.distributedExecution)
+      // ALREADY DISTRIBUTED
+      return wrapped.readRecords(iRids);
+
+    // READ THE RECORDS OWNED BY THE LOCAL NODE AT ONCE, THE OTHERS GO THROUGH THE READ BALANCER ONE BY ONE
+    final List<ORecordId> local = new ArrayList<ORecordId>();
+    final Map<ORecordId, ORawBuffer> result = new HashMap<ORecordId, ORawBuffer>(iRids.size());
+    for (ORecordId rid : iRids)
+      if (dManager.isLocalNodeMaster(rid))
+        local.add(rid);
+      else {
+        final ORawBuffer buffer = readRecord(rid, null, false, null, false).getResult();
+        if (buffer != null)
+          result.put(rid, buffer);
+      }
+
+    if (!local.isEmpty())
+      result.putAll(wrapped.readRecords(local));
+    return result;
+  }
+
   public OStorageOperationResult<ORawBuffer> readRecord(final ORecordId iRecordId, final String iFetchPlan,
       final boolean iIgnoreCache, final ORecordCallback<ORawBuffer> iCallback, boolean loadTombstones) {
     if (ODistributedThreadLocal.INSTANCE.distributedExecution)
       // ALREADY DISTRIBUTED
       return wrapped.readRecord(iRecordId, iFetchPlan, iIgnoreCache, iCallback, loadTombstones);
 
-    if (eventuallyConsistent || dManager.isLocalNodeMaster(iRecordId))
+    final OReadBalancer balancer = dManager.getReadBalancer();
+    final String localNodeId = dManager.getLocalNodeId();
+    final String clusterName = getClusterNameFromRID(iRecordId);
+
+    if (dManager.isLocalNodeMaster(iRecordId))
       return wrapped.readRecord(iRecordId, iFetchPlan, iIgnoreCache, iCallback, loadTombstones);
 
+    if (balancer.getPolicy() != OReadBalancer.READ_POLICY.MASTER && !pinnedToMaster) {
+      final String masterNodeId = dManager.getMasterNode(wrapped.getName(), clusterName, iRecordId);
+
+      // COLLECT THE ONLINE NODES THAT OWN A SYNCHRONOUS COPY OF THE RECORD, STARTING FROM THE MASTER
+      final List<String> candidates = new ArrayList<String>();
+      candidates.add(masterNodeId);
+      for (String node : dManager.getSynchronousReplicaNodes(wrapped.getName(), clusterName, iRecordId))
+        if (!candidates.contains(node)
+            && (node.equals(localNodeId) ? dManager.checkStatus("online") : !dManager.isOfflineNode(node)))
+          candidates.add(node);
+
+      final String selected = balancer.selectNode(localNodeId, candidates);
+
+      if (!selected.equals(masterNodeId)) {
+        final long start = System.nanoTime();
+        try {
+          final ORawBuffer buffer;
+          if (selected.equals(localNodeId))
+            buffer = wrapped.readRecord(iRecordId, iFetchPlan, iIgnoreCache, iCallback, loadTombstones).getResult();
+          else
+            buffer = (ORawBuffer) dManager.sendOperation2Node(selected, new OReadRecordDistributedTask(localNodeId,
+                wrapped.getName(), iRecordId));
+          balancer.updateLatency(selected, System.nanoTime() - start);
+
+          return new OStorageOperationResult<ORawBuffer>(buffer);
+
+        } catch (RuntimeException e) {
+          // THE REPLICA CANNOT SERVE THE READ: READ FROM THE MASTER
+          balancer.updateLatency(selected, System.nanoTime() - start);
+          OLogManager.instance().debug(this, "DISTRIBUTED -> error on reading record %s from replica %s, reading it from master %s",
+              e, iRecordId, selected, masterNodeId);
+        }
+      }
+    }
+
     try {
-      return new OStorageOperationResult<ORawBuffer>((ORawBuffer) dManager.routeOperation2Node(getClusterNameFromRID(iRecordId),
-          iRecordId, new OReadRecordDistributedTask(dManager.getLocalNodeId(), wrapped.getName(), iRecordId)));
+      final long start = System.nanoTime();
+      final ORawBuffer buffer = (ORawBuffer) dManager.routeOperation2Node(clusterName, iRecordId, new OReadRecordDistributedTask(
+          localNodeId, wrapped.getName(), iRecordId));
+      balancer.updateLatency(dManager.getMasterNode(wrapped.getName(), clusterName, iRecordId), System.nanoTime() - start);
+      return new OStorageOperationResult<ORawBuffer>(buffer);
     } catch (ExecutionException e) {
       handleDistributedException("Cannot route READ_RECORD operation against %s to the distributed node", e, iRecordId);
     }
@@ -178,6 +266,8 @@ public class ODistributedStorage implements OStorage {
 
     Object result = null;
 
+    pinnedToMaster = true;
+
     try {
       result = dManager.routeOperation2Node(getClusterNameFromRID(iRecordId), iRecordId,
           new OUpdateRecordDistributedTask(dManager.getLocalNodeId(), wrapped.getName(), updateRecordMode, iRecordId, iContent,
@@ -198,6 +288,8 @@ public class ODistributedStorage implements OStorage {
 
     Object result = null;
 
+    pinnedToMaster = true;
+
     try {
       result = dManager.routeOperation2Node(getClusterNameFromRID(iRecordId), iRecordId,
           new ODeleteRecordDistributedTask(dManager.getLocalNodeId(), wrapped.getName(), updateRecordMode, iRecordId, iVersion));
@@ -275,11 +367,35 @@ public class ODistributedStorage implements OStorage {
   }
 
   public void commit(final OTransaction iTx) {
-    throw new ODistributedException("Transactions are not supported in distributed environment");
+    if (ODistributedThreadLocal.INSTANCE.distributedExecution) {
+      // ALREADY DISTRIBUTED
+      wrapped.commit(iTx);
+      return;
+    }
+
+    // REPLICATE THE WHOLE TRANSACTION IN ONE TASK: THE TASK JOURNALS IT, COMMITS IT LOCALLY AND SENDS IT TO THE OTHER NODES
+    final OTxCommitDistributedTask task = new OTxCommitDistributedTask(dManager.getLocalNodeId(), wrapped.getName(), commitMode,
+        wrapped, iTx);
+
+    if (task.getOperations().isEmpty()) {
+      wrapped.commit(iTx);
+      return;
+    }
+
+    pinnedToMaster = true;
+
+    try {
+      task.call();
+    } catch (OException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ODistributedException("Cannot replicate the transaction against the distributed nodes", e);
+    }
   }
 
   public void rollback(final OTransaction iTx) {
-    throw new ODistributedException("Transactions are not supported in distributed environment");
+    // NOTHING HAS BEEN SENT TO THE OTHER NODES BEFORE THE COMMIT
+    wrapped.rollback(iTx);
   }
 
   public OStorageConfiguration getConfiguration() {
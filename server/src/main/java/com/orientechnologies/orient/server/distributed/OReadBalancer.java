@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.distributed;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects the node that serves a read among the nodes that own a copy of the record. The policies are:
+ * <ul>
+ * <li><b>master</b>: always reads from the master node of the record</li>
+ * <li><b>local</b>: reads from the local replica, if any, otherwise from the master</li>
+ * <li><b>round-robin</b>: spreads the reads across the master and the synchronous replicas</li>
+ * <li><b>least-loaded</b>: reads from the node with the lowest average latency measured on the last reads</li>
+ * </ul>
+ *
+ * @author Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ */
+public class OReadBalancer {
+  public enum READ_POLICY {
+    MASTER, LOCAL, ROUND_ROBIN, LEAST_LOADED
+  }
+
+  /**
+   * Weight of the last measure in the average latency.
+   */
+  private static final float      LATENCY_WEIGHT = 0.2f;
+
+  private final READ_POLICY       policy;
+  private final AtomicInteger     counter        = new AtomicInteger();
+  private final Map<String, Long> latencies      = new ConcurrentHashMap<String, Long>();
+
+  public OReadBalancer(final READ_POLICY iPolicy) {
+    policy = iPolicy;
+  }
+
+  /**
+   * Parses the policy name as written in the configuration, like "round-robin".
+   */
+  public static READ_POLICY parsePolicy(final String iValue) {
+    try {
+      return READ_POLICY.valueOf(iValue.toUpperCase().replace('-', '_'));
+    } catch (IllegalArgumentException e) {
+      throw new ODistributedException("Unsupported read policy '" + iValue
+          + "'. Use one of: master, local, round-robin, least-loaded");
+    }
+  }
+
+  public READ_POLICY getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Selects the node to read from.
+   *
+   * @param iLocalNode
+   *          Local node id
+   * @param iCandidates
+   *          Online nodes that own a copy of the record. The first one is the master
+   * @return The selected node id
+   */
+  public String selectNode(final String iLocalNode, final List<String> iCandidates) {
+    switch (policy) {
+    case LOCAL:
+      return iCandidates.contains(iLocalNode) ? iLocalNode : iCandidates.get(0);
+
+    case ROUND_ROBIN:
+      return iCandidates.get((counter.getAndIncrement() & Integer.MAX_VALUE) % iCandidates.size());
+
+    case LEAST_LOADED: {
+      String selected = null;
+      long selectedLatency = Long.MAX_VALUE;
+      for (String node : iCandidates) {
+        final Long latency = latencies.get(node);
+        if (latency == null)
+          // NEVER MEASURED: TRY IT
+          return node;
+
+        if (latency < selectedLatency) {
+          selected = node;
+          selectedLatency = latency;
+        }
+      }
+      return selected;
+    }
+
+    default:
+      return iCandidates.get(0);
+    }
+  }
+
+  /**
+   * Updates the average latency of a node.
+   */
+  public void updateLatency(final String iNodeId, final long iElapsedNanos) {
+    final Long current = latencies.get(iNodeId);
+    latencies.put(iNodeId, current == null ? iElapsedNanos : (long) (current * (1 - LATENCY_WEIGHT) + iElapsedNanos
+        * LATENCY_WEIGHT));
+  }
+
+  /**
+   * Returns the average latency in nanoseconds of a node, or -1 if it has never been measured.
+   */
+  public long getLatency(final String iNodeId) {
+    final Long latency = latencies.get(iNodeId);
+    return latency != null ? latency : -1;
+  }
+
+  public void removeNode(final String iNodeId) {
+    latencies.remove(iNodeId);
+  }
+}
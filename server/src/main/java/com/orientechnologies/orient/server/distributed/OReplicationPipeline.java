@@ -0,0 +1,371 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.distributed;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.server.distributed.ODistributedServerManager.EXECUTION_MODE;
+import com.orientechnologies.orient.server.task.OAbstractDistributedTask;
+import com.orientechnologies.orient.server.task.OMultipleDistributedTasks;
+
+/**
+ * Replication pipeline of a database. Outgoing operations are queued per target node and a sender thread per node coalesces them
+ * in {@link OMultipleDistributedTasks} batches, so concurrent writers share the same network round trip. The queue of every node is
+ * bounded to a window of batches: when the window is full the writers wait (back-pressure). The writer is acknowledged as soon as
+ * the configured write quorum of nodes has executed its operation; the results of the remaining nodes are checked for conflicts
+ * asynchronously by the sender threads.
+ *
+ * @author Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ */
+public class OReplicationPipeline {
+  private final ODistributedServerManager          dManager;
+  private final String                             databaseName;
+  private final int                                batchSize;
+  private final int                                window;
+  private final int                                writeQuorum;
+  private final Map<String, ONodeReplicationQueue> nodeQueues = new ConcurrentHashMap<String, ONodeReplicationQueue>();
+  private volatile boolean                         running    = true;
+
+  /**
+   * Pending replicated operation waiting for the acknowledge of the target nodes.
+   */
+  protected static class OReplicatedOperation {
+    protected final OAbstractDistributedTask<?> task;
+    protected final Object                      localResult;
+    protected final Map<String, Object>         results = new HashMap<String, Object>();
+    protected final CountDownLatch              quorumReached;
+    protected final int                         quorum;
+    protected final int                         nodes;
+    protected int                               acks;
+    protected int                               failures;
+    protected Throwable                         lastError;
+
+    protected OReplicatedOperation(final OAbstractDistributedTask<?> iTask, final Object iLocalResult, final int iNodes,
+        final int iQuorum) {
+      task = iTask;
+      localResult = iLocalResult;
+      nodes = iNodes;
+      quorum = iQuorum;
+      quorumReached = new CountDownLatch(iQuorum > 0 ? 1 : 0);
+    }
+
+    protected synchronized void done(final String iNodeId, final Object iResult) {
+      if (acks < quorum) {
+        // THE WRITER IS WAITING: IT WILL CHECK THE RESULT
+        if (iResult != null)
+          results.put(iNodeId, iResult);
+
+        if (++acks == quorum)
+          quorumReached.countDown();
+      } else {
+        // THE WRITER HAS BEEN ALREADY ACKNOWLEDGED: CHECK FOR CONFLICTS HERE
+        ++acks;
+        checkForConflict(iNodeId, iResult);
+      }
+    }
+
+    protected synchronized void failed(final String iNodeId, final Throwable iError) {
+      lastError = iError;
+      if (++failures > nodes - quorum)
+        // QUORUM CANNOT BE REACHED ANYMORE
+        quorumReached.countDown();
+    }
+
+    /**
+     * Aborts the operation if the quorum has not been reached yet, releasing the writer.
+     */
+    protected synchronized void abort(final Throwable iError) {
+      if (acks < quorum) {
+        lastError = iError;
+        quorumReached.countDown();
+      }
+    }
+
+    protected synchronized Map<String, Object> getResults() {
+      if (acks < quorum)
+        throw new ODistributedException("Cannot reach the write quorum (" + quorum + ") replicating operation " + task
+            + ": acknowledged by " + acks + " node(s) of " + nodes, lastError);
+
+      return new HashMap<String, Object>(results);
+    }
+
+    protected void checkForConflict(final String iNodeId, final Object iRemoteResult) {
+      if (localResult != iRemoteResult
+          && (localResult == null && iRemoteResult != null || localResult != null && iRemoteResult == null))
+        task.handleConflict(iNodeId, localResult, iRemoteResult);
+    }
+  }
+
+  /**
+   * Bounded queue of operations to send to one node with the thread that sends them in batches.
+   */
+  protected class ONodeReplicationQueue extends Thread {
+    private final String                              nodeId;
+    private final BlockingQueue<OReplicatedOperation> queue;
+    private volatile boolean                          active = true;
+
+    protected ONodeReplicationQueue(final String iNodeId) {
+      nodeId = iNodeId;
+      queue = new ArrayBlockingQueue<OReplicatedOperation>(batchSize * window);
+      setName("OrientDB Replication " + databaseName + " -> " + iNodeId);
+      setDaemon(true);
+    }
+
+    public void enqueue(final OReplicatedOperation iOperation) throws InterruptedException {
+      // WAIT FOR A FREE SLOT BUT NOT AFTER THE QUEUE HAS BEEN STOPPED: NOBODY WOULD CONSUME IT
+      while (!queue.offer(iOperation, 1, TimeUnit.SECONDS))
+        if (!isActive()) {
+          iOperation.failed(nodeId, new ODistributedException("Replication to node " + nodeId + " of database " + databaseName
+              + " has been stopped"));
+          return;
+        }
+
+      if (!isActive())
+        // STOPPED IN THE MEANWHILE: ABORT IT IF THE SENDER THREAD HAS ALREADY DRAINED THE QUEUE
+        abortPending();
+    }
+
+    /**
+     * Stops the sender thread. The operations still queued are aborted.
+     */
+    public void terminate() {
+      active = false;
+      interrupt();
+    }
+
+    protected boolean isActive() {
+      return active && running;
+    }
+
+    protected void abortPending() {
+      final List<OReplicatedOperation> pending = new ArrayList<OReplicatedOperation>();
+      queue.drainTo(pending);
+      for (OReplicatedOperation op : pending)
+        op.failed(nodeId, new ODistributedException("Replication to node " + nodeId + " of database " + databaseName
+            + " has been stopped"));
+    }
+
+    @Override
+    public void run() {
+      final List<OReplicatedOperation> batch = new ArrayList<OReplicatedOperation>(batchSize);
+
+      while (isActive()) {
+        try {
+          final OReplicatedOperation first = queue.poll(1, TimeUnit.SECONDS);
+          if (first == null)
+            continue;
+
+          batch.add(first);
+          queue.drainTo(batch, batchSize - 1);
+
+          sendBatch(batch);
+
+        } catch (InterruptedException e) {
+          Thread.interrupted();
+        } finally {
+          batch.clear();
+        }
+      }
+
+      // ABORT THE PENDING OPERATIONS
+      abortPending();
+    }
+
+    protected void sendBatch(final List<OReplicatedOperation> iBatch) {
+      if (OLogManager.instance().isDebugEnabled())
+        OLogManager.instance().debug(this, "DISTRIBUTED ->[%s/%s] replicating batch of %d operation(s)", nodeId, databaseName,
+            iBatch.size());
+
+      try {
+        final OMultipleDistributedTasks group = new OMultipleDistributedTasks(dManager.getLocalNodeId(), databaseName,
+            EXECUTION_MODE.SYNCHRONOUS);
+        for (OReplicatedOperation op : iBatch)
+          group.addTask(op.task);
+
+        final Object[] results = (Object[]) dManager.sendOperation2Node(nodeId, group);
+
+        for (int i = 0; i < iBatch.size(); ++i)
+          iBatch.get(i).done(nodeId, results != null ? results[i] : null);
+
+      } catch (Exception e) {
+        OLogManager.instance().error(this, "DISTRIBUTED ->[%s/%s] error on replicating batch of %d operation(s)", e, nodeId,
+            databaseName, iBatch.size());
+
+        for (OReplicatedOperation op : iBatch)
+          op.failed(nodeId, e);
+      }
+    }
+  }
+
+  public OReplicationPipeline(final ODistributedServerManager iManager, final String iDatabaseName, final int iBatchSize,
+      final int iWindow, final int iWriteQuorum) {
+    dManager = iManager;
+    databaseName = iDatabaseName;
+    batchSize = Math.max(1, iBatchSize);
+    window = Math.max(1, iWindow);
+    writeQuorum = iWriteQuorum;
+  }
+
+  /**
+   * Checks that the write quorum can be reached with the target nodes currently online. Must be called before executing the
+   * operation on local node, so an operation that cannot be replicated is refused before being committed.
+   *
+   * @throws ODistributedException
+   *           if the pipeline has been shutdown or too many target nodes are offline
+   */
+  public void checkQuorum(final Set<String> iTargetNodes, final EXECUTION_MODE iMode) {
+    if (!running)
+      throw new ODistributedException("Replication pipeline of database " + databaseName + " has been shutdown");
+
+    if (iMode != EXECUTION_MODE.SYNCHRONOUS)
+      return;
+
+    final int quorum = getQuorum(iTargetNodes.size());
+
+    int available = 0;
+    for (String nodeId : iTargetNodes)
+      if (!dManager.isOfflineNode(nodeId))
+        ++available;
+
+    if (available < quorum)
+      throw new ODistributedException("Cannot reach the write quorum (" + quorum + ") for database " + databaseName + ": only "
+          + available + " node(s) of " + iTargetNodes.size() + " are online");
+  }
+
+  /**
+   * Replicates a task already executed on local node against the target nodes. In SYNCHRONOUS mode the call waits until the write
+   * quorum has been reached, otherwise returns immediately.
+   *
+   * @param iTargetNodes
+   *          Nodes where to replicate the operation
+   * @param iTask
+   *          Task to replicate
+   * @param iLocalResult
+   *          Result of the execution on local node, used to detect conflicts
+   * @return The results of the nodes that have acknowledged the operation before the quorum was reached
+   */
+  public Map<String, Object> replicate(final Set<String> iTargetNodes, final OAbstractDistributedTask<?> iTask,
+      final Object iLocalResult) {
+    if (!running)
+      throw new ODistributedException("Replication pipeline of database " + databaseName + " has been shutdown");
+
+    final int quorum = iTask.getMode() == EXECUTION_MODE.SYNCHRONOUS ? getQuorum(iTargetNodes.size()) : 0;
+
+    final OReplicatedOperation op = new OReplicatedOperation(iTask, iLocalResult, iTargetNodes.size(), quorum);
+
+    try {
+      for (String nodeId : iTargetNodes)
+        getNodeQueue(nodeId).enqueue(op);
+
+      if (quorum == 0)
+        return new HashMap<String, Object>();
+
+      while (!op.quorumReached.await(1, TimeUnit.SECONDS))
+        if (!running) {
+          // SHUTDOWN WHILE WAITING: THE SENDER THREADS COULD HAVE BEEN ALREADY STOPPED
+          op.abort(new ODistributedException("Replication pipeline of database " + databaseName + " has been shutdown"));
+          break;
+        }
+
+    } catch (InterruptedException e) {
+      Thread.interrupted();
+      throw new ODistributedException("Replication of operation " + iTask + " has been interrupted");
+    }
+
+    return op.getResults();
+  }
+
+  /**
+   * Stops the sender threads. Pending operations are aborted.
+   */
+  public void shutdown() {
+    running = false;
+    synchronized (nodeQueues) {
+      for (ONodeReplicationQueue q : nodeQueues.values())
+        q.terminate();
+      nodeQueues.clear();
+    }
+  }
+
+  /**
+   * Stops the replication to a node that left the cluster. The operations queued for it are aborted: they will be sent by the
+   * alignment when the node joins again.
+   */
+  public void removeNode(final String iNodeId) {
+    final ONodeReplicationQueue q;
+    synchronized (nodeQueues) {
+      q = nodeQueues.remove(iNodeId);
+    }
+    if (q != null)
+      q.terminate();
+  }
+
+  /**
+   * Returns the nodes with a sender thread.
+   */
+  public Set<String> getNodes() {
+    return new HashSet<String>(nodeQueues.keySet());
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public int getWindow() {
+    return window;
+  }
+
+  public int getWriteQuorum() {
+    return writeQuorum;
+  }
+
+  protected int getQuorum(final int iTargetNodes) {
+    if (writeQuorum < 0 || writeQuorum > iTargetNodes)
+      // ALL THE NODES
+      return iTargetNodes;
+    return writeQuorum;
+  }
+
+  protected ONodeReplicationQueue getNodeQueue(final String iNodeId) {
+    ONodeReplicationQueue q = nodeQueues.get(iNodeId);
+    if (q == null) {
+      synchronized (nodeQueues) {
+        if (!running)
+          throw new ODistributedException("Replication pipeline of database " + databaseName + " has been shutdown");
+
+        q = nodeQueues.get(iNodeId);
+        if (q == null) {
+          q = new ONodeReplicationQueue(iNodeId);
+          nodeQueues.put(iNodeId, q);
+          q.start();
+        }
+      }
+    }
+    return q;
+  }
+}
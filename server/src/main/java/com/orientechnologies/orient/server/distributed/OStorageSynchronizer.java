@@ -16,9 +16,12 @@
 package com.orientechnologies.orient.server.distributed;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.parser.OSystemVariableResolver;
@@ -46,6 +49,8 @@ public class OStorageSynchronizer {
   private String                       storageName;
   private ODatabaseJournal             log;
   private OReplicationConflictResolver resolver;
+  private OReplicationPipeline         pipeline;
+  private Map<String, ExecutorService> alignmentExecutors = new HashMap<String, ExecutorService>();
 
   public OStorageSynchronizer(final ODistributedServerManager iCluster, final String storageName) throws IOException {
     cluster = iCluster;
@@ -63,6 +68,9 @@ public class OStorageSynchronizer {
         + storageName);
 
     log = new ODatabaseJournal(storage, logDirectory);
+
+    pipeline = new OReplicationPipeline(iCluster, storageName, iCluster.getReplicationBatchSize(),
+        iCluster.getReplicationWindow(), iCluster.getReplicationWriteQuorum());
   }
   
   public void recoverUncommited(final ODistributedServerManager iCluster, final String storageName) throws IOException{
@@ -95,17 +103,93 @@ public class OStorageSynchronizer {
 	  } 
   }
 
-  public Map<String, Object> distributeOperation(final byte operation, final ORecordId rid, final OAbstractDistributedTask<?> iTask) {
+  /**
+   * Replicates an operation already executed on local node to the other nodes through the replication pipeline.
+   * 
+   * @param operation
+   *          Operation type
+   * @param rid
+   *          Record id involved
+   * @param iTask
+   *          Task to replicate
+   * @param iLocalResult
+   *          Result of the local execution, used to check conflicts against the remote results
+   * @return The results of the nodes that acknowledged the operation before the write quorum was reached, or null if there are
+   *         no other nodes
+   */
+  public Map<String, Object> distributeOperation(final byte operation, final ORecordId rid, final OAbstractDistributedTask<?> iTask,
+      final Object iLocalResult) {
     final Set<String> targetNodes = cluster.getRemoteNodeIdsBut(iTask.getNodeSource());
     if (!targetNodes.isEmpty()) {
       // RESET THE SOURCE TO AVOID LOOPS
       iTask.setNodeSource(cluster.getLocalNodeId());
       iTask.setStatus(STATUS.REMOTE_EXEC);
-      return cluster.sendOperation2Nodes(targetNodes, iTask);
+      return pipeline.replicate(targetNodes, iTask, iLocalResult);
     }
     return null;
   }
 
+  /**
+   * Checks the operation can be replicated before executing it on local node.
+   * 
+   * @throws ODistributedException
+   *           if the write quorum cannot be reached with the nodes currently online
+   * @see OReplicationPipeline#checkQuorum(Set, com.orientechnologies.orient.server.distributed.ODistributedServerManager.EXECUTION_MODE)
+   */
+  public void checkReplication(final OAbstractDistributedTask<?> iTask) {
+    final Set<String> targetNodes = cluster.getRemoteNodeIdsBut(iTask.getNodeSource());
+    if (!targetNodes.isEmpty())
+      pipeline.checkQuorum(targetNodes, iTask.getMode());
+  }
+
+  /**
+   * Stops the replication to a node that left the cluster.
+   */
+  public void removeNode(final String iNodeId) {
+    pipeline.removeNode(iNodeId);
+    endAlignment(iNodeId);
+  }
+
+  /**
+   * Returns the executor that applies the records received from a node during the alignment. It's created on the first chunk
+   * received and shared by all the following ones until {@link #endAlignment(String)} is called.
+   */
+  public ExecutorService getAlignmentExecutor(final String iNodeId) {
+    synchronized (alignmentExecutors) {
+      ExecutorService executor = alignmentExecutors.get(iNodeId);
+      if (executor == null) {
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        alignmentExecutors.put(iNodeId, executor);
+      }
+      return executor;
+    }
+  }
+
+  /**
+   * Releases the threads used to apply the alignment received from a node.
+   */
+  public void endAlignment(final String iNodeId) {
+    final ExecutorService executor;
+    synchronized (alignmentExecutors) {
+      executor = alignmentExecutors.remove(iNodeId);
+    }
+    if (executor != null)
+      executor.shutdown();
+  }
+
+  /**
+   * Stops the replication of the database.
+   */
+  public void close() {
+    pipeline.shutdown();
+
+    synchronized (alignmentExecutors) {
+      for (ExecutorService executor : alignmentExecutors.values())
+        executor.shutdown();
+      alignmentExecutors.clear();
+    }
+  }
+
   /**
    * Returns the conflict resolver implementation
    * 
@@ -119,6 +203,10 @@ public class OStorageSynchronizer {
     return log;
   }
 
+  public OReplicationPipeline getPipeline() {
+    return pipeline;
+  }
+
   @Override
   public String toString() {
     return storageName;
@@ -19,12 +19,15 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import com.orientechnologies.common.concur.resource.OSharedResourceAdaptiveExternal;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.record.ORecordOperation;
 import com.orientechnologies.orient.core.id.OClusterPositionFactory;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
@@ -41,6 +44,8 @@ import com.orientechnologies.orient.server.task.OAbstractRecordDistributedTask;
 import com.orientechnologies.orient.server.task.OCreateRecordDistributedTask;
 import com.orientechnologies.orient.server.task.ODeleteRecordDistributedTask;
 import com.orientechnologies.orient.server.task.OSQLCommandDistributedTask;
+import com.orientechnologies.orient.server.task.OTxCommitDistributedTask;
+import com.orientechnologies.orient.server.task.OTxCommitDistributedTask.OTxOperation;
 import com.orientechnologies.orient.server.task.OUpdateRecordDistributedTask;
 
 /**
@@ -58,7 +63,7 @@ import com.orientechnologies.orient.server.task.OUpdateRecordDistributedTask;
  * Where:
  * <ul>
  * <li> <b>STATUS</b> = [ 0 = doing, 1 = done ] </li>
- * <li> <b>OPERAT</b> = [ 1 = update, 2 = delete, 3 = create, 4 = sql command ] </li>
+ * <li> <b>OPERAT</b> = [ 1 = update, 2 = delete, 3 = create, 4 = sql command, 5 = transaction commit, 6 = operations aligned up to the id ] </li>
  * <li> <b>RUN ID</b> = is the running id. It's the timestamp the server is started, or inside a cluster is the timestamp when the cluster is started</li>
  * <li> <b>OPERAT ID</b> = is the unique id of the operation. First operation is 0</li>
  * </ul>
@@ -66,7 +71,7 @@ import com.orientechnologies.orient.server.task.OUpdateRecordDistributedTask;
  */
 public class ODatabaseJournal {
   public enum OPERATION_TYPES {
-    RECORD_CREATE, RECORD_UPDATE, RECORD_DELETE, SQL_COMMAND
+    RECORD_CREATE, RECORD_UPDATE, RECORD_DELETE, SQL_COMMAND, TX_COMMIT, ALIGN
   }
 
   public static final String              DIRECTORY             = "log";
@@ -82,6 +87,7 @@ public class ODatabaseJournal {
   private static final int                OFFSET_BACK_SIZE      = OFFSET_BACK_RUNID + OBinaryProtocol.SIZE_INT;
 
   private static final int                FIXED_SIZE            = 22;
+  private static final int                TX_ENTRY_SIZE         = OBinaryProtocol.SIZE_BYTE + ORecordId.PERSISTENT_SIZE;
 
   private OSharedResourceAdaptiveExternal lock                  = new OSharedResourceAdaptiveExternal(
                                                                     OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean(),
@@ -208,6 +214,12 @@ public class ODatabaseJournal {
       if (op instanceof OAbstractRecordDistributedTask<?>)
         // COLLECT THE RECORD TO BE RETRIEVED FROM OTHER SERVERS
         uncommittedRecords.add(((OAbstractRecordDistributedTask<?>) op).getRid());
+      else if (op instanceof OTxCommitDistributedTask)
+        // COLLECT ALL THE RECORDS OF THE TRANSACTION
+        for (OTxOperation txOp : ((OTxCommitDistributedTask) op).getOperations())
+          if (txOp.rid.isPersistent())
+            // RECORDS CREATED BY A TRANSACTION NOT COMMITTED YET HAVE NO RID
+            uncommittedRecords.add(txOp.rid);
 
       fileOffset = getPreviousOperation(fileOffset);
     }
@@ -239,6 +251,36 @@ public class ODatabaseJournal {
     }
   }
 
+  /**
+   * Changes the status of a transaction journaled before its commit, updating the RIDs of the records with the ones assigned by the
+   * commit.
+   */
+  public void changeTxOperationStatus(final long iOffsetEndOperation, final List<OTxOperation> iOperations) throws IOException {
+    lock.acquireExclusiveLock();
+    try {
+      final int varSize = file.readInt(iOffsetEndOperation - OFFSET_BACK_SIZE);
+      final long offset = iOffsetEndOperation - OFFSET_BACK_SIZE - varSize - OFFSET_VARDATA;
+
+      if (iOperations.size() * TX_ENTRY_SIZE != varSize)
+        throw new IOException("Transaction journaled at offset " + offset + " contains " + (varSize / TX_ENTRY_SIZE)
+            + " record(s) while " + iOperations.size() + " have been committed");
+
+      long entryOffset = offset + OFFSET_VARDATA;
+      for (OTxOperation op : iOperations) {
+        file.writeShort(entryOffset + OBinaryProtocol.SIZE_BYTE, (short) op.rid.clusterId);
+        file.writeLong(entryOffset + OBinaryProtocol.SIZE_BYTE + OBinaryProtocol.SIZE_SHORT, op.rid.clusterPosition.longValue());
+        entryOffset += TX_ENTRY_SIZE;
+      }
+
+      file.write(offset + OFFSET_STATUS, new byte[] { 1 });
+
+      file.synch();
+
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
   /**
    * Return the operation status.
    * 
@@ -308,6 +350,39 @@ public class ODatabaseJournal {
         file.write(offset + OFFSET_VARDATA, cmdText.getBytes());
         break;
       }
+
+      case TX_COMMIT: {
+        // STORE THE OPERATION TYPE AND THE RID OF EVERY RECORD INVOLVED IN THE TRANSACTION
+        final List<OTxOperation> operations = ((OTxCommitDistributedTask) iVarData).getOperations();
+        varSize = operations.size() * TX_ENTRY_SIZE;
+
+        if (OLogManager.instance().isDebugEnabled())
+          OLogManager.instance().warn(this, "Journaled operation %s of %d records as #%d.%d", iOperationType.toString(),
+              operations.size(), iRunId, iOperationId);
+
+        if (needOverWrited(iRunId, iOperationId))
+          offset = getOverWriteStart(iRunId, iOperationId, iOperationType, varSize);
+        else
+          offset = writeOperationLogHeader(iOperationType, varSize);
+
+        long entryOffset = offset + OFFSET_VARDATA;
+        for (OTxOperation op : operations) {
+          file.writeByte(entryOffset, op.type);
+          file.writeShort(entryOffset + OBinaryProtocol.SIZE_BYTE, (short) op.rid.clusterId);
+          file.writeLong(entryOffset + OBinaryProtocol.SIZE_BYTE + OBinaryProtocol.SIZE_SHORT, op.rid.clusterPosition.longValue());
+          entryOffset += TX_ENTRY_SIZE;
+        }
+        break;
+      }
+
+      case ALIGN: {
+        // NO DATA: THE RECORDS HAVE BEEN RECEIVED BY ANOTHER NODE UP TO THIS OPERATION
+        if (OLogManager.instance().isDebugEnabled())
+          OLogManager.instance().warn(this, "Journaled operation %s as #%d.%d", iOperationType.toString(), iRunId, iOperationId);
+
+        offset = writeOperationLogHeader(iOperationType, varSize);
+        break;
+      }
       }
 
       file.writeLong(offset + OFFSET_VARDATA + varSize + OBinaryProtocol.SIZE_INT, iRunId);
@@ -402,6 +477,67 @@ public class ODatabaseJournal {
 	  return writeOperationLogHeader(iOperationType, varSize);
   }
 
+  /**
+   * Returns the type of the operation.
+   */
+  public OPERATION_TYPES getOperationType(final long iOffsetEndOperation) throws IOException {
+    lock.acquireExclusiveLock();
+    try {
+      final int varSize = file.readInt(iOffsetEndOperation - OFFSET_BACK_SIZE);
+      final long offset = iOffsetEndOperation - OFFSET_BACK_SIZE - varSize - OFFSET_VARDATA;
+      return OPERATION_TYPES.values()[file.readByte(offset + OFFSET_OPERATION_TYPE)];
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
+  /**
+   * Returns the records involved in a record or transaction operation with the type of change (as
+   * {@link ORecordOperation#CREATED}, {@link ORecordOperation#UPDATED} or {@link ORecordOperation#DELETED}) without loading them.
+   * Returns an empty map for SQL commands.
+   */
+  public Map<ORecordId, Byte> getOperationRecords(final long iOffsetEndOperation) throws IOException {
+    final Map<ORecordId, Byte> result = new LinkedHashMap<ORecordId, Byte>();
+
+    lock.acquireExclusiveLock();
+    try {
+      final int varSize = file.readInt(iOffsetEndOperation - OFFSET_BACK_SIZE);
+      final long offset = iOffsetEndOperation - OFFSET_BACK_SIZE - varSize - OFFSET_VARDATA;
+
+      final OPERATION_TYPES operationType = OPERATION_TYPES.values()[file.readByte(offset + OFFSET_OPERATION_TYPE)];
+
+      switch (operationType) {
+      case RECORD_CREATE:
+      case RECORD_UPDATE:
+      case RECORD_DELETE: {
+        final ORecordId rid = new ORecordId(file.readShort(offset + OFFSET_VARDATA), OClusterPositionFactory.INSTANCE.valueOf(file
+            .readLong(offset + OFFSET_VARDATA + OBinaryProtocol.SIZE_SHORT)));
+        result.put(rid, operationType == OPERATION_TYPES.RECORD_CREATE ? ORecordOperation.CREATED
+            : operationType == OPERATION_TYPES.RECORD_UPDATE ? ORecordOperation.UPDATED : ORecordOperation.DELETED);
+        break;
+      }
+
+      case TX_COMMIT: {
+        for (long entryOffset = offset + OFFSET_VARDATA; entryOffset < offset + OFFSET_VARDATA + varSize; entryOffset += TX_ENTRY_SIZE) {
+          final ORecordId rid = new ORecordId(file.readShort(entryOffset + OBinaryProtocol.SIZE_BYTE),
+              OClusterPositionFactory.INSTANCE.valueOf(file.readLong(entryOffset + OBinaryProtocol.SIZE_BYTE
+                  + OBinaryProtocol.SIZE_SHORT)));
+          result.put(rid, file.readByte(entryOffset));
+        }
+        break;
+      }
+
+      default:
+        break;
+      }
+
+      return result;
+
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
   public OAbstractDistributedTask<?> getOperation(final long iOffsetEndOperation) throws IOException {
     OAbstractDistributedTask<?> task = null;
 
@@ -458,6 +594,37 @@ public class ODatabaseJournal {
         task = new OSQLCommandDistributedTask(runId, operationId, new String(buffer));
         break;
       }
+
+      case TX_COMMIT: {
+        final OTxCommitDistributedTask txTask = new OTxCommitDistributedTask(runId, operationId);
+
+        for (long entryOffset = offset + OFFSET_VARDATA; entryOffset < offset + OFFSET_VARDATA + varSize; entryOffset += TX_ENTRY_SIZE) {
+          final byte type = file.readByte(entryOffset);
+          final ORecordId rid = new ORecordId(file.readShort(entryOffset + OBinaryProtocol.SIZE_BYTE),
+              OClusterPositionFactory.INSTANCE.valueOf(file.readLong(entryOffset + OBinaryProtocol.SIZE_BYTE
+                  + OBinaryProtocol.SIZE_SHORT)));
+
+          if (!rid.isPersistent())
+            // JOURNALED BEFORE THE COMMIT THAT NEVER ASSIGNED THE RID
+            continue;
+
+          // READ THE CURRENT CONTENT OF THE RECORD
+          final ORawBuffer record = storage.readRecord(rid, null, false, null, false).getResult();
+
+          if (type == ORecordOperation.DELETED)
+            txTask.addOperation(new OTxOperation(type, rid, record != null ? record.version : OVersionFactory.instance()
+                .createUntrackedVersion(), (byte) 0, null));
+          else if (record != null) {
+            final ORecordVersion version = record.version.copy();
+            if (type == ORecordOperation.UPDATED)
+              version.decrement();
+            txTask.addOperation(new OTxOperation(type, rid, version, record.recordType, record.buffer));
+          }
+        }
+
+        task = txTask;
+        break;
+      }
       }
 
       if (task != null)
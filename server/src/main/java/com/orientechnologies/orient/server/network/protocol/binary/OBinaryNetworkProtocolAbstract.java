@@ -229,7 +229,7 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
     channel.writeRID(iRecord.getIdentity());
     channel.writeVersion(iRecord.getRecordVersion());
     try {
-      final byte[] stream = iRecord.toStream();
+      final byte[] stream = getRecordContent(iRecord);
 
       // TRIM TAILING SPACES (DUE TO OVERSIZE)
       int realLength = stream.length;
@@ -248,6 +248,13 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
     }
   }
 
+  /**
+   * Returns the serialized content of the record to send to the client.
+   */
+  protected byte[] getRecordContent(final ORecordInternal<?> iRecord) {
+    return iRecord.toStream();
+  }
+
   protected void checkStorageExistence(final String iDatabaseName) {
     for (OStorage stg : Orient.instance().getStorages()) {
       if (stg.getName().equalsIgnoreCase(iDatabaseName) && stg.exists())
@@ -17,6 +17,7 @@ package com.orientechnologies.orient.server.network.protocol.binary;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -31,6 +32,8 @@ import com.orientechnologies.orient.core.OConstants;
 import com.orientechnologies.orient.core.command.OCommandRequestInternal;
 import com.orientechnologies.orient.core.command.OCommandRequestText;
 import com.orientechnologies.orient.core.command.OCommandResultListener;
+import com.orientechnologies.orient.core.compression.ODictionaryCompression;
+import com.orientechnologies.orient.core.compression.ONothingCompression;
 import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabase;
@@ -38,9 +41,12 @@ import com.orientechnologies.orient.core.db.ODatabaseComplex;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.graph.OGraphEdgeLabelManager;
 import com.orientechnologies.orient.core.db.raw.ODatabaseRaw;
+import com.orientechnologies.orient.core.db.record.OClassTrigger;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecordTx;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.db.record.ORidBag;
 import com.orientechnologies.orient.core.exception.OConfigurationException;
 import com.orientechnologies.orient.core.exception.OSecurityAccessException;
 import com.orientechnologies.orient.core.exception.OSecurityException;
@@ -51,26 +57,41 @@ import com.orientechnologies.orient.core.fetch.OFetchHelper;
 import com.orientechnologies.orient.core.fetch.OFetchListener;
 import com.orientechnologies.orient.core.fetch.remote.ORemoteFetchContext;
 import com.orientechnologies.orient.core.fetch.remote.ORemoteFetchListener;
+import com.orientechnologies.orient.core.hook.ORecordHook;
 import com.orientechnologies.orient.core.id.OClusterPosition;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.index.OClassIndexManager;
+import com.orientechnologies.orient.core.metadata.function.OFunctionTrigger;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
 import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.metadata.security.ODatabaseSecurityResources;
+import com.orientechnologies.orient.core.metadata.security.ORestrictedAccessHook;
+import com.orientechnologies.orient.core.metadata.security.ORole;
+import com.orientechnologies.orient.core.metadata.security.OSecurityShared;
 import com.orientechnologies.orient.core.metadata.security.OUser;
+import com.orientechnologies.orient.core.metadata.security.OUserTrigger;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.record.impl.ORecordBytes;
+import com.orientechnologies.orient.core.schedule.OSchedulerTrigger;
 import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerStringAbstract;
 import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerAnyStreamable;
 import com.orientechnologies.orient.core.storage.OCluster;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
 import com.orientechnologies.orient.core.storage.ORecordMetadata;
 import com.orientechnologies.orient.core.storage.OStorageProxy;
+import com.orientechnologies.orient.core.storage.OStoredRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
 import com.orientechnologies.orient.core.storage.impl.memory.OStorageMemory;
 import com.orientechnologies.orient.core.version.ORecordVersion;
 import com.orientechnologies.orient.core.version.OVersionFactory;
 import com.orientechnologies.orient.enterprise.channel.binary.OChannelBinaryProtocol;
 import com.orientechnologies.orient.enterprise.channel.binary.OChannelBinaryServer;
+import com.orientechnologies.orient.enterprise.channel.binary.ONetworkProtocolException;
 import com.orientechnologies.orient.server.OClientConnection;
 import com.orientechnologies.orient.server.OClientConnectionManager;
 import com.orientechnologies.orient.server.OServer;
@@ -267,6 +288,10 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
       readRecord();
       break;
 
+    case OChannelBinaryProtocol.REQUEST_RECORD_LOAD_BATCH:
+      readRecords();
+      break;
+
     case OChannelBinaryProtocol.REQUEST_RECORD_CREATE:
       createRecord();
       break;
@@ -303,6 +328,10 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
       command();
       break;
 
+    case OChannelBinaryProtocol.REQUEST_COMMAND_CANCEL:
+      cancelCommand();
+      break;
+
     case OChannelBinaryProtocol.REQUEST_TX_COMMIT:
       commit();
       break;
@@ -1118,6 +1147,8 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     // connection.database.getLevel1Cache().setEnable(true);
     beginResponse();
     try {
+      server.getRunningCommands().begin(connection, command.getText(), command.getTimeoutTime());
+
       if (asynch) {
         // ASYNCHRONOUS
         final AtomicBoolean empty = new AtomicBoolean(true);
@@ -1126,12 +1157,6 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
         final Map<String, Integer> fetchPlan = command != null ? OFetchHelper.buildFetchPlan(command.getFetchPlan()) : null;
         command.setResultListener(new AsyncResultListener(empty, clientTxId, fetchPlan, recordsToSend));
 
-        final long serverTimeout = OGlobalConfiguration.COMMAND_TIMEOUT.getValueAsLong();
-
-        if (serverTimeout > 0 && command.getTimeoutTime() > serverTimeout)
-          // FORCE THE SERVER'S TIMEOUT
-          command.setTimeout(serverTimeout, command.getTimeoutStrategy());
-
         ((OCommandRequestInternal) connection.database.command(command)).execute();
 
         if (empty.get())
@@ -1179,10 +1204,32 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
       }
     } finally {
       endResponse();
+      server.getRunningCommands().end(connection);
       // connection.database.getLevel1Cache().setEnable(false);
     }
   }
 
+  protected void cancelCommand() throws IOException {
+    setDataCommandInfo("Cancel command");
+
+    checkServerAccess("server.command.cancel");
+
+    final int connectionId = channel.readInt();
+    if (connection.data.protocolVersion < 19)
+      throw new ONetworkProtocolException("Request not supported by the protocol " + connection.data.protocolVersion
+          + ". Code: " + OChannelBinaryProtocol.REQUEST_COMMAND_CANCEL);
+
+    final boolean cancelled = server.getRunningCommands().cancel(connectionId);
+
+    beginResponse();
+    try {
+      sendOk(clientTxId);
+      channel.writeByte((byte) (cancelled ? 1 : 0));
+    } finally {
+      endResponse();
+    }
+  }
+
   /**
    * Use DATACLUSTER_COUNT
    * 
@@ -1326,6 +1373,36 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     }
   }
 
+  protected void readRecords() throws IOException {
+    setDataCommandInfo("Load records");
+
+    final int total = channel.readInt();
+    final List<ORecordId> rids = new ArrayList<ORecordId>(total);
+    for (int i = 0; i < total; ++i)
+      rids.add(channel.readRID());
+
+    final Map<ORID, ORecordInternal<?>> records = connection.database.loadRecords(rids);
+
+    beginResponse();
+    try {
+      sendOk(clientTxId);
+
+      // ONE ENTRY PER RID IN THE SAME ORDER OF THE REQUEST
+      for (ORecordId rid : rids) {
+        final ORecordInternal<?> record = records.get(rid);
+        if (record != null) {
+          channel.writeByte((byte) 1); // HAS RECORD
+          channel.writeBytes(getRecordContent(record));
+          channel.writeVersion(record.getRecordVersion());
+          channel.writeByte(record.getRecordType());
+        } else
+          channel.writeByte((byte) 0); // NOT FOUND
+      }
+    } finally {
+      endResponse();
+    }
+  }
+
   protected void readRecord() throws IOException {
     setDataCommandInfo("Load record");
 
@@ -1356,6 +1433,9 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
         endResponse();
       }
 
+    } else if (fetchPlanString.length() == 0 && !loadTombstones && isStoredRecordTransferAllowed(rid, ignoreCache)) {
+      sendStoredRecord(rid);
+
     } else {
       final ORecordInternal<?> record = connection.database.load(rid, fetchPlanString, ignoreCache, loadTombstones);
 
@@ -1365,7 +1445,7 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
 
         if (record != null) {
           channel.writeByte((byte) 1); // HAS RECORD
-          channel.writeBytes(record.toStream());
+          channel.writeBytes(getRecordContent(record));
           channel.writeVersion(record.getRecordVersion());
           channel.writeByte(record.getRecordType());
 
@@ -1401,6 +1481,105 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     }
   }
 
+  /**
+   * Sends the record as it's stored by the cluster: the content is copied from the disk cache in the channel buffer and sent still
+   * compressed, without being uncompressed and unmarshalled by the server. The client uncompresses it.
+   */
+  protected void sendStoredRecord(final ORecordId rid) throws IOException {
+    connection.database.checkSecurity(ODatabaseSecurityResources.CLUSTER, ORole.PERMISSION_READ,
+        connection.database.getClusterNameById(rid.clusterId));
+
+    final OStoredRecord record = ((OLocalPaginatedStorage) connection.database.getStorage()).readStoredRecord(rid,
+        channel.getBuffer());
+
+    beginResponse();
+    try {
+      sendOk(clientTxId);
+
+      if (record != null) {
+        if (record.compression instanceof ONothingCompression) {
+          channel.writeByte((byte) 1); // HAS RECORD
+          channel.writeBytes(record.buffer, record.length);
+          channel.writeVersion(record.version);
+          channel.writeByte(record.recordType);
+        } else if (record.compression instanceof ODictionaryCompression) {
+          // THE CLIENT CAN'T UNCOMPRESS IT WITHOUT THE DICTIONARY
+          final ORawBuffer buffer = record.toRawBuffer();
+          channel.writeByte((byte) 1); // HAS RECORD
+          channel.writeBytes(buffer.buffer);
+          channel.writeVersion(buffer.version);
+          channel.writeByte(buffer.recordType);
+        } else {
+          channel.writeByte((byte) 3); // HAS RECORD, COMPRESSED
+          channel.writeBytes(record.buffer, record.length);
+          channel.writeVersion(record.version);
+          channel.writeByte(record.recordType);
+          channel.writeString(record.compression.getName());
+        }
+      }
+      channel.writeByte((byte) 0); // NO MORE RECORDS
+
+    } finally {
+      endResponse();
+    }
+  }
+
+  /**
+   * Returns the content of the record to send. The clients before the protocol 18 don't read the delta format of the sets of RIDs:
+   * the documents that could contain it are streamed again in the classic format.
+   */
+  @Override
+  protected byte[] getRecordContent(final ORecordInternal<?> iRecord) {
+    final byte[] stream = iRecord.toStream();
+    if (connection.data.protocolVersion >= 18 || !(iRecord instanceof ODocument) || !ORidBag.containsDeltaFormat(stream))
+      return stream;
+
+    // STREAM A COPY TO LEAVE THE CACHED RECORD UNTOUCHED
+    final ODocument copy = new ODocument();
+    copy.fromStream(stream);
+    copy.deserializeFields();
+    copy.setDirty();
+
+    ORidBag.setLegacyFormat(true);
+    try {
+      return copy.toStream();
+    } finally {
+      ORidBag.setLegacyFormat(false);
+    }
+  }
+
+  /**
+   * Tells if the record can be sent as it's stored. This is possible only if the client is able to uncompress it and to read the
+   * delta format of the sets of RIDs, the record is not in the transaction or in the cache where it could be more recent, and no
+   * hook has to see the record on reading, like the record level security and the triggers.
+   */
+  protected boolean isStoredRecordTransferAllowed(final ORecordId rid, final boolean ignoreCache) {
+    if (connection.data.protocolVersion < 18 || !OGlobalConfiguration.NETWORK_BINARY_STORED_RECORDS.getValueAsBoolean()
+        || !(connection.database.getStorage() instanceof OLocalPaginatedStorage) || !rid.isPersistent())
+      return false;
+
+    if (connection.database.getTransaction().isActive()
+        || (!ignoreCache && connection.database.getLevel1Cache().findRecord(rid) != null))
+      return false;
+
+    for (ORecordHook hook : connection.database.getHooks())
+      if (!(hook instanceof ORestrictedAccessHook || hook instanceof OClassTrigger || hook instanceof OUserTrigger
+          || hook instanceof OFunctionTrigger || hook instanceof OSchedulerTrigger || hook instanceof OClassIndexManager
+          || hook instanceof OGraphEdgeLabelManager))
+        // UNKNOWN HOOK: IT COULD ACT ON READ
+        return false;
+
+    // THE BUILT-IN HOOKS ACT ON READ ONLY AGAINST THE RECORDS OF RESTRICTED AND TRIGGERED CLASSES. SINCE A RECORD CAN BE STORED IN
+    // ANY CLUSTER, THE CHECK IS AGAINST THE SUB-CLASSES, NOT THE CLUSTER OF THE RECORD
+    final OSchema schema = connection.database.getMetadata().getSchema();
+    return !hasSubClasses(schema.getClass(OSecurityShared.RESTRICTED_CLASSNAME))
+        && !hasSubClasses(schema.getClass(OClassTrigger.CLASSNAME));
+  }
+
+  private static boolean hasSubClasses(final OClass iClass) {
+    return iClass != null && iClass.getBaseClasses().hasNext();
+  }
+
   protected void endResponse() throws IOException {
     channel.flush();
     channel.releaseExclusiveLock();
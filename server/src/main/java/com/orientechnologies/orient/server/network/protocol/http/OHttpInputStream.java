@@ -0,0 +1,294 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network.protocol.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import com.orientechnologies.orient.enterprise.channel.OChannel;
+
+/**
+ * Buffered input of a HTTP connection. The socket is read in blocks and the request lines are parsed directly on the buffer: header
+ * names are matched on the bytes, so only the values of the known headers become strings, and the content is copied in bulk. The
+ * bytes read ahead belong to the next requests of the same connection (HTTP pipelining) and are kept for them.
+ * <p>
+ * Not thread safe: each connection is served by one thread.
+ *
+ * @author Luca Garulli
+ *
+ */
+public class OHttpInputStream extends InputStream {
+  private static final Charset HEADER_CHARSET  = Charset.forName("ISO-8859-1");
+  private static final int     MAX_LINE_LENGTH = 64 * 1024;
+
+  private final OChannel       channel;
+  private final InputStream    in;
+  private final byte[]         buffer;
+  private int                  position;
+  private int                  limit;
+  private byte[]               line            = new byte[256];
+  private int                  lineLength;
+
+  public OHttpInputStream(final OChannel iChannel, final InputStream iInputStream, final int iBufferSize) {
+    channel = iChannel;
+    in = iInputStream;
+    buffer = new byte[iBufferSize];
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (position >= limit && !fill())
+      return -1;
+    return buffer[position++] & 0xFF;
+  }
+
+  @Override
+  public int read(final byte[] iBuffer, final int iOffset, final int iLength) throws IOException {
+    if (iLength == 0)
+      return 0;
+
+    if (position >= limit) {
+      if (iLength >= buffer.length) {
+        // BIG READ: BYPASS THE BUFFER
+        final int read = in.read(iBuffer, iOffset, iLength);
+        if (read > 0)
+          channel.updateMetricReceivedBytes(read);
+        return read;
+      }
+
+      if (!fill())
+        return -1;
+    }
+
+    final int read = Math.min(iLength, limit - position);
+    System.arraycopy(buffer, position, iBuffer, iOffset, read);
+    position += read;
+    return read;
+  }
+
+  @Override
+  public long skip(final long iBytes) throws IOException {
+    if (position >= limit)
+      return in.skip(iBytes);
+
+    final int skipped = (int) Math.min(iBytes, limit - position);
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return limit - position + in.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Reads exactly the requested bytes.
+   *
+   * @throws EOFException
+   *           if the stream ends before
+   */
+  public void readFully(final byte[] iBuffer, final int iOffset, final int iLength) throws IOException {
+    int read = 0;
+    while (read < iLength) {
+      final int n = read(iBuffer, iOffset + read, iLength - read);
+      if (n < 0)
+        throw new EOFException("Connection closed after " + read + " bytes of " + iLength);
+      read += n;
+    }
+  }
+
+  /**
+   * Reads the next line, terminated by LF or CRLF, in the line buffer. The line can be examined with
+   * {@link #lineStartsWith(String)} and {@link #getLine(int)}.
+   *
+   * @return the length of the line without the terminator, or -1 if the stream ended
+   */
+  public int readLine() throws IOException {
+    lineLength = 0;
+    while (true) {
+      if (position >= limit && !fill())
+        return lineLength > 0 ? lineLength : -1;
+
+      int end = position;
+      while (end < limit && buffer[end] != '\n')
+        end++;
+
+      appendToLine(position, end - position);
+
+      if (end < limit) {
+        // LF FOUND
+        position = end + 1;
+        if (lineLength > 0 && line[lineLength - 1] == '\r')
+          lineLength--;
+        return lineLength;
+      }
+
+      position = limit;
+    }
+  }
+
+  public int getLineLength() {
+    return lineLength;
+  }
+
+  /**
+   * Tells if the current line starts with the text ignoring the case, without creating any string.
+   */
+  public boolean lineStartsWith(final String iText) {
+    final int length = iText.length();
+    if (length > lineLength)
+      return false;
+
+    for (int i = 0; i < length; ++i) {
+      final char c = (char) (line[i] & 0xFF);
+      final char t = iText.charAt(i);
+      if (c != t && Character.toLowerCase(c) != Character.toLowerCase(t))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the current line as string starting from the position.
+   */
+  public String getLine(final int iFrom) {
+    return new String(line, iFrom, lineLength - iFrom, HEADER_CHARSET);
+  }
+
+  /**
+   * Parses the current line starting from the position as the length of a content. Spaces around the value are ignored.
+   *
+   * @throws OHttpRequestException
+   *           if the value isn't a number or it doesn't fit an int
+   */
+  public int getLineAsLength(final int iFrom) {
+    int i = iFrom;
+    while (i < lineLength && line[i] == ' ')
+      i++;
+
+    final int begin = i;
+    int length = 0;
+    for (; i < lineLength && line[i] >= '0' && line[i] <= '9'; ++i) {
+      final int digit = line[i] - '0';
+      if (length > (Integer.MAX_VALUE - digit) / 10)
+        throw new OHttpRequestException("Content length too big: " + getLine(iFrom).trim());
+      length = length * 10 + digit;
+    }
+
+    final int end = i;
+    while (i < lineLength && line[i] == ' ')
+      i++;
+
+    if (end == begin || i < lineLength)
+      throw new OHttpRequestException("Invalid content length: " + getLine(iFrom).trim());
+    return length;
+  }
+
+  /**
+   * Reads a content sent with the chunked transfer encoding. The trailer headers are skipped. The content is rejected as soon as
+   * a chunk would make it longer than the maximum, before reading the chunk.
+   *
+   * @throws OHttpRequestException
+   *           if the content is longer than iMaxLength bytes
+   */
+  public byte[] readChunked(final int iMaxLength) throws IOException {
+    byte[] content = new byte[Math.max(buffer.length, 1024)];
+    int size = 0;
+
+    while (true) {
+      if (readLine() < 0)
+        throw new EOFException("Connection closed while reading the chunked content");
+
+      final int chunkSize = parseChunkSize();
+      if (chunkSize == 0)
+        break;
+
+      if (chunkSize > iMaxLength - size)
+        throw new OHttpRequestException("Content too big: the maximum allowed is " + iMaxLength + " bytes");
+
+      if (size + chunkSize > content.length) {
+        final byte[] newContent = new byte[Math.min(Math.max(content.length << 1, size + chunkSize), iMaxLength)];
+        System.arraycopy(content, 0, newContent, 0, size);
+        content = newContent;
+      }
+
+      readFully(content, size, chunkSize);
+      size += chunkSize;
+
+      // CONSUME THE CRLF AFTER THE CHUNK
+      readLine();
+    }
+
+    // SKIP THE TRAILERS UNTIL THE EMPTY LINE
+    while (readLine() > 0)
+      ;
+
+    final byte[] result = new byte[size];
+    System.arraycopy(content, 0, result, 0, size);
+    return result;
+  }
+
+  private int parseChunkSize() {
+    int size = 0;
+    int i = 0;
+    for (; i < lineLength; ++i) {
+      final int digit = Character.digit(line[i], 16);
+      if (digit < 0)
+        // EXTENSIONS OR SPACES AFTER THE SIZE
+        break;
+      if (size > Integer.MAX_VALUE >> 4)
+        throw new OHttpRequestException("Chunk size too big: " + getLine(0));
+      size = (size << 4) + digit;
+    }
+
+    if (i == 0)
+      throw new OHttpRequestException("Invalid chunk size: " + getLine(0));
+    return size;
+  }
+
+  private void appendToLine(final int iFrom, final int iLength) {
+    if (lineLength + iLength > line.length) {
+      if (lineLength + iLength > MAX_LINE_LENGTH)
+        throw new OHttpRequestException("HTTP line too long: the maximum allowed is " + MAX_LINE_LENGTH + " bytes");
+
+      final byte[] newLine = new byte[Math.min(Math.max(line.length << 1, lineLength + iLength), MAX_LINE_LENGTH)];
+      System.arraycopy(line, 0, newLine, 0, lineLength);
+      line = newLine;
+    }
+    System.arraycopy(buffer, iFrom, line, lineLength, iLength);
+    lineLength += iLength;
+  }
+
+  private boolean fill() throws IOException {
+    position = 0;
+    limit = 0;
+
+    final int read = in.read(buffer, 0, buffer.length);
+    if (read <= 0)
+      return false;
+
+    limit = read;
+    channel.updateMetricReceivedBytes(read);
+    return true;
+  }
+}
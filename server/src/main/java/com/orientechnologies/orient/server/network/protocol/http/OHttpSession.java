@@ -26,7 +26,7 @@ import java.util.Map;
 public class OHttpSession {
 	private String							id;
 	private final long					createdOn;
-	private long								lastUpdatedOn;
+	private volatile long				lastUpdatedOn;
 	private final String				databaseName;
 	private final String				userName;
 	private Map<Object, Object>	parameters;
@@ -15,31 +15,52 @@
  */
 package com.orientechnologies.orient.server.network.protocol.http;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
 import java.util.Random;
+import java.util.Set;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
-import com.orientechnologies.common.concur.resource.OSharedResourceAbstract;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 
 /**
- * Handles the HTTP sessions such as a real HTTP Server.
+ * Handles the HTTP sessions such as a real HTTP Server. The sessions are looked up without locks. The expiration uses a timing
+ * wheel: every session is placed in the slot of the time it would expire and at every tick only the sessions in the current slot
+ * are checked. Sessions used in the meanwhile are moved to the slot of their new expiration, so each session is checked about once
+ * per expiration time. The sessions of the same user on the same database are limited: when a new one exceeds the limit the
+ * least recently used one is removed. The sessions per user are tracked only when the limit is set.
  * 
  * @author Luca Garulli
  */
-public class OHttpSessionManager extends OSharedResourceAbstract {
-  private static final OHttpSessionManager instance = new OHttpSessionManager();
-  private Map<String, OHttpSession>        sessions = new HashMap<String, OHttpSession>();
-  private int                              expirationTime;
-  private Random                           random   = new Random();
+public class OHttpSessionManager {
+  private static final OHttpSessionManager                   instance   = new OHttpSessionManager();
+  private static final int                                   WHEEL_SIZE = 64;
+
+  private final ConcurrentMap<String, OHttpSession>          sessions   = new ConcurrentHashMap<String, OHttpSession>();
+  private final ConcurrentMap<String, Set<OHttpSession>>     users      = new ConcurrentHashMap<String, Set<OHttpSession>>();
+  private final List<Queue<OHttpSession>>                    wheel      = new ArrayList<Queue<OHttpSession>>(WHEEL_SIZE);
+  private final long                                         tick;
+  private volatile long                                      lastTick;
+  private volatile int                                       expirationTime;
+  private final int                                          maxSessionsPerUser;
+  private final Random                                       random     = new Random();
 
   protected OHttpSessionManager() {
     expirationTime = OGlobalConfiguration.NETWORK_HTTP_SESSION_EXPIRE_TIMEOUT.getValueAsInteger() * 1000;
+    maxSessionsPerUser = OGlobalConfiguration.NETWORK_HTTP_SESSION_MAX_PER_USER.getValueAsInteger();
+
+    for (int i = 0; i < WHEEL_SIZE; ++i)
+      wheel.add(new ConcurrentLinkedQueue<OHttpSession>());
+
+    tick = Math.max(expirationTime / WHEEL_SIZE, 1);
+    lastTick = System.currentTimeMillis() / tick;
 
     Orient.getTimer().schedule(new TimerTask() {
       @Override
@@ -48,79 +69,100 @@ public class OHttpSessionManager extends OSharedResourceAbstract {
         if (expired > 0)
           OLogManager.instance().debug(this, "Removed %d session because expired", expired);
       }
-    }, expirationTime, expirationTime);
+    }, tick, tick);
   }
 
-  public int checkSessionsValidity() {
+  /**
+   * Removes the expired sessions browsing only the slots of the wheel elapsed since the last check.
+   * 
+   * @return The number of sessions removed
+   */
+  public synchronized int checkSessionsValidity() {
     int expired = 0;
 
-    acquireExclusiveLock();
-    try {
-      final long now = System.currentTimeMillis();
+    final long now = System.currentTimeMillis();
+    final long currentTick = now / tick;
 
-      Entry<String, OHttpSession> s;
-      for (Iterator<Map.Entry<String, OHttpSession>> it = sessions.entrySet().iterator(); it.hasNext();) {
-        s = it.next();
+    // AFTER A COMPLETE ROUND ALL THE SLOTS HAVE BEEN BROWSED
+    final long fromTick = Math.max(lastTick + 1, currentTick - WHEEL_SIZE + 1);
 
-        if (now - s.getValue().getUpdatedOn() > expirationTime) {
-          // REMOVE THE SESSION
-          it.remove();
-          expired++;
-        }
-      }
+    final List<OHttpSession> slotSessions = new ArrayList<OHttpSession>();
+    for (long t = fromTick; t <= currentTick; ++t) {
+      // DRAIN THE SLOT FIRST: THE SESSIONS RESCHEDULED COULD FALL IN THE SAME SLOT
+      final Queue<OHttpSession> slot = wheel.get((int) (t % WHEEL_SIZE));
+      for (OHttpSession s = slot.poll(); s != null; s = slot.poll())
+        slotSessions.add(s);
 
-    } finally {
-      releaseExclusiveLock();
+      lastTick = t;
+
+      for (OHttpSession s : slotSessions) {
+        if (sessions.get(s.getId()) != s)
+          // ALREADY REMOVED
+          continue;
+
+        if (now - s.getUpdatedOn() > expirationTime) {
+          if (remove(s))
+            expired++;
+        } else
+          // USED IN THE MEANWHILE: MOVE IT TO THE SLOT OF THE NEW EXPIRATION
+          schedule(s);
+      }
+      slotSessions.clear();
     }
 
     return expired;
   }
 
   public OHttpSession[] getSessions() {
-    acquireSharedLock();
-    try {
-
-      return (OHttpSession[]) sessions.values().toArray(new OHttpSession[sessions.size()]);
-
-    } finally {
-      releaseSharedLock();
-    }
+    return sessions.values().toArray(new OHttpSession[0]);
   }
 
   public OHttpSession getSession(final String iId) {
-    acquireSharedLock();
-    try {
-
-      final OHttpSession sess = sessions.get(iId);
-      if (sess != null)
-        sess.updateLastUpdatedOn();
-      return sess;
-
-    } finally {
-      releaseSharedLock();
-    }
+    final OHttpSession sess = sessions.get(iId);
+    if (sess != null)
+      sess.updateLastUpdatedOn();
+    return sess;
   }
 
   public String createSession(final String iDatabaseName, final String iUserName) {
-    acquireExclusiveLock();
-    try {
-      final String id = "OS" + System.currentTimeMillis() + random.nextLong();
-      sessions.put(id, new OHttpSession(id, iDatabaseName, iUserName));
-      return id;
-
-    } finally {
-      releaseExclusiveLock();
+    final String id = "OS" + System.currentTimeMillis() + random.nextLong();
+    final OHttpSession session = new OHttpSession(id, iDatabaseName, iUserName);
+    sessions.put(id, session);
+
+    if (maxSessionsPerUser > 0) {
+      final String userKey = iDatabaseName + "/" + iUserName;
+      Set<OHttpSession> userSessions = users.get(userKey);
+      if (userSessions == null) {
+        userSessions = Collections.newSetFromMap(new ConcurrentHashMap<OHttpSession, Boolean>());
+        final Set<OHttpSession> existent = users.putIfAbsent(userKey, userSessions);
+        if (existent != null)
+          userSessions = existent;
+      }
+
+      synchronized (userSessions) {
+        userSessions.add(session);
+
+        // TOO MANY SESSIONS: REMOVE THE LEAST RECENTLY USED ONES
+        while (userSessions.size() > maxSessionsPerUser) {
+          final OHttpSession leastRecentlyUsed = getLeastRecentlyUsed(userSessions, session);
+          if (leastRecentlyUsed == null)
+            break;
+          if (!remove(leastRecentlyUsed))
+            // ALREADY REMOVED BY ANOTHER THREAD
+            userSessions.remove(leastRecentlyUsed);
+        }
+      }
     }
+
+    schedule(session);
+    return id;
   }
 
   public OHttpSession removeSession(final String iSessionId) {
-    acquireExclusiveLock();
-    try {
-      return sessions.remove(iSessionId);
-
-    } finally {
-      releaseExclusiveLock();
-    }
+    final OHttpSession session = sessions.get(iSessionId);
+    if (session == null || !remove(session))
+      return null;
+    return session;
   }
 
   public int getExpirationTime() {
@@ -134,4 +176,44 @@ public class OHttpSessionManager extends OSharedResourceAbstract {
   public static OHttpSessionManager getInstance() {
     return instance;
   }
+
+  /**
+   * Removes the session from the map and from the sessions of its user. The session remains in its slot of the wheel until the
+   * slot is browsed.
+   * 
+   * @return true if removed by this call, false if already removed
+   */
+  private boolean remove(final OHttpSession iSession) {
+    if (!sessions.remove(iSession.getId(), iSession))
+      return false;
+
+    if (maxSessionsPerUser > 0) {
+      final Set<OHttpSession> userSessions = users.get(iSession.getDatabaseName() + "/" + iSession.getUserName());
+      if (userSessions != null)
+        userSessions.remove(iSession);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the session of the user used less recently, except the one just created. The scan is bounded by the max sessions per
+   * user and happens only when the limit is exceeded.
+   */
+  private static OHttpSession getLeastRecentlyUsed(final Set<OHttpSession> iUserSessions, final OHttpSession iExcluded) {
+    OHttpSession leastRecentlyUsed = null;
+    for (OHttpSession s : iUserSessions)
+      if (s != iExcluded && (leastRecentlyUsed == null || s.getUpdatedOn() < leastRecentlyUsed.getUpdatedOn()))
+        leastRecentlyUsed = s;
+    return leastRecentlyUsed;
+  }
+
+  private void schedule(final OHttpSession iSession) {
+    final long firstTick = lastTick + 1;
+
+    // A SESSION CAN'T BE SCHEDULED BEYOND A ROUND OF THE WHEEL: IT WILL BE CHECKED EARLIER AND RESCHEDULED
+    final long expirationTick = Math.min(Math.max((iSession.getUpdatedOn() + expirationTime) / tick + 1, firstTick), firstTick
+        + WHEEL_SIZE - 1);
+
+    wheel.get((int) (expirationTick % WHEEL_SIZE)).offer(iSession);
+  }
 }
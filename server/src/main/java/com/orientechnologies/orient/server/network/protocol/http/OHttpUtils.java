@@ -43,6 +43,7 @@ public class OHttpUtils {
 	public static final String	HEADER_IF_MATCH											= "If-Match: ";
 	public static final String	HEADER_X_FORWARDED_FOR							= "X-Forwarded-For: ";
 	public static final String	HEADER_AUTHENTICATION								= "OAuthentication: ";
+	public static final String	HEADER_TRANSFER_ENCODING						= "Transfer-Encoding: ";
 	public static final String  HEADER_CONTENT_ENCODING                             = "Accept-Encoding: ";
 
 	public static final String	AUTHORIZATION_BASIC									= "Basic";
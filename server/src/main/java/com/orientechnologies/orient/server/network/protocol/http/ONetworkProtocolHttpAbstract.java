@@ -63,7 +63,7 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
   protected OHttpRequest                      request;
   protected OHttpResponse                     response;
 
-  private final StringBuilder                 requestContent    = new StringBuilder();
+  private OHttpInputStream                    input;
   private String                              responseCharSet;
   private String[]                            additionalResponseHeaders;
   private String                              listeningAddress  = "?";
@@ -91,9 +91,12 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
     responseCharSet = iConfiguration.getValueAsString(OGlobalConfiguration.NETWORK_HTTP_CONTENT_CHARSET);
 
     channel = new OChannelTextServer(iSocket, iConfiguration);
+    // READ THE SOCKET IN BLOCKS: THE REQUESTS ARE PARSED ON THE BUFFER
+    input = new OHttpInputStream(channel, iSocket.getInputStream(), channel.socketBufferSize);
+    channel.inStream = input;
     channel.connected();
 
-    request = new OHttpRequest(this, channel.inStream, connection.data, iConfiguration);
+    request = new OHttpRequest(this, input, connection.data, iConfiguration);
 
     connection.data.caller = channel.toString();
 
@@ -290,119 +293,102 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
   protected void readAllContent(final OHttpRequest iRequest) throws IOException {
     iRequest.content = null;
 
-    int in;
-    char currChar;
     int contentLength = -1;
-    boolean endOfHeaders = false;
-
-    final StringBuilder request = new StringBuilder();
-
-    while (!channel.socket.isInputShutdown()) {
-      in = channel.read();
-      if (in == -1)
-        break;
-
-      currChar = (char) in;
-
-      if (currChar == '\r') {
-        if (request.length() > 0 && !endOfHeaders) {
-          final String line = request.toString();
-          if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_AUTHORIZATION)) {
-            // STORE AUTHORIZATION INFORMATION INTO THE REQUEST
-            final String auth = line.substring(OHttpUtils.HEADER_AUTHORIZATION.length());
-            if (!OStringSerializerHelper.startsWithIgnoreCase(auth, OHttpUtils.AUTHORIZATION_BASIC))
-              throw new IllegalArgumentException("Only HTTP Basic authorization is supported");
-
-            iRequest.authorization = auth.substring(OHttpUtils.AUTHORIZATION_BASIC.length() + 1);
-
-            iRequest.authorization = new String(OBase64Utils.decode(iRequest.authorization));
-
-          } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_COOKIE)) {
-            final String sessionPair = line.substring(OHttpUtils.HEADER_COOKIE.length());
-
-            final String[] sessionItems = sessionPair.split(";");
-            for (String sessionItem : sessionItems) {
-              final String[] sessionPairItems = sessionItem.trim().split("=");
-              if (sessionPairItems.length == 2 && OHttpUtils.OSESSIONID.equals(sessionPairItems[0])) {
-                iRequest.sessionId = sessionPairItems[1];
-                break;
-              }
-            }
-
-          } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_CONTENT_LENGTH)) {
-            contentLength = Integer.parseInt(line.substring(OHttpUtils.HEADER_CONTENT_LENGTH.length()));
-            if (contentLength > requestMaxContentLength)
-              OLogManager.instance().warn(
-                  this,
-                  "->" + channel.socket.getInetAddress().getHostAddress() + ": Error on content size " + contentLength
-                      + ": the maximum allowed is " + requestMaxContentLength);
-
-          } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_CONTENT_TYPE)) {
-            iRequest.contentType = line.substring(OHttpUtils.HEADER_CONTENT_TYPE.length());
-            if (OStringSerializerHelper.startsWithIgnoreCase(iRequest.contentType, OHttpUtils.CONTENT_TYPE_MULTIPART)) {
-              iRequest.isMultipart = true;
-              iRequest.boundary = new String(line.substring(OHttpUtils.HEADER_CONTENT_TYPE.length()
-                  + OHttpUtils.CONTENT_TYPE_MULTIPART.length() + 2 + OHttpUtils.BOUNDARY.length() + 1));
-            }
-          } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_IF_MATCH))
-            iRequest.ifMatch = line.substring(OHttpUtils.HEADER_IF_MATCH.length());
-
-          else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_X_FORWARDED_FOR))
-            connection.data.caller = line.substring(OHttpUtils.HEADER_X_FORWARDED_FOR.length());
-
-          else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_AUTHENTICATION))
-            iRequest.authentication = line.substring(OHttpUtils.HEADER_AUTHENTICATION.length());
-          else if (OStringSerializerHelper.startsWithIgnoreCase(line, "Expect: 100-continue"))
-            // SUPPORT THE CONTINUE TO AUTHORIZE THE CLIENT TO SEND THE CONTENT WITHOUT WAITING THE DELAY
-            sendTextContent(100, null, null, null, null);
-          else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_CONTENT_ENCODING))
-            iRequest.contentEncoding = line.substring(OHttpUtils.HEADER_CONTENT_ENCODING.length());
-        }
+    boolean chunked = false;
 
-        // CONSUME /r or /n
-        in = channel.read();
-        if (in == -1)
-          break;
+    // READ THE HEADERS UNTIL THE EMPTY LINE: ONLY THE VALUES OF THE KNOWN HEADERS ARE CONVERTED TO STRINGS
+    int lineLength;
+    while ((lineLength = input.readLine()) > 0) {
+      if (input.lineStartsWith(OHttpUtils.HEADER_AUTHORIZATION)) {
+        // STORE AUTHORIZATION INFORMATION INTO THE REQUEST
+        final String auth = input.getLine(OHttpUtils.HEADER_AUTHORIZATION.length());
+        if (!OStringSerializerHelper.startsWithIgnoreCase(auth, OHttpUtils.AUTHORIZATION_BASIC))
+          throw new IllegalArgumentException("Only HTTP Basic authorization is supported");
 
-        currChar = (char) in;
+        iRequest.authorization = auth.substring(OHttpUtils.AUTHORIZATION_BASIC.length() + 1);
 
-        if (!endOfHeaders && request.length() == 0) {
-          if (contentLength <= 0)
-            return;
+        iRequest.authorization = new String(OBase64Utils.decode(iRequest.authorization));
 
-          // FIRST BLANK LINE: END OF HEADERS
-          endOfHeaders = true;
-        }
+      } else if (input.lineStartsWith(OHttpUtils.HEADER_COOKIE)) {
+        final String sessionPair = input.getLine(OHttpUtils.HEADER_COOKIE.length());
 
-        request.setLength(0);
-      } else if (endOfHeaders && request.length() == 0 && currChar != '\r' && currChar != '\n') {
-        // END OF HEADERS
-        if (iRequest.isMultipart) {
-          iRequest.content = "";
-          iRequest.multipartStream = new OHttpMultipartBaseInputStream(channel.inStream, currChar, contentLength);
-          return;
-        } else {
-          byte[] buffer = new byte[contentLength];
-          buffer[0] = (byte) currChar;
-
-          channel.read(buffer, 1, contentLength - 1);
-
-          if (iRequest.contentEncoding != null && iRequest.contentEncoding.equals(OHttpUtils.CONTENT_ACCEPT_GZIP_ENCODED)) {
-            iRequest.content = this.deCompress(buffer);
-          } else {
-            iRequest.content = new String(buffer);
+        final String[] sessionItems = sessionPair.split(";");
+        for (String sessionItem : sessionItems) {
+          final String[] sessionPairItems = sessionItem.trim().split("=");
+          if (sessionPairItems.length == 2 && OHttpUtils.OSESSIONID.equals(sessionPairItems[0])) {
+            iRequest.sessionId = sessionPairItems[1];
+            break;
           }
-          return;
         }
-      } else
-        request.append(currChar);
+
+      } else if (input.lineStartsWith(OHttpUtils.HEADER_CONTENT_LENGTH)) {
+        contentLength = input.getLineAsLength(OHttpUtils.HEADER_CONTENT_LENGTH.length());
+        if (contentLength > requestMaxContentLength)
+          throw new OHttpRequestException("Content too big: the maximum allowed is " + requestMaxContentLength + " bytes");
+
+      } else if (input.lineStartsWith(OHttpUtils.HEADER_CONTENT_TYPE)) {
+        final String line = input.getLine(0);
+        iRequest.contentType = line.substring(OHttpUtils.HEADER_CONTENT_TYPE.length());
+        if (OStringSerializerHelper.startsWithIgnoreCase(iRequest.contentType, OHttpUtils.CONTENT_TYPE_MULTIPART)) {
+          iRequest.isMultipart = true;
+          iRequest.boundary = new String(line.substring(OHttpUtils.HEADER_CONTENT_TYPE.length()
+              + OHttpUtils.CONTENT_TYPE_MULTIPART.length() + 2 + OHttpUtils.BOUNDARY.length() + 1));
+        }
+      } else if (input.lineStartsWith(OHttpUtils.HEADER_TRANSFER_ENCODING))
+        chunked = input.getLine(OHttpUtils.HEADER_TRANSFER_ENCODING.length()).trim().equalsIgnoreCase("chunked");
+
+      else if (input.lineStartsWith(OHttpUtils.HEADER_IF_MATCH))
+        iRequest.ifMatch = input.getLine(OHttpUtils.HEADER_IF_MATCH.length());
+
+      else if (input.lineStartsWith(OHttpUtils.HEADER_X_FORWARDED_FOR))
+        connection.data.caller = input.getLine(OHttpUtils.HEADER_X_FORWARDED_FOR.length());
+
+      else if (input.lineStartsWith(OHttpUtils.HEADER_AUTHENTICATION))
+        iRequest.authentication = input.getLine(OHttpUtils.HEADER_AUTHENTICATION.length());
+      else if (input.lineStartsWith("Expect: 100-continue"))
+        // SUPPORT THE CONTINUE TO AUTHORIZE THE CLIENT TO SEND THE CONTENT WITHOUT WAITING THE DELAY
+        sendTextContent(100, null, null, null, null);
+      else if (input.lineStartsWith(OHttpUtils.HEADER_CONTENT_ENCODING))
+        iRequest.contentEncoding = input.getLine(OHttpUtils.HEADER_CONTENT_ENCODING.length());
     }
 
-    if (OLogManager.instance().isDebugEnabled())
-      OLogManager.instance().debug(this, "Error on parsing HTTP content from client %s:\n%s",
-          channel.socket.getInetAddress().getHostAddress(), request);
+    if (lineLength < 0) {
+      if (OLogManager.instance().isDebugEnabled())
+        OLogManager.instance().debug(this, "Error on parsing HTTP content from client %s: connection closed before the end of headers",
+            channel.socket.getInetAddress().getHostAddress());
+      return;
+    }
+
+    final byte[] content;
+    if (chunked) {
+      content = input.readChunked(requestMaxContentLength);
+
+    } else if (contentLength > 0) {
+      if (iRequest.isMultipart) {
+        // THE PARSERS READ THE CONTENT DIRECTLY FROM THE CONNECTION
+        iRequest.content = "";
+        iRequest.multipartStream = new OHttpMultipartBaseInputStream(input, input.read(), contentLength);
+        return;
+      }
+
+      // READ THE CONTENT IN BULK
+      content = new byte[contentLength];
+      input.readFully(content, 0, contentLength);
+
+    } else
+      return;
+
+    if (content.length == 0)
+      return;
 
-    return;
+    if (iRequest.isMultipart) {
+      iRequest.content = "";
+      iRequest.multipartStream = new OHttpMultipartBaseInputStream(new ByteArrayInputStream(content, 1, content.length - 1),
+          content[0] & 0xFF, content.length);
+    } else if (iRequest.contentEncoding != null && iRequest.contentEncoding.equals(OHttpUtils.CONTENT_ACCEPT_GZIP_ENCODED))
+      iRequest.content = this.deCompress(content);
+    else
+      iRequest.content = new String(content);
   }
 
   @Override
@@ -419,68 +405,59 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
       channel.socket.setSoTimeout(socketTimeout);
       connection.data.lastCommandReceived = -1;
 
-      char c = (char) channel.read();
+      // SKIP THE EMPTY LINES BETWEEN THE REQUESTS
+      int lineLength;
+      do {
+        lineLength = input.readLine();
+      } while (lineLength == 0);
 
-      if (channel.inStream.available() == 0) {
+      if (lineLength < 0) {
         connectionClosed();
         return;
       }
 
-      channel.socket.setSoTimeout(socketTimeout);
       connection.data.lastCommandReceived = Orient.instance().getProfiler().startChrono();
 
-      requestContent.setLength(0);
       request.isMultipart = false;
 
-      if (c != '\n')
-        // AVOID INITIAL /N
-        requestContent.append(c);
-
-      while (!channel.socket.isInputShutdown()) {
-        c = (char) channel.read();
-
-        if (c == '\r') {
-          final String[] words = requestContent.toString().split(" ");
-          if (words.length < 3) {
-            OLogManager.instance().warn(this,
-                "->" + channel.socket.getInetAddress().getHostAddress() + ": Error on invalid content:\n" + requestContent);
-            while (channel.inStream.available() > 0) {
-              channel.read();
-            }
-            break;
-          }
-
-          // CONSUME THE NEXT \n
-          channel.read();
-
-          request.httpMethod = words[0].toUpperCase();
-          request.url = words[1].trim();
-
-          final int parametersPos = request.url.indexOf('?');
-          if (parametersPos > -1) {
-            request.parameters = OHttpUtils.getParameters(request.url.substring(parametersPos));
-            request.url = request.url.substring(0, parametersPos);
-          }
-
-          request.httpVersion = words[2];
-          readAllContent(request);
+      final String requestLine = input.getLine(0);
+      final String[] words = requestLine.split(" ");
+      if (words.length < 3) {
+        OLogManager.instance().warn(this,
+            "->" + channel.socket.getInetAddress().getHostAddress() + ": Error on invalid content:\n" + requestLine);
+        input.skip(input.available());
+        return;
+      }
 
-          if (request.content != null && request.contentType.equals(OHttpUtils.CONTENT_TYPE_URLENCODED))
-            request.content = URLDecoder.decode(request.content, "UTF-8").trim();
+      request.httpMethod = words[0].toUpperCase();
+      request.url = words[1].trim();
 
-          if (OLogManager.instance().isDebugEnabled())
-            OLogManager.instance().debug(this, "[ONetworkProtocolHttpAbstract.execute] Requested: %s %s", request.httpMethod,
-                request.url);
+      final int parametersPos = request.url.indexOf('?');
+      if (parametersPos > -1) {
+        request.parameters = OHttpUtils.getParameters(request.url.substring(parametersPos));
+        request.url = request.url.substring(0, parametersPos);
+      }
 
-          service();
-          return;
-        }
-        requestContent.append(c);
+      request.httpVersion = words[2];
+      try {
+        readAllContent(request);
+      } catch (OHttpRequestException e) {
+        // INVALID OR TOO BIG CONTENT: THE REST OF THE REQUEST CAN'T BE SKIPPED, SO THE CONNECTION IS CLOSED
+        OLogManager.instance().warn(this, "->" + channel.socket.getInetAddress().getHostAddress() + ": " + e.getMessage());
+        sendTextContent(OHttpUtils.STATUS_BADREQ_CODE, OHttpUtils.STATUS_BADREQ_DESCRIPTION, null, OHttpUtils.CONTENT_TEXT_PLAIN,
+            e.getMessage());
+        connectionClosed();
+        return;
       }
 
+      if (request.content != null && request.contentType.equals(OHttpUtils.CONTENT_TYPE_URLENCODED))
+        request.content = URLDecoder.decode(request.content, "UTF-8").trim();
+
       if (OLogManager.instance().isDebugEnabled())
-        OLogManager.instance().debug(this,
-            "Parsing request from client " + channel.socket.getInetAddress().getHostAddress() + ":\n" + requestContent);
+        OLogManager.instance().debug(this, "[ONetworkProtocolHttpAbstract.execute] Requested: %s %s", request.httpMethod,
+            request.url);
+
+      service();
 
     } catch (SocketException e) {
       connectionError();
@@ -594,6 +571,10 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
     return account;
   }
 
+  public OClientConnection getConnection() {
+    return connection;
+  }
+
   private String getCommandString(final String command) {
     final int getQueryPosition = command.indexOf('?');
 
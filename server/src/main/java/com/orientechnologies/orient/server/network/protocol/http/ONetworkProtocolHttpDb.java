@@ -51,6 +51,7 @@ import com.orientechnologies.orient.server.network.protocol.http.command.get.OSe
 import com.orientechnologies.orient.server.network.protocol.http.command.get.OServerCommandGetStorageAllocation;
 import com.orientechnologies.orient.server.network.protocol.http.command.options.OServerCommandOptions;
 import com.orientechnologies.orient.server.network.protocol.http.command.post.OServerCommandPostBatch;
+import com.orientechnologies.orient.server.network.protocol.http.command.post.OServerCommandPostCancelCommand;
 import com.orientechnologies.orient.server.network.protocol.http.command.post.OServerCommandPostClass;
 import com.orientechnologies.orient.server.network.protocol.http.command.post.OServerCommandPostCommand;
 import com.orientechnologies.orient.server.network.protocol.http.command.post.OServerCommandPostDatabase;
@@ -112,6 +113,7 @@ public class ONetworkProtocolHttpDb extends ONetworkProtocolHttpAbstract {
     sharedCmdManager.registerCommand(new OServerCommandGetProfiler());
     sharedCmdManager.registerCommand(new OServerCommandGetGephi());
     sharedCmdManager.registerCommand(new OServerCommandPostBatch());
+    sharedCmdManager.registerCommand(new OServerCommandPostCancelCommand());
     sharedCmdManager.registerCommand(new OServerCommandPostClass());
     sharedCmdManager.registerCommand(new OServerCommandPostCommand());
     sharedCmdManager.registerCommand(new OServerCommandPostDatabase());
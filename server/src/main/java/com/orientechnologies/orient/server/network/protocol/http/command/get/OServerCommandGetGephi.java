@@ -120,7 +120,8 @@ public class OServerCommandGetGephi extends OServerCommandAuthenticatedDbAbstrac
               for (Object o : ((Collection<?>) v))
                 if (o instanceof OIdentifiable)
                   links.add(new String[] { rec.getIdentity().toString(), field, ((OIdentifiable) o).getIdentity().toString() });
-            } else
+            } else if (!OGraphDatabase.isLabelField(field))
+              // EDGES PARTITIONED BY LABEL ARE ALREADY IN "out" AND "in"
               json.writeAttribute(3, false, field, v);
           }
         }
@@ -183,7 +184,8 @@ public class OServerCommandGetGephi extends OServerCommandAuthenticatedDbAbstrac
                   // VERTEX IS PART OF RESULT SET: ADD THE EDGE
                   edges.add(e);
               }
-            } else
+            } else if (!OGraphDatabase.isLabelField(field))
+              // EDGES PARTITIONED BY LABEL ARE ALREADY IN "out" AND "in"
               json.writeAttribute(3, false, field, v);
           }
         }
@@ -27,6 +27,7 @@ import java.util.Map.Entry;
 
 import com.orientechnologies.common.concur.resource.OResourcePool;
 import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.command.OCommandMonitor;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.serialization.serializer.OJSONWriter;
 import com.orientechnologies.orient.core.storage.OStorage;
@@ -34,6 +35,7 @@ import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstrac
 import com.orientechnologies.orient.server.OClientConnection;
 import com.orientechnologies.orient.server.OClientConnectionManager;
 import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.ORunningCommandRegistry;
 import com.orientechnologies.orient.server.config.OServerEntryConfiguration;
 import com.orientechnologies.orient.server.db.OSharedDocumentDatabase;
 import com.orientechnologies.orient.server.network.protocol.ONetworkProtocolData;
@@ -67,9 +69,12 @@ public class OServerCommandGetServer extends OServerCommandAuthenticatedServerAb
       String lastCommandOn;
       String connectedOn;
 
+      final ORunningCommandRegistry runningCommands = iRequest.executor.getServer().getRunningCommands();
+
       final List<OClientConnection> conns = OClientConnectionManager.instance().getConnections();
       for (OClientConnection c : conns) {
         final ONetworkProtocolData data = c.data;
+        final OCommandMonitor running = runningCommands.get(c.id);
 
         synchronized (dateTimeFormat) {
           lastCommandOn = dateTimeFormat.format(new Date(data.lastCommandReceived));
@@ -84,6 +89,12 @@ public class OServerCommandGetServer extends OServerCommandAuthenticatedServerAb
         writeField(json, 2, "totalRequests", data.totalRequests);
         writeField(json, 2, "commandInfo", data.commandInfo);
         writeField(json, 2, "commandDetail", data.commandDetail);
+        if (running != null) {
+          writeField(json, 2, "runningCommand", running.getText());
+          writeField(json, 2, "runningTime", System.currentTimeMillis() - running.getStartedOn());
+          writeField(json, 2, "runningRecords", running.getRecords());
+          writeField(json, 2, "runningResults", running.getResults());
+        }
         writeField(json, 2, "lastCommandOn", lastCommandOn);
         writeField(json, 2, "lastCommandInfo", data.lastCommandInfo);
         writeField(json, 2, "lastCommandDetail", data.lastCommandDetail);
@@ -123,6 +134,21 @@ public class OServerCommandGetServer extends OServerCommandAuthenticatedServerAb
       }
       json.endCollection(1, false);
 
+      json.beginCollection(1, true, "dbPools");
+      for (Entry<String, OResourcePool<String, ODatabaseDocumentTx>> entry : dbPool.entrySet()) {
+        final OResourcePool<String, ODatabaseDocumentTx> pool = entry.getValue();
+        json.beginObject(2);
+        writeField(json, 2, "name", entry.getKey());
+        writeField(json, 2, "maxResources", pool.getMaxResources());
+        writeField(json, 2, "created", pool.getCreatedResources());
+        writeField(json, 2, "inUse", pool.getInUseResources());
+        writeField(json, 2, "acquired", pool.getAcquired());
+        writeField(json, 2, "waits", pool.getWaits());
+        writeField(json, 2, "waitTime", pool.getWaitTime());
+        json.endObject(2);
+      }
+      json.endCollection(1, false);
+
       json.beginCollection(1, true, "storages");
       Collection<OStorage> storages = Orient.instance().getStorages();
       for (OStorage s : storages) {
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network.protocol.http.command.post;
+
+import com.orientechnologies.orient.server.network.protocol.http.OHttpRequest;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpResponse;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpUtils;
+import com.orientechnologies.orient.server.network.protocol.http.command.OServerCommandAuthenticatedServerAbstract;
+
+/**
+ * Cancels the command running in a connection. The connections and their running commands are listed by GET server.
+ *
+ * @author Luca Garulli
+ *
+ */
+public class OServerCommandPostCancelCommand extends OServerCommandAuthenticatedServerAbstract {
+  private static final String[] NAMES = { "POST|cancelCommand/*" };
+
+  public OServerCommandPostCancelCommand() {
+    super("server.command.cancel");
+  }
+
+  @Override
+  public boolean execute(final OHttpRequest iRequest, final OHttpResponse iResponse) throws Exception {
+    final String[] urlParts = checkSyntax(iRequest.url, 2, "Syntax error: cancelCommand/<connection-id>");
+
+    iRequest.data.commandInfo = "Cancel command";
+    iRequest.data.commandDetail = urlParts[1];
+
+    if (iRequest.executor.getServer().getRunningCommands().cancel(Integer.parseInt(urlParts[1])))
+      iResponse.send(OHttpUtils.STATUS_OK_CODE, "OK", OHttpUtils.CONTENT_TEXT_PLAIN, "Command cancelled", null);
+    else
+      iResponse.send(OHttpUtils.STATUS_NOTFOUND_CODE, OHttpUtils.STATUS_NOTFOUND_DESCRIPTION, OHttpUtils.CONTENT_TEXT_PLAIN,
+          "No command running in connection " + urlParts[1], null);
+    return false;
+  }
+
+  @Override
+  public String[] getNames() {
+    return NAMES;
+  }
+}
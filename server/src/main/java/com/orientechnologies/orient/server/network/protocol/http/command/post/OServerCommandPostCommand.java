@@ -18,6 +18,7 @@ package com.orientechnologies.orient.server.network.protocol.http.command.post;
 import com.orientechnologies.orient.core.command.OCommandManager;
 import com.orientechnologies.orient.core.command.OCommandRequestText;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.server.ORunningCommandRegistry;
 import com.orientechnologies.orient.server.network.protocol.http.OHttpRequest;
 import com.orientechnologies.orient.server.network.protocol.http.OHttpResponse;
 import com.orientechnologies.orient.server.network.protocol.http.command.OServerCommandAuthenticatedDbAbstract;
@@ -54,12 +55,19 @@ public class OServerCommandPostCommand extends OServerCommandAuthenticatedDbAbst
       cmd.setText(text);
       cmd.setLimit(limit);
       cmd.setFetchPlan(fetchPlan);
-      response = db.command(cmd).execute();
+
+      final ORunningCommandRegistry commands = iRequest.executor.getServer().getRunningCommands();
+      commands.begin(iRequest.executor.getConnection(), text, 0);
+      try {
+        response = db.command(cmd).execute();
+      } finally {
+        commands.end(iRequest.executor.getConnection());
+      }
 
       final String format = fetchPlan != null ? "fetchPlan:" + fetchPlan : null;
 
       iResponse.writeResult(response, format);
-      
+
     } finally {
       if (db != null)
         db.close();
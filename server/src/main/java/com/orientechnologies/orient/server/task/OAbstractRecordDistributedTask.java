@@ -72,6 +72,10 @@ public abstract class OAbstractRecordDistributedTask<T> extends OAbstractDistrib
 
     final OStorageSynchronizer dbSynchronizer = getDatabaseSynchronizer();
 
+    if (status == STATUS.DISTRIBUTE)
+      // REFUSE THE OPERATION BEFORE EXECUTING IT IF IT CANNOT BE REPLICATED
+      dbSynchronizer.checkReplication(this);
+
     final OPERATION_TYPES opType = getOperationType();
 
     // LOG THE OPERATION BEFORE TO SEND TO OTHER NODES
@@ -105,8 +109,15 @@ public abstract class OAbstractRecordDistributedTask<T> extends OAbstractDistrib
       // TODO
 
       if (status == STATUS.DISTRIBUTE) {
+        // DETACH RID AND VERSION FROM THE CALLER'S RECORD BECAUSE THE PIPELINE COULD SEND THE TASK LATER
+        if (rid != null)
+          rid = rid.copy();
+        if (version != null)
+          version = version.copy();
+
         // SEND OPERATION ACROSS THE CLUSTER TO THE TARGET NODES
-        final Map<String, Object> distributedResult = dbSynchronizer.distributeOperation(ORecordOperation.CREATED, rid, this);
+        final Map<String, Object> distributedResult = dbSynchronizer.distributeOperation(ORecordOperation.CREATED, rid, this,
+            localResult);
 
         if (distributedResult != null)
           for (Entry<String, Object> entry : distributedResult.entrySet()) {
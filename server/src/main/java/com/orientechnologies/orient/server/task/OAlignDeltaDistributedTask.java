@@ -0,0 +1,501 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.task;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.iq80.snappy.Snappy;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.OClusterPosition;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ORecordBytes;
+import com.orientechnologies.orient.core.storage.OPhysicalPosition;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.version.ORecordVersion;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.distributed.ODistributedServerManager.EXECUTION_MODE;
+import com.orientechnologies.orient.server.distributed.ODistributedException;
+import com.orientechnologies.orient.server.distributed.ODistributedThreadLocal;
+import com.orientechnologies.orient.server.distributed.OStorageSynchronizer;
+import com.orientechnologies.orient.server.journal.ODatabaseJournal;
+import com.orientechnologies.orient.server.journal.ODatabaseJournal.OPERATION_TYPES;
+
+/**
+ * Distributed align task that ships a compressed chunk of records to a node to align. Every record is sent once with its latest
+ * content, no matter how many times it has been changed since the last operation of the node to align. The receiving node applies
+ * the records of different clusters in parallel, and the records of the same cluster in position order. The created records take
+ * the same positions of the source node: the positions to skip are taken by empty placeholders, deleted once all the records of
+ * the cluster are in place, and the alignment fails if a position cannot be reached.<br/>
+ * <br/>
+ * In snapshot mode the chunk contains all the records of a cluster between two positions: the receiving node also deletes its
+ * records in that range that are not in the chunk.<br/>
+ * <br/>
+ * The last chunk of a delta carries the id of the last operation it covers: once applied, the receiving node journals it so the
+ * next alignment restarts from there.
+ *
+ * @author Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ */
+public class OAlignDeltaDistributedTask extends OAbstractDistributedTask<Integer> {
+  private static final long   serialVersionUID  = 1L;
+
+  protected static final byte FLAG_CREATED      = 1;
+  protected static final byte FLAG_DELETED      = 2;
+
+  protected byte[]            chunk;
+  protected int               records;
+  protected boolean           snapshot;
+  protected int               snapshotClusterId = -1;
+  protected OClusterPosition  snapshotFrom;
+  protected OClusterPosition  snapshotTo;
+  protected long              lastRunId         = -1;
+  protected long              lastOperationId   = -1;
+
+  /**
+   * Record contained in the chunk.
+   */
+  protected static class ODeltaRecord {
+    protected byte           flags;
+    protected ORecordId      rid;
+    protected byte           recordType;
+    protected ORecordVersion version;
+    protected byte[]         content;
+  }
+
+  /**
+   * Collects the records to send and compresses them in one chunk.
+   */
+  public static class OChunkBuilder {
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream      out    = new DataOutputStream(buffer);
+    private int                         records;
+
+    /**
+     * Adds a record.
+     *
+     * @param iRid
+     *          Record id
+     * @param iCreated
+     *          true if the record has been created after the last operation of the target node
+     * @param iRecord
+     *          Current content of the record, or null if it has been deleted
+     */
+    public void add(final ORecordId iRid, final boolean iCreated, final ORawBuffer iRecord) throws IOException {
+      byte flags = 0;
+      if (iCreated)
+        flags |= FLAG_CREATED;
+      if (iRecord == null)
+        flags |= FLAG_DELETED;
+
+      out.writeByte(flags);
+      out.writeShort(iRid.clusterId);
+      out.write(iRid.clusterPosition.toStream());
+      if (iRecord != null) {
+        out.writeByte(iRecord.recordType);
+        iRecord.version.getSerializer().writeTo((DataOutput) out, iRecord.version);
+        out.writeInt(iRecord.buffer.length);
+        out.write(iRecord.buffer);
+      }
+      records++;
+    }
+
+    public int getRecords() {
+      return records;
+    }
+
+    public int getSize() {
+      return buffer.size();
+    }
+
+    public OAlignDeltaDistributedTask toTask(final String iNodeSource, final String iDbName) throws IOException {
+      out.flush();
+      final OAlignDeltaDistributedTask task = new OAlignDeltaDistributedTask(iNodeSource, iDbName, EXECUTION_MODE.SYNCHRONOUS);
+      task.chunk = Snappy.compress(buffer.toByteArray());
+      task.records = records;
+      return task;
+    }
+
+    public void clear() {
+      buffer.reset();
+      records = 0;
+    }
+  }
+
+  public OAlignDeltaDistributedTask() {
+  }
+
+  public OAlignDeltaDistributedTask(final String nodeSource, final String iDbName, final EXECUTION_MODE iMode) {
+    super(nodeSource, iDbName, iMode);
+  }
+
+  /**
+   * Sets the snapshot range covered by the chunk.
+   */
+  public OAlignDeltaDistributedTask setSnapshotRange(final int iClusterId, final OClusterPosition iFrom, final OClusterPosition iTo) {
+    snapshot = true;
+    snapshotClusterId = iClusterId;
+    snapshotFrom = iFrom;
+    snapshotTo = iTo;
+    return this;
+  }
+
+  /**
+   * Sets the id of the last journaled operation covered by the records sent until this chunk.
+   */
+  public OAlignDeltaDistributedTask setLastOperation(final long[] iOperationId) {
+    lastRunId = iOperationId[0];
+    lastOperationId = iOperationId[1];
+    return this;
+  }
+
+  @Override
+  public Integer call() throws Exception {
+    OLogManager.instance().warn(this, "DISTRIBUTED <-[%s/%s] aligning %d record(s)%s", nodeSource, databaseName, records,
+        snapshot ? " (snapshot)" : "");
+
+    // GROUP THE RECORDS BY CLUSTER
+    final Map<Integer, List<ODeltaRecord>> clusters = new LinkedHashMap<Integer, List<ODeltaRecord>>();
+    if (snapshot)
+      clusters.put(snapshotClusterId, new ArrayList<ODeltaRecord>());
+
+    for (ODeltaRecord r : readChunk()) {
+      List<ODeltaRecord> list = clusters.get(r.rid.clusterId);
+      if (list == null) {
+        list = new ArrayList<ODeltaRecord>();
+        clusters.put(r.rid.clusterId, list);
+      }
+      list.add(r);
+    }
+
+    final OStorageSynchronizer dbSynchronizer = getDatabaseSynchronizer();
+
+    // THE THREADS ARE SHARED BY ALL THE CHUNKS OF THE ALIGNMENT AND RELEASED WHEN IT ENDS
+    final ExecutorService executor = dbSynchronizer.getAlignmentExecutor(nodeSource);
+
+    final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+    for (final List<ODeltaRecord> list : clusters.values())
+      results.add(executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          // AVOID TO REPLICATE THE ALIGNED RECORDS BACK
+          ODistributedThreadLocal.INSTANCE.distributedExecution = true;
+          ODistributedThreadLocal.INSTANCE.distributedRequestSource = nodeSource;
+          try {
+            return alignCluster(list);
+          } finally {
+            ODistributedThreadLocal.INSTANCE.distributedExecution = false;
+          }
+        }
+      }));
+
+    int aligned = 0;
+    for (Future<Integer> f : results)
+      aligned += f.get();
+
+    if (lastRunId > -1)
+      journalAlignedOperation(dbSynchronizer.getLog());
+
+    return aligned;
+  }
+
+  /**
+   * Journals the last operation aligned as done, so the next alignment request starts after it.
+   */
+  protected void journalAlignedOperation(final ODatabaseJournal iLog) {
+    try {
+      final long offset = iLog.journalOperation(lastRunId, lastOperationId, OPERATION_TYPES.ALIGN, this);
+      iLog.changeOperationStatus(offset, null);
+    } catch (IOException e) {
+      OLogManager.instance().error(this, "DISTRIBUTED <-[%s/%s] error on logging aligned operation %d.%d", e, nodeSource,
+          databaseName, lastRunId, lastOperationId);
+      throw new ODistributedException("Error on logging aligned operation", e);
+    }
+  }
+
+  /**
+   * Applies the records of one cluster in position order using a dedicated database instance.
+   */
+  protected int alignCluster(final List<ODeltaRecord> iRecords) {
+    Collections.sort(iRecords, new Comparator<ODeltaRecord>() {
+      @Override
+      public int compare(final ODeltaRecord o1, final ODeltaRecord o2) {
+        return o1.rid.clusterPosition.compareTo(o2.rid.clusterPosition);
+      }
+    });
+
+    final ODatabaseDocumentTx database = (ODatabaseDocumentTx) OServerMain.server().openDatabase("document", databaseName,
+        replicatorUser.name, replicatorUser.password);
+    final Set<ORecordId> placeholders = new HashSet<ORecordId>();
+    try {
+      int aligned = 0;
+      for (ODeltaRecord r : iRecords) {
+        alignRecord(database, r, placeholders);
+        aligned++;
+      }
+
+      deletePlaceholders(database, placeholders);
+
+      if (snapshot)
+        deleteMissingRecords(database, iRecords);
+
+      return aligned;
+    } finally {
+      try {
+        // LEAVE NO PLACEHOLDER BEHIND ON ERROR
+        deletePlaceholders(database, placeholders);
+      } finally {
+        database.close();
+      }
+    }
+  }
+
+  protected void alignRecord(final ODatabaseDocumentTx iDatabase, final ODeltaRecord iRecord, final Set<ORecordId> iPlaceholders) {
+    if ((iRecord.flags & FLAG_DELETED) == FLAG_DELETED) {
+      if (iPlaceholders.contains(iRecord.rid))
+        // ALREADY TAKEN BY A PLACEHOLDER
+        return;
+
+      final ORecordInternal<?> local = iDatabase.load(iRecord.rid);
+      if (local != null)
+        local.delete();
+      else if ((iRecord.flags & FLAG_CREATED) == FLAG_CREATED)
+        // CONSUME THE SAME POSITION OF THE SOURCE NODE
+        takePosition(iDatabase, iRecord.rid, getLastPosition(iDatabase, iRecord.rid.clusterId), iPlaceholders);
+      return;
+    }
+
+    if (iPlaceholders.remove(iRecord.rid))
+      // FREE THE POSITION TO CREATE THE RECORD THERE
+      deleteRecord(iDatabase, iRecord.rid);
+
+    final ORecordInternal<?> local = iDatabase.load(iRecord.rid);
+    if (local != null) {
+      // OVERWRITE THE LOCAL CONTENT WITH THE VERSION OF THE SOURCE NODE, WITHOUT CHECKING THE LOCAL VERSION
+      final ORecordVersion version = iRecord.version.copy();
+      version.setRollbackMode();
+
+      final ORecordInternal<?> record = Orient.instance().getRecordFactoryManager().newInstance(iRecord.recordType);
+      record.fill(iRecord.rid, version, iRecord.content, true);
+      record.save();
+    } else
+      create(iDatabase, iRecord.recordType, iRecord.rid, iRecord.version, iRecord.content, iPlaceholders);
+  }
+
+  /**
+   * Creates the record at the same position of the source node. If the record is created elsewhere it's deleted, the positions
+   * before the one of the source node are taken by placeholders and then the record is created again.
+   * 
+   * @throws ODistributedException
+   *           if the record cannot be created at the same position
+   */
+  protected ORecordInternal<?> create(final ODatabaseDocumentTx iDatabase, final byte iRecordType, final ORecordId iRid,
+      final ORecordVersion iVersion, final byte[] iContent, final Set<ORecordId> iPlaceholders) {
+    final OClusterPosition lastPosition = getLastPosition(iDatabase, iRid.clusterId);
+
+    ORecordInternal<?> record = save(iDatabase, iRecordType, iRid.clusterId, iVersion, iContent);
+    if (record.getIdentity().equals(iRid))
+      return record;
+
+    record.delete();
+
+    // THE PLACEHOLDER IN THE RIGHT POSITION IS DELETED TO LEAVE THE POSITION FREE FOR THE NEXT RECORD CREATED
+    takePosition(iDatabase, iRid, lastPosition, iPlaceholders);
+    iPlaceholders.remove(iRid);
+    deleteRecord(iDatabase, iRid);
+
+    record = save(iDatabase, iRecordType, iRid.clusterId, iVersion, iContent);
+    if (!record.getIdentity().equals(iRid)) {
+      final ORID created = record.getIdentity().copy();
+      record.delete();
+      throw new ODistributedException("Record " + iRid + " cannot be aligned at the same position of node " + nodeSource
+          + ": it has been created as " + created);
+    }
+    return record;
+  }
+
+  /**
+   * Creates placeholders until the position of the record is taken by one of them. The positions taken by the placeholders are
+   * collected to delete them once all the records are in place.
+   * 
+   * @param iLastPosition
+   *          Last position of the cluster before creating the placeholders: the new positions after it are assigned in order, so
+   *          once one of them passes the position of the record, the latter cannot be reached anymore
+   * @throws ODistributedException
+   *           if the position cannot be reached
+   */
+  protected void takePosition(final ODatabaseDocumentTx iDatabase, final ORecordId iRid, final OClusterPosition iLastPosition,
+      final Set<ORecordId> iPlaceholders) {
+    while (true) {
+      final ORecordId created = (ORecordId) save(iDatabase, ORecordBytes.RECORD_TYPE, iRid.clusterId,
+          OVersionFactory.instance().createVersion(), new byte[0]).getIdentity();
+      iPlaceholders.add(created);
+
+      if (created.equals(iRid))
+        return;
+
+      if (created.clusterPosition.compareTo(iRid.clusterPosition) > 0 && created.clusterPosition.compareTo(iLastPosition) > 0)
+        throw new ODistributedException("Position of record " + iRid + " cannot be reached to align it with node " + nodeSource
+            + ": the cluster assigned the new position " + created.clusterPosition);
+    }
+  }
+
+  protected ORecordInternal<?> save(final ODatabaseDocumentTx iDatabase, final byte iRecordType, final int iClusterId,
+      final ORecordVersion iVersion, final byte[] iContent) {
+    final ORecordInternal<?> record = Orient.instance().getRecordFactoryManager().newInstance(iRecordType);
+    record.fill(new ORecordId(iClusterId, OClusterPositionFactory.INSTANCE.valueOf(-1)), iVersion, iContent, true);
+    record.save(iDatabase.getClusterNameById(iClusterId));
+    return record;
+  }
+
+  protected OClusterPosition getLastPosition(final ODatabaseDocumentTx iDatabase, final int iClusterId) {
+    return iDatabase.getStorage().getClusterDataRange(iClusterId)[1];
+  }
+
+  protected void deletePlaceholders(final ODatabaseDocumentTx iDatabase, final Set<ORecordId> iPlaceholders) {
+    for (Iterator<ORecordId> it = iPlaceholders.iterator(); it.hasNext();) {
+      deleteRecord(iDatabase, it.next());
+      it.remove();
+    }
+  }
+
+  protected void deleteRecord(final ODatabaseDocumentTx iDatabase, final ORecordId iRid) {
+    final ORecordInternal<?> record = iDatabase.load(iRid);
+    if (record != null)
+      record.delete();
+  }
+
+  /**
+   * Deletes the local records of the snapshot range that don't exist on the source node.
+   */
+  protected void deleteMissingRecords(final ODatabaseDocumentTx iDatabase, final List<ODeltaRecord> iRecords) {
+    final Set<OClusterPosition> received = new HashSet<OClusterPosition>();
+    for (ODeltaRecord r : iRecords)
+      received.add(r.rid.clusterPosition);
+
+    final OStorage storage = iDatabase.getStorage();
+    final List<ORecordId> toDelete = new ArrayList<ORecordId>();
+
+    OPhysicalPosition[] positions = storage.ceilingPhysicalPositions(snapshotClusterId, new OPhysicalPosition(snapshotFrom));
+    while (positions.length > 0) {
+      for (OPhysicalPosition ppos : positions) {
+        if (ppos.clusterPosition.compareTo(snapshotTo) > 0) {
+          positions = new OPhysicalPosition[0];
+          break;
+        }
+        if (!received.contains(ppos.clusterPosition))
+          toDelete.add(new ORecordId(snapshotClusterId, ppos.clusterPosition));
+      }
+
+      if (positions.length > 0)
+        positions = storage.higherPhysicalPositions(snapshotClusterId, positions[positions.length - 1]);
+    }
+
+    for (ORecordId rid : toDelete)
+      deleteRecord(iDatabase, rid);
+  }
+
+  protected List<ODeltaRecord> readChunk() throws IOException {
+    final List<ODeltaRecord> result = new ArrayList<ODeltaRecord>(records);
+
+    final byte[] uncompressed = Snappy.uncompress(chunk, 0, chunk.length);
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(uncompressed));
+    for (int i = 0; i < records; ++i) {
+      final ODeltaRecord r = new ODeltaRecord();
+      r.flags = in.readByte();
+      final int clusterId = in.readShort();
+      r.rid = new ORecordId(clusterId, OClusterPositionFactory.INSTANCE.fromStream((DataInput) in));
+      if ((r.flags & FLAG_DELETED) == 0) {
+        r.recordType = in.readByte();
+        r.version = OVersionFactory.instance().createVersion();
+        r.version.getSerializer().readFrom((DataInput) in, r.version);
+        r.content = new byte[in.readInt()];
+        in.readFully(r.content);
+      }
+      result.add(r);
+    }
+    return result;
+  }
+
+  @Override
+  public void writeExternal(final ObjectOutput out) throws IOException {
+    super.writeExternal(out);
+    out.writeInt(records);
+    out.writeInt(chunk.length);
+    out.write(chunk);
+    out.writeBoolean(snapshot);
+    if (snapshot) {
+      out.writeInt(snapshotClusterId);
+      out.write(snapshotFrom.toStream());
+      out.write(snapshotTo.toStream());
+    }
+    out.writeLong(lastRunId);
+    out.writeLong(lastOperationId);
+  }
+
+  @Override
+  public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+    super.readExternal(in);
+    records = in.readInt();
+    chunk = new byte[in.readInt()];
+    in.readFully(chunk);
+    snapshot = in.readBoolean();
+    if (snapshot) {
+      snapshotClusterId = in.readInt();
+      snapshotFrom = OClusterPositionFactory.INSTANCE.fromStream(in);
+      snapshotTo = OClusterPositionFactory.INSTANCE.fromStream(in);
+    }
+    lastRunId = in.readLong();
+    lastOperationId = in.readLong();
+  }
+
+  @Override
+  public String getName() {
+    return "align_delta";
+  }
+
+  @Override
+  public String toString() {
+    return getName() + "(" + records + " records" + (snapshot ? ", snapshot of cluster " + snapshotClusterId : "") + ")";
+  }
+}
@@ -20,27 +20,47 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.locks.Lock;
 
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.ORecordOperation;
+import com.orientechnologies.orient.core.id.OClusterPosition;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.storage.OPhysicalPosition;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OStorage;
 import com.orientechnologies.orient.server.distributed.ODistributedServerManager;
 import com.orientechnologies.orient.server.distributed.ODistributedServerManager.EXECUTION_MODE;
 import com.orientechnologies.orient.server.distributed.OStorageSynchronizer;
 import com.orientechnologies.orient.server.journal.ODatabaseJournal;
+import com.orientechnologies.orient.server.journal.ODatabaseJournal.OPERATION_TYPES;
+import com.orientechnologies.orient.server.task.OAlignDeltaDistributedTask.OChunkBuilder;
 
 /**
- * Distributed align request task used for synchronization.
+ * Distributed align request task used for synchronization. The operations journaled after the last one received by the requester
+ * node are compacted by record and sent as compressed chunks of {@link OAlignDeltaDistributedTask}. When the requester node is too
+ * far behind a snapshot of the database is sent instead.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
 public class OAlignRequestDistributedTask extends OAbstractDistributedTask<Integer> {
-  private static final long  serialVersionUID = 1L;
+  private static final long  serialVersionUID   = 1L;
 
   protected long             lastRunId;
   protected long             lastOperationId;
-  protected static final int OP_BUFFER        = 150;
+
+  /**
+   * Size of the uncompressed chunks of records sent to the requester node.
+   */
+  protected static final int CHUNK_SIZE         = 1024 * 1024;
 
   public OAlignRequestDistributedTask() {
   }
@@ -73,39 +93,25 @@ public class OAlignRequestDistributedTask extends OAbstractDistributedTask<Integ
     final Lock alignmentLock = dManager.getLock("align." + databaseName);
     if (alignmentLock.tryLock())
       try {
-        aligned = 0;
-        final OMultipleDistributedTasks tasks = new OMultipleDistributedTasks(localNode, databaseName, EXECUTION_MODE.SYNCHRONOUS);
         final List<Long> positions = new ArrayList<Long>();
-
-        Iterator<Long> it = log.browse(new long[] { lastRunId, lastOperationId });
-        //for (Iterator<Long> it = log.browse(new long[] { lastRunId, lastOperationId }); it.hasNext();) {
-        while(it.hasNext()) {
-          final long pos = it.next();
-
-          final OAbstractDistributedTask<?> operation = log.getOperation(pos);
-          if (operation == null) {
-            OLogManager.instance().warn(this, "DISTRIBUTED ->[%s/%s] skipped operation #%d.%d", nodeSource, databaseName,
-                lastRunId, lastOperationId);
-            continue;
-          }
-
-          OLogManager.instance().warn(this, "DISTRIBUTED ->[%s/%s] operation %s", nodeSource, databaseName, operation);
-
-          operation.setNodeSource(localNode);
-          operation.setDatabaseName(databaseName);
-          operation.setMode(EXECUTION_MODE.SYNCHRONOUS);
-
-          tasks.addTask(operation);
-          positions.add(pos);
-
-          if (tasks.getTasks() >= OP_BUFFER)
-            aligned += flushBufferedTasks(dManager, synchronizer, tasks, positions);
+        for (Iterator<Long> it = log.browse(new long[] { lastRunId, lastOperationId }); it.hasNext();)
+          positions.add(it.next());
+
+        final ODatabaseDocumentTx database = openDatabase();
+        try {
+          if (lastRunId == -1 && lastOperationId == -1
+              || positions.size() > OGlobalConfiguration.DISTRIBUTED_ALIGN_SNAPSHOT_THRESHOLD.getValueAsInteger())
+            aligned = alignBySnapshot(dManager, database.getStorage(), log.getLastOperationId(false));
+          else
+            aligned = alignByDelta(dManager, database.getStorage(), log, positions);
+        } finally {
+          closeDatabase(database);
         }
 
-        if (tasks.getTasks() > 0)
-          aligned += flushBufferedTasks(dManager, synchronizer, tasks, positions);
+        for (Long pos : positions)
+          setAsCompleted(synchronizer, pos);
 
-        OLogManager.instance().warn(this, "DISTRIBUTED ->[%s/%s] aligned %d operations", nodeSource, databaseName, aligned);
+        OLogManager.instance().warn(this, "DISTRIBUTED ->[%s/%s] aligned %d records", nodeSource, databaseName, aligned);
       } finally {
         alignmentLock.unlock();
       }
@@ -120,25 +126,140 @@ public class OAlignRequestDistributedTask extends OAbstractDistributedTask<Integ
     return aligned;
   }
 
-  protected int flushBufferedTasks(final ODistributedServerManager dManager, final OStorageSynchronizer synchronizer,
-      final OMultipleDistributedTasks tasks, final List<Long> positions) throws IOException {
+  /**
+   * Compacts the journaled operations by record, so a record changed many times is sent only once with its latest content, and
+   * sends them in compressed chunks. SQL commands cannot be compacted: they are sent as they are after the records changed before
+   * them.
+   */
+  protected int alignByDelta(final ODistributedServerManager dManager, final OStorage iStorage, final ODatabaseJournal log,
+      final List<Long> positions) throws IOException {
+    int aligned = 0;
+
+    final Map<ORecordId, Boolean> delta = new LinkedHashMap<ORecordId, Boolean>();
+    long[] deltaLastOperation = null;
+
+    for (Long pos : positions) {
+      if (log.getOperationType(pos) == OPERATION_TYPES.SQL_COMMAND) {
+        aligned += sendDelta(dManager, iStorage, delta, deltaLastOperation);
+
+        final OAbstractDistributedTask<?> command = log.getOperation(pos);
+        if (command == null) {
+          OLogManager.instance().warn(this, "DISTRIBUTED ->[%s/%s] skipped operation at position %d", nodeSource, databaseName,
+              pos);
+          continue;
+        }
 
-    // SEND TO THE REQUESTER NODE THE TASK TO EXECUTE
-    @SuppressWarnings("unused")
-    final Object[] result = (Object[]) dManager.sendOperation2Node(nodeSource, tasks);
+        command.setNodeSource(dManager.getLocalNodeId());
+        command.setDatabaseName(databaseName);
+        command.setMode(EXECUTION_MODE.SYNCHRONOUS);
+        dManager.sendOperation2Node(nodeSource, command);
+        aligned++;
+        continue;
+      }
 
-    for (int i = 0; i < positions.size(); ++i)
-      tasks.getTask(i).setAsCompleted(synchronizer, positions.get(i));
+      for (Entry<ORecordId, Byte> entry : log.getOperationRecords(pos).entrySet()) {
+        final Boolean created = delta.get(entry.getKey());
+        delta.put(entry.getKey(), (created != null && created) || entry.getValue() == ORecordOperation.CREATED);
+      }
+      deltaLastOperation = log.getOperationId(pos);
+    }
 
-    final int aligned = tasks.getTasks();
+    aligned += sendDelta(dManager, iStorage, delta, deltaLastOperation);
+    return aligned;
+  }
 
-    // REUSE THE MULTIPLE TASK
-    tasks.clearTasks();
-    positions.clear();
+  /**
+   * Sends the current content of all the records of the database. Used when the requester node has no journal or is too far
+   * behind: every chunk covers a range of positions of a cluster, so the requester node deletes the records not received in
+   * that range. The last chunk carries the last operation journaled before the snapshot started.
+   */
+  protected int alignBySnapshot(final ODistributedServerManager dManager, final OStorage iStorage, final long[] iLastOperation)
+      throws IOException {
+    int aligned = 0;
+
+    final OChunkBuilder builder = new OChunkBuilder();
+
+    final List<Integer> clusterIds = new ArrayList<Integer>();
+    for (String clusterName : iStorage.getClusterNames()) {
+      final int clusterId = iStorage.getClusterIdByName(clusterName);
+      if (clusterId > -1)
+        clusterIds.add(clusterId);
+    }
+
+    for (int i = 0; i < clusterIds.size(); ++i) {
+      final int clusterId = clusterIds.get(i);
+
+      OClusterPosition from = OClusterPositionFactory.INSTANCE.valueOf(0);
+
+      OPhysicalPosition[] ppositions = iStorage.ceilingPhysicalPositions(clusterId, new OPhysicalPosition(from));
+
+      while (ppositions.length > 0) {
+        for (OPhysicalPosition ppos : ppositions) {
+          final ORecordId rid = new ORecordId(clusterId, ppos.clusterPosition);
+          final ORawBuffer buffer = iStorage.readRecord(rid, null, false, null, false).getResult();
+          if (buffer != null)
+            builder.add(rid, false, buffer);
+
+          if (builder.getSize() >= CHUNK_SIZE) {
+            aligned += sendChunk(dManager, builder.toTask(dManager.getLocalNodeId(), databaseName).setSnapshotRange(clusterId,
+                from, rid.clusterPosition));
+            builder.clear();
+            from = rid.clusterPosition.inc();
+          }
+        }
 
+        ppositions = iStorage.higherPhysicalPositions(clusterId, ppositions[ppositions.length - 1]);
+      }
+
+      // THE LAST CHUNK OF THE CLUSTER COVERS UNTIL THE END
+      final OAlignDeltaDistributedTask lastChunk = builder.toTask(dManager.getLocalNodeId(), databaseName).setSnapshotRange(
+          clusterId, from, OClusterPositionFactory.INSTANCE.getMaxValue());
+      if (i == clusterIds.size() - 1 && iLastOperation[0] > -1)
+        lastChunk.setLastOperation(iLastOperation);
+
+      aligned += sendChunk(dManager, lastChunk);
+      builder.clear();
+    }
+
+    return aligned;
+  }
+
+  /**
+   * Sends the records of the delta in chunks. The last chunk carries the last operation covered by the delta, so the requester
+   * node can resume the alignment after it.
+   */
+  protected int sendDelta(final ODistributedServerManager dManager, final OStorage iStorage, final Map<ORecordId, Boolean> delta,
+      final long[] iLastOperation) throws IOException {
+    if (delta.isEmpty())
+      return 0;
+
+    int aligned = 0;
+
+    final OChunkBuilder builder = new OChunkBuilder();
+    for (Entry<ORecordId, Boolean> entry : delta.entrySet()) {
+      if (builder.getSize() >= CHUNK_SIZE) {
+        aligned += sendChunk(dManager, builder.toTask(dManager.getLocalNodeId(), databaseName));
+        builder.clear();
+      }
+
+      // READ THE LATEST CONTENT: IF THE RECORD IS MISSING IT HAS BEEN DELETED
+      final ORawBuffer buffer = iStorage.readRecord(entry.getKey(), null, false, null, false).getResult();
+      builder.add(entry.getKey(), entry.getValue(), buffer);
+    }
+
+    aligned += sendChunk(dManager, builder.toTask(dManager.getLocalNodeId(), databaseName).setLastOperation(iLastOperation));
+
+    delta.clear();
     return aligned;
   }
 
+  protected int sendChunk(final ODistributedServerManager dManager, final OAlignDeltaDistributedTask iChunk) {
+    OLogManager.instance().warn(this, "DISTRIBUTED ->[%s/%s] sending %s", nodeSource, databaseName, iChunk);
+
+    final Object result = dManager.sendOperation2Node(nodeSource, iChunk);
+    return result instanceof Integer ? (Integer) result : 0;
+  }
+
   @Override
   public void writeExternal(final ObjectOutput out) throws IOException {
     super.writeExternal(out);
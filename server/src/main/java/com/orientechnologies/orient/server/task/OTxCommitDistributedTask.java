@@ -0,0 +1,398 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.task;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.ORecordOperation;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.tx.OTransaction;
+import com.orientechnologies.orient.core.tx.OTransaction.TXTYPE;
+import com.orientechnologies.orient.core.version.ORecordVersion;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+import com.orientechnologies.orient.server.distributed.ODistributedException;
+import com.orientechnologies.orient.server.distributed.ODistributedServerManager;
+import com.orientechnologies.orient.server.distributed.ODistributedServerManager.EXECUTION_MODE;
+import com.orientechnologies.orient.server.distributed.ODistributedThreadLocal;
+import com.orientechnologies.orient.server.distributed.OServerOfflineException;
+import com.orientechnologies.orient.server.distributed.OStorageSynchronizer;
+import com.orientechnologies.orient.server.distributed.conflict.OReplicationConflictResolver;
+import com.orientechnologies.orient.server.journal.ODatabaseJournal.OPERATION_TYPES;
+
+/**
+ * Distributed task that replicates all the records of a committed transaction in one shot. The node that commits the transaction
+ * journals it, executes it locally and then sends this task to the other nodes, where the record operations are applied inside a
+ * new transaction, so either all or none of them are applied. The versions of updated and deleted records are checked by the MVCC
+ * of the local transaction, while the RIDs of the created records are checked against the ones assigned by the source node: the
+ * records created at a different position are passed to the conflict resolver and the node answers false.
+ *
+ * @author Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ */
+public class OTxCommitDistributedTask extends OAbstractDistributedTask<Boolean> {
+  private static final long    serialVersionUID = 1L;
+
+  protected List<OTxOperation> operations       = new ArrayList<OTxOperation>();
+  protected OStorage           localStorage;
+  protected OTransaction       localTx;
+
+  /**
+   * Record operation contained in the transaction.
+   */
+  public static class OTxOperation {
+    public byte           type;
+    public ORecordId      rid;
+    public ORecordVersion version;
+    public byte           recordType;
+    public byte[]         content;
+
+    public OTxOperation() {
+    }
+
+    public OTxOperation(final byte iType, final ORecordId iRid, final ORecordVersion iVersion, final byte iRecordType,
+        final byte[] iContent) {
+      type = iType;
+      rid = iRid;
+      version = iVersion;
+      recordType = iRecordType;
+      content = iContent;
+    }
+
+    @Override
+    public String toString() {
+      return ORecordOperation.getName(type) + " " + rid + " v." + version;
+    }
+  }
+
+  public OTxCommitDistributedTask() {
+  }
+
+  public OTxCommitDistributedTask(final String nodeSource, final String iDbName, final EXECUTION_MODE iMode) {
+    super(nodeSource, iDbName, iMode);
+  }
+
+  /**
+   * Creates the task to distribute a transaction not committed yet. The transaction is committed against the local storage by
+   * {@link #call()} after having journaled it.
+   */
+  public OTxCommitDistributedTask(final String nodeSource, final String iDbName, final EXECUTION_MODE iMode,
+      final OStorage iLocalStorage, final OTransaction iTx) {
+    super(nodeSource, iDbName, iMode);
+    localStorage = iLocalStorage;
+    localTx = iTx;
+
+    // RIDS OF CREATED RECORDS ARE STILL TEMPORARY: THEY ARE UPDATED IN THE JOURNAL ONCE COMMITTED
+    for (ORecordOperation op : iTx.getCurrentRecordEntries())
+      if (op.type != ORecordOperation.LOADED) {
+        final ORecordInternal<?> record = op.getRecord();
+        operations.add(new OTxOperation(op.type, ((ORecordId) record.getIdentity()).copy(), record.getRecordVersion().copy(), record
+            .getRecordType(), null));
+      }
+  }
+
+  public OTxCommitDistributedTask(final long iRunId, final long iOperationId) {
+    super(iRunId, iOperationId);
+  }
+
+  /**
+   * Adds a committed record operation. The version of updated records is the one before the update to let the other nodes check
+   * it.
+   */
+  public void addOperation(final ORecordOperation iOperation) {
+    final ORecordInternal<?> record = iOperation.getRecord();
+
+    final ORecordVersion version = record.getRecordVersion().copy();
+    if (iOperation.type == ORecordOperation.UPDATED)
+      version.decrement();
+
+    operations.add(new OTxOperation(iOperation.type, ((ORecordId) record.getIdentity()).copy(), version, record.getRecordType(),
+        iOperation.type == ORecordOperation.DELETED ? null : record.toStream()));
+  }
+
+  public void addOperation(final OTxOperation iOperation) {
+    operations.add(iOperation);
+  }
+
+  public List<OTxOperation> getOperations() {
+    return operations;
+  }
+
+  @Override
+  public Boolean call() throws Exception {
+    if (OLogManager.instance().isDebugEnabled())
+      OLogManager.instance().debug(this, "DISTRIBUTED <-[%s] %s", nodeSource, this);
+
+    final ODistributedServerManager dManager = getDistributedServerManager();
+    if (status != STATUS.ALIGN && !dManager.checkStatus("online") && !nodeSource.equals(dManager.getLocalNodeId()))
+      // NODE NOT ONLINE, REFUSE THE OPEPRATION
+      throw new OServerOfflineException(dManager.getLocalNodeId(),
+          "Cannot execute the operation because the server is offline: current status: " + dManager.getStatus());
+
+    final OStorageSynchronizer dbSynchronizer = getDatabaseSynchronizer();
+
+    if (status == STATUS.DISTRIBUTE)
+      // REFUSE THE TRANSACTION BEFORE COMMITTING IT IF IT CANNOT BE REPLICATED
+      dbSynchronizer.checkReplication(this);
+
+    // LOG THE OPERATION BEFORE EXECUTING IT
+    final long operationLogOffset;
+    try {
+      operationLogOffset = dbSynchronizer.getLog().journalOperation(runId, operationSerial, OPERATION_TYPES.TX_COMMIT, this);
+    } catch (IOException e) {
+      OLogManager.instance().error(this, "DISTRIBUTED <-[%s] error on logging operation %s", e, nodeSource, this);
+      throw new ODistributedException("Error on logging operation", e);
+    }
+
+    final boolean sameRids;
+    if (status == STATUS.DISTRIBUTE) {
+      commitOnLocalNode();
+      sameRids = true;
+    } else
+      sameRids = executeOnLocalNode();
+
+    try {
+      // MARK IT AS APPLIED WITH THE FINAL RIDS
+      dbSynchronizer.getLog().changeTxOperationStatus(operationLogOffset, operations);
+    } catch (IOException e) {
+      // THE TRANSACTION IS ALREADY COMMITTED: THE OPERATION STAYS IN THE JOURNAL AS UNCOMMITTED, SO ON RECOVERY ITS RECORDS ARE
+      // READ AGAIN FROM THE OTHER NODES
+      OLogManager.instance().error(this, "DISTRIBUTED <-[%s] error on changing the log status for operation %s", e, nodeSource,
+          this);
+    }
+
+    if (status == STATUS.DISTRIBUTE) {
+      // SEND THE WHOLE TRANSACTION ACROSS THE CLUSTER TO THE TARGET NODES
+      final Map<String, Object> distributedResult = dbSynchronizer.distributeOperation(ORecordOperation.UPDATED, null, this,
+          Boolean.TRUE);
+
+      if (distributedResult != null)
+        for (Entry<String, Object> entry : distributedResult.entrySet())
+          if (!Boolean.TRUE.equals(entry.getValue()))
+            handleConflict(entry.getKey(), Boolean.TRUE, entry.getValue());
+    }
+
+    return sameRids;
+  }
+
+  /**
+   * Commits the transaction of the caller against the local storage, then collects the records to send with the RIDs and versions
+   * assigned by the commit.
+   */
+  protected void commitOnLocalNode() {
+    if (localTx == null)
+      throw new ODistributedException("Transaction to distribute has not been set");
+
+    localStorage.commit(localTx);
+
+    operations.clear();
+    for (ORecordOperation op : localTx.getCurrentRecordEntries())
+      if (op.type != ORecordOperation.LOADED)
+        addOperation(op);
+  }
+
+  /**
+   * Applies all the record operations in one transaction.
+   * 
+   * @return true if all the records have been created with the same RIDs of the source node, otherwise false after having passed
+   *         the different ones to the conflict resolver
+   */
+  protected boolean executeOnLocalNode() {
+    OLogManager.instance().warn(this, "DISTRIBUTED <-[%s/%s] COMMIT TX of %d record(s)", nodeSource, databaseName,
+        operations.size());
+
+    final List<OTxOperation> createdOperations = new ArrayList<OTxOperation>();
+    final List<ORecordInternal<?>> createdRecords = new ArrayList<ORecordInternal<?>>();
+    final List<ORecordId> differentRids = new ArrayList<ORecordId>();
+
+    final ODatabaseDocumentTx database = openDatabase();
+    ODistributedThreadLocal.INSTANCE.distributedExecution = true;
+    ODistributedThreadLocal.INSTANCE.distributedRequestSource = nodeSource;
+    try {
+      database.begin(TXTYPE.OPTIMISTIC);
+      try {
+        for (OTxOperation op : operations) {
+          switch (op.type) {
+          case ORecordOperation.CREATED: {
+            final ORecordInternal<?> record = Orient.instance().getRecordFactoryManager().newInstance(op.recordType);
+            record.fill(new ORecordId(op.rid.clusterId, OClusterPositionFactory.INSTANCE.valueOf(-1)), op.version, op.content, true);
+            record.save(database.getClusterNameById(op.rid.clusterId));
+            createdOperations.add(op);
+            createdRecords.add(record);
+            break;
+          }
+
+          case ORecordOperation.UPDATED: {
+            final ORecordInternal<?> record = Orient.instance().getRecordFactoryManager().newInstance(op.recordType);
+            record.fill(op.rid, op.version, op.content, true);
+            record.save();
+            break;
+          }
+
+          case ORecordOperation.DELETED: {
+            final ORecordInternal<?> record = database.load(op.rid);
+            if (record != null) {
+              record.getRecordVersion().copyFrom(op.version);
+              record.delete();
+            }
+            break;
+          }
+          }
+        }
+
+        database.commit();
+
+      } catch (RuntimeException e) {
+        database.rollback();
+        throw e;
+      }
+
+      // THE RIDS ARE FINAL ONLY AFTER THE COMMIT
+      for (int i = 0; i < createdRecords.size(); ++i) {
+        final ORecordId rid = (ORecordId) createdRecords.get(i).getIdentity();
+        if (!rid.equals(createdOperations.get(i).rid)) {
+          differentRids.add(rid.copy());
+          differentRids.add(createdOperations.get(i).rid);
+        }
+      }
+    } finally {
+      ODistributedThreadLocal.INSTANCE.distributedExecution = false;
+      closeDatabase(database);
+    }
+
+    if (differentRids.isEmpty())
+      return true;
+
+    final ODatabaseRecord currentDatabase = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    try {
+      final OReplicationConflictResolver resolver = getDatabaseSynchronizer().getConflictResolver();
+      for (int i = 0; i < differentRids.size(); i += 2) {
+        OLogManager.instance().error(this, "DISTRIBUTED <-[%s/%s] record %s has been created as %s", nodeSource, databaseName,
+            differentRids.get(i + 1), differentRids.get(i));
+        resolver.handleCreateConflict(nodeSource, differentRids.get(i), differentRids.get(i + 1));
+      }
+    } finally {
+      // THE RESOLVER WORKS ON ITS OWN DATABASE
+      if (currentDatabase != null)
+        ODatabaseRecordThreadLocal.INSTANCE.set(currentDatabase);
+    }
+    return false;
+  }
+
+  /**
+   * Handles the transactions not applied by a node, or applied with different RIDs for the created records. In the latter case the
+   * node has already passed the different RIDs to its conflict resolver, while in the former all the records of the transaction
+   * are passed to the local one.
+   */
+  @Override
+  public void handleConflict(final String iRemoteNodeId, final Object localResult, final Object remoteResult) {
+    OLogManager.instance().error(this, "DISTRIBUTED ->[%s/%s] conflict on replicating transaction %s: local=%s remote=%s",
+        iRemoteNodeId, databaseName, this, localResult, remoteResult);
+
+    if (remoteResult != null)
+      return;
+
+    final ODatabaseRecord currentDatabase = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    try {
+      final OReplicationConflictResolver resolver = getDatabaseSynchronizer().getConflictResolver();
+      for (OTxOperation op : operations) {
+        switch (op.type) {
+        case ORecordOperation.CREATED:
+          resolver.handleCreateConflict(iRemoteNodeId, op.rid, null);
+          break;
+
+        case ORecordOperation.UPDATED: {
+          // THE VERSION OF THE OPERATION IS THE ONE BEFORE THE UPDATE, STILL PRESENT ON THE REMOTE NODE
+          final ORecordVersion currentVersion = op.version.copy();
+          currentVersion.increment();
+          resolver.handleUpdateConflict(iRemoteNodeId, op.rid, currentVersion, op.version.getCounter());
+          break;
+        }
+
+        case ORecordOperation.DELETED:
+          resolver.handleDeleteConflict(iRemoteNodeId, op.rid);
+          break;
+        }
+      }
+    } finally {
+      // THE RESOLVER WORKS ON ITS OWN DATABASE
+      if (currentDatabase != null)
+        ODatabaseRecordThreadLocal.INSTANCE.set(currentDatabase);
+    }
+  }
+
+  @Override
+  public void writeExternal(final ObjectOutput out) throws IOException {
+    super.writeExternal(out);
+    out.writeInt(operations.size());
+    for (OTxOperation op : operations) {
+      out.writeByte(op.type);
+      out.writeUTF(op.rid.toString());
+      op.version.getSerializer().writeTo(out, op.version);
+      out.writeByte(op.recordType);
+      if (op.content == null)
+        out.writeInt(-1);
+      else {
+        out.writeInt(op.content.length);
+        out.write(op.content);
+      }
+    }
+  }
+
+  @Override
+  public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+    super.readExternal(in);
+    final int size = in.readInt();
+    operations = new ArrayList<OTxOperation>(size);
+    for (int i = 0; i < size; ++i) {
+      final OTxOperation op = new OTxOperation();
+      op.type = in.readByte();
+      op.rid = new ORecordId(in.readUTF());
+      op.version = OVersionFactory.instance().createVersion();
+      op.version.getSerializer().readFrom(in, op.version);
+      op.recordType = in.readByte();
+      final int contentSize = in.readInt();
+      if (contentSize > -1) {
+        op.content = new byte[contentSize];
+        in.readFully(op.content);
+      }
+      operations.add(op);
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "tx_commit";
+  }
+
+  @Override
+  public String toString() {
+    return getName() + "(" + operations.size() + " records)";
+  }
+}
@@ -0,0 +1,185 @@
+package com.orientechnologies.orient.server.distributed;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OStorageEmbedded;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.distributed.OReadBalancer.READ_POLICY;
+import com.orientechnologies.orient.server.task.OReadRecordDistributedTask;
+
+@Test
+public class ODistributedStorageTest {
+  private Object                    keepOpen;
+  private ODatabaseDocumentTx       database;
+  private ORecordId                 rid;
+  private byte[]                    localContent;
+  private ODistributedServerManager manager;
+  private OReadBalancer             balancer;
+  private List<String>              replicas     = new ArrayList<String>();
+  private final Set<String>         failingNodes = Collections.synchronizedSet(new HashSet<String>());
+  private final List<String>        readNodes    = Collections.synchronizedList(new ArrayList<String>());
+
+  @BeforeClass
+  public void beforeClass() throws Exception {
+    keepOpen = OGlobalConfiguration.STORAGE_KEEP_OPEN.getValue();
+
+    // THE DISTRIBUTED TASKS LOOK UP THE REPLICATOR USER IN THE SERVER CONFIGURATION
+    OServerMain.create().startup(
+        "<orient-server><network><protocols></protocols><listeners></listeners></network><users><user name=\""
+            + ODistributedAbstractPlugin.REPLICATOR_USER
+            + "\" password=\"test\" resources=\"*\"/></users><properties></properties></orient-server>");
+
+    manager = (ODistributedServerManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { ODistributedServerManager.class }, new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            if (name.equals("getLocalNodeId"))
+              return "local";
+            if (name.equals("getRunId") || name.equals("incrementDistributedSerial"))
+              return 0l;
+            if (name.equals("isLocalNodeMaster") || name.equals("isOfflineNode"))
+              return false;
+            if (name.equals("checkStatus"))
+              return true;
+            if (name.equals("getMasterNode"))
+              return "master";
+            if (name.equals("getSynchronousReplicaNodes"))
+              return replicas;
+            if (name.equals("getReadBalancer"))
+              return balancer;
+            if (name.equals("sendOperation2Node"))
+              return read((String) args[0]);
+            if (name.equals("routeOperation2Node"))
+              return args[2] instanceof OReadRecordDistributedTask ? read("master") : Boolean.TRUE;
+            if (name.equals("hashCode"))
+              return System.identityHashCode(proxy);
+            if (name.equals("equals"))
+              return proxy == args[0];
+            return null;
+          }
+        });
+
+    // THE DISTRIBUTED TASKS RESOLVE THE MANAGER THROUGH THE SERVER
+    OServerMain.server().setVariable("ODistributedAbstractPlugin", manager);
+
+    database = new ODatabaseDocumentTx("memory:ODistributedStorageTest").create();
+    final ODocument doc = new ODocument().field("name", "local");
+    doc.save();
+    rid = (ORecordId) doc.getIdentity();
+    localContent = doc.toStream();
+  }
+
+  @AfterClass
+  public void afterClass() {
+    database.drop();
+    OGlobalConfiguration.STORAGE_KEEP_OPEN.setValue(keepOpen);
+  }
+
+  @BeforeMethod
+  public void beforeMethod() {
+    replicas = new ArrayList<String>();
+    failingNodes.clear();
+    readNodes.clear();
+  }
+
+  public void testLocalPolicyWithoutLocalReplica() {
+    balancer = new OReadBalancer(READ_POLICY.LOCAL);
+    replicas.add("replica1");
+
+    final ODistributedStorage storage = createStorage();
+    Assert.assertEquals(readContent(storage), "master");
+    Assert.assertEquals(readNodes, Arrays.asList("master"));
+  }
+
+  public void testLocalPolicyWithLocalReplica() {
+    balancer = new OReadBalancer(READ_POLICY.LOCAL);
+    replicas.add("local");
+
+    final ODistributedStorage storage = createStorage();
+    final ORawBuffer buffer = storage.readRecord(rid, null, false, null, false).getResult();
+    Assert.assertEquals(buffer.buffer, localContent);
+    Assert.assertTrue(readNodes.isEmpty());
+  }
+
+  public void testFallbackToMasterOnReplicaError() {
+    balancer = new OReadBalancer(READ_POLICY.ROUND_ROBIN);
+    replicas.add("replica1");
+    failingNodes.add("replica1");
+
+    final ODistributedStorage storage = createStorage();
+    for (int i = 0; i < 4; ++i)
+      Assert.assertEquals(readContent(storage), "master");
+
+    Assert.assertTrue(readNodes.contains("replica1"));
+  }
+
+  public void testReadsPinnedToMasterAfterWrite() {
+    balancer = new OReadBalancer(READ_POLICY.ROUND_ROBIN);
+    replicas.add("replica1");
+
+    final ODistributedStorage storage = createStorage();
+    for (int i = 0; i < 4; ++i)
+      readContent(storage);
+    Assert.assertTrue(readNodes.contains("replica1"));
+
+    storage.deleteRecord(rid, OVersionFactory.instance().createUntrackedVersion(), 0, null);
+
+    readNodes.clear();
+    for (int i = 0; i < 4; ++i)
+      Assert.assertEquals(readContent(storage), "master");
+    Assert.assertEquals(readNodes, Arrays.asList("master", "master", "master", "master"));
+  }
+
+  public void testReadsBalancedAgainWhenSessionEnds() {
+    balancer = new OReadBalancer(READ_POLICY.ROUND_ROBIN);
+    replicas.add("replica1");
+
+    final ODistributedStorage storage = createStorage();
+    storage.deleteRecord(rid, OVersionFactory.instance().createUntrackedVersion(), 0, null);
+    for (int i = 0; i < 4; ++i)
+      Assert.assertEquals(readContent(storage), "master");
+
+    // THE POOLED DATABASES KEEP THE STORAGE ACROSS THE SESSIONS
+    storage.unpinFromMaster();
+
+    readNodes.clear();
+    for (int i = 0; i < 4; ++i)
+      readContent(storage);
+    Assert.assertTrue(readNodes.contains("replica1"));
+  }
+
+  private ODistributedStorage createStorage() {
+    return new ODistributedStorage(manager, null, (OStorageEmbedded) database.getStorage());
+  }
+
+  private String readContent(final ODistributedStorage iStorage) {
+    return new String(iStorage.readRecord(rid, null, false, null, false).getResult().buffer);
+  }
+
+  private ORawBuffer read(final String iNodeId) {
+    readNodes.add(iNodeId);
+    if (failingNodes.contains(iNodeId))
+      throw new ODistributedException("Node " + iNodeId + " is not reachable");
+    return new ORawBuffer(iNodeId.getBytes(), OVersionFactory.instance().createVersion(), ODocument.RECORD_TYPE);
+  }
+}
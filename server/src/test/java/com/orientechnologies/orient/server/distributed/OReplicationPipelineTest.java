@@ -0,0 +1,231 @@
+package com.orientechnologies.orient.server.distributed;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.distributed.ODistributedServerManager.EXECUTION_MODE;
+import com.orientechnologies.orient.server.task.OAbstractDistributedTask;
+import com.orientechnologies.orient.server.task.OMultipleDistributedTasks;
+
+@Test
+public class OReplicationPipelineTest {
+  private Object                            keepOpen;
+  private final Set<String>                 offlineNodes = Collections.synchronizedSet(new HashSet<String>());
+  private final Map<String, CountDownLatch> blockedNodes = new ConcurrentHashMap<String, CountDownLatch>();
+  private ODistributedServerManager         manager;
+
+  public static class OTestTask extends OAbstractDistributedTask<Object> {
+    private final String value;
+
+    public OTestTask(final String iValue) {
+      value = iValue;
+      mode = EXECUTION_MODE.SYNCHRONOUS;
+    }
+
+    @Override
+    public Object call() throws Exception {
+      return value;
+    }
+
+    @Override
+    public String getName() {
+      return "test";
+    }
+  }
+
+  @BeforeClass
+  public void beforeClass() throws Exception {
+    keepOpen = OGlobalConfiguration.STORAGE_KEEP_OPEN.getValue();
+
+    // THE DISTRIBUTED TASKS LOOK UP THE REPLICATOR USER IN THE SERVER CONFIGURATION
+    OServerMain.create().startup(
+        "<orient-server><network><protocols></protocols><listeners></listeners></network><users><user name=\""
+            + ODistributedAbstractPlugin.REPLICATOR_USER
+            + "\" password=\"test\" resources=\"*\"/></users><properties></properties></orient-server>");
+
+    manager = (ODistributedServerManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { ODistributedServerManager.class }, new InvocationHandler() {
+          public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            if (name.equals("getLocalNodeId"))
+              return "local";
+            if (name.equals("getRunId") || name.equals("incrementDistributedSerial"))
+              return 0l;
+            if (name.equals("isOfflineNode"))
+              return offlineNodes.contains(args[0]);
+            if (name.equals("sendOperation2Node")) {
+              final String nodeId = (String) args[0];
+              final CountDownLatch blocked = blockedNodes.get(nodeId);
+              if (blocked != null)
+                blocked.await();
+              if (offlineNodes.contains(nodeId))
+                throw new ODistributedException("Node " + nodeId + " is offline");
+
+              final OMultipleDistributedTasks group = (OMultipleDistributedTasks) args[1];
+              final Object[] results = new Object[group.getTasks()];
+              for (int i = 0; i < results.length; ++i)
+                results[i] = group.getTask(i).call();
+              return results;
+            }
+            if (name.equals("hashCode"))
+              return System.identityHashCode(proxy);
+            if (name.equals("equals"))
+              return proxy == args[0];
+            return null;
+          }
+        });
+
+    // THE DISTRIBUTED TASKS RESOLVE THE MANAGER THROUGH THE SERVER
+    OServerMain.server().setVariable("ODistributedAbstractPlugin", manager);
+  }
+
+  @AfterClass
+  public void afterClass() {
+    OGlobalConfiguration.STORAGE_KEEP_OPEN.setValue(keepOpen);
+  }
+
+  public void testReplicateReachesQuorum() {
+    offlineNodes.clear();
+    final OReplicationPipeline pipeline = new OReplicationPipeline(manager, "test", 10, 2, -1);
+    try {
+      final Set<String> nodes = new HashSet<String>(Arrays.asList("node1", "node2"));
+      pipeline.checkQuorum(nodes, EXECUTION_MODE.SYNCHRONOUS);
+
+      final Map<String, Object> results = pipeline.replicate(nodes, new OTestTask("ok"), "ok");
+      Assert.assertEquals(results.size(), 2);
+      Assert.assertEquals(results.get("node1"), "ok");
+      Assert.assertEquals(results.get("node2"), "ok");
+    } finally {
+      pipeline.shutdown();
+    }
+  }
+
+  public void testCheckQuorumWithOfflineNodes() {
+    offlineNodes.clear();
+    offlineNodes.add("node2");
+    final OReplicationPipeline pipeline = new OReplicationPipeline(manager, "test", 10, 2, 1);
+    try {
+      final Set<String> nodes = new HashSet<String>(Arrays.asList("node1", "node2"));
+
+      // ONE NODE IS ENOUGH
+      pipeline.checkQuorum(nodes, EXECUTION_MODE.SYNCHRONOUS);
+
+      offlineNodes.add("node1");
+      try {
+        pipeline.checkQuorum(nodes, EXECUTION_MODE.SYNCHRONOUS);
+        Assert.fail("Quorum should not be reachable");
+      } catch (ODistributedException e) {
+      }
+
+      // ASYNCHRONOUS WRITES DON'T WAIT FOR ANY NODE
+      pipeline.checkQuorum(nodes, EXECUTION_MODE.ASYNCHRONOUS);
+    } finally {
+      offlineNodes.clear();
+      pipeline.shutdown();
+    }
+  }
+
+  public void testRemoveNodeStopsItsQueue() throws Exception {
+    offlineNodes.clear();
+    final CountDownLatch blocked = new CountDownLatch(1);
+    blockedNodes.put("node2", blocked);
+
+    final OReplicationPipeline pipeline = new OReplicationPipeline(manager, "test", 1, 1, -1);
+    try {
+      final Set<String> nodes = new HashSet<String>(Arrays.asList("node1", "node2"));
+      final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+      final CountDownLatch done = new CountDownLatch(1);
+
+      final Thread writer = new Thread() {
+        @Override
+        public void run() {
+          try {
+            pipeline.replicate(nodes, new OTestTask("ok"), "ok");
+          } catch (Throwable t) {
+            error.set(t);
+          } finally {
+            done.countDown();
+          }
+        }
+      };
+      writer.start();
+
+      Assert.assertFalse(done.await(500, TimeUnit.MILLISECONDS));
+      Assert.assertTrue(pipeline.getNodes().contains("node2"));
+
+      // NODE2 LEAVES THE CLUSTER WHILE ITS BATCH IS IN FLIGHT
+      offlineNodes.add("node2");
+      pipeline.removeNode("node2");
+      blocked.countDown();
+
+      Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+      Assert.assertTrue(error.get() instanceof ODistributedException);
+      Assert.assertFalse(pipeline.getNodes().contains("node2"));
+    } finally {
+      blockedNodes.clear();
+      offlineNodes.clear();
+      pipeline.shutdown();
+    }
+  }
+
+  public void testShutdownReleasesWriters() throws Exception {
+    offlineNodes.clear();
+    final CountDownLatch blocked = new CountDownLatch(1);
+    blockedNodes.put("node1", blocked);
+
+    final OReplicationPipeline pipeline = new OReplicationPipeline(manager, "test", 1, 1, -1);
+    try {
+      final Set<String> nodes = new HashSet<String>(Arrays.asList("node1"));
+      final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+      final CountDownLatch done = new CountDownLatch(1);
+
+      final Thread writer = new Thread() {
+        @Override
+        public void run() {
+          try {
+            pipeline.replicate(nodes, new OTestTask("ok"), "ok");
+          } catch (Throwable t) {
+            error.set(t);
+          } finally {
+            done.countDown();
+          }
+        }
+      };
+      writer.start();
+
+      Assert.assertFalse(done.await(500, TimeUnit.MILLISECONDS));
+
+      pipeline.shutdown();
+
+      Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+      Assert.assertTrue(error.get() instanceof ODistributedException);
+
+      try {
+        pipeline.replicate(nodes, new OTestTask("ok"), "ok");
+        Assert.fail("Pipeline is shutdown");
+      } catch (ODistributedException e) {
+      }
+    } finally {
+      blocked.countDown();
+      blockedNodes.clear();
+      pipeline.shutdown();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.orientechnologies.orient.server.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.ORecordOperation;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.distributed.ODistributedAbstractPlugin;
+import com.orientechnologies.orient.server.journal.ODatabaseJournal.OPERATION_TYPES;
+import com.orientechnologies.orient.server.task.OTxCommitDistributedTask;
+import com.orientechnologies.orient.server.task.OTxCommitDistributedTask.OTxOperation;
+
+@Test
+public class ODatabaseJournalTest {
+  private Object              keepOpen;
+  private ODatabaseDocumentTx database;
+
+  @BeforeClass
+  public void beforeClass() throws Exception {
+    keepOpen = OGlobalConfiguration.STORAGE_KEEP_OPEN.getValue();
+
+    // THE DISTRIBUTED TASKS LOOK UP THE REPLICATOR USER IN THE SERVER CONFIGURATION
+    OServerMain.create().startup(
+        "<orient-server><network><protocols></protocols><listeners></listeners></network><users><user name=\""
+            + ODistributedAbstractPlugin.REPLICATOR_USER
+            + "\" password=\"test\" resources=\"*\"/></users><properties></properties></orient-server>");
+
+    database = new ODatabaseDocumentTx("memory:ODatabaseJournalTest").create();
+  }
+
+  @AfterClass
+  public void afterClass() {
+    database.drop();
+    OGlobalConfiguration.STORAGE_KEEP_OPEN.setValue(keepOpen);
+  }
+
+  public void testTxCommitJournaledBeforeCommit() throws IOException {
+    final ODatabaseJournal journal = createJournal("testTxCommitJournaledBeforeCommit");
+
+    final ODocument doc = new ODocument().field("name", "journal");
+    doc.save();
+    final int clusterId = doc.getIdentity().getClusterId();
+
+    final OTxCommitDistributedTask task = new OTxCommitDistributedTask(1, 0);
+    final OTxOperation created = new OTxOperation(ORecordOperation.CREATED, new ORecordId(clusterId,
+        OClusterPositionFactory.INSTANCE.valueOf(-2)), OVersionFactory.instance().createVersion(), (byte) 'd', null);
+    final OTxOperation updated = new OTxOperation(ORecordOperation.UPDATED, ((ORecordId) doc.getIdentity()).copy(),
+        OVersionFactory.instance().createVersion(), (byte) 'd', null);
+    task.addOperation(created);
+    task.addOperation(updated);
+
+    final long offset = journal.journalOperation(1, 0, OPERATION_TYPES.TX_COMMIT, task);
+
+    // NOT COMMITTED YET: ONLY THE RECORDS WITH A PERSISTENT RID CAN BE RECOVERED
+    Assert.assertFalse(journal.getOperationStatus(offset));
+    Assert.assertEquals(journal.getUncommittedOperations(), Arrays.asList(updated.rid));
+
+    // THE COMMIT ASSIGNS THE RID OF THE CREATED RECORD
+    created.rid = new ORecordId(clusterId, OClusterPositionFactory.INSTANCE.valueOf(10));
+    journal.changeTxOperationStatus(offset, task.getOperations());
+
+    Assert.assertTrue(journal.getOperationStatus(offset));
+    Assert.assertTrue(journal.getUncommittedOperations().isEmpty());
+
+    final Map<ORecordId, Byte> records = journal.getOperationRecords(offset);
+    Assert.assertEquals(records.size(), 2);
+    Assert.assertEquals(records.get(created.rid), Byte.valueOf(ORecordOperation.CREATED));
+    Assert.assertEquals(records.get(updated.rid), Byte.valueOf(ORecordOperation.UPDATED));
+  }
+
+  public void testTxCommitStatusWithDifferentRecords() throws IOException {
+    final ODatabaseJournal journal = createJournal("testTxCommitStatusWithDifferentRecords");
+
+    final OTxCommitDistributedTask task = new OTxCommitDistributedTask(1, 1);
+    task.addOperation(new OTxOperation(ORecordOperation.DELETED, new ORecordId(5, OClusterPositionFactory.INSTANCE.valueOf(4)),
+        OVersionFactory.instance().createVersion(), (byte) 0, null));
+
+    final long offset = journal.journalOperation(1, 1, OPERATION_TYPES.TX_COMMIT, task);
+
+    final List<OTxOperation> committed = Arrays.asList(task.getOperations().get(0), task.getOperations().get(0));
+    try {
+      journal.changeTxOperationStatus(offset, committed);
+      Assert.fail("The committed records don't match the journaled ones");
+    } catch (IOException e) {
+    }
+
+    Assert.assertFalse(journal.getOperationStatus(offset));
+  }
+
+  private ODatabaseJournal createJournal(final String iName) throws IOException {
+    final File directory = new File(System.getProperty("java.io.tmpdir"), "ODatabaseJournalTest/" + iName);
+    new File(directory, ODatabaseJournal.DIRECTORY + "/" + ODatabaseJournal.FILENAME).delete();
+    return new ODatabaseJournal(database.getStorage(), directory.getAbsolutePath());
+  }
+}
@@ -0,0 +1,186 @@
+package com.orientechnologies.orient.server.network.protocol.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ORecordBytes;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedCluster;
+import com.orientechnologies.orient.server.OServer;
+import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.network.OServerNetworkListener;
+
+@Test
+public class OStoredRecordTransferTest {
+  private static final String        DB_NAME           = "OStoredRecordTransferTest";
+  private static final AtomicInteger storedRecordsSent = new AtomicInteger();
+
+  private final Map<ORecordId, byte[]> contents         = new LinkedHashMap<ORecordId, byte[]>();
+  private ORecordId                   deletedRid;
+  private ODatabaseDocumentTx         local;
+  private ODatabaseDocumentTx         remote;
+  private OServer                     server;
+
+  /**
+   * Binary protocol that counts the records sent as they're stored.
+   */
+  public static class OCountingProtocol extends ONetworkProtocolBinary {
+    @Override
+    protected void sendStoredRecord(final ORecordId rid) throws IOException {
+      storedRecordsSent.incrementAndGet();
+      super.sendStoredRecord(rid);
+    }
+  }
+
+  @BeforeClass
+  public void beforeClass() throws Exception {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = System.getProperty("java.io.tmpdir");
+    final String path = buildDirectory + File.separator + DB_NAME;
+
+    local = new ODatabaseDocumentTx("plocal:" + path);
+    if (local.exists()) {
+      local.open("admin", "admin");
+      local.drop();
+    }
+    local.create();
+
+    for (String compression : new String[] { "snappy", "deflate", "nothing" }) {
+      local.addCluster(compression, OStorage.CLUSTER_TYPE.PHYSICAL);
+      local.command(new OCommandSQL("alter cluster " + compression + " compression " + compression)).execute();
+      createRecords(compression);
+    }
+
+    // THE DICTIONARY IS TRAINED ON THE RECORDS ALREADY IN THE CLUSTER
+    local.addCluster("dictionary", OStorage.CLUSTER_TYPE.PHYSICAL);
+    createRecords("dictionary");
+    local.command(new OCommandSQL("alter cluster dictionary compression dictionary")).execute();
+    createRecords("dictionary");
+
+    final ORecordBytes deleted = new ORecordBytes(createContent("deleted", 100));
+    deleted.save("snappy");
+    deletedRid = (ORecordId) deleted.getIdentity().copy();
+    deleted.delete();
+
+    server = OServerMain.create();
+    server.startup("<orient-server><network><protocols><protocol name=\"binary\" implementation=\""
+        + OCountingProtocol.class.getName() + "\"/></protocols><listeners><listener protocol=\"binary\" ip-address=\"127.0.0.1\""
+        + " port-range=\"2424-2440\"/></listeners></network><storages><storage name=\"" + DB_NAME + "\" path=\"plocal:" + path
+        + "\" userName=\"admin\" userPassword=\"admin\"/></storages><users><user name=\"root\" password=\"root\""
+        + " resources=\"*\"/></users><properties></properties></orient-server>");
+    server.activate();
+
+    final int port = server.getListenerByProtocol(OCountingProtocol.class).getInboundAddr().getPort();
+    remote = new ODatabaseDocumentTx("remote:127.0.0.1:" + port + "/" + DB_NAME);
+    remote.open("admin", "admin");
+  }
+
+  @AfterClass
+  public void afterClass() {
+    remote.close();
+
+    // THE SERVER ISN'T SHUT DOWN BECAUSE IT WOULD SHUT DOWN ALSO THE ENGINES OF THE OTHER TESTS
+    for (OServerNetworkListener listener : server.getNetworkListeners())
+      listener.shutdown();
+
+    ODatabaseRecordThreadLocal.INSTANCE.set(local);
+    local.drop();
+  }
+
+  public void testCompressedRecordsAreSentAsStored() {
+    for (String compression : new String[] { "snappy", "deflate" }) {
+      Assert.assertEquals(getCompression(compression), compression);
+      checkRecords(compression, true);
+    }
+  }
+
+  public void testUncompressedRecordsAreSentAsStored() {
+    Assert.assertEquals(getCompression("nothing"), "nothing");
+    checkRecords("nothing", true);
+  }
+
+  public void testDictionaryRecordsAreUncompressedByTheServer() {
+    // THE CLIENT HAS NO DICTIONARY: IF THE SERVER SENT THE RECORDS COMPRESSED THE CLIENT COULDN'T READ THEM
+    Assert.assertEquals(getCompression("dictionary"), "dictionary");
+    checkRecords("dictionary", true);
+  }
+
+  public void testDeletedRecord() {
+    final int sent = storedRecordsSent.get();
+    Assert.assertNull(remote.getStorage().readRecord(deletedRid, null, true, null, false).getResult());
+    Assert.assertEquals(storedRecordsSent.get(), sent + 1);
+  }
+
+  public void testStoredRecordsDisabled() {
+    final Object storedRecords = OGlobalConfiguration.NETWORK_BINARY_STORED_RECORDS.getValue();
+    OGlobalConfiguration.NETWORK_BINARY_STORED_RECORDS.setValue(false);
+    try {
+      checkRecords("snappy", false);
+    } finally {
+      OGlobalConfiguration.NETWORK_BINARY_STORED_RECORDS.setValue(storedRecords);
+    }
+  }
+
+  private void createRecords(final String iClusterName) {
+    final List<byte[]> records = new ArrayList<byte[]>();
+    records.add(createContent(iClusterName, 100));
+    // LARGER THAN A PAGE AND THAN THE CHANNEL BUFFER
+    records.add(createContent(iClusterName, 200000));
+
+    for (byte[] content : records) {
+      final ORecordBytes record = new ORecordBytes(content);
+      record.save(iClusterName);
+      contents.put((ORecordId) record.getIdentity(), content);
+    }
+  }
+
+  private void checkRecords(final String iClusterName, final boolean iSentAsStored) {
+    final int clusterId = remote.getClusterIdByName(iClusterName);
+
+    int checked = 0;
+    for (Map.Entry<ORecordId, byte[]> entry : contents.entrySet())
+      if (entry.getKey().clusterId == clusterId) {
+        final int sent = storedRecordsSent.get();
+
+        // THE CACHE IS IGNORED TO READ THE RECORD FROM THE STORAGE OF THE SERVER
+        final ORawBuffer buffer = remote.getStorage().readRecord(entry.getKey(), null, true, null, false).getResult();
+        Assert.assertNotNull(buffer);
+        Assert.assertEquals(buffer.buffer, entry.getValue());
+        Assert.assertEquals(buffer.recordType, ORecordBytes.RECORD_TYPE);
+        Assert.assertEquals(storedRecordsSent.get(), iSentAsStored ? sent + 1 : sent);
+        checked++;
+      }
+
+    Assert.assertTrue(checked >= 2);
+  }
+
+  private String getCompression(final String iClusterName) {
+    return ((OLocalPaginatedCluster) local.getStorage().getClusterById(local.getClusterIdByName(iClusterName))).getCompression()
+        .getName();
+  }
+
+  private static byte[] createContent(final String iPrefix, final int iSize) {
+    final StringBuilder content = new StringBuilder(iSize);
+    for (int i = 0; content.length() < iSize; ++i)
+      content.append(iPrefix).append(" record content ").append(i).append(';');
+    content.setLength(iSize);
+    return content.toString().getBytes();
+  }
+}
@@ -0,0 +1,177 @@
+package com.orientechnologies.orient.server.network.protocol.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OContextConfiguration;
+import com.orientechnologies.orient.enterprise.channel.OChannel;
+import com.orientechnologies.orient.enterprise.channel.text.OChannelTextServer;
+
+@Test
+public class OHttpInputStreamTest {
+  // SMALL BUFFER TO SPLIT THE LINES AND THE CONTENTS ACROSS MORE READS
+  private static final int BUFFER_SIZE = 8;
+
+  private ServerSocket     serverSocket;
+  private Socket           clientSocket;
+  private OChannel         channel;
+
+  @BeforeClass
+  public void beforeClass() throws IOException {
+    // THE STREAM UPDATES THE METRICS OF THE CHANNEL, THAT NEEDS A CONNECTED SOCKET
+    final InetAddress loopback = InetAddress.getByName("127.0.0.1");
+    serverSocket = new ServerSocket(0, 1, loopback);
+    clientSocket = new Socket(loopback, serverSocket.getLocalPort());
+    channel = new OChannelTextServer(serverSocket.accept(), new OContextConfiguration());
+  }
+
+  @AfterClass
+  public void afterClass() throws IOException {
+    channel.close();
+    clientSocket.close();
+    serverSocket.close();
+  }
+
+  public void testCrLfAndBareLfLines() throws IOException {
+    final OHttpInputStream input = createStream("GET /a HTTP/1.1\r\nHost: localhost\nX-Empty:\r\n\n\r\n");
+
+    Assert.assertEquals(input.readLine(), 15);
+    Assert.assertEquals(input.getLine(0), "GET /a HTTP/1.1");
+
+    Assert.assertEquals(input.readLine(), 15);
+    Assert.assertTrue(input.lineStartsWith("host: "));
+    Assert.assertEquals(input.getLine(6), "localhost");
+
+    Assert.assertEquals(input.readLine(), 8);
+    Assert.assertEquals(input.getLine(0), "X-Empty:");
+
+    Assert.assertEquals(input.readLine(), 0);
+    Assert.assertEquals(input.readLine(), 0);
+    Assert.assertEquals(input.readLine(), -1);
+  }
+
+  public void testLastLineWithoutTerminator() throws IOException {
+    final OHttpInputStream input = createStream("first\r\nlast");
+
+    Assert.assertEquals(input.readLine(), 5);
+    Assert.assertEquals(input.readLine(), 4);
+    Assert.assertEquals(input.getLine(0), "last");
+    Assert.assertEquals(input.readLine(), -1);
+  }
+
+  public void testPipelinedRequests() throws IOException {
+    final OHttpInputStream input = createStream("POST /first HTTP/1.1\r\nContent-Length: 11\r\n\r\nfirst body!"
+        + "POST /second HTTP/1.1\nContent-Length: 6\n\nsecond" + "GET /third HTTP/1.1\r\n\r\n");
+
+    Assert.assertEquals(readRequest(input), "POST /first HTTP/1.1 first body!");
+    Assert.assertEquals(readRequest(input), "POST /second HTTP/1.1 second");
+    Assert.assertEquals(readRequest(input), "GET /third HTTP/1.1 ");
+    Assert.assertEquals(input.readLine(), -1);
+  }
+
+  public void testChunkedContent() throws IOException {
+    final OHttpInputStream input = createStream("4\r\nWiki\r\n5;name=value\r\npedia\n"
+        + "E\r\n in\r\n\r\nchunks.\r\n0\r\nX-Trailer: ignored\r\n\r\nNEXT");
+
+    Assert.assertEquals(new String(input.readChunked(1000)), "Wikipedia in\r\n\r\nchunks.");
+
+    // THE BYTES AFTER THE CONTENT BELONG TO THE NEXT REQUEST
+    Assert.assertEquals(input.readLine(), 4);
+    Assert.assertEquals(input.getLine(0), "NEXT");
+  }
+
+  public void testChunkedContentOverTheLimit() throws IOException {
+    // THE SECOND CHUNK ISN'T SENT: THE CONTENT MUST BE REJECTED BEFORE READING IT
+    final OHttpInputStream input = createStream("a\r\n0123456789\r\n5b\r\n");
+    try {
+      input.readChunked(100);
+      Assert.fail("The content should have been rejected");
+    } catch (OHttpRequestException e) {
+    }
+
+    Assert.assertEquals(new String(createStream("a\r\n0123456789\r\n0\r\n\r\n").readChunked(10)), "0123456789");
+  }
+
+  public void testChunkSizeOverflow() throws IOException {
+    try {
+      createStream("100000000\r\n").readChunked(Integer.MAX_VALUE);
+      Assert.fail("The chunk size should have been rejected");
+    } catch (OHttpRequestException e) {
+    }
+
+    try {
+      createStream("zz\r\n").readChunked(Integer.MAX_VALUE);
+      Assert.fail("The chunk size should have been rejected");
+    } catch (OHttpRequestException e) {
+    }
+  }
+
+  public void testTruncatedContent() throws IOException {
+    final OHttpInputStream input = createStream("0123456789");
+    try {
+      input.readFully(new byte[20], 0, 20);
+      Assert.fail("The stream should have been ended");
+    } catch (EOFException e) {
+    }
+
+    try {
+      createStream("a\r\n01234").readChunked(1000);
+      Assert.fail("The stream should have been ended");
+    } catch (EOFException e) {
+    }
+
+    try {
+      createStream("a\r\n0123456789\r\n").readChunked(1000);
+      Assert.fail("The stream should have been ended");
+    } catch (EOFException e) {
+    }
+  }
+
+  public void testContentLength() throws IOException {
+    Assert.assertEquals(readContentLength("Content-Length: 1234"), 1234);
+    Assert.assertEquals(readContentLength("Content-Length:  0  "), 0);
+    Assert.assertEquals(readContentLength("Content-Length: 2147483647"), Integer.MAX_VALUE);
+  }
+
+  public void testContentLengthOverflow() throws IOException {
+    for (String value : new String[] { "2147483648", "99999999999", "-1", "12a", "" })
+      try {
+        readContentLength("Content-Length: " + value);
+        Assert.fail("The content length '" + value + "' should have been rejected");
+      } catch (OHttpRequestException e) {
+      }
+  }
+
+  private OHttpInputStream createStream(final String iContent) {
+    return new OHttpInputStream(channel, new ByteArrayInputStream(iContent.getBytes()), BUFFER_SIZE);
+  }
+
+  private int readContentLength(final String iHeader) throws IOException {
+    final OHttpInputStream input = createStream(iHeader + "\r\n");
+    input.readLine();
+    return input.getLineAsLength(OHttpUtils.HEADER_CONTENT_LENGTH.length());
+  }
+
+  private String readRequest(final OHttpInputStream iInput) throws IOException {
+    iInput.readLine();
+    final String requestLine = iInput.getLine(0);
+
+    int contentLength = 0;
+    while (iInput.readLine() > 0)
+      if (iInput.lineStartsWith(OHttpUtils.HEADER_CONTENT_LENGTH))
+        contentLength = iInput.getLineAsLength(OHttpUtils.HEADER_CONTENT_LENGTH.length());
+
+    final byte[] content = new byte[contentLength];
+    iInput.readFully(content, 0, contentLength);
+    return requestLine + " " + new String(content);
+  }
+}
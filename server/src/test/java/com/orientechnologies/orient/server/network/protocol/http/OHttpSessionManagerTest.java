@@ -0,0 +1,98 @@
+package com.orientechnologies.orient.server.network.protocol.http;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+
+@Test
+public class OHttpSessionManagerTest {
+  private Object expireTimeout;
+  private Object maxPerUser;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    expireTimeout = OGlobalConfiguration.NETWORK_HTTP_SESSION_EXPIRE_TIMEOUT.getValue();
+    maxPerUser = OGlobalConfiguration.NETWORK_HTTP_SESSION_MAX_PER_USER.getValue();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    OGlobalConfiguration.NETWORK_HTTP_SESSION_EXPIRE_TIMEOUT.setValue(expireTimeout);
+    OGlobalConfiguration.NETWORK_HTTP_SESSION_MAX_PER_USER.setValue(maxPerUser);
+  }
+
+  public void testExpiration() throws InterruptedException {
+    OGlobalConfiguration.NETWORK_HTTP_SESSION_EXPIRE_TIMEOUT.setValue(1);
+    final OHttpSessionManager manager = new OHttpSessionManager();
+
+    final String unused = manager.createSession("db", "unused");
+    final String used = manager.createSession("db", "used");
+
+    // KEEP A SESSION ALIVE WHILE THE OTHER EXPIRES
+    final long end = System.currentTimeMillis() + 2500;
+    while (System.currentTimeMillis() < end) {
+      Assert.assertNotNull(manager.getSession(used));
+      Thread.sleep(100);
+    }
+    manager.checkSessionsValidity();
+
+    Assert.assertNull(manager.getSession(unused));
+    Assert.assertNotNull(manager.getSession(used));
+    Assert.assertEquals(manager.getSessions().length, 1);
+
+    // ONCE NOT USED ANYMORE ALSO THE OTHER ONE EXPIRES
+    Thread.sleep(2500);
+    manager.checkSessionsValidity();
+    Assert.assertNull(manager.getSession(used));
+    Assert.assertEquals(manager.getSessions().length, 0);
+  }
+
+  public void testEvictsTheLeastRecentlyUsedSession() throws InterruptedException {
+    OGlobalConfiguration.NETWORK_HTTP_SESSION_MAX_PER_USER.setValue(2);
+    final OHttpSessionManager manager = new OHttpSessionManager();
+
+    final String first = manager.createSession("db", "admin");
+    Thread.sleep(10);
+    final String second = manager.createSession("db", "admin");
+    final String otherUser = manager.createSession("db", "reader");
+    final String otherDatabase = manager.createSession("db2", "admin");
+    Thread.sleep(10);
+
+    // THE FIRST SESSION IS THE OLDEST BUT THE MOST RECENTLY USED
+    Assert.assertNotNull(manager.getSession(first));
+    Thread.sleep(10);
+
+    final String third = manager.createSession("db", "admin");
+    Assert.assertNull(manager.getSession(second));
+    Assert.assertNotNull(manager.getSession(first));
+    Assert.assertNotNull(manager.getSession(third));
+
+    // THE LIMIT IS PER USER AND DATABASE
+    Assert.assertNotNull(manager.getSession(otherUser));
+    Assert.assertNotNull(manager.getSession(otherDatabase));
+    Assert.assertEquals(manager.getSessions().length, 4);
+
+    // A REMOVED SESSION LEAVES ROOM FOR A NEW ONE
+    Assert.assertNotNull(manager.removeSession(first));
+    final String fourth = manager.createSession("db", "admin");
+    Assert.assertNotNull(manager.getSession(third));
+    Assert.assertNotNull(manager.getSession(fourth));
+    Assert.assertEquals(manager.getSessions().length, 4);
+  }
+
+  public void testUnlimitedSessionsPerUser() {
+    OGlobalConfiguration.NETWORK_HTTP_SESSION_MAX_PER_USER.setValue(0);
+    final OHttpSessionManager manager = new OHttpSessionManager();
+
+    for (int i = 0; i < 1000; ++i)
+      manager.createSession("db", "admin");
+    Assert.assertEquals(manager.getSessions().length, 1000);
+
+    for (OHttpSession session : manager.getSessions())
+      Assert.assertSame(manager.removeSession(session.getId()), session);
+    Assert.assertEquals(manager.getSessions().length, 0);
+  }
+}
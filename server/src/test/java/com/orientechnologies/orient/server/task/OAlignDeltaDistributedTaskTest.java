@@ -0,0 +1,153 @@
+package com.orientechnologies.orient.server.task;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.distributed.ODistributedAbstractPlugin;
+import com.orientechnologies.orient.server.task.OAlignDeltaDistributedTask.ODeltaRecord;
+
+@Test
+public class OAlignDeltaDistributedTaskTest {
+  private static final String DB_NAME = "OAlignDeltaDistributedTaskTest";
+
+  private Object              keepOpen;
+  private ODatabaseDocumentTx database;
+
+  @BeforeClass
+  public void beforeClass() throws Exception {
+    keepOpen = OGlobalConfiguration.STORAGE_KEEP_OPEN.getValue();
+
+    // THE DISTRIBUTED TASKS LOOK UP THE REPLICATOR USER IN THE SERVER CONFIGURATION
+    OServerMain.create().startup(
+        "<orient-server><network><protocols></protocols><listeners></listeners></network><users><user name=\""
+            + ODistributedAbstractPlugin.REPLICATOR_USER
+            + "\" password=\"test\" resources=\"*\"/></users><properties></properties></orient-server>");
+
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = System.getProperty("java.io.tmpdir");
+
+    database = new ODatabaseDocumentTx("local:" + buildDirectory + File.separator + DB_NAME);
+    if (database.exists()) {
+      database.open("admin", "admin");
+      database.drop();
+    }
+    database.create();
+  }
+
+  @AfterClass
+  public void afterClass() {
+    ODatabaseRecordThreadLocal.INSTANCE.set(database);
+    database.drop();
+    OGlobalConfiguration.STORAGE_KEEP_OPEN.setValue(keepOpen);
+  }
+
+  public void testSnapshotOfHoledCluster() {
+    final int clusterId = database.addCluster("holed", OStorage.CLUSTER_TYPE.PHYSICAL);
+
+    // THE POSITIONS 2, 4 AND 5 ARE HOLES ON THE SOURCE NODE
+    final List<ODeltaRecord> records = new ArrayList<ODeltaRecord>();
+    for (long position : new long[] { 0, 1, 3, 6 })
+      records.add(createRecord(clusterId, position, (byte) 0, "source" + position));
+
+    align(records, clusterId, 0, 6);
+
+    for (long position : new long[] { 0, 1, 3, 6 })
+      Assert.assertEquals(loadName(clusterId, position), "source" + position);
+    for (long position : new long[] { 2, 4, 5 })
+      Assert.assertNull(database.load(new ORecordId(clusterId, OClusterPositionFactory.INSTANCE.valueOf(position))));
+    Assert.assertEquals(database.countClusterElements(clusterId), 4);
+  }
+
+  public void testSnapshotOverLocalHoles() {
+    final int clusterId = database.addCluster("overwritten", OStorage.CLUSTER_TYPE.PHYSICAL);
+    for (int i = 0; i < 8; ++i)
+      new ODocument().field("name", "local" + i).save("overwritten");
+
+    // THE LAST HOLE IS REUSED FIRST: THE RECORD OF POSITION 1 IS CREATED AT POSITION 5 IF NOT PLACED
+    database.load(new ORecordId(clusterId, OClusterPositionFactory.INSTANCE.valueOf(1))).delete();
+    database.load(new ORecordId(clusterId, OClusterPositionFactory.INSTANCE.valueOf(5))).delete();
+
+    final List<ODeltaRecord> records = new ArrayList<ODeltaRecord>();
+    for (long position : new long[] { 1, 2, 5 })
+      records.add(createRecord(clusterId, position, (byte) 0, "source" + position));
+
+    align(records, clusterId, 0, 7);
+
+    for (long position : new long[] { 1, 2, 5 })
+      Assert.assertEquals(loadName(clusterId, position), "source" + position);
+    for (long position : new long[] { 0, 3, 4, 6, 7 })
+      Assert.assertNull(database.load(new ORecordId(clusterId, OClusterPositionFactory.INSTANCE.valueOf(position))));
+    Assert.assertEquals(database.countClusterElements(clusterId), 3);
+  }
+
+  public void testDeltaOfCreatedAndDeletedRecords() {
+    final int clusterId = database.addCluster("delta", OStorage.CLUSTER_TYPE.PHYSICAL);
+
+    final List<ODeltaRecord> records = new ArrayList<ODeltaRecord>();
+    records.add(createRecord(clusterId, 0, (byte) (OAlignDeltaDistributedTask.FLAG_CREATED | OAlignDeltaDistributedTask.FLAG_DELETED),
+        null));
+    records.add(createRecord(clusterId, 1, OAlignDeltaDistributedTask.FLAG_CREATED, "source1"));
+    records.add(createRecord(clusterId, 2, (byte) (OAlignDeltaDistributedTask.FLAG_CREATED | OAlignDeltaDistributedTask.FLAG_DELETED),
+        null));
+    records.add(createRecord(clusterId, 3, OAlignDeltaDistributedTask.FLAG_CREATED, "source3"));
+
+    align(records, -1, -1, -1);
+
+    Assert.assertEquals(loadName(clusterId, 1), "source1");
+    Assert.assertEquals(loadName(clusterId, 3), "source3");
+    Assert.assertNull(database.load(new ORecordId(clusterId, OClusterPositionFactory.INSTANCE.valueOf(0))));
+    Assert.assertNull(database.load(new ORecordId(clusterId, OClusterPositionFactory.INSTANCE.valueOf(2))));
+    Assert.assertEquals(database.countClusterElements(clusterId), 2);
+  }
+
+  private void align(final List<ODeltaRecord> iRecords, final int iClusterId, final long iFrom, final long iTo) {
+    final OAlignDeltaDistributedTask task = new OAlignDeltaDistributedTask();
+    task.nodeSource = "source";
+    task.databaseName = DB_NAME;
+    if (iClusterId > -1)
+      task.setSnapshotRange(iClusterId, OClusterPositionFactory.INSTANCE.valueOf(iFrom),
+          OClusterPositionFactory.INSTANCE.valueOf(iTo));
+
+    try {
+      Assert.assertEquals(task.alignCluster(iRecords), iRecords.size());
+    } finally {
+      // THE TASK WORKS ON ITS OWN DATABASE
+      ODatabaseRecordThreadLocal.INSTANCE.set(database);
+    }
+    database.getLevel1Cache().invalidate();
+  }
+
+  private String loadName(final int iClusterId, final long iPosition) {
+    final ODocument doc = database.load(new ORecordId(iClusterId, OClusterPositionFactory.INSTANCE.valueOf(iPosition)));
+    Assert.assertNotNull(doc);
+    return doc.field("name");
+  }
+
+  private static ODeltaRecord createRecord(final int iClusterId, final long iPosition, final byte iFlags, final String iName) {
+    final ODeltaRecord r = new ODeltaRecord();
+    r.flags = iFlags;
+    r.rid = new ORecordId(iClusterId, OClusterPositionFactory.INSTANCE.valueOf(iPosition));
+    if ((iFlags & OAlignDeltaDistributedTask.FLAG_DELETED) == 0) {
+      r.recordType = ODocument.RECORD_TYPE;
+      r.version = OVersionFactory.instance().createVersion();
+      r.content = new ODocument().field("name", iName).toStream();
+    }
+    return r;
+  }
+}
@@ -51,6 +51,7 @@ import com.orientechnologies.orient.core.command.OCommandManager;
 import com.orientechnologies.orient.core.command.OCommandOutputListener;
 import com.orientechnologies.orient.core.command.script.OCommandExecutorScript;
 import com.orientechnologies.orient.core.command.script.OCommandScript;
+import com.orientechnologies.orient.core.compression.OCompressionSampler;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
@@ -351,6 +352,36 @@ public class OConsoleDatabaseApp extends OrientConsole implements OCommandOutput
     updateDatabaseInfo();
   }
 
+  @ConsoleCommand(description = "Samples the records of a cluster to compare the available compressions and suggest the best one")
+  public void sampleClusterCompression(
+      @ConsoleParameter(name = "cluster-name", description = "The name of the cluster to sample") String iClusterName) {
+    checkForDatabase();
+
+    if (currentDatabase.getURL().startsWith(OEngineRemote.NAME)) {
+      out.println("Error: cannot sample the records of a remote database");
+      return;
+    }
+
+    final int clusterId = currentDatabase.getClusterIdByName(iClusterName);
+    if (clusterId < 0) {
+      out.println("Error: cluster '" + iClusterName + "' not found");
+      return;
+    }
+
+    final OCompressionSampler sampler = new OCompressionSampler(currentDatabase.getStorage(), clusterId);
+    final List<OCompressionSampler.OResult> results = sampler.evaluate(sampler.sample(OCompressionSampler.DEFAULT_SAMPLES));
+
+    out.println("+----------------------+------------+----------------------+");
+    out.println("| Compression          | Ratio      | Time (in ms)         |");
+    out.println("+----------------------+------------+----------------------+");
+    for (OCompressionSampler.OResult r : results)
+      out.printf("| %-20s | %10.3f | %20.2f |\n", r.getLabel(), r.getRatio(), r.elapsedNanos / 1000000f);
+    out.println("+----------------------+------------+----------------------+");
+
+    out.println("Suggested compression: " + OCompressionSampler.getLabel(sampler.suggest(results)) + ". To apply it execute: alter cluster "
+        + iClusterName + " compression " + OCompressionSampler.AUTO);
+  }
+
   @ConsoleCommand(description = "Shows the holes in current storage")
   public void showHoles() throws IOException {
     checkForDatabase();